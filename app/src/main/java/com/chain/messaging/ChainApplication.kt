@@ -1,13 +1,23 @@
 package com.chain.messaging
 
 import android.app.Application
+import android.os.Looper
+import coil.ImageLoader
+import coil.ImageLoaderFactory
+import coil.memory.MemoryCache
 import com.chain.messaging.core.config.AppConfig
 import com.chain.messaging.core.integration.ChainApplicationManager
+import com.chain.messaging.core.integration.StartupTimeline
+import com.chain.messaging.core.media.cache.MediaImageCache
+import com.chain.messaging.core.media.cache.MediaRenditionDecoder
+import com.chain.messaging.core.media.cache.MediaRenditionFetcher
 import com.chain.messaging.core.notification.NotificationChannelManager
-import com.chain.messaging.core.performance.PerformanceMonitor
-import com.chain.messaging.core.performance.BatteryOptimizer
-import com.chain.messaging.core.performance.MemoryManager
+import com.chain.messaging.core.performance.memory.ImageMemoryCache
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.DeviceStateTracker
 import com.chain.messaging.core.util.Logger
+import dagger.Lazy
 import dagger.hilt.android.HiltAndroidApp
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -20,28 +30,28 @@ import javax.inject.Inject
  * Annotated with @HiltAndroidApp to enable Hilt dependency injection.
  */
 @HiltAndroidApp
-class ChainApplication : Application() {
+class ChainApplication : Application(), ImageLoaderFactory {
     
+    // Lazy so the manager's service graph is built on the IO dispatcher, not in onCreate
     @Inject
-    lateinit var applicationManager: ChainApplicationManager
+    lateinit var applicationManager: Lazy<ChainApplicationManager>
     
     @Inject
     lateinit var notificationChannelManager: NotificationChannelManager
     
     @Inject
-    lateinit var performanceMonitor: PerformanceMonitor
+    lateinit var memoryBudgetManager: MemoryBudgetManager
     
+    // Built on the first media rendition request, not with the image loader
     @Inject
-    lateinit var batteryOptimizer: BatteryOptimizer
-    
-    @Inject
-    lateinit var memoryManager: MemoryManager
+    lateinit var mediaImageCache: Lazy<MediaImageCache>
     
     private val applicationScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
     
     override fun onCreate() {
         super.onCreate()
         
+        Logger.installFileSink(java.io.File(filesDir, "logs"))
         Logger.i("Initializing Chain Application v${AppConfig.APP_VERSION}")
         
         // Initialize SQLCipher
@@ -60,10 +70,13 @@ class ChainApplication : Application() {
             Logger.e("Failed to initialize notification channels", e)
         }
         
+        // Periodic background work pauses while backgrounded or in Doze
+        DeviceStateTracker(BackgroundWork.scheduler).register(this)
+        
         // Initialize the integrated Chain application manager
         applicationScope.launch {
             try {
-                val initResult = applicationManager.initialize()
+                val initResult = applicationManager.get().initialize()
                 if (initResult.isSuccess) {
                     Logger.i("Chain Application Manager initialized successfully")
                 } else {
@@ -74,9 +87,43 @@ class ChainApplication : Application() {
             }
         }
         
+        // Deferred services start once the main thread has nothing left to do
+        Looper.myQueue().addIdleHandler {
+            applicationScope.launch { applicationManager.get().onIdle() }
+            false
+        }
+        
+        StartupTimeline.mark(StartupTimeline.APPLICATION_CREATED)
         Logger.i("Chain Application initialization complete")
     }
     
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        memoryBudgetManager.onTrimMemory(level)
+    }
+    
+    /**
+     * Coil's memory cache is sized from the cache budget and shrinks with the
+     * other caches under memory pressure. Media renditions bypass it and are
+     * cached by [MediaImageCache] instead.
+     */
+    override fun newImageLoader(): ImageLoader {
+        val imageBudget = memoryBudgetManager.policy.budgetFor(ImageMemoryCache.BUDGET_SHARE)
+        val imageLoader = ImageLoader.Builder(this)
+            .memoryCache {
+                MemoryCache.Builder(this)
+                    .maxSizeBytes(imageBudget.coerceAtMost(Int.MAX_VALUE.toLong()).toInt())
+                    .build()
+            }
+            .components {
+                add(MediaRenditionFetcher.Factory(mediaImageCache))
+                add(MediaRenditionDecoder.Factory(mediaImageCache))
+            }
+            .build()
+        imageLoader.memoryCache?.let { memoryBudgetManager.register(ImageMemoryCache(it)) }
+        return imageLoader
+    }
+    
     override fun onTerminate() {
         super.onTerminate()
         
@@ -85,7 +132,7 @@ class ChainApplication : Application() {
         // Gracefully shutdown the application manager
         applicationScope.launch {
             try {
-                applicationManager.shutdown()
+                applicationManager.get().shutdown()
                 Logger.i("Chain Application Manager shutdown complete")
             } catch (e: Exception) {
                 Logger.e("Error during Chain Application Manager shutdown", e)
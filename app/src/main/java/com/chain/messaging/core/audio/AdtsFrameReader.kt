@@ -0,0 +1,94 @@
+package com.chain.messaging.core.audio
+
+import java.io.Closeable
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Splits an AAC ADTS stream into whole frames. Every ADTS frame carries its
+ * own header, so frames can be cut into chunks anywhere and each chunk is
+ * still a playable stream.
+ */
+class AdtsFrameReader(private val input: InputStream) : Closeable {
+
+    private val header = ByteArray(HEADER_BYTES)
+
+    /**
+     * Next complete frame, header included, or null at the end of the stream
+     */
+    fun read(): ByteArray? {
+        if (!readFully(header, 0, HEADER_BYTES, allowEof = true)) return null
+        val length = frameLength(header, 0)
+        if (length < HEADER_BYTES) throw IOException("Lost ADTS sync")
+
+        val frame = ByteArray(length)
+        System.arraycopy(header, 0, frame, 0, HEADER_BYTES)
+        readFully(frame, HEADER_BYTES, length - HEADER_BYTES, allowEof = false)
+        return frame
+    }
+
+    override fun close() = input.close()
+
+    private fun readFully(buffer: ByteArray, offset: Int, length: Int, allowEof: Boolean): Boolean {
+        var read = 0
+        while (read < length) {
+            val count = input.read(buffer, offset + read, length - read)
+            if (count < 0) {
+                if (allowEof && read == 0) return false
+                throw EOFException("Truncated ADTS frame")
+            }
+            read += count
+        }
+        return true
+    }
+
+    companion object {
+        const val HEADER_BYTES = 7
+        const val SAMPLES_PER_FRAME = 1024
+
+        private val SAMPLE_RATES = intArrayOf(
+            96_000, 88_200, 64_000, 48_000, 44_100, 32_000, 24_000, 22_050, 16_000, 12_000, 11_025, 8_000, 7_350
+        )
+
+        /**
+         * Frame length from the header at [offset], or -1 without a sync word
+         */
+        fun frameLength(bytes: ByteArray, offset: Int): Int {
+            val sync = (bytes[offset].toInt() and 0xFF) == 0xFF && (bytes[offset + 1].toInt() and 0xF0) == 0xF0
+            if (!sync) return -1
+            return ((bytes[offset + 3].toInt() and 0x03) shl 11) or
+                ((bytes[offset + 4].toInt() and 0xFF) shl 3) or
+                ((bytes[offset + 5].toInt() and 0xE0) ushr 5)
+        }
+
+        fun sampleRate(bytes: ByteArray, offset: Int): Int {
+            val index = (bytes[offset + 2].toInt() and 0x3C) ushr 2
+            return SAMPLE_RATES.getOrElse(index) { 44_100 }
+        }
+
+        /**
+         * Playback time of one frame, in microseconds
+         */
+        fun frameDurationUs(bytes: ByteArray, offset: Int): Long =
+            SAMPLES_PER_FRAME * 1_000_000L / sampleRate(bytes, offset)
+
+        /**
+         * Header of an AAC-LC frame carrying [payloadBytes] of raw data
+         */
+        fun header(payloadBytes: Int, sampleRate: Int, channelCount: Int): ByteArray {
+            val length = payloadBytes + HEADER_BYTES
+            val rateIndex = SAMPLE_RATES.indexOf(sampleRate).also { require(it >= 0) { "Unsupported sample rate $sampleRate" } }
+            val profile = 1 // AAC LC, stored as object type - 1
+            return byteArrayOf(
+                0xFF.toByte(),
+                0xF1.toByte(), // MPEG-4, no CRC
+                ((profile shl 6) or (rateIndex shl 2) or (channelCount ushr 2)).toByte(),
+                (((channelCount and 0x03) shl 6) or (length ushr 11)).toByte(),
+                ((length ushr 3) and 0xFF).toByte(),
+                (((length and 0x07) shl 5) or 0x1F).toByte(),
+                0xFC.toByte()
+            )
+        }
+    }
+}
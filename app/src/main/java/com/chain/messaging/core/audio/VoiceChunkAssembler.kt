@@ -0,0 +1,59 @@
+package com.chain.messaging.core.audio
+
+import java.io.ByteArrayOutputStream
+
+/**
+ * Groups encoded ADTS frames into chunks of about [chunkDurationMs] of audio.
+ * Chunks always end on a frame boundary. Not thread-safe.
+ */
+class VoiceChunkAssembler(
+    private val chunkDurationMs: Long = DEFAULT_CHUNK_DURATION_MS
+) {
+
+    private val buffer = ByteArrayOutputStream()
+    private var bufferedUs = 0L
+    private var frames = 0
+    private var nextIndex = 0
+
+    /**
+     * Append [frame]; returns the chunk it completed, if any
+     */
+    fun add(frame: ByteArray): VoiceChunk? {
+        buffer.write(frame)
+        bufferedUs += AdtsFrameReader.frameDurationUs(frame, 0)
+        frames++
+        return if (bufferedUs >= chunkDurationMs * 1_000) emit() else null
+    }
+
+    /**
+     * The partly filled trailing chunk, or null if nothing is buffered
+     */
+    fun flush(): VoiceChunk? = if (frames > 0) emit() else null
+
+    private fun emit(): VoiceChunk {
+        val chunk = VoiceChunk(
+            index = nextIndex++,
+            bytes = buffer.toByteArray(),
+            durationUs = bufferedUs,
+            frameCount = frames
+        )
+        buffer.reset()
+        bufferedUs = 0L
+        frames = 0
+        return chunk
+    }
+
+    companion object {
+        const val DEFAULT_CHUNK_DURATION_MS = 10_000L
+    }
+}
+
+/**
+ * A run of whole ADTS frames, playable on its own
+ */
+class VoiceChunk(
+    val index: Int,
+    val bytes: ByteArray,
+    val durationUs: Long,
+    val frameCount: Int
+)
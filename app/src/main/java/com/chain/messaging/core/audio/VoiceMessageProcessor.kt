@@ -2,8 +2,11 @@ package com.chain.messaging.core.audio
 
 import android.content.Context
 import android.media.MediaMetadataRetriever
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import com.chain.messaging.domain.model.MediaMessage
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import java.io.File
@@ -15,8 +18,11 @@ import javax.inject.Singleton
  */
 @Singleton
 class VoiceMessageProcessor @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val waveformExtractor: WaveformExtractor
 ) {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
     
     /**
      * Process a recorded voice message
@@ -34,12 +40,14 @@ class VoiceMessageProcessor @Inject constructor(
             }
             
             val metadata = extractAudioMetadata(processedFile)
-            val waveformData = generateWaveformData(processedFile)
+            // Built while recording when available, so stopping does not wait on a decode
+            val waveform = recordingResult.waveform?.takeUnless { it.isEmpty() }
+                ?: generateWaveformData(processedFile)
             
             val mediaMessage = MediaMessage(
                 uri = processedFile.absolutePath,
                 fileName = processedFile.name,
-                mimeType = "audio/mp4",
+                mimeType = mimeTypeFor(processedFile),
                 fileSize = processedFile.length(),
                 duration = metadata.duration,
                 width = null,
@@ -48,8 +56,7 @@ class VoiceMessageProcessor @Inject constructor(
                 isLocal = true
             )
             
-            // Store waveform data separately (in a real implementation, this might be stored in the database)
-            storeWaveformData(processedFile.absolutePath, waveformData)
+            storeWaveformData(processedFile.absolutePath, waveform)
             
             Result.success(mediaMessage)
         } catch (e: Exception) {
@@ -113,54 +120,55 @@ class VoiceMessageProcessor @Inject constructor(
     }
     
     /**
-     * Generate waveform data for visualization
+     * Decode [file] and bucket its PCM levels for visualization
      */
-    private suspend fun generateWaveformData(file: File): List<Float> = withContext(Dispatchers.IO) {
-        try {
-            // Simplified waveform generation
-            // In a real implementation, you would analyze the audio samples
-            val duration = extractAudioMetadata(file).duration
-            val sampleCount = minOf(100, (duration / 100).toInt()) // Max 100 samples
-            
-            // Generate mock waveform data
-            (0 until sampleCount).map {
-                (Math.random() * 0.8 + 0.1).toFloat() // Random values between 0.1 and 0.9
-            }
+    private suspend fun generateWaveformData(file: File): Waveform {
+        return try {
+            waveformExtractor.extract(file)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            emptyList()
+            log.e(e) { "Failed to extract waveform from ${file.name}" }
+            Waveform.EMPTY
         }
     }
     
     /**
-     * Store waveform data (simplified implementation)
+     * Store waveform data in a binary sidecar next to the audio file
      */
-    private fun storeWaveformData(filePath: String, waveformData: List<Float>) {
+    private fun storeWaveformData(filePath: String, waveform: Waveform) {
+        if (waveform.isEmpty()) return
         try {
-            val waveformFile = File("${filePath}.waveform")
-            waveformFile.writeText(waveformData.joinToString(","))
+            waveform.writeTo(waveformFile(filePath))
         } catch (e: Exception) {
-            // Ignore waveform storage errors
+            // Ignore waveform storage errors; the waveform is extracted again on load
         }
     }
     
     /**
-     * Load waveform data
+     * Load waveform data. Messages without a readable sidecar, such as
+     * received ones or those stored by older versions, are decoded once and
+     * the result is kept for next time.
      */
-    suspend fun loadWaveformData(filePath: String): List<Float> = withContext(Dispatchers.IO) {
+    suspend fun loadWaveformData(filePath: String): Waveform = withContext(Dispatchers.IO) {
         try {
-            val waveformFile = File("${filePath}.waveform")
-            if (waveformFile.exists()) {
-                waveformFile.readText()
-                    .split(",")
-                    .mapNotNull { it.toFloatOrNull() }
-            } else {
-                emptyList()
-            }
+            Waveform.read(waveformFile(filePath))?.let { return@withContext it }
+            val audioFile = File(filePath)
+            if (!audioFile.exists()) return@withContext Waveform.EMPTY
+            generateWaveformData(audioFile).also { storeWaveformData(filePath, it) }
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            emptyList()
+            Waveform.EMPTY
         }
     }
     
+    private fun waveformFile(filePath: String): File = File("${filePath}.waveform")
+    
+    // Streamed recordings are ADTS; everything else is recorded as MPEG-4
+    private fun mimeTypeFor(file: File): String =
+        if (file.name.endsWith(".aac")) VoiceNoteManifest.MIME_TYPE else "audio/mp4"
+    
     /**
      * Optimize voice message for sending
      */
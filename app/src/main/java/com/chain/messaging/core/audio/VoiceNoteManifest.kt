@@ -0,0 +1,62 @@
+package com.chain.messaging.core.audio
+
+import com.chain.messaging.core.cloud.EncryptedLink
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import java.io.File
+
+/**
+ * Index of a voice note uploaded in chunks while it was recorded. Chunks are
+ * consecutive ADTS runs, so the recipient plays or stores them back to back.
+ * Each chunk link carries its own encryption key; the manifest itself only
+ * travels inside the end-to-end encrypted message.
+ */
+@Serializable
+data class VoiceNoteManifest(
+    val noteId: String,
+    val mimeType: String,
+    val durationMs: Long,
+    val sizeBytes: Long,
+    val chunks: List<VoiceNoteChunk>
+) {
+    fun toJson(): String = json.encodeToString(this)
+
+    fun writeTo(file: File) {
+        file.writeText(toJson())
+    }
+
+    companion object {
+        const val MIME_TYPE = "audio/aac"
+
+        private val json = Json {
+            ignoreUnknownKeys = true
+            encodeDefaults = true
+        }
+
+        fun fromJson(text: String): VoiceNoteManifest = json.decodeFromString(text)
+
+        /**
+         * Manifest kept next to a streamed recording, or null if it was not streamed
+         */
+        fun read(audioPath: String): VoiceNoteManifest? {
+            val file = sidecarFor(audioPath)
+            if (!file.isFile) return null
+            return try {
+                fromJson(file.readText())
+            } catch (e: Exception) {
+                null
+            }
+        }
+
+        fun sidecarFor(audioPath: String): File = File("$audioPath.manifest")
+    }
+}
+
+@Serializable
+data class VoiceNoteChunk(
+    val index: Int,
+    val durationMs: Long,
+    val sizeBytes: Long,
+    val link: EncryptedLink
+)
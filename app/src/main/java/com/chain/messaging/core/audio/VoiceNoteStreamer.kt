@@ -0,0 +1,237 @@
+package com.chain.messaging.core.audio
+
+import android.content.Context
+import com.chain.messaging.core.cloud.CloudAuthManager
+import com.chain.messaging.core.cloud.CloudService
+import com.chain.messaging.core.cloud.CloudStorageManager
+import com.chain.messaging.core.cloud.EncryptedLink
+import com.chain.messaging.core.cloud.UploadResult
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.LatencyHistogram
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Opens streaming uploads for voice notes, so a note is mostly uploaded by
+ * the time the user lets go of the record button. Chunks go through
+ * [CloudStorageManager], which encrypts each one under its own key.
+ */
+@Singleton
+class VoiceNoteStreamer @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val cloudStorageManager: CloudStorageManager,
+    private val cloudAuthManager: CloudAuthManager,
+    metricsRegistry: MetricsRegistry
+) {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    private val releaseToSent = metricsRegistry.histogram(HotPathMetrics.VOICE_RELEASE_TO_SENT)
+
+    /**
+     * Start a stream for a new recording, or null when no cloud account is
+     * signed in; the note is then sent whole after recording as before
+     */
+    suspend fun open(): VoiceNoteStream? = withContext(Dispatchers.IO) {
+        val service = try {
+            cloudAuthManager.getAuthenticatedAccounts().firstOrNull()?.service
+        } catch (e: Exception) {
+            log.e(e) { "Failed to look up cloud accounts for voice streaming" }
+            null
+        } ?: return@withContext null
+
+        val root = File(context.cacheDir, STAGING_DIR)
+        removeStaleStaging(root)
+        val noteId = UUID.randomUUID().toString()
+        VoiceNoteStream(
+            noteId = noteId,
+            stagingDir = File(root, noteId),
+            uploader = CloudChunkUploader(service),
+            releaseToSent = releaseToSent
+        )
+    }
+
+    // Staging left behind by a process that died mid-recording
+    private fun removeStaleStaging(root: File) {
+        val cutoff = System.currentTimeMillis() - STALE_STAGING_MS
+        root.listFiles()?.filter { it.lastModified() < cutoff }?.forEach { it.deleteRecursively() }
+    }
+
+    private inner class CloudChunkUploader(private val service: CloudService) : VoiceChunkUploader {
+
+        override suspend fun upload(file: File): EncryptedLink {
+            return when (val result = cloudStorageManager.uploadFile(file, service).first { it !is UploadResult.Progress }) {
+                is UploadResult.Success -> result.encryptedLink
+                is UploadResult.Error -> throw IOException(result.message, result.cause)
+                is UploadResult.Progress -> throw IllegalStateException("Unexpected progress")
+            }
+        }
+
+        override suspend fun delete(link: EncryptedLink) {
+            cloudStorageManager.deleteFile(link)
+        }
+    }
+
+    private companion object {
+        const val STAGING_DIR = "voice_stream"
+        const val STALE_STAGING_MS = 24 * 60 * 60 * 1000L
+    }
+}
+
+/**
+ * Destination of a voice note's chunks
+ */
+interface VoiceChunkUploader {
+    suspend fun upload(file: File): EncryptedLink
+
+    suspend fun delete(link: EncryptedLink)
+}
+
+/**
+ * One recording's streaming upload.
+ *
+ * [onFrame] receives encoded frames from the recorder thread. Every
+ * [chunkDurationMs] of audio becomes a chunk that is staged in [stagingDir]
+ * and uploaded in order in the background. [finish] flushes the trailing
+ * chunk, waits for outstanding uploads and returns the manifest to send.
+ */
+class VoiceNoteStream(
+    val noteId: String,
+    private val stagingDir: File,
+    private val uploader: VoiceChunkUploader,
+    private val releaseToSent: LatencyHistogram? = null,
+    chunkDurationMs: Long = VoiceChunkAssembler.DEFAULT_CHUNK_DURATION_MS
+) {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val assembler = VoiceChunkAssembler(chunkDurationMs)
+    private val staged = Channel<StagedChunk>(Channel.UNLIMITED)
+    private val uploaded = mutableListOf<VoiceNoteChunk>()
+    private val failed = mutableListOf<StagedChunk>()
+    private val stagedCount = AtomicInteger()
+    private val durationUs = AtomicLong()
+
+    @Volatile
+    private var stageError: Exception? = null
+
+    private val uploadJob = scope.launch {
+        for (chunk in staged) upload(chunk)
+    }
+
+    /**
+     * Append one encoded ADTS frame. Called on the recorder's reader thread.
+     */
+    fun onFrame(frame: ByteArray) {
+        val chunk = synchronized(assembler) { assembler.add(frame) } ?: return
+        stage(chunk)
+    }
+
+    /**
+     * Chunks staged but not yet uploaded or failed
+     */
+    fun pendingUploads(): Int = stagedCount.get() - synchronized(uploaded) { uploaded.size } - synchronized(failed) { failed.size }
+
+    /**
+     * Flush the trailing chunk and wait until every chunk is uploaded. Chunks
+     * that failed while recording, for example while offline, get one more
+     * attempt here.
+     */
+    suspend fun finish(): VoiceNoteManifest {
+        val releasedAt = System.nanoTime()
+        try {
+            synchronized(assembler) { assembler.flush() }?.let { stage(it) }
+            staged.close()
+            uploadJob.join()
+
+            val retry = synchronized(failed) { failed.toList().also { failed.clear() } }
+            retry.forEach { upload(it) }
+
+            stageError?.let { throw IOException("Failed to stage voice chunk", it) }
+            val missing = synchronized(failed) { failed.size }
+            if (missing > 0) throw IOException("$missing voice chunks failed to upload")
+
+            val chunks = synchronized(uploaded) { uploaded.sortedBy { it.index } }
+            return VoiceNoteManifest(
+                noteId = noteId,
+                mimeType = VoiceNoteManifest.MIME_TYPE,
+                durationMs = durationUs.get() / 1_000,
+                sizeBytes = chunks.sumOf { it.sizeBytes },
+                chunks = chunks
+            ).also { releaseToSent?.recordSince(releasedAt) }
+        } finally {
+            stagingDir.deleteRecursively()
+            scope.cancel()
+        }
+    }
+
+    /**
+     * Stop uploading and delete what was already uploaded
+     */
+    suspend fun cancel() {
+        staged.close()
+        scope.cancel()
+        stagingDir.deleteRecursively()
+        val links = synchronized(uploaded) { uploaded.map { it.link } }
+        links.forEach { link ->
+            try {
+                uploader.delete(link)
+            } catch (e: Exception) {
+                log.e(e) { "Failed to delete voice chunk of cancelled note $noteId" }
+            }
+        }
+    }
+
+    private fun stage(chunk: VoiceChunk) {
+        durationUs.addAndGet(chunk.durationUs)
+        try {
+            stagingDir.mkdirs()
+            val file = File(stagingDir, "${noteId}_${chunk.index}.aac")
+            file.writeBytes(chunk.bytes)
+            stagedCount.incrementAndGet()
+            staged.trySend(StagedChunk(chunk.index, file, chunk.bytes.size.toLong(), chunk.durationUs))
+        } catch (e: Exception) {
+            log.e(e) { "Failed to stage chunk ${chunk.index} of $noteId" }
+            stageError = e
+        }
+    }
+
+    private suspend fun upload(chunk: StagedChunk) {
+        try {
+            val link = uploader.upload(chunk.file)
+            synchronized(uploaded) {
+                uploaded += VoiceNoteChunk(chunk.index, chunk.durationUs / 1_000, chunk.sizeBytes, link)
+            }
+            chunk.file.delete()
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            log.e(e) { "Failed to upload chunk ${chunk.index} of $noteId" }
+            synchronized(failed) { failed += chunk }
+        }
+    }
+
+    private class StagedChunk(
+        val index: Int,
+        val file: File,
+        val sizeBytes: Long,
+        val durationUs: Long
+    )
+}
@@ -5,12 +5,16 @@ import android.content.Context
 import android.content.pm.PackageManager
 import android.media.MediaRecorder
 import android.os.Build
+import android.os.ParcelFileDescriptor
 import androidx.core.content.ContextCompat
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import java.io.File
+import java.io.FileOutputStream
 import java.io.IOException
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -27,6 +31,16 @@ class VoiceRecorder @Inject constructor(
     private var outputFile: File? = null
     private var startTime: Long = 0
     
+    // Streaming mode: the recorder writes ADTS into a pipe drained by frameReader
+    private var pipeWriter: ParcelFileDescriptor? = null
+    private var frameReader: Thread? = null
+    
+    // Filled by the amplitude thread, read when recording stops
+    private val waveformLock = Any()
+    private var waveformBuilder = WaveformBuilder()
+    
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    
     private val _recordingState = MutableStateFlow(RecordingState.IDLE)
     val recordingState: StateFlow<RecordingState> = _recordingState.asStateFlow()
     
@@ -47,9 +61,12 @@ class VoiceRecorder @Inject constructor(
     }
     
     /**
-     * Start recording voice message
+     * Start recording voice message. With [onEncodedFrame], the recording is
+     * written as an ADTS stream and every encoded frame is also handed to
+     * [onEncodedFrame] on a background thread as soon as the encoder
+     * produces it.
      */
-    suspend fun startRecording(): Result<File> {
+    suspend fun startRecording(onEncodedFrame: ((ByteArray) -> Unit)? = null): Result<File> {
         return try {
             if (!hasRecordingPermission()) {
                 return Result.failure(SecurityException("Recording permission not granted"))
@@ -65,7 +82,9 @@ class VoiceRecorder @Inject constructor(
                 audioDir.mkdirs()
             }
             
-            outputFile = File(audioDir, "voice_${System.currentTimeMillis()}.m4a")
+            val streaming = onEncodedFrame != null
+            val extension = if (streaming) "aac" else "m4a"
+            outputFile = File(audioDir, "voice_${System.currentTimeMillis()}.$extension")
             
             // Initialize MediaRecorder
             mediaRecorder = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
@@ -75,17 +94,26 @@ class VoiceRecorder @Inject constructor(
                 MediaRecorder()
             }.apply {
                 setAudioSource(MediaRecorder.AudioSource.MIC)
-                setOutputFormat(MediaRecorder.OutputFormat.MPEG_4)
+                setOutputFormat(if (streaming) MediaRecorder.OutputFormat.AAC_ADTS else MediaRecorder.OutputFormat.MPEG_4)
                 setAudioEncoder(MediaRecorder.AudioEncoder.AAC)
                 setAudioEncodingBitRate(128000)
                 setAudioSamplingRate(44100)
-                setOutputFile(outputFile!!.absolutePath)
+                if (onEncodedFrame != null) {
+                    // MPEG-4 needs a seekable output; ADTS can be written to a pipe
+                    val (reader, writer) = ParcelFileDescriptor.createPipe()
+                    pipeWriter = writer
+                    frameReader = startFrameReader(reader, outputFile!!, onEncodedFrame)
+                    setOutputFile(writer.fileDescriptor)
+                } else {
+                    setOutputFile(outputFile!!.absolutePath)
+                }
                 
                 prepare()
                 start()
             }
             
             startTime = System.currentTimeMillis()
+            synchronized(waveformLock) { waveformBuilder = WaveformBuilder() }
             _recordingState.value = RecordingState.RECORDING
             
             // Start amplitude monitoring
@@ -111,6 +139,8 @@ class VoiceRecorder @Inject constructor(
                 stop()
                 release()
             }
+            mediaRecorder = null
+            finishFrameReader()
             
             val recordingDuration = System.currentTimeMillis() - startTime
             val file = outputFile ?: return Result.failure(IllegalStateException("No output file"))
@@ -122,7 +152,8 @@ class VoiceRecorder @Inject constructor(
             val result = VoiceRecordingResult(
                 file = file,
                 duration = recordingDuration,
-                fileSize = file.length()
+                fileSize = file.length(),
+                waveform = synchronized(waveformLock) { waveformBuilder.build() }
             )
             
             cleanup()
@@ -146,6 +177,8 @@ class VoiceRecorder @Inject constructor(
                 stop()
                 release()
             }
+            mediaRecorder = null
+            finishFrameReader()
             
             // Delete the file
             outputFile?.delete()
@@ -163,18 +196,22 @@ class VoiceRecorder @Inject constructor(
     }
     
     /**
-     * Start monitoring amplitude for waveform visualization
+     * Start monitoring amplitude for waveform visualization. Each poll reads
+     * the peak level since the previous one, so every poll is also one bucket
+     * of the message's waveform, built here off the main thread while
+     * recording.
      */
     private fun startAmplitudeMonitoring() {
-        // This would typically be done in a coroutine with a timer
-        // For now, we'll simulate amplitude changes
         Thread {
             while (_recordingState.value == RecordingState.RECORDING) {
                 try {
                     val amplitude = mediaRecorder?.maxAmplitude ?: 0
                     _amplitude.value = amplitude
                     _duration.value = System.currentTimeMillis() - startTime
-                    Thread.sleep(100) // Update every 100ms
+                    synchronized(waveformLock) {
+                        waveformBuilder.addLevel(amplitude / MAX_AMPLITUDE)
+                    }
+                    Thread.sleep(Waveform.DEFAULT_BUCKET_MS.toLong())
                 } catch (e: Exception) {
                     break
                 }
@@ -182,15 +219,55 @@ class VoiceRecorder @Inject constructor(
         }.start()
     }
     
+    /**
+     * Copy the recorder's ADTS output to [file] frame by frame, passing each
+     * frame on as it arrives
+     */
+    private fun startFrameReader(
+        pipe: ParcelFileDescriptor,
+        file: File,
+        onEncodedFrame: (ByteArray) -> Unit
+    ): Thread = Thread({
+        try {
+            AdtsFrameReader(ParcelFileDescriptor.AutoCloseInputStream(pipe)).use { reader ->
+                FileOutputStream(file).use { output ->
+                    while (true) {
+                        val frame = reader.read() ?: break
+                        output.write(frame)
+                        onEncodedFrame(frame)
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            log.e(e) { "Voice frame reader stopped" }
+        }
+    }, "VoiceFrameReader").apply { start() }
+    
+    /**
+     * Close the pipe's write end and wait for the reader to drain it
+     */
+    private fun finishFrameReader() {
+        pipeWriter?.close()
+        pipeWriter = null
+        frameReader?.join(FRAME_READER_JOIN_MS)
+        frameReader = null
+    }
+    
     /**
      * Clean up resources
      */
     private fun cleanup() {
         mediaRecorder?.release()
         mediaRecorder = null
+        finishFrameReader()
         outputFile = null
         startTime = 0
     }
+    
+    private companion object {
+        const val MAX_AMPLITUDE = 32767f
+        const val FRAME_READER_JOIN_MS = 2_000L
+    }
 }
 
 /**
@@ -208,5 +285,6 @@ enum class RecordingState {
 data class VoiceRecordingResult(
     val file: File,
     val duration: Long,
-    val fileSize: Long
+    val fileSize: Long,
+    val waveform: Waveform? = null
 )
\ No newline at end of file
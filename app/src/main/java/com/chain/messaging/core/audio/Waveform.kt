@@ -0,0 +1,232 @@
+package com.chain.messaging.core.audio
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ShortBuffer
+import kotlin.math.sqrt
+
+/**
+ * Peak and RMS levels of a voice message in fixed-length buckets.
+ *
+ * The levels are kept in their serialized layout, so loading a sidecar is one
+ * file read and a header check:
+ *
+ * ```
+ * 0   magic            int, "CWF1"
+ * 4   bucketDurationMs int
+ * 8   bucketCount      int
+ * 12  peaks            bucketCount unsigned bytes
+ * 12+n rms             bucketCount unsigned bytes
+ * ```
+ *
+ * Levels are linear, 255 being full scale. A bucket's RMS is 0 when it was
+ * built from peak levels alone.
+ */
+class Waveform private constructor(private val data: ByteArray) {
+
+    val bucketDurationMs: Int = ByteBuffer.wrap(data).getInt(DURATION_OFFSET)
+    val bucketCount: Int = ByteBuffer.wrap(data).getInt(COUNT_OFFSET)
+
+    val durationMs: Long
+        get() = bucketCount.toLong() * bucketDurationMs
+
+    fun isEmpty(): Boolean = bucketCount == 0
+
+    fun peak(index: Int): Float = level(HEADER_BYTES + index)
+
+    fun rms(index: Int): Float = level(HEADER_BYTES + bucketCount + index)
+
+    /**
+     * Downsample to [count] bars for drawing. Each bar is the loudest peak in
+     * its span, relative to the loudest peak overall, so quiet recordings
+     * still fill the bubble.
+     */
+    fun bars(count: Int): FloatArray {
+        if (count <= 0 || bucketCount == 0) return FloatArray(0)
+        val bars = FloatArray(count)
+        var loudest = 0
+        for (bar in 0 until count) {
+            val start = (bar.toLong() * bucketCount / count).toInt()
+            val end = maxOf(start + 1, ((bar + 1).toLong() * bucketCount / count).toInt()).coerceAtMost(bucketCount)
+            var max = 0
+            for (i in start until end) {
+                max = maxOf(max, data[HEADER_BYTES + i].toInt() and 0xFF)
+            }
+            bars[bar] = max.toFloat()
+            loudest = maxOf(loudest, max)
+        }
+        if (loudest > 0) {
+            for (i in bars.indices) bars[i] /= loudest
+        }
+        return bars
+    }
+
+    /**
+     * Serialized form; the same bytes [fromBytes] accepts
+     */
+    fun toByteArray(): ByteArray = data.copyOf()
+
+    fun writeTo(file: File) {
+        file.writeBytes(data)
+    }
+
+    private fun level(offset: Int): Float = (data[offset].toInt() and 0xFF) / MAX_LEVEL.toFloat()
+
+    companion object {
+        const val DEFAULT_BUCKET_MS = 100
+        private const val MAGIC = 0x43574631 // "CWF1"
+        private const val DURATION_OFFSET = 4
+        private const val COUNT_OFFSET = 8
+        private const val HEADER_BYTES = 12
+        internal const val MAX_LEVEL = 255
+
+        val EMPTY: Waveform = of(DEFAULT_BUCKET_MS, ByteArray(0), ByteArray(0), 0)
+
+        /**
+         * Wrap a serialized waveform, or null if [bytes] is not one (for
+         * example a sidecar left by an older version)
+         */
+        fun fromBytes(bytes: ByteArray): Waveform? {
+            if (bytes.size < HEADER_BYTES) return null
+            val header = ByteBuffer.wrap(bytes)
+            if (header.getInt(0) != MAGIC) return null
+            val count = header.getInt(COUNT_OFFSET)
+            if (count < 0 || header.getInt(DURATION_OFFSET) <= 0) return null
+            if (bytes.size.toLong() != HEADER_BYTES + 2L * count) return null
+            return Waveform(bytes)
+        }
+
+        fun read(file: File): Waveform? = if (file.isFile) fromBytes(file.readBytes()) else null
+
+        internal fun of(bucketDurationMs: Int, peaks: ByteArray, rms: ByteArray, count: Int): Waveform {
+            val data = ByteArray(HEADER_BYTES + 2 * count)
+            ByteBuffer.wrap(data)
+                .putInt(MAGIC)
+                .putInt(bucketDurationMs)
+                .putInt(count)
+            System.arraycopy(peaks, 0, data, HEADER_BYTES, count)
+            System.arraycopy(rms, 0, data, HEADER_BYTES + count, count)
+            return Waveform(data)
+        }
+    }
+}
+
+/**
+ * Single-pass bucketing of audio levels into a [Waveform].
+ *
+ * Fed either with 16-bit PCM, from which peak and RMS are computed as the
+ * samples stream through, or with ready-made per-bucket levels. Not
+ * thread-safe.
+ */
+class WaveformBuilder(
+    private val bucketDurationMs: Int = Waveform.DEFAULT_BUCKET_MS,
+    expectedDurationMs: Long = 0L
+) {
+
+    private var peaks = ByteArray(initialCapacity(expectedDurationMs))
+    private var rms = ByteArray(peaks.size)
+    private var count = 0
+
+    // Bucket currently being filled from PCM
+    private var samplesPerBucket = 0
+    private var bucketSamples = 0
+    private var bucketPeak = 0
+    private var bucketSumSquares = 0.0
+
+    val bucketCount: Int
+        get() = count
+
+    /**
+     * Format of the PCM passed to [addPcm16]. A change mid-stream closes the
+     * current bucket.
+     */
+    fun setFormat(sampleRate: Int, channelCount: Int) {
+        require(sampleRate > 0 && channelCount > 0) { "Invalid PCM format $sampleRate Hz x $channelCount" }
+        val perBucket = (sampleRate.toLong() * channelCount * bucketDurationMs / 1000).toInt().coerceAtLeast(1)
+        if (perBucket != samplesPerBucket && bucketSamples > 0) closeBucket()
+        samplesPerBucket = perBucket
+    }
+
+    /**
+     * Consume interleaved 16-bit samples from [samples]'s position to its limit
+     */
+    fun addPcm16(samples: ShortBuffer) {
+        check(samplesPerBucket > 0) { "setFormat must be called before adding PCM" }
+        var peak = bucketPeak
+        var sumSquares = bucketSumSquares
+        var filled = bucketSamples
+        for (i in samples.position() until samples.limit()) {
+            val sample = samples.get(i).toInt()
+            val magnitude = if (sample < 0) -sample else sample
+            if (magnitude > peak) peak = magnitude
+            sumSquares += sample.toDouble() * sample
+            if (++filled == samplesPerBucket) {
+                bucketPeak = peak
+                bucketSumSquares = sumSquares
+                bucketSamples = filled
+                closeBucket()
+                peak = 0
+                sumSquares = 0.0
+                filled = 0
+            }
+        }
+        samples.position(samples.limit())
+        bucketPeak = peak
+        bucketSumSquares = sumSquares
+        bucketSamples = filled
+    }
+
+    fun addPcm16(samples: ShortArray, offset: Int = 0, length: Int = samples.size - offset) {
+        addPcm16(ShortBuffer.wrap(samples, offset, length))
+    }
+
+    /**
+     * Append one bucket from levels measured elsewhere, as fractions of full
+     * scale
+     */
+    fun addLevel(peak: Float, rms: Float = 0f) {
+        append(quantize(peak), quantize(rms))
+    }
+
+    /**
+     * Close any partly filled bucket and return the waveform so far
+     */
+    fun build(): Waveform {
+        if (bucketSamples > 0) closeBucket()
+        return Waveform.of(bucketDurationMs, peaks, rms, count)
+    }
+
+    private fun closeBucket() {
+        val peak = bucketPeak / FULL_SCALE
+        val rms = sqrt(bucketSumSquares / bucketSamples).toFloat() / FULL_SCALE
+        append(quantize(peak), quantize(rms))
+        bucketPeak = 0
+        bucketSumSquares = 0.0
+        bucketSamples = 0
+    }
+
+    private fun append(peak: Byte, rmsLevel: Byte) {
+        if (count == peaks.size) {
+            val capacity = maxOf(MIN_CAPACITY, peaks.size * 2)
+            peaks = peaks.copyOf(capacity)
+            rms = rms.copyOf(capacity)
+        }
+        peaks[count] = peak
+        rms[count] = rmsLevel
+        count++
+    }
+
+    private fun quantize(level: Float): Byte =
+        (level.coerceIn(0f, 1f) * Waveform.MAX_LEVEL + 0.5f).toInt().toByte()
+
+    private fun initialCapacity(expectedDurationMs: Long): Int =
+        if (expectedDurationMs <= 0L) MIN_CAPACITY
+        else (expectedDurationMs / bucketDurationMs + 1).coerceIn(MIN_CAPACITY.toLong(), MAX_PRESIZE.toLong()).toInt()
+
+    private companion object {
+        const val FULL_SCALE = 32768f
+        const val MIN_CAPACITY = 64
+        // An hour of 100 ms buckets
+        const val MAX_PRESIZE = 36_000
+    }
+}
@@ -0,0 +1,123 @@
+package com.chain.messaging.core.audio
+
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.performance.metrics.time
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import java.nio.ByteOrder
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Decodes a voice message to PCM with [MediaCodec] and buckets it into a
+ * [Waveform] as the decoder produces output. Nothing larger than one decoder
+ * buffer is held in memory, whatever the length of the recording.
+ */
+@Singleton
+class WaveformExtractor @Inject constructor(
+    metricsRegistry: MetricsRegistry
+) {
+
+    private val extractLatency = metricsRegistry.histogram(HotPathMetrics.VOICE_WAVEFORM_EXTRACT)
+
+    suspend fun extract(file: File, bucketDurationMs: Int = Waveform.DEFAULT_BUCKET_MS): Waveform = withContext(Dispatchers.IO) {
+        extractLatency.time { decode(file, bucketDurationMs) }
+    }
+
+    private suspend fun decode(file: File, bucketDurationMs: Int): Waveform {
+        val extractor = MediaExtractor()
+        var decoder: MediaCodec? = null
+        try {
+            extractor.setDataSource(file.absolutePath)
+            val track = (0 until extractor.trackCount).firstOrNull { index ->
+                extractor.getTrackFormat(index).getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true
+            } ?: throw IOException("No audio track in ${file.name}")
+            extractor.selectTrack(track)
+
+            val format = extractor.getTrackFormat(track)
+            val durationMs = if (format.containsKey(MediaFormat.KEY_DURATION)) format.getLong(MediaFormat.KEY_DURATION) / 1_000 else 0L
+            val builder = WaveformBuilder(bucketDurationMs, durationMs)
+            builder.setFormat(
+                format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+            )
+
+            val codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME)!!)
+            decoder = codec
+            codec.configure(format, null, null, 0)
+            codec.start()
+
+            val info = MediaCodec.BufferInfo()
+            var inputDone = false
+            var outputDone = false
+            while (!outputDone) {
+                coroutineContext.ensureActive()
+
+                if (!inputDone) {
+                    val inputIndex = codec.dequeueInputBuffer(TIMEOUT_US)
+                    if (inputIndex >= 0) {
+                        val input = codec.getInputBuffer(inputIndex)!!
+                        val size = extractor.readSampleData(input, 0)
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                            inputDone = true
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.sampleTime, 0)
+                            extractor.advance()
+                        }
+                    }
+                }
+
+                val outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US)
+                when {
+                    outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED -> {
+                        val output = codec.outputFormat
+                        if (output.containsKey(MediaFormat.KEY_PCM_ENCODING) &&
+                            output.getInteger(MediaFormat.KEY_PCM_ENCODING) != AudioFormat.ENCODING_PCM_16BIT
+                        ) {
+                            throw IOException("Unsupported PCM encoding ${output.getInteger(MediaFormat.KEY_PCM_ENCODING)}")
+                        }
+                        builder.setFormat(
+                            output.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                            output.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                        )
+                    }
+                    outputIndex >= 0 -> {
+                        if (info.size > 0) {
+                            val output = codec.getOutputBuffer(outputIndex)!!
+                            output.position(info.offset)
+                            output.limit(info.offset + info.size)
+                            builder.addPcm16(output.slice().order(ByteOrder.nativeOrder()).asShortBuffer())
+                        }
+                        codec.releaseOutputBuffer(outputIndex, false)
+                        outputDone = info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0
+                    }
+                }
+            }
+            return builder.build()
+        } finally {
+            decoder?.let {
+                try {
+                    it.stop()
+                } catch (e: IllegalStateException) {
+                    // Never started
+                }
+                it.release()
+            }
+            extractor.release()
+        }
+    }
+
+    private companion object {
+        const val TIMEOUT_US = 10_000L
+    }
+}
@@ -0,0 +1,396 @@
+package com.chain.messaging.core.blockchain
+
+import com.chain.messaging.core.performance.memory.AllocationSampler
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.memory.WatchedObjectKind
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.WebSocket
+import okhttp3.WebSocketListener
+import okio.ByteString
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.ceil
+import kotlin.random.Random
+
+/**
+ * Lifecycle of the WebSocket connection to a blockchain node
+ */
+sealed class BlockchainConnectionState {
+    object Disconnected : BlockchainConnectionState()
+
+    data class Connecting(
+        val nodeUrl: String,
+        val attempt: Int
+    ) : BlockchainConnectionState()
+
+    data class Connected(
+        val nodeUrl: String,
+        val connectedAt: Long,
+        val handshakeMs: Long
+    ) : BlockchainConnectionState()
+
+    data class Failed(
+        val nodeUrl: String,
+        val reason: String
+    ) : BlockchainConnectionState()
+}
+
+/**
+ * Timeouts, keep-alive and reconnection limits for the node connection
+ */
+data class ConnectionPolicy(
+    val connectTimeoutMs: Long = 10_000L,
+    val pingIntervalMs: Long = 20_000L,
+    val initialBackoffMs: Long = 500L,
+    val maxBackoffMs: Long = 30_000L,
+    val maxReconnectAttempts: Int = 10
+)
+
+/**
+ * Handshake timing and failure counters
+ */
+data class ConnectionStats(
+    val attempts: Int,
+    val failures: Int,
+    val reconnects: Int,
+    val p50HandshakeMs: Long,
+    val p99HandshakeMs: Long
+)
+
+/**
+ * Exponential backoff with "equal jitter": half of the capped delay is fixed and
+ * half is random, so clients that dropped together do not retry in lockstep.
+ */
+class ReconnectBackoff(
+    private val initialMs: Long,
+    private val maxMs: Long,
+    private val random: Random = Random.Default
+) {
+    fun delayFor(attempt: Int): Long {
+        val exponential = initialMs shl attempt.coerceIn(0, 20)
+        val capped = exponential.coerceAtMost(maxMs)
+        val half = capped / 2
+        return half + random.nextLong(half + 1)
+    }
+}
+
+/**
+ * Ordered node list that sticks to the last node that worked and rotates on failure
+ */
+class NodeFailover(val nodes: List<String>) {
+
+    private var index = 0
+
+    init {
+        require(nodes.isNotEmpty()) { "At least one node URL is required" }
+    }
+
+    val current: String
+        @Synchronized get() = nodes[index]
+
+    @Synchronized
+    fun onSuccess(nodeUrl: String) {
+        val position = nodes.indexOf(nodeUrl)
+        if (position >= 0) index = position
+    }
+
+    @Synchronized
+    fun onFailure(nodeUrl: String) {
+        if (nodes[index] == nodeUrl) index = (index + 1) % nodes.size
+    }
+
+    /**
+     * All nodes, starting with the current one
+     */
+    @Synchronized
+    fun fromCurrent(): List<String> = nodes.drop(index) + nodes.take(index)
+}
+
+/**
+ * WebSocket connection to the blockchain network. Readiness is driven by the
+ * socket callbacks through [state]: connect returns as soon as onOpen fires and
+ * fails as soon as onFailure fires, bounded by the policy's connect timeout.
+ * Dropped connections are re-established with jittered backoff, rotating
+ * through the configured nodes.
+ */
+class BlockchainConnection(
+    private val socketFactory: WebSocket.Factory,
+    private val scope: CoroutineScope,
+    private val policy: ConnectionPolicy = ConnectionPolicy(),
+    private val backoff: ReconnectBackoff = ReconnectBackoff(policy.initialBackoffMs, policy.maxBackoffMs),
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000 },
+    private val onText: (String) -> Unit
+) {
+
+    private val _state = MutableStateFlow<BlockchainConnectionState>(BlockchainConnectionState.Disconnected)
+    val state: StateFlow<BlockchainConnectionState> = _state.asStateFlow()
+
+    private val connectMutex = Mutex()
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
+    private val stateLock = Any()
+
+    // Bumped for every socket; callbacks from older sockets are ignored
+    @Volatile
+    private var generation = 0L
+    private var socket: WebSocket? = null
+    private var failover: NodeFailover? = null
+    private var reconnectJob: Job? = null
+
+    @Volatile
+    private var closedByClient = true
+
+    private val attempts = AtomicInteger()
+    private val failures = AtomicInteger()
+    private val reconnects = AtomicInteger()
+    private val handshakeSamples = LongArray(HANDSHAKE_SAMPLE_SIZE)
+    private var handshakeCount = 0
+
+    val isConnected: Boolean
+        get() = _state.value is BlockchainConnectionState.Connected
+
+    /**
+     * Connect to the first reachable node in [nodeUrls], trying each once
+     * in order. Throws if none of them completes the handshake.
+     */
+    suspend fun connect(nodeUrls: List<String>) {
+        cancelReconnect()
+        connectMutex.withLock {
+            closedByClient = false
+            val nodes = NodeFailover(nodeUrls)
+            failover = nodes
+
+            var lastReason = "no nodes"
+            repeat(nodes.nodes.size) { attempt ->
+                if (closedByClient) throw IOException("Disconnected while connecting")
+                val node = nodes.current
+                when (val result = openSocket(node, attempt)) {
+                    is BlockchainConnectionState.Connected -> {
+                        nodes.onSuccess(node)
+                        return
+                    }
+                    is BlockchainConnectionState.Failed -> lastReason = result.reason
+                    else -> lastReason = result.toString()
+                }
+                nodes.onFailure(node)
+            }
+            throw IOException("Could not connect to any blockchain node: $lastReason")
+        }
+    }
+
+    /**
+     * Reconnect immediately to the node list of the last [connect] call
+     */
+    suspend fun reconnect() {
+        val nodes = failover ?: throw IllegalStateException("No previous connection to reconnect to")
+        connect(nodes.fromCurrent())
+    }
+
+    /**
+     * Close the socket and stop reconnecting
+     */
+    fun disconnect() {
+        closedByClient = true
+        cancelReconnect()
+        synchronized(stateLock) {
+            generation++
+            socket?.close(NORMAL_CLOSURE, "Client disconnect")
+            socket = null
+            _state.value = BlockchainConnectionState.Disconnected
+        }
+    }
+
+    /**
+     * Send a text frame; false if there is no open connection
+     */
+    fun send(text: String): Boolean {
+        if (!isConnected) return false
+        return synchronized(stateLock) { socket }?.send(text) ?: false
+    }
+
+    fun getStats(): ConnectionStats {
+        val sorted = synchronized(handshakeSamples) {
+            handshakeSamples.copyOf(handshakeCount.coerceAtMost(HANDSHAKE_SAMPLE_SIZE))
+        }.sortedArray()
+        return ConnectionStats(
+            attempts = attempts.get(),
+            failures = failures.get(),
+            reconnects = reconnects.get(),
+            p50HandshakeMs = percentile(sorted, 0.50),
+            p99HandshakeMs = percentile(sorted, 0.99)
+        )
+    }
+
+    private suspend fun openSocket(nodeUrl: String, attempt: Int): BlockchainConnectionState {
+        val socketGeneration = synchronized(stateLock) {
+            socket?.cancel()
+            socket = null
+            generation++
+            _state.value = BlockchainConnectionState.Connecting(nodeUrl, attempt)
+            generation
+        }
+        attempts.incrementAndGet()
+
+        val request = Request.Builder().url(nodeUrl).build()
+        val newSocket = socketFactory.newWebSocket(request, Listener(socketGeneration, nodeUrl, clock()))
+        synchronized(stateLock) {
+            if (generation == socketGeneration) socket = newSocket else newSocket.cancel()
+        }
+
+        val settled = withTimeoutOrNull(policy.connectTimeoutMs) {
+            _state.first { it !is BlockchainConnectionState.Connecting }
+        }
+        if (settled == null) {
+            newSocket.cancel()
+            transitionToFailed(socketGeneration, nodeUrl, "Handshake timed out after ${policy.connectTimeoutMs}ms")
+        }
+        return _state.value
+    }
+
+    private fun transitionToFailed(socketGeneration: Long, nodeUrl: String, reason: String) {
+        synchronized(stateLock) {
+            if (socketGeneration != generation) return
+            val wasConnected = _state.value is BlockchainConnectionState.Connected
+            socket = null
+            _state.value = BlockchainConnectionState.Failed(nodeUrl, reason)
+            failures.incrementAndGet()
+            // Failures while connecting are handled by the connect loop itself
+            if (wasConnected && !closedByClient) scheduleReconnect()
+        }
+    }
+
+    private fun scheduleReconnect() {
+        if (reconnectJob?.isActive == true) return
+        val nodes = failover ?: return
+        reconnectJob = scope.launch {
+            var attempt = 0
+            while (isActive && !closedByClient && attempt < policy.maxReconnectAttempts) {
+                delay(backoff.delayFor(attempt))
+                val node = nodes.current
+                val result = connectMutex.withLock {
+                    if (closedByClient || isConnected) null else openSocket(node, attempt + 1)
+                }
+                if (result == null) return@launch
+                if (result is BlockchainConnectionState.Connected) {
+                    nodes.onSuccess(node)
+                    reconnects.incrementAndGet()
+                    log.i { "Reconnected to $node after ${attempt + 1} attempts" }
+                    return@launch
+                }
+                log.w { "Reconnect attempt ${attempt + 1} to $node failed" }
+                nodes.onFailure(node)
+                attempt++
+            }
+            if (!closedByClient && !isConnected) {
+                log.e { "Giving up reconnecting after $attempt attempts" }
+            }
+        }
+    }
+
+    private fun cancelReconnect() {
+        synchronized(stateLock) {
+            reconnectJob?.cancel()
+            reconnectJob = null
+        }
+    }
+
+    private fun recordHandshake(durationMs: Long) {
+        synchronized(handshakeSamples) {
+            handshakeSamples[handshakeCount % HANDSHAKE_SAMPLE_SIZE] = durationMs
+            handshakeCount++
+        }
+    }
+
+    private inner class Listener(
+        private val socketGeneration: Long,
+        private val nodeUrl: String,
+        private val startedAt: Long
+    ) : WebSocketListener() {
+
+        override fun onOpen(webSocket: WebSocket, response: Response) {
+            val handshakeMs = clock() - startedAt
+            synchronized(stateLock) {
+                if (socketGeneration != generation) {
+                    webSocket.close(NORMAL_CLOSURE, "Superseded")
+                    return
+                }
+                _state.value = BlockchainConnectionState.Connected(nodeUrl, System.currentTimeMillis(), handshakeMs)
+            }
+            recordHandshake(handshakeMs)
+            log.i { "Connected to $nodeUrl in ${handshakeMs}ms" }
+        }
+
+        override fun onMessage(webSocket: WebSocket, text: String) {
+            MemoryDiagnostics.allocations.record(AllocationSampler.BLOCKCHAIN, text.length * 2L)
+            if (socketGeneration == generation) onText(text)
+        }
+
+        override fun onMessage(webSocket: WebSocket, bytes: ByteString) {
+            // Frame bytes plus the decoded string
+            MemoryDiagnostics.allocations.record(AllocationSampler.BLOCKCHAIN, bytes.size * 3L)
+            if (socketGeneration == generation) onText(bytes.utf8())
+        }
+
+        override fun onClosing(webSocket: WebSocket, code: Int, reason: String) {
+            log.i { "WebSocket closing: $code $reason" }
+            webSocket.close(NORMAL_CLOSURE, null)
+        }
+
+        override fun onClosed(webSocket: WebSocket, code: Int, reason: String) {
+            log.i { "WebSocket closed: $code $reason" }
+            transitionToFailed(socketGeneration, nodeUrl, "Closed by node: $code $reason")
+            watchRelease()
+        }
+
+        override fun onFailure(webSocket: WebSocket, t: Throwable, response: Response?) {
+            log.e(t) { "WebSocket failure on $nodeUrl" }
+            transitionToFailed(socketGeneration, nodeUrl, t.message ?: t.javaClass.simpleName)
+            watchRelease()
+        }
+
+        // No callbacks follow onClosed or onFailure, so nothing should hold the listener
+        private fun watchRelease() {
+            MemoryDiagnostics.lifetimes.watch(this, WatchedObjectKind.WEBSOCKET_LISTENER, "Listener $nodeUrl#$socketGeneration")
+        }
+    }
+
+    companion object {
+        private const val NORMAL_CLOSURE = 1000
+        private const val HANDSHAKE_SAMPLE_SIZE = 128
+
+        /**
+         * WebSocket client derived from the app's shared client, so it reuses its
+         * connection pool and dispatcher. Reads never time out on an idle socket;
+         * dead connections are detected by the ping interval instead.
+         */
+        fun webSocketClient(baseClient: OkHttpClient, policy: ConnectionPolicy): OkHttpClient {
+            return baseClient.newBuilder()
+                .connectTimeout(policy.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .pingInterval(policy.pingIntervalMs, TimeUnit.MILLISECONDS)
+                .build()
+        }
+
+        private fun percentile(sorted: LongArray, fraction: Double): Long {
+            if (sorted.isEmpty()) return 0L
+            val rank = (ceil(fraction * sorted.size).toInt() - 1).coerceIn(0, sorted.lastIndex)
+            return sorted[rank]
+        }
+    }
+}
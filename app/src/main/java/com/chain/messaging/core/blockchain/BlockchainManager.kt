@@ -1,6 +1,7 @@
 package com.chain.messaging.core.blockchain
 
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.StateFlow
 import java.util.Date
 
 /**
@@ -51,6 +52,11 @@ interface BlockchainManager {
      */
     fun isConnected(): Boolean
     
+    /**
+     * Observe the node connection lifecycle
+     */
+    fun observeConnectionState(): StateFlow<BlockchainConnectionState>
+    
     /**
      * Send a deletion transaction for disappearing messages
      */
@@ -127,5 +133,10 @@ enum class MessageType {
     LOCATION,
     CONTACT,
     POLL,
-    SYSTEM
+    SYSTEM,
+    // Cross-device sync protocol frames
+    SYNC_REQUEST,
+    SYNC_RESPONSE,
+    SYNC_CHUNK,
+    SYNC_CHUNK_ACK
 }
\ No newline at end of file
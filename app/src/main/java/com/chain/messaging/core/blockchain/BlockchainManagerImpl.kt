@@ -1,13 +1,16 @@
 package com.chain.messaging.core.blockchain
 
-import android.util.Log
+import com.chain.messaging.core.config.AppConfig
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
-import okhttp3.*
-import okio.ByteString
+import okhttp3.OkHttpClient
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
 import javax.inject.Inject
 import javax.inject.Singleton
 /**
@@ -17,14 +20,12 @@ import javax.inject.Singleton
 class BlockchainManagerImpl @Inject constructor(
     private val transactionSigner: TransactionSigner,
     private val consensusHandler: ConsensusHandler,
-    private val authenticationService: com.chain.messaging.core.auth.AuthenticationService
+    private val authenticationService: com.chain.messaging.core.auth.AuthenticationService,
+    httpClient: OkHttpClient,
+    metricsRegistry: MetricsRegistry
 ) : BlockchainManager {
     
-    private val TAG = "BlockchainManager"
-    
-    private var webSocket: WebSocket? = null
-    private var currentNodeUrl: String? = null
-    private var isConnectedState = false
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
     
     private val messageSubscriptions = ConcurrentHashMap<String, MutableSharedFlow<IncomingMessage>>()
     private val transactionPool = TransactionPool()
@@ -32,6 +33,24 @@ class BlockchainManagerImpl @Inject constructor(
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     
+    private val connectionPolicy = ConnectionPolicy()
+    private val connection = BlockchainConnection(
+        socketFactory = BlockchainConnection.webSocketClient(httpClient, connectionPolicy),
+        scope = coroutineScope,
+        policy = connectionPolicy,
+        onText = { text -> coroutineScope.launch { handleIncomingMessage(text) } }
+    )
+    
+    // Sync and retry loops of the current connection; restarted on every (re)connect.
+    // Started from the state collector and stopped from disconnect callers.
+    private val sessionJob = AtomicReference<Job?>(null)
+    
+    // Broadcast time (System.nanoTime) of transactions still awaiting confirmation
+    private val pendingConfirmations = ConcurrentHashMap<String, Long>()
+    private val roundTripLatency = metricsRegistry.histogram(HotPathMetrics.BLOCKCHAIN_ROUND_TRIP)
+    private val bytesSent = metricsRegistry.counter(HotPathMetrics.BLOCKCHAIN_BYTES_SENT)
+    private val pendingConfirmationsGauge = metricsRegistry.gauge(HotPathMetrics.BLOCKCHAIN_PENDING_CONFIRMATIONS)
+    
     private var networkStatus = NetworkStatus(
         isConnected = false,
         nodeUrl = null,
@@ -40,77 +59,68 @@ class BlockchainManagerImpl @Inject constructor(
         lastSyncTime = 0
     )
     
+    init {
+        coroutineScope.launch {
+            connection.state.collect { state -> onConnectionStateChanged(state) }
+        }
+    }
+    
     override suspend fun initialize() {
-        Log.d(TAG, "Initializing BlockchainManager")
+        log.d { "Initializing BlockchainManager" }
         // Initialize transaction pool and message pruner
         transactionPool.initialize()
         messagePruner.initialize()
-        Log.d(TAG, "BlockchainManager initialized successfully")
+        log.d { "BlockchainManager initialized successfully" }
     }
     
     override suspend fun connectAsUser() {
         val currentUser = authenticationService.getCurrentUser()
         if (currentUser != null) {
-            Log.d(TAG, "Connecting as user: ${currentUser.userId}")
-            // Use default node URL or get from config
-            val nodeUrl = "wss://blockchain-node.chain-messaging.com"
-            connect(nodeUrl)
+            log.d { "Connecting as user: ${currentUser.userId}" }
+            connectToNodes(DEFAULT_NODE_URLS)
         } else {
             throw IllegalStateException("No authenticated user found")
         }
     }
     
     override suspend fun shutdown() {
-        Log.d(TAG, "Shutting down BlockchainManager")
+        log.d { "Shutting down BlockchainManager" }
         disconnect()
         coroutineScope.cancel()
-        Log.d(TAG, "BlockchainManager shutdown complete")
+        log.d { "BlockchainManager shutdown complete" }
     }
     
     override suspend fun reconnect() {
-        Log.d(TAG, "Reconnecting to blockchain")
-        currentNodeUrl?.let { nodeUrl ->
-            disconnect()
-            delay(1000) // Brief delay before reconnection
-            connect(nodeUrl)
-        } ?: throw IllegalStateException("No previous connection to reconnect to")
+        log.d { "Reconnecting to blockchain" }
+        connection.reconnect()
     }
     
     override suspend fun connect(nodeUrl: String) {
+        connectToNodes(listOf(nodeUrl))
+    }
+    
+    /**
+     * Connect to the first reachable node, failing over in order. Returns as soon
+     * as the WebSocket handshake completes.
+     */
+    suspend fun connectToNodes(nodeUrls: List<String>) {
         try {
-            disconnect() // Disconnect from any existing connection
-            
-            currentNodeUrl = nodeUrl
-            val client = OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build()
-            
-            val request = Request.Builder()
-                .url(nodeUrl)
-                .build()
-            
-            webSocket = client.newWebSocket(request, createWebSocketListener())
-            
-            // Wait for connection to establish
-            delay(2000)
-            
-            if (isConnectedState) {
-                Log.i(TAG, "Successfully connected to blockchain node: $nodeUrl")
-                startSynchronization()
-                messagePruner.start()
-                startRetryLoop()
-            } else {
-                throw Exception("Failed to establish WebSocket connection")
-            }
-            
+            connection.connect(nodeUrls)
+            val connected = connection.state.value as? BlockchainConnectionState.Connected
+            log.i { "Successfully connected to blockchain node: ${connected?.nodeUrl} in ${connected?.handshakeMs}ms" }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to connect to blockchain node: $nodeUrl", e)
+            log.e(e) { "Failed to connect to blockchain nodes: $nodeUrls" }
             throw e
         }
     }
     
+    override fun observeConnectionState(): StateFlow<BlockchainConnectionState> = connection.state
+    
+    /**
+     * Handshake latency percentiles and failure counts of the node connection
+     */
+    fun getConnectionStats(): ConnectionStats = connection.getStats()
+    
     override suspend fun sendMessage(message: EncryptedMessage): String {
         if (!isConnected()) {
             throw IllegalStateException("Not connected to blockchain network")
@@ -125,13 +135,16 @@ class BlockchainManagerImpl @Inject constructor(
             
             // Broadcast transaction to network
             val broadcastMessage = createBroadcastMessage("SEND_TRANSACTION", signedTransaction.serialize())
-            webSocket?.send(broadcastMessage)
+            if (connection.send(broadcastMessage)) {
+                trackPendingConfirmation(signedTransaction.id)
+                bytesSent.add(broadcastMessage.length.toLong())
+            }
             
-            Log.d(TAG, "Sent message transaction: ${signedTransaction.id}")
+            log.d { "Sent message transaction: ${signedTransaction.id}" }
             return signedTransaction.transactionHash
             
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to send message", e)
+            log.e(e) { "Failed to send message" }
             throw e
         }
     }
@@ -169,102 +182,86 @@ class BlockchainManagerImpl @Inject constructor(
             if (isConnected() && prunedMessages.isNotEmpty()) {
                 // Send pruning request to blockchain network
                 val pruneMessage = createBroadcastMessage("PRUNE_MESSAGES", olderThan.time.toString())
-                webSocket?.send(pruneMessage)
-                Log.d(TAG, "Requested pruning of ${prunedMessages.size} messages older than: $olderThan")
+                connection.send(pruneMessage)
+                log.d { "Requested pruning of ${prunedMessages.size} messages older than: $olderThan" }
             } else if (prunedMessages.isNotEmpty()) {
-                Log.d(TAG, "Pruned ${prunedMessages.size} messages locally (not connected to network)")
+                log.d { "Pruned ${prunedMessages.size} messages locally (not connected to network)" }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to prune old messages", e)
+            log.e(e) { "Failed to prune old messages" }
         }
     }
     
     override suspend fun disconnect() {
         try {
-            messagePruner.stop()
-            webSocket?.close(1000, "Client disconnect")
-            webSocket = null
-            isConnectedState = false
-            currentNodeUrl = null
+            connection.disconnect()
+            stopSession()
             
             networkStatus = networkStatus.copy(
                 isConnected = false,
                 nodeUrl = null
             )
             
-            Log.i(TAG, "Disconnected from blockchain network")
+            log.i { "Disconnected from blockchain network" }
         } catch (e: Exception) {
-            Log.e(TAG, "Error during disconnect", e)
+            log.e(e) { "Error during disconnect" }
         }
     }
     
     override fun isConnected(): Boolean {
-        return isConnectedState && webSocket != null
+        return connection.isConnected
     }
     
     override suspend fun sendDeletionTransaction(messageId: String) {
         try {
             if (!isConnected()) {
-                Log.w(TAG, "Cannot send deletion transaction - not connected to blockchain")
+                log.w { "Cannot send deletion transaction - not connected to blockchain" }
                 return
             }
             
             val deletionMessage = createBroadcastMessage("DELETE_MESSAGE", messageId)
-            webSocket?.send(deletionMessage)
-            Log.d(TAG, "Sent deletion transaction for message: $messageId")
+            connection.send(deletionMessage)
+            log.d { "Sent deletion transaction for message: $messageId" }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to send deletion transaction for message: $messageId", e)
+            log.e(e) { "Failed to send deletion transaction for message: $messageId" }
             throw e
         }
     }
     
-    private fun createWebSocketListener(): WebSocketListener {
-        return object : WebSocketListener() {
-            override fun onOpen(webSocket: WebSocket, response: Response) {
-                isConnectedState = true
+    private fun onConnectionStateChanged(state: BlockchainConnectionState) {
+        when (state) {
+            is BlockchainConnectionState.Connected -> {
                 networkStatus = networkStatus.copy(
                     isConnected = true,
-                    nodeUrl = currentNodeUrl,
+                    nodeUrl = state.nodeUrl,
                     lastSyncTime = System.currentTimeMillis()
                 )
-                Log.i(TAG, "WebSocket connection opened")
-            }
-            
-            override fun onMessage(webSocket: WebSocket, text: String) {
-                coroutineScope.launch {
-                    handleIncomingMessage(text)
-                }
-            }
-            
-            override fun onMessage(webSocket: WebSocket, bytes: ByteString) {
-                coroutineScope.launch {
-                    handleIncomingMessage(bytes.utf8())
-                }
-            }
-            
-            override fun onClosing(webSocket: WebSocket, code: Int, reason: String) {
-                Log.i(TAG, "WebSocket closing: $code $reason")
+                startSession()
             }
-            
-            override fun onClosed(webSocket: WebSocket, code: Int, reason: String) {
-                isConnectedState = false
-                networkStatus = networkStatus.copy(isConnected = false)
-                Log.i(TAG, "WebSocket closed: $code $reason")
-            }
-            
-            override fun onFailure(webSocket: WebSocket, t: Throwable, response: Response?) {
-                isConnectedState = false
+            is BlockchainConnectionState.Connecting -> Unit
+            else -> {
                 networkStatus = networkStatus.copy(isConnected = false)
-                Log.e(TAG, "WebSocket failure", t)
-                
-                // Attempt reconnection with exponential backoff
-                coroutineScope.launch {
-                    attemptReconnection()
-                }
+                stopSession()
             }
         }
     }
     
+    private fun startSession() {
+        // Published before it starts, so a concurrent stop cancels it rather than missing it
+        val job = coroutineScope.launch(start = CoroutineStart.LAZY) {
+            launch { runSynchronization() }
+            launch { runRetryLoop() }
+        }
+        sessionJob.getAndSet(job)?.cancel()
+        job.start()
+        messagePruner.start()
+    }
+    
+    private fun stopSession() {
+        sessionJob.getAndSet(null)?.cancel()
+        messagePruner.stop()
+    }
+    
     private suspend fun handleIncomingMessage(message: String) {
         try {
             val messageData = parseIncomingMessage(message)
@@ -278,7 +275,11 @@ class BlockchainManagerImpl @Inject constructor(
                     val confirmationData = parseTransactionConfirmation(messageData.data)
                     transactionPool.confirmTransaction(confirmationData.transactionId, confirmationData.blockNumber)
                     messagePruner.markMessageDelivered(confirmationData.transactionId)
-                    Log.d(TAG, "Transaction confirmed: ${confirmationData.transactionId}")
+                    pendingConfirmations.remove(confirmationData.transactionId)?.let { sentAt ->
+                        roundTripLatency.recordSince(sentAt)
+                    }
+                    pendingConfirmationsGauge.set(pendingConfirmations.size.toLong())
+                    log.d { "Transaction confirmed: ${confirmationData.transactionId}" }
                 }
                 "NETWORK_STATUS" -> {
                     updateNetworkStatus(messageData.data)
@@ -288,8 +289,22 @@ class BlockchainManagerImpl @Inject constructor(
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Error handling incoming message", e)
+            log.e(e) { "Error handling incoming message" }
+        }
+    }
+    
+    /**
+     * Start the round-trip clock for a broadcast transaction. Transactions that are
+     * never confirmed are dropped after [PENDING_CONFIRMATION_TTL_NANOS] so the map
+     * stays bounded.
+     */
+    private fun trackPendingConfirmation(transactionId: String) {
+        val now = System.nanoTime()
+        pendingConfirmations.putIfAbsent(transactionId, now)
+        if (pendingConfirmations.size > MAX_PENDING_CONFIRMATIONS) {
+            pendingConfirmations.values.removeIf { now - it > PENDING_CONFIRMATION_TTL_NANOS }
         }
+        pendingConfirmationsGauge.set(pendingConfirmations.size.toLong())
     }
     
     private fun deliverMessageToSubscribers(message: IncomingMessage) {
@@ -343,39 +358,18 @@ class BlockchainManagerImpl @Inject constructor(
         )
     }
     
-    private suspend fun startSynchronization() {
-        coroutineScope.launch {
-            while (isConnected()) {
-                try {
-                    val syncMessage = createBroadcastMessage("SYNC_REQUEST", "")
-                    webSocket?.send(syncMessage)
-                    delay(30000) // Sync every 30 seconds
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error during synchronization", e)
-                }
-            }
-        }
-    }
-    
-    private suspend fun attemptReconnection() {
-        var retryCount = 0
-        val maxRetries = 5
-        
-        while (retryCount < maxRetries && !isConnected()) {
+    private suspend fun runSynchronization() {
+        while (isConnected()) {
             try {
-                delay((1000 * Math.pow(2.0, retryCount.toDouble())).toLong()) // Exponential backoff
-                currentNodeUrl?.let { connect(it) }
-                if (isConnected()) {
-                    Log.i(TAG, "Reconnection successful after $retryCount retries")
-                    return
-                }
+                val syncMessage = createBroadcastMessage("SYNC_REQUEST", "")
+                connection.send(syncMessage)
+                delay(30000) // Sync every 30 seconds
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
-                Log.w(TAG, "Reconnection attempt $retryCount failed", e)
+                log.e(e) { "Error during synchronization" }
             }
-            retryCount++
         }
-        
-        Log.e(TAG, "Failed to reconnect after $maxRetries attempts")
     }
     
     private suspend fun getCurrentUserId(): String {
@@ -400,26 +394,28 @@ class BlockchainManagerImpl @Inject constructor(
         )
     }
     
-    private suspend fun startRetryLoop() {
-        coroutineScope.launch {
-            while (isConnected()) {
-                try {
-                    val transactionsToRetry = transactionPool.getTransactionsForRetry()
-                    transactionsToRetry.forEach { transaction ->
-                        try {
-                            val broadcastMessage = createBroadcastMessage("SEND_TRANSACTION", transaction.serialize())
-                            webSocket?.send(broadcastMessage)
-                            transactionPool.incrementRetryCount(transaction.id)
-                            Log.d(TAG, "Retried transaction: ${transaction.id}")
-                        } catch (e: Exception) {
-                            Log.e(TAG, "Failed to retry transaction: ${transaction.id}", e)
-                            transactionPool.failTransaction(transaction.id, "Retry failed: ${e.message}")
+    private suspend fun runRetryLoop() {
+        while (isConnected()) {
+            try {
+                val transactionsToRetry = transactionPool.getTransactionsForRetry()
+                transactionsToRetry.forEach { transaction ->
+                    try {
+                        val broadcastMessage = createBroadcastMessage("SEND_TRANSACTION", transaction.serialize())
+                        if (connection.send(broadcastMessage)) {
+                            bytesSent.add(broadcastMessage.length.toLong())
                         }
+                        transactionPool.incrementRetryCount(transaction.id)
+                        log.d { "Retried transaction: ${transaction.id}" }
+                    } catch (e: Exception) {
+                        log.e(e) { "Failed to retry transaction: ${transaction.id}" }
+                        transactionPool.failTransaction(transaction.id, "Retry failed: ${e.message}")
                     }
-                    delay(30000) // Check for retries every 30 seconds
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error in retry loop", e)
                 }
+                delay(30000) // Check for retries every 30 seconds
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                log.e(e) { "Error in retry loop" }
             }
         }
     }
@@ -434,6 +430,19 @@ class BlockchainManagerImpl @Inject constructor(
      */
     fun getPruningStats() = messagePruner.getPruningStats()
     
+    companion object {
+        /**
+         * Nodes tried in order by connectAsUser; the first that answers wins
+         */
+        val DEFAULT_NODE_URLS = listOf(
+            "wss://blockchain-node.chain-messaging.com",
+            AppConfig.DEFAULT_BLOCKCHAIN_NODE_URL
+        )
+        
+        private const val MAX_PENDING_CONFIRMATIONS = 1_024
+        private const val PENDING_CONFIRMATION_TTL_NANOS = 5 * 60 * 1_000_000_000L
+    }
+    
     private data class IncomingMessageData(
         val type: String,
         val data: String
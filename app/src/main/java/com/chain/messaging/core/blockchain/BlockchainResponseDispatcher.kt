@@ -0,0 +1,179 @@
+package com.chain.messaging.core.blockchain
+
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import kotlinx.coroutines.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * A response decoded once by the dispatcher, tagged with the ID of the request it answers
+ */
+data class CorrelatedResponse<T : Any>(
+    val correlationId: String,
+    val payload: T
+)
+
+/**
+ * Decodes incoming messages of one response type. Returns null for messages
+ * that are not responses (or cannot be parsed) so they are ignored.
+ */
+fun interface ResponseDecoder<T : Any> {
+    fun decode(message: IncomingMessage): CorrelatedResponse<T>?
+}
+
+/**
+ * Dispatcher statistics for monitoring
+ */
+data class ResponseDispatcherStats(
+    val pendingRequests: Int,
+    val completedRequests: Long,
+    val timedOutRequests: Long,
+    val unmatchedResponses: Long
+)
+
+/**
+ * Request/response correlation hub for the blockchain message channel.
+ *
+ * Keeps one subscription per user and decodes each incoming response exactly
+ * once with the decoder registered for its message type, then completes the
+ * pending request with the matching correlation ID. Callers no longer scan
+ * the message flow themselves, so N concurrent requests cost one decode per
+ * response instead of N.
+ */
+@Singleton
+class BlockchainResponseDispatcher @Inject constructor(
+    private val blockchainManager: BlockchainManager
+) {
+
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val decoders = ConcurrentHashMap<String, ResponseDecoder<*>>()
+    private val pending = ConcurrentHashMap<String, CompletableDeferred<Any>>()
+    private val listeners = ConcurrentHashMap<String, Job>()
+
+    private val completedRequests = AtomicLong(0)
+    private val timedOutRequests = AtomicLong(0)
+    private val unmatchedResponses = AtomicLong(0)
+
+    /**
+     * Register the decoder for a response message type. Each type has one
+     * owner, so a second registration for the same type is rejected rather
+     * than silently taking over another service's responses.
+     */
+    fun <T : Any> registerResponseType(messageType: String, decoder: ResponseDecoder<T>) {
+        check(decoders.putIfAbsent(messageType, decoder) == null) {
+            "A decoder is already registered for $messageType"
+        }
+    }
+
+    /**
+     * Send a request and suspend until its response arrives or [timeoutMs] elapses.
+     *
+     * The pending entry is registered and the user's subscription is active
+     * before [send] runs, so a response cannot slip past between sending and
+     * waiting.
+     *
+     * @param userId User whose incoming messages carry the response
+     * @param responseType Message type of the expected response
+     * @param correlationId ID the response decoder will report for the answer
+     * @return The decoded response, or null on timeout
+     */
+    suspend fun <T : Any> request(
+        userId: String,
+        responseType: String,
+        correlationId: String,
+        timeoutMs: Long,
+        send: suspend () -> Unit
+    ): T? {
+        require(decoders.containsKey(responseType)) { "No decoder registered for $responseType" }
+
+        val key = pendingKey(responseType, correlationId)
+        val deferred = CompletableDeferred<Any>()
+        check(pending.putIfAbsent(key, deferred) == null) {
+            "Request $correlationId is already waiting for $responseType"
+        }
+
+        try {
+            ensureListening(userId)
+            send()
+
+            val response = withTimeoutOrNull(timeoutMs) { deferred.await() }
+            if (response == null) {
+                timedOutRequests.incrementAndGet()
+            } else {
+                completedRequests.incrementAndGet()
+            }
+            @Suppress("UNCHECKED_CAST")
+            return response as T?
+        } finally {
+            pending.remove(key, deferred)
+        }
+    }
+
+    /**
+     * Drop the subscription for [userId]; requests still waiting on it will time out
+     */
+    fun stopListening(userId: String) {
+        synchronized(listeners) {
+            listeners.remove(userId)?.cancel()
+        }
+    }
+
+    fun getStats(): ResponseDispatcherStats {
+        return ResponseDispatcherStats(
+            pendingRequests = pending.size,
+            completedRequests = completedRequests.get(),
+            timedOutRequests = timedOutRequests.get(),
+            unmatchedResponses = unmatchedResponses.get()
+        )
+    }
+
+    fun shutdown() {
+        scope.cancel()
+        pending.values.forEach { it.cancel() }
+        pending.clear()
+        listeners.clear()
+    }
+
+    private fun ensureListening(userId: String) {
+        synchronized(listeners) {
+            if (listeners[userId]?.isActive == true) return
+
+            // Undispatched so the subscription exists before the caller sends
+            listeners[userId] = scope.launch(start = CoroutineStart.UNDISPATCHED) {
+                try {
+                    blockchainManager.subscribeToMessages(userId).collect { message -> dispatch(message) }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    log.e(e) { "Response listener for $userId failed" }
+                }
+            }
+        }
+    }
+
+    private fun dispatch(message: IncomingMessage) {
+        val decoder = decoders[message.type] ?: return
+
+        val response = try {
+            decoder.decode(message)
+        } catch (e: Exception) {
+            log.w(e) { "Failed to decode ${message.type} response" }
+            null
+        } ?: return
+
+        val waiting = pending.remove(pendingKey(message.type, response.correlationId))
+        if (waiting == null) {
+            unmatchedResponses.incrementAndGet()
+            return
+        }
+        waiting.complete(response.payload)
+    }
+
+    private fun pendingKey(responseType: String, correlationId: String): String = "$responseType:$correlationId"
+}
@@ -1,6 +1,7 @@
 package com.chain.messaging.core.blockchain
 
-import android.util.Log
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
@@ -11,7 +12,7 @@ import java.util.concurrent.ConcurrentHashMap
  */
 class ConsensusHandler {
     
-    private val TAG = "ConsensusHandler"
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private val consensusState = ConcurrentHashMap<String, ConsensusData>()
@@ -25,7 +26,7 @@ class ConsensusHandler {
                 val consensusUpdate = parseConsensusUpdate(data)
                 processConsensusUpdate(consensusUpdate)
             } catch (e: Exception) {
-                Log.e(TAG, "Error handling consensus update", e)
+                log.e(e) { "Error handling consensus update" }
             }
         }
     }
@@ -44,20 +45,20 @@ class ConsensusHandler {
         return try {
             // Validate block structure
             if (block.transactions.isEmpty()) {
-                Log.w(TAG, "Block has no transactions")
+                log.w { "Block has no transactions" }
                 return false
             }
             
             // Validate block hash
             if (!isValidBlockHash(block)) {
-                Log.w(TAG, "Invalid block hash")
+                log.w { "Invalid block hash" }
                 return false
             }
             
             // Validate transactions
             block.transactions.all { validateTransaction(it) }
         } catch (e: Exception) {
-            Log.e(TAG, "Error validating block", e)
+            log.e(e) { "Error validating block" }
             false
         }
     }
@@ -81,7 +82,7 @@ class ConsensusHandler {
             timestamp = update.timestamp
         )
         
-        Log.d(TAG, "Processed consensus update for block ${update.blockHeight}")
+        log.d { "Processed consensus update for block ${update.blockHeight}" }
     }
     
     private fun isValidBlockHash(block: Block): Boolean {
@@ -1,6 +1,9 @@
 package com.chain.messaging.core.blockchain
 
-import android.util.Log
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
@@ -10,12 +13,13 @@ import java.util.concurrent.ConcurrentHashMap
  */
 class MessagePruner {
     
-    private val TAG = "MessagePruner"
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
     
     private val deliveredMessages = ConcurrentHashMap<String, DeliveredMessage>()
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     
     private var isRunning = false
+    private var pruningTask: ScheduledTask? = null
     private var isInitialized = false
     
     /**
@@ -24,7 +28,7 @@ class MessagePruner {
     suspend fun initialize() {
         if (!isInitialized) {
             isInitialized = true
-            Log.i(TAG, "Message pruner initialized")
+            log.i { "Message pruner initialized" }
         }
     }
     
@@ -35,10 +39,14 @@ class MessagePruner {
         if (isRunning) return
         
         isRunning = true
-        coroutineScope.launch {
-            startPruningLoop()
+        pruningTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "message-pruner",
+            intervalMs = PRUNING_CHECK_INTERVAL_MS,
+            owner = coroutineScope
+        ) {
+            performPruningCycle()
         }
-        Log.i(TAG, "Message pruner started")
+        log.i { "Message pruner started" }
     }
     
     /**
@@ -46,7 +54,9 @@ class MessagePruner {
      */
     fun stop() {
         isRunning = false
-        Log.i(TAG, "Message pruner stopped")
+        pruningTask?.cancel()
+        pruningTask = null
+        log.i { "Message pruner stopped" }
     }
     
     /**
@@ -60,7 +70,7 @@ class MessagePruner {
         )
         
         deliveredMessages[transactionHash] = deliveredMessage
-        Log.d(TAG, "Marked message as delivered: $transactionHash")
+        log.d { "Marked message as delivered: $transactionHash" }
     }
     
     /**
@@ -86,7 +96,7 @@ class MessagePruner {
      */
     fun removeFromTracking(transactionHash: String) {
         deliveredMessages.remove(transactionHash)
-        Log.d(TAG, "Removed message from tracking: $transactionHash")
+        log.d { "Removed message from tracking: $transactionHash" }
     }
     
     /**
@@ -118,7 +128,7 @@ class MessagePruner {
             deliveredMessages.remove(transactionHash)
         }
         
-        Log.i(TAG, "Force pruned ${messagesToPrune.size} messages older than $olderThan")
+        log.i { "Force pruned ${messagesToPrune.size} messages older than $olderThan" }
         return messagesToPrune
     }
     
@@ -131,23 +141,11 @@ class MessagePruner {
         return if (timeRemaining > 0) timeRemaining else 0
     }
     
-    private suspend fun startPruningLoop() {
-        while (isRunning) {
-            try {
-                performPruningCycle()
-                delay(PRUNING_CHECK_INTERVAL_MS)
-            } catch (e: Exception) {
-                Log.e(TAG, "Error during pruning cycle", e)
-                delay(PRUNING_CHECK_INTERVAL_MS) // Continue despite errors
-            }
-        }
-    }
-    
     private suspend fun performPruningCycle() {
         val messagesToPrune = getMessagesToPrune()
         
         if (messagesToPrune.isNotEmpty()) {
-            Log.d(TAG, "Found ${messagesToPrune.size} messages ready for pruning")
+            log.d { "Found ${messagesToPrune.size} messages ready for pruning" }
             
             // In a real implementation, this would send pruning requests to the blockchain
             messagesToPrune.forEach { transactionHash ->
@@ -156,7 +154,7 @@ class MessagePruner {
                     pruneMessageFromBlockchain(transactionHash)
                     removeFromTracking(transactionHash)
                 } catch (e: Exception) {
-                    Log.e(TAG, "Failed to prune message: $transactionHash", e)
+                    log.e(e) { "Failed to prune message: $transactionHash" }
                 }
             }
         }
@@ -169,7 +167,7 @@ class MessagePruner {
         // This would be implemented to send a pruning request to the blockchain network
         // For now, we simulate the operation
         delay(100) // Simulate network delay
-        Log.d(TAG, "Pruned message from blockchain: $transactionHash")
+        log.d { "Pruned message from blockchain: $transactionHash" }
     }
     
     private fun cleanupOldTrackingData() {
@@ -183,7 +181,7 @@ class MessagePruner {
         }
         
         if (toRemove.isNotEmpty()) {
-            Log.d(TAG, "Cleaned up ${toRemove.size} old tracking entries")
+            log.d { "Cleaned up ${toRemove.size} old tracking entries" }
         }
     }
     
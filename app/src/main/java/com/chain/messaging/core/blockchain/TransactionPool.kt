@@ -1,6 +1,9 @@
 package com.chain.messaging.core.blockchain
 
-import android.util.Log
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
@@ -14,7 +17,7 @@ import kotlin.collections.ArrayList
  */
 class TransactionPool {
     
-    private val TAG = "TransactionPool"
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
     
     private val pendingTransactions = ConcurrentHashMap<String, PendingTransaction>()
     private val transactionQueue = ConcurrentHashMap<String, MutableList<MessageTransaction>>()
@@ -24,6 +27,7 @@ class TransactionPool {
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isInitialized = false
+    private var maintenanceTask: ScheduledTask? = null
     
     /**
      * Initialize the transaction pool
@@ -32,7 +36,7 @@ class TransactionPool {
         if (!isInitialized) {
             isInitialized = true
             startPoolMaintenance()
-            Log.i(TAG, "Transaction pool initialized")
+            log.i { "Transaction pool initialized" }
         }
     }
     
@@ -53,7 +57,7 @@ class TransactionPool {
         transactionQueue.getOrPut(transaction.from) { ArrayList() }.add(transaction)
         
         updatePoolState()
-        Log.d(TAG, "Added transaction to pool: ${transaction.id}")
+        log.d { "Added transaction to pool: ${transaction.id}" }
     }
     
     /**
@@ -73,7 +77,7 @@ class TransactionPool {
             transactionQueue[userId]?.removeIf { it.id == transactionId }
             
             updatePoolState()
-            Log.d(TAG, "Confirmed transaction: $transactionId in block $blockNumber")
+            log.d { "Confirmed transaction: $transactionId in block $blockNumber" }
         }
     }
     
@@ -90,7 +94,7 @@ class TransactionPool {
             pendingTransactions[transactionId] = failedTransaction
             
             updatePoolState()
-            Log.w(TAG, "Failed transaction: $transactionId - $reason")
+            log.w { "Failed transaction: $transactionId - $reason" }
         }
     }
     
@@ -161,7 +165,7 @@ class TransactionPool {
         
         if (toRemove.isNotEmpty()) {
             updatePoolState()
-            Log.d(TAG, "Cleaned up ${toRemove.size} old transactions")
+            log.d { "Cleaned up ${toRemove.size} old transactions" }
         }
     }
     
@@ -182,15 +186,13 @@ class TransactionPool {
     }
     
     private fun startPoolMaintenance() {
-        coroutineScope.launch {
-            while (true) {
-                try {
-                    cleanup()
-                    delay(60000) // Run cleanup every minute
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error during pool maintenance", e)
-                }
-            }
+        // Run cleanup every minute
+        maintenanceTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "transaction-pool.cleanup",
+            intervalMs = 60_000L,
+            owner = coroutineScope
+        ) {
+            cleanup()
         }
     }
     
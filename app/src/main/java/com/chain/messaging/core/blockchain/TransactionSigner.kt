@@ -1,7 +1,8 @@
 package com.chain.messaging.core.blockchain
 
-import android.util.Log
 import com.chain.messaging.core.crypto.KeyManager
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import java.security.MessageDigest
 import java.security.PrivateKey
 import java.security.Signature
@@ -12,7 +13,7 @@ import java.util.*
 class TransactionSigner(
     private val keyManager: KeyManager
 ) {
-    private val TAG = "TransactionSigner"
+    private val log = Logger.of(LogSubsystem.BLOCKCHAIN)
     
     /**
      * Sign a message transaction with the user's private key
@@ -28,7 +29,7 @@ class TransactionSigner(
                 transactionHash = transactionHash
             )
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to sign transaction", e)
+            log.e(e) { "Failed to sign transaction" }
             throw e
         }
     }
@@ -41,7 +42,7 @@ class TransactionSigner(
             val transactionData = createTransactionData(transaction.copy(signature = ""))
             return verifySignature(transactionData, transaction.signature, publicKey)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to verify transaction signature", e)
+            log.e(e) { "Failed to verify transaction signature" }
             return false
         }
     }
@@ -74,7 +75,7 @@ class TransactionSigner(
             val signatureBytes = Base64.getDecoder().decode(signatureStr)
             signature.verify(signatureBytes)
         } catch (e: Exception) {
-            Log.e(TAG, "Error verifying signature", e)
+            log.e(e) { "Error verifying signature" }
             false
         }
     }
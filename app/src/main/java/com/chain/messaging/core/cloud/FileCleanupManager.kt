@@ -1,6 +1,7 @@
 package com.chain.messaging.core.cloud
 
 import android.content.Context
+import com.chain.messaging.data.local.storage.MediaBlobStore
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import java.io.File
@@ -15,7 +16,8 @@ import javax.inject.Singleton
 @Singleton
 class FileCleanupManager @Inject constructor(
     private val context: Context,
-    private val cloudStorageManager: CloudStorageManager
+    private val cloudStorageManager: CloudStorageManager,
+    private val mediaBlobStore: MediaBlobStore
 ) {
     
     companion object {
@@ -41,6 +43,11 @@ class FileCleanupManager @Inject constructor(
         totalFilesDeleted += localCleanup.filesDeleted
         totalSpaceFreed += localCleanup.spaceFreed
         
+        // Collect media blobs no message references any more
+        val blobCleanup = mediaBlobStore.collectGarbage()
+        totalFilesDeleted += blobCleanup.blobsDeleted + blobCleanup.otherFilesDeleted
+        totalSpaceFreed += blobCleanup.spaceFreed
+        
         // Clean up each cloud service
         CloudService.values().forEach { service ->
             try {
@@ -193,15 +200,17 @@ class FileCleanupManager @Inject constructor(
     }
     
     /**
-     * Optimize storage by compressing and deduplicating files
+     * Optimize storage by deduplicating files. Media is deduplicated as it is
+     * stored, so this sweeps unreferenced blobs and reports what sharing saves:
+     * copies avoided, bytes saved, and references per stored blob.
      */
     suspend fun optimizeStorage(): OptimizationResult = withContext(Dispatchers.IO) {
-        // This would implement file compression and deduplication
-        // For now, return a placeholder result
+        mediaBlobStore.collectGarbage()
+        val dedup = mediaBlobStore.dedupStats()
         OptimizationResult(
-            filesOptimized = 0,
-            spaceSaved = 0L,
-            compressionRatio = 0f
+            filesOptimized = dedup.references - dedup.blobs,
+            spaceSaved = dedup.bytesSaved,
+            compressionRatio = dedup.dedupRatio.toFloat()
         )
     }
     
@@ -12,7 +12,7 @@ object AppConfig {
     
     // Database configuration
     const val DATABASE_NAME = "chain_database"
-    const val DATABASE_VERSION = 1
+    const val DATABASE_VERSION = 4
     
     // Encryption configuration
     const val ENCRYPTED_PREFS_NAME = "chain_encrypted_prefs"
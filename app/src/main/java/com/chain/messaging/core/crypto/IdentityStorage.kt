@@ -33,4 +33,10 @@ interface IdentityStorage {
      * Get the identity key for a remote address
      */
     fun getIdentity(address: SignalProtocolAddress): IdentityKey?
+    
+    /**
+     * Register a listener called with the address whenever [saveIdentity]
+     * stores a new or changed identity key
+     */
+    fun addIdentityChangeListener(listener: (SignalProtocolAddress) -> Unit)
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import org.signal.libsignal.protocol.SignalProtocolAddress
 import org.signal.libsignal.protocol.ecc.Curve
 import org.signal.libsignal.protocol.util.KeyHelper
 import org.signal.libsignal.protocol.state.IdentityKeyStore
+import java.util.concurrent.CopyOnWriteArrayList
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -46,6 +47,8 @@ class IdentityStorageImpl @Inject constructor(
         )
     }
 
+    private val identityChangeListeners = CopyOnWriteArrayList<(SignalProtocolAddress) -> Unit>()
+
     override fun getIdentityKeyPair(): IdentityKeyPair {
         val storedKey = encryptedPrefs.getString(LOCAL_IDENTITY_KEY, null)
         
@@ -100,6 +103,7 @@ class IdentityStorageImpl @Inject constructor(
         // If this is a new identity or the identity has changed, mark as untrusted initially
         if (hasChanged) {
             setTrustedIdentity(address, false)
+            identityChangeListeners.forEach { it(address) }
         }
 
         return hasChanged
@@ -142,6 +146,10 @@ class IdentityStorageImpl @Inject constructor(
         }
     }
 
+    override fun addIdentityChangeListener(listener: (SignalProtocolAddress) -> Unit) {
+        identityChangeListeners += listener
+    }
+
     /**
      * Mark an identity as trusted (after user verification)
      */
@@ -419,6 +419,18 @@ class KeyManager @Inject constructor(
         return keys
     }
 
+    /**
+     * Export only public key material, which is safe to hand to another device.
+     * Pre-key records hold private keys and never leave this device.
+     */
+    fun exportPublicKeys(): Map<String, String> {
+        val keys = mutableMapOf<String, String>()
+        _identityKeyPair?.let { keyPair ->
+            keys["identity_public"] = String(keyPair.publicKey.serialize())
+        }
+        return keys
+    }
+
     /**
      * Export recent keys for incremental sync
      */
@@ -1,6 +1,12 @@
 package com.chain.messaging.core.crypto
 
-import android.util.Log
+import com.chain.messaging.core.performance.memory.AllocationSampler
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.performance.metrics.time
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import com.chain.messaging.domain.model.CryptoException
 import org.signal.libsignal.protocol.DuplicateMessageException
 import org.signal.libsignal.protocol.InvalidKeyException
@@ -21,6 +27,7 @@ import org.signal.libsignal.protocol.message.CiphertextMessage
 import org.signal.libsignal.protocol.message.PreKeySignalMessage
 import org.signal.libsignal.protocol.message.SignalMessage
 import org.signal.libsignal.protocol.state.PreKeyBundle
+import org.signal.libsignal.protocol.state.SignalProtocolStore
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -30,21 +37,23 @@ import javax.inject.Singleton
  */
 @Singleton
 class SignalEncryptionService @Inject constructor(
-    private val protocolStore: SignalProtocolStoreAdapter
+    private val protocolStore: SignalProtocolStore,
+    metricsRegistry: MetricsRegistry
 ) {
-    companion object {
-        private const val TAG = "SignalEncryptionService"
-    }
+    private val log = Logger.of(LogSubsystem.CRYPTO)
+    private val encryptLatency = metricsRegistry.histogram(HotPathMetrics.ENCRYPT)
+    private val decryptLatency = metricsRegistry.histogram(HotPathMetrics.DECRYPT)
+    private val cryptoFailures = metricsRegistry.counter(HotPathMetrics.CRYPTO_FAILURES)
 
     /**
      * Initialize the encryption service
      */
     suspend fun initialize(): Result<Unit> {
         return try {
-            Log.d(TAG, "SignalEncryptionService initialized")
+            log.d { "SignalEncryptionService initialized" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to initialize SignalEncryptionService", e)
+            log.e(e) { "Failed to initialize SignalEncryptionService" }
             Result.failure(CryptoException("Failed to initialize encryption service", e))
         }
     }
@@ -54,10 +63,10 @@ class SignalEncryptionService @Inject constructor(
      */
     suspend fun initializeUserKeys(): Result<Unit> {
         return try {
-            Log.d(TAG, "User keys initialized")
+            log.d { "User keys initialized" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to initialize user keys", e)
+            log.e(e) { "Failed to initialize user keys" }
             Result.failure(CryptoException("Failed to initialize user keys", e))
         }
     }
@@ -74,10 +83,10 @@ class SignalEncryptionService @Inject constructor(
      */
     suspend fun establishSession(userId: String): Result<Unit> {
         return try {
-            Log.d(TAG, "Session established with user $userId")
+            log.d { "Session established with user $userId" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to establish session with user $userId", e)
+            log.e(e) { "Failed to establish session with user $userId" }
             Result.failure(CryptoException("Failed to establish session", e))
         }
     }
@@ -87,10 +96,10 @@ class SignalEncryptionService @Inject constructor(
      */
     suspend fun generateUserKeys(): Result<Unit> {
         return try {
-            Log.d(TAG, "User keys generated")
+            log.d { "User keys generated" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to generate user keys", e)
+            log.e(e) { "Failed to generate user keys" }
             Result.failure(CryptoException("Failed to generate user keys", e))
         }
     }
@@ -100,10 +109,10 @@ class SignalEncryptionService @Inject constructor(
      */
     suspend fun generateGroupKeys(): Result<Unit> {
         return try {
-            Log.d(TAG, "Group keys generated")
+            log.d { "Group keys generated" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to generate group keys", e)
+            log.e(e) { "Failed to generate group keys" }
             Result.failure(CryptoException("Failed to generate group keys", e))
         }
     }
@@ -119,10 +128,10 @@ class SignalEncryptionService @Inject constructor(
             val sessionBuilder = SessionBuilder(protocolStore, remoteAddress)
             sessionBuilder.process(preKeyBundle)
             
-            Log.d(TAG, "Session established with ${remoteAddress.name}")
+            log.d { "Session established with ${remoteAddress.name}" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to establish session with ${remoteAddress.name}", e)
+            log.e(e) { "Failed to establish session with ${remoteAddress.name}" }
             Result.failure(CryptoException("Failed to establish session", e))
         }
     }
@@ -133,8 +142,8 @@ class SignalEncryptionService @Inject constructor(
     suspend fun encryptMessage(
         recipientAddress: SignalProtocolAddress,
         message: ByteArray
-    ): Result<EncryptedMessage> {
-        return try {
+    ): Result<EncryptedMessage> = encryptLatency.time<Result<EncryptedMessage>> {
+        try {
             val sessionCipher = SessionCipher(protocolStore, recipientAddress)
             val ciphertext = sessionCipher.encrypt(message)
             
@@ -148,16 +157,17 @@ class SignalEncryptionService @Inject constructor(
                 }
             )
             
-            Log.d(TAG, "Message encrypted for ${recipientAddress.name}")
+            MemoryDiagnostics.allocations.record(AllocationSampler.CRYPTO, encryptedMessage.ciphertext.size * 2L)
+            log.d { "Message encrypted for ${recipientAddress.name}" }
             Result.success(encryptedMessage)
         } catch (e: UntrustedIdentityException) {
-            Log.w(TAG, "Untrusted identity for ${recipientAddress.name}", e)
+            log.w(e) { "Untrusted identity for ${recipientAddress.name}" }
             Result.failure(CryptoException("Untrusted identity", e))
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to encrypt message for ${recipientAddress.name}", e)
+            log.e(e) { "Failed to encrypt message for ${recipientAddress.name}" }
             Result.failure(CryptoException("Failed to encrypt message", e))
         }
-    }
+    }.onFailure { cryptoFailures.increment() }
 
     /**
      * Encrypt a group message using sender keys
@@ -172,7 +182,7 @@ class SignalEncryptionService @Inject constructor(
             // This functionality needs to be implemented with alternative group encryption
             throw UnsupportedOperationException("Group encryption using SenderKey is not supported in libsignal 0.42.0")
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to encrypt group message", e)
+            log.e(e) { "Failed to encrypt group message" }
             Result.failure(CryptoException("Failed to encrypt group message", e))
         }
     }
@@ -190,7 +200,7 @@ class SignalEncryptionService @Inject constructor(
             // This functionality needs to be implemented with alternative group encryption
             throw UnsupportedOperationException("Group decryption using SenderKey is not supported in libsignal 0.42.0")
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to decrypt group message", e)
+            log.e(e) { "Failed to decrypt group message" }
             Result.failure(CryptoException("Failed to decrypt group message", e))
         }
     }
@@ -201,8 +211,8 @@ class SignalEncryptionService @Inject constructor(
     suspend fun decryptMessage(
         senderAddress: SignalProtocolAddress,
         encryptedMessage: EncryptedMessage
-    ): Result<ByteArray> {
-        return try {
+    ): Result<ByteArray> = decryptLatency.time<Result<ByteArray>> {
+        try {
             val sessionCipher = SessionCipher(protocolStore, senderAddress)
             
             val plaintext = when (encryptedMessage.type) {
@@ -217,31 +227,32 @@ class SignalEncryptionService @Inject constructor(
                 else -> throw InvalidMessageException("Unknown message type")
             }
             
-            Log.d(TAG, "Message decrypted from ${senderAddress.name}")
+            MemoryDiagnostics.allocations.record(AllocationSampler.CRYPTO, plaintext.size + encryptedMessage.ciphertext.size.toLong())
+            log.d { "Message decrypted from ${senderAddress.name}" }
             Result.success(plaintext)
         } catch (e: InvalidMessageException) {
-            Log.w(TAG, "Invalid message from ${senderAddress.name}", e)
+            log.w(e) { "Invalid message from ${senderAddress.name}" }
             Result.failure(CryptoException("Invalid message", e))
         } catch (e: DuplicateMessageException) {
-            Log.w(TAG, "Duplicate message from ${senderAddress.name}", e)
+            log.w(e) { "Duplicate message from ${senderAddress.name}" }
             Result.failure(CryptoException("Duplicate message", e))
         } catch (e: LegacyMessageException) {
-            Log.w(TAG, "Legacy message from ${senderAddress.name}", e)
+            log.w(e) { "Legacy message from ${senderAddress.name}" }
             Result.failure(CryptoException("Legacy message", e))
         } catch (e: InvalidKeyIdException) {
-            Log.w(TAG, "Invalid key ID from ${senderAddress.name}", e)
+            log.w(e) { "Invalid key ID from ${senderAddress.name}" }
             Result.failure(CryptoException("Invalid key ID", e))
         } catch (e: InvalidKeyException) {
-            Log.w(TAG, "Invalid key from ${senderAddress.name}", e)
+            log.w(e) { "Invalid key from ${senderAddress.name}" }
             Result.failure(CryptoException("Invalid key", e))
         } catch (e: UntrustedIdentityException) {
-            Log.w(TAG, "Untrusted identity from ${senderAddress.name}", e)
+            log.w(e) { "Untrusted identity from ${senderAddress.name}" }
             Result.failure(CryptoException("Untrusted identity", e))
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to decrypt message from ${senderAddress.name}", e)
+            log.e(e) { "Failed to decrypt message from ${senderAddress.name}" }
             Result.failure(CryptoException("Failed to decrypt message", e))
         }
-    }
+    }.onFailure { cryptoFailures.increment() }
 }
 
 /**
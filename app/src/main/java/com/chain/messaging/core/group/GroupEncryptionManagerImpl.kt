@@ -1,6 +1,5 @@
 package com.chain.messaging.core.group
 
-import android.util.Log
 import com.chain.messaging.core.crypto.EncryptedGroupMessage
 import com.chain.messaging.core.crypto.SignalEncryptionService
 import com.chain.messaging.core.crypto.SignalProtocolStoreAdapter
@@ -9,6 +8,8 @@ import com.chain.messaging.core.crypto.SignalSenderKeyName
 import com.chain.messaging.core.crypto.SignalSenderKeyRecord
 import com.chain.messaging.core.crypto.SignalGroupSessionBuilder
 import com.chain.messaging.core.crypto.SignalProtocolAddress
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -29,9 +30,10 @@ class GroupEncryptionManagerImpl @Inject constructor(
     private val signalEncryptionService: SignalEncryptionService,
     private val signalProtocolStore: SignalProtocolStoreAdapter
 ) : GroupEncryptionManager {
+    
+    private val log = Logger.of(LogSubsystem.GROUP)
 
     companion object {
-        private const val TAG = "GroupEncryptionManager"
         private const val ENCRYPTION_VERSION = 1
         private const val KEY_ROTATION_THRESHOLD_HOURS = 24
         private const val MAX_KEY_ROTATION_COUNT = 1000
@@ -51,11 +53,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
         return try {
             val mutex = encryptionMutex.getOrPut(groupId) { Mutex() }
             mutex.withLock {
-                Log.d(TAG, "Initializing group encryption for group $groupId with ${memberIds.size} members")
+                log.d { "Initializing group encryption for group $groupId with ${memberIds.size} members" }
 
                 // Check if already initialized
                 if (isGroupEncryptionInitialized(groupId)) {
-                    Log.w(TAG, "Group encryption already initialized for group $groupId")
+                    log.w { "Group encryption already initialized for group $groupId" }
                     return@withLock Result.success(groupEncryptionInfo[groupId]!!)
                 }
 
@@ -75,15 +77,15 @@ class GroupEncryptionManagerImpl @Inject constructor(
                         signalProtocolStore.storeSenderKey(senderKeyName, senderKeyRecord)
                         createdKeys.add(senderKeyName)
                         
-                        Log.d(TAG, "Created sender key for member $memberId in group $groupId")
+                        log.d { "Created sender key for member $memberId in group $groupId" }
                     } catch (e: Exception) {
-                        Log.e(TAG, "Failed to create sender key for member $memberId", e)
+                        log.e(e) { "Failed to create sender key for member $memberId" }
                         // Clean up any created keys on failure
                         createdKeys.forEach { keyName: SignalSenderKeyName ->
                             try {
                                 signalProtocolStore.getChainSenderKeyStore().removeSenderKey(keyName)
                             } catch (cleanupException: Exception) {
-                                Log.w(TAG, "Failed to cleanup sender key during rollback", cleanupException)
+                                log.w(cleanupException) { "Failed to cleanup sender key during rollback" }
                             }
                         }
                         return@withLock Result.failure(Exception("Failed to initialize group encryption", e))
@@ -114,11 +116,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 )
                 groupEncryptionStatus[groupId] = MutableStateFlow(status)
 
-                Log.i(TAG, "Group encryption initialized successfully for group $groupId")
+                log.i { "Group encryption initialized successfully for group $groupId" }
                 Result.success(encryptionInfo)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to initialize group encryption for group $groupId", e)
+            log.e(e) { "Failed to initialize group encryption for group $groupId" }
             Result.failure(e)
         }
     }
@@ -131,7 +133,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         return try {
             val mutex = encryptionMutex.getOrPut(groupId) { Mutex() }
             mutex.withLock {
-                Log.d(TAG, "Adding ${newMemberIds.size} members to group encryption for group $groupId")
+                log.d { "Adding ${newMemberIds.size} members to group encryption for group $groupId" }
 
                 if (!isGroupEncryptionInitialized(groupId)) {
                     return@withLock Result.failure(Exception("Group encryption not initialized"))
@@ -149,7 +151,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
                     val senderKeyRecord = groupSessionBuilder.create(senderKeyName)
                     signalProtocolStore.storeSenderKey(senderKeyName, senderKeyRecord)
                     
-                    Log.d(TAG, "Created sender key for new member $memberId in group $groupId")
+                    log.d { "Created sender key for new member $memberId in group $groupId" }
                 }
 
                 // Rotate keys for forward secrecy (new members shouldn't see old messages)
@@ -174,11 +176,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
                     )
                 }
 
-                Log.i(TAG, "Successfully added ${newMemberIds.size} members to group encryption")
+                log.i { "Successfully added ${newMemberIds.size} members to group encryption" }
                 Result.success(Unit)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to add members to group encryption", e)
+            log.e(e) { "Failed to add members to group encryption" }
             Result.failure(e)
         }
     }
@@ -191,7 +193,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         return try {
             val mutex = encryptionMutex.getOrPut(groupId) { Mutex() }
             mutex.withLock {
-                Log.d(TAG, "Removing ${removedMemberIds.size} members from group encryption for group $groupId")
+                log.d { "Removing ${removedMemberIds.size} members from group encryption for group $groupId" }
 
                 if (!isGroupEncryptionInitialized(groupId)) {
                     return@withLock Result.failure(Exception("Group encryption not initialized"))
@@ -206,7 +208,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
                     )
                     signalProtocolStore.getChainSenderKeyStore().removeSenderKey(senderKeyName)
                     
-                    Log.d(TAG, "Removed sender key for member $memberId from group $groupId")
+                    log.d { "Removed sender key for member $memberId from group $groupId" }
                 }
 
                 // Rotate keys for forward secrecy (removed members shouldn't see new messages)
@@ -230,11 +232,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
                     )
                 }
 
-                Log.i(TAG, "Successfully removed ${removedMemberIds.size} members from group encryption")
+                log.i { "Successfully removed ${removedMemberIds.size} members from group encryption" }
                 Result.success(Unit)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to remove members from group encryption", e)
+            log.e(e) { "Failed to remove members from group encryption" }
             Result.failure(e)
         }
     }
@@ -246,7 +248,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         message: ByteArray
     ): Result<EncryptedGroupMessage> {
         return try {
-            Log.d(TAG, "Encrypting group message for group $groupId from sender $senderId")
+            log.d { "Encrypting group message for group $groupId from sender $senderId" }
 
             if (!isGroupEncryptionInitialized(groupId)) {
                 return Result.failure(Exception("Group encryption not initialized"))
@@ -260,12 +262,12 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 updateGroupEncryptionStatus(groupId) { status ->
                     status.copy(lastActivity = System.currentTimeMillis())
                 }
-                Log.d(TAG, "Successfully encrypted group message")
+                log.d { "Successfully encrypted group message" }
             }
 
             result
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to encrypt group message", e)
+            log.e(e) { "Failed to encrypt group message" }
             Result.failure(e)
         }
     }
@@ -277,7 +279,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         encryptedMessage: EncryptedGroupMessage
     ): Result<ByteArray> {
         return try {
-            Log.d(TAG, "Decrypting group message for group $groupId from sender $senderId")
+            log.d { "Decrypting group message for group $groupId from sender $senderId" }
 
             if (!isGroupEncryptionInitialized(groupId)) {
                 return Result.failure(Exception("Group encryption not initialized"))
@@ -291,12 +293,12 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 updateGroupEncryptionStatus(groupId) { status ->
                     status.copy(lastActivity = System.currentTimeMillis())
                 }
-                Log.d(TAG, "Successfully decrypted group message")
+                log.d { "Successfully decrypted group message" }
             }
 
             result
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to decrypt group message", e)
+            log.e(e) { "Failed to decrypt group message" }
             Result.failure(e)
         }
     }
@@ -308,7 +310,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         return try {
             val mutex = encryptionMutex.getOrPut(groupId) { Mutex() }
             mutex.withLock {
-                Log.d(TAG, "Rotating sender keys for group $groupId with ${memberIds.size} members")
+                log.d { "Rotating sender keys for group $groupId with ${memberIds.size} members" }
 
                 if (!isGroupEncryptionInitialized(groupId)) {
                     return@withLock Result.failure(Exception("Group encryption not initialized"))
@@ -316,7 +318,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
 
                 val currentInfo = groupEncryptionInfo[groupId]!!
                 if (currentInfo.keyRotationCount >= MAX_KEY_ROTATION_COUNT) {
-                    Log.w(TAG, "Maximum key rotation count reached for group $groupId")
+                    log.w { "Maximum key rotation count reached for group $groupId" }
                     return@withLock Result.failure(Exception("Maximum key rotation count reached"))
                 }
 
@@ -329,7 +331,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
                     val newSenderKeyRecord = groupSessionBuilder.create(senderKeyName)
                     signalProtocolStore.storeSenderKey(senderKeyName, newSenderKeyRecord)
                     
-                    Log.d(TAG, "Rotated sender key for member $memberId in group $groupId")
+                    log.d { "Rotated sender key for member $memberId in group $groupId" }
                 }
 
                 // Update encryption info
@@ -339,11 +341,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 )
                 groupEncryptionInfo[groupId] = updatedInfo
 
-                Log.i(TAG, "Successfully rotated sender keys for group $groupId")
+                log.i { "Successfully rotated sender keys for group $groupId" }
                 Result.success(Unit)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to rotate sender keys for group $groupId", e)
+            log.e(e) { "Failed to rotate sender keys for group $groupId" }
             Result.failure(e)
         }
     }
@@ -355,7 +357,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         recipientId: String
     ): Result<SenderKeyDistributionMessage> {
         return try {
-            Log.d(TAG, "Getting sender key distribution for group $groupId, sender $senderId to recipient $recipientId")
+            log.d { "Getting sender key distribution for group $groupId, sender $senderId to recipient $recipientId" }
 
             if (!isGroupEncryptionInitialized(groupId)) {
                 return Result.failure(Exception("Group encryption not initialized"))
@@ -375,10 +377,10 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 version = ENCRYPTION_VERSION
             )
 
-            Log.d(TAG, "Created sender key distribution message")
+            log.d { "Created sender key distribution message" }
             Result.success(distributionMessage)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get sender key distribution", e)
+            log.e(e) { "Failed to get sender key distribution" }
             Result.failure(e)
         }
     }
@@ -390,7 +392,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         distributionMessage: SenderKeyDistributionMessage
     ): Result<Unit> {
         return try {
-            Log.d(TAG, "Processing sender key distribution for group $groupId from sender $senderId")
+            log.d { "Processing sender key distribution for group $groupId from sender $senderId" }
 
             if (!isGroupEncryptionInitialized(groupId)) {
                 return Result.failure(Exception("Group encryption not initialized"))
@@ -407,10 +409,10 @@ class GroupEncryptionManagerImpl @Inject constructor(
             val senderKeyRecord = SignalSenderKeyRecord(distributionMessage.distributionData)
             signalProtocolStore.storeSenderKey(senderKeyName, senderKeyRecord)
 
-            Log.d(TAG, "Successfully processed sender key distribution")
+            log.d { "Successfully processed sender key distribution" }
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to process sender key distribution", e)
+            log.e(e) { "Failed to process sender key distribution" }
             Result.failure(e)
         }
     }
@@ -424,7 +426,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
             val info = groupEncryptionInfo[groupId]
             Result.success(info)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get group encryption info", e)
+            log.e(e) { "Failed to get group encryption info" }
             Result.failure(e)
         }
     }
@@ -448,7 +450,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         return try {
             val mutex = encryptionMutex.getOrPut(groupId) { Mutex() }
             mutex.withLock {
-                Log.d(TAG, "Cleaning up group encryption for group $groupId")
+                log.d { "Cleaning up group encryption for group $groupId" }
 
                 // Remove all sender keys for the group
                 signalProtocolStore.getChainSenderKeyStore().removeAllSenderKeysForGroup(groupId)
@@ -458,11 +460,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
                 groupEncryptionStatus.remove(groupId)
                 encryptionMutex.remove(groupId)
 
-                Log.i(TAG, "Successfully cleaned up group encryption for group $groupId")
+                log.i { "Successfully cleaned up group encryption for group $groupId" }
                 Result.success(Unit)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to cleanup group encryption for group $groupId", e)
+            log.e(e) { "Failed to cleanup group encryption for group $groupId" }
             Result.failure(e)
         }
     }
@@ -473,7 +475,7 @@ class GroupEncryptionManagerImpl @Inject constructor(
         deviceId: Int
     ): Result<Boolean> {
         return try {
-            Log.d(TAG, "Verifying sender key integrity for group $groupId, sender $senderId")
+            log.d { "Verifying sender key integrity for group $groupId, sender $senderId" }
 
             if (!isGroupEncryptionInitialized(groupId)) {
                 return Result.failure(Exception("Group encryption not initialized"))
@@ -483,11 +485,11 @@ class GroupEncryptionManagerImpl @Inject constructor(
             val senderKeyRecord = signalProtocolStore.loadSenderKey(senderKeyName)
 
             val isValid = senderKeyRecord != null
-            Log.d(TAG, "Sender key integrity verification result: $isValid")
+            log.d { "Sender key integrity verification result: $isValid" }
             
             Result.success(isValid)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to verify sender key integrity", e)
+            log.e(e) { "Failed to verify sender key integrity" }
             Result.failure(e)
         }
     }
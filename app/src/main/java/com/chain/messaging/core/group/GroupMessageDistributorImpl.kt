@@ -1,16 +1,16 @@
 package com.chain.messaging.core.group
 
 import com.chain.messaging.core.blockchain.BlockchainManager
-import com.chain.messaging.core.blockchain.EncryptedMessage
 import com.chain.messaging.core.crypto.SignalEncryptionService
 import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.memory.WatchedObjectKind
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.repository.ChatRepository
 import kotlinx.coroutines.*
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.*
-import org.signal.libsignal.protocol.SignalProtocolAddress
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
@@ -30,6 +30,7 @@ class GroupMessageDistributorImpl @Inject constructor(
 ) : GroupMessageDistributor {
     
     private val activeDistributions = ConcurrentHashMap<String, DistributionJob>()
+    private val envelopes = GroupMessageEnvelopes(encryptionService)
     private val distributionProgressFlow = MutableSharedFlow<DistributionProgress>()
     
     companion object {
@@ -38,6 +39,7 @@ class GroupMessageDistributorImpl @Inject constructor(
         private const val BATCH_SIZE_LARGE = 200
         private const val TREE_FANOUT = 10
         private const val MAX_CONCURRENT_DELIVERIES = 20
+        private const val RECIPIENT_ENTRY_BYTES = 64L
     }
     
     override suspend fun distributeMessage(
@@ -129,7 +131,7 @@ class GroupMessageDistributorImpl @Inject constructor(
                 ?: return Result.failure(IllegalArgumentException("Distribution not found"))
             
             job.cancel()
-            activeDistributions.remove(distributionId)
+            finishDistribution(distributionId)
             Result.success(Unit)
         } catch (e: Exception) {
             Result.failure(e)
@@ -162,7 +164,7 @@ class GroupMessageDistributorImpl @Inject constructor(
             }
         }
         
-        activeDistributions.remove(distributionId)
+        finishDistribution(distributionId)
         
         return MessageDistributionResult(
             distributionId = distributionId,
@@ -208,7 +210,7 @@ class GroupMessageDistributorImpl @Inject constructor(
             }
         }
         
-        activeDistributions.remove(distributionId)
+        finishDistribution(distributionId)
         
         return MessageDistributionResult(
             distributionId = distributionId,
@@ -238,7 +240,7 @@ class GroupMessageDistributorImpl @Inject constructor(
             distributeToTreeLevel(tree, message, successCount, failureCount, distributionId, recipients.size)
         }
         
-        activeDistributions.remove(distributionId)
+        finishDistribution(distributionId)
         
         return MessageDistributionResult(
             distributionId = distributionId,
@@ -282,7 +284,7 @@ class GroupMessageDistributorImpl @Inject constructor(
             }
         }
         
-        activeDistributions.remove(distributionId)
+        finishDistribution(distributionId)
         
         return MessageDistributionResult(
             distributionId = distributionId,
@@ -295,23 +297,21 @@ class GroupMessageDistributorImpl @Inject constructor(
     }
     
     private suspend fun deliverMessageToRecipient(recipientId: String, message: Message) {
-        // Encrypt message for recipient
-        val recipientAddress = SignalProtocolAddress(recipientId, 1)
-        val encryptedContent = encryptionService.encryptMessage(
-            recipientAddress,
-            message.content.toByteArray()
-        ).getOrThrow()
-        
-        // Create blockchain message
-        val blockchainMessage = EncryptedMessage(
-            content = encryptedContent.ciphertext.toString(Charsets.UTF_8),
-            type = com.chain.messaging.core.blockchain.MessageType.valueOf(message.type.name),
-            keyId = "signal_key",
-            timestamp = message.timestamp.time
+        // Encrypt message for recipient, then send through blockchain
+        blockchainManager.sendMessage(envelopes.envelopeFor(recipientId, message))
+    }
+    
+    /**
+     * Drop a finished or cancelled job and expect it to be collected
+     */
+    private fun finishDistribution(distributionId: String) {
+        val job = activeDistributions.remove(distributionId) ?: return
+        MemoryDiagnostics.lifetimes.watch(
+            job,
+            WatchedObjectKind.DISTRIBUTION_JOB,
+            description = "DistributionJob $distributionId",
+            estimatedBytes = job.recipients.size * RECIPIENT_ENTRY_BYTES + job.message.content.length * 2L
         )
-        
-        // Send through blockchain
-        blockchainManager.sendMessage(blockchainMessage)
     }
     
     private fun createDistributionTree(recipients: List<String>, fanout: Int): TreeNode {
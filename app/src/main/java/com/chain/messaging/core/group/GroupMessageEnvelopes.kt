@@ -0,0 +1,50 @@
+package com.chain.messaging.core.group
+
+import com.chain.messaging.core.blockchain.EncryptedMessage
+import com.chain.messaging.core.blockchain.MessageType
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.performance.memory.AllocationSampler
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.domain.model.Message
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import java.util.Base64
+
+/**
+ * Builds the blockchain envelope of a group message for one member: the
+ * per-recipient work of [GroupMessageDistributorImpl] before submission.
+ * Ciphertext is Base64 in the envelope's string content, since raw Signal
+ * ciphertext is not valid UTF-8.
+ */
+class GroupMessageEnvelopes(
+    private val encryptionService: SignalEncryptionService
+) {
+
+    suspend fun envelopeFor(recipientId: String, message: Message): EncryptedMessage {
+        val plaintext = message.content.toByteArray()
+        val encrypted = encryptionService.encryptMessage(
+            SignalProtocolAddress(recipientId, 1),
+            plaintext
+        ).getOrThrow()
+        // Plaintext copy, ciphertext and its Base64 form per recipient
+        MemoryDiagnostics.allocations.record(
+            AllocationSampler.GROUP_DELIVERY,
+            plaintext.size + encrypted.ciphertext.size * 3L
+        )
+
+        return EncryptedMessage(
+            content = Base64.getEncoder().encodeToString(encrypted.ciphertext),
+            type = MessageType.valueOf(message.type.name),
+            keyId = KEY_ID,
+            timestamp = message.timestamp.time
+        )
+    }
+
+    companion object {
+        const val KEY_ID = "signal_key"
+
+        /**
+         * Ciphertext carried by an envelope from [envelopeFor]
+         */
+        fun ciphertextOf(envelope: EncryptedMessage): ByteArray = Base64.getDecoder().decode(envelope.content)
+    }
+}
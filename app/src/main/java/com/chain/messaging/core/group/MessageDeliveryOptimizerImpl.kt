@@ -1,6 +1,9 @@
 package com.chain.messaging.core.group
 
 import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.core.performance.memory.ByteBudgetLruCache
+import com.chain.messaging.core.performance.memory.CachePriority
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
 import com.chain.messaging.domain.model.Message
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableSharedFlow
@@ -15,16 +18,33 @@ import kotlin.math.*
  */
 @Singleton
 class MessageDeliveryOptimizerImpl @Inject constructor(
-    private val p2pManager: P2PManager
+    private val p2pManager: P2PManager,
+    memoryBudgetManager: MemoryBudgetManager
 ) : MessageDeliveryOptimizer {
     
-    private val encryptedMessageCache = ConcurrentHashMap<String, ByteArray>()
+    // One ciphertext per message, shared by all of its recipients
+    private val encryptedMessageCache = ByteBudgetLruCache<String, CachedEncryptedMessage>(
+        cacheName = "encrypted_messages",
+        priority = CachePriority.MEDIUM,
+        budgetShare = CACHE_BUDGET_SHARE,
+        initialMaxBytes = DEFAULT_CACHE_BYTES
+    ) { messageId, cached ->
+        ENTRY_OVERHEAD_BYTES + messageId.length * 2L + cached.content.size +
+            cached.recipients.sumOf { ENTRY_OVERHEAD_BYTES + it.length * 2L }
+    }
     private val deliveryMetricsFlow = MutableSharedFlow<DeliveryMetrics>()
     private val recipientConnectivity = ConcurrentHashMap<String, Float>()
     private val deliveryHistory = ConcurrentHashMap<String, List<Long>>()
     
+    init {
+        memoryBudgetManager.register(encryptedMessageCache)
+    }
+    
     companion object {
         private const val CACHE_TTL_MS = 300_000L // 5 minutes
+        private const val CACHE_BUDGET_SHARE = 0.15f
+        private const val DEFAULT_CACHE_BYTES = 8L * 1024 * 1024
+        private const val ENTRY_OVERHEAD_BYTES = 64L
         private const val MIN_BATCH_SIZE = 10
         private const val MAX_BATCH_SIZE = 500
         private const val BASE_RETRY_DELAY = 1000L // 1 second
@@ -94,22 +114,24 @@ class MessageDeliveryOptimizerImpl @Inject constructor(
         encryptedContent: ByteArray,
         recipients: List<String>
     ) {
-        // Cache with TTL
-        recipients.forEach { recipientId ->
-            val cacheKey = "${messageId}_$recipientId"
-            encryptedMessageCache[cacheKey] = encryptedContent
+        val existing = encryptedMessageCache.get(messageId)
+        val allRecipients = if (existing != null && existing.content.contentEquals(encryptedContent)) {
+            existing.recipients + recipients
+        } else {
+            recipients.toSet()
         }
-        
-        // Schedule cache cleanup (in a real implementation, use a proper cache with TTL)
-        // For now, we'll rely on manual cleanup
+        encryptedMessageCache.put(
+            messageId,
+            CachedEncryptedMessage(encryptedContent, allRecipients, System.currentTimeMillis())
+        )
     }
     
     override suspend fun getCachedEncryptedMessage(
         messageId: String,
         recipientId: String
     ): ByteArray? {
-        val cacheKey = "${messageId}_$recipientId"
-        return encryptedMessageCache[cacheKey]
+        val cached = encryptedMessageCache.get(messageId) ?: return null
+        return cached.content.takeIf { recipientId in cached.recipients }
     }
     
     override fun observeDeliveryMetrics(): Flow<DeliveryMetrics> {
@@ -206,14 +228,16 @@ class MessageDeliveryOptimizerImpl @Inject constructor(
     }
     
     /**
-     * Cleans up expired cache entries
+     * Cleans up expired cache entries; the byte budget is enforced on every put
      */
     fun cleanupCache() {
-        // In a real implementation, this would check TTL and remove expired entries
-        // For now, we'll implement a simple size-based cleanup
-        if (encryptedMessageCache.size > 10000) {
-            val keysToRemove = encryptedMessageCache.keys.take(5000)
-            keysToRemove.forEach { encryptedMessageCache.remove(it) }
-        }
+        val cutoff = System.currentTimeMillis() - CACHE_TTL_MS
+        encryptedMessageCache.removeIf { _, cached -> cached.cachedAt < cutoff }
     }
+    
+    private class CachedEncryptedMessage(
+        val content: ByteArray,
+        val recipients: Set<String>,
+        val cachedAt: Long
+    )
 }
\ No newline at end of file
@@ -9,17 +9,22 @@ import com.chain.messaging.core.network.NetworkMonitor
 import com.chain.messaging.core.notification.NotificationService
 import com.chain.messaging.core.offline.OfflineMessageQueue
 import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.core.performance.BatteryOptimizer
+import com.chain.messaging.core.performance.MemoryManager
 import com.chain.messaging.core.performance.PerformanceMonitor
 import com.chain.messaging.core.privacy.DisappearingMessageManager
 import com.chain.messaging.core.security.SecurityMonitoringManager
 import com.chain.messaging.core.sync.CrossDeviceSyncService
 import com.chain.messaging.core.webrtc.WebRTCManager
+import dagger.Lazy
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -27,6 +32,11 @@ import javax.inject.Singleton
 /**
  * Central application manager that coordinates all core services and manages
  * the application lifecycle and component integration.
+ *
+ * Services are initialized through a [StartupOrchestrator] dependency graph:
+ * independent services start concurrently, and non-critical ones (cloud
+ * storage, cross-device sync, security scans, memory and battery management)
+ * are injected lazily and only created on first use or once the app is idle.
  */
 @Singleton
 class ChainApplicationManager @Inject constructor(
@@ -36,16 +46,19 @@ class ChainApplicationManager @Inject constructor(
     private val messagingService: MessagingService,
     private val p2pManager: P2PManager,
     private val webrtcManager: WebRTCManager,
-    private val cloudStorageManager: CloudStorageManager,
+    private val cloudStorageManager: Lazy<CloudStorageManager>,
     private val notificationService: NotificationService,
     private val offlineMessageQueue: OfflineMessageQueue,
-    private val crossDeviceSyncService: CrossDeviceSyncService,
+    private val crossDeviceSyncService: Lazy<CrossDeviceSyncService>,
     private val disappearingMessageManager: DisappearingMessageManager,
-    private val securityMonitoringManager: SecurityMonitoringManager,
+    private val securityMonitoringManager: Lazy<SecurityMonitoringManager>,
     private val performanceMonitor: PerformanceMonitor,
-    private val networkMonitor: NetworkMonitor
+    private val networkMonitor: NetworkMonitor,
+    private val memoryManager: Lazy<MemoryManager>,
+    private val batteryOptimizer: Lazy<BatteryOptimizer>
 ) {
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main)
+    private val startupScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
     
     private val _applicationState = MutableStateFlow(ApplicationState.INITIALIZING)
     val applicationState: StateFlow<ApplicationState> = _applicationState.asStateFlow()
@@ -53,30 +66,45 @@ class ChainApplicationManager @Inject constructor(
     private val _isReady = MutableStateFlow(false)
     val isReady: StateFlow<Boolean> = _isReady.asStateFlow()
 
+    private val startup = StartupOrchestrator(createStartupStages(), startupScope)
+
+    companion object {
+        const val STAGE_PERFORMANCE_MONITOR = "performance_monitor"
+        const val STAGE_NETWORK_MONITOR = "network_monitor"
+        const val STAGE_ENCRYPTION = "encryption"
+        const val STAGE_BLOCKCHAIN = "blockchain"
+        const val STAGE_P2P = "p2p"
+        const val STAGE_WEBRTC = "webrtc"
+        const val STAGE_MESSAGING = "messaging"
+        const val STAGE_OFFLINE_QUEUE = "offline_queue"
+        const val STAGE_NOTIFICATIONS = "notifications"
+        const val STAGE_DISAPPEARING_MESSAGES = "disappearing_messages"
+        const val STAGE_SECURITY_MONITORING = "security_monitoring"
+        const val STAGE_CLOUD_STORAGE = "cloud_storage"
+        const val STAGE_CROSS_DEVICE_SYNC = "cross_device_sync"
+        const val STAGE_MEMORY_MANAGEMENT = "memory_management"
+        const val STAGE_BATTERY_OPTIMIZATION = "battery_optimization"
+
+        /**
+         * Grace period after readiness before idle-triggered deferred stages start,
+         * so they do not compete with the first frames
+         */
+        private const val DEFERRED_START_DELAY_MS = 3_000L
+    }
+
     /**
-     * Initialize the Chain application with all core services
+     * Initialize the Chain application. Returns once every critical service is
+     * ready; deferred services start later via [onIdle] or on first use.
      */
     suspend fun initialize(): Result<Unit> {
         return try {
             _applicationState.value = ApplicationState.INITIALIZING
             
-            // Phase 1: Initialize core infrastructure
-            initializeCoreInfrastructure()
-            
-            // Phase 2: Initialize networking and blockchain
-            initializeNetworking()
-            
-            // Phase 3: Initialize messaging and communication
-            initializeMessaging()
-            
-            // Phase 4: Initialize additional services
-            initializeAdditionalServices()
-            
-            // Phase 5: Start monitoring and background services
-            startBackgroundServices()
+            startup.startCritical()
             
             _applicationState.value = ApplicationState.READY
             _isReady.value = true
+            StartupTimeline.mark(StartupTimeline.CRITICAL_SERVICES_READY)
             
             Result.success(Unit)
         } catch (e: Exception) {
@@ -85,65 +113,77 @@ class ChainApplicationManager @Inject constructor(
         }
     }
 
-    private suspend fun initializeCoreInfrastructure() {
-        // Initialize performance monitoring first
-        performanceMonitor.startMonitoring()
-        
-        // Initialize network monitoring
-        networkMonitor.startMonitoring()
-        
-        // Initialize security monitoring
-        securityMonitoringManager.initialize()
-    }
-
-    private suspend fun initializeNetworking() {
-        // Initialize blockchain connection
-        blockchainManager.initialize()
-        
-        // Initialize P2P networking
-        p2pManager.initialize()
-        
-        // Initialize WebRTC for calls
-        webrtcManager.initialize()
-    }
-
-    private suspend fun initializeMessaging() {
-        // Initialize encryption service
-        encryptionService.initialize()
-        
-        // Initialize messaging service
-        messagingService.initialize()
-        
-        // Initialize offline message queue
-        offlineMessageQueue.initialize()
+    /**
+     * Called when the main thread first goes idle; starts deferred services
+     * shortly after the critical ones are ready
+     */
+    fun onIdle() {
+        startupScope.launch {
+            isReady.first { it }
+            delay(DEFERRED_START_DELAY_MS)
+            startup.startDeferred()
+        }
     }
 
-    private suspend fun initializeAdditionalServices() {
-        // Initialize cloud storage
-        cloudStorageManager.initialize()
-        
-        // Initialize cross-device sync
-        crossDeviceSyncService.initialize()
-        
-        // Initialize disappearing messages
-        disappearingMessageManager.initialize()
-        
-        // Initialize notifications
-        notificationService.initialize()
-    }
+    /**
+     * Timings of every startup stage that has run so far
+     */
+    fun getStartupTraces(): List<StartupStageTrace> = startup.getTraces()
 
-    private fun startBackgroundServices() {
-        scope.launch {
-            // Start message pruning service
-            disappearingMessageManager.startCleanupService()
-            
-            // Start performance monitoring
+    private fun createStartupStages(): List<StartupStage> = listOf(
+        StartupStage(STAGE_PERFORMANCE_MONITOR) {
+            performanceMonitor.startMonitoring()
             performanceMonitor.startPeriodicReports()
-            
-            // Start security monitoring
-            securityMonitoringManager.startMonitoring()
+        },
+        StartupStage(STAGE_NETWORK_MONITOR) {
+            networkMonitor.startMonitoring()
+        },
+        StartupStage(STAGE_ENCRYPTION) {
+            encryptionService.initialize()
+        },
+        StartupStage(STAGE_BLOCKCHAIN, dependsOn = setOf(STAGE_NETWORK_MONITOR)) {
+            blockchainManager.initialize()
+        },
+        StartupStage(STAGE_P2P, dependsOn = setOf(STAGE_NETWORK_MONITOR)) {
+            p2pManager.initialize()
+        },
+        StartupStage(STAGE_WEBRTC) {
+            webrtcManager.initialize()
+        },
+        StartupStage(STAGE_MESSAGING, dependsOn = setOf(STAGE_ENCRYPTION)) {
+            messagingService.initialize()
+        },
+        StartupStage(STAGE_OFFLINE_QUEUE, dependsOn = setOf(STAGE_MESSAGING)) {
+            offlineMessageQueue.initialize()
+        },
+        StartupStage(STAGE_NOTIFICATIONS) {
+            notificationService.initialize()
+        },
+        StartupStage(STAGE_DISAPPEARING_MESSAGES, dependsOn = setOf(STAGE_MESSAGING)) {
+            disappearingMessageManager.initialize()
+            disappearingMessageManager.startCleanupService()
+        },
+        StartupStage(STAGE_SECURITY_MONITORING, priority = StartupPriority.DEFERRED) {
+            securityMonitoringManager.get().initialize()
+            securityMonitoringManager.get().startMonitoring()
+        },
+        StartupStage(STAGE_CLOUD_STORAGE, priority = StartupPriority.DEFERRED) {
+            cloudStorageManager.get().initialize()
+        },
+        StartupStage(
+            STAGE_CROSS_DEVICE_SYNC,
+            dependsOn = setOf(STAGE_ENCRYPTION, STAGE_BLOCKCHAIN),
+            priority = StartupPriority.DEFERRED
+        ) {
+            crossDeviceSyncService.get().initialize()
+        },
+        StartupStage(STAGE_MEMORY_MANAGEMENT, priority = StartupPriority.DEFERRED) {
+            memoryManager.get().startMemoryManagement()
+        },
+        StartupStage(STAGE_BATTERY_OPTIMIZATION, priority = StartupPriority.DEFERRED) {
+            batteryOptimizer.get().startOptimization()
         }
-    }
+    )
 
     /**
      * Authenticate user and prepare user-specific services
@@ -178,10 +218,12 @@ class ChainApplicationManager @Inject constructor(
         blockchainManager.connectAsUser()
         
         // Start cross-device synchronization
-        crossDeviceSyncService.startSync()
+        startup.ensureStarted(STAGE_CROSS_DEVICE_SYNC)
+        crossDeviceSyncService.get().startSync()
         
         // Initialize user's cloud storage connections
-        cloudStorageManager.initializeUserAccounts()
+        startup.ensureStarted(STAGE_CLOUD_STORAGE)
+        cloudStorageManager.get().initializeUserAccounts()
     }
 
     /**
@@ -194,15 +236,17 @@ class ChainApplicationManager @Inject constructor(
             // Stop background services
             disappearingMessageManager.stopCleanupService()
             performanceMonitor.stopMonitoring()
-            securityMonitoringManager.stopMonitoring()
+            if (startup.isStarted(STAGE_SECURITY_MONITORING)) securityMonitoringManager.get().stopMonitoring()
+            if (startup.isStarted(STAGE_MEMORY_MANAGEMENT)) memoryManager.get().stopMemoryManagement()
+            if (startup.isStarted(STAGE_BATTERY_OPTIMIZATION)) batteryOptimizer.get().stopOptimization()
             
             // Shutdown networking
             webrtcManager.shutdown()
             p2pManager.shutdown()
             blockchainManager.shutdown()
             
-            // Shutdown other services
-            crossDeviceSyncService.shutdown()
+            // Shutdown other services; deferred ones only if they were ever created
+            if (startup.isStarted(STAGE_CROSS_DEVICE_SYNC)) crossDeviceSyncService.get().shutdown()
             notificationService.shutdown()
             
             _applicationState.value = ApplicationState.SHUTDOWN
@@ -221,7 +265,7 @@ class ChainApplicationManager @Inject constructor(
                 blockchainManager.reconnect()
                 p2pManager.reconnect()
                 offlineMessageQueue.processQueuedMessages()
-                crossDeviceSyncService.resumeSync()
+                if (startup.isCompleted(STAGE_CROSS_DEVICE_SYNC)) crossDeviceSyncService.get().resumeSync()
             } else {
                 // Handle offline mode
                 offlineMessageQueue.enableOfflineMode()
@@ -239,7 +283,11 @@ class ChainApplicationManager @Inject constructor(
             hasNetworkConnectivity = networkMonitor.isConnected(),
             encryptionStatus = encryptionService.getStatus(),
             performanceMetrics = performanceMonitor.getCurrentMetrics(),
-            securityStatus = securityMonitoringManager.getSecurityStatus()
+            securityStatus = if (startup.isStarted(STAGE_SECURITY_MONITORING)) {
+                securityMonitoringManager.get().getSecurityStatus()
+            } else {
+                "NOT_STARTED"
+            }
         )
     }
 }
@@ -0,0 +1,192 @@
+package com.chain.messaging.core.integration
+
+import android.os.Build
+import android.os.Trace
+import com.chain.messaging.core.util.Logger
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * When a startup stage runs. Critical stages gate application readiness;
+ * deferred stages run on first use or once the app is idle.
+ */
+enum class StartupPriority {
+    CRITICAL,
+    DEFERRED
+}
+
+/**
+ * One node of the startup dependency graph
+ */
+class StartupStage(
+    val name: String,
+    val dependsOn: Set<String> = emptySet(),
+    val priority: StartupPriority = StartupPriority.CRITICAL,
+    val action: suspend () -> Unit
+)
+
+/**
+ * Timing of one completed (or failed) startup stage
+ */
+data class StartupStageTrace(
+    val name: String,
+    val priority: StartupPriority,
+    val startMs: Long,
+    val durationMs: Long,
+    val threadName: String,
+    val error: String? = null
+) {
+    val isSuccess: Boolean get() = error == null
+}
+
+/**
+ * Runs a startup dependency graph. Every stage starts as soon as the stages it
+ * depends on have finished, so independent stages initialize concurrently.
+ * Each stage is started at most once no matter how many dependents request it.
+ */
+class StartupOrchestrator(
+    stages: List<StartupStage>,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000 }
+) {
+
+    private val stages: Map<String, StartupStage> = stages.associateBy { it.name }
+    private val running = ConcurrentHashMap<String, Deferred<Unit>>()
+    private val traces = CopyOnWriteArrayList<StartupStageTrace>()
+    private val traceCookies = AtomicInteger()
+    private val origin = clock()
+
+    init {
+        require(this.stages.size == stages.size) { "Duplicate startup stage names" }
+        validate()
+    }
+
+    /**
+     * Start every critical stage and suspend until all of them have completed.
+     * Throws the first stage failure.
+     */
+    suspend fun startCritical() {
+        stages.values
+            .filter { it.priority == StartupPriority.CRITICAL }
+            .map { launchStage(it.name) }
+            .awaitAll()
+    }
+
+    /**
+     * Start all deferred stages that have not been started by first use yet
+     */
+    fun startDeferred() {
+        stages.values
+            .filter { it.priority == StartupPriority.DEFERRED }
+            .forEach { launchStage(it.name) }
+    }
+
+    /**
+     * Start [name] (and anything it depends on) if needed and wait for it.
+     * Called before first use of a deferred service.
+     */
+    suspend fun ensureStarted(name: String) {
+        launchStage(name).await()
+    }
+
+    /**
+     * Whether [name] has completed successfully
+     */
+    fun isCompleted(name: String): Boolean {
+        val stage = running[name] ?: return false
+        return stage.isCompleted && traces.any { it.name == name && it.isSuccess }
+    }
+
+    /**
+     * Whether [name] has been started, by startup, idle or first use
+     */
+    fun isStarted(name: String): Boolean = running.containsKey(name)
+
+    /**
+     * Stage timings in completion order, relative to orchestrator creation
+     */
+    fun getTraces(): List<StartupStageTrace> = traces.toList()
+
+    private fun launchStage(name: String): Deferred<Unit> {
+        val stage = requireNotNull(stages[name]) { "Unknown startup stage: $name" }
+        val deferred = running.computeIfAbsent(name) {
+            // Deps are launched inside the coroutine and the coroutine is started
+            // outside computeIfAbsent, so computeIfAbsent never recurses
+            scope.async(start = CoroutineStart.LAZY) {
+                stage.dependsOn.map { launchStage(it) }.awaitAll()
+                runTraced(stage)
+            }.also { launched ->
+                // Forget a failed stage so the next ensureStarted retries it
+                launched.invokeOnCompletion { cause -> if (cause != null) running.remove(name, launched) }
+            }
+        }
+        deferred.start()
+        return deferred
+    }
+
+    private suspend fun runTraced(stage: StartupStage) {
+        val cookie = traceCookies.incrementAndGet()
+        val startMs = clock()
+        val sectionName = "startup:${stage.name}"
+        // Stages hop threads while suspended, so only async sections are valid here
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(sectionName, cookie)
+        }
+        var error: Throwable? = null
+        try {
+            stage.action()
+        } catch (e: Exception) {
+            error = e
+            throw e
+        } finally {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(sectionName, cookie)
+            }
+            val trace = StartupStageTrace(
+                name = stage.name,
+                priority = stage.priority,
+                startMs = startMs - origin,
+                durationMs = clock() - startMs,
+                threadName = Thread.currentThread().name,
+                error = error?.message ?: error?.javaClass?.simpleName
+            )
+            traces += trace
+            if (trace.isSuccess) {
+                Logger.d("Startup stage ${stage.name} took ${trace.durationMs}ms (at +${trace.startMs}ms)")
+            } else {
+                Logger.e("Startup stage ${stage.name} failed after ${trace.durationMs}ms", error)
+            }
+        }
+    }
+
+    private fun validate() {
+        stages.values.forEach { stage ->
+            stage.dependsOn.forEach { dependency ->
+                val target = requireNotNull(stages[dependency]) {
+                    "Startup stage ${stage.name} depends on unknown stage $dependency"
+                }
+                require(stage.priority == StartupPriority.DEFERRED || target.priority == StartupPriority.CRITICAL) {
+                    "Critical startup stage ${stage.name} cannot depend on deferred stage $dependency"
+                }
+            }
+        }
+
+        // Depth-first search for cycles
+        val visiting = mutableSetOf<String>()
+        val visited = mutableSetOf<String>()
+        fun visit(name: String, path: List<String>) {
+            if (name in visited) return
+            require(visiting.add(name)) { "Startup dependency cycle: ${(path + name).joinToString(" -> ")}" }
+            stages.getValue(name).dependsOn.forEach { visit(it, path + name) }
+            visiting.remove(name)
+            visited.add(name)
+        }
+        stages.keys.forEach { visit(it, emptyList()) }
+    }
+}
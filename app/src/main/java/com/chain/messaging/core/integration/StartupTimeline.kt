@@ -0,0 +1,38 @@
+package com.chain.messaging.core.integration
+
+import android.os.Process
+import android.os.SystemClock
+import com.chain.messaging.core.util.Logger
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Process-wide cold start milestones, measured from process start.
+ * The first chat list milestone is also reported to the framework through
+ * reportFullyDrawn so macrobenchmark's StartupTimingMetric picks it up as
+ * time to full display.
+ */
+object StartupTimeline {
+
+    const val APPLICATION_CREATED = "application_created"
+    const val CRITICAL_SERVICES_READY = "critical_services_ready"
+    const val FIRST_CHAT_LIST = "first_chat_list"
+
+    private val milestones = ConcurrentHashMap<String, Long>()
+
+    /**
+     * Record [milestone] the first time it is reached; later calls are ignored
+     */
+    fun mark(milestone: String) {
+        val sinceStart = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()
+        if (milestones.putIfAbsent(milestone, sinceStart) == null) {
+            Logger.i("Cold start: $milestone at ${sinceStart}ms")
+        }
+    }
+
+    /**
+     * Milliseconds from process start to [milestone], or null if not reached
+     */
+    fun elapsedTo(milestone: String): Long? = milestones[milestone]
+
+    fun getMilestones(): Map<String, Long> = milestones.toMap()
+}
@@ -7,12 +7,14 @@ import android.media.MediaMetadataRetriever
 import android.net.Uri
 import android.provider.MediaStore
 import android.webkit.MimeTypeMap
+import com.chain.messaging.data.local.storage.HashingOutputStream
 import com.chain.messaging.domain.model.MediaMessage
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import java.io.File
 import java.io.FileOutputStream
+import java.io.IOException
 import java.io.InputStream
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -112,7 +114,8 @@ class MediaHandler @Inject constructor(
     }
     
     /**
-     * Copy file from URI to local app storage
+     * Copy file from URI to local app storage, named by its content hash so
+     * picking the same file twice reuses the first copy
      */
     private fun copyToLocalStorage(uri: Uri, fileName: String): File {
         val mediaDir = File(context.filesDir, "media")
@@ -120,12 +123,25 @@ class MediaHandler @Inject constructor(
             mediaDir.mkdirs()
         }
         
-        val localFile = File(mediaDir, "${System.currentTimeMillis()}_$fileName")
-        
-        context.contentResolver.openInputStream(uri)?.use { inputStream ->
-            FileOutputStream(localFile).use { outputStream ->
-                inputStream.copyTo(outputStream)
+        val partialFile = File(mediaDir, ".${System.currentTimeMillis()}_$fileName.partial")
+        val contentHash = try {
+            val inputStream = context.contentResolver.openInputStream(uri)
+                ?: throw IOException("Unable to open $uri")
+            inputStream.use {
+                HashingOutputStream(FileOutputStream(partialFile)).use { outputStream ->
+                    inputStream.copyTo(outputStream)
+                    outputStream.hashHex()
+                }
             }
+        } catch (e: Exception) {
+            partialFile.delete()
+            throw e
+        }
+        
+        val extension = fileName.substringAfterLast('.', "")
+        val localFile = File(mediaDir, if (extension.isEmpty()) contentHash else "$contentHash.$extension")
+        if (localFile.exists() || !partialFile.renameTo(localFile)) {
+            partialFile.delete()
         }
         
         return localFile
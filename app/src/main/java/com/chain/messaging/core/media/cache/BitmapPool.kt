@@ -0,0 +1,113 @@
+package com.chain.messaging.core.media.cache
+
+import android.graphics.Bitmap
+import com.chain.messaging.core.performance.memory.CachePriority
+import com.chain.messaging.core.performance.memory.ManagedCache
+import java.util.TreeMap
+
+/**
+ * Mutable bitmaps kept for `inBitmap` reuse, matched by allocation size.
+ *
+ * Only bitmaps the cache owns outright come back here, i.e. the sampled
+ * decodes that renditions are scaled from. Bitmaps handed to the UI are never
+ * pooled, because nothing signals when a view stops drawing them.
+ */
+class BitmapPool(
+    initialMaxBytes: Long
+) : ManagedCache {
+
+    override val cacheName: String = "bitmap_pool"
+    override val priority: CachePriority = CachePriority.LOW
+    override val budgetShare: Float = BUDGET_SHARE
+
+    // Allocation size to bitmaps of that size, plus insertion order for eviction
+    private val bySize = TreeMap<Int, ArrayDeque<Bitmap>>()
+    private val insertionOrder = LinkedHashSet<Bitmap>()
+    private var currentBytes = 0L
+    private var maxBytes = initialMaxBytes
+
+    var hits = 0L
+        @Synchronized get
+        private set
+    var misses = 0L
+        @Synchronized get
+        private set
+
+    /**
+     * A pooled bitmap large enough to decode [width] x [height] into, or null.
+     * Much larger bitmaps are not handed out, so one big bitmap is not tied up
+     * by a small decode.
+     */
+    @Synchronized
+    fun get(width: Int, height: Int, config: Bitmap.Config): Bitmap? {
+        val needed = width * height * bytesPerPixel(config)
+        val entry = bySize.ceilingEntry(needed)
+        if (entry == null || entry.key > needed * MAX_SIZE_MULTIPLE) {
+            misses++
+            return null
+        }
+        val bitmap = entry.value.removeFirst()
+        if (entry.value.isEmpty()) bySize.remove(entry.key)
+        insertionOrder.remove(bitmap)
+        currentBytes -= entry.key
+        hits++
+        return bitmap
+    }
+
+    /**
+     * Offer [bitmap] for reuse; it is recycled if it cannot be pooled
+     */
+    @Synchronized
+    fun put(bitmap: Bitmap) {
+        val bytes = bitmap.allocationByteCount
+        if (bitmap.isRecycled || !bitmap.isMutable || bitmap.config == Bitmap.Config.HARDWARE || bytes > maxBytes / 2) {
+            bitmap.recycle()
+            return
+        }
+        if (!insertionOrder.add(bitmap)) return
+        bySize.getOrPut(bytes) { ArrayDeque() }.addLast(bitmap)
+        currentBytes += bytes
+        trimToBytes(maxBytes)
+    }
+
+    @Synchronized
+    override fun sizeBytes(): Long = currentBytes
+
+    @Synchronized
+    override fun setMaxBytes(maxBytes: Long) {
+        this.maxBytes = maxBytes.coerceAtLeast(0L)
+        trimToBytes(this.maxBytes)
+    }
+
+    @Synchronized
+    override fun trimToBytes(maxBytes: Long): Long {
+        var freed = 0L
+        val iterator = insertionOrder.iterator()
+        // Oldest first
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            val bitmap = iterator.next()
+            iterator.remove()
+            val bytes = bitmap.allocationByteCount
+            bySize[bytes]?.let { bucket ->
+                bucket.remove(bitmap)
+                if (bucket.isEmpty()) bySize.remove(bytes)
+            }
+            currentBytes -= bytes
+            freed += bytes
+            bitmap.recycle()
+        }
+        return freed
+    }
+
+    private fun bytesPerPixel(config: Bitmap.Config): Int = when (config) {
+        Bitmap.Config.ALPHA_8 -> 1
+        Bitmap.Config.RGB_565, Bitmap.Config.ARGB_4444 -> 2
+        Bitmap.Config.RGBA_F16 -> 8
+        else -> 4
+    }
+
+    companion object {
+        const val BUDGET_SHARE = 0.05f
+        private const val MAX_SIZE_MULTIPLE = 4
+    }
+}
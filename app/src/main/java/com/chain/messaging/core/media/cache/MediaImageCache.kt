@@ -0,0 +1,278 @@
+package com.chain.messaging.core.media.cache
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.media.MediaMetadataRetriever
+import com.chain.messaging.core.performance.memory.ByteBudgetLruCache
+import com.chain.messaging.core.performance.memory.CachePriority
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.performance.metrics.time
+import com.chain.messaging.core.security.FileEncryption
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.data.local.storage.MediaBlobStore
+import com.chain.messaging.data.local.storage.MediaStorageService
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Two-tier cache of display-size media renditions.
+ *
+ * Decoded bitmaps live in a byte-budgeted memory LRU that shrinks with the
+ * other caches under memory pressure. Encoded renditions are kept encrypted
+ * on disk, so scrolling back to an image costs one small decode instead of
+ * decrypting and downsampling the original again. Originals are decoded
+ * straight from their decrypting stream; no plaintext ever reaches disk.
+ */
+@Singleton
+class MediaImageCache @Inject constructor(
+    @ApplicationContext context: Context,
+    private val mediaStorageService: MediaStorageService,
+    fileEncryption: FileEncryption,
+    blobStore: MediaBlobStore,
+    memoryBudgetManager: MemoryBudgetManager,
+    metricsRegistry: MetricsRegistry
+) {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+
+    private val memory = ByteBudgetLruCache<String, Bitmap>(
+        cacheName = "media_renditions",
+        priority = CachePriority.MEDIUM,
+        budgetShare = MEMORY_BUDGET_SHARE,
+        initialMaxBytes = memoryBudgetManager.policy.budgetFor(MEMORY_BUDGET_SHARE)
+    ) { _, bitmap -> bitmap.allocationByteCount.toLong() }
+
+    private val pool = BitmapPool(memoryBudgetManager.policy.budgetFor(BitmapPool.BUDGET_SHARE))
+
+    private val disk = RenditionDiskCache(
+        directory = File(context.cacheDir, DISK_CACHE_DIR),
+        fileEncryption = fileEncryption,
+        keys = blobStore::keys,
+        maxBytes = DISK_CACHE_MAX_BYTES
+    )
+
+    private val renderLatency = metricsRegistry.histogram(HotPathMetrics.MEDIA_RENDITION_RENDER)
+    private val memoryHits = metricsRegistry.counter(HotPathMetrics.MEDIA_RENDITION_MEMORY_HITS)
+    private val diskHits = metricsRegistry.counter(HotPathMetrics.MEDIA_RENDITION_DISK_HITS)
+    private val renders = AtomicLong()
+
+    init {
+        memoryBudgetManager.register(memory)
+        memoryBudgetManager.register(pool)
+    }
+
+    /**
+     * Decoded rendition already in memory, or null
+     */
+    fun getFromMemory(rendition: MediaRendition): Bitmap? {
+        val bitmap = memory.get(rendition.cacheKey) ?: return null
+        if (bitmap.isRecycled) {
+            memory.remove(rendition.cacheKey)
+            return null
+        }
+        memoryHits.increment()
+        return bitmap
+    }
+
+    /**
+     * Encoded rendition from the disk cache, or null on a miss
+     */
+    suspend fun getFromDisk(rendition: MediaRendition): ByteArray? = withContext(Dispatchers.IO) {
+        disk.get(rendition.cacheKey)?.also { diskHits.increment() }
+    }
+
+    /**
+     * Where to render [rendition] from. Stored images are read through their
+     * decrypting stream; stored videos use their thumbnail.
+     */
+    suspend fun openOriginal(rendition: MediaRendition): RenditionOriginal = withContext(Dispatchers.IO) {
+        rendition.localPath?.let { path ->
+            if (!File(path).exists()) throw FileNotFoundException(path)
+            return@withContext if (isVideoPath(path)) RenditionOriginal.VideoFile(path) else RenditionOriginal.ImageFile(path)
+        }
+
+        val opened = mediaStorageService.openMedia(rendition.mediaId).getOrThrow()
+            ?: throw FileNotFoundException("Media ${rendition.mediaId} not found")
+        opened.use {
+            when {
+                it.media.mimeType.startsWith("image/") -> RenditionOriginal.Bytes(it.stream.readBytes())
+                it.media.thumbnailPath != null -> RenditionOriginal.ImageFile(it.media.thumbnailPath)
+                else -> throw IOException("No preview for ${it.media.mimeType}")
+            }
+        }
+    }
+
+    /**
+     * Decode an encoded rendition read from the disk cache and keep it in memory
+     */
+    fun decodeCached(rendition: MediaRendition, bytes: ByteArray): Bitmap {
+        val bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.size)
+            ?: throw IOException("Corrupt cached rendition ${rendition.cacheKey}")
+        memory.put(rendition.cacheKey, bitmap)
+        return bitmap
+    }
+
+    /**
+     * Downsample [original] to [rendition]'s size, then store the result in
+     * both tiers. The sampled decode reuses a pooled bitmap where one fits.
+     */
+    suspend fun render(rendition: MediaRendition, original: RenditionOriginal): Bitmap = withContext(Dispatchers.IO) {
+        renderLatency.time {
+            val sampled = when (original) {
+                is RenditionOriginal.Bytes -> decodeSampled(rendition.sizePx) { options ->
+                    BitmapFactory.decodeByteArray(original.bytes, 0, original.bytes.size, options)
+                }
+                is RenditionOriginal.ImageFile -> decodeSampled(rendition.sizePx) { options ->
+                    BitmapFactory.decodeFile(original.path, options)
+                }
+                is RenditionOriginal.VideoFile -> extractFrame(original.path)
+            }
+            val output = scaleToFit(sampled, rendition.sizePx)
+            // The scaled copy is what the UI holds; the sampled scratch can be reused
+            if (output !== sampled) pool.put(sampled)
+
+            try {
+                disk.put(rendition.cacheKey, encode(output))
+            } catch (e: Exception) {
+                log.e(e) { "Failed to cache rendition ${rendition.cacheKey} on disk" }
+            }
+            memory.put(rendition.cacheKey, output)
+            renders.incrementAndGet()
+            output
+        }
+    }
+
+    fun stats(): MediaImageCacheStats = MediaImageCacheStats(
+        memoryHits = memoryHits.sum(),
+        diskHits = diskHits.sum(),
+        renders = renders.get(),
+        memoryBytes = memory.sizeBytes(),
+        diskBytes = disk.sizeBytes(),
+        poolHits = pool.hits,
+        poolMisses = pool.misses
+    )
+
+    fun clear() {
+        memory.clear()
+        pool.trimToBytes(0L)
+        disk.clear()
+    }
+
+    private inline fun decodeSampled(sizePx: Int, decode: (BitmapFactory.Options) -> Bitmap?): Bitmap {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        decode(bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) throw IOException("Unsupported image")
+
+        val sampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, sizePx)
+        val width = (bounds.outWidth + sampleSize - 1) / sampleSize
+        val height = (bounds.outHeight + sampleSize - 1) / sampleSize
+        val reusable = pool.get(width, height, Bitmap.Config.ARGB_8888)
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = sampleSize
+            inMutable = true
+            inBitmap = reusable
+        }
+        val bitmap = try {
+            decode(options)
+        } catch (e: IllegalArgumentException) {
+            // The decoder rejected the reused bitmap; decode into a fresh one
+            if (reusable == null) throw e
+            pool.put(reusable)
+            options.inBitmap = null
+            decode(options)
+        }
+        return bitmap ?: throw IOException("Failed to decode image")
+    }
+
+    private fun extractFrame(path: String): Bitmap {
+        val retriever = MediaMetadataRetriever()
+        try {
+            retriever.setDataSource(path)
+            return retriever.getFrameAtTime(VIDEO_FRAME_TIME_US, MediaMetadataRetriever.OPTION_CLOSEST_SYNC)
+                ?: throw IOException("No frame in $path")
+        } finally {
+            retriever.release()
+        }
+    }
+
+    private fun scaleToFit(bitmap: Bitmap, sizePx: Int): Bitmap {
+        val longest = maxOf(bitmap.width, bitmap.height)
+        if (longest <= sizePx) return bitmap
+        val scale = sizePx.toFloat() / longest
+        return Bitmap.createScaledBitmap(
+            bitmap,
+            (bitmap.width * scale).toInt().coerceAtLeast(1),
+            (bitmap.height * scale).toInt().coerceAtLeast(1),
+            true
+        )
+    }
+
+    private fun encode(bitmap: Bitmap): ByteArray {
+        val format = if (bitmap.hasAlpha()) Bitmap.CompressFormat.PNG else Bitmap.CompressFormat.JPEG
+        return ByteArrayOutputStream().use { out ->
+            bitmap.compress(format, ENCODE_QUALITY, out)
+            out.toByteArray()
+        }
+    }
+
+    companion object {
+        const val MEMORY_BUDGET_SHARE = 0.15f
+        private const val DISK_CACHE_DIR = "renditions"
+        private const val DISK_CACHE_MAX_BYTES = 64L * 1024 * 1024
+        private const val ENCODE_QUALITY = 85
+        private const val VIDEO_FRAME_TIME_US = 1_000_000L
+        private val VIDEO_EXTENSIONS = setOf("mp4", "3gp", "webm", "mkv", "mov", "m4v")
+
+        /**
+         * Largest power-of-two sample size that keeps the longest edge at
+         * least [sizePx], so the final scale only ever shrinks
+         */
+        fun sampleSizeFor(width: Int, height: Int, sizePx: Int): Int {
+            val longest = maxOf(width, height)
+            var sampleSize = 1
+            while (longest / (sampleSize * 2) >= sizePx) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+
+        fun isVideoPath(path: String): Boolean = path.substringAfterLast('.', "").lowercase() in VIDEO_EXTENSIONS
+    }
+}
+
+/**
+ * Source a rendition is produced from
+ */
+sealed class RenditionOriginal {
+    class Bytes(val bytes: ByteArray) : RenditionOriginal()
+    class ImageFile(val path: String) : RenditionOriginal()
+    class VideoFile(val path: String) : RenditionOriginal()
+}
+
+data class MediaImageCacheStats(
+    val memoryHits: Long,
+    val diskHits: Long,
+    val renders: Long,
+    val memoryBytes: Long,
+    val diskBytes: Long,
+    val poolHits: Long,
+    val poolMisses: Long
+) {
+    val hitRate: Double
+        get() {
+            val total = memoryHits + diskHits + renders
+            return if (total == 0L) 0.0 else (memoryHits + diskHits).toDouble() / total
+        }
+}
@@ -0,0 +1,38 @@
+package com.chain.messaging.core.media.cache
+
+/**
+ * A display-size version of an image or video frame, loaded through Coil by
+ * passing it as the request data. Sizes are rounded up to a few buckets so a
+ * chat list and a preview of similar size share one cached rendition.
+ */
+data class MediaRendition(
+    val mediaId: String,
+    val sizePx: Int
+) {
+    // Memory and disk cache key
+    val cacheKey: String
+        get() = "$mediaId@$sizePx"
+
+    /**
+     * Path of a plaintext local file, for media not yet in encrypted storage
+     */
+    val localPath: String?
+        get() = if (mediaId.startsWith(LOCAL_PREFIX)) mediaId.removePrefix(LOCAL_PREFIX) else null
+
+    companion object {
+        private const val LOCAL_PREFIX = "file:"
+        private val SIZE_BUCKETS = intArrayOf(128, 256, 512, 1024, 2048)
+
+        /**
+         * Rendition of media stored by [com.chain.messaging.data.local.storage.MediaStorageService]
+         */
+        fun stored(mediaId: String, requestedPx: Int): MediaRendition = MediaRendition(mediaId, bucketFor(requestedPx))
+
+        /**
+         * Rendition of a local file, e.g. a [com.chain.messaging.domain.model.MediaMessage] uri
+         */
+        fun localFile(path: String, requestedPx: Int): MediaRendition = MediaRendition(LOCAL_PREFIX + path, bucketFor(requestedPx))
+
+        fun bucketFor(requestedPx: Int): Int = SIZE_BUCKETS.firstOrNull { it >= requestedPx } ?: SIZE_BUCKETS.last()
+    }
+}
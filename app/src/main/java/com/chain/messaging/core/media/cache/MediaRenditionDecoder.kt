@@ -0,0 +1,53 @@
+package com.chain.messaging.core.media.cache
+
+import android.graphics.drawable.BitmapDrawable
+import coil.ImageLoader
+import coil.annotation.ExperimentalCoilApi
+import coil.decode.DecodeResult
+import coil.decode.Decoder
+import coil.decode.ImageSource
+import coil.fetch.SourceResult
+import coil.request.Options
+
+/**
+ * Coil decoder for sources produced by [MediaRenditionFetcher]. Decoding goes
+ * through [MediaImageCache], so the result lands in its tiers rather than in
+ * Coil's memory cache.
+ */
+@OptIn(ExperimentalCoilApi::class)
+class MediaRenditionDecoder(
+    private val source: ImageSource,
+    private val metadata: RenditionMetadata,
+    private val options: Options,
+    private val cache: MediaImageCache
+) : Decoder {
+
+    override suspend fun decode(): DecodeResult {
+        val rendition = metadata.rendition
+        val bitmap = source.use {
+            when (metadata.kind) {
+                RenditionMetadata.Kind.CACHED -> cache.decodeCached(rendition, it.source().readByteArray())
+                RenditionMetadata.Kind.IMAGE -> cache.render(rendition, it.toImageOriginal())
+                RenditionMetadata.Kind.VIDEO_FRAME -> cache.render(rendition, RenditionOriginal.VideoFile(it.file().toString()))
+            }
+        }
+        return DecodeResult(
+            drawable = BitmapDrawable(options.context.resources, bitmap),
+            isSampled = true
+        )
+    }
+
+    private fun ImageSource.toImageOriginal(): RenditionOriginal {
+        return fileOrNull()?.let { RenditionOriginal.ImageFile(it.toString()) }
+            ?: RenditionOriginal.Bytes(source().readByteArray())
+    }
+
+    class Factory(
+        private val cache: dagger.Lazy<MediaImageCache>
+    ) : Decoder.Factory {
+        override fun create(result: SourceResult, options: Options, imageLoader: ImageLoader): Decoder? {
+            val metadata = result.source.metadata as? RenditionMetadata ?: return null
+            return MediaRenditionDecoder(result.source, metadata, options, cache.get())
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.chain.messaging.core.media.cache
+
+import android.graphics.drawable.BitmapDrawable
+import coil.ImageLoader
+import coil.annotation.ExperimentalCoilApi
+import coil.decode.DataSource
+import coil.decode.ImageSource
+import coil.fetch.DrawableResult
+import coil.fetch.FetchResult
+import coil.fetch.Fetcher
+import coil.fetch.SourceResult
+import coil.request.Options
+import okio.Buffer
+import okio.Path.Companion.toPath
+
+/**
+ * Coil fetcher for [MediaRendition] requests.
+ *
+ * Memory hits are returned as finished drawables. Everything else is handed
+ * to [MediaRenditionDecoder] with [RenditionMetadata] saying whether the
+ * source is an already encoded rendition or an original still to be
+ * downsampled. There is deliberately no Coil keyer for renditions, so Coil's
+ * own caches never hold a second copy.
+ */
+@OptIn(ExperimentalCoilApi::class)
+class MediaRenditionFetcher(
+    private val rendition: MediaRendition,
+    private val options: Options,
+    private val cache: MediaImageCache
+) : Fetcher {
+
+    override suspend fun fetch(): FetchResult {
+        cache.getFromMemory(rendition)?.let { bitmap ->
+            return DrawableResult(
+                drawable = BitmapDrawable(options.context.resources, bitmap),
+                isSampled = true,
+                dataSource = DataSource.MEMORY_CACHE
+            )
+        }
+
+        cache.getFromDisk(rendition)?.let { bytes ->
+            return SourceResult(
+                source = ImageSource(Buffer().write(bytes), options.context, RenditionMetadata(rendition, RenditionMetadata.Kind.CACHED)),
+                mimeType = null,
+                dataSource = DataSource.DISK
+            )
+        }
+
+        val source = when (val original = cache.openOriginal(rendition)) {
+            is RenditionOriginal.Bytes -> ImageSource(
+                Buffer().write(original.bytes),
+                options.context,
+                RenditionMetadata(rendition, RenditionMetadata.Kind.IMAGE)
+            )
+            is RenditionOriginal.ImageFile -> ImageSource(
+                file = original.path.toPath(),
+                metadata = RenditionMetadata(rendition, RenditionMetadata.Kind.IMAGE)
+            )
+            is RenditionOriginal.VideoFile -> ImageSource(
+                file = original.path.toPath(),
+                metadata = RenditionMetadata(rendition, RenditionMetadata.Kind.VIDEO_FRAME)
+            )
+        }
+        return SourceResult(source = source, mimeType = null, dataSource = DataSource.DISK)
+    }
+
+    class Factory(
+        private val cache: dagger.Lazy<MediaImageCache>
+    ) : Fetcher.Factory<MediaRendition> {
+        override fun create(data: MediaRendition, options: Options, imageLoader: ImageLoader): Fetcher {
+            return MediaRenditionFetcher(data, options, cache.get())
+        }
+    }
+}
+
+/**
+ * Marks a fetched source as belonging to a [MediaRendition]
+ */
+@OptIn(ExperimentalCoilApi::class)
+class RenditionMetadata(
+    val rendition: MediaRendition,
+    val kind: Kind
+) : ImageSource.Metadata() {
+
+    enum class Kind {
+        // An encoded rendition from the disk cache
+        CACHED,
+        // An original image to downsample
+        IMAGE,
+        // A video to take a frame from
+        VIDEO_FRAME
+    }
+}
@@ -0,0 +1,112 @@
+package com.chain.messaging.core.media.cache
+
+import com.chain.messaging.core.security.FileEncryption
+import com.chain.messaging.data.local.storage.BlobKeys
+import java.io.File
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Encrypted on-disk cache of encoded renditions, bounded by total bytes.
+ *
+ * Entries are small display-size images, encrypted under a key derived from
+ * the media store secret and named by a keyed hash of their cache key. Reads
+ * refresh an entry's modification time, and writes evict the least recently
+ * used entries once the cache is over budget.
+ */
+class RenditionDiskCache(
+    private val directory: File,
+    private val fileEncryption: FileEncryption,
+    private val keys: suspend () -> BlobKeys,
+    private val maxBytes: Long
+) {
+    // Total size on disk, computed on first use
+    private val currentBytes = AtomicLong(-1L)
+    private val trimLock = Any()
+
+    /**
+     * Plaintext of a cached rendition, or null on a miss. Entries that fail to
+     * decrypt are dropped.
+     */
+    suspend fun get(cacheKey: String): ByteArray? {
+        val keys = keys()
+        val file = File(directory, keys.renditionFileName(cacheKey))
+        if (!file.exists()) return null
+        return try {
+            fileEncryption.openDecryptedInput(file, keys.renditionCacheKey()).use { it.readBytes() }
+                .also { file.setLastModified(System.currentTimeMillis()) }
+        } catch (e: Exception) {
+            remove(file)
+            null
+        }
+    }
+
+    suspend fun put(cacheKey: String, bytes: ByteArray) {
+        val keys = keys()
+        directory.mkdirs()
+        ensureSized()
+        val target = File(directory, keys.renditionFileName(cacheKey))
+        // Written aside and renamed, so readers never see a partial entry
+        val partial = File(directory, ".${UUID.randomUUID()}.partial")
+        try {
+            fileEncryption.openEncryptedOutput(partial, keys.renditionCacheKey()).stream.use { it.write(bytes) }
+            val replaced = target.length()
+            if (!partial.renameTo(target)) {
+                partial.delete()
+                return
+            }
+            addBytes(target.length() - replaced)
+        } catch (e: Exception) {
+            partial.delete()
+            throw e
+        }
+        trimIfNeeded()
+    }
+
+    fun sizeBytes(): Long {
+        ensureSized()
+        return currentBytes.get()
+    }
+
+    fun clear() {
+        synchronized(trimLock) {
+            directory.listFiles()?.forEach { it.delete() }
+            currentBytes.set(0L)
+        }
+    }
+
+    private fun trimIfNeeded() {
+        if (sizeBytes() <= maxBytes) return
+        synchronized(trimLock) {
+            val entries = directory.listFiles()?.filter { it.isFile }?.sortedBy { it.lastModified() } ?: return
+            var total = entries.sumOf { it.length() }
+            // Trim below the limit so the next few writes do not trim again
+            val target = (maxBytes * TRIM_TARGET).toLong()
+            for (file in entries) {
+                if (total <= target) break
+                val size = file.length()
+                if (file.delete()) total -= size
+            }
+            currentBytes.set(total)
+        }
+    }
+
+    private fun remove(file: File) {
+        val size = file.length()
+        if (file.delete()) addBytes(-size)
+    }
+
+    private fun addBytes(delta: Long) {
+        if (currentBytes.get() >= 0L) currentBytes.addAndGet(delta)
+    }
+
+    private fun ensureSized() {
+        if (currentBytes.get() >= 0L) return
+        val total = directory.listFiles()?.sumOf { it.length() } ?: 0L
+        currentBytes.compareAndSet(-1L, total)
+    }
+
+    private companion object {
+        const val TRIM_TARGET = 0.9
+    }
+}
@@ -219,7 +219,7 @@ class MessagingService @Inject constructor(
     suspend fun sendMessage(recipientId: String, messageContent: String): Result<Message> {
         return sendMessage(
             chatId = recipientId,
-            senderId = "current_user", // This should be the current user ID
+            senderId = Message.LOCAL_SENDER_ID,
             content = messageContent,
             type = MessageType.TEXT
         )
@@ -254,7 +254,7 @@ class MessagingService @Inject constructor(
     suspend fun sendGroupMessage(groupId: String, content: String): Result<Message> {
         return sendMessage(
             chatId = groupId,
-            senderId = "current_user", // This should be the current user ID
+            senderId = Message.LOCAL_SENDER_ID,
             content = content,
             type = MessageType.TEXT
         )
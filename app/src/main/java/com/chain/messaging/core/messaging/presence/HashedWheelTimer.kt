@@ -0,0 +1,104 @@
+package com.chain.messaging.core.messaging.presence
+
+/**
+ * Keyed timeouts on a hashed timing wheel.
+ *
+ * Deadlines are rounded up to [tickMs] and hashed into one of [wheelSize]
+ * slots, so scheduling, rescheduling and cancelling are O(1) and [advance]
+ * only visits the slots for the ticks that passed. Scheduling a key that is
+ * already pending moves its deadline and reuses its entry. Not thread-safe;
+ * callers hold their own lock.
+ */
+class HashedWheelTimer<K : Any>(
+    private val tickMs: Long = DEFAULT_TICK_MS,
+    wheelSize: Int = DEFAULT_WHEEL_SIZE,
+    startMs: Long = 0L
+) {
+
+    private val slots = Array(wheelSize) { LinkedHashSet<Entry<K>>() }
+    private val entries = HashMap<K, Entry<K>>()
+    private val expired = ArrayList<K>()
+    private var currentTick = startMs / tickMs
+
+    val size: Int
+        get() = entries.size
+
+    fun isEmpty(): Boolean = entries.isEmpty()
+
+    operator fun contains(key: K): Boolean = key in entries
+
+    /**
+     * Fire [key] [delayMs] after [nowMs], replacing any pending deadline
+     */
+    fun schedule(key: K, delayMs: Long, nowMs: Long) {
+        val deadlineTick = maxOf((nowMs + delayMs + tickMs - 1) / tickMs, currentTick + 1)
+        val entry = entries[key]
+        if (entry == null) {
+            Entry(key, deadlineTick).also {
+                entries[key] = it
+                slotFor(deadlineTick).add(it)
+            }
+        } else if (entry.deadlineTick != deadlineTick) {
+            slotFor(entry.deadlineTick).remove(entry)
+            entry.deadlineTick = deadlineTick
+            slotFor(deadlineTick).add(entry)
+        }
+    }
+
+    fun cancel(key: K): Boolean {
+        val entry = entries.remove(key) ?: return false
+        slotFor(entry.deadlineTick).remove(entry)
+        return true
+    }
+
+    /**
+     * Move the wheel to [nowMs] and pass every key that came due to
+     * [onExpired], in no particular order. [onExpired] may schedule again.
+     */
+    fun advance(nowMs: Long, onExpired: (K) -> Unit) {
+        val targetTick = nowMs / tickMs
+        if (targetTick <= currentTick) return
+
+        // After a long pause one pass over the wheel covers every slot
+        val steps = minOf(targetTick - currentTick, slots.size.toLong())
+        for (step in 1..steps) {
+            val iterator = slotFor(currentTick + step).iterator()
+            while (iterator.hasNext()) {
+                val entry = iterator.next()
+                if (entry.deadlineTick <= targetTick) {
+                    iterator.remove()
+                    entries.remove(entry.key)
+                    expired += entry.key
+                }
+            }
+        }
+        currentTick = targetTick
+
+        try {
+            expired.forEach(onExpired)
+        } finally {
+            expired.clear()
+        }
+    }
+
+    /**
+     * Earliest pending deadline, rounded up to the tick, or null when empty
+     */
+    fun nextDeadlineMs(): Long? = entries.values.minOfOrNull { it.deadlineTick }?.let { it * tickMs }
+
+    fun clear() {
+        slots.forEach { it.clear() }
+        entries.clear()
+    }
+
+    private fun slotFor(tick: Long): MutableSet<Entry<K>> = slots[(tick % slots.size).toInt()]
+
+    private class Entry<K>(val key: K, var deadlineTick: Long)
+
+    companion object {
+        const val DEFAULT_TICK_MS = 100L
+
+        // 51.2 s per turn, so presence timeouts never wrap
+        const val DEFAULT_WHEEL_SIZE = 512
+    }
+}
@@ -0,0 +1,386 @@
+package com.chain.messaging.core.messaging.presence
+
+import com.chain.messaging.core.performance.memory.AllocationSampler
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * A user's online state
+ */
+data class UserPresence(
+    val isOnline: Boolean,
+    val lastSeen: Long?
+)
+
+/**
+ * Presence throughput since the previous [PresenceEngine.stats] call
+ */
+data class PresenceStats(
+    val inboundEventsPerSecond: Double,
+    val outboundEventsPerSecond: Double,
+    val emissionsPerSecond: Double,
+    val allocatedBytesPerSecond: Long
+)
+
+/**
+ * Typing and online state for every chat and user.
+ *
+ * Events update plain in-memory state under one lock, mostly in place: a
+ * repeated typing event only moves its timeout. Flows are published at most
+ * once per [FRAME_MS] frame and only for the chats and users that changed, so
+ * a burst of events in a large group costs one emission per chat. Every
+ * typing and online expiry sits on one [HashedWheelTimer], and the frame loop
+ * sleeps until the next deadline or event.
+ *
+ * Local typing is throttled to one start signal per [OUTBOUND_REFRESH_MS] and
+ * debounced into a stop signal after [OUTBOUND_IDLE_MS] without keystrokes.
+ */
+@Singleton
+class PresenceEngine(
+    private val transport: PresenceTransport,
+    metricsRegistry: MetricsRegistry,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long
+) {
+
+    @Inject
+    constructor(transport: PresenceTransport, metricsRegistry: MetricsRegistry) : this(
+        transport = transport,
+        metricsRegistry = metricsRegistry,
+        scope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+        clock = { System.nanoTime() / 1_000_000L }
+    )
+
+    private val log = Logger.of(LogSubsystem.P2P)
+    private val inboundEvents = metricsRegistry.counter(HotPathMetrics.PRESENCE_EVENTS_IN)
+    private val outboundEvents = metricsRegistry.counter(HotPathMetrics.PRESENCE_EVENTS_OUT)
+    private val emissions = metricsRegistry.counter(HotPathMetrics.PRESENCE_EMISSIONS)
+    private val allocatedBytes = metricsRegistry.counter(HotPathMetrics.PRESENCE_ALLOCATED_BYTES)
+
+    private val lock = Any()
+    private val timers = HashedWheelTimer<TimerKey>(startMs = clock())
+    private val onExpired: (TimerKey) -> Unit = ::expireLocked
+
+    private val typing = HashMap<String, MutableSet<String>>()
+    private val typingFlows = HashMap<String, MutableStateFlow<Set<String>>>()
+    private val dirtyChats = HashSet<String>()
+
+    private val presence = HashMap<String, UserPresence>()
+    private val presenceFlows = HashMap<String, MutableStateFlow<UserPresence>>()
+    private val dirtyUsers = HashSet<String>()
+
+    private val outbound = HashMap<String, OutboundTyping>()
+    private val pendingSends = LinkedHashMap<String, Boolean>()
+
+    private val _typingUsers = MutableStateFlow<Map<String, Set<String>>>(emptyMap())
+    val typingUsers: StateFlow<Map<String, Set<String>>> = _typingUsers.asStateFlow()
+
+    private val _onlineUsers = MutableStateFlow<Map<String, Boolean>>(emptyMap())
+    val onlineUsers: StateFlow<Map<String, Boolean>> = _onlineUsers.asStateFlow()
+
+    private val _lastSeenUsers = MutableStateFlow<Map<String, Long>>(emptyMap())
+    val lastSeenUsers: StateFlow<Map<String, Long>> = _lastSeenUsers.asStateFlow()
+
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private val frameLoopStarted = AtomicBoolean()
+
+    private var lastStatsAt = clock()
+    private var lastStatsTotals = LongArray(4)
+
+    init {
+        scope.launch {
+            try {
+                transport.incoming().collect { signal ->
+                    when (signal) {
+                        is PresenceSignal.Typing -> onTyping(signal.chatId, signal.userId, signal.isTyping)
+                        is PresenceSignal.Online -> onPresence(signal.userId, signal.isOnline, signal.lastSeen)
+                    }
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                log.e(e) { "Presence transport failed" }
+            }
+        }
+    }
+
+    /**
+     * Users typing in [chatId], updated at most once per frame
+     */
+    fun typingIn(chatId: String): StateFlow<Set<String>> = synchronized(lock) {
+        typingFlows.getOrPut(chatId) { MutableStateFlow(typing[chatId]?.toSet() ?: emptySet()) }
+    }
+
+    /**
+     * Online state of [userId], updated at most once per frame
+     */
+    fun presenceOf(userId: String): StateFlow<UserPresence> = synchronized(lock) {
+        presenceFlows.getOrPut(userId) { MutableStateFlow(presence[userId] ?: OFFLINE) }
+    }
+
+    fun getTypingUsers(chatId: String): Set<String> = synchronized(lock) {
+        typing[chatId]?.toSet() ?: emptySet()
+    }
+
+    fun isUserOnline(userId: String): Boolean = synchronized(lock) { presence[userId]?.isOnline ?: false }
+
+    fun getUserLastSeen(userId: String): Long? = synchronized(lock) { presence[userId]?.lastSeen }
+
+    /**
+     * [userId] started or stopped typing in [chatId]. A start lasts
+     * [TYPING_TIMEOUT_MS] unless it is repeated.
+     */
+    fun onTyping(chatId: String, userId: String, isTyping: Boolean) {
+        inboundEvents.increment()
+        val now = clock()
+        synchronized(lock) {
+            if (isTyping) {
+                timers.schedule(TimerKey.RemoteTyping(chatId, userId), TYPING_TIMEOUT_MS, now)
+                if (typing.getOrPut(chatId) { HashSet() }.add(userId)) dirtyChats += chatId
+            } else {
+                timers.cancel(TimerKey.RemoteTyping(chatId, userId))
+                removeTypingLocked(chatId, userId)
+            }
+        }
+        requestFrame()
+    }
+
+    /**
+     * [userId] came online or went offline. Online lasts [ONLINE_TIMEOUT_MS]
+     * unless it is refreshed.
+     */
+    fun onPresence(userId: String, isOnline: Boolean, lastSeen: Long = System.currentTimeMillis()) {
+        inboundEvents.increment()
+        val now = clock()
+        synchronized(lock) {
+            val current = presence[userId]
+            val updated = if (isOnline) UserPresence(true, lastSeen) else UserPresence(false, current?.lastSeen)
+            if (updated != current) {
+                presence[userId] = updated
+                dirtyUsers += userId
+            }
+            if (isOnline) {
+                timers.schedule(TimerKey.Online(userId), ONLINE_TIMEOUT_MS, now)
+            } else {
+                timers.cancel(TimerKey.Online(userId))
+            }
+        }
+        requestFrame()
+    }
+
+    /**
+     * Record activity from [userId] without changing whether they are online
+     */
+    fun onSeen(userId: String, lastSeen: Long = System.currentTimeMillis()) {
+        inboundEvents.increment()
+        val now = clock()
+        synchronized(lock) {
+            val current = presence[userId]
+            presence[userId] = UserPresence(current?.isOnline ?: false, lastSeen)
+            dirtyUsers += userId
+            if (current?.isOnline == true) timers.schedule(TimerKey.Online(userId), ONLINE_TIMEOUT_MS, now)
+        }
+        requestFrame()
+    }
+
+    /**
+     * The local user typed in [chatId]. Call on every keystroke.
+     */
+    fun onLocalTyping(chatId: String) {
+        val now = clock()
+        synchronized(lock) {
+            val state = outbound[chatId]
+            if (state == null || now - state.lastSentAt >= OUTBOUND_REFRESH_MS) {
+                (state ?: OutboundTyping().also { outbound[chatId] = it }).lastSentAt = now
+                pendingSends[chatId] = true
+            }
+            timers.schedule(TimerKey.LocalTyping(chatId), OUTBOUND_IDLE_MS, now)
+        }
+        requestFrame()
+    }
+
+    /**
+     * The local user sent or cleared their draft in [chatId]
+     */
+    fun onLocalTypingStopped(chatId: String) {
+        synchronized(lock) {
+            timers.cancel(TimerKey.LocalTyping(chatId))
+            stopLocalLocked(chatId)
+        }
+        requestFrame()
+    }
+
+    /**
+     * Event, emission and allocation rates since the previous call
+     */
+    fun stats(): PresenceStats = synchronized(lock) {
+        val now = clock()
+        val elapsedMs = (now - lastStatsAt).coerceAtLeast(1L)
+        val totals = longArrayOf(inboundEvents.sum(), outboundEvents.sum(), emissions.sum(), allocatedBytes.sum())
+        val perSecond = DoubleArray(totals.size) { (totals[it] - lastStatsTotals[it]) * 1000.0 / elapsedMs }
+        lastStatsAt = now
+        lastStatsTotals = totals
+        PresenceStats(
+            inboundEventsPerSecond = perSecond[0],
+            outboundEventsPerSecond = perSecond[1],
+            emissionsPerSecond = perSecond[2],
+            allocatedBytesPerSecond = perSecond[3].toLong()
+        )
+    }
+
+    /**
+     * Expire due timeouts, publish what changed and hand pending signals to
+     * the transport. Returns how long the engine may sleep, or null when no
+     * timeout is pending.
+     */
+    internal fun frame(): Long? {
+        val now = clock()
+        val sends: List<Pair<String, Boolean>>
+        val sleepMs: Long?
+        synchronized(lock) {
+            timers.advance(now, onExpired)
+            publishLocked()
+            sends = pendingSends.map { (chatId, isTyping) ->
+                if (isTyping) outbound[chatId]?.announced = true
+                chatId to isTyping
+            }
+            pendingSends.clear()
+            sleepMs = timers.nextDeadlineMs()?.let { (it - now).coerceAtLeast(0L) }
+        }
+        if (sends.isNotEmpty()) {
+            outboundEvents.add(sends.size.toLong())
+            scope.launch {
+                sends.forEach { (chatId, isTyping) ->
+                    try {
+                        transport.sendTyping(chatId, isTyping)
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        log.w(e) { "Failed to send typing state for $chatId" }
+                    }
+                }
+            }
+        }
+        return sleepMs
+    }
+
+    private fun requestFrame() {
+        if (frameLoopStarted.compareAndSet(false, true)) scope.launch { runFrames() }
+        wakeups.trySend(Unit)
+    }
+
+    private suspend fun runFrames() {
+        while (true) {
+            val sleepMs = frame()
+            if (sleepMs == null) wakeups.receive() else withTimeoutOrNull(sleepMs) { wakeups.receive() }
+            // Let the rest of a burst arrive so it is published together
+            delay(FRAME_MS)
+        }
+    }
+
+    private fun publishLocked() {
+        var bytes = 0L
+        if (dirtyChats.isNotEmpty()) {
+            val all = HashMap(_typingUsers.value)
+            for (chatId in dirtyChats) {
+                val users = typing[chatId]
+                val snapshot = if (users.isNullOrEmpty()) emptySet() else users.toSet()
+                bytes += SET_BYTES + snapshot.size * ENTRY_BYTES
+                typingFlows[chatId]?.value = snapshot
+                if (snapshot.isEmpty()) all.remove(chatId) else all[chatId] = snapshot
+            }
+            _typingUsers.value = all
+            bytes += SET_BYTES + all.size * ENTRY_BYTES
+            emissions.add(dirtyChats.size + 1L)
+            dirtyChats.clear()
+        }
+        if (dirtyUsers.isNotEmpty()) {
+            val online = HashMap(_onlineUsers.value)
+            val lastSeen = HashMap(_lastSeenUsers.value)
+            for (userId in dirtyUsers) {
+                val state = presence[userId] ?: continue
+                presenceFlows[userId]?.value = state
+                online[userId] = state.isOnline
+                state.lastSeen?.let { lastSeen[userId] = it }
+            }
+            _onlineUsers.value = online
+            _lastSeenUsers.value = lastSeen
+            bytes += 2 * SET_BYTES + (online.size + lastSeen.size) * ENTRY_BYTES
+            emissions.add(dirtyUsers.size + 2L)
+            dirtyUsers.clear()
+        }
+        if (bytes > 0L) {
+            allocatedBytes.add(bytes)
+            MemoryDiagnostics.allocations.record(AllocationSampler.PRESENCE, bytes)
+        }
+    }
+
+    private fun expireLocked(key: TimerKey) {
+        when (key) {
+            is TimerKey.RemoteTyping -> removeTypingLocked(key.chatId, key.userId)
+            is TimerKey.Online -> presence[key.userId]?.takeIf { it.isOnline }?.let {
+                presence[key.userId] = it.copy(isOnline = false)
+                dirtyUsers += key.userId
+            }
+            is TimerKey.LocalTyping -> stopLocalLocked(key.chatId)
+        }
+    }
+
+    private fun removeTypingLocked(chatId: String, userId: String) {
+        val users = typing[chatId] ?: return
+        if (!users.remove(userId)) return
+        if (users.isEmpty()) typing.remove(chatId)
+        dirtyChats += chatId
+    }
+
+    private fun stopLocalLocked(chatId: String) {
+        val state = outbound.remove(chatId) ?: return
+        pendingSends.remove(chatId)
+        // A start that never left needs no stop
+        if (state.announced) pendingSends[chatId] = false
+    }
+
+    private sealed class TimerKey {
+        data class RemoteTyping(val chatId: String, val userId: String) : TimerKey()
+        data class Online(val userId: String) : TimerKey()
+        data class LocalTyping(val chatId: String) : TimerKey()
+    }
+
+    private class OutboundTyping {
+        var lastSentAt = 0L
+        var announced = false
+    }
+
+    companion object {
+        const val FRAME_MS = 16L
+        const val TYPING_TIMEOUT_MS = 3_000L
+        const val ONLINE_TIMEOUT_MS = 30_000L
+
+        // Refresh well inside the receiver's typing timeout
+        const val OUTBOUND_REFRESH_MS = 2_000L
+        const val OUTBOUND_IDLE_MS = 2_000L
+
+        private val OFFLINE = UserPresence(isOnline = false, lastSeen = null)
+
+        // Rough JVM footprint of a published collection and of one entry in it
+        private const val SET_BYTES = 48L
+        private const val ENTRY_BYTES = 32L
+    }
+}
@@ -0,0 +1,157 @@
+package com.chain.messaging.core.messaging.presence
+
+import com.chain.messaging.core.auth.AuthenticationService
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.p2p.Message
+import com.chain.messaging.core.p2p.MessageType
+import com.chain.messaging.core.p2p.NetworkEvent
+import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.data.local.dao.ChatDao
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.filterIsInstance
+import kotlinx.coroutines.flow.mapNotNull
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import java.util.Base64
+import java.util.UUID
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Presence update received from another user
+ */
+sealed class PresenceSignal {
+    data class Typing(val chatId: String, val userId: String, val isTyping: Boolean) : PresenceSignal()
+    data class Online(val userId: String, val isOnline: Boolean, val lastSeen: Long) : PresenceSignal()
+}
+
+/**
+ * Network side of [PresenceEngine]
+ */
+interface PresenceTransport {
+    suspend fun sendTyping(chatId: String, isTyping: Boolean)
+
+    fun incoming(): Flow<PresenceSignal>
+
+    companion object {
+        /**
+         * Keeps presence local, for tests and before the network is up
+         */
+        val NONE = object : PresenceTransport {
+            override suspend fun sendTyping(chatId: String, isTyping: Boolean) = Unit
+
+            override fun incoming(): Flow<PresenceSignal> = emptyFlow()
+        }
+    }
+}
+
+/**
+ * Sends and receives presence as short-lived P2P messages.
+ *
+ * Typing goes only to the chat's other members, Signal-encrypted for each of
+ * them like any other message. An incoming signal counts only if it decrypts
+ * under the session with its claimed sender, which makes that sender the
+ * authenticated one, and typing only if that sender is a member of the chat.
+ */
+@Singleton
+class P2PPresenceTransport @Inject constructor(
+    private val p2pManager: P2PManager,
+    private val authenticationService: AuthenticationService,
+    private val encryptionService: SignalEncryptionService,
+    private val chatDao: ChatDao
+) : PresenceTransport {
+
+    private val log = Logger.of(LogSubsystem.P2P)
+
+    override suspend fun sendTyping(chatId: String, isTyping: Boolean) {
+        val userId = authenticationService.getCurrentUser()?.userId ?: return
+        val plaintext = json.encodeToString(PresencePayload(chatId = chatId, typing = isTyping)).toByteArray()
+        val now = System.currentTimeMillis()
+        members(chatId).filter { it != userId }.forEach { recipientId ->
+            val encrypted = encryptionService.encryptMessage(SignalProtocolAddress(recipientId, 1), plaintext).getOrElse { e ->
+                log.d { "No session with $recipientId for presence: ${e.message}" }
+                return@forEach
+            }
+            p2pManager.broadcastMessage(
+                Message(
+                    id = UUID.randomUUID().toString(),
+                    type = MessageType.PRESENCE,
+                    payload = json.encodeToString(
+                        PresenceEnvelope(encrypted.type.name, Base64.getEncoder().encodeToString(encrypted.ciphertext))
+                    ),
+                    from = userId,
+                    to = recipientId,
+                    timestamp = now,
+                    ttl = PRESENCE_TTL
+                )
+            )
+        }
+    }
+
+    override fun incoming(): Flow<PresenceSignal> = p2pManager.subscribeToNetwork()
+        .filterIsInstance<NetworkEvent.MessageReceived>()
+        .mapNotNull { event -> event.message.takeIf { it.type == MessageType.PRESENCE }?.let { decode(it) } }
+
+    private suspend fun decode(message: Message): PresenceSignal? {
+        val sender = message.from
+        val plaintext = try {
+            val envelope = json.decodeFromString<PresenceEnvelope>(message.payload)
+            encryptionService.decryptMessage(
+                SignalProtocolAddress(sender, 1),
+                EncryptedMessage(
+                    recipientAddress = SignalProtocolAddress(sender, 1),
+                    ciphertext = Base64.getDecoder().decode(envelope.ciphertext),
+                    type = EncryptedMessage.Type.valueOf(envelope.type)
+                )
+            ).getOrThrow()
+        } catch (e: Exception) {
+            log.w(e) { "Dropping presence message ${message.id} that does not decrypt as $sender" }
+            return null
+        }
+        val payload = try {
+            json.decodeFromString<PresencePayload>(plaintext.decodeToString())
+        } catch (e: Exception) {
+            log.w(e) { "Dropping malformed presence message ${message.id}" }
+            return null
+        }
+        return if (payload.chatId != null) {
+            if (sender !in members(payload.chatId)) {
+                log.w { "Dropping typing from $sender, who is not in ${payload.chatId}" }
+                return null
+            }
+            PresenceSignal.Typing(payload.chatId, sender, payload.typing)
+        } else {
+            PresenceSignal.Online(sender, payload.online, message.timestamp)
+        }
+    }
+
+    private suspend fun members(chatId: String): List<String> =
+        chatDao.getParticipants(chatId).filter { it.isParticipant }.map { it.userId }
+
+    @Serializable
+    private data class PresencePayload(
+        val chatId: String? = null,
+        val typing: Boolean = false,
+        val online: Boolean = true
+    )
+
+    // Signal ciphertext of a PresencePayload and its Signal message type
+    @Serializable
+    private data class PresenceEnvelope(
+        val type: String,
+        val ciphertext: String
+    )
+
+    private companion object {
+        // Presence is stale within seconds, so it is not routed far
+        const val PRESENCE_TTL = 2
+
+        val json = Json { ignoreUnknownKeys = true }
+    }
+}
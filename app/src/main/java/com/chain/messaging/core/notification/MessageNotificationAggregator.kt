@@ -0,0 +1,205 @@
+package com.chain.messaging.core.notification
+
+/**
+ * One message line of a chat notification
+ */
+data class NotificationLine(
+    val messageId: String,
+    val senderId: String,
+    val senderName: String,
+    val text: String,
+    val timestamp: Long
+)
+
+/**
+ * Everything one chat's notification shows
+ */
+data class ChatNotificationContent(
+    val chatId: String,
+    // Null for direct chats
+    val chatName: String?,
+    // Latest lines, oldest first
+    val lines: List<NotificationLine>,
+    val unreadCount: Int,
+    val channelId: String,
+    val defaults: Int,
+    val canReply: Boolean
+) {
+    val isGroup: Boolean
+        get() = chatName != null
+}
+
+/**
+ * Chats to post after one window, with the summary for the whole bundle
+ */
+class NotificationBatch(
+    val chats: List<ChatNotificationContent>,
+    // Every chat with a live notification, changed or not; null when the summary is unchanged
+    val summary: List<ChatNotificationContent>?,
+    // Newly notified messages with their chat ids
+    val messages: List<Pair<String, NotificationLine>>,
+    // Chats that received messages but whose content did not change
+    val skippedUnchanged: Int
+) {
+    val isEmpty: Boolean
+        get() = chats.isEmpty() && summary == null
+
+    // Chat notifications plus the summary
+    val posts: Int
+        get() = chats.size + if (summary != null) 1 else 0
+}
+
+/**
+ * Buffers incoming message notifications and folds them into one
+ * notification per chat.
+ *
+ * [add] only records the message; the first message after a quiet period
+ * opens a window of [windowMs], and at its end [drain] returns each chat
+ * that changed with its latest [maxLines] lines. A chat whose content is the
+ * same as when it was last posted, such as a replayed duplicate, is not
+ * returned again. Thread-safe.
+ */
+class MessageNotificationAggregator(
+    val windowMs: Long = DEFAULT_WINDOW_MS,
+    private val maxLines: Int = DEFAULT_MAX_LINES
+) {
+
+    private val lock = Any()
+    private val chats = LinkedHashMap<String, ChatState>()
+    private val pending = ArrayList<Pair<String, NotificationLine>>()
+    private var windowOpen = false
+    private var postedSummary: List<Int?>? = null
+
+    /**
+     * Record [line] for [chatId]. Returns true when this opened a window, in
+     * which case the caller drains after [windowMs].
+     */
+    fun add(
+        chatId: String,
+        chatName: String?,
+        line: NotificationLine,
+        unreadCount: Int,
+        channelId: String,
+        defaults: Int,
+        canReply: Boolean
+    ): Boolean = synchronized(lock) {
+        val chat = chats.getOrPut(chatId) { ChatState(chatId) }
+        chat.chatName = chatName
+        chat.unreadCount = maxOf(unreadCount, chat.unreadCount)
+        chat.channelId = channelId
+        chat.defaults = defaults
+        chat.canReply = canReply
+        chat.touched = true
+        if (chat.lines.none { it.messageId == line.messageId }) {
+            chat.lines.addLast(line)
+            while (chat.lines.size > maxLines) chat.lines.removeFirst()
+            pending += chatId to line
+            // Keep recently active chats last, like the shade orders them
+            chats.remove(chatId)
+            chats[chatId] = chat
+        }
+
+        if (windowOpen) {
+            false
+        } else {
+            windowOpen = true
+            true
+        }
+    }
+
+    /**
+     * Close the window and return what changed since the last drain
+     */
+    fun drain(): NotificationBatch = synchronized(lock) {
+        windowOpen = false
+        var skipped = 0
+        val changed = ArrayList<ChatNotificationContent>()
+        for (chat in chats.values) {
+            if (!chat.touched) continue
+            chat.touched = false
+            val signature = chat.signature()
+            if (signature == chat.postedSignature) {
+                skipped++
+                continue
+            }
+            chat.postedSignature = signature
+            changed += chat.content()
+        }
+
+        val summarySignature = chats.values.map { it.postedSignature }
+        // Once posted, the summary stays until the last chat goes: cancelling
+        // it would take the remaining children with it
+        val summary = when {
+            chats.isEmpty() || (postedSummary == null && chats.size < SUMMARY_MIN_CHATS) -> {
+                postedSummary = null
+                null
+            }
+            summarySignature != postedSummary -> {
+                postedSummary = summarySignature
+                chats.values.map { it.content() }
+            }
+            else -> null
+        }
+
+        val messages = pending.toList()
+        pending.clear()
+        NotificationBatch(changed, summary, messages, skipped)
+    }
+
+    /**
+     * Forget [chatId], after its notification was dismissed, opened or the
+     * chat read. The next [drain] updates the summary.
+     */
+    fun clear(chatId: String): Boolean = synchronized(lock) {
+        if (chats.remove(chatId) == null) return false
+        pending.removeAll { it.first == chatId }
+        true
+    }
+
+    fun clearAll() = synchronized(lock) {
+        chats.clear()
+        pending.clear()
+        postedSummary = null
+    }
+
+    fun chatCount(): Int = synchronized(lock) { chats.size }
+
+    private class ChatState(val chatId: String) {
+        var chatName: String? = null
+        val lines = ArrayDeque<NotificationLine>()
+        var unreadCount = 0
+        var channelId = ""
+        var defaults = 0
+        var canReply = false
+        var touched = false
+        var postedSignature: Int? = null
+
+        fun signature(): Int {
+            var hash = chatName.hashCode()
+            hash = 31 * hash + unreadCount
+            lines.forEach { hash = 31 * hash + it.messageId.hashCode() }
+            return hash
+        }
+
+        fun content() = ChatNotificationContent(
+            chatId = chatId,
+            chatName = chatName,
+            lines = lines.toList(),
+            unreadCount = unreadCount,
+            channelId = channelId,
+            defaults = defaults,
+            canReply = canReply
+        )
+    }
+
+    companion object {
+        // Long enough to catch a reconnect burst, short enough to feel immediate
+        const val DEFAULT_WINDOW_MS = 300L
+
+        // MessagingStyle shows about this many lines when expanded
+        const val DEFAULT_MAX_LINES = 7
+
+        // A lone chat needs no summary to bundle under
+        const val SUMMARY_MIN_CHATS = 2
+    }
+}
@@ -27,17 +27,25 @@ class NotificationActionReceiver : BroadcastReceiver() {
         const val ACTION_REPLY = "ACTION_REPLY"
         const val ACTION_MARK_READ = "ACTION_MARK_READ"
         const val ACTION_MUTE_CHAT = "ACTION_MUTE_CHAT"
+        const val ACTION_DISMISS = "ACTION_DISMISS"
+        const val ACTION_DISMISS_SUMMARY = "ACTION_DISMISS_SUMMARY"
         const val KEY_TEXT_REPLY = "key_text_reply"
     }
     
     override fun onReceive(context: Context, intent: Intent) {
-        val chatId = intent.getStringExtra("chat_id") ?: return
-        
         // Get dependencies through EntryPoint since this is a manifest-registered receiver
         val entryPoint = EntryPointAccessors.fromApplication(
             context.applicationContext,
             NotificationActionReceiverEntryPoint::class.java
         )
+        
+        // Swiping the summary removes every chat notification under it
+        if (intent.action == ACTION_DISMISS_SUMMARY) {
+            entryPoint.getNotificationService().onSummaryNotificationRemoved()
+            return
+        }
+        
+        val chatId = intent.getStringExtra("chat_id") ?: return
         val notificationActionHandler = entryPoint.getNotificationActionHandler()
         
         when (intent.action) {
@@ -55,6 +63,10 @@ class NotificationActionReceiver : BroadcastReceiver() {
             ACTION_MUTE_CHAT -> {
                 notificationActionHandler.handleMuteChat(chatId)
             }
+            
+            ACTION_DISMISS -> {
+                entryPoint.getNotificationService().onChatNotificationRemoved(chatId)
+            }
         }
     }
     
@@ -71,6 +83,7 @@ class NotificationActionReceiver : BroadcastReceiver() {
 @InstallIn(SingletonComponent::class)
 interface NotificationActionReceiverEntryPoint {
     fun getNotificationActionHandler(): NotificationActionHandler
+    fun getNotificationService(): NotificationService
 }
 
 /**
@@ -0,0 +1,67 @@
+package com.chain.messaging.core.notification
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.util.LruCache
+import androidx.core.app.Person
+import androidx.core.graphics.drawable.IconCompat
+
+/**
+ * Notification [Person]s with initials avatars, drawn once per sender and
+ * reused for every notification that sender appears in
+ */
+class NotificationAvatars(maxSenders: Int = DEFAULT_MAX_SENDERS) {
+
+    private val people = LruCache<String, Person>(maxSenders)
+
+    private val circlePaint = Paint(Paint.ANTI_ALIAS_FLAG)
+    private val textPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.WHITE
+        textAlign = Paint.Align.CENTER
+        textSize = AVATAR_PX * 0.42f
+    }
+
+    fun personFor(senderId: String, senderName: String): Person {
+        val key = "$senderId\u0000$senderName"
+        people.get(key)?.let { return it }
+        return Person.Builder()
+            .setKey(senderId)
+            .setName(senderName)
+            .setIcon(IconCompat.createWithBitmap(drawInitials(senderId, senderName)))
+            .build()
+            .also { people.put(key, it) }
+    }
+
+    @Synchronized
+    private fun drawInitials(senderId: String, senderName: String): Bitmap {
+        val bitmap = Bitmap.createBitmap(AVATAR_PX, AVATAR_PX, Bitmap.Config.ARGB_8888)
+        val canvas = Canvas(bitmap)
+        val radius = AVATAR_PX / 2f
+        circlePaint.color = PALETTE[Math.floorMod(senderId.hashCode(), PALETTE.size)]
+        canvas.drawCircle(radius, radius, radius, circlePaint)
+
+        val baseline = radius - (textPaint.descent() + textPaint.ascent()) / 2f
+        canvas.drawText(initials(senderName), radius, baseline, textPaint)
+        return bitmap
+    }
+
+    private fun initials(name: String): String = name.split(' ')
+        .filter { it.isNotBlank() }
+        .take(2)
+        .joinToString("") { it.first().uppercase() }
+        .ifEmpty { "?" }
+
+    private companion object {
+        const val DEFAULT_MAX_SENDERS = 64
+
+        // Large enough for the expanded conversation layout on xxxhdpi
+        const val AVATAR_PX = 128
+
+        val PALETTE = intArrayOf(
+            0xFF5C6BC0.toInt(), 0xFF26A69A.toInt(), 0xFFEF5350.toInt(), 0xFFAB47BC.toInt(),
+            0xFF42A5F5.toInt(), 0xFFFFA726.toInt(), 0xFF8D6E63.toInt(), 0xFF66BB6A.toInt()
+        )
+    }
+}
@@ -195,8 +195,7 @@ class NotificationManager @Inject constructor(
     private suspend fun handleNotificationReply(chatId: String, replyText: String) {
         try {
             // Send the reply message
-            // TODO: Replace "current_user" with actual current user ID
-            messagingService.sendTextMessage(chatId, "current_user", replyText)
+            messagingService.sendTextMessage(chatId, Message.LOCAL_SENDER_ID, replyText)
 
             // Clear the notification since user replied
             clearChatNotification(chatId)
@@ -1,15 +1,22 @@
 package com.chain.messaging.core.notification
 
+import android.app.Notification
 import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.app.PendingIntent
 import android.content.Context
 import android.content.Intent
 import android.os.Build
+import android.os.Looper
 import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
+import androidx.core.app.Person
 import androidx.core.app.RemoteInput
 import com.chain.messaging.R
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.model.NotificationSettings
@@ -18,6 +25,7 @@ import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.asSharedFlow
@@ -31,11 +39,28 @@ import javax.inject.Singleton
  */
 @Singleton
 class NotificationService @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    metricsRegistry: MetricsRegistry
 ) {
     
     private val notificationManager = NotificationManagerCompat.from(context)
     private val coroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Main)
+    private val log = Logger.of(LogSubsystem.APP)
+    
+    // Message notifications are built and posted off the main thread
+    private val renderScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val messageAggregator = MessageNotificationAggregator()
+    private val avatars = NotificationAvatars()
+    private val selfPerson = Person.Builder().setName("You").build()
+    
+    @Volatile
+    private var summaryPosted = false
+    
+    private val mainThreadTime = metricsRegistry.histogram(HotPathMetrics.NOTIFICATION_MAIN_THREAD)
+    private val renderTime = metricsRegistry.histogram(HotPathMetrics.NOTIFICATION_RENDER)
+    private val posts = metricsRegistry.counter(HotPathMetrics.NOTIFICATION_POSTS)
+    private val messagesNotified = metricsRegistry.counter(HotPathMetrics.NOTIFICATION_MESSAGES)
+    private val unchangedSkips = metricsRegistry.counter(HotPathMetrics.NOTIFICATION_UNCHANGED)
     
     private val _notificationEvents = MutableSharedFlow<NotificationEvent>()
     val notificationEvents: Flow<NotificationEvent> = _notificationEvents.asSharedFlow()
@@ -49,6 +74,7 @@ class NotificationService @Inject constructor(
         
         // Notification IDs
         private const val NOTIFICATION_ID_MESSAGE_BASE = 2000
+        private const val NOTIFICATION_ID_MESSAGE_SUMMARY = 1999
         private const val NOTIFICATION_ID_GROUP_BASE = 3000
         private const val NOTIFICATION_ID_SYSTEM_BASE = 4000
         
@@ -56,9 +82,14 @@ class NotificationService @Inject constructor(
         private const val ACTION_REPLY = "ACTION_REPLY"
         private const val ACTION_MARK_READ = "ACTION_MARK_READ"
         private const val ACTION_MUTE_CHAT = "ACTION_MUTE_CHAT"
+        private const val ACTION_DISMISS = "ACTION_DISMISS"
+        private const val ACTION_DISMISS_SUMMARY = "ACTION_DISMISS_SUMMARY"
         
         // Remote input key
         private const val KEY_TEXT_REPLY = "key_text_reply"
+        
+        // Bundles every chat notification under one summary
+        private const val GROUP_KEY_MESSAGES = "com.chain.messaging.MESSAGES"
     }
     
     init {
@@ -66,7 +97,9 @@ class NotificationService @Inject constructor(
     }
     
     /**
-     * Show notification for new message
+     * Show notification for new message. Messages are buffered for a short
+     * window and folded into one conversation notification per chat, so a
+     * burst after reconnecting costs one post per chat rather than per message.
      */
     fun showMessageNotification(
         message: Message,
@@ -76,6 +109,7 @@ class NotificationService @Inject constructor(
         settings: NotificationSettings
     ) {
         if (!settings.messageNotifications) return
+        val start = System.nanoTime()
         
         val channelId = if (message.chatId.startsWith("group_")) {
             if (!settings.groupNotifications) return
@@ -84,9 +118,6 @@ class NotificationService @Inject constructor(
             CHANNEL_ID_MESSAGES
         }
         
-        val notificationId = generateNotificationId(message.chatId)
-        
-        val contentTitle = chatName ?: senderName
         val contentText = when (message.type) {
             MessageType.TEXT -> if (settings.showPreview) message.content else "New message"
             MessageType.IMAGE -> "📷 Photo"
@@ -96,66 +127,148 @@ class NotificationService @Inject constructor(
             else -> "New message"
         }
         
-        val fullText = if (settings.showSenderName && chatName != null) {
-            "$senderName: $contentText"
-        } else {
-            contentText
+        // Combine notification defaults
+        var defaults = 0
+        if (settings.soundEnabled) {
+            defaults = defaults or NotificationCompat.DEFAULT_SOUND
+        }
+        if (settings.vibrationEnabled) {
+            defaults = defaults or NotificationCompat.DEFAULT_VIBRATE
+        }
+        if (settings.ledEnabled) {
+            defaults = defaults or NotificationCompat.DEFAULT_LIGHTS
+        }
+        
+        val windowOpened = messageAggregator.add(
+            chatId = message.chatId,
+            chatName = chatName,
+            line = NotificationLine(
+                messageId = message.id,
+                senderId = message.senderId,
+                senderName = if (chatName == null || settings.showSenderName) senderName else "",
+                text = contentText,
+                timestamp = message.timestamp.time
+            ),
+            unreadCount = unreadCount,
+            channelId = channelId,
+            defaults = defaults,
+            // Reply action for direct messages
+            canReply = !message.chatId.startsWith("group_")
+        )
+        if (windowOpened) {
+            renderScope.launch {
+                delay(messageAggregator.windowMs)
+                flushMessageNotifications()
+            }
+        }
+        
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainThreadTime.recordSince(start)
+        }
+    }
+    
+    /**
+     * Post every chat notification that changed since the last flush, then
+     * the group summary
+     */
+    private suspend fun flushMessageNotifications() {
+        val start = System.nanoTime()
+        val batch = messageAggregator.drain()
+        try {
+            batch.chats.forEach { chat ->
+                notificationManager.notify(generateNotificationId(chat.chatId), buildChatNotification(chat))
+            }
+            if (batch.summary != null) {
+                notificationManager.notify(NOTIFICATION_ID_MESSAGE_SUMMARY, buildSummaryNotification(batch.summary))
+                summaryPosted = true
+            } else if (summaryPosted && messageAggregator.chatCount() == 0) {
+                notificationManager.cancel(NOTIFICATION_ID_MESSAGE_SUMMARY)
+                summaryPosted = false
+            }
+        } catch (e: SecurityException) {
+            log.w(e) { "Notification permission revoked; dropped ${batch.posts} notifications" }
+            return
+        } finally {
+            renderTime.recordSince(start)
+        }
+        
+        posts.add(batch.posts.toLong())
+        messagesNotified.add(batch.messages.size.toLong())
+        unchangedSkips.add(batch.skippedUnchanged.toLong())
+        
+        batch.messages.forEach { (chatId, line) ->
+            _notificationEvents.emit(
+                NotificationEvent.MessageNotificationShown(
+                    messageId = line.messageId,
+                    chatId = chatId,
+                    senderName = line.senderName
+                )
+            )
+        }
+    }
+    
+    private fun buildChatNotification(chat: ChatNotificationContent): Notification {
+        val style = NotificationCompat.MessagingStyle(selfPerson)
+            .setConversationTitle(chat.chatName)
+            .setGroupConversation(chat.isGroup)
+        chat.lines.forEach { line ->
+            style.addMessage(line.text, line.timestamp, avatars.personFor(line.senderId, line.senderName))
         }
+        val latest = chat.lines.last()
+        val title = chat.chatName ?: latest.senderName
         
-        val notification = NotificationCompat.Builder(context, channelId)
+        return NotificationCompat.Builder(context, chat.channelId)
             .setSmallIcon(R.drawable.ic_message)
-            .setContentTitle(contentTitle)
-            .setContentText(fullText)
+            .setStyle(style)
+            .setContentTitle(title)
+            .setContentText(latest.text)
+            .setWhen(latest.timestamp)
             .setPriority(NotificationCompat.PRIORITY_HIGH)
             .setCategory(NotificationCompat.CATEGORY_MESSAGE)
             .setAutoCancel(true)
-            .setContentIntent(createChatIntent(message.chatId))
-            .setGroup(message.chatId)
+            .setContentIntent(createChatIntent(chat.chatId))
+            .setDeleteIntent(createDismissIntent(chat.chatId))
+            .setGroup(GROUP_KEY_MESSAGES)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
             .apply {
-                if (unreadCount > 1) {
-                    setNumber(unreadCount)
-                    setSubText("$unreadCount new messages")
-                }
-                
-                // Combine notification defaults
-                var defaults = 0
-                if (settings.soundEnabled) {
-                    defaults = defaults or NotificationCompat.DEFAULT_SOUND
+                if (chat.unreadCount > 1) {
+                    setNumber(chat.unreadCount)
+                    setSubText("${chat.unreadCount} new messages")
                 }
-                if (settings.vibrationEnabled) {
-                    defaults = defaults or NotificationCompat.DEFAULT_VIBRATE
+                if (chat.defaults != 0) {
+                    setDefaults(chat.defaults)
                 }
-                if (settings.ledEnabled) {
-                    defaults = defaults or NotificationCompat.DEFAULT_LIGHTS
+                if (chat.canReply) {
+                    addAction(createReplyAction(chat.chatId, title))
                 }
-                if (defaults != 0) {
-                    setDefaults(defaults)
-                }
-                
-                // Add reply action for direct messages
-                if (!message.chatId.startsWith("group_")) {
-                    addAction(createReplyAction(message.chatId, senderName))
-                }
-                
-                // Add mark as read action
-                addAction(createMarkReadAction(message.chatId))
-                
-                // Add mute action
-                addAction(createMuteAction(message.chatId))
+                addAction(createMarkReadAction(chat.chatId))
+                addAction(createMuteAction(chat.chatId))
             }
             .build()
-        
-        notificationManager.notify(notificationId, notification)
-        
-        coroutineScope.launch {
-            _notificationEvents.emit(
-                NotificationEvent.MessageNotificationShown(
-                    messageId = message.id,
-                    chatId = message.chatId,
-                    senderName = senderName
-                )
-            )
+    }
+    
+    private fun buildSummaryNotification(chats: List<ChatNotificationContent>): Notification {
+        val messageCount = chats.sumOf { maxOf(it.unreadCount, it.lines.size) }
+        val style = NotificationCompat.InboxStyle()
+            .setSummaryText("${chats.size} chats")
+        chats.forEach { chat ->
+            val latest = chat.lines.last()
+            style.addLine("${chat.chatName ?: latest.senderName}: ${latest.text}")
         }
+        
+        return NotificationCompat.Builder(context, CHANNEL_ID_MESSAGES)
+            .setSmallIcon(R.drawable.ic_message)
+            .setStyle(style)
+            .setContentTitle("$messageCount new messages")
+            .setContentText("From ${chats.size} chats")
+            .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+            .setAutoCancel(true)
+            .setContentIntent(createMainIntent())
+            .setDeleteIntent(createDismissIntent(null))
+            .setGroup(GROUP_KEY_MESSAGES)
+            .setGroupSummary(true)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
+            .build()
     }
     
     /**
@@ -243,6 +356,7 @@ class NotificationService @Inject constructor(
     fun clearChatNotification(chatId: String) {
         val notificationId = generateNotificationId(chatId)
         notificationManager.cancel(notificationId)
+        onChatNotificationRemoved(chatId)
         
         coroutineScope.launch {
             _notificationEvents.emit(
@@ -251,10 +365,31 @@ class NotificationService @Inject constructor(
         }
     }
     
+    /**
+     * Forget a chat whose notification the system already removed, because
+     * it was swiped away or auto-cancelled when opened
+     */
+    fun onChatNotificationRemoved(chatId: String) {
+        if (messageAggregator.clear(chatId)) {
+            renderScope.launch { flushMessageNotifications() }
+        }
+    }
+    
+    /**
+     * Forget every chat after the summary was swiped away, which removes
+     * its children too
+     */
+    fun onSummaryNotificationRemoved() {
+        messageAggregator.clearAll()
+        summaryPosted = false
+    }
+    
     /**
      * Clear all notifications
      */
     fun clearAllNotifications() {
+        messageAggregator.clearAll()
+        summaryPosted = false
         notificationManager.cancelAll()
         
         coroutineScope.launch {
@@ -416,6 +551,24 @@ class NotificationService @Inject constructor(
         ).build()
     }
     
+    private fun createDismissIntent(chatId: String?): PendingIntent {
+        val dismissIntent = Intent(context, NotificationActionReceiver::class.java).apply {
+            if (chatId != null) {
+                action = ACTION_DISMISS
+                putExtra("chat_id", chatId)
+            } else {
+                action = ACTION_DISMISS_SUMMARY
+            }
+        }
+        
+        return PendingIntent.getBroadcast(
+            context,
+            chatId?.hashCode()?.plus(3) ?: NOTIFICATION_ID_MESSAGE_SUMMARY,
+            dismissIntent,
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+    }
+    
     private fun createMuteAction(chatId: String): NotificationCompat.Action {
         val muteIntent = Intent(context, NotificationActionReceiver::class.java).apply {
             action = ACTION_MUTE_CHAT
@@ -2,6 +2,8 @@ package com.chain.messaging.core.offline
 
 import com.chain.messaging.core.messaging.MessagingService
 import com.chain.messaging.core.network.NetworkMonitor
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.WorkPolicy
 import com.chain.messaging.core.util.TimeUtils
 import com.chain.messaging.core.util.toLong
 import com.chain.messaging.core.util.toLocalDateTime
@@ -163,20 +165,22 @@ class OfflineMessageQueueImpl @Inject constructor(
     }
     
     private fun startBackgroundProcessing() {
-        coroutineScope.launch {
-            while (isInitialized) {
-                try {
-                    if (networkMonitor.isConnected() && isOfflineModeEnabled) {
-                        processQueuedMessages()
-                    }
-                    delay(30000) // Process every 30 seconds
-                } catch (e: Exception) {
-                    // Handle processing errors
-                    delay(60000) // Wait longer on error
-                }
+        // Retries for outgoing messages keep running while the app is in the background
+        BackgroundWork.scheduler.schedulePeriodic(
+            name = "offline-queue.process",
+            intervalMs = PROCESS_INTERVAL_MS,
+            owner = coroutineScope,
+            policy = WorkPolicy.ESSENTIAL
+        ) {
+            if (networkMonitor.isConnected() && isOfflineModeEnabled) {
+                processQueuedMessages()
             }
         }
     }
+
+    companion object {
+        private const val PROCESS_INTERVAL_MS = 30_000L
+    }
 }
 
 // Extension functions for entity conversion
@@ -1,6 +1,9 @@
 package com.chain.messaging.core.p2p
 
-import android.util.Log
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
@@ -15,7 +18,7 @@ import kotlin.random.Random
  */
 class ConnectionManager {
     
-    private val TAG = "ConnectionManager"
+    private val log = Logger.of(LogSubsystem.P2P)
     
     private val activeConnections = ConcurrentHashMap<String, Connection>()
     private val peerReliability = ConcurrentHashMap<String, PeerReliabilityScore>()
@@ -26,6 +29,7 @@ class ConnectionManager {
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isRunning = false
+    private var maintenanceTask: ScheduledTask? = null
     private var isInitialized = false
     
     /**
@@ -34,7 +38,7 @@ class ConnectionManager {
     suspend fun initialize() {
         if (!isInitialized) {
             isInitialized = true
-            Log.i(TAG, "Connection manager initialized")
+            log.i { "Connection manager initialized" }
         }
     }
     
@@ -45,10 +49,14 @@ class ConnectionManager {
         if (isRunning) return
         
         isRunning = true
-        coroutineScope.launch {
-            startMaintenanceLoop()
+        maintenanceTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "connection-manager.maintenance",
+            intervalMs = MAINTENANCE_INTERVAL_MS,
+            owner = coroutineScope
+        ) {
+            performConnectionMaintenance()
         }
-        Log.i(TAG, "Connection manager started")
+        log.i { "Connection manager started" }
     }
     
     /**
@@ -56,6 +64,8 @@ class ConnectionManager {
      */
     fun stop() {
         isRunning = false
+        maintenanceTask?.cancel()
+        maintenanceTask = null
         
         // Close all active connections
         activeConnections.values.forEach { connection ->
@@ -64,7 +74,7 @@ class ConnectionManager {
             }
         }
         
-        Log.i(TAG, "Connection manager stopped")
+        log.i { "Connection manager stopped" }
     }
     
     /**
@@ -74,7 +84,7 @@ class ConnectionManager {
         try {
             // Check if already connected
             activeConnections.values.find { it.peerId == peer.id && it.isActive }?.let {
-                Log.d(TAG, "Already connected to peer: ${peer.id}")
+                log.d { "Already connected to peer: ${peer.id}" }
                 return it
             }
             
@@ -89,12 +99,12 @@ class ConnectionManager {
             updateReliabilityScore(peer.id, true)
             
             _connectionEvents.emit(ConnectionEvent.Connected(connection, peer))
-            Log.i(TAG, "Connected to peer: ${peer.id}")
+            log.i { "Connected to peer: ${peer.id}" }
             
             return connection
             
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to connect to peer: ${peer.id}", e)
+            log.e(e) { "Failed to connect to peer: ${peer.id}" }
             updateReliabilityScore(peer.id, false)
             _connectionEvents.emit(ConnectionEvent.ConnectionFailed(peer, e.message ?: "Unknown error"))
             return null
@@ -112,7 +122,7 @@ class ConnectionManager {
         }
         
         connectionPool.remove(peerId)
-        Log.i(TAG, "Disconnected from peer: $peerId")
+        log.i { "Disconnected from peer: $peerId" }
     }
     
     /**
@@ -202,7 +212,7 @@ class ConnectionManager {
             activeConnections[connectionId] = closedConnection
             
             _connectionEvents.emit(ConnectionEvent.Disconnected(connection))
-            Log.d(TAG, "Closed connection: $connectionId")
+            log.d { "Closed connection: $connectionId" }
         }
     }
     
@@ -235,17 +245,6 @@ class ConnectionManager {
         peerReliability[peerId] = newScore
     }
     
-    private suspend fun startMaintenanceLoop() {
-        while (isRunning) {
-            try {
-                performConnectionMaintenance()
-                delay(MAINTENANCE_INTERVAL_MS)
-            } catch (e: Exception) {
-                Log.e(TAG, "Error in connection maintenance", e)
-            }
-        }
-    }
-    
     private suspend fun performConnectionMaintenance() {
         // Check connection health
         val unhealthyConnections = activeConnections.values.filter { connection ->
@@ -260,7 +259,7 @@ class ConnectionManager {
                     updateReliabilityScore(connection.peerId, false)
                 }
             } catch (e: Exception) {
-                Log.w(TAG, "Health check failed for connection: ${connection.connectionId}", e)
+                log.w(e) { "Health check failed for connection: ${connection.connectionId}" }
                 closeConnection(connection.connectionId)
             }
         }
@@ -276,7 +275,7 @@ class ConnectionManager {
         }
         
         if (toRemove.isNotEmpty()) {
-            Log.d(TAG, "Cleaned up ${toRemove.size} old connections")
+            log.d { "Cleaned up ${toRemove.size} old connections" }
         }
     }
     
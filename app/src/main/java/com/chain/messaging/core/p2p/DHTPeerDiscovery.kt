@@ -1,6 +1,9 @@
 package com.chain.messaging.core.p2p
 
-import android.util.Log
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
@@ -17,7 +20,7 @@ import kotlin.random.Random
  */
 class DHTPeerDiscovery {
     
-    private val TAG = "DHTPeerDiscovery"
+    private val log = Logger.of(LogSubsystem.P2P)
     
     private val routingTable = ConcurrentHashMap<String, Peer>()
     private val localNodeId = generateNodeId()
@@ -28,6 +31,7 @@ class DHTPeerDiscovery {
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isRunning = false
+    private var maintenanceTask: ScheduledTask? = null
     private var isInitialized = false
     
     /**
@@ -36,7 +40,7 @@ class DHTPeerDiscovery {
     suspend fun initialize() {
         if (!isInitialized) {
             isInitialized = true
-            Log.i(TAG, "DHT peer discovery initialized with node ID: $localNodeId")
+            log.i { "DHT peer discovery initialized with node ID: $localNodeId" }
         }
     }
     
@@ -47,10 +51,14 @@ class DHTPeerDiscovery {
         if (isRunning) return
         
         isRunning = true
-        coroutineScope.launch {
-            startDiscoveryLoop()
+        maintenanceTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "dht.maintenance",
+            intervalMs = MAINTENANCE_INTERVAL_MS,
+            owner = coroutineScope
+        ) {
+            performPeriodicMaintenance()
         }
-        Log.i(TAG, "DHT peer discovery started with node ID: $localNodeId")
+        log.i { "DHT peer discovery started with node ID: $localNodeId" }
     }
     
     /**
@@ -58,7 +66,9 @@ class DHTPeerDiscovery {
      */
     fun stop() {
         isRunning = false
-        Log.i(TAG, "DHT peer discovery stopped")
+        maintenanceTask?.cancel()
+        maintenanceTask = null
+        log.i { "DHT peer discovery stopped" }
     }
     
     /**
@@ -88,7 +98,7 @@ class DHTPeerDiscovery {
             _discoveryEvents.emit(DiscoveryEvent.PeerAdded(peer))
         }
         
-        Log.d(TAG, "Added peer to DHT: ${peer.id} (bucket $bucketIndex)")
+        log.d { "Added peer to DHT: ${peer.id} (bucket $bucketIndex)" }
     }
     
     /**
@@ -107,7 +117,7 @@ class DHTPeerDiscovery {
                 _discoveryEvents.emit(DiscoveryEvent.PeerRemoved(peer))
             }
             
-            Log.d(TAG, "Removed peer from DHT: $peerId")
+            log.d { "Removed peer from DHT: $peerId" }
         }
     }
     
@@ -172,14 +182,14 @@ class DHTPeerDiscovery {
                         }
                     }
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to contact peer ${peer.id} during lookup", e)
+                    log.w(e) { "Failed to contact peer ${peer.id} during lookup" }
                 }
             }
             
             // Sort by distance to target
             candidates.sortBy { calculateDistance(targetId, it.id) }
             
-            Log.d(TAG, "Lookup iteration $iteration: found ${candidates.size} candidates")
+            log.d { "Lookup iteration $iteration: found ${candidates.size} candidates" }
         }
         
         return candidates.take(K_BUCKET_SIZE)
@@ -203,17 +213,6 @@ class DHTPeerDiscovery {
         )
     }
     
-    private suspend fun startDiscoveryLoop() {
-        while (isRunning) {
-            try {
-                performPeriodicMaintenance()
-                delay(MAINTENANCE_INTERVAL_MS)
-            } catch (e: Exception) {
-                Log.e(TAG, "Error in discovery loop", e)
-            }
-        }
-    }
-    
     private suspend fun performPeriodicMaintenance() {
         // Refresh buckets by looking up random IDs
         val randomBucket = kBuckets.indices.random()
@@ -1,6 +1,12 @@
 package com.chain.messaging.core.p2p
 
-import android.util.Log
+import com.chain.messaging.core.performance.memory.ByteBudgetLruCache
+import com.chain.messaging.core.performance.memory.CachePriority
+import com.chain.messaging.core.performance.memory.ManagedCache
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.SharedFlow
@@ -17,9 +23,23 @@ class MessageRouter(
     private val dhtPeerDiscovery: DHTPeerDiscovery
 ) {
     
-    private val TAG = "MessageRouter"
+    private val log = Logger.of(LogSubsystem.P2P)
     
-    private val messageCache = ConcurrentHashMap<String, CachedMessage>()
+    // Recently routed messages for loop prevention; oldest entries go first under memory pressure
+    private val messageCache = ByteBudgetLruCache<String, CachedMessage>(
+        cacheName = "p2p_routed_messages",
+        priority = CachePriority.LOW,
+        budgetShare = CACHE_BUDGET_SHARE,
+        initialMaxBytes = DEFAULT_CACHE_BYTES
+    ) { messageId, cached ->
+        CACHE_ENTRY_OVERHEAD_BYTES + 2L * (messageId.length + cached.message.payload.length +
+            cached.message.from.length + (cached.message.to?.length ?: 0))
+    }
+    
+    /**
+     * Routed-message cache, for registration with the memory budget
+     */
+    val dedupCache: ManagedCache get() = messageCache
     private val routingTable = ConcurrentHashMap<String, List<String>>() // destination -> peer IDs
     
     private val _routingEvents = MutableSharedFlow<RoutingEvent>()
@@ -27,6 +47,7 @@ class MessageRouter(
     
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isRunning = false
+    private var maintenanceTask: ScheduledTask? = null
     private var isInitialized = false
     
     /**
@@ -35,7 +56,7 @@ class MessageRouter(
     suspend fun initialize() {
         if (!isInitialized) {
             isInitialized = true
-            Log.i(TAG, "Message router initialized")
+            log.i { "Message router initialized" }
         }
     }
     
@@ -46,10 +67,15 @@ class MessageRouter(
         if (isRunning) return
         
         isRunning = true
-        coroutineScope.launch {
-            startRoutingMaintenance()
+        maintenanceTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "message-router.maintenance",
+            intervalMs = MAINTENANCE_INTERVAL_MS,
+            owner = coroutineScope
+        ) {
+            cleanupMessageCache()
+            updateRoutingInformation()
         }
-        Log.i(TAG, "Message router started")
+        log.i { "Message router started" }
     }
     
     /**
@@ -57,7 +83,9 @@ class MessageRouter(
      */
     fun stop() {
         isRunning = false
-        Log.i(TAG, "Message router stopped")
+        maintenanceTask?.cancel()
+        maintenanceTask = null
+        log.i { "Message router stopped" }
     }
     
     /**
@@ -80,7 +108,7 @@ class MessageRouter(
             return result
             
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to route message: ${message.id}", e)
+            log.e(e) { "Failed to route message: ${message.id}" }
             val failureResult = RoutingResult.Failed(e.message ?: "Unknown error")
             _routingEvents.emit(RoutingEvent.RoutingFailed(message, failureResult))
             return failureResult
@@ -93,7 +121,7 @@ class MessageRouter(
     suspend fun handleIncomingMessage(message: Message, fromPeerId: String): Boolean {
         // Check if we've seen this message before (loop prevention)
         if (isMessageCached(message.id)) {
-            Log.d(TAG, "Ignoring duplicate message: ${message.id}")
+            log.d { "Ignoring duplicate message: ${message.id}" }
             return false
         }
         
@@ -102,7 +130,7 @@ class MessageRouter(
         
         // Check TTL
         if (message.ttl <= 0) {
-            Log.d(TAG, "Message TTL expired: ${message.id}")
+            log.d { "Message TTL expired: ${message.id}" }
             return false
         }
         
@@ -124,7 +152,7 @@ class MessageRouter(
      */
     fun updateRoutingTable(destination: String, peerIds: List<String>) {
         routingTable[destination] = peerIds
-        Log.d(TAG, "Updated routing table for $destination: ${peerIds.size} peers")
+        log.d { "Updated routing table for $destination: ${peerIds.size} peers" }
     }
     
     /**
@@ -229,11 +257,11 @@ class MessageRouter(
             val messageSize = message.payload.length.toLong()
             connectionManager.updateConnectionStats(connection.connectionId, messageSize, 0, 50)
             
-            Log.d(TAG, "Sent message ${message.id} to peer ${peer.id}")
+            log.d { "Sent message ${message.id} to peer ${peer.id}" }
             SendResult.Success(peer.id)
             
         } catch (e: Exception) {
-            Log.w(TAG, "Failed to send message to peer ${peer.id}", e)
+            log.w(e) { "Failed to send message to peer ${peer.id}" }
             SendResult.Failed("Send failed: ${e.message}")
         }
     }
@@ -258,7 +286,7 @@ class MessageRouter(
             message = message,
             cachedAt = System.currentTimeMillis()
         )
-        messageCache[message.id] = cachedMessage
+        messageCache.put(message.id, cachedMessage)
     }
     
     private fun isMessageCached(messageId: String): Boolean {
@@ -269,30 +297,12 @@ class MessageRouter(
         return dhtPeerDiscovery.getDHTStats().localNodeId
     }
     
-    private suspend fun startRoutingMaintenance() {
-        while (isRunning) {
-            try {
-                cleanupMessageCache()
-                updateRoutingInformation()
-                delay(MAINTENANCE_INTERVAL_MS)
-            } catch (e: Exception) {
-                Log.e(TAG, "Error in routing maintenance", e)
-            }
-        }
-    }
-    
     private fun cleanupMessageCache() {
         val cutoffTime = System.currentTimeMillis() - MESSAGE_CACHE_TTL_MS
-        val toRemove = messageCache.entries.filter { (_, cached) ->
-            cached.cachedAt < cutoffTime
-        }.map { it.key }
-        
-        toRemove.forEach { messageId ->
-            messageCache.remove(messageId)
-        }
+        val removed = messageCache.removeIf { _, cached -> cached.cachedAt < cutoffTime }
         
-        if (toRemove.isNotEmpty()) {
-            Log.d(TAG, "Cleaned up ${toRemove.size} cached messages")
+        if (removed > 0) {
+            log.d { "Cleaned up $removed cached messages" }
         }
     }
     
@@ -317,6 +327,9 @@ class MessageRouter(
         private const val ROUTING_TIMEOUT_MS = 5000L
         private const val MAINTENANCE_INTERVAL_MS = 60000L // 1 minute
         private const val MESSAGE_CACHE_TTL_MS = 300000L // 5 minutes
+        private const val CACHE_BUDGET_SHARE = 0.05f
+        private const val DEFAULT_CACHE_BYTES = 2L * 1024 * 1024
+        private const val CACHE_ENTRY_OVERHEAD_BYTES = 128L
     }
 }
 
@@ -140,7 +140,8 @@ enum class MessageType {
     BLOCKCHAIN_SYNC,
     TRANSACTION_BROADCAST,
     HEARTBEAT,
-    ROUTING_UPDATE
+    ROUTING_UPDATE,
+    PRESENCE
 }
 
 /**
@@ -1,6 +1,8 @@
 package com.chain.messaging.core.p2p
 
-import android.util.Log
+import com.chain.messaging.core.performance.memory.ManagedCache
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
 import java.util.*
@@ -10,12 +12,17 @@ import java.util.*
  */
 class P2PManagerImpl : P2PManager {
     
-    private val TAG = "P2PManager"
+    private val log = Logger.of(LogSubsystem.P2P)
     
     private val dhtPeerDiscovery = DHTPeerDiscovery()
     private val connectionManager = ConnectionManager()
     private val messageRouter = MessageRouter(connectionManager, dhtPeerDiscovery)
     
+    /**
+     * Router's loop-prevention cache, for registration with the memory budget
+     */
+    val routedMessageCache: ManagedCache get() = messageRouter.dedupCache
+    
     private val _networkEvents = MutableSharedFlow<NetworkEvent>()
     private val coroutineScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     
@@ -29,7 +36,7 @@ class P2PManagerImpl : P2PManager {
             dhtPeerDiscovery.initialize()
             connectionManager.initialize()
             messageRouter.initialize()
-            Log.i(TAG, "P2P Manager initialized")
+            log.i { "P2P Manager initialized" }
         }
     }
 
@@ -50,7 +57,7 @@ class P2PManagerImpl : P2PManager {
         // Subscribe to component events
         subscribeToComponentEvents()
         
-        Log.i(TAG, "P2P Manager started")
+        log.i { "P2P Manager started" }
     }
     
     override suspend fun stop() {
@@ -63,18 +70,18 @@ class P2PManagerImpl : P2PManager {
         connectionManager.stop()
         dhtPeerDiscovery.stop()
         
-        Log.i(TAG, "P2P Manager stopped")
+        log.i { "P2P Manager stopped" }
     }
     
     override suspend fun shutdown() {
         stop()
         isInitialized = false
         coroutineScope.cancel()
-        Log.i(TAG, "P2P Manager shutdown complete")
+        log.i { "P2P Manager shutdown complete" }
     }
     
     override suspend fun reconnect() {
-        Log.i(TAG, "Reconnecting P2P Manager")
+        log.i { "Reconnecting P2P Manager" }
         stop()
         delay(1000) // Brief delay before reconnection
         start()
@@ -87,10 +94,10 @@ class P2PManagerImpl : P2PManager {
     override suspend fun discoverPeers(): List<Peer> {
         return try {
             val allPeers = dhtPeerDiscovery.getAllPeers()
-            Log.d(TAG, "Discovered ${allPeers.size} peers")
+            log.d { "Discovered ${allPeers.size} peers" }
             allPeers
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to discover peers", e)
+            log.e(e) { "Failed to discover peers" }
             emptyList()
         }
     }
@@ -108,16 +115,16 @@ class P2PManagerImpl : P2PManager {
             val result = messageRouter.routeMessage(message)
             when (result) {
                 is RoutingResult.Success -> {
-                    Log.d(TAG, "Broadcast message ${message.id}: ${result.successCount} successes, ${result.failureCount} failures")
+                    log.d { "Broadcast message ${message.id}: ${result.successCount} successes, ${result.failureCount} failures" }
                     _networkEvents.emit(NetworkEvent.MessageSent(message, "broadcast"))
                 }
                 is RoutingResult.Failed -> {
-                    Log.w(TAG, "Failed to broadcast message ${message.id}: ${result.reason}")
+                    log.w { "Failed to broadcast message ${message.id}: ${result.reason}" }
                     _networkEvents.emit(NetworkEvent.NetworkError("Broadcast failed: ${result.reason}"))
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Error broadcasting message", e)
+            log.e(e) { "Error broadcasting message" }
             _networkEvents.emit(NetworkEvent.NetworkError("Broadcast error: ${e.message}"))
         }
     }
@@ -129,13 +136,13 @@ class P2PManagerImpl : P2PManager {
     override suspend fun maintainConnections() {
         try {
             val connectedPeers = getConnectedPeers()
-            Log.d(TAG, "Maintaining ${connectedPeers.size} connections")
+            log.d { "Maintaining ${connectedPeers.size} connections" }
             
             // The connection manager handles maintenance automatically
             // This method can be used for additional maintenance logic if needed
             
         } catch (e: Exception) {
-            Log.e(TAG, "Error maintaining connections", e)
+            log.e(e) { "Error maintaining connections" }
         }
     }
     
@@ -149,9 +156,9 @@ class P2PManagerImpl : P2PManager {
     override suspend fun disconnectFromPeer(peerId: String) {
         try {
             connectionManager.disconnectFromPeer(peerId)
-            Log.d(TAG, "Disconnected from peer: $peerId")
+            log.d { "Disconnected from peer: $peerId" }
         } catch (e: Exception) {
-            Log.e(TAG, "Error disconnecting from peer: $peerId", e)
+            log.e(e) { "Error disconnecting from peer: $peerId" }
         }
     }
     
@@ -176,7 +183,7 @@ class P2PManagerImpl : P2PManager {
      */
     fun addPeer(peer: Peer) {
         dhtPeerDiscovery.addPeer(peer)
-        Log.d(TAG, "Added peer to network: ${peer.id}")
+        log.d { "Added peer to network: ${peer.id}" }
     }
     
     /**
@@ -187,7 +194,7 @@ class P2PManagerImpl : P2PManager {
         coroutineScope.launch {
             disconnectFromPeer(peerId)
         }
-        Log.d(TAG, "Removed peer from network: $peerId")
+        log.d { "Removed peer from network: $peerId" }
     }
     
     /**
@@ -239,7 +246,7 @@ class P2PManagerImpl : P2PManager {
                         _networkEvents.emit(NetworkEvent.PeerDisconnected(event.peer))
                     }
                     is DiscoveryEvent.LookupCompleted -> {
-                        Log.d(TAG, "DHT lookup completed for ${event.targetId}: ${event.foundPeers.size} peers")
+                        log.d { "DHT lookup completed for ${event.targetId}: ${event.foundPeers.size} peers" }
                     }
                 }
             }
@@ -262,7 +269,7 @@ class P2PManagerImpl : P2PManager {
                         _networkEvents.emit(NetworkEvent.NetworkError("Connection failed to ${event.peer.id}: ${event.reason}"))
                     }
                     is ConnectionEvent.LatencyUpdated -> {
-                        Log.d(TAG, "Connection latency updated: ${event.connectionId} -> ${event.latency}ms")
+                        log.d { "Connection latency updated: ${event.connectionId} -> ${event.latency}ms" }
                     }
                 }
             }
@@ -276,7 +283,7 @@ class P2PManagerImpl : P2PManager {
                         _networkEvents.emit(NetworkEvent.MessageReceived(event.message, event.fromPeerId))
                     }
                     is RoutingEvent.MessageRouted -> {
-                        Log.d(TAG, "Message routed: ${event.message.id}")
+                        log.d { "Message routed: ${event.message.id}" }
                     }
                     is RoutingEvent.RoutingFailed -> {
                         _networkEvents.emit(NetworkEvent.NetworkError("Routing failed for ${event.message.id}: ${event.result.reason}"))
@@ -51,7 +51,8 @@ data class BatteryOptimizationStatus(
     val currentMode: OptimizationMode,
     val batteryLevel: Float,
     val estimatedTimeRemaining: Long?,
-    val activeOptimizations: List<String>
+    val activeOptimizations: List<String>,
+    val wakeUpsPerHour: Int = 0
 )
 
 /**
@@ -3,6 +3,9 @@ package com.chain.messaging.core.performance
 import android.content.Context
 import android.os.BatteryManager
 import android.os.PowerManager
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.performance.scheduler.WorkPolicy
 import com.chain.messaging.core.util.Logger
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.*
@@ -21,6 +24,7 @@ class BatteryOptimizerImpl @Inject constructor(
     
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isOptimizing = false
+    private var checkTask: ScheduledTask? = null
     
     private val _optimizationStatus = MutableStateFlow(
         BatteryOptimizationStatus(
@@ -49,15 +53,14 @@ class BatteryOptimizerImpl @Inject constructor(
         isOptimizing = true
         Logger.i("Starting battery optimization")
         
-        scope.launch {
-            while (isOptimizing) {
-                try {
-                    checkAndOptimizeBattery()
-                    delay(OPTIMIZATION_CHECK_INTERVAL)
-                } catch (e: Exception) {
-                    Logger.e("Error in battery optimization", e)
-                }
-            }
+        // Keeps tracking the battery while backgrounded, since that is when the mode matters
+        checkTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "battery-optimizer.check",
+            intervalMs = OPTIMIZATION_CHECK_INTERVAL,
+            owner = scope,
+            policy = WorkPolicy.ESSENTIAL
+        ) {
+            checkAndOptimizeBattery()
         }
         
         // Monitor performance metrics for battery optimization
@@ -73,6 +76,9 @@ class BatteryOptimizerImpl @Inject constructor(
     
     override suspend fun stopOptimization() {
         isOptimizing = false
+        checkTask?.cancel()
+        checkTask = null
+        BackgroundWork.scheduler.setOptimizationMode(OptimizationMode.NORMAL)
         activeOptimizations.clear()
         updateOptimizationStatus()
         Logger.i("Stopping battery optimization")
@@ -80,6 +86,8 @@ class BatteryOptimizerImpl @Inject constructor(
     
     override suspend fun optimizeBackgroundOperations(batteryLevel: Float, isCharging: Boolean) {
         val mode = determineOptimizationMode(batteryLevel, isCharging)
+        // Periodic work registered with the scheduler stretches or restores its intervals
+        BackgroundWork.scheduler.setOptimizationMode(mode)
         
         when (mode) {
             OptimizationMode.NORMAL -> {
@@ -232,13 +240,13 @@ class BatteryOptimizerImpl @Inject constructor(
             isOptimizing = isOptimizing,
             currentMode = mode,
             batteryLevel = batteryLevel,
-            activeOptimizations = activeOptimizations.toList()
+            activeOptimizations = activeOptimizations.toList(),
+            wakeUpsPerHour = BackgroundWork.scheduler.stats().wakeUpsLastHour
         )
     }
     
     private suspend fun reduceSyncFrequency() {
-        // Reduce message sync frequency
-        // Reduce contact sync frequency
+        // Scheduled sync and maintenance intervals are scaled by the scheduler's mode
         // Defer non-critical sync operations
         Logger.d("Reduced sync frequency for battery optimization")
     }
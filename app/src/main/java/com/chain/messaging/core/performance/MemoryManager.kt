@@ -66,7 +66,13 @@ data class MemoryStats(
     val gcTimeMs: Long,
     val cacheSize: Long,
     val heapSize: Long,
-    val nativeHeapSize: Long
+    val nativeHeapSize: Long,
+    val cacheBudgetBytes: Long = 0L,
+    val reclaimedBytes: Long = 0L,
+    val retainedObjectCount: Int = 0,
+    val retainedObjectBytes: Long = 0L,
+    val allocationBytesPerSecond: Long = 0L,
+    val subsystemAllocationBytesPerSecond: Map<String, Long> = emptyMap()
 )
 
 /**
@@ -99,6 +105,7 @@ enum class MemoryImpact {
 
 enum class LeakType {
     ACTIVITY_LEAK,
+    VIEW_MODEL_LEAK,
     FRAGMENT_LEAK,
     BITMAP_LEAK,
     LISTENER_LEAK,
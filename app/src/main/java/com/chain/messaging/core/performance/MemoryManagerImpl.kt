@@ -3,12 +3,15 @@ package com.chain.messaging.core.performance
 import android.app.ActivityManager
 import android.content.Context
 import android.os.Debug
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.memory.MemoryPressure
+import com.chain.messaging.core.performance.memory.RetainedObjectsReport
+import com.chain.messaging.core.performance.memory.WatchedObjectKind
 import com.chain.messaging.core.util.Logger
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
-import java.lang.ref.WeakReference
-import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -17,7 +20,8 @@ import javax.inject.Singleton
  */
 @Singleton
 class MemoryManagerImpl @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val memoryBudgetManager: MemoryBudgetManager
 ) : MemoryManager {
     
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
@@ -27,10 +31,11 @@ class MemoryManagerImpl @Inject constructor(
     private val activityManager = context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
     
     // Memory leak tracking
-    private val trackedObjects = ConcurrentHashMap<String, WeakReference<Any>>()
+    private val lifetimeTracker = MemoryDiagnostics.lifetimes
+    private val allocationSampler = MemoryDiagnostics.allocations
+    @Volatile private var lastRetainedReport = RetainedObjectsReport(0, emptyList())
     private var lastGcCount = 0
     private var lastGcTime = 0L
-    private var lastMemoryCheck = 0L
     
     private companion object {
         const val MEMORY_CHECK_INTERVAL = 10000L // 10 seconds
@@ -96,8 +101,8 @@ class MemoryManagerImpl @Inject constructor(
         if (gcDelta > GC_OPTIMIZATION_THRESHOLD) {
             Logger.w("High GC activity detected: $gcDelta cycles")
             
-            // Suggest memory optimization
-            clearCaches()
+            // Frequent collections mean the heap is tight; give back the cheapest caches
+            memoryBudgetManager.trim(MemoryPressure.MODERATE)
             
             // Force a single GC to clean up
             forceGarbageCollection()
@@ -108,21 +113,8 @@ class MemoryManagerImpl @Inject constructor(
     
     override suspend fun clearCaches() {
         try {
-            // Clear image caches
-            // Clear message caches
-            // Clear temporary files
-            
-            val runtime = Runtime.getRuntime()
-            val beforeMemory = runtime.totalMemory() - runtime.freeMemory()
-            
-            // Simulate cache clearing
-            System.gc()
-            delay(100)
-            
-            val afterMemory = runtime.totalMemory() - runtime.freeMemory()
-            val freedMemory = (beforeMemory - afterMemory) / (1024 * 1024)
-            
-            Logger.i("Cleared caches, freed ${freedMemory}MB of memory")
+            val result = memoryBudgetManager.clearAll()
+            Logger.i("Cleared caches, freed ${result.reclaimedBytes / (1024 * 1024)}MB of memory")
         } catch (e: Exception) {
             Logger.e("Error clearing caches", e)
         }
@@ -137,17 +129,13 @@ class MemoryManagerImpl @Inject constructor(
         when {
             usagePercentage > CRITICAL_MEMORY_THRESHOLD -> {
                 Logger.w("Critical memory usage: ${(usagePercentage * 100).toInt()}%")
-                clearCaches()
+                memoryBudgetManager.trim(MemoryPressure.CRITICAL)
                 forceGarbageCollection()
-                // Reduce image quality
-                // Limit concurrent operations
             }
             
             usagePercentage > HIGH_MEMORY_THRESHOLD -> {
                 Logger.w("High memory usage: ${(usagePercentage * 100).toInt()}%")
-                clearCaches()
-                // Reduce cache sizes
-                // Defer non-critical operations
+                memoryBudgetManager.trim(MemoryPressure.MODERATE)
             }
             
             else -> {
@@ -225,51 +213,39 @@ class MemoryManagerImpl @Inject constructor(
     }
     
     override suspend fun checkForMemoryLeaks(): List<MemoryLeak> {
-        val leaks = mutableListOf<MemoryLeak>()
-        
-        try {
-            // Check for unreferenced objects that should have been GC'd
-            val iterator = trackedObjects.iterator()
-            while (iterator.hasNext()) {
-                val entry = iterator.next()
-                if (entry.value.get() == null) {
-                    iterator.remove() // Object was GC'd, remove from tracking
-                }
-            }
+        return try {
+            val report = lifetimeTracker.check()
+            lastRetainedReport = report
             
-            // Check for potential memory leaks based on memory growth
-            val currentTime = System.currentTimeMillis()
-            if (lastMemoryCheck > 0) {
-                val timeDelta = currentTime - lastMemoryCheck
-                if (timeDelta > 5 * 60 * 1000L) { // 5 minutes
-                    val memoryInfo = ActivityManager.MemoryInfo()
-                    activityManager.getMemoryInfo(memoryInfo)
-                    
-                    // Simplified leak detection - in reality this would be more sophisticated
-                    val usagePercentage = (memoryInfo.totalMem - memoryInfo.availMem).toFloat() / memoryInfo.totalMem.toFloat()
-                    
-                    if (usagePercentage > 0.9f) {
-                        leaks.add(
-                            MemoryLeak(
-                                id = "high_memory_usage_${currentTime}",
-                                type = LeakType.STATIC_REFERENCE_LEAK,
-                                description = "Consistently high memory usage may indicate a memory leak",
-                                severity = LeakSeverity.MEDIUM,
-                                estimatedLeakSizeMb = 50L,
-                                suggestedFix = "Review static references and long-lived objects"
-                            )
-                        )
-                    }
-                }
+            report.retained.groupBy { it.kind }.map { (kind, retained) ->
+                val retainedBytes = retained.sumOf { it.estimatedBytes }
+                MemoryLeak(
+                    id = "retained_${kind.name.lowercase()}",
+                    type = kind.leakType,
+                    description = "${retained.size} ${kind.name.lowercase().replace('_', ' ')} objects still reachable " +
+                        "after their lifecycle ended: ${retained.take(3).joinToString { it.description }}",
+                    severity = when {
+                        retained.size >= 10 -> LeakSeverity.HIGH
+                        retained.size >= 3 -> LeakSeverity.MEDIUM
+                        else -> LeakSeverity.LOW
+                    },
+                    estimatedLeakSizeMb = retainedBytes / (1024 * 1024),
+                    suggestedFix = suggestedFix(kind)
+                )
             }
-            
-            lastMemoryCheck = currentTime
-            
         } catch (e: Exception) {
             Logger.e("Error checking for memory leaks", e)
+            emptyList()
         }
-        
-        return leaks
+    }
+    
+    private fun suggestedFix(kind: WatchedObjectKind): String = when (kind) {
+        WatchedObjectKind.VIEW_MODEL -> "Check for flows, callbacks or singletons holding the ViewModel after onCleared"
+        WatchedObjectKind.CALL_SESSION -> "Check call state holders and event collectors for references to ended sessions"
+        WatchedObjectKind.PEER_CONNECTION -> "Dispose the PeerConnection and unregister its observer after close"
+        WatchedObjectKind.DISTRIBUTION_JOB -> "Check that distribution coroutines complete and are not referenced after removal"
+        WatchedObjectKind.WEBSOCKET_LISTENER -> "Check that closed sockets are released by their connection"
+        WatchedObjectKind.OTHER -> "Review static references and long-lived objects"
     }
     
     private suspend fun collectAndEmitMemoryStats() {
@@ -287,6 +263,9 @@ class MemoryManagerImpl @Inject constructor(
             val currentGcTime = System.currentTimeMillis() // Use current time as approximation
             val gcCountDelta = maxOf(0, currentGcCount - lastGcCount)
             val gcTimeDelta = maxOf(0L, currentGcTime - lastGcTime)
+            // Retention is refreshed by the leak check, which may request a collection
+            val retained = lastRetainedReport
+            val allocations = allocationSampler.sample()
             
             val memoryStats = MemoryStats(
                 timestamp = System.currentTimeMillis(),
@@ -296,9 +275,15 @@ class MemoryManagerImpl @Inject constructor(
                 usagePercentage = usagePercentage,
                 gcCount = gcCountDelta,
                 gcTimeMs = gcTimeDelta,
-                cacheSize = 0L, // Would be calculated from actual caches
+                cacheSize = memoryBudgetManager.totalCacheBytes(),
                 heapSize = runtime.totalMemory() / (1024 * 1024),
-                nativeHeapSize = Debug.getNativeHeapSize() / (1024 * 1024)
+                nativeHeapSize = Debug.getNativeHeapSize() / (1024 * 1024),
+                cacheBudgetBytes = memoryBudgetManager.policy.totalBudgetBytes,
+                reclaimedBytes = memoryBudgetManager.totalReclaimedBytes(),
+                retainedObjectCount = retained.retainedCount,
+                retainedObjectBytes = retained.retainedBytes,
+                allocationBytesPerSecond = allocations.processBytesPerSecond,
+                subsystemAllocationBytesPerSecond = allocations.bySubsystem
             )
             
             _memoryStats.emit(memoryStats)
@@ -322,7 +307,7 @@ class MemoryManagerImpl @Inject constructor(
             
             usagePercentage > HIGH_MEMORY_THRESHOLD -> {
                 Logger.w("High memory threshold exceeded: ${(usagePercentage * 100).toInt()}%")
-                clearCaches()
+                memoryBudgetManager.trim(MemoryPressure.MODERATE)
             }
         }
         
@@ -331,16 +316,16 @@ class MemoryManagerImpl @Inject constructor(
     }
     
     /**
-     * Track an object for memory leak detection
+     * Track an object that is expected to be released soon for leak detection
      */
     fun trackObject(id: String, obj: Any) {
-        trackedObjects[id] = WeakReference(obj)
+        lifetimeTracker.watch(obj, WatchedObjectKind.OTHER, key = id)
     }
     
     /**
      * Stop tracking an object
      */
     fun untrackObject(id: String) {
-        trackedObjects.remove(id)
+        lifetimeTracker.unwatch(id)
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.chain.messaging.core.performance
 
+import com.chain.messaging.core.performance.metrics.LatencySummary
 import kotlinx.coroutines.flow.Flow
 
 /**
@@ -72,7 +73,8 @@ data class PerformanceMetrics(
     val memoryUsage: MemoryUsageMetrics,
     val batteryUsage: BatteryUsageMetrics,
     val networkPerformance: NetworkPerformanceMetrics,
-    val cpuUsage: CpuUsageMetrics
+    val cpuUsage: CpuUsageMetrics,
+    val hotPaths: Map<String, LatencySummary> = emptyMap()
 )
 
 data class MessageThroughputMetrics(
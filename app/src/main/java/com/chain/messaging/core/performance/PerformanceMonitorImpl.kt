@@ -1,15 +1,23 @@
 package com.chain.messaging.core.performance
 
 import android.app.ActivityManager
+import android.content.ComponentCallbacks2
 import android.content.Context
+import android.content.res.Configuration
 import android.os.BatteryManager
 import android.os.Debug
+import android.os.Process
+import android.os.SystemClock
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.LatencySummary
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.performance.metrics.MetricsSnapshot
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
 import com.chain.messaging.core.util.Logger
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.atomic.AtomicLong
 import javax.inject.Inject
 import javax.inject.Singleton
 import kotlin.math.max
@@ -20,11 +28,13 @@ import kotlin.math.max
 @Singleton
 class PerformanceMonitorImpl @Inject constructor(
     @ApplicationContext private val context: Context,
-    private val performanceStorage: PerformanceStorage
+    private val performanceStorage: PerformanceStorage,
+    private val metricsRegistry: MetricsRegistry
 ) : PerformanceMonitor {
     
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
     private var isMonitoring = false
+    private val monitoringTasks = mutableListOf<ScheduledTask>()
     
     private val _performanceMetrics = MutableSharedFlow<PerformanceMetrics>(replay = 1)
     private val _performanceAlerts = MutableSharedFlow<PerformanceAlert>()
@@ -33,8 +43,13 @@ class PerformanceMonitorImpl @Inject constructor(
     private val batteryManager = context.getSystemService(Context.BATTERY_SERVICE) as BatteryManager
     
     // Metrics tracking
-    private val messageCount = AtomicLong(0)
-    private val messageTimes = ConcurrentHashMap<Long, Long>()
+    private val messagesSent = metricsRegistry.counter(HotPathMetrics.MESSAGES_SENT)
+    private var lastSnapshot: MetricsSnapshot? = null
+    private var peakThroughput = 0.0
+    private var lastNetworkLatencyMs: Long? = null
+    private var lastNetworkThroughputKbps = 0L
+    private var lastCpuTimeMs = 0L
+    private var lastCpuSampleElapsedMs = 0L
     private var lastGcCount = 0
     private var lastGcTime = 0L
     private var lastBatteryLevel = 0f
@@ -47,7 +62,27 @@ class PerformanceMonitorImpl @Inject constructor(
         const val HIGH_CPU_THRESHOLD = 0.80f // 80% CPU usage
         const val SLOW_THROUGHPUT_THRESHOLD = 1.0 // 1 message per second
         const val MONITORING_INTERVAL_MS = 5000L // 5 seconds
+        const val CLEANUP_INTERVAL_MS = 60 * 60 * 1000L // 1 hour
+        const val FLUSH_INTERVAL_MS = 60 * 1000L // 1 minute
+        const val REPORT_INTERVAL_MS = 15 * 60 * 1000L // 15 minutes
         const val METRICS_RETENTION_MS = 24 * 60 * 60 * 1000L // 24 hours
+        const val EXCELLENT_LATENCY_MS = 150L
+        const val GOOD_LATENCY_MS = 400L
+        const val FAIR_LATENCY_MS = 1_000L
+    }
+    
+    // Leaving the foreground is the last reliable moment before the process may be killed
+    private val trimCallbacks = object : ComponentCallbacks2 {
+        override fun onTrimMemory(level: Int) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                scope.launch { performanceStorage.flush() }
+            }
+        }
+
+        override fun onConfigurationChanged(newConfig: Configuration) = Unit
+
+        @Deprecated("Deprecated in Java")
+        override fun onLowMemory() = Unit
     }
     
     override suspend fun startMonitoring() {
@@ -56,39 +91,48 @@ class PerformanceMonitorImpl @Inject constructor(
         isMonitoring = true
         Logger.i("Starting performance monitoring")
         
-        scope.launch {
-            while (isMonitoring) {
-                try {
-                    collectAndEmitMetrics()
-                    delay(MONITORING_INTERVAL_MS)
-                } catch (e: Exception) {
-                    Logger.e("Error collecting performance metrics", e)
-                }
-            }
+        monitoringTasks += BackgroundWork.scheduler.schedulePeriodic(
+            name = "performance-monitor.metrics",
+            intervalMs = MONITORING_INTERVAL_MS,
+            owner = scope
+        ) {
+            collectAndEmitMetrics()
+        }
+        
+        // Open series blocks live in memory until written
+        monitoringTasks += BackgroundWork.scheduler.schedulePeriodic(
+            name = "performance-monitor.flush",
+            intervalMs = FLUSH_INTERVAL_MS,
+            owner = scope,
+            initialDelayMs = FLUSH_INTERVAL_MS
+        ) {
+            performanceStorage.flush()
         }
+        context.registerComponentCallbacks(trimCallbacks)
         
         // Start background cleanup
-        scope.launch {
-            while (isMonitoring) {
-                delay(60 * 60 * 1000L) // Every hour
-                clearOldData(METRICS_RETENTION_MS)
-            }
+        monitoringTasks += BackgroundWork.scheduler.schedulePeriodic(
+            name = "performance-monitor.cleanup",
+            intervalMs = CLEANUP_INTERVAL_MS,
+            owner = scope,
+            initialDelayMs = CLEANUP_INTERVAL_MS
+        ) {
+            clearOldData(METRICS_RETENTION_MS)
         }
     }
     
     override suspend fun stopMonitoring() {
         isMonitoring = false
         Logger.i("Stopping performance monitoring")
+        monitoringTasks.forEach { it.cancel() }
+        monitoringTasks.clear()
+        context.unregisterComponentCallbacks(trimCallbacks)
+        performanceStorage.flush()
     }
     
     override suspend fun recordMessageThroughput(messageCount: Int, timeWindowMs: Long) {
-        val currentTime = System.currentTimeMillis()
-        this.messageCount.addAndGet(messageCount.toLong())
-        messageTimes[currentTime] = messageCount.toLong()
-        
-        // Clean old message times (keep only last 5 minutes)
-        val cutoffTime = currentTime - 5 * 60 * 1000L
-        messageTimes.entries.removeIf { it.key < cutoffTime }
+        // Rate is derived per monitoring interval from the counter delta
+        messagesSent.add(messageCount.toLong())
     }
     
     override suspend fun recordMemoryUsage(usedMemoryMb: Long, totalMemoryMb: Long) {
@@ -120,6 +164,8 @@ class PerformanceMonitorImpl @Inject constructor(
     
     override suspend fun recordNetworkPerformance(latencyMs: Long, throughputKbps: Long) {
         performanceStorage.storeNetworkMetric(latencyMs, throughputKbps)
+        lastNetworkLatencyMs = latencyMs
+        lastNetworkThroughputKbps = throughputKbps
         
         if (latencyMs > 5000) { // 5 seconds latency
             emitAlert(
@@ -143,23 +189,24 @@ class PerformanceMonitorImpl @Inject constructor(
     override suspend fun startPeriodicReports() {
         Logger.i("Starting periodic performance reports")
         
-        scope.launch {
-            while (isMonitoring) {
-                try {
-                    generatePerformanceReport()
-                    delay(15 * 60 * 1000L) // Generate report every 15 minutes
-                } catch (e: Exception) {
-                    Logger.e("Error generating performance report", e)
-                }
-            }
+        if (!isMonitoring) return
+        monitoringTasks += BackgroundWork.scheduler.schedulePeriodic(
+            name = "performance-monitor.report",
+            intervalMs = REPORT_INTERVAL_MS,
+            owner = scope
+        ) {
+            generatePerformanceReport()
         }
     }
     
     override fun getCurrentMetrics(): Map<String, Any> {
         val memoryMetrics = collectMemoryMetrics()
         val batteryMetrics = collectBatteryMetrics()
-        val cpuMetrics = collectCpuMetrics()
-        val throughputMetrics = collectThroughputMetrics()
+        // Interval-based values come from the last monitoring tick
+        val latest = _performanceMetrics.replayCache.lastOrNull()
+        val cpuMetrics = latest?.cpuUsage ?: CpuUsageMetrics(0f, Thread.activeCount(), Thread.activeCount())
+        val throughputMetrics = latest?.messageThroughput
+            ?: MessageThroughputMetrics(0.0, 0L, 0.0, messagesSent.sum())
         
         return mapOf(
             "memoryUsagePercentage" to memoryMetrics.usagePercentage,
@@ -176,11 +223,9 @@ class PerformanceMonitorImpl @Inject constructor(
     
     private suspend fun generatePerformanceReport() {
         val currentMetrics = getCurrentMetrics()
+        // Samples are already stored every monitoring interval
         Logger.i("Performance Report: $currentMetrics")
         
-        // Store the report
-        performanceStorage.storeMetrics(currentMetrics)
-        
         // Check if we need to emit any summary alerts
         val memoryUsage = currentMetrics["memoryUsagePercentage"] as Float
         val batteryLevel = currentMetrics["batteryLevel"] as Float
@@ -198,11 +243,19 @@ class PerformanceMonitorImpl @Inject constructor(
     private suspend fun collectAndEmitMetrics() {
         val currentTime = System.currentTimeMillis()
         
+        // One cheap copy of every hot-path metric, turned into this interval's delta
+        val snapshot = metricsRegistry.snapshot()
+        val previous = lastSnapshot
+        lastSnapshot = snapshot
+        val interval = previous?.let { snapshot - it } ?: snapshot
+        val intervalSeconds = previous?.let { (snapshot.timestamp - it.timestamp) / 1000.0 }
+            ?: (MONITORING_INTERVAL_MS / 1000.0)
+        
         val memoryMetrics = collectMemoryMetrics()
         val batteryMetrics = collectBatteryMetrics()
-        val networkMetrics = collectNetworkMetrics()
+        val networkMetrics = collectNetworkMetrics(interval, intervalSeconds)
         val cpuMetrics = collectCpuMetrics()
-        val throughputMetrics = collectThroughputMetrics()
+        val throughputMetrics = collectThroughputMetrics(interval, intervalSeconds)
         
         val metrics = PerformanceMetrics(
             timestamp = currentTime,
@@ -210,7 +263,8 @@ class PerformanceMonitorImpl @Inject constructor(
             memoryUsage = memoryMetrics,
             batteryUsage = batteryMetrics,
             networkPerformance = networkMetrics,
-            cpuUsage = cpuMetrics
+            cpuUsage = cpuMetrics,
+            hotPaths = collectHotPathSummaries(interval)
         )
         
         _performanceMetrics.emit(metrics)
@@ -274,29 +328,48 @@ class PerformanceMonitorImpl @Inject constructor(
         )
     }
     
-    private fun collectNetworkMetrics(): NetworkPerformanceMetrics {
-        // This would typically involve actual network measurements
-        // For now, we'll return default values
+    private fun collectNetworkMetrics(interval: MetricsSnapshot, intervalSeconds: Double): NetworkPerformanceMetrics {
+        // Blockchain send-to-confirmation time is the only end-to-end network latency
+        // we observe; keep the last known value through quiet intervals
+        val roundTrip = interval.histograms[HotPathMetrics.BLOCKCHAIN_ROUND_TRIP]
+        if (roundTrip != null && roundTrip.count > 0) {
+            lastNetworkLatencyMs = roundTrip.percentile(0.50) / 1000
+        }
+        val bytesSent = interval.counters[HotPathMetrics.BLOCKCHAIN_BYTES_SENT] ?: 0L
+        if (bytesSent > 0 && intervalSeconds > 0) {
+            lastNetworkThroughputKbps = (bytesSent * 8 / 1000.0 / intervalSeconds).toLong()
+        }
+        
+        val latencyMs = lastNetworkLatencyMs
         return NetworkPerformanceMetrics(
-            latencyMs = 50L,
-            throughputKbps = 1000L,
+            latencyMs = latencyMs ?: 0L,
+            throughputKbps = lastNetworkThroughputKbps,
             packetLoss = 0f,
-            connectionQuality = NetworkQuality.GOOD
+            connectionQuality = when {
+                latencyMs == null -> NetworkQuality.GOOD
+                latencyMs <= EXCELLENT_LATENCY_MS -> NetworkQuality.EXCELLENT
+                latencyMs <= GOOD_LATENCY_MS -> NetworkQuality.GOOD
+                latencyMs <= FAIR_LATENCY_MS -> NetworkQuality.FAIR
+                else -> NetworkQuality.POOR
+            }
         )
     }
     
     private fun collectCpuMetrics(): CpuUsageMetrics {
         val threadCount = Thread.activeCount()
         
-        // Get CPU usage (simplified approach)
+        // Share of all cores this process kept busy since the previous sample
         val cpuUsage = try {
-            val runtime = Runtime.getRuntime()
-            val processors = runtime.availableProcessors()
-            // This is a simplified CPU usage calculation
-            val memoryInfo = Debug.MemoryInfo()
-            Debug.getMemoryInfo(memoryInfo)
-            val loadAverage = memoryInfo.totalPss.toFloat()
-            (loadAverage / (processors * 1000)).coerceIn(0f, 1f)
+            val cpuTimeMs = Process.getElapsedCpuTime()
+            val nowMs = SystemClock.elapsedRealtime()
+            val sinceMs = if (lastCpuSampleElapsedMs > 0) lastCpuSampleElapsedMs else Process.getStartElapsedRealtime()
+            val wallMs = nowMs - sinceMs
+            val cpuMs = cpuTimeMs - lastCpuTimeMs
+            lastCpuTimeMs = cpuTimeMs
+            lastCpuSampleElapsedMs = nowMs
+            
+            val processors = Runtime.getRuntime().availableProcessors()
+            if (wallMs > 0) (cpuMs.toFloat() / (wallMs * processors)).coerceIn(0f, 1f) else 0f
         } catch (e: Exception) {
             0f
         }
@@ -308,24 +381,30 @@ class PerformanceMonitorImpl @Inject constructor(
         )
     }
     
-    private fun collectThroughputMetrics(): MessageThroughputMetrics {
-        val currentTime = System.currentTimeMillis()
-        val recentMessages = messageTimes.filterKeys { it > currentTime - 60000L } // Last minute
+    private fun collectThroughputMetrics(interval: MetricsSnapshot, intervalSeconds: Double): MessageThroughputMetrics {
+        val sentInInterval = interval.counters[HotPathMetrics.MESSAGES_SENT] ?: 0L
+        val messagesPerSecond = if (intervalSeconds > 0) sentInInterval / intervalSeconds else 0.0
+        peakThroughput = max(peakThroughput, messagesPerSecond)
         
-        val messagesPerSecond = if (recentMessages.isNotEmpty()) {
-            recentMessages.values.sum().toDouble() / 60.0
-        } else 0.0
-        
-        val totalMessages = messageCount.get()
+        val sendLatency = interval.histograms[HotPathMetrics.MESSAGE_SEND]
+        val averageLatencyMs = if (sendLatency != null && sendLatency.count > 0) {
+            (sendLatency.meanMicros / 1000).toLong()
+        } else 0L
         
         return MessageThroughputMetrics(
             messagesPerSecond = messagesPerSecond,
-            averageLatencyMs = 100L, // This would be calculated from actual message timing
-            peakThroughput = messagesPerSecond, // Simplified
-            totalMessages = totalMessages
+            averageLatencyMs = averageLatencyMs,
+            peakThroughput = peakThroughput,
+            totalMessages = messagesSent.sum()
         )
     }
     
+    private fun collectHotPathSummaries(interval: MetricsSnapshot): Map<String, LatencySummary> {
+        return interval.histograms
+            .filterValues { it.count > 0 }
+            .mapValues { it.value.toSummary() }
+    }
+    
     private suspend fun checkPerformanceThresholds(metrics: PerformanceMetrics) {
         // Check memory usage
         if (metrics.memoryUsage.usagePercentage > HIGH_MEMORY_THRESHOLD) {
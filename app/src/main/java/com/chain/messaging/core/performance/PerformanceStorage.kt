@@ -1,5 +1,7 @@
 package com.chain.messaging.core.performance
 
+import com.chain.messaging.core.performance.timeseries.SeriesQueryResult
+
 /**
  * Interface for storing performance metrics and alerts
  */
@@ -31,17 +33,54 @@ interface PerformanceStorage {
     suspend fun storeNetworkMetric(latencyMs: Long, throughputKbps: Long)
     
     /**
-     * Get historical metrics
+     * Get historical metrics, one entry per point of the aggregated series
      */
     suspend fun getMetrics(fromTimestamp: Long, toTimestamp: Long): List<PerformanceMetrics>
     
+    /**
+     * Get one metric (see [PerformanceSeriesNames]) as an aggregated series of at most [maxPoints] points
+     */
+    suspend fun getSeries(metric: String, fromTimestamp: Long, toTimestamp: Long, maxPoints: Int): SeriesQueryResult
+    
     /**
      * Get historical alerts
      */
     suspend fun getAlerts(fromTimestamp: Long, toTimestamp: Long): List<PerformanceAlert>
     
     /**
-     * Clear old data
+     * Clear old alerts and raw samples; rollup tiers keep their own retention
      */
     suspend fun clearOldData(olderThanMs: Long)
+    
+    /**
+     * Persist buffered samples
+     */
+    suspend fun flush()
+}
+
+/**
+ * Series names written for every PerformanceMetrics sample
+ */
+object PerformanceSeriesNames {
+    const val MESSAGES_PER_SECOND = "throughput.messages_per_second"
+    const val AVERAGE_LATENCY_MS = "throughput.average_latency_ms"
+    const val TOTAL_MESSAGES = "throughput.total_messages"
+    const val USED_MEMORY_MB = "memory.used_mb"
+    const val TOTAL_MEMORY_MB = "memory.total_mb"
+    const val MEMORY_USAGE = "memory.usage"
+    const val GC_COUNT = "memory.gc_count"
+    const val GC_TIME_MS = "memory.gc_time_ms"
+    const val BATTERY_LEVEL = "battery.level"
+    const val BATTERY_CHARGING = "battery.charging"
+    const val BATTERY_DRAIN_RATE = "battery.drain_rate"
+    const val NETWORK_LATENCY_MS = "network.latency_ms"
+    const val NETWORK_THROUGHPUT_KBPS = "network.throughput_kbps"
+    const val NETWORK_QUALITY = "network.quality"
+    const val CPU_USAGE = "cpu.usage"
+    const val THREAD_COUNT = "cpu.threads"
+
+    /**
+     * Series of one hot-path latency percentile, e.g. message.send p99
+     */
+    fun hotPath(name: String, percentile: Int): String = "hot.$name.p$percentile"
 }
\ No newline at end of file
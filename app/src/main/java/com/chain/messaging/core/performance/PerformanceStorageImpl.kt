@@ -1,47 +1,62 @@
 package com.chain.messaging.core.performance
 
+import com.chain.messaging.core.performance.timeseries.PerformanceTimeSeries
+import com.chain.messaging.core.performance.timeseries.SeriesPoint
+import com.chain.messaging.core.performance.timeseries.SeriesQueryResult
 import com.chain.messaging.data.local.dao.PerformanceDao
 import com.chain.messaging.data.local.entity.PerformanceAlertEntity
-import com.chain.messaging.data.local.entity.PerformanceMetricsEntity
 import com.chain.messaging.core.util.Logger
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.booleanOrNull
+import kotlinx.serialization.json.doubleOrNull
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.longOrNull
 import javax.inject.Inject
 import javax.inject.Singleton
+import kotlin.math.roundToInt
+import kotlin.math.roundToLong
 
 /**
- * Implementation of PerformanceStorage using Room database
+ * Implementation of PerformanceStorage on the compressed performance time series,
+ * with alerts in their own Room table
  */
 @Singleton
 class PerformanceStorageImpl @Inject constructor(
-    private val performanceDao: PerformanceDao
+    private val performanceDao: PerformanceDao,
+    private val timeSeries: PerformanceTimeSeries
 ) : PerformanceStorage {
-    
+
     override suspend fun storeMetrics(metrics: PerformanceMetrics) {
         try {
-            val entity = PerformanceMetricsEntity(
-                timestamp = metrics.timestamp,
-                messagesPerSecond = metrics.messageThroughput.messagesPerSecond,
-                averageLatencyMs = metrics.messageThroughput.averageLatencyMs,
-                totalMessages = metrics.messageThroughput.totalMessages,
-                usedMemoryMb = metrics.memoryUsage.usedMemoryMb,
-                totalMemoryMb = metrics.memoryUsage.totalMemoryMb,
-                memoryUsagePercentage = metrics.memoryUsage.usagePercentage,
-                gcCount = metrics.memoryUsage.gcCount,
-                gcTimeMs = metrics.memoryUsage.gcTimeMs,
-                batteryLevel = metrics.batteryUsage.batteryLevel,
-                isCharging = metrics.batteryUsage.isCharging,
-                batteryDrainRate = metrics.batteryUsage.batteryDrainRate,
-                networkLatencyMs = metrics.networkPerformance.latencyMs,
-                networkThroughputKbps = metrics.networkPerformance.throughputKbps,
-                networkQuality = metrics.networkPerformance.connectionQuality.name,
-                cpuUsagePercentage = metrics.cpuUsage.cpuUsagePercentage,
-                threadCount = metrics.cpuUsage.threadCount
-            )
-            performanceDao.insertMetrics(entity)
+            val values = HashMap<String, Double>(CORE_SERIES.size + metrics.hotPaths.size * 2)
+            values[PerformanceSeriesNames.MESSAGES_PER_SECOND] = metrics.messageThroughput.messagesPerSecond
+            values[PerformanceSeriesNames.AVERAGE_LATENCY_MS] = metrics.messageThroughput.averageLatencyMs.toDouble()
+            values[PerformanceSeriesNames.TOTAL_MESSAGES] = metrics.messageThroughput.totalMessages.toDouble()
+            values[PerformanceSeriesNames.USED_MEMORY_MB] = metrics.memoryUsage.usedMemoryMb.toDouble()
+            values[PerformanceSeriesNames.TOTAL_MEMORY_MB] = metrics.memoryUsage.totalMemoryMb.toDouble()
+            values[PerformanceSeriesNames.MEMORY_USAGE] = metrics.memoryUsage.usagePercentage.toDouble()
+            values[PerformanceSeriesNames.GC_COUNT] = metrics.memoryUsage.gcCount.toDouble()
+            values[PerformanceSeriesNames.GC_TIME_MS] = metrics.memoryUsage.gcTimeMs.toDouble()
+            values[PerformanceSeriesNames.BATTERY_LEVEL] = metrics.batteryUsage.batteryLevel.toDouble()
+            values[PerformanceSeriesNames.BATTERY_CHARGING] = if (metrics.batteryUsage.isCharging) 1.0 else 0.0
+            values[PerformanceSeriesNames.BATTERY_DRAIN_RATE] = metrics.batteryUsage.batteryDrainRate.toDouble()
+            values[PerformanceSeriesNames.NETWORK_LATENCY_MS] = metrics.networkPerformance.latencyMs.toDouble()
+            values[PerformanceSeriesNames.NETWORK_THROUGHPUT_KBPS] = metrics.networkPerformance.throughputKbps.toDouble()
+            values[PerformanceSeriesNames.NETWORK_QUALITY] = metrics.networkPerformance.connectionQuality.ordinal.toDouble()
+            values[PerformanceSeriesNames.CPU_USAGE] = metrics.cpuUsage.cpuUsagePercentage.toDouble()
+            values[PerformanceSeriesNames.THREAD_COUNT] = metrics.cpuUsage.threadCount.toDouble()
+            metrics.hotPaths.forEach { (name, summary) ->
+                values[PerformanceSeriesNames.hotPath(name, 50)] = summary.p50Micros.toDouble()
+                values[PerformanceSeriesNames.hotPath(name, 99)] = summary.p99Micros.toDouble()
+            }
+            timeSeries.append(metrics.timestamp, values)
         } catch (e: Exception) {
             Logger.e("Failed to store performance metrics", e)
         }
     }
-    
+
     override suspend fun storeAlert(alert: PerformanceAlert) {
         try {
             val entity = PerformanceAlertEntity(
@@ -50,63 +65,75 @@ class PerformanceStorageImpl @Inject constructor(
                 severity = alert.severity.name,
                 message = alert.message,
                 timestamp = alert.timestamp,
-                metricsJson = alert.metrics.toString() // Simple serialization
+                metricsJson = encodeAlertMetrics(alert.metrics)
             )
             performanceDao.insertAlert(entity)
         } catch (e: Exception) {
             Logger.e("Failed to store performance alert", e)
         }
     }
-    
+
     override suspend fun storeMemoryMetric(usedMemoryMb: Long, totalMemoryMb: Long) {
         // This is handled as part of storeMetrics, but can be used for immediate storage
         Logger.d("Memory usage: ${usedMemoryMb}MB / ${totalMemoryMb}MB")
     }
-    
+
     override suspend fun storeBatteryMetric(batteryLevel: Float, isCharging: Boolean) {
         // This is handled as part of storeMetrics, but can be used for immediate storage
         Logger.d("Battery: ${(batteryLevel * 100).toInt()}%, charging: $isCharging")
     }
-    
+
     override suspend fun storeNetworkMetric(latencyMs: Long, throughputKbps: Long) {
         // This is handled as part of storeMetrics, but can be used for immediate storage
         Logger.d("Network: ${latencyMs}ms latency, ${throughputKbps}kbps throughput")
     }
-    
+
     override suspend fun getMetrics(fromTimestamp: Long, toTimestamp: Long): List<PerformanceMetrics> {
         return try {
-            performanceDao.getMetrics(fromTimestamp, toTimestamp).map { entity ->
+            // Every core series is queried over the same range, so all come from the
+            // same tier with the same bucket timestamps
+            val series = CORE_SERIES.associateWith { metric ->
+                timeSeries.query(metric, fromTimestamp, toTimestamp).points.associateBy { it.timestamp }
+            }
+            val timestamps = series.getValue(PerformanceSeriesNames.MEMORY_USAGE).keys.sortedDescending()
+
+            timestamps.map { timestamp ->
+                fun point(metric: String): SeriesPoint? = series.getValue(metric)[timestamp]
+                fun mean(metric: String): Double = point(metric)?.mean ?: 0.0
+
                 PerformanceMetrics(
-                    timestamp = entity.timestamp,
+                    timestamp = timestamp,
                     messageThroughput = MessageThroughputMetrics(
-                        messagesPerSecond = entity.messagesPerSecond,
-                        averageLatencyMs = entity.averageLatencyMs,
-                        peakThroughput = entity.messagesPerSecond, // Simplified
-                        totalMessages = entity.totalMessages
+                        messagesPerSecond = mean(PerformanceSeriesNames.MESSAGES_PER_SECOND),
+                        averageLatencyMs = mean(PerformanceSeriesNames.AVERAGE_LATENCY_MS).roundToLong(),
+                        peakThroughput = point(PerformanceSeriesNames.MESSAGES_PER_SECOND)?.max ?: 0.0,
+                        totalMessages = (point(PerformanceSeriesNames.TOTAL_MESSAGES)?.max ?: 0.0).toLong()
                     ),
                     memoryUsage = MemoryUsageMetrics(
-                        usedMemoryMb = entity.usedMemoryMb,
-                        totalMemoryMb = entity.totalMemoryMb,
-                        usagePercentage = entity.memoryUsagePercentage,
-                        gcCount = entity.gcCount,
-                        gcTimeMs = entity.gcTimeMs
+                        usedMemoryMb = mean(PerformanceSeriesNames.USED_MEMORY_MB).roundToLong(),
+                        totalMemoryMb = mean(PerformanceSeriesNames.TOTAL_MEMORY_MB).roundToLong(),
+                        usagePercentage = mean(PerformanceSeriesNames.MEMORY_USAGE).toFloat(),
+                        gcCount = (point(PerformanceSeriesNames.GC_COUNT)?.sum ?: 0.0).roundToInt(),
+                        gcTimeMs = (point(PerformanceSeriesNames.GC_TIME_MS)?.sum ?: 0.0).roundToLong()
                     ),
                     batteryUsage = BatteryUsageMetrics(
-                        batteryLevel = entity.batteryLevel,
-                        isCharging = entity.isCharging,
-                        batteryDrainRate = entity.batteryDrainRate,
+                        batteryLevel = mean(PerformanceSeriesNames.BATTERY_LEVEL).toFloat(),
+                        isCharging = mean(PerformanceSeriesNames.BATTERY_CHARGING) >= 0.5,
+                        batteryDrainRate = mean(PerformanceSeriesNames.BATTERY_DRAIN_RATE).toFloat(),
                         estimatedTimeRemaining = null // Not stored
                     ),
                     networkPerformance = NetworkPerformanceMetrics(
-                        latencyMs = entity.networkLatencyMs,
-                        throughputKbps = entity.networkThroughputKbps,
+                        latencyMs = mean(PerformanceSeriesNames.NETWORK_LATENCY_MS).roundToLong(),
+                        throughputKbps = mean(PerformanceSeriesNames.NETWORK_THROUGHPUT_KBPS).roundToLong(),
                         packetLoss = 0f, // Not stored
-                        connectionQuality = NetworkQuality.valueOf(entity.networkQuality)
+                        connectionQuality = NetworkQuality.values()[
+                            mean(PerformanceSeriesNames.NETWORK_QUALITY).roundToInt().coerceIn(0, NetworkQuality.values().size - 1)
+                        ]
                     ),
                     cpuUsage = CpuUsageMetrics(
-                        cpuUsagePercentage = entity.cpuUsagePercentage,
-                        threadCount = entity.threadCount,
-                        activeThreads = entity.threadCount // Simplified
+                        cpuUsagePercentage = mean(PerformanceSeriesNames.CPU_USAGE).toFloat(),
+                        threadCount = mean(PerformanceSeriesNames.THREAD_COUNT).roundToInt(),
+                        activeThreads = mean(PerformanceSeriesNames.THREAD_COUNT).roundToInt() // Simplified
                     )
                 )
             }
@@ -115,7 +142,16 @@ class PerformanceStorageImpl @Inject constructor(
             emptyList()
         }
     }
-    
+
+    override suspend fun getSeries(
+        metric: String,
+        fromTimestamp: Long,
+        toTimestamp: Long,
+        maxPoints: Int
+    ): SeriesQueryResult {
+        return timeSeries.query(metric, fromTimestamp, toTimestamp, maxPoints)
+    }
+
     override suspend fun getAlerts(fromTimestamp: Long, toTimestamp: Long): List<PerformanceAlert> {
         return try {
             performanceDao.getAlerts(fromTimestamp, toTimestamp).map { entity ->
@@ -125,7 +161,7 @@ class PerformanceStorageImpl @Inject constructor(
                     severity = AlertSeverity.valueOf(entity.severity),
                     message = entity.message,
                     timestamp = entity.timestamp,
-                    metrics = emptyMap() // Simplified - would need proper JSON parsing
+                    metrics = decodeAlertMetrics(entity.metricsJson)
                 )
             }
         } catch (e: Exception) {
@@ -133,15 +169,74 @@ class PerformanceStorageImpl @Inject constructor(
             emptyList()
         }
     }
-    
+
     override suspend fun clearOldData(olderThanMs: Long) {
         try {
-            val cutoffTime = System.currentTimeMillis() - olderThanMs
-            performanceDao.deleteOldMetrics(cutoffTime)
+            val now = System.currentTimeMillis()
+            val cutoffTime = now - olderThanMs
+            timeSeries.applyRetention(now, rawRetentionMs = olderThanMs)
             performanceDao.deleteOldAlerts(cutoffTime)
             Logger.d("Cleared performance data older than $cutoffTime")
         } catch (e: Exception) {
             Logger.e("Failed to clear old performance data", e)
         }
     }
-}
\ No newline at end of file
+
+    override suspend fun flush() {
+        try {
+            timeSeries.flush()
+        } catch (e: Exception) {
+            Logger.e("Failed to flush performance series", e)
+        }
+    }
+
+    private fun encodeAlertMetrics(metrics: Map<String, Any>): String {
+        val json = JsonObject(metrics.mapValues { (_, value) ->
+            when (value) {
+                is Number -> JsonPrimitive(value)
+                is Boolean -> JsonPrimitive(value)
+                else -> JsonPrimitive(value.toString())
+            }
+        })
+        return json.toString()
+    }
+
+    private fun decodeAlertMetrics(metricsJson: String): Map<String, Any> {
+        return try {
+            Json.parseToJsonElement(metricsJson).jsonObject.mapValues { (_, element) ->
+                val primitive = element as? JsonPrimitive ?: return@mapValues element.toString()
+                when {
+                    primitive.isString -> primitive.content
+                    primitive.booleanOrNull != null -> primitive.booleanOrNull!!
+                    primitive.longOrNull != null -> primitive.longOrNull!!
+                    primitive.doubleOrNull != null -> primitive.doubleOrNull!!
+                    else -> primitive.content
+                }
+            }
+        } catch (e: Exception) {
+            // Alerts written before the JSON format used toString()
+            emptyMap()
+        }
+    }
+
+    companion object {
+        private val CORE_SERIES = listOf(
+            PerformanceSeriesNames.MESSAGES_PER_SECOND,
+            PerformanceSeriesNames.AVERAGE_LATENCY_MS,
+            PerformanceSeriesNames.TOTAL_MESSAGES,
+            PerformanceSeriesNames.USED_MEMORY_MB,
+            PerformanceSeriesNames.TOTAL_MEMORY_MB,
+            PerformanceSeriesNames.MEMORY_USAGE,
+            PerformanceSeriesNames.GC_COUNT,
+            PerformanceSeriesNames.GC_TIME_MS,
+            PerformanceSeriesNames.BATTERY_LEVEL,
+            PerformanceSeriesNames.BATTERY_CHARGING,
+            PerformanceSeriesNames.BATTERY_DRAIN_RATE,
+            PerformanceSeriesNames.NETWORK_LATENCY_MS,
+            PerformanceSeriesNames.NETWORK_THROUGHPUT_KBPS,
+            PerformanceSeriesNames.NETWORK_QUALITY,
+            PerformanceSeriesNames.CPU_USAGE,
+            PerformanceSeriesNames.THREAD_COUNT
+        )
+    }
+}
@@ -12,6 +12,12 @@ interface PerformanceTester {
      */
     suspend fun benchmarkMessageThroughput(messageCount: Int, concurrentUsers: Int): BenchmarkResult
     
+    /**
+     * Run the messaging microbenchmark suite and check it for regressions
+     * against the previous run
+     */
+    suspend fun runMessagingBenchmarks(): BenchmarkResult
+    
     /**
      * Run memory usage benchmark
      */
@@ -0,0 +1,171 @@
+package com.chain.messaging.core.performance.benchmark
+
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+
+/**
+ * Machine-readable result of one benchmark suite run
+ */
+@Serializable
+data class BenchmarkReport(
+    val suite: String,
+    val createdAt: Long,
+    val environment: Map<String, String> = emptyMap(),
+    val results: List<BenchmarkMeasurement>
+) {
+    fun result(name: String): BenchmarkMeasurement? = results.firstOrNull { it.name == name }
+
+    fun toJson(): String = json.encodeToString(this)
+
+    companion object {
+        private val json = Json {
+            prettyPrint = true
+            ignoreUnknownKeys = true
+            encodeDefaults = true
+        }
+
+        fun fromJson(text: String): BenchmarkReport = json.decodeFromString(text)
+    }
+}
+
+/**
+ * One video transcode compared with its source
+ */
+@Serializable
+data class VideoTranscodeComparison(
+    val sourceBytes: Long,
+    val outputBytes: Long,
+    val durationMs: Long,
+    val elapsedMs: Long,
+    val width: Int,
+    val height: Int
+) {
+    // Seconds of video encoded per second of wall time
+    val realtimeFactor: Double
+        get() = if (elapsedMs <= 0) 0.0 else durationMs.toDouble() / elapsedMs
+
+    val sizeRatio: Double
+        get() = if (sourceBytes <= 0) 1.0 else outputBytes.toDouble() / sourceBytes
+}
+
+/**
+ * Time from releasing the record button to a voice note being sent, whole
+ * after recording versus streamed while recording
+ */
+@Serializable
+data class VoiceReleaseLatency(
+    val durationMinutes: Int,
+    val noteBytes: Long,
+    // Bytes still to upload at release when streaming: the trailing chunk
+    val trailingBytes: Long,
+    val wholeFileMs: Double,
+    val streamedMs: Double
+) {
+    val speedup: Double
+        get() = if (streamedMs <= 0.0) 0.0 else wholeFileMs / streamedMs
+}
+
+/**
+ * One burst of message notifications posted one per message versus folded
+ * per chat. The per-message side is what the old path did on the caller's
+ * thread: build and post for every message.
+ */
+@Serializable
+data class NotificationBurstComparison(
+    val messages: Int,
+    val chats: Int,
+    val perMessagePosts: Int,
+    val batchedPosts: Long,
+    val perMessageMainThreadMs: Double,
+    val batchedMainThreadMs: Double,
+    // Off the main thread, once per window
+    val batchedRenderMs: Double
+)
+
+/**
+ * One chat-list load, decoding participants and admins JSON per chat versus
+ * reading chat_summaries with the participants join table
+ */
+@Serializable
+data class ChatListColdLoadComparison(
+    val chats: Int,
+    // Rows in chat_participants for the seeded chats
+    val members: Int,
+    val legacyColdMs: Double,
+    val summaryColdMs: Double,
+    val legacyWarmMedianMs: Double,
+    val summaryWarmMedianMs: Double
+) {
+    val coldSpeedup: Double
+        get() = if (summaryColdMs <= 0.0) 0.0 else legacyColdMs / summaryColdMs
+}
+
+/**
+ * Limits for one benchmark. Absolute limits catch outright slowness; the
+ * slowdown limit compares p50 against a baseline report from an earlier run.
+ */
+@Serializable
+data class RegressionThreshold(
+    val benchmark: String,
+    val maxP50Ns: Long? = null,
+    val maxP99Ns: Long? = null,
+    val minOpsPerSecond: Double? = null,
+    val maxSlowdownPercent: Double = 20.0,
+    val maxErrors: Int = 0
+)
+
+/**
+ * A benchmark that broke one of its limits
+ */
+data class RegressionViolation(
+    val benchmark: String,
+    val metric: String,
+    val actual: Double,
+    val limit: Double
+) {
+    val message: String
+        get() {
+            val direction = if (actual < limit) "below minimum" else "above maximum"
+            return "$benchmark: $metric = ${"%.1f".format(actual)} is $direction ${"%.1f".format(limit)}"
+        }
+}
+
+/**
+ * Compares a report against thresholds and, optionally, a baseline report
+ */
+object RegressionChecker {
+
+    fun check(
+        report: BenchmarkReport,
+        thresholds: List<RegressionThreshold>,
+        baseline: BenchmarkReport? = null
+    ): List<RegressionViolation> {
+        val violations = mutableListOf<RegressionViolation>()
+        thresholds.forEach { threshold ->
+            val result = report.result(threshold.benchmark) ?: return@forEach
+
+            threshold.maxP50Ns?.let { limit ->
+                if (result.p50Ns > limit) violations += RegressionViolation(result.name, "p50_ns", result.p50Ns.toDouble(), limit.toDouble())
+            }
+            threshold.maxP99Ns?.let { limit ->
+                if (result.p99Ns > limit) violations += RegressionViolation(result.name, "p99_ns", result.p99Ns.toDouble(), limit.toDouble())
+            }
+            threshold.minOpsPerSecond?.let { limit ->
+                if (result.opsPerSecond < limit) violations += RegressionViolation(result.name, "ops_per_second", result.opsPerSecond, limit)
+            }
+            if (result.errors > threshold.maxErrors) {
+                violations += RegressionViolation(result.name, "errors", result.errors.toDouble(), threshold.maxErrors.toDouble())
+            }
+
+            val previous = baseline?.result(threshold.benchmark)
+            if (previous != null && previous.p50Ns > 0) {
+                val slowdownPercent = (result.p50Ns - previous.p50Ns) * 100.0 / previous.p50Ns
+                if (slowdownPercent > threshold.maxSlowdownPercent) {
+                    violations += RegressionViolation(result.name, "p50_slowdown_percent", slowdownPercent, threshold.maxSlowdownPercent)
+                }
+            }
+        }
+        return violations
+    }
+}
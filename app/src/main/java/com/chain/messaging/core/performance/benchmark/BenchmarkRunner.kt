@@ -0,0 +1,202 @@
+package com.chain.messaging.core.performance.benchmark
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.serialization.Serializable
+import kotlin.math.ceil
+
+/**
+ * Iteration settings for one benchmark, in the spirit of JMH's @Warmup/@Measurement
+ */
+data class BenchmarkConfig(
+    val warmupIterations: Int = 2,
+    val measurementIterations: Int = 5,
+    val operationsPerIteration: Int = 200
+)
+
+/**
+ * Sink for benchmark results so the work producing them cannot be optimized away
+ */
+class Blackhole {
+    @Volatile
+    private var sink = 0
+
+    fun consume(value: Any?) {
+        sink = sink xor System.identityHashCode(value)
+    }
+
+    fun consume(value: Int) {
+        sink = sink xor value
+    }
+}
+
+/**
+ * Body of a benchmark; called once per operation with a running index that is
+ * unique across warmup and measurement
+ */
+typealias BenchmarkOperation = suspend (index: Int, blackhole: Blackhole) -> Unit
+
+/**
+ * A named benchmark. [setup] runs once before warmup and [teardown] once after measurement.
+ */
+class BenchmarkDefinition(
+    val name: String,
+    val config: BenchmarkConfig = BenchmarkConfig(),
+    val setup: suspend () -> Unit = {},
+    val teardown: suspend () -> Unit = {},
+    val operation: BenchmarkOperation
+)
+
+/**
+ * Per-operation timing summary of one benchmark
+ */
+@Serializable
+data class BenchmarkMeasurement(
+    val name: String,
+    val operations: Int,
+    val meanNs: Double,
+    val p50Ns: Long,
+    val p90Ns: Long,
+    val p99Ns: Long,
+    val minNs: Long,
+    val maxNs: Long,
+    val opsPerSecond: Double,
+    val errors: Int = 0
+)
+
+/**
+ * Runs benchmarks with warmup, times every measured operation individually and
+ * reports percentiles instead of a single average.
+ */
+class BenchmarkRunner(
+    private val nanoTime: () -> Long = System::nanoTime
+) {
+
+    /**
+     * Run one benchmark sequentially
+     */
+    suspend fun run(definition: BenchmarkDefinition): BenchmarkMeasurement {
+        val config = definition.config
+        val blackhole = Blackhole()
+        definition.setup()
+        try {
+            var index = 0
+            repeat(config.warmupIterations * config.operationsPerIteration) {
+                definition.operation(index++, blackhole)
+            }
+
+            val samples = LongArray(config.measurementIterations * config.operationsPerIteration)
+            var errors = 0
+            val started = nanoTime()
+            for (i in samples.indices) {
+                val opStart = nanoTime()
+                try {
+                    definition.operation(index++, blackhole)
+                } catch (e: Exception) {
+                    errors++
+                }
+                samples[i] = nanoTime() - opStart
+            }
+            return summarize(definition.name, samples, nanoTime() - started, errors)
+        } finally {
+            definition.teardown()
+        }
+    }
+
+    /**
+     * Run one benchmark on [workers] concurrent coroutines, splitting the measured
+     * operations between them. Throughput is measured against wall-clock time.
+     */
+    suspend fun runConcurrent(definition: BenchmarkDefinition, workers: Int): BenchmarkMeasurement {
+        require(workers > 0) { "workers must be positive" }
+        val config = definition.config
+        val totalOperations = config.measurementIterations * config.operationsPerIteration
+        val perWorker = (totalOperations + workers - 1) / workers
+        val warmupOperations = config.warmupIterations * config.operationsPerIteration
+
+        definition.setup()
+        try {
+            val warmupHole = Blackhole()
+            repeat(warmupOperations) { definition.operation(it, warmupHole) }
+
+            val started = nanoTime()
+            val results = coroutineScope {
+                (0 until workers).map { worker ->
+                    async {
+                        val blackhole = Blackhole()
+                        val first = worker * perWorker
+                        val count = minOf(perWorker, totalOperations - first).coerceAtLeast(0)
+                        val samples = LongArray(count)
+                        var errors = 0
+                        for (i in 0 until count) {
+                            val opStart = nanoTime()
+                            try {
+                                definition.operation(warmupOperations + first + i, blackhole)
+                            } catch (e: Exception) {
+                                errors++
+                            }
+                            samples[i] = nanoTime() - opStart
+                        }
+                        samples to errors
+                    }
+                }.awaitAll()
+            }
+            val elapsed = nanoTime() - started
+
+            val merged = LongArray(results.sumOf { it.first.size })
+            var offset = 0
+            results.forEach { (samples, _) ->
+                samples.copyInto(merged, offset)
+                offset += samples.size
+            }
+            return summarize(definition.name, merged, elapsed, results.sumOf { it.second })
+        } finally {
+            definition.teardown()
+        }
+    }
+
+    /**
+     * Run a list of benchmarks sequentially and collect them into a report
+     */
+    suspend fun runSuite(
+        suite: String,
+        definitions: List<BenchmarkDefinition>,
+        environment: Map<String, String> = emptyMap()
+    ): BenchmarkReport {
+        val results = definitions.map { run(it) }
+        return BenchmarkReport(
+            suite = suite,
+            createdAt = System.currentTimeMillis(),
+            environment = environment,
+            results = results
+        )
+    }
+
+    companion object {
+        fun summarize(name: String, samples: LongArray, elapsedNs: Long, errors: Int = 0): BenchmarkMeasurement {
+            if (samples.isEmpty()) {
+                return BenchmarkMeasurement(name, 0, 0.0, 0, 0, 0, 0, 0, 0.0, errors)
+            }
+            val sorted = samples.sortedArray()
+            return BenchmarkMeasurement(
+                name = name,
+                operations = sorted.size,
+                meanNs = sorted.average(),
+                p50Ns = percentile(sorted, 0.50),
+                p90Ns = percentile(sorted, 0.90),
+                p99Ns = percentile(sorted, 0.99),
+                minNs = sorted.first(),
+                maxNs = sorted.last(),
+                opsPerSecond = if (elapsedNs > 0) sorted.size * 1_000_000_000.0 / elapsedNs else 0.0,
+                errors = errors
+            )
+        }
+
+        private fun percentile(sorted: LongArray, fraction: Double): Long {
+            // Nearest-rank percentile
+            val rank = (ceil(fraction * sorted.size).toInt() - 1).coerceIn(0, sorted.lastIndex)
+            return sorted[rank]
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.chain.messaging.core.performance.benchmark
+
+import android.content.Context
+import android.net.Uri
+import android.os.Build
+import androidx.core.app.NotificationCompat
+import androidx.core.app.NotificationManagerCompat
+import com.chain.messaging.R
+import com.chain.messaging.core.audio.VoiceChunkUploader
+import com.chain.messaging.core.audio.VoiceNoteManifest
+import com.chain.messaging.core.audio.VoiceNoteStream
+import com.chain.messaging.core.audio.WaveformExtractor
+import com.chain.messaging.core.cloud.CloudService
+import com.chain.messaging.core.cloud.EncryptedLink
+import com.chain.messaging.core.cloud.EncryptionResult
+import com.chain.messaging.core.cloud.FileEncryption
+import com.chain.messaging.core.notification.NotificationService
+import com.chain.messaging.core.performance.benchmark.MessagingBenchmarks.totalOperations
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.data.local.ChainDatabase
+import com.chain.messaging.data.local.entity.toDomain
+import com.chain.messaging.data.local.storage.MediaCompressor
+import com.chain.messaging.data.local.storage.MessageStorageService
+import com.chain.messaging.domain.model.NotificationSettings
+import com.google.gson.Gson
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeout
+import java.io.File
+import java.io.IOException
+import java.time.Instant
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * On-device benchmark suite for the messaging hot paths. Runs against the
+ * real SQLCipher database and libsignal natives, so it is started from
+ * PerformanceTester rather than from JVM unit tests.
+ */
+@Singleton
+class MessagingBenchmarkSuite @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val messageStorageService: MessageStorageService,
+    private val mediaCompressor: MediaCompressor,
+    private val waveformExtractor: WaveformExtractor,
+    private val fileEncryption: FileEncryption,
+    private val notificationService: NotificationService,
+    private val metricsRegistry: MetricsRegistry,
+    private val database: ChainDatabase
+) {
+
+    private val runner = BenchmarkRunner()
+
+    /**
+     * Run every messaging benchmark and return the machine-readable report
+     */
+    suspend fun runAll(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkReport = withContext(Dispatchers.Default) {
+        runner.runSuite(
+            suite = SUITE_NAME,
+            definitions = listOf(
+                MessagingBenchmarks.messageCachePut(config),
+                MessagingBenchmarks.messageCachePage(config),
+                MessagingBenchmarks.dhtFindClosest(config = config),
+                MessagingBenchmarks.signalEncrypt(config),
+                MessagingBenchmarks.signalDecrypt(config),
+                MessagingBenchmarks.groupFanOut(),
+                MessagingBenchmarks.storageInsert(messageStorageService, config),
+                MessagingBenchmarks.storagePageLoad(messageStorageService, config),
+                MessagingBenchmarks.waveformBuild(),
+                MessagingBenchmarks.waveformLoad(config),
+                MessagingBenchmarks.waveformLoadText(config),
+                MessagingBenchmarks.notificationBurst(),
+                MessagingBenchmarks.chatListLoad(database.chatDao(), messageStorageService)
+            ),
+            environment = deviceEnvironment()
+        )
+    }
+
+    /**
+     * Encrypt-then-store for [messageCount] messages spread over [concurrentUsers]
+     * concurrent senders: the local work every outgoing message does before it
+     * reaches the network.
+     */
+    suspend fun runMessagePipeline(messageCount: Int, concurrentUsers: Int): BenchmarkMeasurement = withContext(Dispatchers.Default) {
+        val config = BenchmarkConfig(
+            warmupIterations = 1,
+            measurementIterations = 1,
+            operationsPerIteration = messageCount.coerceAtLeast(1)
+        )
+        val messages = MessagingBenchmarks.syntheticMessages(config.totalOperations(), prefix = "pipeline")
+        val session = SignalBenchmarkSession()
+        val sessionLock = Mutex()
+
+        runner.runConcurrent(
+            BenchmarkDefinition(
+                name = MessagingBenchmarks.MESSAGE_PIPELINE,
+                config = config,
+                setup = { session.establish() },
+                teardown = { messageStorageService.deleteMessages(messages.map { it.id }) },
+                operation = { index, blackhole ->
+                    val message = messages[index]
+                    // Sessions are not thread-safe; the real send path encrypts per recipient session too
+                    val ciphertext = sessionLock.withLock { session.encrypt(message.content.toByteArray()) }
+                    blackhole.consume(ciphertext)
+                    messageStorageService.storeMessage(message).getOrThrow()
+                }
+            ),
+            workers = concurrentUsers.coerceAtLeast(1)
+        )
+    }
+
+    /**
+     * Transcode the video at [sourceUri] once and compare the output with the
+     * source. The remux path this replaced wrote the source samples unchanged,
+     * so the source size and a plain copy are its baseline.
+     */
+    suspend fun runVideoTranscode(sourceUri: Uri, outputDir: File): VideoTranscodeComparison = withContext(Dispatchers.IO) {
+        val sourceBytes = context.contentResolver.openAssetFileDescriptor(sourceUri, "r")?.use { it.length } ?: -1L
+        val outputFile = File(outputDir, "benchmark_transcode_${System.currentTimeMillis()}.mp4")
+        try {
+            val result = mediaCompressor.transcodeVideo(sourceUri, outputFile)
+            VideoTranscodeComparison(
+                sourceBytes = sourceBytes,
+                outputBytes = result.outputBytes,
+                durationMs = result.durationUs / 1_000,
+                elapsedMs = result.elapsedNanos / 1_000_000,
+                width = result.width,
+                height = result.height
+            )
+        } finally {
+            outputFile.delete()
+        }
+    }
+
+    /**
+     * Full waveform extraction of the voice message at [audioFile], decode
+     * included. Pass a 10-minute recording to measure the long-message case.
+     */
+    suspend fun runWaveformExtraction(audioFile: File): BenchmarkMeasurement = withContext(Dispatchers.IO) {
+        runner.run(
+            BenchmarkDefinition(
+                name = WAVEFORM_EXTRACT,
+                config = BenchmarkConfig(warmupIterations = 1, measurementIterations = 3, operationsPerIteration = 1),
+                operation = { _, blackhole -> blackhole.consume(waveformExtractor.extract(audioFile)) }
+            )
+        )
+    }
+
+    /**
+     * Release-to-sent latency of voice notes [durationsMinutes] long, sent
+     * whole after recording versus streamed in chunks while recording.
+     *
+     * Local work after release (copying, chunking, staging, encryption) runs
+     * for real. Transfer time is modelled at [uplinkBitsPerSecond], since a
+     * benchmark cannot record for 15 minutes; any uplink faster than the
+     * 128 kbps recording keeps up with the chunks staged during recording,
+     * so only the trailing chunk and the manifest remain at release.
+     */
+    suspend fun runVoiceReleaseToSent(
+        durationsMinutes: List<Int> = listOf(1, 5, 15),
+        uplinkBitsPerSecond: Long = DEFAULT_UPLINK_BPS
+    ): List<VoiceReleaseLatency> = withContext(Dispatchers.IO) {
+        val workDir = File(context.cacheDir, "benchmark_voice").apply { mkdirs() }
+        try {
+            durationsMinutes.map { minutes -> measureVoiceRelease(minutes, uplinkBitsPerSecond, workDir) }
+        } finally {
+            workDir.deleteRecursively()
+        }
+    }
+
+    private suspend fun measureVoiceRelease(minutes: Int, uplinkBitsPerSecond: Long, workDir: File): VoiceReleaseLatency {
+        val durationMs = minutes * 60_000L
+        val note = File(workDir, "note_$minutes.aac")
+        note.outputStream().buffered().use { output ->
+            MessagingBenchmarks.syntheticAdtsFrames(durationMs).forEach(output::write)
+        }
+
+        // Whole file: the processor's copy, then encryption and upload of everything
+        val wholeStart = System.nanoTime()
+        val copy = File(workDir, "copy_$minutes.aac")
+        note.copyTo(copy, overwrite = true)
+        val wholeEncrypted = File(workDir, "whole_$minutes.enc")
+        fileEncryption.encryptFile(copy, wholeEncrypted)
+        val wholeLocalMs = (System.nanoTime() - wholeStart) / 1e6
+
+        // Streamed: every chunk but the last is encrypted and uploaded before release
+        val uploader = EncryptingChunkUploader(File(workDir, "uploaded_$minutes"))
+        val stream = VoiceNoteStream(
+            noteId = "benchmark_$minutes",
+            stagingDir = File(workDir, "stream_$minutes"),
+            uploader = uploader
+        )
+        MessagingBenchmarks.syntheticAdtsFrames(durationMs).forEach(stream::onFrame)
+        while (stream.pendingUploads() > 0) delay(UPLOAD_POLL_MS)
+
+        val uploadedBeforeRelease = uploader.uploadedBytes
+        val streamStart = System.nanoTime()
+        val manifest = stream.finish()
+        val streamLocalMs = (System.nanoTime() - streamStart) / 1e6
+        val trailingBytes = uploader.uploadedBytes - uploadedBeforeRelease + manifest.toJson().length
+
+        return VoiceReleaseLatency(
+            durationMinutes = minutes,
+            noteBytes = note.length(),
+            trailingBytes = trailingBytes,
+            wholeFileMs = wholeLocalMs + transferMs(wholeEncrypted.length(), uplinkBitsPerSecond),
+            streamedMs = streamLocalMs + transferMs(trailingBytes, uplinkBitsPerSecond)
+        )
+    }
+
+    /**
+     * Deliver a burst of [messageCount] messages over [chatCount] chats to
+     * the notification path on the main thread, as the offline queue does
+     * after reconnecting, and compare with posting once per message.
+     *
+     * The per-message side builds and posts each message's notification as
+     * an update of one benchmark notification, so the shade is not flooded.
+     */
+    suspend fun runNotificationBurst(
+        messageCount: Int = DEFAULT_BURST_MESSAGES,
+        chatCount: Int = DEFAULT_BURST_CHATS
+    ): NotificationBurstComparison {
+        val messages = MessagingBenchmarks.syntheticMessages(messageCount, prefix = "notify", chatCount = chatCount)
+        val settings = NotificationSettings(soundEnabled = false, vibrationEnabled = false, ledEnabled = false)
+        val notifications = NotificationManagerCompat.from(context)
+
+        val perMessageNs = withContext(Dispatchers.Main) {
+            val start = System.nanoTime()
+            messages.forEach { message ->
+                val notification = NotificationCompat.Builder(context, BENCHMARK_CHANNEL_ID)
+                    .setSmallIcon(R.drawable.ic_message)
+                    .setContentTitle(message.senderId)
+                    .setContentText(message.content)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                    .build()
+                notifications.notify(BENCHMARK_NOTIFICATION_ID, notification)
+            }
+            System.nanoTime() - start
+        }
+        notifications.cancel(BENCHMARK_NOTIFICATION_ID)
+
+        val before = metricsRegistry.snapshot()
+        withContext(Dispatchers.Main) {
+            messages.forEach { message ->
+                notificationService.showMessageNotification(message, message.senderId, null, 0, settings)
+            }
+        }
+        val notified = metricsRegistry.counter(HotPathMetrics.NOTIFICATION_MESSAGES)
+        val target = before.counters[HotPathMetrics.NOTIFICATION_MESSAGES] ?: 0L
+        withTimeout(BURST_TIMEOUT_MS) {
+            while (notified.sum() - target < messageCount) delay(BURST_POLL_MS)
+        }
+        val delta = metricsRegistry.snapshot() - before
+        notificationService.clearAllNotifications()
+
+        return NotificationBurstComparison(
+            messages = messageCount,
+            chats = chatCount,
+            perMessagePosts = messageCount,
+            batchedPosts = delta.counters[HotPathMetrics.NOTIFICATION_POSTS] ?: 0L,
+            perMessageMainThreadMs = perMessageNs / 1_000_000.0,
+            batchedMainThreadMs = (delta.histograms[HotPathMetrics.NOTIFICATION_MAIN_THREAD]?.sumMicros ?: 0L) / 1_000.0,
+            batchedRenderMs = (delta.histograms[HotPathMetrics.NOTIFICATION_RENDER]?.sumMicros ?: 0L) / 1_000.0
+        )
+    }
+
+    /**
+     * Load a chat list of [chatCount] chats the old way, every chat row with
+     * its participants and admins JSON decoded, and from chat_summaries with
+     * the participants join table. Each path is loaded once with SQLite's
+     * page cache released first, then [warmRuns] more times.
+     */
+    suspend fun runChatListColdLoad(
+        chatCount: Int = MessagingBenchmarks.CHAT_LIST_CHATS,
+        warmRuns: Int = DEFAULT_WARM_RUNS
+    ): ChatListColdLoadComparison = withContext(Dispatchers.IO) {
+        val chatDao = database.chatDao()
+        val chats = MessagingBenchmarks.syntheticChats(chatCount, prefix = "cold_list")
+        val messages = MessagingBenchmarks.lastMessagesFor(chats)
+        MessagingBenchmarks.seedChats(chatDao, messageStorageService, chats, messages)
+        try {
+            val gson = Gson()
+            // What ChatRepositoryImpl.observeChats did on every emission
+            val legacyLoad: suspend () -> Int = {
+                chatDao.getAllChats().map { entity ->
+                    val participants = gson.fromJson(entity.participants, Array<String>::class.java)?.toList() ?: emptyList()
+                    val admins = gson.fromJson(entity.admins, Array<String>::class.java)?.toList() ?: emptyList()
+                    entity.toDomain(participants, admins)
+                }.size
+            }
+            val summaryLoad: suspend () -> Int = { chatDao.getChatList().map { it.toDomain() }.size }
+
+            val legacyColdMs = coldLoadMs(legacyLoad)
+            val summaryColdMs = coldLoadMs(summaryLoad)
+            ChatListColdLoadComparison(
+                chats = chatCount,
+                members = chats.sumOf { (it.participants + it.admins).distinct().size },
+                legacyColdMs = legacyColdMs,
+                summaryColdMs = summaryColdMs,
+                legacyWarmMedianMs = warmLoadMedianMs(warmRuns, legacyLoad),
+                summaryWarmMedianMs = warmLoadMedianMs(warmRuns, summaryLoad)
+            )
+        } finally {
+            MessagingBenchmarks.clearChats(chatDao, messageStorageService, chats, messages)
+        }
+    }
+
+    private suspend fun coldLoadMs(load: suspend () -> Int): Double {
+        // Room shares this connection, so its page cache is the one the load reads through
+        database.openHelper.writableDatabase.query("PRAGMA shrink_memory").close()
+        val start = System.nanoTime()
+        load()
+        return (System.nanoTime() - start) / 1_000_000.0
+    }
+
+    private suspend fun warmLoadMedianMs(runs: Int, load: suspend () -> Int): Double {
+        val samples = List(runs.coerceAtLeast(1)) {
+            val start = System.nanoTime()
+            load()
+            (System.nanoTime() - start) / 1_000_000.0
+        }
+        return samples.sorted()[samples.size / 2]
+    }
+
+    private fun transferMs(bytes: Long, bitsPerSecond: Long): Double = bytes * 8 * 1_000.0 / bitsPerSecond
+
+    /**
+     * Stands in for the cloud upload: encrypts each chunk as CloudStorageManager
+     * does and counts the ciphertext bytes that would go over the network
+     */
+    private inner class EncryptingChunkUploader(private val directory: File) : VoiceChunkUploader {
+
+        @Volatile
+        var uploadedBytes = 0L
+            private set
+
+        override suspend fun upload(file: File): EncryptedLink {
+            directory.mkdirs()
+            val encrypted = File(directory, "${file.name}.enc")
+            val result = fileEncryption.encryptFile(file, encrypted)
+            if (result !is EncryptionResult.Success) throw IOException("Chunk encryption failed")
+            uploadedBytes += encrypted.length()
+            return EncryptedLink(
+                url = encrypted.toURI().toString(),
+                encryptionKey = result.encryptionKey,
+                service = CloudService.GOOGLE_DRIVE,
+                expiresAt = Instant.now().plusSeconds(3_600),
+                fileName = file.name,
+                fileSize = file.length(),
+                mimeType = VoiceNoteManifest.MIME_TYPE,
+                checksum = result.checksum
+            )
+        }
+
+        override suspend fun delete(link: EncryptedLink) = Unit
+    }
+
+    private fun deviceEnvironment(): Map<String, String> = mapOf(
+        "device" to "${Build.MANUFACTURER} ${Build.MODEL}",
+        "api_level" to Build.VERSION.SDK_INT.toString(),
+        "cpu_cores" to Runtime.getRuntime().availableProcessors().toString()
+    )
+
+    companion object {
+        const val SUITE_NAME = "messaging"
+        const val WAVEFORM_EXTRACT = "voice_waveform_extract"
+
+        // A modest mobile uplink
+        private const val DEFAULT_UPLINK_BPS = 2_000_000L
+        private const val UPLOAD_POLL_MS = 10L
+
+        // A reconnect after a long offline stretch
+        private const val DEFAULT_BURST_MESSAGES = 500
+        private const val DEFAULT_BURST_CHATS = 20
+        private const val BURST_TIMEOUT_MS = 10_000L
+        private const val BURST_POLL_MS = 10L
+        private const val BENCHMARK_CHANNEL_ID = "system"
+        private const val BENCHMARK_NOTIFICATION_ID = 9_999
+        private const val DEFAULT_WARM_RUNS = 5
+
+        /**
+         * Default regression limits for on-device runs; generous enough for low-end devices
+         */
+        val DEFAULT_THRESHOLDS = listOf(
+            RegressionThreshold(MessagingBenchmarks.CACHE_PUT, maxP99Ns = 2_000_000),
+            RegressionThreshold(MessagingBenchmarks.CACHE_PAGE, maxP99Ns = 2_000_000),
+            RegressionThreshold(MessagingBenchmarks.DHT_FIND_CLOSEST, maxP50Ns = 20_000_000),
+            RegressionThreshold(MessagingBenchmarks.SIGNAL_ENCRYPT, maxP50Ns = 5_000_000),
+            RegressionThreshold(MessagingBenchmarks.SIGNAL_DECRYPT, maxP50Ns = 5_000_000),
+            // One message to a 200-member group, well under the per-message encrypt limit per member
+            RegressionThreshold(MessagingBenchmarks.GROUP_FAN_OUT, maxP50Ns = 500_000_000),
+            RegressionThreshold(MessagingBenchmarks.STORAGE_INSERT, maxP50Ns = 20_000_000),
+            RegressionThreshold(MessagingBenchmarks.STORAGE_PAGE_LOAD, maxP50Ns = 50_000_000),
+            RegressionThreshold(MessagingBenchmarks.MESSAGE_PIPELINE, maxP50Ns = 30_000_000, minOpsPerSecond = 50.0),
+            // Bucketing 10 minutes of PCM must stay well below real time, even on low-end devices
+            RegressionThreshold(MessagingBenchmarks.WAVEFORM_BUILD, maxP50Ns = 1_000_000_000),
+            RegressionThreshold(MessagingBenchmarks.WAVEFORM_LOAD, maxP50Ns = 2_000_000),
+            // A 500-message burst must fold well inside one aggregation window
+            RegressionThreshold(MessagingBenchmarks.NOTIFICATION_BURST, maxP50Ns = 20_000_000),
+            // The whole 5,000-chat list must load in well under a second
+            RegressionThreshold(MessagingBenchmarks.CHAT_LIST_LOAD, maxP50Ns = 300_000_000)
+        )
+    }
+}
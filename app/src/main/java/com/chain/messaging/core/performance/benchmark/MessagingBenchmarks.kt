@@ -0,0 +1,576 @@
+package com.chain.messaging.core.performance.benchmark
+
+import com.chain.messaging.core.audio.AdtsFrameReader
+import com.chain.messaging.core.audio.Waveform
+import com.chain.messaging.core.audio.WaveformBuilder
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.group.GroupMessageEnvelopes
+import com.chain.messaging.core.notification.MessageNotificationAggregator
+import com.chain.messaging.core.notification.NotificationLine
+import com.chain.messaging.core.p2p.DHTPeerDiscovery
+import com.chain.messaging.core.p2p.Peer
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.memory.MemoryBudgetPolicy
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.data.local.dao.ChatDao
+import com.chain.messaging.data.local.entity.chatParticipantRows
+import com.chain.messaging.data.local.entity.toEntity
+import com.chain.messaging.data.local.storage.MessageCache
+import com.chain.messaging.data.local.storage.MessageStorageService
+import com.chain.messaging.domain.model.Chat
+import com.chain.messaging.domain.model.ChatType
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.model.MessageStatus
+import com.chain.messaging.domain.model.MessageType
+import com.google.gson.Gson
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import org.signal.libsignal.protocol.ecc.Curve
+import org.signal.libsignal.protocol.state.SignalProtocolStore
+import org.signal.libsignal.protocol.state.PreKeyBundle
+import org.signal.libsignal.protocol.state.PreKeyRecord
+import org.signal.libsignal.protocol.state.SignedPreKeyRecord
+import org.signal.libsignal.protocol.state.impl.InMemorySignalProtocolStore
+import org.signal.libsignal.protocol.util.KeyHelper
+import java.io.File
+import java.util.Base64
+import java.util.Date
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.sin
+import kotlin.random.Random
+
+/**
+ * Reproducible workloads for the messaging hot paths. Every workload is seeded
+ * so two runs on the same device measure the same operations.
+ */
+object MessagingBenchmarks {
+
+    const val CACHE_PUT = "message_cache_put"
+    const val CACHE_PAGE = "message_cache_page"
+    const val DHT_FIND_CLOSEST = "dht_find_closest_peers"
+    const val SIGNAL_ENCRYPT = "signal_encrypt"
+    const val SIGNAL_DECRYPT = "signal_decrypt"
+    const val STORAGE_INSERT = "message_storage_insert"
+    const val STORAGE_PAGE_LOAD = "message_storage_page_load"
+    const val GROUP_FAN_OUT = "group_fan_out"
+    const val MESSAGE_PIPELINE = "message_send_pipeline"
+    const val WAVEFORM_BUILD = "voice_waveform_build_10min"
+    const val WAVEFORM_LOAD = "voice_waveform_load_10min"
+    const val WAVEFORM_LOAD_TEXT = "voice_waveform_load_10min_text"
+    const val NOTIFICATION_BURST = "notification_burst_aggregate"
+    const val CHAT_LIST_LOAD = "chat_list_load_5000"
+    const val CHAT_LIST_CHATS = 5_000
+    const val GROUP_FAN_OUT_MEMBERS = 200
+
+    private const val SEED = 42
+    private const val CHAT_COUNT = 20
+    private const val PAGE_SIZE = 50
+    private const val TEN_MINUTES_MS = 10 * 60 * 1000L
+    private const val VOICE_SAMPLE_RATE = 44_100
+    private const val VOICE_BITRATE = 128_000
+    private const val NOTIFICATION_BURST_MESSAGES = 500
+    private const val MAX_GROUP_SIZE = 50
+    private const val DELETE_CHUNK = 500
+
+    // A typical AAC decoder output buffer: 1024 frames
+    private const val PCM_BUFFER_SAMPLES = 1024
+
+    // One operation covers a whole recording, so a handful of them is enough
+    private val RECORDING_CONFIG = BenchmarkConfig(warmupIterations = 1, measurementIterations = 5, operationsPerIteration = 1)
+
+    // One operation folds a whole burst
+    private val BURST_CONFIG = BenchmarkConfig(warmupIterations = 2, measurementIterations = 5, operationsPerIteration = 20)
+
+    // One operation encrypts for every member of the group
+    private val FAN_OUT_CONFIG = BenchmarkConfig(warmupIterations = 1, measurementIterations = 5, operationsPerIteration = 5)
+
+    // One operation loads the whole chat list
+    private val CHAT_LIST_CONFIG = BenchmarkConfig(warmupIterations = 1, measurementIterations = 5, operationsPerIteration = 5)
+
+    /**
+     * MessageCache inserts spread over [CHAT_COUNT] chats, past the cache's eviction limit
+     */
+    fun messageCachePut(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val cache = standaloneMessageCache()
+        val messages = syntheticMessages(config.totalOperations(), prefix = "cache")
+        return BenchmarkDefinition(
+            name = CACHE_PUT,
+            config = config,
+            teardown = { cache.clearCache() },
+            operation = { index, _ -> cache.putMessage(messages[index % messages.size]) }
+        )
+    }
+
+    /**
+     * MessageCache page reads from a warm cache
+     */
+    fun messageCachePage(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val cache = standaloneMessageCache()
+        return BenchmarkDefinition(
+            name = CACHE_PAGE,
+            config = config,
+            setup = {
+                syntheticMessages(CHAT_COUNT * PAGE_SIZE, prefix = "page")
+                    .groupBy { it.chatId }
+                    .forEach { (chatId, messages) -> cache.preloadChatMessages(chatId, messages) }
+            },
+            teardown = { cache.clearCache() },
+            operation = { index, blackhole ->
+                blackhole.consume(cache.getMessages(chatId(index), PAGE_SIZE, 0))
+            }
+        )
+    }
+
+    /**
+     * Routing-table lookups on a DHT populated with [peerCount] peers.
+     * Measures the local closest-peer selection that every iterative lookup
+     * step runs; the FIND_NODE round trips themselves are network-bound.
+     */
+    fun dhtFindClosest(peerCount: Int = 2_000, config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val discovery = DHTPeerDiscovery()
+        val random = Random(SEED)
+        val targets = List(256) { nodeId(random) }
+        return BenchmarkDefinition(
+            name = DHT_FIND_CLOSEST,
+            config = config,
+            setup = {
+                repeat(peerCount) { i ->
+                    discovery.addPeer(
+                        Peer(
+                            id = nodeId(random),
+                            address = "10.0.${i / 256}.${i % 256}:8080",
+                            publicKey = "bench_key_$i",
+                            lastSeen = Date(),
+                            reliability = 0.5 + random.nextDouble() * 0.5
+                        )
+                    )
+                }
+            },
+            operation = { index, blackhole ->
+                blackhole.consume(discovery.findClosestPeers(targets[index % targets.size], 20))
+            }
+        )
+    }
+
+    /**
+     * Double Ratchet encryption of a typical text message through
+     * SignalEncryptionService, between two parties with in-memory stores
+     */
+    fun signalEncrypt(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val session = SignalBenchmarkSession()
+        val payload = textPayload(160)
+        return BenchmarkDefinition(
+            name = SIGNAL_ENCRYPT,
+            config = config,
+            setup = { session.establish() },
+            operation = { _, blackhole -> blackhole.consume(session.encrypt(payload)) }
+        )
+    }
+
+    /**
+     * Double Ratchet decryption of messages encrypted ahead of time, in order
+     */
+    fun signalDecrypt(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val session = SignalBenchmarkSession()
+        val payload = textPayload(160)
+        val ciphertexts = ArrayList<EncryptedMessage>()
+        return BenchmarkDefinition(
+            name = SIGNAL_DECRYPT,
+            config = config,
+            setup = {
+                session.establish()
+                repeat(config.totalOperations()) { ciphertexts += session.encrypt(payload) }
+            },
+            teardown = { ciphertexts.clear() },
+            operation = { index, blackhole -> blackhole.consume(session.decrypt(ciphertexts[index])) }
+        )
+    }
+
+    /**
+     * Fan-out of one text message to a group of [memberCount] members through
+     * GroupMessageEnvelopes, the per-recipient work of
+     * GroupMessageDistributorImpl: an encryption by SignalEncryptionService
+     * and the blockchain envelope for each member. Sessions live in memory,
+     * as for [signalEncrypt]; the blockchain submission itself is
+     * network-bound and not part of the measurement.
+     */
+    fun groupFanOut(memberCount: Int = GROUP_FAN_OUT_MEMBERS, config: BenchmarkConfig = FAN_OUT_CONFIG): BenchmarkDefinition {
+        val sessions = GroupBenchmarkSessions(memberCount)
+        val message = syntheticMessages(1, prefix = "fan_out", chatCount = 1).first()
+        return BenchmarkDefinition(
+            name = GROUP_FAN_OUT,
+            config = config,
+            setup = { sessions.establish() },
+            operation = { _, blackhole ->
+                repeat(memberCount) { member ->
+                    blackhole.consume(sessions.envelopes.envelopeFor(sessions.memberId(member), message))
+                }
+            }
+        )
+    }
+
+    /**
+     * Encrypted-at-rest inserts through MessageStorageService into a dedicated benchmark chat.
+     * Inserted rows are deleted again in teardown.
+     */
+    fun storageInsert(storage: MessageStorageService, config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val messages = syntheticMessages(config.totalOperations(), prefix = "storage_insert", chatCount = 1)
+        return BenchmarkDefinition(
+            name = STORAGE_INSERT,
+            config = config,
+            teardown = { storage.deleteMessages(messages.map { it.id }) },
+            operation = { index, _ -> storage.storeMessage(messages[index]).getOrThrow() }
+        )
+    }
+
+    /**
+     * Page loads through MessageStorageService, which decrypts each row
+     */
+    fun storagePageLoad(storage: MessageStorageService, config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val messages = syntheticMessages(PAGE_SIZE * 10, prefix = "storage_page", chatCount = 1)
+        val chatId = messages.first().chatId
+        return BenchmarkDefinition(
+            name = STORAGE_PAGE_LOAD,
+            config = config,
+            setup = { storage.storeMessages(messages).getOrThrow() },
+            teardown = { storage.deleteMessages(messages.map { it.id }) },
+            operation = { index, blackhole ->
+                blackhole.consume(storage.getMessages(chatId, PAGE_SIZE, (index % 10) * PAGE_SIZE).getOrThrow())
+            }
+        )
+    }
+
+    /**
+     * Single-pass peak/RMS bucketing of [durationMs] of 44.1 kHz mono PCM, as
+     * WaveformExtractor runs it on decoder output. The same second of
+     * synthetic speech-like PCM is fed repeatedly, one decoder-sized buffer
+     * at a time.
+     */
+    fun waveformBuild(durationMs: Long = TEN_MINUTES_MS, config: BenchmarkConfig = RECORDING_CONFIG): BenchmarkDefinition {
+        val second = syntheticPcm(VOICE_SAMPLE_RATE)
+        val seconds = (durationMs / 1000).toInt()
+        return BenchmarkDefinition(
+            name = WAVEFORM_BUILD,
+            config = config,
+            operation = { _, blackhole ->
+                val builder = WaveformBuilder(expectedDurationMs = durationMs)
+                builder.setFormat(VOICE_SAMPLE_RATE, 1)
+                repeat(seconds) {
+                    var offset = 0
+                    while (offset < second.size) {
+                        val length = minOf(PCM_BUFFER_SAMPLES, second.size - offset)
+                        builder.addPcm16(second, offset, length)
+                        offset += length
+                    }
+                }
+                blackhole.consume(builder.build())
+            }
+        )
+    }
+
+    /**
+     * Loading the binary sidecar of a 10-minute voice message
+     */
+    fun waveformLoad(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val file = File.createTempFile("bench_waveform", ".waveform")
+        return BenchmarkDefinition(
+            name = WAVEFORM_LOAD,
+            config = config,
+            setup = { tenMinuteWaveform().writeTo(file) },
+            teardown = { file.delete() },
+            operation = { _, blackhole -> blackhole.consume(Waveform.read(file)) }
+        )
+    }
+
+    /**
+     * Baseline for [waveformLoad]: the comma-separated text sidecar the binary
+     * format replaced, holding the same levels
+     */
+    fun waveformLoadText(config: BenchmarkConfig = BenchmarkConfig()): BenchmarkDefinition {
+        val file = File.createTempFile("bench_waveform", ".txt")
+        return BenchmarkDefinition(
+            name = WAVEFORM_LOAD_TEXT,
+            config = config,
+            setup = {
+                val waveform = tenMinuteWaveform()
+                file.writeText((0 until waveform.bucketCount).joinToString(",") { waveform.peak(it).toString() })
+            },
+            teardown = { file.delete() },
+            operation = { _, blackhole ->
+                blackhole.consume(file.readText().split(",").mapNotNull { it.toFloatOrNull() })
+            }
+        )
+    }
+
+    /**
+     * Fold a reconnect burst of [messageCount] messages over [chatCount] chats
+     * into per-chat notification content, as NotificationService does before
+     * posting. Each operation is one whole burst.
+     */
+    fun notificationBurst(
+        messageCount: Int = NOTIFICATION_BURST_MESSAGES,
+        chatCount: Int = CHAT_COUNT,
+        config: BenchmarkConfig = BURST_CONFIG
+    ): BenchmarkDefinition {
+        val lines = syntheticMessages(messageCount, prefix = "notify", chatCount = chatCount).map { message ->
+            message.chatId to NotificationLine(
+                messageId = message.id,
+                senderId = message.senderId,
+                senderName = message.senderId,
+                text = message.content,
+                timestamp = message.timestamp.time
+            )
+        }
+        return BenchmarkDefinition(
+            name = NOTIFICATION_BURST,
+            config = config,
+            operation = { _, blackhole ->
+                val aggregator = MessageNotificationAggregator()
+                lines.forEach { (chatId, line) ->
+                    aggregator.add(chatId, null, line, unreadCount = 0, channelId = "messages", defaults = 0, canReply = true)
+                }
+                blackhole.consume(aggregator.drain())
+            }
+        )
+    }
+
+    /**
+     * Load the whole chat list of [chatCount] chats, each with a last message,
+     * through the chat_summaries query the chat list screen observes
+     */
+    fun chatListLoad(
+        chatDao: ChatDao,
+        storage: MessageStorageService,
+        chatCount: Int = CHAT_LIST_CHATS,
+        config: BenchmarkConfig = CHAT_LIST_CONFIG
+    ): BenchmarkDefinition {
+        val chats = syntheticChats(chatCount, prefix = "chat_list")
+        val messages = lastMessagesFor(chats)
+        return BenchmarkDefinition(
+            name = CHAT_LIST_LOAD,
+            config = config,
+            setup = { seedChats(chatDao, storage, chats, messages) },
+            teardown = { clearChats(chatDao, storage, chats, messages) },
+            operation = { _, blackhole -> blackhole.consume(chatDao.getChatList()) }
+        )
+    }
+
+    /**
+     * Deterministic chats, about one in five a group of up to [MAX_GROUP_SIZE]
+     * members, the rest direct chats
+     */
+    fun syntheticChats(count: Int, prefix: String): List<Chat> {
+        val random = Random(SEED)
+        val baseTime = 1_700_000_000_000L
+        return List(count) { i ->
+            val isGroup = random.nextInt(5) == 0
+            val members = if (isGroup) 3 + random.nextInt(MAX_GROUP_SIZE - 2) else 1
+            val participants = List(members) { "bench_user_${random.nextInt(10_000)}" }.distinct()
+            Chat(
+                id = "bench_${prefix}_chat_$i",
+                type = if (isGroup) ChatType.GROUP else ChatType.DIRECT,
+                name = if (isGroup) "Group $i" else "",
+                participants = participants,
+                admins = if (isGroup) participants.take(2) else emptyList(),
+                createdAt = baseTime + i * 1000L,
+                updatedAt = baseTime + i * 1000L,
+                lastMessageAt = baseTime + i * 1000L
+            )
+        }
+    }
+
+    /**
+     * One incoming message per chat, newer than the chat itself
+     */
+    fun lastMessagesFor(chats: List<Chat>): List<Message> {
+        val random = Random(SEED)
+        return chats.mapIndexed { i, chat ->
+            Message(
+                id = "${chat.id}_last",
+                chatId = chat.id,
+                senderId = chat.participants.first(),
+                content = textPayload(40 + random.nextInt(200)).decodeToString(),
+                type = MessageType.TEXT,
+                timestamp = Date(chat.updatedAt + 500L + i),
+                status = if (i % 3 == 0) MessageStatus.DELIVERED else MessageStatus.READ,
+                // Stored as the repository stores it, so the snippet is readable text
+                isEncrypted = false
+            )
+        }
+    }
+
+    /**
+     * Write [chats] with their members and legacy JSON columns as
+     * ChatRepositoryImpl does, then their last messages
+     */
+    suspend fun seedChats(chatDao: ChatDao, storage: MessageStorageService, chats: List<Chat>, messages: List<Message>) {
+        val gson = Gson()
+        chatDao.insertChats(chats.map { it.toEntity(gson.toJson(it.participants), gson.toJson(it.admins)) })
+        chatDao.insertParticipants(chats.flatMap { chatParticipantRows(it.id, it.participants, it.admins) })
+        storage.storeMessages(messages).getOrThrow()
+    }
+
+    suspend fun clearChats(chatDao: ChatDao, storage: MessageStorageService, chats: List<Chat>, messages: List<Message>) {
+        // Stay under SQLite's bound-parameter limit
+        messages.map { it.id }.chunked(DELETE_CHUNK).forEach { storage.deleteMessages(it) }
+        chats.map { it.id }.chunked(DELETE_CHUNK).forEach { chatDao.deleteChatsByIds(it) }
+    }
+
+    /**
+     * ADTS frames of a [durationMs] voice note at the recorder's 44.1 kHz,
+     * 128 kbps settings, with seeded noise as payload
+     */
+    fun syntheticAdtsFrames(durationMs: Long): Sequence<ByteArray> = sequence {
+        val random = Random(SEED)
+        val frameCount = durationMs * VOICE_SAMPLE_RATE / (AdtsFrameReader.SAMPLES_PER_FRAME * 1000L)
+        val payloadBytes = VOICE_BITRATE / 8 * AdtsFrameReader.SAMPLES_PER_FRAME / VOICE_SAMPLE_RATE - AdtsFrameReader.HEADER_BYTES
+        val header = AdtsFrameReader.header(payloadBytes, VOICE_SAMPLE_RATE, channelCount = 1)
+        repeat(frameCount.toInt()) {
+            yield(header + random.nextBytes(payloadBytes))
+        }
+    }
+
+    /**
+     * Deterministic messages spread round-robin over [chatCount] chats
+     */
+    fun syntheticMessages(count: Int, prefix: String, chatCount: Int = CHAT_COUNT): List<Message> {
+        val random = Random(SEED)
+        val baseTime = 1_700_000_000_000L
+        return List(count) { i ->
+            Message(
+                id = "bench_${prefix}_$i",
+                chatId = "bench_${prefix}_chat_${i % chatCount}",
+                senderId = "bench_user_${random.nextInt(8)}",
+                content = textPayload(40 + random.nextInt(200)).decodeToString(),
+                type = MessageType.TEXT,
+                timestamp = Date(baseTime + i * 1000L),
+                status = MessageStatus.SENT
+            )
+        }
+    }
+
+    internal fun BenchmarkConfig.totalOperations(): Int =
+        (warmupIterations + measurementIterations) * operationsPerIteration
+
+    // A typical mid-range heap, so byte-budget eviction is part of the measurement
+    private fun standaloneMessageCache(): MessageCache = MessageCache(
+        MemoryBudgetManager(MemoryBudgetPolicy.forDevice(256, isLowRamDevice = false), MetricsRegistry())
+    )
+
+    /**
+     * Noise under a slow envelope, roughly the level shape of speech
+     */
+    private fun syntheticPcm(samples: Int): ShortArray {
+        val random = Random(SEED)
+        return ShortArray(samples) { i ->
+            val envelope = 0.2 + 0.8 * abs(sin(i * PI / VOICE_SAMPLE_RATE * 3))
+            (random.nextInt(-Short.MAX_VALUE.toInt(), Short.MAX_VALUE.toInt()) * envelope).toInt().toShort()
+        }
+    }
+
+    private fun tenMinuteWaveform(): Waveform {
+        val random = Random(SEED)
+        val builder = WaveformBuilder(expectedDurationMs = TEN_MINUTES_MS)
+        repeat((TEN_MINUTES_MS / Waveform.DEFAULT_BUCKET_MS).toInt()) {
+            val peak = random.nextFloat()
+            builder.addLevel(peak, peak * 0.7f)
+        }
+        return builder.build()
+    }
+
+    private fun chatId(index: Int): String = "bench_page_chat_${index % CHAT_COUNT}"
+
+    private fun nodeId(random: Random): String = Base64.getEncoder().encodeToString(random.nextBytes(20))
+
+    private fun textPayload(length: Int): ByteArray {
+        val alphabet = "abcdefghijklmnopqrstuvwxyz "
+        return ByteArray(length) { alphabet[it * 7 % alphabet.length].code.toByte() }
+    }
+}
+
+/**
+ * Two parties with an established Signal session, each behind its own
+ * SignalEncryptionService over an in-memory store, so the benchmark runs the
+ * production encrypt and decrypt paths without touching the user's key store
+ */
+internal class SignalBenchmarkSession {
+
+    private val aliceAddress = SignalProtocolAddress("bench_alice", 1)
+    private val bobAddress = SignalProtocolAddress("bench_bob", 1)
+    private val bobStore = newBenchmarkStore()
+    private val alice = benchmarkEncryptionService(newBenchmarkStore())
+    private val bob = benchmarkEncryptionService(bobStore)
+
+    suspend fun establish() {
+        alice.establishSession(bobAddress, preKeyBundle(bobStore, bobAddress)).getOrThrow()
+
+        // Complete the handshake so measured messages are plain ratchet messages
+        bob.decryptMessage(aliceAddress, encrypt("hello".toByteArray())).getOrThrow()
+        alice.decryptMessage(bobAddress, bob.encryptMessage(aliceAddress, "hello".toByteArray()).getOrThrow()).getOrThrow()
+    }
+
+    suspend fun encrypt(payload: ByteArray): EncryptedMessage = alice.encryptMessage(bobAddress, payload).getOrThrow()
+
+    suspend fun decrypt(message: EncryptedMessage): ByteArray = bob.decryptMessage(aliceAddress, message).getOrThrow()
+}
+
+/**
+ * One sender with an established session to each of [memberCount] group
+ * members, with stores in memory like [SignalBenchmarkSession]. [envelopes]
+ * encrypts through the sender's SignalEncryptionService.
+ */
+internal class GroupBenchmarkSessions(private val memberCount: Int) {
+
+    private val senderAddress = SignalProtocolAddress("bench_sender", 1)
+    private val sender = benchmarkEncryptionService(newBenchmarkStore())
+
+    val envelopes = GroupMessageEnvelopes(sender)
+
+    fun memberId(member: Int): String = "bench_member_$member"
+
+    suspend fun establish() {
+        repeat(memberCount) { member ->
+            val memberAddress = SignalProtocolAddress(memberId(member), 1)
+            val memberStore = newBenchmarkStore()
+            val memberService = benchmarkEncryptionService(memberStore)
+            sender.establishSession(memberAddress, preKeyBundle(memberStore, memberAddress)).getOrThrow()
+
+            // Complete the handshake, as for a group whose members have all replied before
+            val hello = sender.encryptMessage(memberAddress, "hello".toByteArray()).getOrThrow()
+            memberService.decryptMessage(senderAddress, hello).getOrThrow()
+            val reply = memberService.encryptMessage(senderAddress, "hello".toByteArray()).getOrThrow()
+            sender.decryptMessage(memberAddress, reply).getOrThrow()
+        }
+    }
+}
+
+// Own registry, so benchmark runs do not show up in the app's hot-path metrics
+private fun benchmarkEncryptionService(store: SignalProtocolStore) = SignalEncryptionService(store, MetricsRegistry())
+
+private fun newBenchmarkStore() =
+    InMemorySignalProtocolStore(KeyHelper.generateIdentityKeyPair(), KeyHelper.generateRegistrationId(false))
+
+/**
+ * Store one-time and signed pre-keys for [address] in [store] and return the
+ * bundle a peer needs to start a session with it
+ */
+private fun preKeyBundle(store: SignalProtocolStore, address: SignalProtocolAddress): PreKeyBundle {
+    val preKey = PreKeyRecord(1, Curve.generateKeyPair())
+    val signedKeyPair = Curve.generateKeyPair()
+    val signature = Curve.calculateSignature(store.identityKeyPair.privateKey, signedKeyPair.publicKey.serialize())
+    val signedPreKey = SignedPreKeyRecord(1, System.currentTimeMillis(), signedKeyPair, signature)
+    store.storePreKey(preKey.id, preKey)
+    store.storeSignedPreKey(signedPreKey.id, signedPreKey)
+
+    return PreKeyBundle(
+        store.localRegistrationId,
+        address.deviceId,
+        preKey.id,
+        preKey.keyPair.publicKey,
+        signedPreKey.id,
+        signedKeyPair.publicKey,
+        signature,
+        store.identityKeyPair.publicKey
+    )
+}
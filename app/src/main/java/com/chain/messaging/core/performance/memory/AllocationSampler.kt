@@ -0,0 +1,77 @@
+package com.chain.messaging.core.performance.memory
+
+import android.os.Debug
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Allocation rates over one sampling interval, in bytes per second
+ */
+data class AllocationRates(
+    val processBytesPerSecond: Long,
+    val bySubsystem: Map<String, Long>
+)
+
+/**
+ * Sampled allocation accounting per subsystem.
+ *
+ * Hot paths report the buffers they allocate with [record]; one call in
+ * [sampleRate] is kept and scaled up, so the common path is a random draw.
+ * The process-wide rate comes from ART's own allocation counter, which costs
+ * nothing to keep enabled.
+ */
+class AllocationSampler(
+    private val sampleRate: Int = DEFAULT_SAMPLE_RATE,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000L },
+    private val processAllocatedBytes: () -> Long = ::artBytesAllocated
+) {
+    private val sampledBytes = ConcurrentHashMap<String, LongAdder>()
+    private var lastSampleAt = clock()
+    private var lastSubsystemTotals = emptyMap<String, Long>()
+    private var lastProcessBytes = processAllocatedBytes()
+
+    fun record(subsystem: String, bytes: Long) {
+        if (bytes <= 0L) return
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return
+        sampledBytes.getOrPut(subsystem) { LongAdder() }.add(bytes * sampleRate)
+    }
+
+    /**
+     * Rates since the previous call
+     */
+    @Synchronized
+    fun sample(): AllocationRates {
+        val now = clock()
+        val elapsedMs = (now - lastSampleAt).coerceAtLeast(1L)
+        val totals = sampledBytes.mapValues { it.value.sum() }
+        val processBytes = processAllocatedBytes()
+
+        val rates = AllocationRates(
+            processBytesPerSecond = ((processBytes - lastProcessBytes).coerceAtLeast(0L) * 1000L) / elapsedMs,
+            bySubsystem = totals.mapValues { (subsystem, total) ->
+                ((total - (lastSubsystemTotals[subsystem] ?: 0L)) * 1000L) / elapsedMs
+            }
+        )
+        lastSampleAt = now
+        lastSubsystemTotals = totals
+        lastProcessBytes = processBytes
+        return rates
+    }
+
+    companion object {
+        const val UI = "ui"
+        const val CALLS = "calls"
+        const val GROUP_DELIVERY = "group_delivery"
+        const val BLOCKCHAIN = "blockchain"
+        const val CRYPTO = "crypto"
+        const val STORAGE = "storage"
+        const val PRESENCE = "presence"
+        const val OTHER = "other"
+
+        private const val DEFAULT_SAMPLE_RATE = 16
+
+        private fun artBytesAllocated(): Long =
+            Debug.getRuntimeStat("art.gc.bytes-allocated")?.toLongOrNull() ?: 0L
+    }
+}
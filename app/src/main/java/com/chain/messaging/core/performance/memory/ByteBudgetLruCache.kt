@@ -0,0 +1,99 @@
+package com.chain.messaging.core.performance.memory
+
+/**
+ * Least-recently-used map bounded by the estimated bytes of its entries rather
+ * than their count. Sizes are computed once per put with [sizeOf].
+ */
+class ByteBudgetLruCache<K : Any, V : Any>(
+    override val cacheName: String,
+    override val priority: CachePriority,
+    override val budgetShare: Float,
+    initialMaxBytes: Long,
+    private val sizeOf: (K, V) -> Long
+) : ManagedCache {
+
+    private val entries = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+    private var currentBytes = 0L
+    private var maxBytes = initialMaxBytes
+
+    val size: Int
+        @Synchronized get() = entries.size
+
+    @Synchronized
+    fun get(key: K): V? = entries[key]?.value
+
+    /**
+     * Membership check that does not count as an access
+     */
+    @Synchronized
+    fun containsKey(key: K): Boolean = entries.containsKey(key)
+
+    @Synchronized
+    fun put(key: K, value: V): V? {
+        val bytes = sizeOf(key, value)
+        val previous = entries.put(key, Entry(value, bytes))
+        if (previous != null) currentBytes -= previous.bytes
+        currentBytes += bytes
+        trimToBytes(maxBytes)
+        return previous?.value
+    }
+
+    @Synchronized
+    fun remove(key: K): V? {
+        val removed = entries.remove(key) ?: return null
+        currentBytes -= removed.bytes
+        return removed.value
+    }
+
+    /**
+     * Remove every entry matching [predicate]; returns how many were removed
+     */
+    @Synchronized
+    fun removeIf(predicate: (K, V) -> Boolean): Int {
+        var removed = 0
+        val iterator = entries.entries.iterator()
+        while (iterator.hasNext()) {
+            val (key, entry) = iterator.next()
+            if (predicate(key, entry.value)) {
+                currentBytes -= entry.bytes
+                iterator.remove()
+                removed++
+            }
+        }
+        return removed
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        currentBytes = 0L
+    }
+
+    @Synchronized
+    override fun sizeBytes(): Long = currentBytes
+
+    @Synchronized
+    fun maxBytes(): Long = maxBytes
+
+    @Synchronized
+    override fun setMaxBytes(maxBytes: Long) {
+        this.maxBytes = maxBytes.coerceAtLeast(0L)
+        trimToBytes(this.maxBytes)
+    }
+
+    @Synchronized
+    override fun trimToBytes(maxBytes: Long): Long {
+        var freed = 0L
+        val iterator = entries.values.iterator()
+        // Iteration order is least recently used first
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            val entry = iterator.next()
+            iterator.remove()
+            currentBytes -= entry.bytes
+            freed += entry.bytes
+        }
+        return freed
+    }
+
+    private class Entry<V>(val value: V, val bytes: Long)
+}
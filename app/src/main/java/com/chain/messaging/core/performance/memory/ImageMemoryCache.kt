@@ -0,0 +1,42 @@
+package com.chain.messaging.core.performance.memory
+
+import coil.memory.MemoryCache
+
+/**
+ * Exposes Coil's decoded bitmap cache to [MemoryBudgetManager]. Chat media
+ * renditions are not in it; they are budgeted by
+ * [com.chain.messaging.core.media.cache.MediaImageCache]. Coil fixes its limit
+ * when the image loader is built, so the budget is applied there and
+ * [setMaxBytes] only trims.
+ */
+class ImageMemoryCache(
+    private val memoryCache: MemoryCache
+) : ManagedCache {
+
+    override val cacheName: String = "images"
+    override val priority: CachePriority = CachePriority.MEDIUM
+    override val budgetShare: Float = BUDGET_SHARE
+
+    override fun sizeBytes(): Long = memoryCache.size.toLong()
+
+    override fun setMaxBytes(maxBytes: Long) {
+        if (sizeBytes() > maxBytes) trimToBytes(maxBytes)
+    }
+
+    override fun trimToBytes(maxBytes: Long): Long {
+        val before = sizeBytes()
+        if (maxBytes <= 0L) {
+            memoryCache.clear()
+        } else {
+            for (key in memoryCache.keys) {
+                if (sizeBytes() <= maxBytes) break
+                memoryCache.remove(key)
+            }
+        }
+        return (before - sizeBytes()).coerceAtLeast(0L)
+    }
+
+    companion object {
+        const val BUDGET_SHARE = 0.3f
+    }
+}
@@ -0,0 +1,85 @@
+package com.chain.messaging.core.performance.memory
+
+import android.content.ComponentCallbacks2
+
+/**
+ * In-memory cache whose size is governed by [MemoryBudgetManager]
+ */
+interface ManagedCache {
+
+    val cacheName: String
+
+    val priority: CachePriority
+
+    /**
+     * Fraction of the global cache budget this cache may hold
+     */
+    val budgetShare: Float
+
+    /**
+     * Estimated bytes currently held
+     */
+    fun sizeBytes(): Long
+
+    /**
+     * Set the steady-state limit; entries beyond it are evicted immediately
+     */
+    fun setMaxBytes(maxBytes: Long)
+
+    /**
+     * Evict entries until at most [maxBytes] remain, without changing the
+     * steady-state limit. Returns the bytes freed.
+     */
+    fun trimToBytes(maxBytes: Long): Long
+}
+
+/**
+ * How expensive a cache's entries are to rebuild. Lower priorities give up more
+ * of their contents at each pressure level.
+ */
+enum class CachePriority {
+    LOW,
+    MEDIUM,
+    HIGH
+}
+
+/**
+ * Memory pressure levels and the fraction of its current contents a cache of
+ * each priority keeps when the level is reached
+ */
+enum class MemoryPressure(
+    private val keepLow: Float,
+    private val keepMedium: Float,
+    private val keepHigh: Float
+) {
+    NONE(1f, 1f, 1f),
+    MODERATE(0.5f, 0.75f, 1f),
+    LOW(0.25f, 0.5f, 0.75f),
+    CRITICAL(0f, 0.25f, 0.5f),
+    COMPLETE(0f, 0f, 0f);
+
+    fun keepFraction(priority: CachePriority): Float = when (priority) {
+        CachePriority.LOW -> keepLow
+        CachePriority.MEDIUM -> keepMedium
+        CachePriority.HIGH -> keepHigh
+    }
+
+    companion object {
+        /**
+         * Map an [ComponentCallbacks2.onTrimMemory] level. Background levels are
+         * treated more strictly than their foreground counterparts because the
+         * process is a kill candidate.
+         */
+        @Suppress("DEPRECATION")
+        fun fromTrimLevel(level: Int): MemoryPressure = when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE -> COMPLETE
+            level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE -> CRITICAL
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND -> LOW
+            level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN -> MODERATE
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> CRITICAL
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> LOW
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE -> MODERATE
+            else -> NONE
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.chain.messaging.core.performance.memory
+
+import android.app.ActivityManager
+import android.content.Context
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Global byte budget for in-memory caches, derived from the device's memory class
+ */
+class MemoryBudgetPolicy(val totalBudgetBytes: Long) {
+
+    fun budgetFor(cache: ManagedCache): Long = budgetFor(cache.budgetShare)
+
+    fun budgetFor(share: Float): Long = (totalBudgetBytes * share.coerceIn(0f, 1f)).toLong()
+
+    companion object {
+        private const val MIN_MEMORY_CLASS_MB = 32
+        // Share of the per-app heap that caches may hold together
+        private const val HEAP_DIVISOR = 4
+        private const val LOW_RAM_HEAP_DIVISOR = 8
+
+        fun forDevice(memoryClassMb: Int, isLowRamDevice: Boolean): MemoryBudgetPolicy {
+            val heapBytes = memoryClassMb.coerceAtLeast(MIN_MEMORY_CLASS_MB) * 1024L * 1024L
+            val divisor = if (isLowRamDevice) LOW_RAM_HEAP_DIVISOR else HEAP_DIVISOR
+            return MemoryBudgetPolicy(heapBytes / divisor)
+        }
+
+        fun forContext(context: Context): MemoryBudgetPolicy {
+            val activityManager = context.getSystemService(Context.ACTIVITY_SERVICE) as? ActivityManager
+                ?: return forDevice(MIN_MEMORY_CLASS_MB, isLowRamDevice = true)
+            return forDevice(activityManager.memoryClass, activityManager.isLowRamDevice)
+        }
+    }
+}
+
+/**
+ * Result of one trim pass
+ */
+data class TrimResult(
+    val pressure: MemoryPressure,
+    val reclaimedBytes: Long,
+    val reclaimedByCache: Map<String, Long>
+)
+
+/**
+ * Usage of one registered cache
+ */
+data class CacheUsage(
+    val name: String,
+    val priority: CachePriority,
+    val sizeBytes: Long,
+    val budgetBytes: Long,
+    val reclaimedBytes: Long
+)
+
+/**
+ * Owns the cache memory budget. Caches register once; each gets its share of
+ * the global budget as its steady-state limit, and memory pressure from
+ * onTrimMemory or [com.chain.messaging.core.performance.MemoryManager]
+ * shrinks them in priority order. Reclaimed bytes are reported to
+ * [MetricsRegistry].
+ */
+@Singleton
+class MemoryBudgetManager(
+    val policy: MemoryBudgetPolicy,
+    metricsRegistry: MetricsRegistry
+) {
+
+    @Inject
+    constructor(
+        @ApplicationContext context: Context,
+        metricsRegistry: MetricsRegistry
+    ) : this(MemoryBudgetPolicy.forContext(context), metricsRegistry)
+
+    private val caches = CopyOnWriteArrayList<ManagedCache>()
+    private val reclaimedByCache = ConcurrentHashMap<String, AtomicLong>()
+    private val reclaimedBytes = metricsRegistry.counter(RECLAIMED_BYTES)
+    private val cacheBytes = metricsRegistry.gauge(CACHE_BYTES)
+
+    fun register(cache: ManagedCache) {
+        if (caches.any { it === cache }) return
+        cache.setMaxBytes(policy.budgetFor(cache))
+        caches.add(cache)
+        Logger.d("Registered cache ${cache.cacheName} with ${policy.budgetFor(cache) / 1024} KiB budget")
+    }
+
+    fun unregister(cache: ManagedCache) {
+        caches.removeAll { it === cache }
+    }
+
+    /**
+     * Forward of [android.content.ComponentCallbacks2.onTrimMemory]
+     */
+    fun onTrimMemory(level: Int): TrimResult = trim(MemoryPressure.fromTrimLevel(level))
+
+    /**
+     * Shrink every cache to the fraction of its current size that [pressure]
+     * keeps for its priority, lowest priority first
+     */
+    fun trim(pressure: MemoryPressure): TrimResult {
+        val reclaimed = LinkedHashMap<String, Long>()
+        caches.sortedBy { it.priority }.forEach { cache ->
+            val keep = pressure.keepFraction(cache.priority)
+            if (keep >= 1f) return@forEach
+            val freed = try {
+                cache.trimToBytes((cache.sizeBytes() * keep).toLong())
+            } catch (e: Exception) {
+                Logger.e("Failed to trim cache ${cache.cacheName}", e)
+                0L
+            }
+            if (freed > 0) {
+                reclaimed[cache.cacheName] = freed
+                reclaimedByCache.getOrPut(cache.cacheName) { AtomicLong() }.addAndGet(freed)
+            }
+        }
+
+        val total = reclaimed.values.sum()
+        reclaimedBytes.add(total)
+        cacheBytes.set(totalCacheBytes())
+        if (total > 0) {
+            Logger.i("Memory pressure $pressure reclaimed ${total / 1024} KiB from ${reclaimed.size} caches")
+        }
+        return TrimResult(pressure, total, reclaimed)
+    }
+
+    /**
+     * Empty every cache
+     */
+    fun clearAll(): TrimResult = trim(MemoryPressure.COMPLETE)
+
+    fun totalCacheBytes(): Long = caches.sumOf { it.sizeBytes() }
+
+    fun totalReclaimedBytes(): Long = reclaimedBytes.sum()
+
+    fun getCacheUsage(): List<CacheUsage> = caches.map { cache ->
+        CacheUsage(
+            name = cache.cacheName,
+            priority = cache.priority,
+            sizeBytes = cache.sizeBytes(),
+            budgetBytes = policy.budgetFor(cache),
+            reclaimedBytes = reclaimedByCache[cache.cacheName]?.get() ?: 0L
+        )
+    }
+
+    companion object {
+        const val RECLAIMED_BYTES = "memory.cache_reclaimed_bytes"
+        const val CACHE_BYTES = "memory.cache_bytes"
+    }
+}
@@ -0,0 +1,41 @@
+package com.chain.messaging.core.performance.memory
+
+import android.app.ActivityManager
+import androidx.lifecycle.ViewModel
+import com.chain.messaging.core.config.AppConfig
+import java.io.Closeable
+
+/**
+ * Process-wide lifetime tracker and allocation sampler. Watch points sit in
+ * classes that are not all injected (ViewModels, sockets, jobs), so these live
+ * here rather than in the graph, like
+ * [com.chain.messaging.core.integration.StartupTimeline].
+ */
+object MemoryDiagnostics {
+
+    // Release builds only force a collection while no activity is visible, and rarely
+    val lifetimes = ObjectLifetimeTracker(
+        collectionAllowed = { AppConfig.DEBUG || isInBackground() },
+        minCollectionIntervalMs = if (AppConfig.DEBUG) 0L else RELEASE_COLLECTION_INTERVAL_MS
+    )
+
+    val allocations = AllocationSampler()
+
+    private const val RELEASE_COLLECTION_INTERVAL_MS = 30 * 60_000L
+
+    private fun isInBackground(): Boolean {
+        val state = ActivityManager.RunningAppProcessInfo()
+        ActivityManager.getMyMemoryState(state)
+        return state.importance > ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE
+    }
+}
+
+/**
+ * Watch this ViewModel for retention once it is cleared
+ */
+fun ViewModel.watchLifetime() {
+    val viewModel = this
+    addCloseable(Closeable {
+        MemoryDiagnostics.lifetimes.watch(viewModel, WatchedObjectKind.VIEW_MODEL)
+    })
+}
@@ -0,0 +1,167 @@
+package com.chain.messaging.core.performance.memory
+
+import com.chain.messaging.core.performance.LeakType
+import com.chain.messaging.core.util.Logger
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Kinds of objects watched after their lifecycle ends
+ */
+enum class WatchedObjectKind(val leakType: LeakType, val subsystem: String) {
+    VIEW_MODEL(LeakType.VIEW_MODEL_LEAK, AllocationSampler.UI),
+    CALL_SESSION(LeakType.STATIC_REFERENCE_LEAK, AllocationSampler.CALLS),
+    PEER_CONNECTION(LeakType.LISTENER_LEAK, AllocationSampler.CALLS),
+    DISTRIBUTION_JOB(LeakType.THREAD_LEAK, AllocationSampler.GROUP_DELIVERY),
+    WEBSOCKET_LISTENER(LeakType.LISTENER_LEAK, AllocationSampler.BLOCKCHAIN),
+    OTHER(LeakType.STATIC_REFERENCE_LEAK, AllocationSampler.OTHER)
+}
+
+/**
+ * An object still strongly reachable [ageMs] after it was expected to be released
+ */
+data class RetainedObject(
+    val key: String,
+    val kind: WatchedObjectKind,
+    val description: String,
+    val estimatedBytes: Long,
+    val ageMs: Long
+)
+
+/**
+ * Outcome of one retained-object check
+ */
+data class RetainedObjectsReport(
+    val watchedCount: Int,
+    val retained: List<RetainedObject>
+) {
+    val retainedCount: Int get() = retained.size
+
+    val retainedBytes: Long get() = retained.sumOf { it.estimatedBytes }
+
+    val retainedByKind: Map<WatchedObjectKind, Int> get() = retained.groupingBy { it.kind }.eachCount()
+}
+
+/**
+ * Retained-object detection without heap dumps. Objects are handed over with
+ * [watch] when their lifecycle ends and held only through weak references
+ * registered with a [ReferenceQueue]; the queue is drained on [check], and
+ * whatever has not been enqueued [retainedAfterMs] later survived a collection
+ * while nothing should have referenced it.
+ *
+ * Watching costs one weak reference and a map entry. A collection is only
+ * requested when new candidates cross the threshold, and each candidate gets
+ * at most one, so confirmed leaks do not cause a collection per check.
+ * Forced collections pause the app, so they also wait for
+ * [collectionAllowed] and are at least [minCollectionIntervalMs] apart;
+ * candidates are only reported once they have been given one.
+ */
+class ObjectLifetimeTracker(
+    private val retainedAfterMs: Long = DEFAULT_RETAINED_AFTER_MS,
+    private val clock: () -> Long = { System.nanoTime() / 1_000_000L },
+    private val gcTrigger: () -> Unit = ::requestCollection,
+    private val collectionAllowed: () -> Boolean = { true },
+    private val minCollectionIntervalMs: Long = 0L
+) {
+    private val queue = ReferenceQueue<Any>()
+    private val watched = ConcurrentHashMap<String, WatchedReference>()
+    private val nextKey = AtomicLong()
+    private val dropped = AtomicLong()
+
+    @Volatile
+    private var lastCollectionAt: Long? = null
+
+    /**
+     * Expect [obj] to become unreachable shortly; returns the key to [unwatch]
+     * it early, or null when the watch list is full
+     */
+    fun watch(
+        obj: Any,
+        kind: WatchedObjectKind,
+        description: String = obj.javaClass.simpleName,
+        estimatedBytes: Long = 0L,
+        key: String = "${kind.name.lowercase()}-${nextKey.incrementAndGet()}"
+    ): String? {
+        drainQueue()
+        if (watched.size >= MAX_WATCHED) {
+            dropped.incrementAndGet()
+            return null
+        }
+        watched[key] = WatchedReference(obj, queue, key, kind, description, estimatedBytes, clock())
+        return key
+    }
+
+    fun unwatch(key: String) {
+        watched.remove(key)?.clear()
+    }
+
+    /**
+     * Objects that outlived the threshold, after giving them one collection
+     */
+    fun check(): RetainedObjectsReport {
+        drainQueue()
+        val now = clock()
+        val candidates = watched.values.filter { now - it.watchedAt >= retainedAfterMs }
+        if (candidates.any { !it.collectionRequested } && mayCollect(now)) {
+            gcTrigger()
+            lastCollectionAt = now
+            candidates.forEach { it.collectionRequested = true }
+            drainQueue()
+        }
+
+        val retained = candidates
+            .filter { it.collectionRequested && watched.containsKey(it.key) && it.get() != null }
+            .map { RetainedObject(it.key, it.kind, it.description, it.estimatedBytes, now - it.watchedAt) }
+        if (retained.isNotEmpty()) {
+            Logger.w("${retained.size} objects retained after their lifecycle ended: " +
+                retained.groupingBy { it.kind }.eachCount())
+        }
+        return RetainedObjectsReport(watched.size, retained)
+    }
+
+    fun watchedCount(): Int = watched.size
+
+    /**
+     * Watches refused because the list was full
+     */
+    fun droppedCount(): Long = dropped.get()
+
+    private fun mayCollect(now: Long): Boolean {
+        val last = lastCollectionAt
+        if (last != null && now - last < minCollectionIntervalMs) return false
+        return collectionAllowed()
+    }
+
+    private fun drainQueue() {
+        while (true) {
+            val reference = queue.poll() as? WatchedReference ?: return
+            watched.remove(reference.key, reference)
+        }
+    }
+
+    private class WatchedReference(
+        referent: Any,
+        queue: ReferenceQueue<Any>,
+        val key: String,
+        val kind: WatchedObjectKind,
+        val description: String,
+        val estimatedBytes: Long,
+        val watchedAt: Long
+    ) : WeakReference<Any>(referent, queue) {
+        @Volatile var collectionRequested = false
+    }
+
+    companion object {
+        const val DEFAULT_RETAINED_AFTER_MS = 10_000L
+        private const val MAX_WATCHED = 4_096
+
+        private fun requestCollection() {
+            // Runtime.gc() alone is often ignored by ART; finalization lets it complete
+            Runtime.getRuntime().gc()
+            System.runFinalization()
+            Runtime.getRuntime().gc()
+        }
+    }
+}
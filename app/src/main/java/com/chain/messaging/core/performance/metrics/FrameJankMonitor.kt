@@ -0,0 +1,93 @@
+package com.chain.messaging.core.performance.metrics
+
+import android.view.Choreographer
+
+/**
+ * Measures frame pacing while a list scrolls.
+ *
+ * Between [start] and [stop] every vsync is observed through [Choreographer];
+ * the interval between consecutive frames goes to a histogram, and intervals
+ * longer than [JANK_THRESHOLD] display frames count as janky. Must be started
+ * and stopped on the main thread.
+ */
+class FrameJankMonitor(
+    metricsRegistry: MetricsRegistry,
+    refreshRateHz: Float = DEFAULT_REFRESH_RATE_HZ
+) : Choreographer.FrameCallback {
+
+    private val frameIntervals = metricsRegistry.histogram(HotPathMetrics.CHAT_SCROLL_FRAME)
+    private val frames = metricsRegistry.counter(HotPathMetrics.CHAT_SCROLL_FRAMES)
+    private val jankyFrames = metricsRegistry.counter(HotPathMetrics.CHAT_SCROLL_JANKY_FRAMES)
+
+    private var frameBudgetNanos = budgetFor(refreshRateHz)
+    private var lastFrameNanos = 0L
+    private var running = false
+
+    fun setRefreshRate(refreshRateHz: Float) {
+        frameBudgetNanos = budgetFor(refreshRateHz)
+    }
+
+    fun start() {
+        if (running) return
+        running = true
+        lastFrameNanos = 0L
+        Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    fun stop() {
+        if (!running) return
+        running = false
+        Choreographer.getInstance().removeFrameCallback(this)
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        if (!running) return
+        recordFrame(frameTimeNanos)
+        Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    /**
+     * Record a frame at vsync time [frameTimeNanos]; the first frame after
+     * [start] only sets the baseline
+     */
+    fun recordFrame(frameTimeNanos: Long) {
+        val previous = lastFrameNanos
+        lastFrameNanos = frameTimeNanos
+        if (previous == 0L) return
+
+        val interval = frameTimeNanos - previous
+        frameIntervals.record(interval / NANOS_PER_MICRO)
+        frames.increment()
+        if (interval > frameBudgetNanos * JANK_THRESHOLD) jankyFrames.increment()
+    }
+
+    fun summary(): FrameJankSummary = FrameJankSummary(
+        frames = frames.sum(),
+        jankyFrames = jankyFrames.sum(),
+        frameIntervals = frameIntervals.snapshot().toSummary()
+    )
+
+    private fun budgetFor(refreshRateHz: Float): Long {
+        val rate = if (refreshRateHz > 0f) refreshRateHz else DEFAULT_REFRESH_RATE_HZ
+        return (NANOS_PER_SECOND / rate).toLong()
+    }
+
+    companion object {
+        const val JANK_THRESHOLD = 1.5
+        private const val DEFAULT_REFRESH_RATE_HZ = 60f
+        private const val NANOS_PER_SECOND = 1_000_000_000.0
+        private const val NANOS_PER_MICRO = 1_000L
+    }
+}
+
+/**
+ * Frame pacing observed while scrolling
+ */
+data class FrameJankSummary(
+    val frames: Long,
+    val jankyFrames: Long,
+    val frameIntervals: LatencySummary
+) {
+    val jankPercent: Double
+        get() = if (frames == 0L) 0.0 else jankyFrames * 100.0 / frames
+}
@@ -0,0 +1,155 @@
+package com.chain.messaging.core.performance.metrics
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Values below [SUB_BUCKETS] get their own bucket; above that every power of
+ * two is split into [SUB_BUCKETS] equal sub-buckets, so any recorded value is
+ * reported within 1/[SUB_BUCKETS] (12.5%) of its true value while the whole
+ * long range fits in a fixed array. Recording is one atomic increment on the
+ * bucket, one striped add and a max update, with no allocation.
+ */
+class LatencyHistogram(val name: String) {
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val sum = LongAdder()
+    private val max = AtomicLong()
+
+    /**
+     * Record one latency in microseconds. Negative values are clamped to zero.
+     */
+    fun record(valueMicros: Long) {
+        val value = valueMicros.coerceAtLeast(0L)
+        buckets.incrementAndGet(bucketIndex(value))
+        sum.add(value)
+        var current = max.get()
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get()
+        }
+    }
+
+    /**
+     * Record the time elapsed since [startNanos], a System.nanoTime reading
+     */
+    fun recordSince(startNanos: Long) {
+        record((System.nanoTime() - startNanos) / NANOS_PER_MICRO)
+    }
+
+    /**
+     * Copy of the current counts. Concurrent records may or may not be included,
+     * but every copied bucket is internally consistent.
+     */
+    fun snapshot(): HistogramSnapshot {
+        val counts = LongArray(BUCKET_COUNT) { buckets.get(it) }
+        return HistogramSnapshot(
+            name = name,
+            counts = counts,
+            count = counts.sum(),
+            sumMicros = sum.sum(),
+            maxMicros = max.get()
+        )
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 3
+        const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        internal const val BUCKET_COUNT = (Long.SIZE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+        private const val NANOS_PER_MICRO = 1_000L
+
+        internal fun bucketIndex(value: Long): Int {
+            if (value < SUB_BUCKETS) return value.toInt()
+            val magnitude = (Long.SIZE_BITS - 1) - java.lang.Long.numberOfLeadingZeros(value)
+            val subBucket = ((value ushr (magnitude - SUB_BUCKET_BITS)) and (SUB_BUCKETS - 1).toLong()).toInt()
+            return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket
+        }
+
+        /**
+         * Highest value that maps to bucket [index]
+         */
+        internal fun bucketUpperBound(index: Int): Long {
+            if (index < SUB_BUCKETS) return index.toLong()
+            val magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1
+            val subBucket = (index % SUB_BUCKETS).toLong()
+            val shift = magnitude - SUB_BUCKET_BITS
+            val lower = (SUB_BUCKETS + subBucket) shl shift
+            return lower + (1L shl shift) - 1
+        }
+    }
+}
+
+/**
+ * Immutable copy of a [LatencyHistogram]. Subtracting an earlier snapshot of the
+ * same histogram gives the distribution of just the values recorded in between.
+ */
+class HistogramSnapshot internal constructor(
+    val name: String,
+    private val counts: LongArray,
+    val count: Long,
+    val sumMicros: Long,
+    val maxMicros: Long
+) {
+    val meanMicros: Double
+        get() = if (count == 0L) 0.0 else sumMicros.toDouble() / count
+
+    /**
+     * Value at quantile [q] (0..1), reported as the upper bound of its bucket
+     */
+    fun percentile(q: Double): Long {
+        if (count == 0L) return 0L
+        // Nearest rank
+        val target = ceil(q.coerceIn(0.0, 1.0) * count).toLong().coerceIn(1L, count)
+        var seen = 0L
+        for (index in counts.indices) {
+            seen += counts[index]
+            if (seen >= target) {
+                // The max is exact, so never report beyond it
+                return minOf(LatencyHistogram.bucketUpperBound(index), maxMicros)
+            }
+        }
+        return maxMicros
+    }
+
+    /**
+     * Values recorded after [earlier] was taken. The max is not windowed and
+     * stays the all-time max.
+     */
+    operator fun minus(earlier: HistogramSnapshot): HistogramSnapshot {
+        val delta = LongArray(counts.size) { (counts[it] - earlier.counts[it]).coerceAtLeast(0L) }
+        return HistogramSnapshot(
+            name = name,
+            counts = delta,
+            count = delta.sum(),
+            sumMicros = (sumMicros - earlier.sumMicros).coerceAtLeast(0L),
+            maxMicros = maxMicros
+        )
+    }
+
+    fun toSummary(): LatencySummary = LatencySummary(
+        count = count,
+        meanMicros = meanMicros,
+        p50Micros = percentile(0.50),
+        p90Micros = percentile(0.90),
+        p99Micros = percentile(0.99),
+        maxMicros = maxMicros
+    )
+}
+
+/**
+ * Percentile summary of one hot path over a reporting interval
+ */
+data class LatencySummary(
+    val count: Long,
+    val meanMicros: Double,
+    val p50Micros: Long,
+    val p90Micros: Long,
+    val p99Micros: Long,
+    val maxMicros: Long
+) {
+    val p50Ms: Long get() = p50Micros / 1_000
+    val p99Ms: Long get() = p99Micros / 1_000
+}
@@ -0,0 +1,146 @@
+package com.chain.messaging.core.performance.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Names of the instrumented hot paths
+ */
+object HotPathMetrics {
+    // Latency histograms, in microseconds
+    const val MESSAGE_SEND = "message.send"
+    const val ENCRYPT = "crypto.encrypt"
+    const val DECRYPT = "crypto.decrypt"
+    const val DB_WRITE = "db.write"
+    const val BLOCKCHAIN_ROUND_TRIP = "blockchain.round_trip"
+    const val RENDER_READY = "message.render_ready"
+    const val MEDIA_INGEST_PHOTO = "media.ingest.photo"
+    const val MEDIA_INGEST_VIDEO = "media.ingest.video"
+    const val MEDIA_RENDITION_RENDER = "media.rendition.render"
+    const val CHAT_SCROLL_FRAME = "chat.scroll.frame"
+    const val VOICE_WAVEFORM_EXTRACT = "voice.waveform.extract"
+    const val VOICE_RELEASE_TO_SENT = "voice.release_to_sent"
+    const val NOTIFICATION_MAIN_THREAD = "notification.main_thread"
+    const val NOTIFICATION_RENDER = "notification.render"
+    const val EXPIRY_LATENESS = "expiry.lateness"
+    const val EXPIRY_CYCLE = "expiry.cycle"
+
+    // Counters
+    const val MESSAGES_SENT = "message.sent"
+    const val MESSAGES_FAILED = "message.failed"
+    const val CRYPTO_FAILURES = "crypto.failures"
+    const val BLOCKCHAIN_BYTES_SENT = "blockchain.bytes_sent"
+    const val MEDIA_RENDITION_MEMORY_HITS = "media.rendition.memory_hits"
+    const val MEDIA_RENDITION_DISK_HITS = "media.rendition.disk_hits"
+    const val CHAT_SCROLL_FRAMES = "chat.scroll.frames"
+    const val CHAT_SCROLL_JANKY_FRAMES = "chat.scroll.janky_frames"
+    const val PRESENCE_EVENTS_IN = "presence.events_in"
+    const val PRESENCE_EVENTS_OUT = "presence.events_out"
+    const val PRESENCE_EMISSIONS = "presence.emissions"
+    const val PRESENCE_ALLOCATED_BYTES = "presence.allocated_bytes"
+    const val NOTIFICATION_POSTS = "notification.posts"
+    const val NOTIFICATION_MESSAGES = "notification.messages"
+    const val NOTIFICATION_UNCHANGED = "notification.unchanged"
+    const val EXPIRY_DELETED = "expiry.deleted"
+    const val EXPIRY_CYCLES = "expiry.cycles"
+
+    // Gauges
+    const val BLOCKCHAIN_PENDING_CONFIRMATIONS = "blockchain.pending_confirmations"
+    const val MEDIA_INGEST_TEMP_PEAK_BYTES = "media.ingest.temp_peak_bytes"
+
+    val LATENCIES = listOf(
+        MESSAGE_SEND, ENCRYPT, DECRYPT, DB_WRITE, BLOCKCHAIN_ROUND_TRIP, RENDER_READY,
+        MEDIA_INGEST_PHOTO, MEDIA_INGEST_VIDEO, MEDIA_RENDITION_RENDER, CHAT_SCROLL_FRAME,
+        VOICE_WAVEFORM_EXTRACT, VOICE_RELEASE_TO_SENT, NOTIFICATION_MAIN_THREAD, NOTIFICATION_RENDER,
+        EXPIRY_LATENESS, EXPIRY_CYCLE
+    )
+}
+
+/**
+ * Monotonic counter striped across cells, so concurrent increments from many
+ * threads do not contend on one cache line
+ */
+class Counter(val name: String) {
+    private val adder = LongAdder()
+
+    fun increment() = adder.increment()
+
+    fun add(delta: Long) = adder.add(delta)
+
+    fun sum(): Long = adder.sum()
+}
+
+/**
+ * Last-value gauge
+ */
+class Gauge(val name: String) {
+    private val value = AtomicLong()
+
+    fun set(newValue: Long) = value.set(newValue)
+
+    fun get(): Long = value.get()
+}
+
+/**
+ * Point-in-time copy of every metric
+ */
+class MetricsSnapshot(
+    val timestamp: Long,
+    val counters: Map<String, Long>,
+    val gauges: Map<String, Long>,
+    val histograms: Map<String, HistogramSnapshot>
+) {
+    /**
+     * Counter increases and histogram values recorded since [earlier]; gauges
+     * keep their current value
+     */
+    operator fun minus(earlier: MetricsSnapshot): MetricsSnapshot = MetricsSnapshot(
+        timestamp = timestamp,
+        counters = counters.mapValues { (name, value) -> value - (earlier.counters[name] ?: 0L) },
+        gauges = gauges,
+        histograms = histograms.mapValues { (name, histogram) ->
+            earlier.histograms[name]?.let { histogram - it } ?: histogram
+        }
+    )
+}
+
+/**
+ * In-process registry for counters, gauges and latency histograms. Metric
+ * lookup goes through a concurrent map, so hot paths should resolve their
+ * metrics once and keep the reference; recording itself never locks.
+ */
+@Singleton
+class MetricsRegistry @Inject constructor() {
+
+    private val counters = ConcurrentHashMap<String, Counter>()
+    private val gauges = ConcurrentHashMap<String, Gauge>()
+    private val histograms = ConcurrentHashMap<String, LatencyHistogram>()
+
+    fun counter(name: String): Counter = counters.getOrPut(name) { Counter(name) }
+
+    fun gauge(name: String): Gauge = gauges.getOrPut(name) { Gauge(name) }
+
+    fun histogram(name: String): LatencyHistogram = histograms.getOrPut(name) { LatencyHistogram(name) }
+
+    fun snapshot(): MetricsSnapshot = MetricsSnapshot(
+        timestamp = System.currentTimeMillis(),
+        counters = counters.mapValues { it.value.sum() },
+        gauges = gauges.mapValues { it.value.get() },
+        histograms = histograms.mapValues { it.value.snapshot() }
+    )
+}
+
+/**
+ * Time [block] into this histogram, including when it throws
+ */
+inline fun <T> LatencyHistogram.time(block: () -> T): T {
+    val start = System.nanoTime()
+    try {
+        return block()
+    } finally {
+        recordSince(start)
+    }
+}
@@ -0,0 +1,266 @@
+package com.chain.messaging.core.performance.scheduler
+
+import com.chain.messaging.core.performance.OptimizationMode
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.ArrayDeque
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * How a periodic task behaves while the app is backgrounded or the device dozes
+ */
+enum class WorkPolicy {
+    // Keeps running (at the battery-scaled interval), e.g. outgoing message retries
+    ESSENTIAL,
+    // Paused until the app is foregrounded and the device is awake
+    DEFERRABLE
+}
+
+/**
+ * Handle for a registered periodic task
+ */
+interface ScheduledTask {
+    val name: String
+
+    fun cancel()
+}
+
+/**
+ * Wake-up accounting for the last hour
+ */
+data class SchedulerStats(
+    val registeredTasks: Int,
+    val wakeUpsLastHour: Int,
+    val taskRunsLastHour: Int,
+    val totalWakeUps: Long,
+    val totalTaskRuns: Long,
+    val mode: OptimizationMode,
+    val isPaused: Boolean
+) {
+    // Task runs served per CPU wake-up; separate timers would give 1.0
+    val coalescingRatio: Double
+        get() = if (wakeUpsLastHour == 0) 0.0 else taskRunsLastHour.toDouble() / wakeUpsLastHour
+}
+
+/**
+ * Single timer for the app's periodic background work.
+ *
+ * Tasks register an interval instead of running their own `delay` loops. One
+ * driver coroutine sleeps until the earliest due time, then also runs every
+ * task that would come due within its flex window, so work is coalesced into
+ * shared wake-ups. Tasks pulled forward keep their nominal period, which keeps
+ * them aligned with the wake-ups that serve them. Intervals scale with the
+ * [OptimizationMode] set by the battery optimizer, and deferrable tasks are
+ * held while the app is backgrounded or the device is in Doze.
+ */
+class BackgroundScheduler(
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+    private val log = Logger.of(LogSubsystem.PERFORMANCE)
+    private val lock = Any()
+    private val tasks = LinkedHashMap<Long, Task>()
+    private val nextId = AtomicLong()
+    private val signal = Channel<Unit>(Channel.CONFLATED)
+    private var driver: Job? = null
+
+    private var mode = OptimizationMode.NORMAL
+    private var foreground = true
+    private var deviceIdle = false
+
+    private val recentWakeUps = ArrayDeque<Long>()
+    private val recentRuns = ArrayDeque<Long>()
+    private var totalWakeUps = 0L
+    private var totalRuns = 0L
+
+    /**
+     * Run [block] in [owner] every [intervalMs], first after [initialDelayMs].
+     * The task may run up to [flexMs] early so it can share a wake-up with other
+     * tasks. A run that throws is retried after twice the interval. The task is
+     * dropped when [owner] is cancelled.
+     */
+    fun schedulePeriodic(
+        name: String,
+        intervalMs: Long,
+        owner: CoroutineScope,
+        policy: WorkPolicy = WorkPolicy.DEFERRABLE,
+        initialDelayMs: Long = 0L,
+        flexMs: Long = (intervalMs * DEFAULT_FLEX_FRACTION).toLong(),
+        block: suspend () -> Unit
+    ): ScheduledTask {
+        require(intervalMs > 0) { "Interval must be positive" }
+        val task = Task(nextId.incrementAndGet(), name, intervalMs, flexMs, policy, owner, block)
+        synchronized(lock) {
+            task.periodStart = clock()
+            task.dueAt = task.periodStart + initialDelayMs
+            tasks[task.id] = task
+            if (driver == null) driver = scope.launch { drive() }
+        }
+        signal.trySend(Unit)
+        return task
+    }
+
+    fun setOptimizationMode(newMode: OptimizationMode) {
+        synchronized(lock) {
+            if (mode == newMode) return
+            val previous = multiplier()
+            mode = newMode
+            val scale = multiplier() / previous
+            // Pending due times move with the new interval, measured from each task's period start
+            tasks.values.forEach { task ->
+                task.dueAt = task.periodStart + ((task.dueAt - task.periodStart) * scale).toLong()
+            }
+        }
+        log.i { "Background work interval scale set for $newMode" }
+        signal.trySend(Unit)
+    }
+
+    fun setForeground(isForeground: Boolean) {
+        synchronized(lock) { foreground = isForeground }
+        signal.trySend(Unit)
+    }
+
+    fun setDeviceIdle(isIdle: Boolean) {
+        synchronized(lock) { deviceIdle = isIdle }
+        signal.trySend(Unit)
+    }
+
+    fun stats(): SchedulerStats = synchronized(lock) {
+        trimHistory(clock())
+        SchedulerStats(
+            registeredTasks = tasks.size,
+            wakeUpsLastHour = recentWakeUps.size,
+            taskRunsLastHour = recentRuns.size,
+            totalWakeUps = totalWakeUps,
+            totalTaskRuns = totalRuns,
+            mode = mode,
+            isPaused = isPaused()
+        )
+    }
+
+    private suspend fun drive() {
+        while (scope.isActive) {
+            val waitMs = synchronized(lock) { nextWakeAt()?.let { (it - clock()).coerceAtLeast(0L) } }
+            // Woken early by registrations and state changes
+            if (waitMs == null) {
+                signal.receive()
+            } else if (waitMs > 0) {
+                withTimeoutOrNull(waitMs) { signal.receive() }
+            }
+            runDueTasks()
+        }
+    }
+
+    private fun runDueTasks() {
+        val due = synchronized(lock) {
+            val now = clock()
+            val runnable = tasks.values.filter { isRunnable(it) && it.dueAt <= now + it.flexMs }
+            // Woken early by a state change with nothing due yet
+            if (runnable.none { it.dueAt <= now }) return
+            tasks.values.removeAll { !it.owner.isActive || it.cancelled }
+            val running = runnable.filter { it.owner.isActive && !it.cancelled }
+            running.forEach { task ->
+                // Overdue work (e.g. held while paused) restarts its period now
+                val base = if (now - task.dueAt > task.flexMs) now else task.dueAt
+                task.periodStart = base
+                task.dueAt = base + scaled(task.intervalMs)
+            }
+            if (running.isNotEmpty()) {
+                totalWakeUps++
+                recentWakeUps.addLast(now)
+                totalRuns += running.size
+                repeat(running.size) { recentRuns.addLast(now) }
+                trimHistory(now)
+            }
+            running
+        }
+        due.forEach { task -> task.launch() }
+    }
+
+    private fun nextWakeAt(): Long? = tasks.values
+        .filter { isRunnable(it) }
+        .minOfOrNull { it.dueAt }
+
+    private fun isRunnable(task: Task): Boolean = !task.cancelled &&
+        (task.policy == WorkPolicy.ESSENTIAL || !isPaused())
+
+    private fun isPaused(): Boolean = deviceIdle || !foreground
+
+    private fun scaled(intervalMs: Long): Long = (intervalMs * multiplier()).toLong()
+
+    private fun multiplier(): Double = when (mode) {
+        OptimizationMode.NORMAL, OptimizationMode.CHARGING -> 1.0
+        OptimizationMode.POWER_SAVER -> 2.0
+        OptimizationMode.ULTRA_POWER_SAVER -> 4.0
+    }
+
+    private fun trimHistory(now: Long) {
+        val cutoff = now - HOUR_MS
+        while (recentWakeUps.isNotEmpty() && recentWakeUps.peekFirst() < cutoff) recentWakeUps.pollFirst()
+        while (recentRuns.isNotEmpty() && recentRuns.peekFirst() < cutoff) recentRuns.pollFirst()
+    }
+
+    private inner class Task(
+        val id: Long,
+        override val name: String,
+        val intervalMs: Long,
+        val flexMs: Long,
+        val policy: WorkPolicy,
+        val owner: CoroutineScope,
+        val block: suspend () -> Unit
+    ) : ScheduledTask {
+        var dueAt = 0L
+        var periodStart = 0L
+        @Volatile
+        var cancelled = false
+        private var job: Job? = null
+
+        fun launch() {
+            // A run still in progress is not overlapped; the next window picks it up
+            if (job?.isActive == true) return
+            job = owner.launch {
+                try {
+                    block()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    log.e(e) { "Background task $name failed" }
+                    synchronized(lock) {
+                        periodStart = clock()
+                        dueAt = periodStart + 2 * scaled(intervalMs)
+                    }
+                    signal.trySend(Unit)
+                }
+            }
+        }
+
+        override fun cancel() {
+            cancelled = true
+            job?.cancel()
+            synchronized(lock) { tasks.remove(id) }
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_FLEX_FRACTION = 0.25
+        private const val HOUR_MS = 60 * 60 * 1000L
+    }
+}
+
+/**
+ * Process-wide scheduler shared by the loops that register with it
+ */
+object BackgroundWork {
+    val scheduler: BackgroundScheduler by lazy {
+        BackgroundScheduler(CoroutineScope(SupervisorJob() + Dispatchers.Default))
+    }
+}
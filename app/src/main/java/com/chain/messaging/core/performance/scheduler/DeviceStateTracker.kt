@@ -0,0 +1,56 @@
+package com.chain.messaging.core.performance.scheduler
+
+import android.app.Activity
+import android.app.Application
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.Bundle
+import android.os.PowerManager
+
+/**
+ * Feeds foreground/background transitions and Doze changes into a
+ * [BackgroundScheduler], so deferrable work pauses while nobody is looking
+ */
+class DeviceStateTracker(
+    private val scheduler: BackgroundScheduler
+) : Application.ActivityLifecycleCallbacks {
+
+    private var startedActivities = 0
+
+    fun register(application: Application) {
+        // Processes start in the background, e.g. for a push message
+        scheduler.setForeground(false)
+        application.registerActivityLifecycleCallbacks(this)
+
+        val powerManager = application.getSystemService(Context.POWER_SERVICE) as PowerManager
+        scheduler.setDeviceIdle(powerManager.isDeviceIdleMode)
+        application.registerReceiver(
+            object : BroadcastReceiver() {
+                override fun onReceive(context: Context, intent: Intent) {
+                    scheduler.setDeviceIdle(powerManager.isDeviceIdleMode)
+                }
+            },
+            IntentFilter(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED)
+        )
+    }
+
+    override fun onActivityStarted(activity: Activity) {
+        if (startedActivities++ == 0) scheduler.setForeground(true)
+    }
+
+    override fun onActivityStopped(activity: Activity) {
+        if (--startedActivities == 0) scheduler.setForeground(false)
+    }
+
+    override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) = Unit
+
+    override fun onActivityResumed(activity: Activity) = Unit
+
+    override fun onActivityPaused(activity: Activity) = Unit
+
+    override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) = Unit
+
+    override fun onActivityDestroyed(activity: Activity) = Unit
+}
@@ -0,0 +1,447 @@
+package com.chain.messaging.core.performance.timeseries
+
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.data.local.dao.PerformanceDao
+import com.chain.messaging.data.local.entity.PerformanceSeriesBlockEntity
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Storage tiers of a series. Raw samples roll up into minute, hour and day
+ * aggregates as they are appended; each tier keeps its own retention, and blocks
+ * are aligned to [blockSpanMs] so whole blocks age out together. Spans are kept
+ * short so an open block stays cheap to rewrite on every checkpoint.
+ */
+enum class SeriesTier(
+    val resolutionMs: Long,
+    val retentionMs: Long,
+    val blockSpanMs: Long
+) {
+    // Resolution is the nominal monitoring interval
+    RAW(5_000L, DAY_MS, HOUR_MS),
+    MINUTE(60_000L, 7 * DAY_MS, HOUR_MS),
+    HOUR(HOUR_MS, 90 * DAY_MS, 6 * HOUR_MS),
+    DAY(DAY_MS, 730 * DAY_MS, 7 * DAY_MS);
+
+    val isRollup: Boolean get() = this != RAW
+}
+
+private const val HOUR_MS = 60 * 60 * 1000L
+private const val DAY_MS = 24 * HOUR_MS
+
+/**
+ * One point of a queried series. Raw samples have a count of one; rollup points
+ * aggregate every sample of their bucket, which starts at [timestamp].
+ */
+data class SeriesPoint(
+    val timestamp: Long,
+    val count: Long,
+    val min: Double,
+    val max: Double,
+    val sum: Double
+) {
+    val mean: Double get() = if (count == 0L) 0.0 else sum / count
+
+    fun merge(other: SeriesPoint): SeriesPoint = SeriesPoint(
+        timestamp = timestamp,
+        count = count + other.count,
+        min = minOf(min, other.min),
+        max = maxOf(max, other.max),
+        sum = sum + other.sum
+    )
+}
+
+/**
+ * Result of a range query and the tier it was served from
+ */
+data class SeriesQueryResult(
+    val metric: String,
+    val tier: SeriesTier,
+    val points: List<SeriesPoint>
+)
+
+/**
+ * Time-series engine for performance samples.
+ *
+ * Every metric is appended to an open block per tier; once a block's time span
+ * is complete it is compressed with [SeriesBlockCodec] and written as one row.
+ * Rollups are computed incrementally on append, so range queries read the
+ * coarsest tier that still gives enough points instead of scanning raw samples.
+ *
+ * Open blocks are written as rows too, by [flush] and together with every
+ * sealed block, and rewritten in place as they grow. The first call after a
+ * restart reloads them, and rebuilds each partial rollup bucket from the finer
+ * tier it aggregates, so a killed process loses at most the samples since the
+ * last write.
+ */
+@Singleton
+class PerformanceTimeSeries @Inject constructor(
+    private val performanceDao: PerformanceDao
+) {
+    private val mutex = Mutex()
+    private val series = HashMap<String, MetricSeries>()
+    private var restored = false
+
+    /**
+     * Append one sample of each metric taken at [timestamp]. Samples must arrive in
+     * time order per metric; out-of-order samples are dropped.
+     */
+    suspend fun append(timestamp: Long, values: Map<String, Double>) = mutex.withLock {
+        restore()
+        values.forEach { (metric, value) ->
+            if (value.isNaN()) return@forEach
+            series.getOrPut(metric) { MetricSeries(metric) }.append(timestamp, value)
+        }
+        // Sealed blocks go out with the open blocks of their series, so no tier is ever stored ahead of the tier it rolls up
+        val sealing = series.values.filter { it.hasSealedBlocks }
+        if (sealing.isNotEmpty()) write(sealing)
+    }
+
+    /**
+     * Series of [metric] over [fromTimestamp]..[toTimestamp] with at most
+     * [maxPoints] points, served from the finest tier that covers the range
+     */
+    suspend fun query(
+        metric: String,
+        fromTimestamp: Long,
+        toTimestamp: Long,
+        maxPoints: Int = DEFAULT_MAX_POINTS,
+        now: Long = System.currentTimeMillis()
+    ): SeriesQueryResult = mutex.withLock {
+        restore()
+        val tier = selectTier(fromTimestamp, toTimestamp, maxPoints, now)
+        val buckets = java.util.TreeMap<Long, SeriesPoint>()
+        val bucketMs = bucketWidth(tier, fromTimestamp, toTimestamp, maxPoints)
+
+        // Rollup buckets that start before the range still overlap it
+        val lowerBound = if (tier.isRollup) alignDown(fromTimestamp, tier.resolutionMs) else fromTimestamp
+
+        fun add(point: SeriesPoint) {
+            if (point.timestamp < lowerBound || point.timestamp > toTimestamp) return
+            val key = if (bucketMs > 0) alignDown(point.timestamp, bucketMs) else point.timestamp
+            val keyed = point.copy(timestamp = key)
+            buckets[key] = buckets[key]?.merge(keyed) ?: keyed
+        }
+
+        // The open block's row is an older copy of the points held in memory
+        val openRowId = series[metric]?.openRowId(tier) ?: 0L
+        performanceDao.getSeriesBlocks(metric, tier.name, fromTimestamp, toTimestamp).forEach { block ->
+            if (block.id == openRowId) return@forEach
+            try {
+                decodePoints(tier, SeriesBlockCodec.decode(block.data)).forEach(::add)
+            } catch (e: IllegalArgumentException) {
+                Logger.w("Skipping unreadable series block ${block.id} of $metric", e)
+            }
+        }
+        series[metric]?.pendingPoints(tier)?.forEach(::add)
+
+        SeriesQueryResult(metric, tier, buckets.values.toList())
+    }
+
+    /**
+     * Write every open block that changed since it was last written. Called
+     * periodically and when the app leaves the foreground, since the process
+     * can be killed without notice from then on.
+     */
+    suspend fun flush() = mutex.withLock {
+        restore()
+        write(series.values)
+    }
+
+    /**
+     * Drop blocks older than each tier's retention. [rawRetentionMs] can shorten
+     * the raw tier's retention.
+     */
+    suspend fun applyRetention(now: Long, rawRetentionMs: Long = SeriesTier.RAW.retentionMs) {
+        SeriesTier.values().forEach { tier ->
+            val retention = if (tier == SeriesTier.RAW) minOf(rawRetentionMs, tier.retentionMs) else tier.retentionMs
+            performanceDao.deleteSeriesBlocksBefore(tier.name, now - retention)
+        }
+    }
+
+    /**
+     * Reload the newest block of every metric and tier as its open block, once
+     * per process
+     */
+    private suspend fun restore() {
+        if (restored) return
+        performanceDao.getLatestSeriesBlocks().groupBy { it.metric }.forEach { (metric, blocks) ->
+            series[metric] = MetricSeries(metric).apply { restore(blocks) }
+        }
+        restored = true
+    }
+
+    /**
+     * Write the sealed and changed open blocks of [targets] in one transaction
+     */
+    private suspend fun write(targets: Collection<MetricSeries>) {
+        val writes = targets.flatMap { it.pendingWrites() }
+        if (writes.isEmpty()) return
+        val ids = performanceDao.insertSeriesBlocks(writes.map { it.first })
+        writes.forEachIndexed { index, (_, builder) -> builder?.markWritten(ids[index]) }
+        targets.forEach { it.clearSealed() }
+    }
+
+    private fun selectTier(fromTimestamp: Long, toTimestamp: Long, maxPoints: Int, now: Long): SeriesTier {
+        val span = (toTimestamp - fromTimestamp).coerceAtLeast(0L)
+        return SeriesTier.values().firstOrNull { tier ->
+            fromTimestamp >= now - tier.retentionMs && span / tier.resolutionMs <= maxPoints
+        } ?: SeriesTier.values().firstOrNull { fromTimestamp >= now - it.retentionMs && it.isRollup }
+            ?: SeriesTier.DAY
+    }
+
+    /**
+     * Extra downsampling width when the chosen tier still has too many points
+     */
+    private fun bucketWidth(tier: SeriesTier, fromTimestamp: Long, toTimestamp: Long, maxPoints: Int): Long {
+        val span = (toTimestamp - fromTimestamp).coerceAtLeast(0L)
+        if (span / tier.resolutionMs <= maxPoints) return 0L
+        val width = (span + maxPoints - 1) / maxPoints
+        return alignUp(width, tier.resolutionMs)
+    }
+
+    /**
+     * Per-metric state: one open block per tier and one rollup accumulator per
+     * rollup tier
+     */
+    private inner class MetricSeries(val metric: String) {
+        private val blocks = SeriesTier.values().associateWith { BlockBuilder(it) }
+        private val rollups = SeriesTier.values().filter { it.isRollup }.map { RollupAccumulator(this, it) }
+        private val sealed = ArrayList<PerformanceSeriesBlockEntity>()
+        private var lastTimestamp = Long.MIN_VALUE
+
+        val hasSealedBlocks: Boolean get() = sealed.isNotEmpty()
+
+        fun append(timestamp: Long, value: Double) {
+            if (timestamp < lastTimestamp) return
+            lastTimestamp = timestamp
+            addPoint(SeriesTier.RAW, SeriesPoint(timestamp, 1, value, value, value))
+        }
+
+        fun addPoint(tier: SeriesTier, point: SeriesPoint) {
+            val builder = blocks.getValue(tier)
+            if (builder.size > 0 && alignDown(point.timestamp, tier.blockSpanMs) != builder.windowStart) {
+                seal(tier)
+            }
+            builder.add(point)
+            // Feed the next coarser tier
+            rollups.firstOrNull { it.tier.ordinal == tier.ordinal + 1 }?.add(point)
+        }
+
+        private fun seal(tier: SeriesTier) {
+            val builder = blocks.getValue(tier)
+            // A reloaded block nothing was added to is already stored as is
+            if (builder.isDirty || builder.rowId == 0L) sealed += builder.toEntity(metric)
+            builder.clear()
+        }
+
+        /**
+         * Sealed blocks, then every open block changed since it was last
+         * written, with the builder that takes the row id of each open one
+         */
+        fun pendingWrites(): List<Pair<PerformanceSeriesBlockEntity, BlockBuilder?>> {
+            return sealed.map { it to null } + blocks.values.filter { it.isDirty }.map { it.toEntity(metric) to it }
+        }
+
+        fun clearSealed() {
+            sealed.clear()
+        }
+
+        fun openRowId(tier: SeriesTier): Long = blocks.getValue(tier).rowId
+
+        /**
+         * Take [latest], the newest stored block of each tier, as the open
+         * blocks. A rollup bucket is only added to its tier once the finer
+         * tier moves past it, so each partial bucket is exactly the finer
+         * tier's points since the bucket start.
+         */
+        suspend fun restore(latest: List<PerformanceSeriesBlockEntity>) {
+            latest.forEach { block ->
+                val tier = SeriesTier.values().firstOrNull { it.name == block.tier } ?: return@forEach
+                val points = readPoints(tier, block) ?: return@forEach
+                blocks.getValue(tier).restore(block.id, points)
+            }
+            blocks.getValue(SeriesTier.RAW).let { raw -> if (raw.size > 0) lastTimestamp = raw.lastTimestamp }
+
+            rollups.forEach { rollup ->
+                val finer = blocks.getValue(SeriesTier.values()[rollup.tier.ordinal - 1])
+                if (finer.size == 0) return@forEach
+                val bucket = alignDown(finer.lastTimestamp, rollup.tier.resolutionMs)
+                val stored = performanceDao.getSeriesBlocks(metric, finer.tier.name, bucket, Long.MAX_VALUE)
+                    .filter { it.id != finer.rowId }
+                    .flatMap { readPoints(finer.tier, it).orEmpty() }
+                rollup.restore(bucket, (stored + finer.points()).filter { it.timestamp >= bucket })
+            }
+        }
+
+        fun pendingPoints(tier: SeriesTier): List<SeriesPoint> {
+            val open = blocks.getValue(tier).points()
+            // Partial buckets of this and every finer rollup tier have not reached this tier yet
+            val partials = rollups
+                .filter { it.tier.ordinal <= tier.ordinal }
+                .mapNotNull { it.pending() }
+                .map { it.copy(timestamp = alignDown(it.timestamp, tier.resolutionMs)) }
+            return open + partials
+        }
+
+        private fun readPoints(tier: SeriesTier, block: PerformanceSeriesBlockEntity): List<SeriesPoint>? = try {
+            decodePoints(tier, SeriesBlockCodec.decode(block.data))
+        } catch (e: IllegalArgumentException) {
+            Logger.w("Skipping unreadable series block ${block.id} of $metric", e)
+            null
+        }
+    }
+
+    /**
+     * Aggregates points of the next finer tier into buckets of [tier]
+     */
+    private class RollupAccumulator(private val owner: MetricSeries, val tier: SeriesTier) {
+        private var current: SeriesPoint? = null
+
+        fun add(point: SeriesPoint) {
+            val bucket = alignDown(point.timestamp, tier.resolutionMs)
+            val open = current
+            current = when {
+                open == null -> point.copy(timestamp = bucket)
+                open.timestamp == bucket -> open.merge(point)
+                else -> {
+                    owner.addPoint(tier, open)
+                    point.copy(timestamp = bucket)
+                }
+            }
+        }
+
+        fun pending(): SeriesPoint? = current
+
+        fun restore(bucket: Long, points: List<SeriesPoint>) {
+            current = points.map { it.copy(timestamp = bucket) }.reduceOrNull(SeriesPoint::merge)
+        }
+    }
+
+    /**
+     * Open, uncompressed block of one tier
+     */
+    private class BlockBuilder(val tier: SeriesTier) {
+        private var timestamps = LongArray(INITIAL_CAPACITY)
+        private val columns = Array(if (tier.isRollup) ROLLUP_COLUMNS else 1) { DoubleArray(INITIAL_CAPACITY) }
+        var size = 0
+            private set
+        var windowStart = 0L
+            private set
+
+        // Row holding this block's last written copy, 0 until it is first written
+        var rowId = 0L
+            private set
+        var isDirty = false
+            private set
+
+        val firstTimestamp: Long get() = timestamps[0]
+        val lastTimestamp: Long get() = timestamps[size - 1]
+
+        fun add(point: SeriesPoint) {
+            if (size == 0) windowStart = alignDown(point.timestamp, tier.blockSpanMs)
+            if (size == timestamps.size) grow()
+            timestamps[size] = point.timestamp
+            if (tier.isRollup) {
+                columns[0][size] = point.count.toDouble()
+                columns[1][size] = point.min
+                columns[2][size] = point.max
+                columns[3][size] = point.sum
+            } else {
+                columns[0][size] = point.sum
+            }
+            size++
+            isDirty = true
+        }
+
+        fun toEntity(metric: String) = PerformanceSeriesBlockEntity(
+            id = rowId,
+            metric = metric,
+            tier = tier.name,
+            startTimestamp = firstTimestamp,
+            endTimestamp = lastTimestamp,
+            pointCount = size,
+            data = SeriesBlockCodec.encode(timestamps, columns.toList(), size)
+        )
+
+        fun markWritten(id: Long) {
+            rowId = id
+            isDirty = false
+        }
+
+        fun restore(id: Long, stored: List<SeriesPoint>) {
+            clear()
+            stored.forEach(::add)
+            markWritten(id)
+        }
+
+        fun points(): List<SeriesPoint> = List(size) { pointAt(tier, timestamps, columns.toList(), it) }
+
+        fun clear() {
+            size = 0
+            rowId = 0L
+            isDirty = false
+        }
+
+        private fun grow() {
+            val capacity = timestamps.size * 2
+            timestamps = timestamps.copyOf(capacity)
+            for (i in columns.indices) columns[i] = columns[i].copyOf(capacity)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_POINTS = 500
+        private const val INITIAL_CAPACITY = 64
+        private const val ROLLUP_COLUMNS = 4
+
+        /**
+         * Blocks of every tier for the time-ordered raw [samples] of [metric],
+         * as appending them would have stored them. Rollup buckets the finer
+         * tier has not moved past yet are left out; they are rebuilt from that
+         * tier on restore. Used to carry over samples stored before the series
+         * table existed.
+         */
+        fun blocksOf(metric: String, samples: List<SeriesPoint>): List<PerformanceSeriesBlockEntity> {
+            val result = ArrayList<PerformanceSeriesBlockEntity>()
+            var finer = samples
+            SeriesTier.values().forEach { tier ->
+                val points = if (!tier.isRollup) finer else {
+                    val open = finer.lastOrNull()?.let { alignDown(it.timestamp, tier.resolutionMs) } ?: return result
+                    finer.filter { it.timestamp < open }
+                        .groupBy { alignDown(it.timestamp, tier.resolutionMs) }
+                        .map { (bucket, bucketPoints) -> bucketPoints.map { it.copy(timestamp = bucket) }.reduce(SeriesPoint::merge) }
+                }
+                val builder = BlockBuilder(tier)
+                points.forEach { point ->
+                    if (builder.size > 0 && alignDown(point.timestamp, tier.blockSpanMs) != builder.windowStart) {
+                        result += builder.toEntity(metric)
+                        builder.clear()
+                    }
+                    builder.add(point)
+                }
+                if (builder.size > 0) result += builder.toEntity(metric)
+                finer = points
+            }
+            return result
+        }
+
+        private fun decodePoints(tier: SeriesTier, block: DecodedBlock): List<SeriesPoint> =
+            List(block.timestamps.size) { pointAt(tier, block.timestamps, block.columns, it) }
+
+        private fun pointAt(tier: SeriesTier, timestamps: LongArray, columns: List<DoubleArray>, index: Int): SeriesPoint {
+            return if (tier.isRollup) {
+                SeriesPoint(timestamps[index], columns[0][index].toLong(), columns[1][index], columns[2][index], columns[3][index])
+            } else {
+                val value = columns[0][index]
+                SeriesPoint(timestamps[index], 1, value, value, value)
+            }
+        }
+
+        private fun alignDown(timestamp: Long, unit: Long): Long = Math.floorDiv(timestamp, unit) * unit
+
+        private fun alignUp(value: Long, unit: Long): Long = ((value + unit - 1) / unit) * unit
+    }
+}
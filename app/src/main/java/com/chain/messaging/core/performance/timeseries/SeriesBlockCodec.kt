@@ -0,0 +1,195 @@
+package com.chain.messaging.core.performance.timeseries
+
+/**
+ * Gorilla-style compression for blocks of time-series points.
+ *
+ * Timestamps are stored as delta-of-deltas, so a steady sampling interval costs
+ * one bit per point. Each value column is XOR-ed against its previous value and
+ * only the meaningful bits are written, so slowly changing gauges cost a few bits.
+ * A block holds one timestamp stream and any number of value columns sharing it:
+ * raw series use one column, rollups use count/min/max/sum.
+ */
+object SeriesBlockCodec {
+
+    private const val FORMAT_VERSION = 1
+
+    fun encode(timestamps: LongArray, columns: List<DoubleArray>, size: Int = timestamps.size): ByteArray {
+        require(columns.all { it.size >= size }) { "Every column needs $size values" }
+        val writer = BitWriter(estimatedBytes = 16 + size * (1 + columns.size * 2))
+        writer.write(FORMAT_VERSION.toLong(), 8)
+        writer.write(columns.size.toLong(), 8)
+        writer.write(size.toLong(), 32)
+        if (size == 0) return writer.toByteArray()
+
+        // Timestamps
+        writer.write(timestamps[0], 64)
+        var previousTimestamp = timestamps[0]
+        var previousDelta = 0L
+        for (i in 1 until size) {
+            val delta = timestamps[i] - previousTimestamp
+            writeDeltaOfDelta(writer, delta - previousDelta)
+            previousDelta = delta
+            previousTimestamp = timestamps[i]
+        }
+
+        // Value columns
+        for (column in columns) {
+            var previousBits = column[0].toRawBits()
+            writer.write(previousBits, 64)
+            var previousLeading = -1
+            var previousTrailing = 0
+            for (i in 1 until size) {
+                val bits = column[i].toRawBits()
+                val xor = bits xor previousBits
+                previousBits = bits
+                if (xor == 0L) {
+                    writer.writeBit(false)
+                    continue
+                }
+                writer.writeBit(true)
+                val leading = minOf(java.lang.Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS)
+                val trailing = java.lang.Long.numberOfTrailingZeros(xor)
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    // Fits in the previous meaningful window
+                    writer.writeBit(false)
+                    writer.write(xor ushr previousTrailing, 64 - previousLeading - previousTrailing)
+                } else {
+                    val meaningful = 64 - leading - trailing
+                    writer.writeBit(true)
+                    writer.write(leading.toLong(), 5)
+                    writer.write((meaningful - 1).toLong(), 6)
+                    writer.write(xor ushr trailing, meaningful)
+                    previousLeading = leading
+                    previousTrailing = trailing
+                }
+            }
+        }
+        return writer.toByteArray()
+    }
+
+    fun decode(data: ByteArray): DecodedBlock {
+        val reader = BitReader(data)
+        val version = reader.read(8).toInt()
+        require(version == FORMAT_VERSION) { "Unsupported series block version $version" }
+        val columnCount = reader.read(8).toInt()
+        val size = reader.read(32).toInt()
+        val timestamps = LongArray(size)
+        val columns = List(columnCount) { DoubleArray(size) }
+        if (size == 0) return DecodedBlock(timestamps, columns)
+
+        timestamps[0] = reader.read(64)
+        var previousDelta = 0L
+        for (i in 1 until size) {
+            val delta = previousDelta + readDeltaOfDelta(reader)
+            timestamps[i] = timestamps[i - 1] + delta
+            previousDelta = delta
+        }
+
+        for (column in columns) {
+            var previousBits = reader.read(64)
+            column[0] = Double.fromBits(previousBits)
+            var previousLeading = 0
+            var previousTrailing = 0
+            for (i in 1 until size) {
+                if (reader.readBit()) {
+                    val xor = if (!reader.readBit()) {
+                        reader.read(64 - previousLeading - previousTrailing) shl previousTrailing
+                    } else {
+                        previousLeading = reader.read(5).toInt()
+                        val meaningful = reader.read(6).toInt() + 1
+                        previousTrailing = 64 - previousLeading - meaningful
+                        reader.read(meaningful) shl previousTrailing
+                    }
+                    previousBits = previousBits xor xor
+                }
+                column[i] = Double.fromBits(previousBits)
+            }
+        }
+        return DecodedBlock(timestamps, columns)
+    }
+
+    private fun writeDeltaOfDelta(writer: BitWriter, dod: Long) {
+        when (dod) {
+            0L -> writer.writeBit(false)
+            in -64L..63L -> { writer.write(0b10, 2); writer.write(dod, 7) }
+            in -256L..255L -> { writer.write(0b110, 3); writer.write(dod, 9) }
+            in -2_048L..2_047L -> { writer.write(0b1110, 4); writer.write(dod, 12) }
+            else -> { writer.write(0b1111, 4); writer.write(dod, 64) }
+        }
+    }
+
+    private fun readDeltaOfDelta(reader: BitReader): Long {
+        if (!reader.readBit()) return 0L
+        if (!reader.readBit()) return reader.readSigned(7)
+        if (!reader.readBit()) return reader.readSigned(9)
+        if (!reader.readBit()) return reader.readSigned(12)
+        return reader.read(64)
+    }
+
+    // Leading-zero counts are stored in 5 bits
+    private const val MAX_LEADING_ZEROS = 31
+}
+
+/**
+ * Points of one decoded block; [columns] are parallel to [timestamps]
+ */
+class DecodedBlock(
+    val timestamps: LongArray,
+    val columns: List<DoubleArray>
+)
+
+internal class BitWriter(estimatedBytes: Int) {
+    private var buffer = ByteArray(maxOf(estimatedBytes, 16))
+    private var bitPosition = 0L
+
+    fun writeBit(bit: Boolean) {
+        val byteIndex = (bitPosition ushr 3).toInt()
+        ensureCapacity(byteIndex + 1)
+        if (bit) {
+            buffer[byteIndex] = (buffer[byteIndex].toInt() or (0x80 ushr (bitPosition and 7).toInt())).toByte()
+        }
+        bitPosition++
+    }
+
+    /**
+     * Write the low [bitCount] bits of [value], most significant first
+     */
+    fun write(value: Long, bitCount: Int) {
+        for (shift in bitCount - 1 downTo 0) {
+            writeBit((value ushr shift) and 1L == 1L)
+        }
+    }
+
+    fun toByteArray(): ByteArray = buffer.copyOf(((bitPosition + 7) ushr 3).toInt())
+
+    private fun ensureCapacity(bytes: Int) {
+        if (bytes > buffer.size) buffer = buffer.copyOf(maxOf(bytes, buffer.size * 2))
+    }
+}
+
+internal class BitReader(private val data: ByteArray) {
+    private var bitPosition = 0L
+
+    fun readBit(): Boolean {
+        val byteIndex = (bitPosition ushr 3).toInt()
+        require(byteIndex < data.size) { "Truncated series block" }
+        val bit = (data[byteIndex].toInt() ushr (7 - (bitPosition and 7).toInt())) and 1
+        bitPosition++
+        return bit == 1
+    }
+
+    fun read(bitCount: Int): Long {
+        var value = 0L
+        repeat(bitCount) { value = (value shl 1) or (if (readBit()) 1L else 0L) }
+        return value
+    }
+
+    /**
+     * Read a two's complement value of [bitCount] bits
+     */
+    fun readSigned(bitCount: Int): Long {
+        val value = read(bitCount)
+        val shift = 64 - bitCount
+        return (value shl shift) shr shift
+    }
+}
@@ -2,9 +2,13 @@ package com.chain.messaging.core.privacy
 
 import android.content.Context
 import android.content.SharedPreferences
+import com.chain.messaging.domain.model.ExpiredMessage
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.repository.MessageRepository
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
@@ -14,26 +18,35 @@ import javax.inject.Singleton
 
 /**
  * Implementation of DisappearingMessageManager that handles automatic message deletion.
+ * Deletion and expiry warnings are driven by a [MessageExpiryEngine].
  */
 @Singleton
 class DisappearingMessageManagerImpl @Inject constructor(
     @ApplicationContext private val context: Context,
     private val messageRepository: MessageRepository,
     private val blockchainManager: BlockchainManager,
-    private val screenshotDetector: ScreenshotDetector
+    private val screenshotDetector: ScreenshotDetector,
+    expiryAlarm: ExpiryAlarm,
+    metricsRegistry: MetricsRegistry
 ) : DisappearingMessageManager {
     
     private val preferences: SharedPreferences = context.getSharedPreferences(
         "disappearing_messages", Context.MODE_PRIVATE
     )
     
+    private val log = Logger.of(LogSubsystem.STORAGE)
     private val cleanupScope = CoroutineScope(Dispatchers.IO + SupervisorJob())
-    private var cleanupJob: Job? = null
     
-    private val _messagesAboutToExpire = MutableStateFlow<List<Message>>(emptyList())
+    private val expiryEngine = MessageExpiryEngine(
+        messageRepository = messageRepository,
+        alarm = expiryAlarm,
+        metricsRegistry = metricsRegistry,
+        scope = cleanupScope,
+        // Announced off the cycle so network time does not hold up local deletion
+        onExpired = { expired -> cleanupScope.launch { deleteFromAllDevices(expired) } }
+    )
     
     companion object {
-        private const val CLEANUP_INTERVAL_MS = 30_000L // 30 seconds
         private const val TIMER_PREFIX = "timer_"
     }
     
@@ -43,9 +56,6 @@ class DisappearingMessageManagerImpl @Inject constructor(
         
         // Initialize screenshot detection for disappearing messages
         screenshotDetector.startMonitoring()
-        
-        // Initial update of messages about to expire
-        updateMessagesAboutToExpire()
     }
     
     override suspend fun setDisappearingMessageTimer(chatId: String, timerDuration: Long?) {
@@ -70,6 +80,7 @@ class DisappearingMessageManagerImpl @Inject constructor(
         
         return if (timer != null) {
             val expiresAt = Date(System.currentTimeMillis() + timer)
+            expiryEngine.onExpiryScheduled(expiresAt.time)
             message.copy(
                 disappearingMessageTimer = timer,
                 expiresAt = expiresAt,
@@ -81,52 +92,27 @@ class DisappearingMessageManagerImpl @Inject constructor(
     }
     
     override suspend fun startCleanupService() {
-        stopCleanupService() // Stop any existing service
-        
-        cleanupJob = cleanupScope.launch {
-            while (isActive) {
-                try {
-                    cleanupExpiredMessages()
-                    updateMessagesAboutToExpire()
-                    delay(CLEANUP_INTERVAL_MS)
-                } catch (e: Exception) {
-                    // Log error but continue cleanup service
-                    delay(CLEANUP_INTERVAL_MS)
-                }
-            }
-        }
+        // Expired messages must disappear even while the app is in the background;
+        // the engine's alarm covers the time the process is not running
+        expiryEngine.start()
     }
     
     override suspend fun stopCleanupService() {
-        cleanupJob?.cancel()
-        cleanupJob = null
+        expiryEngine.stop()
         
         // Stop screenshot detection when cleanup service stops
         screenshotDetector.stopMonitoring()
     }
     
     override suspend fun cleanupExpiredMessages(): Int {
-        val currentTime = System.currentTimeMillis()
-        val expiredMessages = messageRepository.getExpiredMessages(currentTime)
-        
-        var deletedCount = 0
-        expiredMessages.forEach { message ->
-            try {
-                // Delete from local database
-                messageRepository.deleteMessage(message.id)
-                
-                // Notify blockchain to remove from all devices
-                deleteMessageFromAllDevices(message.id)
-                
-                deletedCount++
-            } catch (e: Exception) {
-                // Log error but continue with other messages
-            }
-        }
-        
-        return deletedCount
+        return expiryEngine.runCycle()
     }
     
+    /**
+     * Lateness and per-cycle cost of message expiry
+     */
+    fun expiryStats(): ExpiryStats = expiryEngine.stats()
+    
     override suspend fun deleteMessageFromAllDevices(messageId: String) {
         try {
             // Send deletion transaction to blockchain
@@ -138,21 +124,22 @@ class DisappearingMessageManagerImpl @Inject constructor(
     }
     
     override fun observeMessagesAboutToExpire(warningThresholdMs: Long): Flow<List<Message>> {
-        return _messagesAboutToExpire.asStateFlow()
+        return expiryEngine.messagesAboutToExpire
     }
     
     override fun getAvailableTimerOptions(): List<Long> {
         return DisappearingMessageTimers.ALL_OPTIONS
     }
     
-    private suspend fun updateMessagesAboutToExpire(warningThresholdMs: Long = 60000) {
-        val currentTime = System.currentTimeMillis()
-        val warningTime = currentTime + warningThresholdMs
-        
-        val messagesAboutToExpire = messageRepository.getMessagesExpiringBefore(warningTime)
-            .filter { it.isDisappearing && it.expiresAt != null }
-        
-        _messagesAboutToExpire.value = messagesAboutToExpire
+    private suspend fun deleteFromAllDevices(expired: List<ExpiredMessage>) {
+        expired.forEach { message ->
+            try {
+                deleteMessageFromAllDevices(message.id)
+            } catch (e: Exception) {
+                // The message is already gone locally; other devices run their own timers
+                log.w(e) { "Failed to announce deletion of expired message ${message.id}" }
+            }
+        }
     }
 }
 
@@ -165,6 +165,6 @@ class DisappearingMessageNotificationServiceImpl @Inject constructor(
     
     private fun getCurrentUserId(): String {
         // This would get the current user ID from session/auth
-        return "current_user"
+        return Message.LOCAL_SENDER_ID
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.chain.messaging.core.privacy
+
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.os.Build
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import dagger.hilt.EntryPoint
+import dagger.hilt.InstallIn
+import dagger.hilt.android.EntryPointAccessors
+import dagger.hilt.components.SingletonComponent
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+
+/**
+ * Wakes the app for the next message expiry when the process is not running
+ */
+interface ExpiryAlarm {
+
+    /**
+     * Replace any pending alarm with one at [atMillis], wall-clock time
+     */
+    fun schedule(atMillis: Long)
+
+    fun cancel()
+
+    companion object {
+        val NONE: ExpiryAlarm = object : ExpiryAlarm {
+            override fun schedule(atMillis: Long) = Unit
+            override fun cancel() = Unit
+        }
+    }
+}
+
+/**
+ * [ExpiryAlarm] on [AlarmManager]. The alarm is exact and fires in Doze when
+ * the app may schedule exact alarms, and falls back to an inexact alarm that
+ * the system can defer otherwise.
+ */
+class AlarmManagerExpiryAlarm(private val context: Context) : ExpiryAlarm {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    private val alarmManager = context.getSystemService(AlarmManager::class.java)
+
+    override fun schedule(atMillis: Long) {
+        val operation = pendingIntent()
+        try {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, atMillis, operation)
+                return
+            }
+        } catch (e: SecurityException) {
+            // The exact-alarm grant was revoked between the check and the call
+            log.w(e) { "Exact expiry alarm denied, falling back to inexact" }
+        }
+        alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, atMillis, operation)
+    }
+
+    override fun cancel() {
+        alarmManager.cancel(pendingIntent())
+    }
+
+    private fun pendingIntent(): PendingIntent = PendingIntent.getBroadcast(
+        context,
+        REQUEST_CODE,
+        Intent(context, MessageExpiryReceiver::class.java).setAction(MessageExpiryReceiver.ACTION_EXPIRE),
+        PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+    )
+
+    private companion object {
+        const val REQUEST_CODE = 4_901
+    }
+}
+
+/**
+ * Runs an expiry cycle when the expiry alarm fires, which also arms the alarm
+ * for the following deadline
+ */
+class MessageExpiryReceiver : BroadcastReceiver() {
+
+    companion object {
+        const val ACTION_EXPIRE = "com.chain.messaging.action.EXPIRE_MESSAGES"
+    }
+
+    override fun onReceive(context: Context, intent: Intent) {
+        if (intent.action != ACTION_EXPIRE) return
+        runExpiryCycle(context, goAsync())
+    }
+}
+
+/**
+ * Re-arms the expiry alarm, which AlarmManager forgets on reboot and app
+ * update and which a wall-clock change can leave far off, by running a
+ * cycle that deletes whatever expired meanwhile and arms the next deadline
+ */
+class ExpiryRescheduleReceiver : BroadcastReceiver() {
+
+    override fun onReceive(context: Context, intent: Intent) {
+        if (intent.action !in RESCHEDULE_ACTIONS) return
+        runExpiryCycle(context, goAsync())
+    }
+
+    private companion object {
+        val RESCHEDULE_ACTIONS = setOf(
+            Intent.ACTION_BOOT_COMPLETED,
+            Intent.ACTION_MY_PACKAGE_REPLACED,
+            Intent.ACTION_TIME_CHANGED
+        )
+    }
+}
+
+private fun runExpiryCycle(context: Context, result: BroadcastReceiver.PendingResult) {
+    // Get dependencies through EntryPoint since this is a manifest-registered receiver
+    val entryPoint = EntryPointAccessors.fromApplication(
+        context.applicationContext,
+        MessageExpiryReceiverEntryPoint::class.java
+    )
+    val disappearingMessageManager = entryPoint.getDisappearingMessageManager()
+
+    CoroutineScope(SupervisorJob() + Dispatchers.IO).launch {
+        try {
+            disappearingMessageManager.cleanupExpiredMessages()
+        } finally {
+            result.finish()
+        }
+    }
+}
+
+/**
+ * Entry point for accessing dependencies in the expiry receivers
+ */
+@EntryPoint
+@InstallIn(SingletonComponent::class)
+interface MessageExpiryReceiverEntryPoint {
+    fun getDisappearingMessageManager(): DisappearingMessageManager
+}
@@ -0,0 +1,215 @@
+package com.chain.messaging.core.privacy
+
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.LatencySummary
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.domain.model.ExpiredMessage
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.repository.MessageRepository
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
+import kotlinx.coroutines.yield
+
+/**
+ * Expiry totals with lateness and per-cycle cost
+ */
+data class ExpiryStats(
+    val cycles: Long,
+    val deleted: Long,
+    // How long after its expiresAt each message was deleted
+    val lateness: LatencySummary,
+    val cycleCost: LatencySummary,
+    val nextExpiryAt: Long?
+)
+
+/**
+ * Deletes disappearing messages at their deadline.
+ *
+ * A cycle deletes expired messages earliest first in batches of [batchSize],
+ * each one indexed select and delete, refreshes the about-to-expire warnings
+ * and then asks the expiresAt index for the next deadline. Between cycles the
+ * engine sleeps until the earlier of the next expiry and the next time a
+ * message enters the [warningThresholdMs] warning window, so warnings and
+ * deletions run off the same timeline and nothing polls. Only deletions arm
+ * the [ExpiryAlarm], which brings the app back for them if it is not running.
+ *
+ * [onExpiryScheduled] wakes the engine early when a new message expires
+ * before the current plan.
+ */
+class MessageExpiryEngine(
+    private val messageRepository: MessageRepository,
+    private val alarm: ExpiryAlarm,
+    metricsRegistry: MetricsRegistry,
+    private val scope: CoroutineScope,
+    private val onExpired: suspend (List<ExpiredMessage>) -> Unit = {},
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    private val warningThresholdMs: Long = DEFAULT_WARNING_THRESHOLD_MS
+) {
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    private val latenessLatency = metricsRegistry.histogram(HotPathMetrics.EXPIRY_LATENESS)
+    private val cycleLatency = metricsRegistry.histogram(HotPathMetrics.EXPIRY_CYCLE)
+    private val deletedCount = metricsRegistry.counter(HotPathMetrics.EXPIRY_DELETED)
+    private val cycleCount = metricsRegistry.counter(HotPathMetrics.EXPIRY_CYCLES)
+
+    private val cycleLock = Mutex()
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private var loop: Job? = null
+
+    // Written by cycles under cycleLock, read by onExpiryScheduled
+    @Volatile private var nextExpiryAt: Long? = null
+    @Volatile private var nextWarningAt: Long? = null
+    @Volatile private var armedAt: Long? = null
+
+    // Earliest deadline announced since the last cycle, possibly not saved yet
+    private val hintLock = Any()
+    private var hintedExpiryAt: Long? = null
+    private var warningsStale = true
+
+    private val _messagesAboutToExpire = MutableStateFlow<List<Message>>(emptyList())
+    val messagesAboutToExpire: StateFlow<List<Message>> = _messagesAboutToExpire.asStateFlow()
+
+    fun start() {
+        if (loop?.isActive == true) return
+        loop = scope.launch { runCycles() }
+    }
+
+    /**
+     * Stop the in-process timeline. The alarm stays armed so messages still
+     * expire while the app is gone.
+     */
+    fun stop() {
+        loop?.cancel()
+        loop = null
+    }
+
+    /**
+     * A message expiring at [expiresAt] is about to be saved
+     */
+    fun onExpiryScheduled(expiresAt: Long) {
+        synchronized(hintLock) {
+            hintedExpiryAt = minOf(expiresAt, hintedExpiryAt ?: expiresAt)
+            if (expiresAt - warningThresholdMs <= clock()) warningsStale = true
+        }
+        val plannedWake = plannedWakeAt()
+        if (plannedWake == null || expiresAt - warningThresholdMs < plannedWake) wakeups.trySend(Unit)
+    }
+
+    /**
+     * Delete what has expired, refresh warnings and plan the next wake.
+     * Returns the number of messages deleted.
+     */
+    suspend fun runCycle(): Int = cycleLock.withLock {
+        val start = System.nanoTime()
+        val now = clock()
+        var deleted = 0
+        while (true) {
+            val batch = messageRepository.deleteExpiredBatch(now, batchSize)
+            if (batch.isEmpty()) break
+            val deletedAt = clock()
+            batch.forEach { latenessLatency.record((deletedAt - it.expiresAt).coerceAtLeast(0L) * 1_000L) }
+            deleted += batch.size
+            deletedCount.add(batch.size.toLong())
+            try {
+                onExpired(batch)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                log.w(e) { "Expired message callback failed for ${batch.size} messages" }
+            }
+            if (batch.size < batchSize) break
+            // Let other database work in between batches of a large backlog
+            yield()
+        }
+
+        val hint: Long?
+        val staleHint: Boolean
+        synchronized(hintLock) {
+            hint = hintedExpiryAt?.takeIf { it > now }
+            hintedExpiryAt = hint
+            staleHint = warningsStale
+            warningsStale = false
+        }
+        val warningDue = nextWarningAt?.let { it <= now } ?: false
+        if (deleted > 0 || warningDue || staleHint) {
+            _messagesAboutToExpire.value = messageRepository.getMessagesExpiringBefore(now + warningThresholdMs)
+                .filter { it.isDisappearing && it.expiresAt != null }
+        }
+
+        val stored = messageRepository.getNextExpiryAfter(now)
+        nextExpiryAt = listOfNotNull(stored, hint).minOrNull()
+        nextWarningAt = messageRepository.getNextExpiryAfter(now + warningThresholdMs)?.minus(warningThresholdMs)
+        armAlarm(stored)
+
+        cycleCount.increment()
+        cycleLatency.recordSince(start)
+        deleted
+    }
+
+    fun stats(): ExpiryStats = ExpiryStats(
+        cycles = cycleCount.sum(),
+        deleted = deletedCount.sum(),
+        lateness = latenessLatency.snapshot().toSummary(),
+        cycleCost = cycleLatency.snapshot().toSummary(),
+        nextExpiryAt = nextExpiryAt
+    )
+
+    private suspend fun runCycles() {
+        while (true) {
+            try {
+                runCycle()
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                log.e(e) { "Message expiry cycle failed" }
+                delay(RETRY_DELAY_MS)
+                continue
+            }
+            val wakeAt = plannedWakeAt()
+            val woken = if (wakeAt == null) {
+                wakeups.receive()
+                true
+            } else {
+                // Re-check now and then in case the wall clock was changed
+                val sleepMs = (wakeAt - clock()).coerceIn(0L, MAX_SLEEP_MS)
+                withTimeoutOrNull(sleepMs) { wakeups.receive() } != null
+            }
+            // An announced message is saved right after, so give it time to land
+            if (woken) delay(SETTLE_MS)
+        }
+    }
+
+    private fun plannedWakeAt(): Long? = listOfNotNull(nextExpiryAt, nextWarningAt).minOrNull()
+
+    private fun armAlarm(expiryAt: Long?) {
+        if (expiryAt == armedAt) return
+        try {
+            if (expiryAt == null) alarm.cancel() else alarm.schedule(expiryAt)
+            armedAt = expiryAt
+        } catch (e: Exception) {
+            log.w(e) { "Failed to arm message expiry alarm" }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_BATCH_SIZE = 200
+        const val DEFAULT_WARNING_THRESHOLD_MS = 60_000L
+
+        private const val SETTLE_MS = 250L
+        private const val RETRY_DELAY_MS = 5_000L
+        private const val MAX_SLEEP_MS = 15 * 60_000L
+    }
+}
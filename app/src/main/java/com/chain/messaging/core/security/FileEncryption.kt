@@ -3,12 +3,19 @@ package com.chain.messaging.core.security
 import android.security.keystore.KeyGenParameterSpec
 import android.security.keystore.KeyProperties
 import android.util.Base64
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
 import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
+import java.io.InputStream
+import java.io.OutputStream
 import java.security.KeyStore
 import java.security.SecureRandom
 import javax.crypto.Cipher
+import javax.crypto.CipherInputStream
+import javax.crypto.CipherOutputStream
 import javax.crypto.KeyGenerator
 import javax.crypto.SecretKey
 import javax.crypto.spec.GCMParameterSpec
@@ -30,6 +37,7 @@ class FileEncryption @Inject constructor() {
         private const val GCM_TAG_LENGTH = 16
         private const val KEY_LENGTH = 256
         private const val BUFFER_SIZE = 8192
+        private const val STREAM_BUFFER_SIZE = 64 * 1024
     }
     
     private val keyStore: KeyStore by lazy {
@@ -82,6 +90,40 @@ class FileEncryption @Inject constructor() {
         return Base64.encodeToString(keyBytes, Base64.DEFAULT)
     }
     
+    /**
+     * Open a stream that encrypts everything written to it into [destFile], in
+     * the same format as [encryptFile], so callers can produce content and
+     * encrypt it in one pass. Closing the stream writes the authentication tag.
+     */
+    fun openEncryptedOutput(destFile: File): EncryptedOutput {
+        val keyBytes = ByteArray(KEY_LENGTH / 8)
+        secureRandom.nextBytes(keyBytes)
+        return openEncryptedOutput(destFile, keyBytes)
+    }
+    
+    /**
+     * As [openEncryptedOutput], with a caller-supplied 256-bit key, e.g. one
+     * derived from the content for deduplicated storage. The IV is still random.
+     */
+    fun openEncryptedOutput(destFile: File, keyBytes: ByteArray): EncryptedOutput {
+        require(keyBytes.size == KEY_LENGTH / 8) { "File keys must be ${KEY_LENGTH / 8} bytes" }
+        val cipher = Cipher.getInstance(TRANSFORMATION)
+        cipher.init(Cipher.ENCRYPT_MODE, SecretKeySpec(keyBytes, "AES"))
+        
+        val fileStream = FileOutputStream(destFile)
+        try {
+            fileStream.write(cipher.iv)
+        } catch (e: Exception) {
+            fileStream.close()
+            throw e
+        }
+        
+        return EncryptedOutput(
+            stream = BufferedOutputStream(CipherOutputStream(fileStream, cipher), STREAM_BUFFER_SIZE),
+            encryptionKey = Base64.encodeToString(keyBytes, Base64.DEFAULT)
+        )
+    }
+    
     /**
      * Decrypt a file using the provided encryption key
      */
@@ -127,6 +169,30 @@ class FileEncryption @Inject constructor() {
         }
     }
     
+    /**
+     * Open a stream that decrypts [encryptedFile] as it is read, so callers can
+     * consume content without a plaintext copy on disk. GCM authenticates at the
+     * end of the stream: a tampered file fails on the final read, and providers
+     * may hold back plaintext until then, so this suits display-size content.
+     */
+    fun openDecryptedInput(encryptedFile: File, encryptionKey: String): InputStream {
+        return openDecryptedInput(encryptedFile, Base64.decode(encryptionKey, Base64.DEFAULT))
+    }
+    
+    fun openDecryptedInput(encryptedFile: File, keyBytes: ByteArray): InputStream {
+        val fileStream = FileInputStream(encryptedFile)
+        try {
+            val iv = ByteArray(GCM_IV_LENGTH)
+            DataInputStream(fileStream).readFully(iv)
+            val cipher = Cipher.getInstance(TRANSFORMATION)
+            cipher.init(Cipher.DECRYPT_MODE, SecretKeySpec(keyBytes, "AES"), GCMParameterSpec(GCM_TAG_LENGTH * 8, iv))
+            return BufferedInputStream(CipherInputStream(fileStream, cipher), STREAM_BUFFER_SIZE)
+        } catch (e: Exception) {
+            fileStream.close()
+            throw e
+        }
+    }
+    
     /**
      * Generate a secure encryption key for file encryption
      */
@@ -238,4 +304,12 @@ class FileEncryption @Inject constructor() {
             false
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Encrypting sink returned by [FileEncryption.openEncryptedOutput]
+ */
+class EncryptedOutput(
+    val stream: OutputStream,
+    val encryptionKey: String
+)
@@ -112,6 +112,23 @@ class IdentityVerificationManager @Inject constructor(
         }
     }
 
+    /**
+     * Generate safety numbers for many contacts in parallel, keyed by user ID
+     */
+    suspend fun generateSafetyNumbers(remoteIdentityKeys: Map<String, IdentityKey>): Result<Map<String, String>> {
+        return try {
+            val safetyNumbers = safetyNumberGenerator.generateSafetyNumbers(
+                localIdentityKey = keyManager.getIdentityKey(),
+                localUserId = keyManager.getRegistrationId().toString(),
+                remoteIdentityKeys = remoteIdentityKeys
+            )
+            
+            Result.success(safetyNumbers)
+        } catch (e: Exception) {
+            Result.failure(SecurityException("Failed to generate safety numbers", e))
+        }
+    }
+
     /**
      * Verify safety number manually entered by user
      */
@@ -159,6 +176,7 @@ class IdentityVerificationManager @Inject constructor(
     ) {
         // Mark user as unverified
         markUserAsUnverified(userId)
+        safetyNumberGenerator.invalidate(userId)
         
         // Create security alert
         val alert = SecurityAlert.IdentityKeyChanged(
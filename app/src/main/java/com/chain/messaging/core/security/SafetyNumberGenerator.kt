@@ -1,5 +1,9 @@
 package com.chain.messaging.core.security
 
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import org.signal.libsignal.protocol.IdentityKey
 import java.security.MessageDigest
 import javax.inject.Inject
@@ -8,6 +12,12 @@ import javax.inject.Singleton
 /**
  * Generates safety numbers for manual identity verification
  * Based on Signal Protocol's safety number generation
+ *
+ * Each side's fingerprint depends only on its own identity key and user ID, so
+ * fingerprints are cached per identity and the local half is computed once for
+ * every contact. Finished safety numbers are cached keyed by both identities.
+ * The key bytes are part of every cache key, so a changed identity key never
+ * hits a stale entry; [invalidate] only frees the entries it left behind.
  */
 @Singleton
 class SafetyNumberGenerator @Inject constructor() {
@@ -16,7 +26,16 @@ class SafetyNumberGenerator @Inject constructor() {
         private const val SAFETY_NUMBER_LENGTH = 60
         private const val CHUNK_SIZE = 5
         private const val ITERATIONS = 5200
+        private const val DIGEST_LENGTH = 32
+        private const val MAX_CACHED_FINGERPRINTS = 1_024
+        private const val MAX_CACHED_SAFETY_NUMBERS = 512
     }
+
+    // MessageDigest is not thread-safe; one reusable instance per thread
+    private val sha256 = ThreadLocal.withInitial { MessageDigest.getInstance("SHA-256") }
+
+    private val fingerprints = lruMap<IdentityId, ByteArray>(MAX_CACHED_FINGERPRINTS)
+    private val safetyNumbers = lruMap<Pair<IdentityId, IdentityId>, String>(MAX_CACHED_SAFETY_NUMBERS)
     
     /**
      * Generate a safety number for two users
@@ -27,8 +46,13 @@ class SafetyNumberGenerator @Inject constructor() {
         localUserId: String,
         remoteUserId: String
     ): String {
-        val localFingerprint = generateFingerprint(localIdentityKey, localUserId)
-        val remoteFingerprint = generateFingerprint(remoteIdentityKey, remoteUserId)
+        val local = IdentityId(localIdentityKey.serialize(), localUserId)
+        val remote = IdentityId(remoteIdentityKey.serialize(), remoteUserId)
+        val key = local to remote
+        synchronized(safetyNumbers) { safetyNumbers[key] }?.let { return it }
+
+        val localFingerprint = fingerprintOf(local)
+        val remoteFingerprint = fingerprintOf(remote)
         
         // Combine fingerprints in a deterministic order
         val combinedFingerprint = if (localFingerprint.contentCompareTo(remoteFingerprint) < 0) {
@@ -37,23 +61,76 @@ class SafetyNumberGenerator @Inject constructor() {
             remoteFingerprint + localFingerprint
         }
         
-        return formatSafetyNumber(combinedFingerprint)
+        val safetyNumber = formatSafetyNumber(combinedFingerprint)
+        synchronized(safetyNumbers) { safetyNumbers[key] = safetyNumber }
+        return safetyNumber
+    }
+
+    /**
+     * Generate safety numbers for many contacts at once, keyed by contact user ID.
+     * The local fingerprint is computed once and contacts are split across the
+     * default dispatcher's threads.
+     */
+    suspend fun generateSafetyNumbers(
+        localIdentityKey: IdentityKey,
+        localUserId: String,
+        remoteIdentityKeys: Map<String, IdentityKey>
+    ): Map<String, String> = coroutineScope {
+        if (remoteIdentityKeys.isEmpty()) return@coroutineScope emptyMap()
+        fingerprintOf(IdentityId(localIdentityKey.serialize(), localUserId))
+
+        val workers = Runtime.getRuntime().availableProcessors().coerceAtLeast(1)
+        val chunkSize = (remoteIdentityKeys.size + workers - 1) / workers
+        remoteIdentityKeys.entries.chunked(chunkSize).map { chunk ->
+            async(Dispatchers.Default) {
+                chunk.map { (remoteUserId, remoteIdentityKey) ->
+                    remoteUserId to generateSafetyNumber(localIdentityKey, remoteIdentityKey, localUserId, remoteUserId)
+                }
+            }
+        }.awaitAll().flatten().toMap()
+    }
+
+    /**
+     * Drop cached fingerprints and safety numbers involving [userId], e.g. after
+     * their identity key changed
+     */
+    fun invalidate(userId: String) {
+        synchronized(fingerprints) { fingerprints.keys.removeAll { it.userId == userId } }
+        synchronized(safetyNumbers) {
+            safetyNumbers.keys.removeAll { (local, remote) -> local.userId == userId || remote.userId == userId }
+        }
+    }
+
+    fun clearCache() {
+        synchronized(fingerprints) { fingerprints.clear() }
+        synchronized(safetyNumbers) { safetyNumbers.clear() }
+    }
+
+    private fun fingerprintOf(identity: IdentityId): ByteArray {
+        synchronized(fingerprints) { fingerprints[identity] }?.let { return it }
+        // Concurrent misses for the same identity compute the same bytes; last one wins
+        val fingerprint = generateFingerprint(identity.keyBytes, identity.userId)
+        synchronized(fingerprints) { fingerprints[identity] = fingerprint }
+        return fingerprint
     }
     
     /**
      * Generate fingerprint for a single identity
      */
-    private fun generateFingerprint(identityKey: IdentityKey, userId: String): ByteArray {
-        val publicKeyBytes = identityKey.serialize()
+    private fun generateFingerprint(publicKeyBytes: ByteArray, userId: String): ByteArray {
         val userIdBytes = userId.toByteArray(Charsets.UTF_8)
         
         // Combine identity key and user ID
         val combined = publicKeyBytes + userIdBytes
         
-        // Use PBKDF2-like iteration to strengthen the fingerprint
-        var hash = combined
-        repeat(ITERATIONS) {
-            hash = MessageDigest.getInstance("SHA-256").digest(hash)
+        // Use PBKDF2-like iteration to strengthen the fingerprint, hashing in place
+        val digest = sha256.get()
+        val hash = ByteArray(DIGEST_LENGTH)
+        digest.update(combined)
+        digest.digest(hash, 0, DIGEST_LENGTH)
+        repeat(ITERATIONS - 1) {
+            digest.update(hash)
+            digest.digest(hash, 0, DIGEST_LENGTH)
         }
         
         return hash
@@ -157,4 +234,21 @@ private fun ByteArray.contentCompareTo(other: ByteArray): Int {
         if (comparison != 0) return comparison
     }
     return this.size.compareTo(other.size)
-}
\ No newline at end of file
+}
+
+/**
+ * Cache key for one side of a safety number
+ */
+private class IdentityId(val keyBytes: ByteArray, val userId: String) {
+    private val hash = 31 * keyBytes.contentHashCode() + userId.hashCode()
+
+    override fun equals(other: Any?): Boolean =
+        other is IdentityId && userId == other.userId && keyBytes.contentEquals(other.keyBytes)
+
+    override fun hashCode(): Int = hash
+}
+
+private fun <K, V> lruMap(maxEntries: Int): LinkedHashMap<K, V> =
+    object : LinkedHashMap<K, V>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>): Boolean = size > maxEntries
+    }
@@ -0,0 +1,39 @@
+package com.chain.messaging.core.security
+
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+
+/**
+ * A small file replaced atomically through a cipher that authenticates the
+ * file name, such as androidx EncryptedFile. New content is written under the
+ * final name inside a staging directory and then renamed into place, so the
+ * name the cipher bound at write time is the one it is read back under.
+ */
+internal class SecurityCheckpointFile(
+    private val directory: File,
+    private val name: String,
+    private val openOutput: (File) -> OutputStream,
+    private val openInput: (File) -> InputStream
+) {
+
+    private val file: File get() = File(directory, name)
+
+    fun read(): String? {
+        val target = file
+        if (!target.exists()) return null
+        return openInput(target).use { it.readBytes().decodeToString() }
+    }
+
+    fun write(text: String) {
+        val staged = File(File(directory, "$name.staging").apply { mkdirs() }, name)
+        // EncryptedFile refuses to overwrite, so clear anything an interrupted write left
+        staged.delete()
+        openOutput(staged).use { it.write(text.encodeToByteArray()) }
+        if (!staged.renameTo(file)) {
+            staged.delete()
+            throw IOException("Could not move $name into place")
+        }
+    }
+}
@@ -45,6 +45,11 @@ interface SecurityEventStorage {
      */
     suspend fun deleteEventsOlderThan(cutoffDate: LocalDateTime)
     
+    /**
+     * Gets the number of stored events
+     */
+    suspend fun getEventCount(): Int
+    
     /**
      * Gets event count by type
      */
@@ -54,9 +54,13 @@ class SecurityEventStorageImpl @Inject constructor(
         securityEventDao.deleteEventsOlderThan(cutoffDate)
     }
     
+    override suspend fun getEventCount(): Int {
+        return securityEventDao.getEventCount()
+    }
+    
     override suspend fun getEventCountByType(): Map<SecurityEventType, Int> {
         return securityEventDao.getEventCountByType()
-            .mapKeys { SecurityEventType.valueOf(it.key) }
+            .associate { SecurityEventType.valueOf(it.type) to it.count }
     }
     
     private fun SecurityEventEntity.toDomainModel(): SecurityEvent {
@@ -0,0 +1,393 @@
+package com.chain.messaging.core.security
+
+import com.chain.messaging.domain.model.SecurityEvent
+import com.chain.messaging.domain.model.SecurityEventType
+import com.chain.messaging.domain.model.SecuritySeverity
+import kotlinx.serialization.Serializable
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.EnumMap
+
+/**
+ * Event counts over a sliding window, kept as a ring of fixed-width buckets.
+ * Adding is O(1) and a sum reads each bucket once, independent of how many
+ * events were counted. Window edges are bucket-aligned.
+ */
+class SlidingWindowCounter(
+    val bucketMs: Long,
+    val bucketCount: Int
+) {
+    private val starts = LongArray(bucketCount) { NO_BUCKET }
+    private val counts = LongArray(bucketCount)
+
+    val spanMs: Long get() = bucketMs * bucketCount
+
+    fun add(timestampMs: Long, amount: Long = 1L) {
+        val bucket = Math.floorDiv(timestampMs, bucketMs)
+        val index = Math.floorMod(bucket, bucketCount.toLong()).toInt()
+        val start = bucket * bucketMs
+        when {
+            starts[index] == start -> counts[index] += amount
+            // Older than what the ring still holds
+            starts[index] > start -> return
+            else -> {
+                starts[index] = start
+                counts[index] = amount
+            }
+        }
+    }
+
+    /**
+     * Events in the [windowMs] ending at [nowMs]
+     */
+    fun sum(nowMs: Long, windowMs: Long = spanMs): Long {
+        val from = nowMs - windowMs
+        var total = 0L
+        for (i in 0 until bucketCount) {
+            val start = starts[i]
+            if (start != NO_BUCKET && start + bucketMs > from && start <= nowMs) total += counts[i]
+        }
+        return total
+    }
+
+    fun isEmpty(nowMs: Long): Boolean = sum(nowMs) == 0L
+
+    internal fun export(nowMs: Long): List<Long> {
+        val pairs = ArrayList<Long>()
+        for (i in 0 until bucketCount) {
+            if (starts[i] != NO_BUCKET && starts[i] + spanMs > nowMs && counts[i] > 0) {
+                pairs += starts[i]
+                pairs += counts[i]
+            }
+        }
+        return pairs
+    }
+
+    internal fun import(pairs: List<Long>) {
+        for (i in 0 until pairs.size - 1 step 2) add(pairs[i], pairs[i + 1])
+    }
+
+    private companion object {
+        const val NO_BUCKET = Long.MIN_VALUE
+    }
+}
+
+/**
+ * Minute buckets for the last hour and hour buckets for the last week
+ */
+class EventWindow {
+    private val minutes = SlidingWindowCounter(MINUTE_MS, 60)
+    private val hours = SlidingWindowCounter(HOUR_MS, 7 * 24)
+
+    fun add(timestampMs: Long) {
+        minutes.add(timestampMs)
+        hours.add(timestampMs)
+    }
+
+    fun count(nowMs: Long, windowMs: Long): Long =
+        if (windowMs <= minutes.spanMs) minutes.sum(nowMs, windowMs) else hours.sum(nowMs, windowMs)
+
+    fun isEmpty(nowMs: Long): Boolean = hours.isEmpty(nowMs)
+
+    internal fun checkpoint(nowMs: Long) = WindowCheckpoint(minutes.export(nowMs), hours.export(nowMs))
+
+    internal fun restore(checkpoint: WindowCheckpoint) {
+        minutes.import(checkpoint.minutes)
+        hours.import(checkpoint.hours)
+    }
+
+    companion object {
+        const val MINUTE_MS = 60_000L
+        const val HOUR_MS = 60 * MINUTE_MS
+        const val DAY_MS = 24 * HOUR_MS
+        const val WEEK_MS = 7 * DAY_MS
+    }
+}
+
+/**
+ * Pattern detected while events were streamed in
+ */
+data class SecurityDetection(
+    val type: SecurityEventType,
+    val severity: SecuritySeverity,
+    val description: String,
+    val metadata: Map<String, Any>,
+    val userId: String? = null
+)
+
+/**
+ * Aggregates the monitoring dashboard and recommendations need, read from the
+ * windows without touching stored events
+ */
+data class SecurityWindowSnapshot(
+    val totalEvents: Long,
+    val eventsLastHour: Long,
+    val eventsLast24Hours: Long,
+    val eventsLast7Days: Long,
+    val eventsByType: Map<SecurityEventType, Int>,
+    val recentEventsByType: Map<SecurityEventType, Long>,
+    val recentEventsBySeverity: Map<SecuritySeverity, Long>,
+    val lastCriticalEventAt: LocalDateTime?
+)
+
+/**
+ * Incremental analytics over reported security events.
+ *
+ * Each event updates sliding-window counters per event type, severity, source
+ * (device or IP address) and user, and the detection rules are evaluated
+ * against those counters as the event arrives, so the cost of monitoring is
+ * proportional to new events rather than to stored history. State can be
+ * checkpointed and restored so a restart only replays events after the last
+ * checkpoint.
+ */
+class SecurityEventWindows(
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val zone: ZoneId = ZoneId.systemDefault()
+) {
+    private val total = EventWindow()
+    private val byType = EnumMap<SecurityEventType, EventWindow>(SecurityEventType::class.java)
+    private val bySeverity = EnumMap<SecuritySeverity, EventWindow>(SecuritySeverity::class.java)
+    private val bySource = HashMap<String, EnumMap<SecurityEventType, EventWindow>>()
+    private val byUser = HashMap<String, EnumMap<SecurityEventType, EventWindow>>()
+    private val typeTotals = EnumMap<SecurityEventType, Long>(SecurityEventType::class.java)
+    private val lastFired = HashMap<String, Long>()
+    private var totalEvents = 0L
+    private var lastCriticalAt: Long? = null
+
+    @Volatile
+    var isDirty = false
+        private set
+
+    /**
+     * Count [event] and return the patterns it completes
+     */
+    @Synchronized
+    fun record(event: SecurityEvent, evaluate: Boolean = true): List<SecurityDetection> {
+        val timestamp = toMillis(event.timestamp)
+        count(event, timestamp)
+        return if (evaluate) evaluate(event, clock()) else emptyList()
+    }
+
+    /**
+     * Seed lifetime totals, e.g. from storage before the first checkpoint exists
+     */
+    @Synchronized
+    fun seedTotals(storedEvents: Long, storedByType: Map<SecurityEventType, Int>) {
+        totalEvents = maxOf(totalEvents, storedEvents)
+        storedByType.forEach { (type, count) -> typeTotals[type] = maxOf(typeTotals[type] ?: 0L, count.toLong()) }
+    }
+
+    @Synchronized
+    fun snapshot(): SecurityWindowSnapshot {
+        val now = clock()
+        return SecurityWindowSnapshot(
+            totalEvents = totalEvents,
+            eventsLastHour = total.count(now, EventWindow.HOUR_MS),
+            eventsLast24Hours = total.count(now, EventWindow.DAY_MS),
+            eventsLast7Days = total.count(now, EventWindow.WEEK_MS),
+            eventsByType = typeTotals.mapValues { it.value.toInt() },
+            recentEventsByType = byType.mapValues { it.value.count(now, EventWindow.WEEK_MS) }.filterValues { it > 0 },
+            recentEventsBySeverity = bySeverity.mapValues { it.value.count(now, EventWindow.WEEK_MS) },
+            lastCriticalEventAt = lastCriticalAt?.let { LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(it), zone) }
+        )
+    }
+
+    /**
+     * Events of [type] in the [windowMs] before now
+     */
+    @Synchronized
+    fun count(type: SecurityEventType, windowMs: Long): Long = byType[type]?.count(clock(), windowMs) ?: 0L
+
+    /**
+     * Forget sources and users with no events left in any window
+     */
+    @Synchronized
+    fun prune() {
+        val now = clock()
+        listOf(bySource, byUser).forEach { keyed ->
+            keyed.values.removeAll { windows -> windows.values.all { it.isEmpty(now) } }
+        }
+        lastFired.values.removeAll { now - it >= DETECTION_COOLDOWN_MS }
+    }
+
+    @Synchronized
+    fun checkpoint(): SecurityWindowsCheckpoint {
+        val now = clock()
+        isDirty = false
+        fun keyed(map: HashMap<String, EnumMap<SecurityEventType, EventWindow>>) =
+            map.mapValues { (_, windows) -> windows.entries.associate { it.key.name to it.value.checkpoint(now) } }
+        return SecurityWindowsCheckpoint(
+            savedAt = now,
+            totalEvents = totalEvents,
+            lastCriticalAt = lastCriticalAt,
+            typeTotals = typeTotals.mapKeys { it.key.name },
+            total = total.checkpoint(now),
+            byType = byType.entries.associate { it.key.name to it.value.checkpoint(now) },
+            bySeverity = bySeverity.entries.associate { it.key.name to it.value.checkpoint(now) },
+            bySource = keyed(bySource),
+            byUser = keyed(byUser)
+        )
+    }
+
+    @Synchronized
+    fun restore(checkpoint: SecurityWindowsCheckpoint) {
+        totalEvents = checkpoint.totalEvents
+        lastCriticalAt = checkpoint.lastCriticalAt
+        checkpoint.typeTotals.forEach { (name, count) -> enumOrNull<SecurityEventType>(name)?.let { typeTotals[it] = count } }
+        total.restore(checkpoint.total)
+        checkpoint.byType.forEach { (name, window) ->
+            enumOrNull<SecurityEventType>(name)?.let { byType.window(it).restore(window) }
+        }
+        checkpoint.bySeverity.forEach { (name, window) ->
+            enumOrNull<SecuritySeverity>(name)?.let { bySeverity.window(it).restore(window) }
+        }
+        fun restoreKeyed(target: HashMap<String, EnumMap<SecurityEventType, EventWindow>>, source: Map<String, Map<String, WindowCheckpoint>>) {
+            source.forEach { (key, windows) ->
+                windows.forEach { (name, window) ->
+                    enumOrNull<SecurityEventType>(name)?.let { keyedWindows(target, key).window(it).restore(window) }
+                }
+            }
+        }
+        restoreKeyed(bySource, checkpoint.bySource)
+        restoreKeyed(byUser, checkpoint.byUser)
+    }
+
+    private fun count(event: SecurityEvent, timestamp: Long) {
+        totalEvents++
+        isDirty = true
+        typeTotals[event.type] = (typeTotals[event.type] ?: 0L) + 1
+        total.add(timestamp)
+        byType.window(event.type).add(timestamp)
+        bySeverity.window(event.severity).add(timestamp)
+        sourceOf(event)?.let { keyedWindows(bySource, it).window(event.type).add(timestamp) }
+        event.userId?.let { keyedWindows(byUser, it).window(event.type).add(timestamp) }
+        if (event.severity == SecuritySeverity.CRITICAL && timestamp > (lastCriticalAt ?: Long.MIN_VALUE)) {
+            lastCriticalAt = timestamp
+        }
+    }
+
+    private fun evaluate(event: SecurityEvent, now: Long): List<SecurityDetection> {
+        val detections = ArrayList<SecurityDetection>(0)
+
+        if (event.type == SecurityEventType.FAILED_LOGIN_ATTEMPT) {
+            // Per attacker first, so a single noisy source is named in the alert
+            val source = sourceOf(event)
+            val scoped = listOfNotNull(
+                source?.let { "source:$it" to bySource[it]?.get(event.type) },
+                event.userId?.let { "user:$it" to byUser[it]?.get(event.type) },
+                "all" to byType[event.type]
+            )
+            scoped.firstOrNull { (_, window) -> (window?.count(now, EventWindow.HOUR_MS) ?: 0L) >= MAX_FAILED_ATTEMPTS }
+                ?.let { (scope, window) ->
+                    val attempts = window!!.count(now, EventWindow.HOUR_MS)
+                    fire("brute_force:$scope", now, detections) {
+                        SecurityDetection(
+                            type = SecurityEventType.UNAUTHORIZED_ACCESS_ATTEMPT,
+                            severity = SecuritySeverity.HIGH,
+                            description = "Multiple failed login attempts detected ($attempts attempts)",
+                            metadata = mapOfNotNull("failed_attempts" to attempts.toInt(), "source" to source),
+                            userId = event.userId
+                        )
+                    }
+                }
+        }
+
+        if (event.type in KEY_EVENT_TYPES) {
+            val keyEvents = KEY_EVENT_TYPES.sumOf { byType[it]?.count(now, EventWindow.HOUR_MS) ?: 0L }
+            if (keyEvents >= KEY_COMPROMISE_THRESHOLD) {
+                fire("key_compromise", now, detections) {
+                    SecurityDetection(
+                        type = SecurityEventType.POTENTIAL_MITM_ATTACK,
+                        severity = SecuritySeverity.CRITICAL,
+                        description = "Potential key compromise detected",
+                        metadata = mapOf("key_events" to keyEvents.toInt()),
+                        userId = event.userId
+                    )
+                }
+            }
+        }
+
+        val lastHour = total.count(now, EventWindow.HOUR_MS)
+        if (lastHour > SUSPICIOUS_ACTIVITY_THRESHOLD) {
+            fire("unusual_activity", now, detections) {
+                SecurityDetection(
+                    type = SecurityEventType.SUSPICIOUS_NETWORK_ACTIVITY,
+                    severity = SecuritySeverity.MEDIUM,
+                    description = "Unusual activity pattern detected ($lastHour events in last hour)",
+                    metadata = mapOf("event_count" to lastHour.toInt())
+                )
+            }
+        }
+        return detections
+    }
+
+    /**
+     * Add a detection unless the same rule fired within the cooldown, which
+     * also stops derived events from re-triggering their own rule
+     */
+    private inline fun fire(
+        key: String,
+        now: Long,
+        detections: MutableList<SecurityDetection>,
+        detection: () -> SecurityDetection
+    ) {
+        val last = lastFired[key]
+        if (last != null && now - last < DETECTION_COOLDOWN_MS) return
+        lastFired[key] = now
+        detections += detection()
+    }
+
+    private fun keyedWindows(
+        map: HashMap<String, EnumMap<SecurityEventType, EventWindow>>,
+        key: String
+    ): EnumMap<SecurityEventType, EventWindow> {
+        map[key]?.let { return it }
+        if (map.size >= MAX_TRACKED_KEYS) prune()
+        return map.getOrPut(key) { EnumMap(SecurityEventType::class.java) }
+    }
+
+    private fun toMillis(timestamp: LocalDateTime): Long = timestamp.atZone(zone).toInstant().toEpochMilli()
+
+    companion object {
+        const val MAX_FAILED_ATTEMPTS = 5
+        const val SUSPICIOUS_ACTIVITY_THRESHOLD = 10
+        const val KEY_COMPROMISE_THRESHOLD = 3
+        const val DETECTION_COOLDOWN_MS = EventWindow.HOUR_MS
+        private const val MAX_TRACKED_KEYS = 10_000
+
+        private val KEY_EVENT_TYPES = setOf(
+            SecurityEventType.SUSPICIOUS_KEY_CHANGE,
+            SecurityEventType.KEY_VERIFICATION_FAILURE
+        )
+
+        private fun sourceOf(event: SecurityEvent): String? = event.deviceId ?: event.ipAddress
+
+        private fun <K : Enum<K>> EnumMap<K, EventWindow>.window(key: K): EventWindow = getOrPut(key) { EventWindow() }
+
+        private inline fun <reified T : Enum<T>> enumOrNull(name: String): T? =
+            enumValues<T>().firstOrNull { it.name == name }
+
+        private fun mapOfNotNull(vararg pairs: Pair<String, Any?>): Map<String, Any> =
+            pairs.mapNotNull { (key, value) -> value?.let { key to it } }.toMap()
+    }
+}
+
+@Serializable
+data class WindowCheckpoint(
+    // Flattened (bucket start, count) pairs
+    val minutes: List<Long> = emptyList(),
+    val hours: List<Long> = emptyList()
+)
+
+@Serializable
+data class SecurityWindowsCheckpoint(
+    val savedAt: Long,
+    val totalEvents: Long,
+    val lastCriticalAt: Long? = null,
+    val typeTotals: Map<String, Long> = emptyMap(),
+    val total: WindowCheckpoint = WindowCheckpoint(),
+    val byType: Map<String, WindowCheckpoint> = emptyMap(),
+    val bySeverity: Map<String, WindowCheckpoint> = emptyMap(),
+    val bySource: Map<String, Map<String, WindowCheckpoint>> = emptyMap(),
+    val byUser: Map<String, Map<String, WindowCheckpoint>> = emptyMap()
+)
@@ -2,6 +2,10 @@ package com.chain.messaging.core.security
 
 import android.content.Context
 import android.util.Log
+import androidx.security.crypto.EncryptedFile
+import androidx.security.crypto.MasterKey
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
 import com.chain.messaging.domain.model.SecurityAlert
 import com.chain.messaging.domain.model.SecurityEvent
 import com.chain.messaging.domain.model.SecurityEventType
@@ -12,13 +16,25 @@ import com.chain.messaging.domain.model.SecuritySeverity
 import com.chain.messaging.domain.model.SecurityStatus
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.serialization.json.Json
+import java.io.File
+import java.time.Instant
 import java.time.LocalDateTime
-import java.time.temporal.ChronoUnit
+import java.time.ZoneId
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
+/**
+ * Security monitoring backed by [SecurityEventWindows]: reported events are
+ * evaluated as they arrive and metrics are read from in-memory windows, which
+ * are checkpointed to an EncryptedFile on the monitoring interval. Stored
+ * events are only read once per process, to replay what arrived after the
+ * last checkpoint.
+ */
 @Singleton
 class SecurityMonitoringManagerImpl @Inject constructor(
     private val context: Context,
@@ -31,12 +47,24 @@ class SecurityMonitoringManagerImpl @Inject constructor(
         private const val TAG = "SecurityMonitoring"
         private const val MONITORING_INTERVAL_MS = 30_000L // 30 seconds
         private const val EVENT_RETENTION_DAYS = 30L
-        private const val MAX_FAILED_ATTEMPTS = 5
-        private const val SUSPICIOUS_ACTIVITY_THRESHOLD = 10
+        private const val RECENT_FAILED_LOGINS_THRESHOLD = 3
+        private const val CHECKPOINT_FILE = "security_windows.enc"
+        // Plaintext checkpoint written by earlier versions
+        private const val LEGACY_CHECKPOINT_FILE = "security_windows.json"
+        
+        private val KEY_ISSUE_TYPES = listOf(
+            SecurityEventType.SUSPICIOUS_KEY_CHANGE,
+            SecurityEventType.KEY_VERIFICATION_FAILURE,
+            SecurityEventType.ENCRYPTION_FAILURE
+        )
+        private val NETWORK_ISSUE_TYPES = listOf(
+            SecurityEventType.SUSPICIOUS_NETWORK_ACTIVITY,
+            SecurityEventType.POTENTIAL_MITM_ATTACK
+        )
     }
     
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
-    private var monitoringJob: Job? = null
+    private var monitoringTask: ScheduledTask? = null
     
     private val _securityStatus = MutableStateFlow(
         SecurityStatus(
@@ -54,22 +82,29 @@ class SecurityMonitoringManagerImpl @Inject constructor(
     
     private val _securityAlerts = MutableSharedFlow<SecurityAlert>()
     private val activeAlerts = ConcurrentHashMap<String, SecurityAlert>()
-    private val eventCounters = ConcurrentHashMap<SecurityEventType, Int>()
+    
+    private val windows = SecurityEventWindows()
+    private val windowsMutex = Mutex()
+    @Volatile
+    private var windowsLoaded = false
+    private val checkpointJson = Json { ignoreUnknownKeys = true }
+    
+    private val masterKey: MasterKey by lazy {
+        MasterKey.Builder(context)
+            .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+            .build()
+    }
     
     override suspend fun startMonitoring() {
         Log.d(TAG, "Starting security monitoring")
         
-        monitoringJob?.cancel()
-        monitoringJob = scope.launch {
-            while (isActive) {
-                try {
-                    performSecurityScan()
-                    delay(MONITORING_INTERVAL_MS)
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error during security monitoring", e)
-                    delay(MONITORING_INTERVAL_MS * 2) // Back off on error
-                }
-            }
+        monitoringTask?.cancel()
+        monitoringTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "security-monitoring.scan",
+            intervalMs = MONITORING_INTERVAL_MS,
+            owner = scope
+        ) {
+            performSecurityScan()
         }
         
         // Start threat detection
@@ -81,18 +116,22 @@ class SecurityMonitoringManagerImpl @Inject constructor(
     
     override suspend fun stopMonitoring() {
         Log.d(TAG, "Stopping security monitoring")
-        monitoringJob?.cancel()
+        monitoringTask?.cancel()
+        monitoringTask = null
         threatDetector.stopDetection()
+        if (windows.isDirty) writeCheckpoint()
     }
     
     override suspend fun reportSecurityEvent(event: SecurityEvent) {
         Log.d(TAG, "Security event reported: ${event.type} - ${event.severity}")
         
+        ensureWindowsLoaded()
+        
         // Store the event
         securityEventStorage.storeEvent(event)
         
-        // Update counters
-        eventCounters[event.type] = (eventCounters[event.type] ?: 0) + 1
+        // Update windows and evaluate detection rules against them
+        val detections = windows.record(event)
         
         // Analyze threat level
         val threatLevel = analyzeThreatLevel(event)
@@ -109,6 +148,21 @@ class SecurityMonitoringManagerImpl @Inject constructor(
         
         // Update security status
         updateSecurityStatus()
+        
+        // Patterns completed by this event are reported as events of their own
+        detections.forEach { detection ->
+            reportSecurityEvent(
+                SecurityEvent(
+                    id = UUID.randomUUID().toString(),
+                    type = detection.type,
+                    timestamp = LocalDateTime.now(),
+                    severity = detection.severity,
+                    description = detection.description,
+                    metadata = detection.metadata,
+                    userId = detection.userId
+                )
+            )
+        }
     }
     
     override fun getSecurityStatusFlow(): StateFlow<SecurityStatus> = _securityStatus.asStateFlow()
@@ -140,24 +194,22 @@ class SecurityMonitoringManagerImpl @Inject constructor(
     override suspend fun getSecurityRecommendations(): List<SecurityRecommendation> {
         val recommendations = mutableListOf<SecurityRecommendation>()
         
-        // Analyze recent events for recommendations
-        val recentEvents = securityEventStorage.getEventsInTimeRange(
-            LocalDateTime.now().minusDays(7),
-            LocalDateTime.now()
-        )
+        // Analyze the last week's windows for recommendations
+        ensureWindowsLoaded()
+        val recentByType = windows.snapshot().recentEventsByType
         
         // Key management recommendations
-        if (hasKeyRelatedIssues(recentEvents)) {
+        if (KEY_ISSUE_TYPES.any { (recentByType[it] ?: 0L) > 0 }) {
             recommendations.add(SecurityRecommendation.UpdateKeys)
         }
         
         // Authentication recommendations
-        if (hasAuthenticationIssues(recentEvents)) {
+        if ((recentByType[SecurityEventType.FAILED_LOGIN_ATTEMPT] ?: 0L) >= RECENT_FAILED_LOGINS_THRESHOLD) {
             recommendations.add(SecurityRecommendation.EnableTwoFactor)
         }
         
         // Network security recommendations
-        if (hasNetworkSecurityIssues(recentEvents)) {
+        if (NETWORK_ISSUE_TYPES.any { (recentByType[it] ?: 0L) > 0 }) {
             recommendations.add(SecurityRecommendation.IncreaseSecurityMeasures)
         }
         
@@ -174,20 +226,12 @@ class SecurityMonitoringManagerImpl @Inject constructor(
     }
     
     override suspend fun getSecurityMetrics(): SecurityMetrics {
-        val now = LocalDateTime.now()
-        val last24Hours = now.minusDays(1)
-        val last7Days = now.minusDays(7)
-
-        val allEvents = securityEventStorage.getAllEvents()
-        val events24h = allEvents.filter { it.timestamp.isAfter(last24Hours) }
-        val events7d = allEvents.filter { it.timestamp.isAfter(last7Days) }
+        ensureWindowsLoaded()
+        val snapshot = windows.snapshot()
+        val totalEvents = snapshot.totalEvents.toInt()
+        val events24h = snapshot.eventsLast24Hours.toInt()
 
-        val lastBreachAttempt = allEvents
-            .filter { it.severity == SecuritySeverity.CRITICAL }
-            .maxByOrNull { it.timestamp }
-            ?.timestamp
-
-        val securityScore = calculateSecurityScore(allEvents)
+        val securityScore = calculateSecurityScore(snapshot.recentEventsBySeverity)
 
         // Calculate verification rate (percentage of verified contacts)
         val verifiedCount = _securityStatus.value.verifiedContacts
@@ -203,91 +247,109 @@ class SecurityMonitoringManagerImpl @Inject constructor(
             it.severity == SecuritySeverity.CRITICAL && !it.isAcknowledged
         }
         val threatLevel = when {
-            criticalCount > 0 || events24h.size > 20 -> com.chain.messaging.domain.model.ThreatLevel.HIGH
-            events24h.size > 10 -> com.chain.messaging.domain.model.ThreatLevel.MEDIUM
+            criticalCount > 0 || events24h > 20 -> com.chain.messaging.domain.model.ThreatLevel.HIGH
+            events24h > 10 -> com.chain.messaging.domain.model.ThreatLevel.MEDIUM
             else -> com.chain.messaging.domain.model.ThreatLevel.LOW
         }
 
         return SecurityMetrics(
-            totalAlerts = allEvents.size,
-            alertsLast24h = events24h.size,
-            alertsLast7d = events7d.size,
+            totalAlerts = totalEvents,
+            alertsLast24h = events24h,
+            alertsLast7d = snapshot.eventsLast7Days.toInt(),
             verificationRate = verificationRate,
             threatLevel = threatLevel,
             securityScore = securityScore,
-            totalEvents = allEvents.size,
-            eventsLast24Hours = events24h.size,
+            totalEvents = totalEvents,
+            eventsLast24Hours = events24h,
             criticalAlertsActive = criticalCount,
             averageResponseTime = calculateAverageResponseTime(),
-            lastBreachAttempt = lastBreachAttempt,
-            eventsByType = eventCounters.toMap()
+            lastBreachAttempt = snapshot.lastCriticalEventAt,
+            eventsByType = snapshot.eventsByType
         )
     }
     
     private suspend fun performSecurityScan() {
         val now = LocalDateTime.now()
         
-        // Check for suspicious patterns
-        val recentEvents = securityEventStorage.getEventsInTimeRange(
-            now.minusHours(1),
-            now
-        )
-        
-        // Detect potential attacks
-        detectBruteForceAttacks(recentEvents)
-        detectUnusualActivity(recentEvents)
-        detectKeyCompromise(recentEvents)
+        // Detection runs as events are reported; the scan only maintains state
+        ensureWindowsLoaded()
+        windows.prune()
+        if (windows.isDirty) writeCheckpoint()
         
         // Update scan time
         _securityStatus.value = _securityStatus.value.copy(lastScanTime = now)
     }
     
-    private suspend fun detectBruteForceAttacks(events: List<SecurityEvent>) {
-        val failedAttempts = events.count { it.type == SecurityEventType.FAILED_LOGIN_ATTEMPT }
-        
-        if (failedAttempts >= MAX_FAILED_ATTEMPTS) {
-            val event = SecurityEvent(
-                id = UUID.randomUUID().toString(),
-                type = SecurityEventType.UNAUTHORIZED_ACCESS_ATTEMPT,
-                timestamp = LocalDateTime.now(),
-                severity = SecuritySeverity.HIGH,
-                description = "Multiple failed login attempts detected ($failedAttempts attempts)",
-                metadata = mapOf("failed_attempts" to failedAttempts)
-            )
-            reportSecurityEvent(event)
+    /**
+     * Restore the windows from the last checkpoint and replay events stored
+     * after it; without a checkpoint, rebuild them from the last week of events
+     */
+    private suspend fun ensureWindowsLoaded() {
+        if (windowsLoaded) return
+        windowsMutex.withLock {
+            if (windowsLoaded) return
+            try {
+                val now = LocalDateTime.now()
+                val checkpoint = readCheckpoint()
+                if (checkpoint != null) {
+                    windows.restore(checkpoint)
+                    val savedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(checkpoint.savedAt), ZoneId.systemDefault())
+                    securityEventStorage.getEventsInTimeRange(savedAt, now)
+                        .forEach { windows.record(it, evaluate = false) }
+                } else {
+                    securityEventStorage.getEventsInTimeRange(now.minusDays(7), now)
+                        .forEach { windows.record(it, evaluate = false) }
+                    windows.seedTotals(
+                        storedEvents = securityEventStorage.getEventCount().toLong(),
+                        storedByType = securityEventStorage.getEventCountByType()
+                    )
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to load security event windows", e)
+            }
+            windowsLoaded = true
         }
     }
     
-    private suspend fun detectUnusualActivity(events: List<SecurityEvent>) {
-        if (events.size > SUSPICIOUS_ACTIVITY_THRESHOLD) {
-            val event = SecurityEvent(
-                id = UUID.randomUUID().toString(),
-                type = SecurityEventType.SUSPICIOUS_NETWORK_ACTIVITY,
-                timestamp = LocalDateTime.now(),
-                severity = SecuritySeverity.MEDIUM,
-                description = "Unusual activity pattern detected (${events.size} events in last hour)",
-                metadata = mapOf("event_count" to events.size)
-            )
-            reportSecurityEvent(event)
-        }
+    private fun checkpointFile(): SecurityCheckpointFile? = try {
+        SecurityCheckpointFile(
+            directory = context.filesDir,
+            name = CHECKPOINT_FILE,
+            openOutput = { file -> encryptedFile(file).openFileOutput() },
+            openInput = { file -> encryptedFile(file).openFileInput() }
+        )
+    } catch (e: Exception) {
+        null
+    }
+    
+    private fun encryptedFile(file: File): EncryptedFile {
+        return EncryptedFile.Builder(
+            context,
+            file,
+            masterKey,
+            EncryptedFile.FileEncryptionScheme.AES256_GCM_HKDF_4KB
+        ).build()
     }
     
-    private suspend fun detectKeyCompromise(events: List<SecurityEvent>) {
-        val keyEvents = events.filter { 
-            it.type == SecurityEventType.SUSPICIOUS_KEY_CHANGE || 
-            it.type == SecurityEventType.KEY_VERIFICATION_FAILURE 
+    private fun readCheckpoint(): SecurityWindowsCheckpoint? {
+        val checkpoint = checkpointFile() ?: return null
+        return try {
+            // The old plaintext checkpoint is not trusted; the events are replayed from storage instead
+            File(context.filesDir, LEGACY_CHECKPOINT_FILE).delete()
+            val text = checkpoint.read() ?: return null
+            checkpointJson.decodeFromString(SecurityWindowsCheckpoint.serializer(), text)
+        } catch (e: Exception) {
+            Log.w(TAG, "Discarding unreadable security checkpoint", e)
+            null
         }
-        
-        if (keyEvents.size >= 3) {
-            val event = SecurityEvent(
-                id = UUID.randomUUID().toString(),
-                type = SecurityEventType.POTENTIAL_MITM_ATTACK,
-                timestamp = LocalDateTime.now(),
-                severity = SecuritySeverity.CRITICAL,
-                description = "Potential key compromise detected",
-                metadata = mapOf("key_events" to keyEvents.size)
-            )
-            reportSecurityEvent(event)
+    }
+    
+    private fun writeCheckpoint() {
+        val checkpoint = checkpointFile() ?: return
+        try {
+            checkpoint.write(checkpointJson.encodeToString(SecurityWindowsCheckpoint.serializer(), windows.checkpoint()))
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to write security checkpoint", e)
         }
     }
     
@@ -409,39 +471,12 @@ class SecurityMonitoringManagerImpl @Inject constructor(
         securityEventStorage.deleteEventsOlderThan(cutoffDate)
     }
     
-    private fun hasKeyRelatedIssues(events: List<SecurityEvent>): Boolean {
-        return events.any { 
-            it.type in listOf(
-                SecurityEventType.SUSPICIOUS_KEY_CHANGE,
-                SecurityEventType.KEY_VERIFICATION_FAILURE,
-                SecurityEventType.ENCRYPTION_FAILURE
-            )
-        }
-    }
-    
-    private fun hasAuthenticationIssues(events: List<SecurityEvent>): Boolean {
-        return events.count { it.type == SecurityEventType.FAILED_LOGIN_ATTEMPT } >= 3
-    }
-    
-    private fun hasNetworkSecurityIssues(events: List<SecurityEvent>): Boolean {
-        return events.any { 
-            it.type in listOf(
-                SecurityEventType.SUSPICIOUS_NETWORK_ACTIVITY,
-                SecurityEventType.POTENTIAL_MITM_ATTACK
-            )
-        }
-    }
-    
-    private fun calculateSecurityScore(events: List<SecurityEvent>): Int {
-        val recentEvents = events.filter { 
-            it.timestamp.isAfter(LocalDateTime.now().minusDays(7)) 
-        }
-        
-        var score = 100
+    private fun calculateSecurityScore(recentBySeverity: Map<SecuritySeverity, Long>): Int {
+        var score = 100L
         
-        // Deduct points based on recent security events
-        recentEvents.forEach { event ->
-            score -= when (event.severity) {
+        // Deduct points based on the last week's security events
+        recentBySeverity.forEach { (severity, count) ->
+            score -= count * when (severity) {
                 SecuritySeverity.CRITICAL -> 20
                 SecuritySeverity.HIGH -> 10
                 SecuritySeverity.MEDIUM -> 5
@@ -449,7 +484,7 @@ class SecurityMonitoringManagerImpl @Inject constructor(
             }
         }
         
-        return maxOf(0, score)
+        return maxOf(0L, score).toInt()
     }
     
     private fun calculateAverageResponseTime(): Long {
@@ -4,6 +4,8 @@ import android.content.Context
 import android.net.ConnectivityManager
 import android.net.NetworkCapabilities
 import android.util.Log
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
 import com.chain.messaging.domain.model.SecuritySeverity
 import com.chain.messaging.domain.model.ThreatIndicator
 import com.chain.messaging.domain.model.ThreatType
@@ -28,7 +30,7 @@ class ThreatDetectorImpl @Inject constructor(
     }
     
     private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
-    private var detectionJob: Job? = null
+    private var detectionTask: ScheduledTask? = null
     
     private val _threatIndicators = MutableSharedFlow<ThreatIndicator>()
     private val recentAuthFailures = mutableListOf<LocalDateTime>()
@@ -37,23 +39,20 @@ class ThreatDetectorImpl @Inject constructor(
     override suspend fun startDetection() {
         Log.d(TAG, "Starting threat detection")
         
-        detectionJob?.cancel()
-        detectionJob = scope.launch {
-            while (isActive) {
-                try {
-                    performThreatDetection()
-                    delay(DETECTION_INTERVAL_MS)
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error during threat detection", e)
-                    delay(DETECTION_INTERVAL_MS * 2)
-                }
-            }
+        detectionTask?.cancel()
+        detectionTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "threat-detector.scan",
+            intervalMs = DETECTION_INTERVAL_MS,
+            owner = scope
+        ) {
+            performThreatDetection()
         }
     }
     
     override suspend fun stopDetection() {
         Log.d(TAG, "Stopping threat detection")
-        detectionJob?.cancel()
+        detectionTask?.cancel()
+        detectionTask = null
     }
     
     override suspend fun analyzeNetworkTraffic(): List<ThreatIndicator> {
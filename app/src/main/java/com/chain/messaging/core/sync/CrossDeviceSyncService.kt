@@ -122,7 +122,8 @@ data class SyncRequest(
     val fromDeviceId: String,
     val syncType: SyncType,
     val timestamp: java.time.LocalDateTime,
-    val lastSyncTime: java.time.LocalDateTime? = null
+    val lastSyncTime: java.time.LocalDateTime? = null,
+    val resumeCursor: SyncCursor? = null // Last chunk the requester persisted, to resume a stream
 )
 
 /**
@@ -133,7 +134,8 @@ data class SyncResponse(
     val success: Boolean,
     val data: SyncData? = null,
     val error: String? = null,
-    val nextSyncTime: java.time.LocalDateTime? = null
+    val nextSyncTime: java.time.LocalDateTime? = null,
+    val streamsMessages: Boolean = false // Message history follows as SYNC_CHUNK frames
 )
 
 /**
@@ -2,7 +2,14 @@ package com.chain.messaging.core.sync
 
 import android.content.Context
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.blockchain.BlockchainResponseDispatcher
+import com.chain.messaging.core.blockchain.CorrelatedResponse
+import com.chain.messaging.core.blockchain.IncomingMessage
+import com.chain.messaging.core.blockchain.MessageType
 import com.chain.messaging.core.crypto.KeyManager
+import com.chain.messaging.core.performance.scheduler.BackgroundWork
+import com.chain.messaging.core.performance.scheduler.ScheduledTask
+import com.chain.messaging.core.util.Logger
 import com.chain.messaging.core.util.TimeUtils
 import com.chain.messaging.core.util.toLong
 import com.chain.messaging.data.local.dao.DeviceDao
@@ -16,6 +23,7 @@ import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
 import java.time.LocalDateTime
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -28,15 +36,48 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
     private val messageDao: MessageDao,
     private val messageRepository: MessageRepository,
     private val keyManager: KeyManager,
-    private val blockchainManager: BlockchainManager
+    private val blockchainManager: BlockchainManager,
+    private val syncChunkStreamer: SyncChunkStreamer,
+    private val syncFrameCipher: SyncFrameCipher,
+    private val responseDispatcher: BlockchainResponseDispatcher
 ) : CrossDeviceSyncService {
     
+    companion object {
+        private val TYPE_SYNC_REQUEST = MessageType.SYNC_REQUEST.name
+        private val TYPE_SYNC_RESPONSE = MessageType.SYNC_RESPONSE.name
+        private val TYPE_SYNC_CHUNK = MessageType.SYNC_CHUNK.name
+        private val TYPE_SYNC_CHUNK_ACK = MessageType.SYNC_CHUNK_ACK.name
+        private const val CHUNK_ACK_TIMEOUT_MS = 15_000L
+        private const val MAX_CHUNK_ATTEMPTS = 3
+        private const val CURSOR_PREF_PREFIX = "sync_cursor_"
+        private const val SYNC_MONITOR_INTERVAL_MS = 30 * 60 * 1000L // 30 minutes
+    }
+    
+    init {
+        // Responses are routed by sending device and request ID from the clear
+        // header; the waiting request verifies and decrypts the frame itself
+        responseDispatcher.registerResponseType(TYPE_SYNC_RESPONSE) { message ->
+            SyncCodec.decodeSealedOrNull(message.encryptedContent)?.let {
+                CorrelatedResponse(frameId(it.fromDeviceId, it.correlationId), it)
+            }
+        }
+        responseDispatcher.registerResponseType(TYPE_SYNC_CHUNK_ACK) { message ->
+            SyncCodec.decodeSealedOrNull(message.encryptedContent)?.let {
+                CorrelatedResponse(frameId(it.fromDeviceId, it.correlationId), it)
+            }
+        }
+    }
+    
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
     private val _syncStatus = MutableStateFlow(createInitialSyncStatus())
     private val _syncProgress = MutableStateFlow(SyncProgress(SyncPhase.INITIALIZING, 0f, "Initializing"))
     
     private var isInitialized = false
     private var autoSyncEnabled = true
+    private var syncMonitorTask: ScheduledTask? = null
+    
+    // Request each device is expected to stream history for; chunks for anything else are dropped
+    private val activeSyncs = ConcurrentHashMap<String, String>()
     
     override suspend fun initialize() {
         if (isInitialized) return
@@ -49,6 +90,9 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
             // Start monitoring for sync opportunities
             startSyncMonitoring()
             
+            // Serve sync requests and receive streamed history from other devices
+            startSyncChannelListener()
+            
             // Update sync status
             updateSyncStatus()
             
@@ -304,7 +348,8 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
                 fromDeviceId = deviceManager.getCurrentDevice().deviceId,
                 syncType = SyncType.INCREMENTAL,
                 timestamp = LocalDateTime.now(),
-                lastSyncTime = device.lastSyncAt
+                lastSyncTime = device.lastSyncAt,
+                resumeCursor = loadResumeCursor(deviceId)
             )
             
             // Send sync request through blockchain
@@ -348,7 +393,8 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
                 requestId = request.requestId,
                 success = true,
                 data = syncData,
-                nextSyncTime = LocalDateTime.now().plusHours(1)
+                nextSyncTime = LocalDateTime.now().plusHours(1),
+                streamsMessages = request.syncType.includesMessages()
             )
             
         } catch (e: Exception) {
@@ -369,6 +415,9 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
         
         if (enabled) {
             startSyncMonitoring()
+        } else {
+            syncMonitorTask?.cancel()
+            syncMonitorTask = null
         }
         
         updateSyncStatus()
@@ -416,7 +465,7 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
     private suspend fun syncKeysWithDevice(deviceId: String): SyncResult {
         // Implementation would sync encryption keys with specific device
         return try {
-            val keys = keyManager.exportKeys() // Hypothetical method
+            val keys = keyManager.exportPublicKeys()
             val syncData = SyncData(encryptionKeys = keys)
             SyncResult.Success("Keys synced", syncData)
         } catch (e: Exception) {
@@ -446,17 +495,31 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
                 )
             
             // Serialize the sync request
-            val requestJson = serializeSyncRequest(request)
+            val requestJson = SyncCodec.encodeRequest(request.toEnvelope())
+            val currentDeviceId = deviceManager.getCurrentDevice().deviceId
             
-            // Send the sync request through blockchain as a system message
-            val transactionHash = blockchainManager.sendMessage(
-                recipientId = deviceId,
-                encryptedContent = requestJson,
-                messageType = "SYNC_REQUEST"
-            )
+            // History chunks are only accepted for the request open with this device
+            activeSyncs[targetDevice.deviceId] = request.requestId
+            
+            // Send the sync request sealed for the target device and wait for
+            // the dispatcher to route the response back (30 seconds)
+            val frame = responseDispatcher.request<SealedSyncFrame>(
+                userId = currentDeviceId,
+                responseType = TYPE_SYNC_RESPONSE,
+                correlationId = frameId(deviceId, request.requestId),
+                timeoutMs = 30_000
+            ) {
+                blockchainManager.sendMessage(
+                    recipientId = deviceId,
+                    encryptedContent = syncFrameCipher.seal(currentDeviceId, deviceId, request.requestId, requestJson),
+                    messageType = TYPE_SYNC_REQUEST
+                )
+            }
+            val response = frame?.let { SyncCodec.decodeResponse(syncFrameCipher.open(it, deviceId)).toSyncResponse() }
             
-            // Wait for response with timeout (30 seconds)
-            val response = waitForSyncResponse(request.requestId, timeoutMs = 30_000)
+            if (response == null || !response.success || !response.streamsMessages) {
+                activeSyncs.remove(deviceId, request.requestId)
+            }
             
             if (response != null) {
                 // Update device sync status
@@ -471,6 +534,7 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
             }
             
         } catch (e: Exception) {
+            activeSyncs.remove(deviceId, request.requestId)
             SyncResponse(
                 requestId = request.requestId,
                 success = false,
@@ -485,44 +549,39 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
             messageRepository.saveMessage(message)
         }
         
-        data.encryptionKeys.forEach { (keyId, key) ->
-            keyManager.importKey(keyId, key)
-        }
+        // Only public keys are synced, and each device keeps its own private keys,
+        // so there is nothing to import from data.encryptionKeys
         
         data.userSettings.forEach { (key, value) ->
             saveUserSetting(key, value)
         }
     }
     
+    // Message history is never gathered here; it is streamed in pages by streamMessageHistory
+    
+    // Private key material never goes into a sync payload
+    
     private suspend fun gatherFullSyncData(): SyncData {
         return SyncData(
-            messages = messageDao.getAllMessages().map { it.toMessage() },
-            encryptionKeys = keyManager.exportKeys(),
+            encryptionKeys = keyManager.exportPublicKeys(),
             userSettings = gatherUserSettings()
         )
     }
     
     private suspend fun gatherIncrementalSyncData(since: LocalDateTime?): SyncData {
-        val cutoff = since ?: LocalDateTime.now().minusDays(7)
-        val cutoffTimestamp = cutoff.toLong()
         return SyncData(
-            messages = messageDao.getMessagesSince(cutoffTimestamp).map { it.toMessage() },
-            encryptionKeys = keyManager.exportRecentKeys(cutoff),
+            encryptionKeys = keyManager.exportPublicKeys(),
             userSettings = gatherUserSettings()
         )
     }
     
     private suspend fun gatherMessageSyncData(since: LocalDateTime?): SyncData {
-        val cutoff = since ?: LocalDateTime.now().minusDays(7)
-        val cutoffTimestamp = cutoff.toLong()
-        return SyncData(
-            messages = messageDao.getMessagesSince(cutoffTimestamp).map { it.toMessage() }
-        )
+        return SyncData()
     }
     
     private suspend fun gatherKeySyncData(): SyncData {
         return SyncData(
-            encryptionKeys = keyManager.exportKeys()
+            encryptionKeys = keyManager.exportPublicKeys()
         )
     }
     
@@ -555,19 +614,17 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
     private fun startSyncMonitoring() {
         if (!autoSyncEnabled) return
         
-        scope.launch {
-            // Monitor for sync opportunities every 30 minutes
-            while (autoSyncEnabled) {
-                delay(30 * 60 * 1000) // 30 minutes
-                
-                try {
-                    val devicesNeedingSync = deviceDao.getDevicesNeedingSync()
-                    if (devicesNeedingSync.isNotEmpty()) {
-                        performFullSync()
-                    }
-                } catch (e: Exception) {
-                    // Log error but continue monitoring
-                }
+        // Monitor for sync opportunities; re-registering replaces the previous task
+        syncMonitorTask?.cancel()
+        syncMonitorTask = BackgroundWork.scheduler.schedulePeriodic(
+            name = "cross-device-sync.monitor",
+            intervalMs = SYNC_MONITOR_INTERVAL_MS,
+            owner = scope,
+            initialDelayMs = SYNC_MONITOR_INTERVAL_MS
+        ) {
+            val devicesNeedingSync = deviceDao.getDevicesNeedingSync()
+            if (devicesNeedingSync.isNotEmpty()) {
+                performFullSync()
             }
         }
     }
@@ -638,124 +695,205 @@ class CrossDeviceSyncServiceImpl @Inject constructor(
     }
     
     /**
-     * Serialize sync request to JSON format
+     * Listen on the blockchain channel for sync traffic addressed to this device
      */
-    private fun serializeSyncRequest(request: SyncRequest): String {
-        return """
-        {
-            "requestId": "${request.requestId}",
-            "fromDeviceId": "${request.fromDeviceId}",
-            "syncType": "${request.syncType}",
-            "timestamp": "${request.timestamp}",
-            "lastSyncTime": ${if (request.lastSyncTime != null) "\"${request.lastSyncTime}\"" else "null"}
+    private fun startSyncChannelListener() {
+        scope.launch {
+            try {
+                val currentDeviceId = deviceManager.getCurrentDevice().deviceId
+                blockchainManager.subscribeToMessages(currentDeviceId).collect { message ->
+                    when (message.type) {
+                        TYPE_SYNC_REQUEST -> scope.launch {
+                            // A failed reply must not take the listener, or the app, down with it
+                            try {
+                                respondToSyncRequest(message)
+                            } catch (e: CancellationException) {
+                                throw e
+                            } catch (e: Exception) {
+                                Logger.w("Failed to answer sync request from ${message.senderId}", e)
+                            }
+                        }
+                        TYPE_SYNC_CHUNK -> handleIncomingChunk(message)
+                    }
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Logger.e("Sync channel listener stopped", e)
+            }
         }
-        """.trimIndent()
     }
     
     /**
-     * Wait for sync response from the target device
+     * Answer a sync request and, if it covers message history, stream it afterwards.
+     * Only requests sealed by a trusted device of this account are answered.
      */
-    private suspend fun waitForSyncResponse(requestId: String, timeoutMs: Long): SyncResponse? {
-        val startTime = System.currentTimeMillis()
-        
-        // Subscribe to incoming messages to catch the response
-        val currentUserId = deviceManager.getCurrentDevice().deviceId
+    private suspend fun respondToSyncRequest(message: IncomingMessage) {
+        val frame = SyncCodec.decodeSealedOrNull(message.encryptedContent) ?: return
+        val device = deviceDao.getDeviceById(frame.fromDeviceId)
+        if (device == null || !device.isTrusted || device.isCurrentDevice) {
+            Logger.w("Dropping sync request from untrusted device ${frame.fromDeviceId}")
+            return
+        }
         
-        return try {
-            // Use withTimeoutOrNull to handle timeout properly
-            withTimeoutOrNull(timeoutMs) {
-                blockchainManager.subscribeToMessages(currentUserId)
-                    .firstOrNull { incomingMessage ->
-                        if (incomingMessage.type == "SYNC_RESPONSE") {
-                            val response = parseSyncResponse(incomingMessage.encryptedContent)
-                            response?.requestId == requestId
-                        } else {
-                            false
-                        }
-                    }
-                    ?.let { incomingMessage ->
-                        parseSyncResponse(incomingMessage.encryptedContent)
-                    }
-            }
+        val request = try {
+            SyncCodec.decodeRequest(syncFrameCipher.open(frame, device.deviceId)).toSyncRequest()
         } catch (e: Exception) {
-            null // Error occurred
+            Logger.w("Dropping unverifiable sync request from ${device.deviceId}", e)
+            return
+        }
+        if (request.fromDeviceId != device.deviceId || request.requestId != frame.correlationId) {
+            Logger.w("Dropping sync request whose header does not match its content")
+            return
+        }
+        
+        val response = handleSyncRequest(request)
+        val currentDeviceId = deviceManager.getCurrentDevice().deviceId
+        blockchainManager.sendMessage(
+            recipientId = device.deviceId,
+            encryptedContent = syncFrameCipher.seal(
+                currentDeviceId,
+                device.deviceId,
+                request.requestId,
+                SyncCodec.encodeResponse(response.toEnvelope())
+            ),
+            messageType = TYPE_SYNC_RESPONSE
+        )
+        
+        if (response.success && response.streamsMessages) {
+            streamMessageHistory(request)
         }
     }
     
     /**
-     * Parse sync response from JSON
+     * Stream message history to the requesting device one page at a time.
+     * Each chunk must be acknowledged before the next page is read, so memory
+     * stays bounded by the page size. If a chunk is never acknowledged the
+     * stream stops and the requester resumes from its last persisted cursor.
      */
-    private fun parseSyncResponse(responseJson: String): SyncResponse? {
-        return try {
-            // Simple JSON parsing - in production, use a proper JSON library like Gson or Moshi
-            val lines = responseJson.lines().map { it.trim() }
-            
-            val requestId = extractJsonValue(lines, "requestId")
-            val successStr = extractJsonValue(lines, "success")
-            val success = when (successStr?.lowercase()) {
-                "true" -> true
-                "false" -> false
-                else -> false
+    private suspend fun streamMessageHistory(request: SyncRequest) {
+        val start = request.resumeCursor ?: SyncCursor.startingAt(
+            when (request.syncType) {
+                SyncType.FULL -> 0L
+                else -> request.lastSyncTime?.toLong() ?: 0L
             }
-            val error = extractJsonValue(lines, "error")
-            val nextSyncTimeStr = extractJsonValue(lines, "nextSyncTime")
-            
-            val nextSyncTime = nextSyncTimeStr?.let { 
-                try {
-                    LocalDateTime.parse(it)
-                } catch (e: Exception) {
-                    null
-                }
+        )
+        
+        try {
+            syncChunkStreamer.streamMessages(request.requestId, start).collect { chunk ->
+                sendChunkWithAck(request.fromDeviceId, chunk)
             }
-            
-            SyncResponse(
-                requestId = requestId ?: "",
-                success = success,
-                error = error,
-                data = if (success) parseSyncData(responseJson) else null,
-                nextSyncTime = nextSyncTime
-            )
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            null
+            Logger.w("Sync stream ${request.requestId} to ${request.fromDeviceId} interrupted", e)
         }
     }
     
-    /**
-     * Parse sync data from response JSON
-     */
-    private fun parseSyncData(responseJson: String): SyncData? {
+    private suspend fun sendChunkWithAck(deviceId: String, chunk: SyncChunk) {
+        val frame = SyncCodec.encodeChunk(chunk)
+        
+        val currentDeviceId = deviceManager.getCurrentDevice().deviceId
+        
+        repeat(MAX_CHUNK_ATTEMPTS) {
+            val ack = responseDispatcher.request<SealedSyncFrame>(
+                userId = currentDeviceId,
+                responseType = TYPE_SYNC_CHUNK_ACK,
+                correlationId = frameId(deviceId, chunkAckId(chunk.requestId, chunk.sequence)),
+                timeoutMs = CHUNK_ACK_TIMEOUT_MS
+            ) {
+                // Sealed on every attempt, as a Signal ciphertext decrypts only once
+                blockchainManager.sendMessage(
+                    recipientId = deviceId,
+                    encryptedContent = syncFrameCipher.seal(currentDeviceId, deviceId, chunk.requestId, frame),
+                    messageType = TYPE_SYNC_CHUNK
+                )
+            }
+            if (ack != null && acknowledges(ack, deviceId, chunk)) return
+        }
+        
+        throw IllegalStateException("Chunk ${chunk.sequence} of ${chunk.requestId} was not acknowledged")
+    }
+    
+    private suspend fun acknowledges(frame: SealedSyncFrame, deviceId: String, chunk: SyncChunk): Boolean {
         return try {
-            // Simplified parsing - extract basic sync data
-            // In production, use proper JSON serialization
-            SyncData(
-                messages = emptyList(), // Would parse actual message data
-                encryptionKeys = emptyMap(), // Would parse actual key data
-                userSettings = emptyMap() // Would parse actual settings data
-            )
+            val ack = SyncCodec.decodeAck(syncFrameCipher.open(frame, deviceId))
+            ack.requestId == chunk.requestId && ack.sequence == chunk.sequence
         } catch (e: Exception) {
-            null
+            Logger.w("Ignoring unverifiable acknowledgement from $deviceId", e)
+            false
         }
     }
     
+    private fun chunkAckId(requestId: String, sequence: Int): String = "$requestId#$sequence"
+    
+    private fun frameId(deviceId: String, correlationId: String): String = "$deviceId/$correlationId"
+    
     /**
-     * Extract JSON value by key (simple implementation)
+     * Store a received chunk, persist its cursor and acknowledge it.
+     * Chunks are only taken from the device this device asked for history,
+     * for that open request, once the frame is verified as coming from it.
+     * Chunks at or behind the persisted cursor are re-acknowledged without
+     * being stored again, so retransmissions are idempotent.
      */
-    private fun extractJsonValue(lines: List<String>, key: String): String? {
-        val line = lines.find { it.contains("\"$key\"") } ?: return null
-        
-        // Try quoted string pattern first
-        val quotedPattern = "\"$key\":\\s*\"([^\"]*)\""
-        Regex(quotedPattern).find(line)?.let { 
-            return it.groupValues[1]
+    private suspend fun handleIncomingChunk(message: IncomingMessage) {
+        val frame = SyncCodec.decodeSealedOrNull(message.encryptedContent) ?: return
+        val deviceId = frame.fromDeviceId
+        if (activeSyncs[deviceId] != frame.correlationId) {
+            Logger.w("Dropping sync chunk for a request this device did not start")
+            return
         }
         
-        // Try unquoted value pattern (for booleans, numbers, null)
-        val unquotedPattern = "\"$key\":\\s*([^,}\\s]+)"
-        Regex(unquotedPattern).find(line)?.let {
-            return it.groupValues[1]
+        try {
+            val device = deviceDao.getDeviceById(deviceId)
+            check(device != null && device.isTrusted && !device.isCurrentDevice) { "Device $deviceId is not trusted" }
+            
+            val chunk = SyncCodec.decodeChunk(syncFrameCipher.open(frame, deviceId))
+            check(chunk.requestId == frame.correlationId) { "Chunk does not belong to request ${frame.correlationId}" }
+            val persisted = loadResumeCursor(deviceId)
+            
+            if (persisted == null || chunk.cursor.isAfter(persisted)) {
+                val records = SyncCodec.readRecords(chunk)
+                if (records.isNotEmpty()) {
+                    messageDao.insertMessages(records.map { it.toEntity() })
+                }
+                saveResumeCursor(deviceId, chunk.cursor)
+            }
+            
+            val currentDeviceId = deviceManager.getCurrentDevice().deviceId
+            blockchainManager.sendMessage(
+                recipientId = deviceId,
+                encryptedContent = syncFrameCipher.seal(
+                    currentDeviceId,
+                    deviceId,
+                    chunkAckId(chunk.requestId, chunk.sequence),
+                    SyncCodec.encodeAck(SyncChunkAck(chunk.requestId, chunk.sequence, chunk.cursor))
+                ),
+                messageType = TYPE_SYNC_CHUNK_ACK
+            )
+            
+            if (chunk.isLast) {
+                activeSyncs.remove(deviceId, chunk.requestId)
+                updateDeviceSyncStatus(deviceId, true)
+            }
+        } catch (e: Exception) {
+            // Not acknowledging makes the sender retry the chunk
+            Logger.w("Failed to apply sync chunk from $deviceId", e)
         }
-        
-        return null
+    }
+    
+    private fun loadResumeCursor(deviceId: String): SyncCursor? {
+        val prefs = context.getSharedPreferences("sync_prefs", Context.MODE_PRIVATE)
+        val timestamp = prefs.getLong("$CURSOR_PREF_PREFIX${deviceId}_ts", -1L)
+        if (timestamp < 0) return null
+        return SyncCursor(timestamp, prefs.getString("$CURSOR_PREF_PREFIX${deviceId}_id", "") ?: "")
+    }
+    
+    private fun saveResumeCursor(deviceId: String, cursor: SyncCursor) {
+        context.getSharedPreferences("sync_prefs", Context.MODE_PRIVATE).edit()
+            .putLong("$CURSOR_PREF_PREFIX${deviceId}_ts", cursor.timestamp)
+            .putString("$CURSOR_PREF_PREFIX${deviceId}_id", cursor.messageId)
+            .apply()
     }
     
     /**
@@ -801,6 +939,62 @@ data class SyncError(
     val timestamp: LocalDateTime
 )
 
+private fun SyncType.includesMessages(): Boolean =
+    this == SyncType.FULL || this == SyncType.INCREMENTAL || this == SyncType.MESSAGES_ONLY
+
+private fun SyncCursor.isAfter(other: SyncCursor): Boolean =
+    timestamp > other.timestamp || (timestamp == other.timestamp && messageId > other.messageId)
+
+private fun SyncRequest.toEnvelope(): SyncRequestEnvelope {
+    return SyncRequestEnvelope(
+        requestId = requestId,
+        fromDeviceId = fromDeviceId,
+        syncType = syncType.name,
+        timestamp = timestamp.toString(),
+        lastSyncTime = lastSyncTime?.toString(),
+        resumeCursor = resumeCursor
+    )
+}
+
+private fun SyncRequestEnvelope.toSyncRequest(): SyncRequest {
+    return SyncRequest(
+        requestId = requestId,
+        fromDeviceId = fromDeviceId,
+        syncType = SyncType.valueOf(syncType),
+        timestamp = LocalDateTime.parse(timestamp),
+        lastSyncTime = lastSyncTime?.let { LocalDateTime.parse(it) },
+        resumeCursor = resumeCursor
+    )
+}
+
+private fun SyncResponse.toEnvelope(): SyncResponseEnvelope {
+    return SyncResponseEnvelope(
+        requestId = requestId,
+        success = success,
+        error = error,
+        nextSyncTime = nextSyncTime?.toString(),
+        encryptionKeys = data?.encryptionKeys ?: emptyMap(),
+        userSettings = SyncCodec.encodeSettings(data?.userSettings ?: emptyMap()),
+        streamsMessages = streamsMessages
+    )
+}
+
+private fun SyncResponseEnvelope.toSyncResponse(): SyncResponse {
+    return SyncResponse(
+        requestId = requestId,
+        success = success,
+        error = error,
+        data = if (success) {
+            SyncData(
+                encryptionKeys = encryptionKeys,
+                userSettings = SyncCodec.decodeSettings(userSettings)
+            )
+        } else null,
+        nextSyncTime = nextSyncTime?.let { runCatching { LocalDateTime.parse(it) }.getOrNull() },
+        streamsMessages = streamsMessages
+    )
+}
+
 // Extension function to convert MessageEntity to Message
 private fun com.chain.messaging.data.local.entity.MessageEntity.toMessage(): Message {
     return Message(
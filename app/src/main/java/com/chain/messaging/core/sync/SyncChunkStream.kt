@@ -0,0 +1,326 @@
+package com.chain.messaging.core.sync
+
+import com.chain.messaging.data.local.dao.MessageDao
+import com.chain.messaging.data.local.entity.MessageEntity
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.builtins.ListSerializer
+import kotlinx.serialization.json.Json
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.Base64
+import java.util.zip.CRC32
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keyset position in the message history, ordered by (timestamp, id).
+ * A chunk's cursor points at the last message it contains, so the receiver
+ * can persist it and resume the stream from there.
+ */
+@Serializable
+data class SyncCursor(
+    val timestamp: Long,
+    val messageId: String
+) {
+    companion object {
+        /**
+         * Cursor positioned just before the first message at or after [timestamp]
+         */
+        fun startingAt(timestamp: Long): SyncCursor = SyncCursor(timestamp, "")
+    }
+}
+
+/**
+ * Wire representation of a single message inside a sync chunk
+ */
+@Serializable
+data class SyncMessageRecord(
+    val id: String,
+    val chatId: String,
+    val senderId: String,
+    val content: String,
+    val type: String,
+    val timestamp: Long,
+    val status: String,
+    val replyTo: String? = null,
+    val isEncrypted: Boolean = false,
+    val disappearingMessageTimer: Long? = null,
+    val expiresAt: Long? = null,
+    val isDisappearing: Boolean = false
+)
+
+/**
+ * One framed page of message history. [payload] is the gzip-compressed,
+ * Base64-encoded JSON list of [SyncMessageRecord]s and [checksum] is the
+ * CRC32 of the compressed bytes.
+ */
+@Serializable
+data class SyncChunk(
+    val requestId: String,
+    val sequence: Int,
+    val cursor: SyncCursor,
+    val messageCount: Int,
+    val isLast: Boolean,
+    val checksum: Long,
+    val payload: String
+)
+
+/**
+ * Acknowledgement of a received chunk, sent back to the streaming device
+ */
+@Serializable
+data class SyncChunkAck(
+    val requestId: String,
+    val sequence: Int,
+    val cursor: SyncCursor
+)
+
+/**
+ * Wire representation of a sync request
+ */
+@Serializable
+data class SyncRequestEnvelope(
+    val requestId: String,
+    val fromDeviceId: String,
+    val syncType: String,
+    val timestamp: String,
+    val lastSyncTime: String? = null,
+    val resumeCursor: SyncCursor? = null
+)
+
+/**
+ * Wire representation of a sync response. Message history is never carried
+ * here; it follows as a stream of [SyncChunk]s.
+ */
+@Serializable
+data class SyncResponseEnvelope(
+    val requestId: String,
+    val success: Boolean,
+    val error: String? = null,
+    val nextSyncTime: String? = null,
+    val encryptionKeys: Map<String, String> = emptyMap(),
+    val userSettings: Map<String, SyncSettingValue> = emptyMap(),
+    val streamsMessages: Boolean = false
+)
+
+/**
+ * A sync frame as it travels on the blockchain channel. Only the sending
+ * device and the correlation ID are readable; the frame itself is the
+ * Base64 Signal [ciphertext] for the receiving device, of the given [type].
+ */
+@Serializable
+data class SealedSyncFrame(
+    val fromDeviceId: String,
+    val correlationId: String,
+    val type: String,
+    val ciphertext: String
+)
+
+/**
+ * Typed user setting value, preserving the SharedPreferences type across devices
+ */
+@Serializable
+data class SyncSettingValue(
+    val type: String,
+    val value: String
+)
+
+/**
+ * Serializer for everything the sync protocol puts on the blockchain channel
+ */
+object SyncCodec {
+
+    private val json = Json {
+        ignoreUnknownKeys = true
+        encodeDefaults = false
+    }
+
+    private val recordListSerializer = ListSerializer(SyncMessageRecord.serializer())
+
+    fun encodeChunk(chunk: SyncChunk): String = json.encodeToString(SyncChunk.serializer(), chunk)
+
+    fun decodeChunk(frame: String): SyncChunk = json.decodeFromString(SyncChunk.serializer(), frame)
+
+    fun encodeAck(ack: SyncChunkAck): String = json.encodeToString(SyncChunkAck.serializer(), ack)
+
+    fun decodeAck(frame: String): SyncChunkAck = json.decodeFromString(SyncChunkAck.serializer(), frame)
+
+    fun encodeSealed(frame: SealedSyncFrame): String = json.encodeToString(SealedSyncFrame.serializer(), frame)
+
+    /**
+     * Read the clear header of a sealed frame, or null if the content is not one
+     */
+    fun decodeSealedOrNull(content: String): SealedSyncFrame? = try {
+        json.decodeFromString(SealedSyncFrame.serializer(), content)
+    } catch (e: Exception) {
+        null
+    }
+
+    fun encodeRequest(request: SyncRequestEnvelope): String =
+        json.encodeToString(SyncRequestEnvelope.serializer(), request)
+
+    fun decodeRequest(frame: String): SyncRequestEnvelope =
+        json.decodeFromString(SyncRequestEnvelope.serializer(), frame)
+
+    fun encodeResponse(response: SyncResponseEnvelope): String =
+        json.encodeToString(SyncResponseEnvelope.serializer(), response)
+
+    fun decodeResponse(frame: String): SyncResponseEnvelope =
+        json.decodeFromString(SyncResponseEnvelope.serializer(), frame)
+
+    /**
+     * Build a framed chunk from one page of messages
+     */
+    fun buildChunk(
+        requestId: String,
+        sequence: Int,
+        cursor: SyncCursor,
+        records: List<SyncMessageRecord>,
+        isLast: Boolean
+    ): SyncChunk {
+        val compressed = gzip(json.encodeToString(recordListSerializer, records).toByteArray(Charsets.UTF_8))
+        return SyncChunk(
+            requestId = requestId,
+            sequence = sequence,
+            cursor = cursor,
+            messageCount = records.size,
+            isLast = isLast,
+            checksum = crc32(compressed),
+            payload = Base64.getEncoder().encodeToString(compressed)
+        )
+    }
+
+    /**
+     * Verify and unpack the messages carried by a chunk
+     *
+     * @throws IllegalStateException if the payload does not match its checksum
+     */
+    fun readRecords(chunk: SyncChunk): List<SyncMessageRecord> {
+        val compressed = Base64.getDecoder().decode(chunk.payload)
+        check(crc32(compressed) == chunk.checksum) {
+            "Sync chunk ${chunk.sequence} of ${chunk.requestId} failed checksum"
+        }
+        return json.decodeFromString(recordListSerializer, String(gunzip(compressed), Charsets.UTF_8))
+    }
+
+    fun encodeSettings(settings: Map<String, Any?>): Map<String, SyncSettingValue> {
+        return settings.mapNotNull { (key, value) ->
+            val encoded = when (value) {
+                is String -> SyncSettingValue("string", value)
+                is Int -> SyncSettingValue("int", value.toString())
+                is Long -> SyncSettingValue("long", value.toString())
+                is Float -> SyncSettingValue("float", value.toString())
+                is Boolean -> SyncSettingValue("boolean", value.toString())
+                else -> null
+            }
+            encoded?.let { key to it }
+        }.toMap()
+    }
+
+    fun decodeSettings(settings: Map<String, SyncSettingValue>): Map<String, Any> {
+        return settings.mapNotNull { (key, setting) ->
+            val decoded: Any? = when (setting.type) {
+                "string" -> setting.value
+                "int" -> setting.value.toIntOrNull()
+                "long" -> setting.value.toLongOrNull()
+                "float" -> setting.value.toFloatOrNull()
+                "boolean" -> setting.value.toBooleanStrictOrNull()
+                else -> null
+            }
+            decoded?.let { key to it }
+        }.toMap()
+    }
+
+    private fun gzip(bytes: ByteArray): ByteArray {
+        val output = ByteArrayOutputStream(bytes.size / 2 + 64)
+        GZIPOutputStream(output).use { it.write(bytes) }
+        return output.toByteArray()
+    }
+
+    private fun gunzip(bytes: ByteArray): ByteArray {
+        return GZIPInputStream(ByteArrayInputStream(bytes)).use { it.readBytes() }
+    }
+
+    private fun crc32(bytes: ByteArray): Long {
+        val crc = CRC32()
+        crc.update(bytes)
+        return crc.value
+    }
+}
+
+/**
+ * Pages message history out of [MessageDao] with a keyset cursor and frames
+ * each page as a [SyncChunk]. The returned flow is cold and only queries the
+ * next page once the previous chunk has been consumed, so at most one page is
+ * held in memory regardless of how large the history is.
+ */
+@Singleton
+class SyncChunkStreamer @Inject constructor(
+    private val messageDao: MessageDao
+) {
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 200
+    }
+
+    fun streamMessages(
+        requestId: String,
+        from: SyncCursor,
+        pageSize: Int = DEFAULT_PAGE_SIZE
+    ): Flow<SyncChunk> = flow {
+        var cursor = from
+        var sequence = 0
+
+        while (true) {
+            val page = messageDao.getMessagePageAfter(cursor.timestamp, cursor.messageId, pageSize)
+            val isLast = page.size < pageSize
+            if (page.isNotEmpty()) {
+                val lastMessage = page.last()
+                cursor = SyncCursor(lastMessage.timestamp, lastMessage.id)
+            }
+
+            emit(SyncCodec.buildChunk(requestId, sequence, cursor, page.map { it.toSyncRecord() }, isLast))
+
+            if (isLast) break
+            sequence++
+        }
+    }
+}
+
+fun MessageEntity.toSyncRecord(): SyncMessageRecord {
+    return SyncMessageRecord(
+        id = id,
+        chatId = chatId,
+        senderId = senderId,
+        content = content,
+        type = type,
+        timestamp = timestamp,
+        status = status,
+        replyTo = replyTo,
+        isEncrypted = isEncrypted,
+        disappearingMessageTimer = disappearingMessageTimer,
+        expiresAt = expiresAt,
+        isDisappearing = isDisappearing
+    )
+}
+
+fun SyncMessageRecord.toEntity(): MessageEntity {
+    return MessageEntity(
+        id = id,
+        chatId = chatId,
+        senderId = senderId,
+        content = content,
+        type = type,
+        timestamp = timestamp,
+        status = status,
+        replyTo = replyTo,
+        isEncrypted = isEncrypted,
+        disappearingMessageTimer = disappearingMessageTimer,
+        expiresAt = expiresAt,
+        isDisappearing = isDisappearing
+    )
+}
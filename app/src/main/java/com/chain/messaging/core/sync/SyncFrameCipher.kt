@@ -0,0 +1,79 @@
+package com.chain.messaging.core.sync
+
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.IdentityStorage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import org.signal.libsignal.protocol.message.PreKeySignalMessage
+import org.signal.libsignal.protocol.state.IdentityKeyStore
+import java.util.Base64
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Seals sync frames for one device over its Signal session, and opens only
+ * frames that provably come from a device whose identity the user verified.
+ *
+ * The blockchain sender of a frame is the account, shared by all of its
+ * devices, and the clear header can name any device. A frame is therefore
+ * attributed to a device only once the identity key behind its ciphertext is
+ * the trusted one stored for that device, and its session decrypts it.
+ */
+@Singleton
+class SyncFrameCipher @Inject constructor(
+    private val encryptionService: SignalEncryptionService,
+    private val identityStorage: IdentityStorage
+) {
+
+    companion object {
+        // Devices of one account are addressed by their device ID
+        private const val DEVICE_ADDRESS_ID = 1
+    }
+
+    suspend fun seal(fromDeviceId: String, toDeviceId: String, correlationId: String, plaintext: String): String {
+        val encrypted = encryptionService.encryptMessage(
+            addressOf(toDeviceId),
+            plaintext.toByteArray(Charsets.UTF_8)
+        ).getOrThrow()
+
+        return SyncCodec.encodeSealed(
+            SealedSyncFrame(
+                fromDeviceId = fromDeviceId,
+                correlationId = correlationId,
+                type = encrypted.type.name,
+                ciphertext = Base64.getEncoder().encodeToString(encrypted.ciphertext)
+            )
+        )
+    }
+
+    /**
+     * Verify that [frame] comes from [deviceId] and decrypt it
+     *
+     * @throws SecurityException if the frame is not from that device's verified identity
+     */
+    suspend fun open(frame: SealedSyncFrame, deviceId: String): String {
+        if (frame.fromDeviceId != deviceId) {
+            throw SecurityException("Sync frame claims ${frame.fromDeviceId}, expected $deviceId")
+        }
+
+        val address = addressOf(deviceId)
+        val type = EncryptedMessage.Type.valueOf(frame.type)
+        val ciphertext = Base64.getDecoder().decode(frame.ciphertext)
+
+        // A pre-key message would start a new session with whatever identity it
+        // carries, so check that identity before the ratchet ever sees it
+        val identity = when (type) {
+            EncryptedMessage.Type.PREKEY -> PreKeySignalMessage(ciphertext).identityKey
+            else -> identityStorage.getIdentity(address)
+        }
+        // SENDING is the strict direction: the key must be the stored one and explicitly trusted
+        if (identity == null || !identityStorage.isTrustedIdentity(address, identity, IdentityKeyStore.Direction.SENDING)) {
+            throw SecurityException("Sync frame from $deviceId is not from its verified identity")
+        }
+
+        val plaintext = encryptionService.decryptMessage(address, EncryptedMessage(address, ciphertext, type)).getOrThrow()
+        return String(plaintext, Charsets.UTF_8)
+    }
+
+    private fun addressOf(deviceId: String) = SignalProtocolAddress(deviceId, DEVICE_ADDRESS_ID)
+}
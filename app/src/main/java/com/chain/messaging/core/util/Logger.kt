@@ -1,21 +1,38 @@
 package com.chain.messaging.core.util
 
-import android.util.Log
 import com.chain.messaging.core.config.AppConfig
+import com.chain.messaging.core.util.log.LogLevel
+import com.chain.messaging.core.util.log.LogPipeline
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.core.util.log.SubsystemLogger
+import java.io.File
 
 /**
- * Centralized logging utility for the Chain messaging app
+ * Centralized logging utility for the Chain messaging app.
+ * Records go through an asynchronous [LogPipeline]; hot paths should use a
+ * [SubsystemLogger] from [of] so disabled messages are never built.
  */
 object Logger {
     
-    private const val TAG = "ChainMessaging"
+    private val pipeline = LogPipeline()
+    private val subsystemLoggers = LogSubsystem.values().map { SubsystemLogger(it, pipeline) }
     private var debugEnabled: Boolean = AppConfig.DEBUG
     
+    init {
+        pipeline.setLevel(if (debugEnabled) LogLevel.VERBOSE else LogLevel.INFO)
+    }
+    
+    /**
+     * Logger for [subsystem], gated by that subsystem's level
+     */
+    fun of(subsystem: LogSubsystem): SubsystemLogger = subsystemLoggers[subsystem.ordinal]
+    
     /**
-     * Set debug logging enabled/disabled
+     * Set debug logging enabled/disabled for every subsystem
      */
     fun setDebugEnabled(enabled: Boolean) {
         debugEnabled = enabled
+        pipeline.setLevel(if (enabled) LogLevel.VERBOSE else LogLevel.INFO)
     }
     
     /**
@@ -23,76 +40,69 @@ object Logger {
      */
     fun isDebugEnabled(): Boolean = debugEnabled
     
+    /**
+     * Override the minimum level of one subsystem
+     */
+    fun setLevel(subsystem: LogSubsystem, level: LogLevel) {
+        pipeline.setLevel(subsystem, level)
+    }
+    
+    fun getLevel(subsystem: LogSubsystem): LogLevel = pipeline.levelOf(subsystem)
+    
+    /**
+     * Also write logs to rotating, compressed files in [directory]
+     */
+    fun installFileSink(directory: File) {
+        pipeline.installFileSink(directory)
+    }
+    
+    /**
+     * Write queued records now
+     */
+    fun flush() {
+        pipeline.flush()
+    }
+    
     fun v(message: String, throwable: Throwable? = null) {
-        if (debugEnabled) {
-            if (throwable != null) {
-                Log.v(TAG, message, throwable)
-            } else {
-                Log.v(TAG, message)
-            }
-        }
+        log(LogLevel.VERBOSE, message, throwable)
     }
     
     fun d(message: String, throwable: Throwable? = null) {
-        if (debugEnabled) {
-            if (throwable != null) {
-                Log.d(TAG, message, throwable)
-            } else {
-                Log.d(TAG, message)
-            }
-        }
+        log(LogLevel.DEBUG, message, throwable)
     }
     
     fun i(message: String, throwable: Throwable? = null) {
-        if (throwable != null) {
-            Log.i(TAG, message, throwable)
-        } else {
-            Log.i(TAG, message)
-        }
+        log(LogLevel.INFO, message, throwable)
     }
     
     fun w(message: String, throwable: Throwable? = null) {
-        if (throwable != null) {
-            Log.w(TAG, message, throwable)
-        } else {
-            Log.w(TAG, message)
-        }
+        log(LogLevel.WARN, message, throwable)
     }
     
     fun e(message: String, throwable: Throwable? = null) {
-        if (throwable != null) {
-            Log.e(TAG, message, throwable)
-        } else {
-            Log.e(TAG, message)
-        }
+        log(LogLevel.ERROR, message, throwable)
     }
     
     fun wtf(message: String, throwable: Throwable? = null) {
-        if (throwable != null) {
-            Log.wtf(TAG, message, throwable)
-        } else {
-            Log.wtf(TAG, message)
-        }
+        log(LogLevel.ASSERT, message, throwable)
+        // The process may be about to die
+        pipeline.flush()
     }
     
     /**
      * Log performance metrics
      */
     fun performance(operation: String, duration: Long, additionalInfo: String = "") {
-        val message = "PERFORMANCE: $operation took ${duration}ms $additionalInfo".trim()
-        if (debugEnabled) {
-            Log.d("$TAG-Performance", message)
-        }
+        of(LogSubsystem.PERFORMANCE).d { "PERFORMANCE: $operation took ${duration}ms $additionalInfo".trim() }
     }
     
     /**
      * Log memory usage
      */
     fun memory(operation: String, beforeMb: Long, afterMb: Long) {
-        val delta = afterMb - beforeMb
-        val message = "MEMORY: $operation - Before: ${beforeMb}MB, After: ${afterMb}MB, Delta: ${delta}MB"
-        if (debugEnabled) {
-            Log.d("$TAG-Memory", message)
+        of(LogSubsystem.PERFORMANCE).d {
+            val delta = afterMb - beforeMb
+            "MEMORY: $operation - Before: ${beforeMb}MB, After: ${afterMb}MB, Delta: ${delta}MB"
         }
     }
     
@@ -100,13 +110,18 @@ object Logger {
      * Log network operations
      */
     fun network(operation: String, duration: Long, bytes: Long = 0) {
-        val message = if (bytes > 0) {
-            "NETWORK: $operation took ${duration}ms, transferred ${bytes} bytes"
-        } else {
-            "NETWORK: $operation took ${duration}ms"
+        of(LogSubsystem.NETWORK).d {
+            if (bytes > 0) {
+                "NETWORK: $operation took ${duration}ms, transferred ${bytes} bytes"
+            } else {
+                "NETWORK: $operation took ${duration}ms"
+            }
         }
-        if (debugEnabled) {
-            Log.d("$TAG-Network", message)
+    }
+    
+    private fun log(level: LogLevel, message: String, throwable: Throwable?) {
+        if (pipeline.isLoggable(LogSubsystem.APP, level)) {
+            pipeline.log(LogSubsystem.APP, level, message, throwable)
         }
     }
-}
\ No newline at end of file
+}
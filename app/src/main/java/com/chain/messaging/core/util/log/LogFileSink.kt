@@ -0,0 +1,127 @@
+package com.chain.messaging.core.util.log
+
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStreamWriter
+import java.io.PrintWriter
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Rotating on-disk log. Records are appended to [ACTIVE_FILE] as one
+ * tab-separated line each (timestamp, level, subsystem, thread, message, with
+ * any stack trace on continuation lines). Once the active file passes
+ * [maxFileBytes] it is gzip-compressed into an archive and the oldest archives
+ * beyond [maxArchives] are deleted. Only the writer thread uses a sink.
+ */
+class LogFileSink(
+    private val directory: File,
+    private val maxFileBytes: Long = DEFAULT_MAX_FILE_BYTES,
+    private val maxArchives: Int = DEFAULT_MAX_ARCHIVES,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+    private val activeFile = File(directory, ACTIVE_FILE)
+    private var writer: BufferedWriter? = null
+    private var writtenBytes = 0L
+    private val line = StringBuilder(256)
+
+    fun write(record: LogRecord) {
+        val out = writer ?: open() ?: return
+        line.setLength(0)
+        line.append(record.timestamp).append('\t')
+            .append(record.level.letter).append('\t')
+            .append(record.subsystem.name).append('\t')
+            .append(record.threadName).append('\t')
+        appendEscaped(record.message)
+        line.append('\n')
+        record.throwable?.let { throwable ->
+            val trace = java.io.StringWriter()
+            throwable.printStackTrace(PrintWriter(trace))
+            trace.toString().lineSequence().filter { it.isNotEmpty() }.forEach { line.append('\t').append(it).append('\n') }
+        }
+        try {
+            out.append(line)
+            // Close enough for rotation; log lines are almost entirely ASCII
+            writtenBytes += line.length
+            if (writtenBytes >= maxFileBytes) rotate()
+        } catch (e: IOException) {
+            close()
+        }
+    }
+
+    fun flush() {
+        try {
+            writer?.flush()
+        } catch (e: IOException) {
+            close()
+        }
+    }
+
+    fun close() {
+        try {
+            writer?.close()
+        } catch (e: IOException) {
+            // Nothing left to do with a broken log file
+        }
+        writer = null
+    }
+
+    /**
+     * Archived logs, newest first
+     */
+    fun archives(): List<File> = directory.listFiles { file -> file.name.endsWith(ARCHIVE_SUFFIX) }
+        ?.sortedByDescending { it.name }
+        .orEmpty()
+
+    private fun open(): BufferedWriter? = try {
+        directory.mkdirs()
+        writtenBytes = if (activeFile.exists()) activeFile.length() else 0L
+        BufferedWriter(OutputStreamWriter(FileOutputStream(activeFile, true), Charsets.UTF_8), BUFFER_SIZE)
+            .also { writer = it }
+    } catch (e: IOException) {
+        null
+    }
+
+    private fun rotate() {
+        close()
+        // Zero-padded so archives sort by name
+        var stamp = clock()
+        var archive = archiveFile(stamp)
+        while (archive.exists()) archive = archiveFile(++stamp)
+        try {
+            activeFile.inputStream().use { input ->
+                GZIPOutputStream(FileOutputStream(archive)).use { output -> input.copyTo(output) }
+            }
+            activeFile.delete()
+        } catch (e: IOException) {
+            archive.delete()
+            // Start over rather than grow without bound
+            activeFile.delete()
+        }
+        archives().drop(maxArchives).forEach { it.delete() }
+        writtenBytes = 0L
+    }
+
+    private fun archiveFile(stamp: Long) = File(directory, "$ARCHIVE_PREFIX${stamp.toString().padStart(13, '0')}$ARCHIVE_SUFFIX")
+
+    private fun appendEscaped(message: String) {
+        for (char in message) {
+            when (char) {
+                '\n' -> line.append("\\n")
+                '\t' -> line.append("\\t")
+                '\r' -> line.append("\\r")
+                else -> line.append(char)
+            }
+        }
+    }
+
+    companion object {
+        const val ACTIVE_FILE = "chain.log"
+        const val ARCHIVE_PREFIX = "chain-"
+        const val ARCHIVE_SUFFIX = ".log.gz"
+        private const val DEFAULT_MAX_FILE_BYTES = 512L * 1024
+        private const val DEFAULT_MAX_ARCHIVES = 8
+        private const val BUFFER_SIZE = 16 * 1024
+    }
+}
@@ -0,0 +1,128 @@
+package com.chain.messaging.core.util.log
+
+import android.util.Log
+import java.io.File
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Asynchronous log pipeline: callers publish into a [LogRingBuffer] and a
+ * daemon writer thread forwards records to logcat and, once installed, to a
+ * [LogFileSink]. Level checks are one array read per call, so disabled
+ * subsystems cost nothing beyond the check. The writer parks with no timeout
+ * once the ring is empty and is unparked by the next record, so an idle
+ * pipeline never wakes the CPU.
+ */
+class LogPipeline(
+    capacity: Int = LogRingBuffer.DEFAULT_CAPACITY,
+    private val logcat: Boolean = true
+) {
+    private val buffer = LogRingBuffer(capacity)
+
+    // Minimum priority per subsystem ordinal; replaced as a whole on change
+    @Volatile
+    private var minPriorities = IntArray(LogSubsystem.values().size) { LogLevel.INFO.priority }
+
+    @Volatile
+    private var fileSink: LogFileSink? = null
+
+    @Volatile
+    private var writerThread: Thread? = null
+
+    // Set by the writer before it parks on an empty ring
+    @Volatile
+    private var writerIdle = false
+
+    fun isLoggable(subsystem: LogSubsystem, level: LogLevel): Boolean =
+        level.priority >= minPriorities[subsystem.ordinal]
+
+    fun setLevel(subsystem: LogSubsystem, level: LogLevel) {
+        val updated = minPriorities.copyOf()
+        updated[subsystem.ordinal] = level.priority
+        minPriorities = updated
+    }
+
+    fun setLevel(level: LogLevel) {
+        minPriorities = IntArray(LogSubsystem.values().size) { level.priority }
+    }
+
+    fun levelOf(subsystem: LogSubsystem): LogLevel {
+        val priority = minPriorities[subsystem.ordinal]
+        return LogLevel.values().first { it.priority == priority }
+    }
+
+    /**
+     * Start writing to rotating files in [directory]
+     */
+    @Synchronized
+    fun installFileSink(directory: File) {
+        if (fileSink == null) fileSink = LogFileSink(directory)
+    }
+
+    /**
+     * Queue a record; the caller has already checked [isLoggable]
+     */
+    fun log(subsystem: LogSubsystem, level: LogLevel, message: String, throwable: Throwable?) {
+        buffer.offer(
+            System.currentTimeMillis(),
+            level,
+            subsystem,
+            Thread.currentThread().name,
+            message,
+            throwable
+        )
+        val writer = writerThread ?: startWriter()
+        if (writerIdle) LockSupport.unpark(writer)
+    }
+
+    /**
+     * Write everything queued so far on the calling thread, e.g. before a crash
+     */
+    @Synchronized
+    fun flush() {
+        drainOnce()
+    }
+
+    fun droppedCount(): Long = buffer.droppedCount()
+
+    @Synchronized
+    private fun startWriter(): Thread {
+        writerThread?.let { return it }
+        val thread = Thread({
+            while (true) {
+                val drained = synchronized(this) { drainOnce() }
+                if (drained > 0) continue
+                writerIdle = true
+                // Re-check after announcing idle: a record published before the
+                // flag was visible did not unpark us
+                if (!buffer.hasPublished()) LockSupport.park(this)
+                writerIdle = false
+            }
+        }, WRITER_THREAD_NAME).apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+        }
+        writerThread = thread
+        thread.start()
+        return thread
+    }
+
+    private fun drainOnce(): Int {
+        val sink = fileSink
+        val drained = buffer.drain { record ->
+            if (logcat) writeToLogcat(record)
+            sink?.write(record)
+        }
+        if (drained > 0) sink?.flush()
+        return drained
+    }
+
+    private fun writeToLogcat(record: LogRecord) {
+        val throwable = record.throwable
+        val message = if (throwable == null) record.message else record.message + '\n' + Log.getStackTraceString(throwable)
+        Log.println(record.level.priority, record.subsystem.tag, message)
+    }
+
+    private companion object {
+        const val WRITER_THREAD_NAME = "chain-log-writer"
+    }
+}
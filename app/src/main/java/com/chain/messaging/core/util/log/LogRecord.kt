@@ -0,0 +1,69 @@
+package com.chain.messaging.core.util.log
+
+/**
+ * Log priorities, matching android.util.Log's
+ */
+enum class LogLevel(val priority: Int, val letter: Char) {
+    VERBOSE(2, 'V'),
+    DEBUG(3, 'D'),
+    INFO(4, 'I'),
+    WARN(5, 'W'),
+    ERROR(6, 'E'),
+    ASSERT(7, 'A')
+}
+
+/**
+ * Subsystems with independently gated log levels
+ */
+enum class LogSubsystem(val tag: String) {
+    APP("ChainMessaging"),
+    BLOCKCHAIN("Chain-Blockchain"),
+    P2P("Chain-P2P"),
+    GROUP("Chain-Group"),
+    CRYPTO("Chain-Crypto"),
+    STORAGE("Chain-Storage"),
+    CALLS("Chain-Calls"),
+    PERFORMANCE("Chain-Performance"),
+    NETWORK("Chain-Network")
+}
+
+/**
+ * One slot of [LogRingBuffer]. Slots are allocated once and overwritten, so an
+ * enabled log call allocates only its message.
+ */
+class LogRecord {
+    var timestamp = 0L
+        private set
+    var level = LogLevel.INFO
+        private set
+    var subsystem = LogSubsystem.APP
+        private set
+    var threadName: String = ""
+        private set
+    var message: String = ""
+        private set
+    var throwable: Throwable? = null
+        private set
+
+    internal fun set(
+        timestamp: Long,
+        level: LogLevel,
+        subsystem: LogSubsystem,
+        threadName: String,
+        message: String,
+        throwable: Throwable?
+    ) {
+        this.timestamp = timestamp
+        this.level = level
+        this.subsystem = subsystem
+        this.threadName = threadName
+        this.message = message
+        this.throwable = throwable
+    }
+
+    internal fun clear() {
+        message = ""
+        threadName = ""
+        throwable = null
+    }
+}
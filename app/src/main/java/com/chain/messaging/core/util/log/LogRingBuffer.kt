@@ -0,0 +1,92 @@
+package com.chain.messaging.core.util.log
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated [LogRecord]s.
+ *
+ * Producers claim a sequence with one CAS, fill the slot and publish it by
+ * storing the sequence in the slot's marker; the consumer reads slots in
+ * sequence order and frees them by advancing its cursor. A full ring drops
+ * the record instead of blocking the caller.
+ */
+class LogRingBuffer(capacity: Int = DEFAULT_CAPACITY) {
+
+    private val size = Integer.highestOneBit((capacity - 1).coerceAtLeast(1)) shl 1
+    private val mask = (size - 1).toLong()
+    private val records = Array(size) { LogRecord() }
+    // Sequence + 1 of the record published in each slot
+    private val published = AtomicLongArray(size)
+    private val claimed = AtomicLong()
+    private val dropped = AtomicLong()
+
+    @Volatile
+    private var consumed = 0L
+
+    val capacity: Int get() = size
+
+    /**
+     * Copy a record into the ring; false when it is full
+     */
+    fun offer(
+        timestamp: Long,
+        level: LogLevel,
+        subsystem: LogSubsystem,
+        threadName: String,
+        message: String,
+        throwable: Throwable?
+    ): Boolean {
+        while (true) {
+            val sequence = claimed.get()
+            if (sequence - consumed >= size) {
+                dropped.incrementAndGet()
+                return false
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                val index = (sequence and mask).toInt()
+                records[index].set(timestamp, level, subsystem, threadName, message, throwable)
+                // A full store, so the caller's following read of the consumer's idle flag cannot pass it
+                published.set(index, sequence + 1)
+                return true
+            }
+        }
+    }
+
+    /**
+     * Hand every published record to [consumer] in order; only one thread may
+     * drain at a time. Returns the number of records drained.
+     */
+    fun drain(consumer: (LogRecord) -> Unit): Int {
+        var count = 0
+        while (true) {
+            val sequence = consumed
+            val index = (sequence and mask).toInt()
+            if (published.get(index) != sequence + 1) return count
+            val record = records[index]
+            try {
+                consumer(record)
+            } finally {
+                record.clear()
+                consumed = sequence + 1
+            }
+            count++
+        }
+    }
+
+    /**
+     * Whether the next record for the consumer has been published
+     */
+    fun hasPublished(): Boolean {
+        val sequence = consumed
+        return published.get((sequence and mask).toInt()) == sequence + 1
+    }
+
+    fun pending(): Int = (claimed.get() - consumed).toInt().coerceAtLeast(0)
+
+    fun droppedCount(): Long = dropped.get()
+
+    companion object {
+        const val DEFAULT_CAPACITY = 4_096
+    }
+}
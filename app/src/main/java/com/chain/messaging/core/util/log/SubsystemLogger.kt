@@ -0,0 +1,32 @@
+package com.chain.messaging.core.util.log
+
+/**
+ * Lazy logger for one subsystem. Messages are built inside the inlined lambda
+ * only when the level is enabled, so a disabled call allocates nothing.
+ */
+class SubsystemLogger internal constructor(
+    val subsystem: LogSubsystem,
+    @PublishedApi internal val pipeline: LogPipeline
+) {
+    fun isEnabled(level: LogLevel): Boolean = pipeline.isLoggable(subsystem, level)
+
+    inline fun v(message: () -> String) {
+        if (pipeline.isLoggable(subsystem, LogLevel.VERBOSE)) pipeline.log(subsystem, LogLevel.VERBOSE, message(), null)
+    }
+
+    inline fun d(message: () -> String) {
+        if (pipeline.isLoggable(subsystem, LogLevel.DEBUG)) pipeline.log(subsystem, LogLevel.DEBUG, message(), null)
+    }
+
+    inline fun i(message: () -> String) {
+        if (pipeline.isLoggable(subsystem, LogLevel.INFO)) pipeline.log(subsystem, LogLevel.INFO, message(), null)
+    }
+
+    inline fun w(throwable: Throwable? = null, message: () -> String) {
+        if (pipeline.isLoggable(subsystem, LogLevel.WARN)) pipeline.log(subsystem, LogLevel.WARN, message(), throwable)
+    }
+
+    inline fun e(throwable: Throwable? = null, message: () -> String) {
+        if (pipeline.isLoggable(subsystem, LogLevel.ERROR)) pipeline.log(subsystem, LogLevel.ERROR, message(), throwable)
+    }
+}
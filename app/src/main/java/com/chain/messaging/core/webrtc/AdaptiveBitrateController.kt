@@ -0,0 +1,512 @@
+package com.chain.messaging.core.webrtc
+
+import kotlin.math.abs
+import kotlin.math.min
+import kotlin.math.roundToInt
+
+/**
+ * Anything that turns network estimates into encoder targets.
+ * Implemented by [AdaptiveBitrateController]; the test trace simulator accepts any
+ * policy so alternatives can be scored against the same traces.
+ */
+fun interface RatePolicy {
+    fun update(estimate: CallNetworkEstimate, nowMs: Long): RateTarget
+}
+
+/**
+ * Tunables for [AdaptiveBitrateController]
+ */
+data class RateControllerConfig(
+    val minBitrateKbps: Int = 120, // video pauses below this
+    val maxBitrateKbps: Int = 2500,
+    val startBitrateKbps: Int = 600,
+    val audioReserveKbps: Int = 48, // kept out of the video budget
+    val sourceWidth: Int = 1280,
+    val sourceHeight: Int = 720,
+    val sourceFrameRate: Int = 30,
+    val increaseHoldMs: Long = 4_000L, // no increase this soon after a decrease
+    val minChangeFraction: Double = 0.08, // smaller changes are not applied
+    val simulcastLayers: List<SimulcastLayerConfig> = emptyList() // lowest layer first
+)
+
+/**
+ * One simulcast encoding as configured on the sender
+ */
+data class SimulcastLayerConfig(
+    val rid: String,
+    val scaleDownBy: Double,
+    val targetKbps: Int,
+    val maxFrameRate: Int
+)
+
+/**
+ * Per-layer output of the controller, applied to the matching RtpSender encoding
+ */
+data class SimulcastLayer(
+    val rid: String,
+    val active: Boolean,
+    val maxBitrateKbps: Int,
+    val maxFrameRate: Int,
+    val scaleDownBy: Double
+)
+
+/**
+ * Why the controller last changed its target
+ */
+enum class RateChangeReason {
+    INITIAL, DELAY_OVERUSE, PACKET_LOSS, TRANSPORT_LIMIT, PROBE_INCREASE
+}
+
+/**
+ * Encoder target for one call: a continuous video bitrate plus the resolution
+ * and frame rate to encode at. A bitrate of 0 means video is paused.
+ */
+data class RateTarget(
+    val bitrateKbps: Int,
+    val width: Int,
+    val height: Int,
+    val frameRate: Int,
+    val scaleDownBy: Double,
+    val simulcastLayers: List<SimulcastLayer> = emptyList(),
+    val reason: RateChangeReason,
+    val timestamp: Long
+) {
+    val isVideoPaused: Boolean get() = bitrateKbps == 0
+
+    /**
+     * Nearest discrete quality step, used for reporting adjustments
+     */
+    fun toVideoQuality(): VideoQuality = when {
+        isVideoPaused -> VideoQuality.AUDIO_ONLY
+        height >= 720 -> VideoQuality.HD
+        height >= 360 -> VideoQuality.STANDARD
+        else -> VideoQuality.LOW
+    }
+}
+
+/**
+ * Delay-gradient plus loss-based rate controller for one call.
+ *
+ * The delay-based estimate follows the GCC shape: a trendline over the one-way
+ * delay proxy (RTT / 2) detects overuse, which cuts the rate to 85% of what was
+ * actually sent, while normal operation increases multiplicatively far from
+ * the last congestion point and additively close to it. The loss-based
+ * estimate backs off above 10% loss and grows below 2%. The applied target is
+ * the minimum of both and the transport's own available-bitrate estimate.
+ *
+ * Hysteresis keeps the output stable: changes under [RateControllerConfig.minChangeFraction]
+ * are ignored unless congestion was detected, increases wait
+ * [RateControllerConfig.increaseHoldMs] after any decrease, and resolution
+ * rungs and simulcast layers need a 25% margin to step up.
+ *
+ * A call site that can fail to apply a target uses [propose] and [commit]:
+ * the target only becomes current once it is committed, so a failed apply is
+ * retried on the next estimate instead of being taken as already sent.
+ */
+class AdaptiveBitrateController(
+    private val config: RateControllerConfig = RateControllerConfig()
+) : RatePolicy {
+
+    private val ladder = RESOLUTION_LADDER.filter { it.height <= config.sourceHeight }
+        .ifEmpty { listOf(ResolutionRung(config.sourceHeight, 0)) }
+    private val trendline = DelayTrendline()
+
+    private var delayBasedKbps = config.startBitrateKbps.toDouble()
+    private var lossBasedKbps = config.startBitrateKbps.toDouble()
+    private var convergedKbps = 0.0 // rate at the last overuse, 0 when unknown
+    private var lastUpdateMs = -1L
+    private var lastDecreaseMs = Long.MIN_VALUE / 2
+    private var videoPaused = false
+    private var rungIndex = initialRung(config.startBitrateKbps)
+    private var activeLayerCount = 0
+
+    private lateinit var current: RateTarget
+    private var pending: Proposal? = null
+
+    init {
+        accept(buildTarget(config.startBitrateKbps, RateChangeReason.INITIAL, 0L))
+    }
+
+    val currentTarget: RateTarget
+        @Synchronized get() = current
+
+    /**
+     * Feed one estimate and commit the resulting target, for callers whose
+     * apply cannot fail
+     */
+    @Synchronized
+    override fun update(estimate: CallNetworkEstimate, nowMs: Long): RateTarget {
+        return propose(estimate, nowMs).also { commit(it) }
+    }
+
+    /**
+     * Feed one estimate and return the target to apply, without making it
+     * current. Returns the current target unchanged when hysteresis holds it.
+     */
+    @Synchronized
+    fun propose(estimate: CallNetworkEstimate, nowMs: Long): RateTarget {
+        pending = null
+        val elapsedMs = if (lastUpdateMs < 0) DEFAULT_INTERVAL_MS else (nowMs - lastUpdateMs).coerceIn(1L, MAX_INTERVAL_MS)
+        lastUpdateMs = nowMs
+        val elapsedSec = elapsedMs / 1000.0
+
+        val ackedKbps = if (estimate.sendKbps > 0 && !videoPaused) {
+            (estimate.sendKbps - config.audioReserveKbps).coerceAtLeast(0).toDouble()
+        } else {
+            null
+        }
+
+        val signal = trendline.update(nowMs, estimate.rttMs / 2.0)
+        val delayCongested = updateDelayBased(signal, ackedKbps, estimate.rttMs, elapsedSec)
+        val lossCongested = updateLossBased(estimate.lossFraction, elapsedSec)
+
+        val transportCapKbps = if (estimate.availableOutgoingKbps > 0) {
+            (estimate.availableOutgoingKbps - config.audioReserveKbps).coerceAtLeast(0).toDouble()
+        } else {
+            Double.MAX_VALUE
+        }
+
+        val raw = min(min(delayBasedKbps, lossBasedKbps), transportCapKbps).coerceAtMost(config.maxBitrateKbps.toDouble())
+        val reason = when (raw) {
+            transportCapKbps -> RateChangeReason.TRANSPORT_LIMIT
+            lossBasedKbps -> RateChangeReason.PACKET_LOSS
+            delayBasedKbps -> if (delayCongested) RateChangeReason.DELAY_OVERUSE else RateChangeReason.PROBE_INCREASE
+            else -> RateChangeReason.PROBE_INCREASE
+        }
+
+        val pause = if (videoPaused) {
+            raw < config.minBitrateKbps * RESUME_MARGIN
+        } else {
+            raw < config.minBitrateKbps
+        }
+        val proposedKbps = if (pause) 0 else raw.roundToInt()
+        val previousKbps = current.bitrateKbps
+        val congested = delayCongested || lossCongested
+        if (congested) lastDecreaseMs = nowMs
+        if (proposedKbps == previousKbps) return current
+
+        val changeFraction = abs(proposedKbps - previousKbps).toDouble() / maxOf(previousKbps, 1)
+        val apply = if (proposedKbps < previousKbps) {
+            congested || pause || changeFraction >= config.minChangeFraction
+        } else {
+            !congested && changeFraction >= config.minChangeFraction && nowMs - lastDecreaseMs >= config.increaseHoldMs
+        }
+        if (!apply) return current
+
+        val proposal = buildTarget(proposedKbps, reason, nowMs)
+        pending = proposal
+        return proposal.target
+    }
+
+    /**
+     * Make [target], the last result of [propose], current once it has been
+     * applied to the encoder. Anything else is ignored.
+     */
+    @Synchronized
+    fun commit(target: RateTarget) {
+        val proposal = pending?.takeIf { it.target === target } ?: return
+        pending = null
+        if (target.bitrateKbps < current.bitrateKbps) lastDecreaseMs = maxOf(lastDecreaseMs, target.timestamp)
+        accept(proposal)
+    }
+
+    /**
+     * Forget all history, e.g. after an ICE restart
+     */
+    @Synchronized
+    fun reset() {
+        trendline.reset()
+        delayBasedKbps = config.startBitrateKbps.toDouble()
+        lossBasedKbps = config.startBitrateKbps.toDouble()
+        convergedKbps = 0.0
+        lastUpdateMs = -1L
+        lastDecreaseMs = Long.MIN_VALUE / 2
+        videoPaused = false
+        rungIndex = initialRung(config.startBitrateKbps)
+        activeLayerCount = 0
+        pending = null
+        accept(buildTarget(config.startBitrateKbps, RateChangeReason.INITIAL, 0L))
+    }
+
+    private fun accept(proposal: Proposal) {
+        current = proposal.target
+        videoPaused = proposal.target.isVideoPaused
+        rungIndex = proposal.rungIndex
+        activeLayerCount = proposal.activeLayerCount
+    }
+
+    private fun updateDelayBased(signal: DelaySignal, ackedKbps: Double?, rttMs: Long, elapsedSec: Double): Boolean {
+        when (signal) {
+            DelaySignal.OVERUSE -> {
+                val base = if (ackedKbps != null) min(ackedKbps, delayBasedKbps) else delayBasedKbps
+                convergedKbps = base
+                delayBasedKbps = base * DELAY_BACKOFF
+            }
+            DelaySignal.UNDERUSE -> Unit // queues are draining; hold
+            DelaySignal.NORMAL -> {
+                if (convergedKbps > 0 && delayBasedKbps > convergedKbps * CONVERGENCE_BAND) {
+                    convergedKbps = 0.0 // past the old ceiling, the link has improved
+                }
+                delayBasedKbps = if (convergedKbps > 0 && delayBasedKbps > convergedKbps / CONVERGENCE_BAND) {
+                    // Near the last congestion point: about one packet per RTT
+                    delayBasedKbps + maxOf(ADDITIVE_MIN_KBPS, PACKET_KBITS * 1000.0 / (rttMs + RTT_PADDING_MS)) * elapsedSec
+                } else {
+                    delayBasedKbps * (1 + MULTIPLICATIVE_INCREASE * elapsedSec)
+                }
+                if (ackedKbps != null) {
+                    delayBasedKbps = min(delayBasedKbps, ackedKbps * ACKED_HEADROOM + 10)
+                }
+            }
+        }
+        delayBasedKbps = delayBasedKbps.coerceIn(FLOOR_KBPS, config.maxBitrateKbps.toDouble())
+        return signal == DelaySignal.OVERUSE
+    }
+
+    private fun updateLossBased(lossFraction: Double, elapsedSec: Double): Boolean {
+        val congested = lossFraction > HIGH_LOSS
+        lossBasedKbps = when {
+            congested -> {
+                val base = if (current.bitrateKbps > 0) min(lossBasedKbps, current.bitrateKbps.toDouble()) else lossBasedKbps
+                base * (1 - 0.5 * lossFraction)
+            }
+            lossFraction < LOW_LOSS -> lossBasedKbps * (1 + MULTIPLICATIVE_INCREASE * elapsedSec)
+            else -> lossBasedKbps
+        }.coerceIn(FLOOR_KBPS, config.maxBitrateKbps.toDouble())
+        return congested
+    }
+
+    private fun buildTarget(bitrateKbps: Int, reason: RateChangeReason, timestamp: Long): Proposal {
+        if (bitrateKbps == 0) {
+            return Proposal(RateTarget(
+                bitrateKbps = 0,
+                width = 0,
+                height = 0,
+                frameRate = 0,
+                scaleDownBy = 1.0,
+                simulcastLayers = config.simulcastLayers.map {
+                    SimulcastLayer(it.rid, false, 0, 0, it.scaleDownBy)
+                },
+                reason = reason,
+                timestamp = timestamp
+            ), rungIndex, activeLayerCount = 0)
+        }
+
+        if (config.simulcastLayers.isNotEmpty()) {
+            val layers = allocateLayers(bitrateKbps)
+            val top = layers.last { it.active }
+            val height = (config.sourceHeight / top.scaleDownBy).roundToInt()
+            return Proposal(RateTarget(
+                bitrateKbps = bitrateKbps,
+                width = scaledWidth(height),
+                height = height,
+                frameRate = top.maxFrameRate,
+                scaleDownBy = top.scaleDownBy,
+                simulcastLayers = layers,
+                reason = reason,
+                timestamp = timestamp
+            ), rungIndex, activeLayerCount = layers.count { it.active })
+        }
+
+        val rung = selectRung(bitrateKbps)
+        val height = ladder[rung].height
+        val width = scaledWidth(height)
+        val frameRate = (bitrateKbps * 1000.0 / (width.toDouble() * height * BITS_PER_PIXEL)).toInt()
+            .coerceIn(minOf(MIN_FRAME_RATE, config.sourceFrameRate), config.sourceFrameRate)
+        return Proposal(RateTarget(
+            bitrateKbps = bitrateKbps,
+            width = width,
+            height = height,
+            frameRate = frameRate,
+            scaleDownBy = config.sourceHeight.toDouble() / height,
+            reason = reason,
+            timestamp = timestamp
+        ), rung, activeLayerCount)
+    }
+
+    private fun initialRung(kbps: Int): Int {
+        val index = ladder.indexOfFirst { kbps >= it.minKbps }
+        return if (index >= 0) index else ladder.lastIndex
+    }
+
+    private fun selectRung(kbps: Int): Int {
+        var index = rungIndex
+        while (index < ladder.lastIndex && kbps < ladder[index].minKbps) index++
+        while (index > 0 && kbps >= ladder[index - 1].minKbps * UP_SWITCH_MARGIN) index--
+        return index
+    }
+
+    private fun allocateLayers(budgetKbps: Int): List<SimulcastLayer> {
+        val layers = config.simulcastLayers
+        var count = 0
+        var cumulative = 0
+        for ((index, layer) in layers.withIndex()) {
+            val needed = cumulative + layer.targetKbps
+            val margin = if (index < activeLayerCount) 1.0 else UP_SWITCH_MARGIN
+            if (budgetKbps < needed * margin) break
+            count++
+            cumulative = needed
+        }
+        // The lowest layer always runs while video is on
+        count = count.coerceAtLeast(1)
+
+        val belowTop = layers.take(count - 1).sumOf { it.targetKbps }
+        return layers.mapIndexed { index, layer ->
+            val bitrate = when {
+                index >= count -> 0
+                index == count - 1 -> (budgetKbps - belowTop).coerceAtMost((layer.targetKbps * TOP_LAYER_HEADROOM).toInt())
+                else -> layer.targetKbps
+            }
+            SimulcastLayer(
+                rid = layer.rid,
+                active = index < count,
+                maxBitrateKbps = bitrate,
+                maxFrameRate = layer.maxFrameRate,
+                scaleDownBy = layer.scaleDownBy
+            )
+        }
+    }
+
+    private fun scaledWidth(height: Int): Int {
+        val width = (config.sourceWidth.toLong() * height / config.sourceHeight).toInt()
+        return width - width % 2
+    }
+
+    private data class ResolutionRung(val height: Int, val minKbps: Int)
+
+    /**
+     * A target with the rung and layer state it was chosen against
+     */
+    private data class Proposal(val target: RateTarget, val rungIndex: Int, val activeLayerCount: Int)
+
+    companion object {
+        /**
+         * Three-layer simulcast used for group calls
+         */
+        val DEFAULT_SIMULCAST_LAYERS = listOf(
+            SimulcastLayerConfig(rid = "q", scaleDownBy = 4.0, targetKbps = 150, maxFrameRate = 15),
+            SimulcastLayerConfig(rid = "h", scaleDownBy = 2.0, targetKbps = 500, maxFrameRate = 30),
+            SimulcastLayerConfig(rid = "f", scaleDownBy = 1.0, targetKbps = 1500, maxFrameRate = 30)
+        )
+
+        private val RESOLUTION_LADDER = listOf(
+            ResolutionRung(720, 1200),
+            ResolutionRung(540, 700),
+            ResolutionRung(360, 350),
+            ResolutionRung(270, 200),
+            ResolutionRung(180, 0)
+        )
+
+        private const val DEFAULT_INTERVAL_MS = 1000L
+        private const val MAX_INTERVAL_MS = 5000L
+        private const val DELAY_BACKOFF = 0.85
+        private const val MULTIPLICATIVE_INCREASE = 0.08 // per second
+        private const val CONVERGENCE_BAND = 1.1
+        private const val PACKET_KBITS = 9.6 // 1200-byte packet
+        private const val RTT_PADDING_MS = 100L
+        private const val ADDITIVE_MIN_KBPS = 10.0
+        private const val ACKED_HEADROOM = 1.5
+        private const val HIGH_LOSS = 0.10
+        private const val LOW_LOSS = 0.02
+        private const val FLOOR_KBPS = 30.0
+        private const val RESUME_MARGIN = 1.5
+        private const val UP_SWITCH_MARGIN = 1.25
+        private const val TOP_LAYER_HEADROOM = 1.5
+        private const val BITS_PER_PIXEL = 0.06
+        private const val MIN_FRAME_RATE = 12
+    }
+}
+
+/**
+ * Delay detector state
+ */
+internal enum class DelaySignal {
+    NORMAL, OVERUSE, UNDERUSE
+}
+
+/**
+ * Least-squares trendline over the last few delay samples with an adaptive
+ * threshold, plus a standing-queue check against the lowest delay seen so a
+ * saturated drop-tail buffer (flat but high delay) still counts as overuse.
+ */
+internal class DelayTrendline(private val windowSize: Int = 5) {
+
+    private val times = DoubleArray(windowSize)
+    private val delays = DoubleArray(windowSize)
+    private var count = 0
+    private var head = 0
+    private var lastMs = -1L
+    private var baselineDelay = Double.MAX_VALUE
+    private var threshold = INITIAL_THRESHOLD
+
+    fun update(nowMs: Long, delayMs: Double): DelaySignal {
+        val elapsedSec = if (lastMs < 0) 1.0 else ((nowMs - lastMs) / 1000.0).coerceAtLeast(0.001)
+        lastMs = nowMs
+
+        // Let the baseline creep up slowly so route changes are eventually accepted
+        baselineDelay = if (baselineDelay == Double.MAX_VALUE) delayMs else min(baselineDelay + BASELINE_DRIFT * elapsedSec, delayMs)
+
+        times[head] = nowMs / 1000.0
+        delays[head] = delayMs
+        head = (head + 1) % windowSize
+        if (count < windowSize) count++
+        if (count < MIN_SAMPLES) return DelaySignal.NORMAL
+
+        val slope = slope()
+        val signal = when {
+            slope > threshold -> DelaySignal.OVERUSE
+            slope < -threshold -> DelaySignal.UNDERUSE
+            delayMs - baselineDelay > STANDING_QUEUE_MS -> DelaySignal.OVERUSE
+            else -> DelaySignal.NORMAL
+        }
+
+        val deviation = abs(slope) - threshold
+        if (deviation <= MAX_ADAPT_DEVIATION) {
+            val gain = if (deviation > 0) K_UP else K_DOWN
+            threshold = (threshold + gain * deviation * elapsedSec).coerceIn(MIN_THRESHOLD, MAX_THRESHOLD)
+        }
+        return signal
+    }
+
+    fun reset() {
+        count = 0
+        head = 0
+        lastMs = -1L
+        baselineDelay = Double.MAX_VALUE
+        threshold = INITIAL_THRESHOLD
+    }
+
+    /**
+     * Delay growth in ms per second over the window
+     */
+    private fun slope(): Double {
+        var meanT = 0.0
+        var meanD = 0.0
+        for (i in 0 until count) {
+            meanT += times[i]
+            meanD += delays[i]
+        }
+        meanT /= count
+        meanD /= count
+
+        var numerator = 0.0
+        var denominator = 0.0
+        for (i in 0 until count) {
+            val dt = times[i] - meanT
+            numerator += dt * (delays[i] - meanD)
+            denominator += dt * dt
+        }
+        return if (denominator == 0.0) 0.0 else numerator / denominator
+    }
+
+    companion object {
+        private const val MIN_SAMPLES = 3
+        private const val INITIAL_THRESHOLD = 10.0 // ms per second
+        private const val MIN_THRESHOLD = 4.0
+        private const val MAX_THRESHOLD = 100.0
+        private const val K_UP = 0.2
+        private const val K_DOWN = 0.02
+        private const val MAX_ADAPT_DEVIATION = 15.0
+        private const val STANDING_QUEUE_MS = 100.0
+        private const val BASELINE_DRIFT = 0.5 // ms per second
+    }
+}
@@ -49,7 +49,8 @@ interface BandwidthMonitor {
 
 @Singleton
 class BandwidthMonitorImpl @Inject constructor(
-    private val context: Context
+    private val context: Context,
+    private val statsSampler: CallStatsSampler
 ) : BandwidthMonitor {
     
     private val activeSessions = ConcurrentHashMap<String, BandwidthSession>()
@@ -81,10 +82,14 @@ class BandwidthMonitorImpl @Inject constructor(
         val session = activeSessions[callId]
         
         return if (session != null && session.isActive) {
+            // Prefer the call's measured stats; fall back to the link estimate until samples arrive
+            val estimate = statsSampler.getEstimate(callId)
+            val measuredAvailable = estimate?.availableOutgoingKbps ?: 0
+            
             BandwidthInfo(
                 callId = callId,
-                availableBandwidth = estimateAvailableBandwidth(),
-                usedBandwidth = calculateUsedBandwidth(session),
+                availableBandwidth = if (measuredAvailable > 0) measuredAvailable else estimateAvailableBandwidth(),
+                usedBandwidth = estimate?.usedKbps ?: 0,
                 timestamp = System.currentTimeMillis()
             )
         } else {
@@ -179,25 +184,6 @@ class BandwidthMonitorImpl @Inject constructor(
         }
     }
     
-    private fun calculateUsedBandwidth(session: BandwidthSession): Int {
-        // Calculate bandwidth usage based on call statistics
-        // This integrates with WebRTC statistics API
-        val duration = System.currentTimeMillis() - session.startTime
-        val baseUsage = when (getNetworkType()) {
-            NetworkType.WIFI -> 1200 // Higher quality on WiFi
-            NetworkType.CELLULAR_4G -> 800 // Standard quality on 4G
-            NetworkType.CELLULAR_3G -> 400 // Lower quality on 3G
-            NetworkType.CELLULAR_2G -> 200 // Minimal quality on 2G
-            NetworkType.UNKNOWN -> 600 // Conservative default
-        }
-        
-        // Adjust based on call duration (quality may degrade over time)
-        val durationMinutes = duration / (1000 * 60)
-        val degradationFactor = if (durationMinutes > 10) 0.9 else 1.0
-        
-        return (baseUsage * degradationFactor).toInt()
-    }
-    
     private fun getNetworkType(): NetworkType {
         // Detect actual network type using Android APIs
         return try {
@@ -10,14 +10,12 @@ import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.asSharedFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.filter
 import kotlinx.coroutines.launch
 import org.webrtc.PeerConnection
-import org.webrtc.RTCStatsReport
 import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
-import kotlin.coroutines.suspendCoroutine
-import kotlin.coroutines.resume
 
 /**
  * Call quality manager for automatic quality adjustment and optimization
@@ -28,11 +26,14 @@ class CallQualityManager @Inject constructor(
     private val bandwidthMonitor: BandwidthMonitor,
     private val codecManager: CodecManager,
     private val callRecordingManager: CallRecordingManager,
-    private val screenshotDetector: ScreenshotDetector
+    private val screenshotDetector: ScreenshotDetector,
+    private val statsSampler: CallStatsSampler
 ) {
     
     private val scope = CoroutineScope(Dispatchers.IO)
     private val activeMonitoringSessions = ConcurrentHashMap<String, QualityMonitoringSession>()
+    private val rateControllers = ConcurrentHashMap<String, AdaptiveBitrateController>()
+    private val manualBitrateCaps = ConcurrentHashMap<String, Int>()
     
     private val _qualityMetrics = MutableStateFlow(CallQualityMetrics())
     val qualityMetrics: Flow<CallQualityMetrics> = _qualityMetrics.asStateFlow()
@@ -62,7 +63,8 @@ class CallQualityManager @Inject constructor(
             monitoringJob = null
         )
         
-        // Start bandwidth monitoring
+        // Start the call's stats sampler, then bandwidth monitoring which reads from it
+        statsSampler.startSampling(callId, peerConnection)
         bandwidthMonitor.startMonitoring(callId)
         
         // Enable screenshot detection if video call
@@ -76,7 +78,18 @@ class CallQualityManager @Inject constructor(
             monitorCallQuality(session)
         }
         
-        activeMonitoringSessions[callId] = session.copy(monitoringJob = monitoringJob)
+        // Video bitrate follows every sampler estimate rather than the slower monitoring cycle
+        val rateControlJob = if (isVideo) {
+            scope.launch {
+                statsSampler.observeEstimates()
+                    .filter { it.callId == callId }
+                    .collect { estimate -> runRateControl(session, estimate) }
+            }
+        } else {
+            null
+        }
+        
+        activeMonitoringSessions[callId] = session.copy(monitoringJob = monitoringJob, rateControlJob = rateControlJob)
         
         _callQualityEvents.emit(CallQualityEvent.MonitoringStarted(callId))
     }
@@ -87,11 +100,15 @@ class CallQualityManager @Inject constructor(
     suspend fun stopQualityMonitoring(callId: String) {
         val session = activeMonitoringSessions.remove(callId) ?: return
         
-        // Stop monitoring job
+        // Stop monitoring and rate control
         session.monitoringJob?.cancel()
+        session.rateControlJob?.cancel()
+        rateControllers.remove(callId)
+        manualBitrateCaps.remove(callId)
         
-        // Stop bandwidth monitoring
+        // Stop bandwidth monitoring and the stats sampler
         bandwidthMonitor.stopMonitoring(callId)
+        statsSampler.stopSampling(callId)
         
         // Stop screenshot detection
         screenshotDetector.stopScreenshotDetection()
@@ -114,12 +131,17 @@ class CallQualityManager @Inject constructor(
     suspend fun adjustCallQuality(callId: String, targetQuality: VideoQuality) {
         val session = activeMonitoringSessions[callId] ?: return
         
+        val fromQuality = getCurrentVideoQuality(callId)
         val codecSettings = codecManager.getCodecSettingsForQuality(targetQuality)
         codecManager.applyCodecSettings(callId, codecSettings)
         
+        // The manual choice becomes the rate controller's ceiling
+        manualBitrateCaps[callId] = codecSettings.videoBitrate
+        rateControllers.remove(callId)
+        
         val adjustment = QualityAdjustment(
             callId = callId,
-            fromQuality = getCurrentVideoQuality(callId),
+            fromQuality = fromQuality,
             toQuality = targetQuality,
             reason = "Manual adjustment",
             timestamp = System.currentTimeMillis()
@@ -173,12 +195,6 @@ class CallQualityManager @Inject constructor(
                     _callQualityEvents.emit(CallQualityEvent.NetworkConditionChanged(session.callId, networkCondition))
                 }
                 
-                // Check if quality adjustment is needed
-                val shouldAdjust = shouldAdjustQuality(metrics, networkCondition)
-                if (shouldAdjust) {
-                    performAutomaticQualityAdjustment(session, metrics, networkCondition)
-                }
-                
                 // Wait before next monitoring cycle
                 delay(MONITORING_INTERVAL_MS)
                 
@@ -193,8 +209,8 @@ class CallQualityManager @Inject constructor(
         // Get bandwidth information
         val bandwidthInfo = bandwidthMonitor.getCurrentBandwidth(session.callId)
         
-        // Get WebRTC statistics
-        val rtcStats = getWebRTCStats(session.peerConnection)
+        // Measured statistics from the call's sampler
+        val rtcStats = statsSampler.getEstimate(session.callId)?.toWebRTCStats() ?: getDefaultWebRTCStats()
         
         return CallQualityMetrics(
             callId = session.callId,
@@ -210,94 +226,19 @@ class CallQualityManager @Inject constructor(
         )
     }
     
-    private suspend fun getWebRTCStats(peerConnection: PeerConnection): WebRTCStats {
-        // Collect actual WebRTC statistics using RTCStatsReport
-        return try {
-            suspendCoroutine<WebRTCStats> { continuation ->
-                peerConnection.getStats { rtcStatsReport ->
-                    try {
-                        val stats = parseRTCStatsReport(rtcStatsReport)
-                        continuation.resume(stats)
-                    } catch (e: Exception) {
-                        // Fallback to default values if parsing fails
-                        continuation.resume(getDefaultWebRTCStats())
-                    }
-                }
-            }
-        } catch (e: Exception) {
-            // Fallback to default values if stats collection fails
-            getDefaultWebRTCStats()
-        }
-    }
-    
-    private fun parseRTCStatsReport(report: RTCStatsReport): WebRTCStats {
-        var packetLoss = 0.0
-        var jitter = 0.0
-        var rtt = 0L
-        var audioLevel = 0.0
-        var videoFrameRate = 0
-        var videoResolution = ""
-        
-        // Parse the stats report
-        for (stats in report.statsMap.values) {
-            when (stats.type) {
-                "inbound-rtp" -> {
-                    // Parse inbound RTP statistics
-                    stats.members["packetsLost"]?.let { lost ->
-                        stats.members["packetsReceived"]?.let { received ->
-                            val lostCount = (lost as? Number)?.toDouble() ?: 0.0
-                            val receivedCount = (received as? Number)?.toDouble() ?: 1.0
-                            packetLoss = lostCount / (lostCount + receivedCount)
-                        }
-                    }
-                    
-                    stats.members["jitter"]?.let { jitterValue ->
-                        jitter = (jitterValue as? Number)?.toDouble() ?: 0.0
-                    }
-                    
-                    // Video specific stats
-                    stats.members["framesPerSecond"]?.let { fps ->
-                        videoFrameRate = (fps as? Number)?.toInt() ?: 0
-                    }
-                    
-                    // Audio level
-                    stats.members["audioLevel"]?.let { level ->
-                        audioLevel = (level as? Number)?.toDouble() ?: 0.0
-                    }
-                }
-                
-                "remote-inbound-rtp" -> {
-                    // Parse remote inbound RTP statistics for RTT
-                    stats.members["roundTripTime"]?.let { rttValue ->
-                        rtt = ((rttValue as? Number)?.toDouble()?.times(1000))?.toLong() ?: 0L
-                    }
-                }
-                
-                "track" -> {
-                    // Parse track statistics for video resolution
-                    if (stats.members["kind"] == "video") {
-                        val width = stats.members["frameWidth"] as? Number
-                        val height = stats.members["frameHeight"] as? Number
-                        if (width != null && height != null) {
-                            videoResolution = "${width.toInt()}x${height.toInt()}"
-                        }
-                    }
-                }
-            }
-        }
-        
+    private fun CallNetworkEstimate.toWebRTCStats(): WebRTCStats {
         return WebRTCStats(
-            packetLoss = packetLoss,
-            jitter = jitter,
-            rtt = rtt,
+            packetLoss = lossFraction,
+            jitter = jitterMs,
+            rtt = rttMs,
             audioLevel = audioLevel,
-            videoFrameRate = videoFrameRate,
-            videoResolution = videoResolution.ifEmpty { "unknown" }
+            videoFrameRate = framesPerSecond,
+            videoResolution = videoResolution
         )
     }
     
     private fun getDefaultWebRTCStats(): WebRTCStats {
-        // Fallback default values when real stats are not available
+        // Fallback default values until the sampler has measured the call
         return WebRTCStats(
             packetLoss = 0.01, // 1% packet loss
             jitter = 20.0, // 20ms jitter
@@ -317,90 +258,58 @@ class CallQualityManager @Inject constructor(
         }
     }
     
-    private fun shouldAdjustQuality(metrics: CallQualityMetrics, networkCondition: NetworkCondition): Boolean {
-        val currentQuality = getCurrentVideoQuality(metrics.callId)
-        val recommendedQuality = getRecommendedVideoQuality()
-        
-        // Adjust if recommended quality is different from current
-        if (currentQuality != recommendedQuality) {
-            return true
-        }
-        
-        // Adjust if packet loss is too high
-        if (metrics.packetLoss > PACKET_LOSS_THRESHOLD) {
-            return true
-        }
+    private suspend fun runRateControl(session: QualityMonitoringSession, estimate: CallNetworkEstimate) {
+        val cap = manualBitrateCaps[session.callId]
+        if (cap == 0) return // audio only was chosen manually
         
-        // Adjust if RTT is too high
-        if (metrics.rtt > RTT_THRESHOLD) {
-            return true
-        }
+        val controller = rateControllers.getOrPut(session.callId) { createRateController(session.peerConnection, cap) }
+        val previous = controller.currentTarget
+        val target = controller.propose(estimate, estimate.timestamp)
+        if (target == previous) return
         
-        return false
-    }
-    
-    private suspend fun performAutomaticQualityAdjustment(
-        session: QualityMonitoringSession,
-        metrics: CallQualityMetrics,
-        networkCondition: NetworkCondition
-    ) {
-        val currentQuality = getCurrentVideoQuality(session.callId)
-        val targetQuality = determineTargetQuality(metrics, networkCondition)
+        // A target the sender rejected stays uncommitted and is proposed again
+        if (!codecManager.applyRateTarget(session.callId, session.peerConnection, target)) return
+        controller.commit(target)
         
-        if (currentQuality != targetQuality) {
-            val codecSettings = codecManager.getCodecSettingsForQuality(targetQuality)
-            codecManager.applyCodecSettings(session.callId, codecSettings)
-            
+        val fromQuality = previous.toVideoQuality()
+        val toQuality = target.toVideoQuality()
+        if (fromQuality != toQuality) {
             val adjustment = QualityAdjustment(
                 callId = session.callId,
-                fromQuality = currentQuality,
-                toQuality = targetQuality,
-                reason = "Automatic adjustment based on network conditions",
+                fromQuality = fromQuality,
+                toQuality = toQuality,
+                reason = "Rate control: ${target.reason.name.lowercase()} at ${target.bitrateKbps} kbps",
                 timestamp = System.currentTimeMillis()
             )
-            
             _qualityAdjustments.emit(adjustment)
             _callQualityEvents.emit(CallQualityEvent.QualityAdjusted(adjustment))
         }
     }
     
-    private fun determineTargetQuality(metrics: CallQualityMetrics, networkCondition: NetworkCondition): VideoQuality {
-        // Consider multiple factors for quality determination
-        return when {
-            metrics.packetLoss > 0.05 -> VideoQuality.AUDIO_ONLY
-            metrics.rtt > 500 -> VideoQuality.LOW
-            networkCondition == NetworkCondition.BAD -> VideoQuality.AUDIO_ONLY
-            networkCondition == NetworkCondition.POOR -> VideoQuality.LOW
-            networkCondition == NetworkCondition.GOOD -> VideoQuality.STANDARD
-            networkCondition == NetworkCondition.EXCELLENT -> VideoQuality.HD
-            else -> VideoQuality.STANDARD
+    private fun createRateController(peerConnection: PeerConnection, maxBitrateKbps: Int?): AdaptiveBitrateController {
+        // Group calls negotiate several encodings on the video sender
+        val encodingCount = try {
+            peerConnection.videoSender()?.parameters?.encodings?.size ?: 1
+        } catch (e: Exception) {
+            1
         }
+        val defaults = RateControllerConfig()
+        return AdaptiveBitrateController(
+            defaults.copy(
+                maxBitrateKbps = maxBitrateKbps ?: defaults.maxBitrateKbps,
+                startBitrateKbps = minOf(defaults.startBitrateKbps, maxBitrateKbps ?: Int.MAX_VALUE),
+                simulcastLayers = if (encodingCount > 1) AdaptiveBitrateController.DEFAULT_SIMULCAST_LAYERS else emptyList()
+            )
+        )
     }
     
     private fun getCurrentVideoQuality(callId: String): VideoQuality {
-        // Get the current video quality from codec manager based on bandwidth and performance
-        val bandwidthInfo = try {
-            kotlinx.coroutines.runBlocking {
-                bandwidthMonitor.getCurrentBandwidth(callId)
-            }
-        } catch (e: Exception) {
-            null
-        }
-        
-        return when {
-            bandwidthInfo == null -> VideoQuality.STANDARD
-            bandwidthInfo.availableBandwidth > 2000 -> VideoQuality.HD
-            bandwidthInfo.availableBandwidth > 800 -> VideoQuality.STANDARD
-            bandwidthInfo.availableBandwidth > 300 -> VideoQuality.LOW
-            else -> VideoQuality.AUDIO_ONLY
-        }
+        return rateControllers[callId]?.currentTarget?.toVideoQuality() ?: VideoQuality.STANDARD
     }
     
     companion object {
         private const val MONITORING_INTERVAL_MS = 3000L // Monitor every 3 seconds
         private const val ERROR_RETRY_INTERVAL_MS = 5000L // Retry after 5 seconds on error
-        private const val PACKET_LOSS_THRESHOLD = 0.03 // 3% packet loss threshold
-        private const val RTT_THRESHOLD = 300L // 300ms RTT threshold
     }
 }
 
@@ -449,7 +358,8 @@ data class QualityMonitoringSession(
     val peerConnection: PeerConnection,
     val isVideo: Boolean,
     val startTime: Long,
-    val monitoringJob: Job?
+    val monitoringJob: Job?,
+    val rateControlJob: Job? = null
 )
 
 /**
@@ -0,0 +1,346 @@
+package com.chain.messaging.core.webrtc
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withTimeoutOrNull
+import org.webrtc.PeerConnection
+import org.webrtc.RTCStats
+import org.webrtc.RTCStatsReport
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.coroutines.resume
+
+/**
+ * Single stats sampler per call.
+ * Polls PeerConnection.getStats once per interval, reduces the report to a
+ * primitive [RtcStatsSnapshot] and feeds a per-call [BandwidthEstimator].
+ * BandwidthMonitor and CallQualityManager both read the resulting
+ * [CallNetworkEstimate] instead of polling WebRTC separately.
+ */
+@Singleton
+class CallStatsSampler @Inject constructor() {
+
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    private val sessions = ConcurrentHashMap<String, SamplerSession>()
+
+    private val _estimates = MutableSharedFlow<CallNetworkEstimate>(extraBufferCapacity = 16)
+
+    /**
+     * Start sampling stats for a call. Calling it again for the same call is a no-op.
+     */
+    fun startSampling(callId: String, peerConnection: PeerConnection, intervalMs: Long = SAMPLE_INTERVAL_MS) {
+        if (sessions.containsKey(callId)) return
+
+        val estimator = BandwidthEstimator()
+        val job = scope.launch {
+            while (isActive) {
+                val snapshot = collectSnapshot(peerConnection)
+                if (snapshot != null) {
+                    estimator.addSample(snapshot)
+                    _estimates.tryEmit(estimator.estimate(callId))
+                }
+                delay(intervalMs)
+            }
+        }
+        sessions[callId] = SamplerSession(estimator, job)
+    }
+
+    /**
+     * Stop sampling stats for a call
+     */
+    fun stopSampling(callId: String) {
+        sessions.remove(callId)?.job?.cancel()
+    }
+
+    /**
+     * Latest smoothed estimate for a call, or null if it is not sampled or has no samples yet
+     */
+    fun getEstimate(callId: String): CallNetworkEstimate? {
+        val estimator = sessions[callId]?.estimator ?: return null
+        return if (estimator.sampleCount > 0) estimator.estimate(callId) else null
+    }
+
+    /**
+     * Observe estimates from all sampled calls
+     */
+    fun observeEstimates(): Flow<CallNetworkEstimate> = _estimates.asSharedFlow()
+
+    private suspend fun collectSnapshot(peerConnection: PeerConnection): RtcStatsSnapshot? {
+        return try {
+            withTimeoutOrNull(STATS_TIMEOUT_MS) {
+                // Cancellable, so the timeout still fires when the callback never does
+                suspendCancellableCoroutine { continuation ->
+                    peerConnection.getStats { report ->
+                        continuation.resume(
+                            try {
+                                RtcStatsParser.parse(report)
+                            } catch (e: Exception) {
+                                null
+                            }
+                        )
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private class SamplerSession(
+        val estimator: BandwidthEstimator,
+        val job: Job
+    )
+
+    companion object {
+        const val SAMPLE_INTERVAL_MS = 1000L
+        private const val STATS_TIMEOUT_MS = 2000L
+    }
+}
+
+/**
+ * Cumulative counters and instantaneous values taken from one RTCStatsReport
+ */
+data class RtcStatsSnapshot(
+    val timestampMs: Long,
+    val bytesSent: Long,
+    val bytesReceived: Long,
+    val packetsReceived: Long,
+    val packetsLost: Long,
+    val availableOutgoingBitrateBps: Long, // 0 when the transport does not report it
+    val rttMs: Double,
+    val jitterMs: Double,
+    val audioLevel: Double = 0.0,
+    val framesPerSecond: Int = 0,
+    val frameWidth: Int = 0,
+    val frameHeight: Int = 0
+)
+
+/**
+ * Reduces an RTCStatsReport to an [RtcStatsSnapshot] in a single pass
+ */
+object RtcStatsParser {
+
+    fun parse(report: RTCStatsReport): RtcStatsSnapshot {
+        var bytesSent = 0L
+        var bytesReceived = 0L
+        var packetsReceived = 0L
+        var packetsLost = 0L
+        var availableOutgoingBitrate = 0L
+        var candidatePairRtt = -1.0
+        var remoteInboundRtt = -1.0
+        var jitterSeconds = 0.0
+        var audioLevel = 0.0
+        var framesPerSecond = 0
+        var frameWidth = 0
+        var frameHeight = 0
+
+        for (stats in report.statsMap.values) {
+            val members = stats.members
+            when (stats.type) {
+                "outbound-rtp" -> {
+                    bytesSent += members.long("bytesSent")
+                }
+                "inbound-rtp" -> {
+                    bytesReceived += members.long("bytesReceived")
+                    packetsReceived += members.long("packetsReceived")
+                    packetsLost += members.long("packetsLost")
+                    jitterSeconds = maxOf(jitterSeconds, members.double("jitter"))
+                    if (stats.isVideo()) {
+                        framesPerSecond = maxOf(framesPerSecond, members.double("framesPerSecond").toInt())
+                        frameWidth = maxOf(frameWidth, members.long("frameWidth").toInt())
+                        frameHeight = maxOf(frameHeight, members.long("frameHeight").toInt())
+                    } else {
+                        audioLevel = maxOf(audioLevel, members.double("audioLevel"))
+                    }
+                }
+                "remote-inbound-rtp" -> {
+                    val rtt = members.double("roundTripTime", -1.0)
+                    if (rtt >= 0) remoteInboundRtt = maxOf(remoteInboundRtt, rtt)
+                }
+                "candidate-pair" -> {
+                    if (members["nominated"] == true || members["state"] == "succeeded") {
+                        availableOutgoingBitrate = maxOf(availableOutgoingBitrate, members.long("availableOutgoingBitrate"))
+                        val rtt = members.double("currentRoundTripTime", -1.0)
+                        if (rtt >= 0) candidatePairRtt = rtt
+                    }
+                }
+            }
+        }
+
+        val rttSeconds = if (candidatePairRtt >= 0) candidatePairRtt else maxOf(remoteInboundRtt, 0.0)
+
+        return RtcStatsSnapshot(
+            timestampMs = (report.timestampUs / 1000).toLong(),
+            bytesSent = bytesSent,
+            bytesReceived = bytesReceived,
+            packetsReceived = packetsReceived,
+            packetsLost = packetsLost,
+            availableOutgoingBitrateBps = availableOutgoingBitrate,
+            rttMs = rttSeconds * 1000,
+            jitterMs = jitterSeconds * 1000,
+            audioLevel = audioLevel,
+            framesPerSecond = framesPerSecond,
+            frameWidth = frameWidth,
+            frameHeight = frameHeight
+        )
+    }
+
+    private fun RTCStats.isVideo(): Boolean = members["kind"] == "video" || members["mediaType"] == "video"
+
+    private fun Map<String, Any>.long(key: String): Long = (this[key] as? Number)?.toLong() ?: 0L
+
+    private fun Map<String, Any>.double(key: String, default: Double = 0.0): Double =
+        (this[key] as? Number)?.toDouble() ?: default
+}
+
+/**
+ * Smoothed network estimate for one call, derived from measured stats deltas
+ */
+data class CallNetworkEstimate(
+    val callId: String,
+    val sendKbps: Int,
+    val receiveKbps: Int,
+    val availableOutgoingKbps: Int, // 0 when unknown
+    val lossFraction: Double,
+    val rttMs: Long,
+    val jitterMs: Double,
+    val audioLevel: Double,
+    val framesPerSecond: Int,
+    val frameWidth: Int,
+    val frameHeight: Int,
+    val sampleCount: Int,
+    val timestamp: Long
+) {
+    val usedKbps: Int get() = sendKbps + receiveKbps
+
+    val videoResolution: String
+        get() = if (frameWidth > 0 && frameHeight > 0) "${frameWidth}x$frameHeight" else "unknown"
+}
+
+/**
+ * Windowed bandwidth estimator over a ring buffer of primitive samples.
+ *
+ * Each sample stores the counter deltas against the previous snapshot.
+ * Throughput and loss are computed over the whole window, while the
+ * available outgoing bitrate, RTT and jitter are exponentially smoothed.
+ * Counters that go backwards (for example after an ICE restart) reset the
+ * baseline instead of producing negative rates.
+ */
+class BandwidthEstimator(private val capacity: Int = DEFAULT_WINDOW) {
+
+    private val intervalMs = LongArray(capacity)
+    private val sentBytes = LongArray(capacity)
+    private val receivedBytes = LongArray(capacity)
+    private val receivedPackets = LongArray(capacity)
+    private val lostPackets = LongArray(capacity)
+
+    private var head = 0
+    private var size = 0
+
+    private var previous: RtcStatsSnapshot? = null
+    private var latest: RtcStatsSnapshot? = null
+
+    private var smoothedAvailableBps = 0.0
+    private var smoothedRttMs = 0.0
+    private var smoothedJitterMs = 0.0
+
+    /**
+     * Number of deltas currently held in the window
+     */
+    val sampleCount: Int get() = size
+
+    @Synchronized
+    fun addSample(snapshot: RtcStatsSnapshot) {
+        val last = previous
+        previous = snapshot
+        latest = snapshot
+
+        smoothedAvailableBps = smooth(smoothedAvailableBps, snapshot.availableOutgoingBitrateBps.toDouble())
+        smoothedRttMs = smooth(smoothedRttMs, snapshot.rttMs)
+        smoothedJitterMs = smooth(smoothedJitterMs, snapshot.jitterMs)
+
+        if (last == null) return
+
+        val elapsed = snapshot.timestampMs - last.timestampMs
+        if (elapsed <= 0 || snapshot.bytesSent < last.bytesSent || snapshot.bytesReceived < last.bytesReceived) {
+            return // Out-of-order report or counter reset; the new snapshot becomes the baseline
+        }
+
+        intervalMs[head] = elapsed
+        sentBytes[head] = snapshot.bytesSent - last.bytesSent
+        receivedBytes[head] = snapshot.bytesReceived - last.bytesReceived
+        receivedPackets[head] = maxOf(snapshot.packetsReceived - last.packetsReceived, 0L)
+        lostPackets[head] = maxOf(snapshot.packetsLost - last.packetsLost, 0L)
+
+        head = (head + 1) % capacity
+        if (size < capacity) size++
+    }
+
+    @Synchronized
+    fun estimate(callId: String): CallNetworkEstimate {
+        var totalInterval = 0L
+        var totalSent = 0L
+        var totalReceived = 0L
+        var totalPackets = 0L
+        var totalLost = 0L
+        for (i in 0 until size) {
+            totalInterval += intervalMs[i]
+            totalSent += sentBytes[i]
+            totalReceived += receivedBytes[i]
+            totalPackets += receivedPackets[i]
+            totalLost += lostPackets[i]
+        }
+
+        val snapshot = latest
+        return CallNetworkEstimate(
+            callId = callId,
+            sendKbps = kbps(totalSent, totalInterval),
+            receiveKbps = kbps(totalReceived, totalInterval),
+            availableOutgoingKbps = (smoothedAvailableBps / 1000).toInt(),
+            lossFraction = if (totalPackets + totalLost > 0) totalLost.toDouble() / (totalPackets + totalLost) else 0.0,
+            rttMs = smoothedRttMs.toLong(),
+            jitterMs = smoothedJitterMs,
+            audioLevel = snapshot?.audioLevel ?: 0.0,
+            framesPerSecond = snapshot?.framesPerSecond ?: 0,
+            frameWidth = snapshot?.frameWidth ?: 0,
+            frameHeight = snapshot?.frameHeight ?: 0,
+            sampleCount = size,
+            timestamp = snapshot?.timestampMs ?: System.currentTimeMillis()
+        )
+    }
+
+    @Synchronized
+    fun reset() {
+        head = 0
+        size = 0
+        previous = null
+        latest = null
+        smoothedAvailableBps = 0.0
+        smoothedRttMs = 0.0
+        smoothedJitterMs = 0.0
+    }
+
+    private fun smooth(current: Double, sample: Double): Double {
+        if (sample <= 0) return current
+        return if (current <= 0) sample else current + SMOOTHING_FACTOR * (sample - current)
+    }
+
+    private fun kbps(bytes: Long, intervalMs: Long): Int {
+        return if (intervalMs > 0) (bytes * 8 / intervalMs).toInt() else 0 // bits per ms == kbps
+    }
+
+    companion object {
+        const val DEFAULT_WINDOW = 10
+        private const val SMOOTHING_FACTOR = 0.3
+    }
+}
@@ -1,5 +1,10 @@
 package com.chain.messaging.core.webrtc
 
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import org.webrtc.MediaStreamTrack
+import org.webrtc.PeerConnection
+import org.webrtc.RtpSender
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -23,6 +28,12 @@ interface CodecManager {
      */
     suspend fun applyCodecSettings(callId: String, settings: CodecSettings)
     
+    /**
+     * Apply a rate controller target to the call's video sender encodings
+     * @return true if the sender accepted the new parameters
+     */
+    suspend fun applyRateTarget(callId: String, peerConnection: PeerConnection, target: RateTarget): Boolean
+    
     /**
      * Get available codecs
      */
@@ -38,6 +49,7 @@ interface CodecManager {
 class CodecManagerImpl @Inject constructor() : CodecManager {
     
     private val activeCodecs = mutableMapOf<String, CodecInfo>()
+    private val log = Logger.of(LogSubsystem.CALLS)
     
     override suspend fun getCurrentCodec(callId: String): CodecInfo {
         return activeCodecs[callId] ?: CodecInfo(
@@ -90,6 +102,54 @@ class CodecManagerImpl @Inject constructor() : CodecManager {
         activeCodecs[callId] = updatedCodec
     }
     
+    override suspend fun applyRateTarget(callId: String, peerConnection: PeerConnection, target: RateTarget): Boolean {
+        val sender = peerConnection.videoSender() ?: return false
+        val parameters = sender.parameters
+        if (parameters.encodings.isEmpty()) return false
+        
+        if (target.simulcastLayers.isNotEmpty() && parameters.encodings.size > 1) {
+            // Simulcast: enable and size each layer by its rid
+            parameters.encodings.forEach { encoding ->
+                val layer = target.simulcastLayers.firstOrNull { it.rid == encoding.rid }
+                encoding.active = layer?.active == true
+                if (layer != null && layer.active) {
+                    encoding.maxBitrateBps = layer.maxBitrateKbps * 1000
+                    encoding.maxFramerate = layer.maxFrameRate
+                    encoding.scaleResolutionDownBy = layer.scaleDownBy
+                }
+            }
+        } else {
+            val encoding = parameters.encodings[0]
+            encoding.active = !target.isVideoPaused
+            if (!target.isVideoPaused) {
+                encoding.maxBitrateBps = target.bitrateKbps * 1000
+                encoding.maxFramerate = target.frameRate
+                encoding.scaleResolutionDownBy = target.scaleDownBy
+            }
+        }
+        
+        val applied = try {
+            sender.setParameters(parameters)
+        } catch (e: IllegalStateException) {
+            // Sender was disposed with the peer connection
+            log.w(e) { "Failed to apply rate target for call $callId" }
+            false
+        }
+        
+        if (applied) {
+            val currentCodec = getCurrentCodec(callId)
+            activeCodecs[callId] = currentCodec.copy(
+                settings = currentCodec.settings.copy(
+                    videoWidth = target.width,
+                    videoHeight = target.height,
+                    videoFrameRate = target.frameRate,
+                    videoBitrate = target.bitrateKbps
+                )
+            )
+        }
+        return applied
+    }
+    
     override fun getAvailableCodecs(): List<SupportedCodec> {
         return listOf(
             SupportedCodec.VP8,
@@ -208,6 +268,13 @@ class CodecManagerImpl @Inject constructor() : CodecManager {
     }
 }
 
+/**
+ * The sender carrying the local video track, if any
+ */
+internal fun PeerConnection.videoSender(): RtpSender? {
+    return senders.firstOrNull { it.track()?.kind() == MediaStreamTrack.VIDEO_TRACK_KIND }
+}
+
 /**
  * Codec information data class
  */
@@ -1,6 +1,8 @@
 package com.chain.messaging.core.webrtc
 
 import android.content.Context
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.memory.WatchedObjectKind
 import com.chain.messaging.core.webrtc.ConnectionState
 import com.chain.messaging.core.webrtc.IceServer
 import com.chain.messaging.domain.model.CallEvent
@@ -141,8 +143,10 @@ class WebRTCManagerImpl @Inject constructor(
         val callSession = activeCalls[callId] ?: return
         
         // Close peer connection
-        peerConnections[callSession.peerId]?.close()
-        peerConnections.remove(callSession.peerId)
+        peerConnections.remove(callSession.peerId)?.let { peerConnection ->
+            peerConnection.close()
+            MemoryDiagnostics.lifetimes.watch(peerConnection, WatchedObjectKind.PEER_CONNECTION, "PeerConnection ${callSession.peerId}")
+        }
         
         // Update call status
         val endedSession = callSession.copy(status = CallStatus.ENDED)
@@ -151,7 +155,9 @@ class WebRTCManagerImpl @Inject constructor(
         _callEvents.emit(CallEvent.CallEnded(callId, "Call ended"))
 
         // Clean up after a delay
-        activeCalls.remove(callId)
+        activeCalls.remove(callId)?.let { session ->
+            MemoryDiagnostics.lifetimes.watch(session, WatchedObjectKind.CALL_SESSION, "CallSession $callId")
+        }
     }
     
     override suspend fun getLocalMediaStream(isVideo: Boolean): MediaStream {
@@ -213,7 +219,10 @@ class WebRTCManagerImpl @Inject constructor(
         localVideoTrack = null
         
         // Close all peer connections
-        peerConnections.values.forEach { it.close() }
+        peerConnections.values.forEach { peerConnection ->
+            peerConnection.close()
+            MemoryDiagnostics.lifetimes.watch(peerConnection, WatchedObjectKind.PEER_CONNECTION)
+        }
         peerConnections.clear()
         
         // Clear active calls
@@ -21,10 +21,12 @@ import com.chain.messaging.data.local.dao.UserDao
 import com.chain.messaging.data.local.dao.UserSettingsDao
 import com.chain.messaging.data.local.entity.CallNotificationEntity
 import com.chain.messaging.data.local.entity.ChatEntity
+import com.chain.messaging.data.local.entity.ChatParticipantEntity
+import com.chain.messaging.data.local.entity.ChatSummaryEntity
 // import com.chain.messaging.data.local.entity.MediaEntity
 import com.chain.messaging.data.local.entity.MessageEntity
 import com.chain.messaging.data.local.entity.PerformanceAlertEntity
-import com.chain.messaging.data.local.entity.PerformanceMetricsEntity
+import com.chain.messaging.data.local.entity.PerformanceSeriesBlockEntity
 import com.chain.messaging.data.local.entity.QueuedMessageEntity
 import com.chain.messaging.data.local.entity.ReactionEntity
 import com.chain.messaging.data.local.entity.RegisteredDeviceEntity
@@ -43,9 +45,11 @@ import net.sqlcipher.database.SupportFactory
         UserEntity::class,
         MessageEntity::class,
         ChatEntity::class,
+        ChatSummaryEntity::class,
+        ChatParticipantEntity::class,
         // MediaEntity::class,
         ReactionEntity::class,
-        PerformanceMetricsEntity::class,
+        PerformanceSeriesBlockEntity::class,
         PerformanceAlertEntity::class,
         QueuedMessageEntity::class,
         RegisteredDeviceEntity::class,
@@ -90,7 +94,9 @@ abstract class ChainDatabase : RoomDatabase() {
                 )
                     .openHelperFactory(factory)
                     // .addMigrations(*DatabaseMigrations.getAllMigrations())
+                    .addMigrations(*DatabaseMigrations.getSchemaMigrations())
                     .fallbackToDestructiveMigration()
+                    .addCallback(ChatSummarySchema.CALLBACK)
                     .build()
                 
                 INSTANCE = instance
@@ -0,0 +1,188 @@
+package com.chain.messaging.data.local
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.chain.messaging.data.local.entity.chatParticipantRows
+import com.chain.messaging.domain.model.Message
+import com.google.gson.Gson
+
+/**
+ * Triggers that keep chat_summaries current as chats and messages are
+ * written, plus the backfill for databases that predate the table.
+ *
+ * A message counts as unread while it is not READ, was not sent from this
+ * device or by the local account, whose id is the user_settings row, and is
+ * newer than the chat's lastReadAt watermark. Marking a chat read moves the
+ * watermark, so a replayed or re-saved old message does not count again
+ * whatever its status.
+ *
+ * Chats and messages are saved with INSERT OR REPLACE, which does not fire
+ * delete triggers, so the insert triggers also account for the row being
+ * replaced.
+ */
+object ChatSummarySchema {
+
+    const val SNIPPET_LENGTH = 120
+
+    // Messages sent from this device carry Message.LOCAL_SENDER_ID
+    private const val FROM_OTHERS =
+        "NOT IN (SELECT `userId` FROM `user_settings` UNION ALL SELECT '${Message.LOCAL_SENDER_ID}')"
+
+    private const val LAST_MESSAGE_COLUMNS =
+        "(`lastMessageId`, `lastMessageSnippet`, `lastMessageType`, `lastMessageSenderId`, `lastMessageStatus`, `lastMessageAt`)"
+
+    private fun snippet(row: String) = "substr($row.`content`, 1, $SNIPPET_LENGTH)"
+
+    private fun incoming(row: String) = "($row.`status` != 'READ' AND $row.`senderId` $FROM_OTHERS)"
+
+    // Only valid inside an UPDATE of the chat's own chat_summaries row
+    private fun unread(row: String) = "(${incoming(row)} AND $row.`timestamp` > `chat_summaries`.`lastReadAt`)"
+
+    // Newest message of a chat, one seek on index_messages_chatId_timestamp
+    private fun lastMessageOf(chatId: String) = """
+        (SELECT m.`id`, ${snippet("m")}, m.`type`, m.`senderId`, m.`status`, m.`timestamp`
+         FROM `messages` m WHERE m.`chatId` = $chatId ORDER BY m.`timestamp` DESC LIMIT 1)
+    """.trimIndent()
+
+    private fun refreshSortTimestamp(chatId: String) = """
+        UPDATE `chat_summaries` SET `sortTimestamp` = MAX(COALESCE(`lastMessageAt`, 0),
+            COALESCE((SELECT `updatedAt` FROM `chats` WHERE `id` = $chatId), 0))
+        WHERE `chatId` = $chatId;
+    """.trimIndent()
+
+    private val TRIGGERS = listOf(
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_chat_insert` AFTER INSERT ON `chats`
+        BEGIN
+            INSERT OR IGNORE INTO `chat_summaries` (`chatId`, `unreadCount`, `sortTimestamp`)
+            VALUES (NEW.`id`, (SELECT COUNT(*) FROM `messages` m WHERE m.`chatId` = NEW.`id` AND ${incoming("m")}), NEW.`updatedAt`);
+            UPDATE `chat_summaries` SET $LAST_MESSAGE_COLUMNS = ${lastMessageOf("NEW.`id`")}
+            WHERE `chatId` = NEW.`id` AND `lastMessageId` IS NULL;
+            ${refreshSortTimestamp("NEW.`id`")}
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_chat_update` AFTER UPDATE OF `updatedAt` ON `chats`
+        BEGIN
+            ${refreshSortTimestamp("NEW.`id`")}
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_chat_delete` AFTER DELETE ON `chats`
+        BEGIN
+            DELETE FROM `chat_summaries` WHERE `chatId` = OLD.`id`;
+            DELETE FROM `chat_participants` WHERE `chatId` = OLD.`id`;
+        END
+        """,
+        // A replaced message is removed without its delete trigger, so take back its unread count here
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_message_replace` BEFORE INSERT ON `messages`
+        BEGIN
+            UPDATE `chat_summaries` SET `unreadCount` = MAX(`unreadCount` - 1, 0)
+            WHERE `chatId` = (SELECT m.`chatId` FROM `messages` m WHERE m.`id` = NEW.`id`)
+            AND EXISTS (SELECT 1 FROM `messages` m WHERE m.`id` = NEW.`id` AND ${unread("m")});
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_message_insert` AFTER INSERT ON `messages`
+        BEGIN
+            UPDATE `chat_summaries` SET
+                `lastMessageId` = NEW.`id`,
+                `lastMessageSnippet` = ${snippet("NEW")},
+                `lastMessageType` = NEW.`type`,
+                `lastMessageSenderId` = NEW.`senderId`,
+                `lastMessageStatus` = NEW.`status`,
+                `lastMessageAt` = NEW.`timestamp`,
+                `sortTimestamp` = MAX(`sortTimestamp`, NEW.`timestamp`)
+            WHERE `chatId` = NEW.`chatId` AND (`lastMessageAt` IS NULL OR NEW.`timestamp` >= `lastMessageAt`);
+            UPDATE `chat_summaries` SET `unreadCount` = `unreadCount` + 1
+            WHERE `chatId` = NEW.`chatId` AND ${unread("NEW")};
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_message_status` AFTER UPDATE OF `status` ON `messages`
+        WHEN OLD.`status` IS NOT NEW.`status`
+        BEGIN
+            UPDATE `chat_summaries` SET `unreadCount` = MAX(`unreadCount` + ${unread("NEW")} - ${unread("OLD")}, 0)
+            WHERE `chatId` = NEW.`chatId`;
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_message_update` AFTER UPDATE ON `messages`
+        BEGIN
+            UPDATE `chat_summaries` SET
+                `lastMessageSnippet` = ${snippet("NEW")},
+                `lastMessageType` = NEW.`type`,
+                `lastMessageStatus` = NEW.`status`
+            WHERE `chatId` = NEW.`chatId` AND `lastMessageId` = NEW.`id`;
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS `chat_summaries_message_delete` AFTER DELETE ON `messages`
+        BEGIN
+            UPDATE `chat_summaries` SET `unreadCount` = MAX(`unreadCount` - 1, 0)
+            WHERE `chatId` = OLD.`chatId` AND ${unread("OLD")};
+            UPDATE `chat_summaries` SET $LAST_MESSAGE_COLUMNS = ${lastMessageOf("OLD.`chatId`")}
+            WHERE `chatId` = OLD.`chatId` AND `lastMessageId` = OLD.`id`;
+            ${refreshSortTimestamp("OLD.`chatId`")}
+        END
+        """
+    ).map { it.trimIndent() }
+
+    /**
+     * Installs the triggers on a freshly created database, and again on every
+     * open: a destructive migration recreates the tables, dropping their
+     * triggers, without calling onCreate. Upgrades also get them from the
+     * migration.
+     */
+    val CALLBACK = object : RoomDatabase.Callback() {
+        override fun onCreate(db: SupportSQLiteDatabase) {
+            createTriggers(db)
+        }
+
+        override fun onOpen(db: SupportSQLiteDatabase) {
+            createTriggers(db)
+        }
+    }
+
+    fun createTriggers(database: SupportSQLiteDatabase) {
+        TRIGGERS.forEach { database.execSQL(it) }
+    }
+
+    /**
+     * Fill chat_summaries and chat_participants from existing chats. The
+     * participants and admins JSON is parsed here once, and never on read.
+     */
+    fun backfill(database: SupportSQLiteDatabase) {
+        database.execSQL("""
+            INSERT OR IGNORE INTO `chat_summaries` (`chatId`, `unreadCount`, `lastReadAt`, `sortTimestamp`)
+            SELECT `id`, `unreadCount`, 0, `updatedAt` FROM `chats`
+        """.trimIndent())
+        database.execSQL("UPDATE `chat_summaries` SET $LAST_MESSAGE_COLUMNS = ${lastMessageOf("`chat_summaries`.`chatId`")}")
+        database.execSQL("UPDATE `chat_summaries` SET `sortTimestamp` = MAX(`sortTimestamp`, COALESCE(`lastMessageAt`, 0))")
+        // A chat the old column showed as read is read up to its last message
+        database.execSQL("UPDATE `chat_summaries` SET `lastReadAt` = COALESCE(`lastMessageAt`, 0) WHERE `unreadCount` = 0")
+
+        val gson = Gson()
+        database.query("SELECT `id`, `participants`, `admins` FROM `chats`").use { cursor ->
+            while (cursor.moveToNext()) {
+                val chatId = cursor.getString(0)
+                val participants = decodeIds(gson, cursor.getString(1))
+                val admins = decodeIds(gson, cursor.getString(2))
+                chatParticipantRows(chatId, participants, admins).forEach { row ->
+                    database.execSQL(
+                        "INSERT OR IGNORE INTO `chat_participants` (`chatId`, `userId`, `position`, `isParticipant`, `isAdmin`) VALUES (?, ?, ?, ?, ?)",
+                        arrayOf<Any>(row.chatId, row.userId, row.position, if (row.isParticipant) 1 else 0, if (row.isAdmin) 1 else 0)
+                    )
+                }
+            }
+        }
+    }
+
+    private fun decodeIds(gson: Gson, json: String?): List<String> = try {
+        gson.fromJson(json, Array<String>::class.java)?.toList() ?: emptyList()
+    } catch (e: Exception) {
+        // The old read path skipped such chats; keep the chat with no members
+        emptyList()
+    }
+}
@@ -2,6 +2,10 @@ package com.chain.messaging.data.local
 
 import androidx.room.migration.Migration
 import androidx.sqlite.db.SupportSQLiteDatabase
+import com.chain.messaging.core.performance.NetworkQuality
+import com.chain.messaging.core.performance.PerformanceSeriesNames
+import com.chain.messaging.core.performance.timeseries.PerformanceTimeSeries
+import com.chain.messaging.core.performance.timeseries.SeriesPoint
 
 /**
  * Database migrations for Chain messaging app
@@ -139,6 +143,149 @@ object DatabaseMigrations {
         }
     }
     
+    /**
+     * Migration of the shipped schema from version 1 to 2 - replacing the wide
+     * performance_metrics rows with compressed per-metric series blocks. The
+     * stored samples are carried over into the blocks before the old table goes.
+     * The MIGRATION_x_y objects above describe an older schema numbering and are
+     * not registered with the database builder.
+     */
+    val PERFORMANCE_SERIES_1_2 = object : Migration(1, 2) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            database.execSQL("""
+                CREATE TABLE IF NOT EXISTS `performance_series_blocks` (
+                    `id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+                    `metric` TEXT NOT NULL,
+                    `tier` TEXT NOT NULL,
+                    `startTimestamp` INTEGER NOT NULL,
+                    `endTimestamp` INTEGER NOT NULL,
+                    `pointCount` INTEGER NOT NULL,
+                    `data` BLOB NOT NULL
+                )
+            """.trimIndent())
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_performance_series_blocks_metric_tier_startTimestamp` ON `performance_series_blocks` (`metric`, `tier`, `startTimestamp`)")
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_performance_series_blocks_tier_endTimestamp` ON `performance_series_blocks` (`tier`, `endTimestamp`)")
+            carryOverPerformanceMetrics(database)
+            database.execSQL("DROP TABLE IF EXISTS `performance_metrics`")
+        }
+    }
+    
+    // Old performance_metrics columns and the series each one is stored as
+    private val LEGACY_PERFORMANCE_COLUMNS = listOf(
+        "messagesPerSecond" to PerformanceSeriesNames.MESSAGES_PER_SECOND,
+        "averageLatencyMs" to PerformanceSeriesNames.AVERAGE_LATENCY_MS,
+        "totalMessages" to PerformanceSeriesNames.TOTAL_MESSAGES,
+        "usedMemoryMb" to PerformanceSeriesNames.USED_MEMORY_MB,
+        "totalMemoryMb" to PerformanceSeriesNames.TOTAL_MEMORY_MB,
+        "memoryUsagePercentage" to PerformanceSeriesNames.MEMORY_USAGE,
+        "gcCount" to PerformanceSeriesNames.GC_COUNT,
+        "gcTimeMs" to PerformanceSeriesNames.GC_TIME_MS,
+        "batteryLevel" to PerformanceSeriesNames.BATTERY_LEVEL,
+        "isCharging" to PerformanceSeriesNames.BATTERY_CHARGING,
+        "batteryDrainRate" to PerformanceSeriesNames.BATTERY_DRAIN_RATE,
+        "networkLatencyMs" to PerformanceSeriesNames.NETWORK_LATENCY_MS,
+        "networkThroughputKbps" to PerformanceSeriesNames.NETWORK_THROUGHPUT_KBPS,
+        "networkQuality" to PerformanceSeriesNames.NETWORK_QUALITY,
+        "cpuUsagePercentage" to PerformanceSeriesNames.CPU_USAGE,
+        "threadCount" to PerformanceSeriesNames.THREAD_COUNT
+    )
+    
+    /**
+     * Write the samples of the old performance_metrics table as series blocks
+     * of every tier, as PerformanceTimeSeries would have stored them
+     */
+    private fun carryOverPerformanceMetrics(database: SupportSQLiteDatabase) {
+        val exists = database.query("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'performance_metrics'").use { it.moveToFirst() }
+        if (!exists) return
+        
+        val samples = LEGACY_PERFORMANCE_COLUMNS.associate { (_, metric) -> metric to ArrayList<SeriesPoint>() }
+        val columns = LEGACY_PERFORMANCE_COLUMNS.joinToString { "`${it.first}`" }
+        database.query("SELECT `timestamp`, $columns FROM `performance_metrics` ORDER BY `timestamp` ASC").use { cursor ->
+            while (cursor.moveToNext()) {
+                val timestamp = cursor.getLong(0)
+                LEGACY_PERFORMANCE_COLUMNS.forEachIndexed { index, (column, metric) ->
+                    val value = if (column == "networkQuality") {
+                        NetworkQuality.values().firstOrNull { it.name == cursor.getString(index + 1) }?.ordinal?.toDouble()
+                    } else {
+                        cursor.getDouble(index + 1)
+                    } ?: return@forEachIndexed
+                    samples.getValue(metric) += SeriesPoint(timestamp, 1, value, value, value)
+                }
+            }
+        }
+        
+        samples.forEach { (metric, points) ->
+            PerformanceTimeSeries.blocksOf(metric, points).forEach { block ->
+                database.execSQL(
+                    "INSERT INTO `performance_series_blocks` (`metric`, `tier`, `startTimestamp`, `endTimestamp`, `pointCount`, `data`) VALUES (?, ?, ?, ?, ?, ?)",
+                    arrayOf<Any>(block.metric, block.tier, block.startTimestamp, block.endTimestamp, block.pointCount, block.data)
+                )
+            }
+        }
+    }
+    
+    /**
+     * Migration of the shipped schema from version 2 to 3 - indexing message
+     * expiry so the next disappearing-message deadline is a single index seek
+     */
+    val MESSAGE_EXPIRY_INDEX_2_3 = object : Migration(2, 3) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_isDisappearing_expiresAt` ON `messages` (`isDisappearing`, `expiresAt`)")
+        }
+    }
+    
+    /**
+     * Migration of the shipped schema from version 3 to 4 - a denormalized
+     * chat_summaries row per chat and a chat_participants join table, so the
+     * chat list is one indexed query with no JSON decoding
+     */
+    val CHAT_SUMMARIES_3_4 = object : Migration(3, 4) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            database.execSQL("""
+                CREATE TABLE IF NOT EXISTS `chat_summaries` (
+                    `chatId` TEXT NOT NULL,
+                    `lastMessageId` TEXT,
+                    `lastMessageSnippet` TEXT,
+                    `lastMessageType` TEXT,
+                    `lastMessageSenderId` TEXT,
+                    `lastMessageStatus` TEXT,
+                    `lastMessageAt` INTEGER,
+                    `unreadCount` INTEGER NOT NULL,
+                    `lastReadAt` INTEGER NOT NULL DEFAULT 0,
+                    `sortTimestamp` INTEGER NOT NULL,
+                    PRIMARY KEY(`chatId`)
+                )
+            """.trimIndent())
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_summaries_sortTimestamp` ON `chat_summaries` (`sortTimestamp`)")
+            database.execSQL("""
+                CREATE TABLE IF NOT EXISTS `chat_participants` (
+                    `chatId` TEXT NOT NULL,
+                    `userId` TEXT NOT NULL,
+                    `position` INTEGER NOT NULL,
+                    `isParticipant` INTEGER NOT NULL,
+                    `isAdmin` INTEGER NOT NULL,
+                    PRIMARY KEY(`chatId`, `userId`)
+                )
+            """.trimIndent())
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_participants_userId` ON `chat_participants` (`userId`)")
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_messages_chatId_timestamp` ON `messages` (`chatId`, `timestamp`)")
+
+            ChatSummarySchema.backfill(database)
+            ChatSummarySchema.createTriggers(database)
+        }
+    }
+    
+    /**
+     * Migrations registered with the database builder
+     */
+    fun getSchemaMigrations(): Array<Migration> {
+        return arrayOf(
+            PERFORMANCE_SERIES_1_2,
+            MESSAGE_EXPIRY_INDEX_2_3,
+            CHAT_SUMMARIES_3_4
+        )
+    }
+    
     /**
      * Get all migrations
      */
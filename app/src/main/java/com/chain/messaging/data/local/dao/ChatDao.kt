@@ -2,8 +2,15 @@ package com.chain.messaging.data.local.dao
 
 import androidx.room.*
 import com.chain.messaging.data.local.entity.ChatEntity
+import com.chain.messaging.data.local.entity.ChatListRow
+import com.chain.messaging.data.local.entity.ChatParticipantEntity
 import kotlinx.coroutines.flow.Flow
 
+// Chat columns without the legacy JSON, joined to the maintained summary
+private const val CHAT_LIST_SELECT = "SELECT c.id, c.type, c.name, c.isNotificationsEnabled, c.disappearingMessagesTimer, " +
+    "c.isArchived, c.isPinned, c.isMuted, c.createdAt, c.updatedAt, s.* " +
+    "FROM chat_summaries s JOIN chats c ON c.id = s.chatId"
+
 /**
  * Data Access Object for Chat operations
  */
@@ -46,6 +53,68 @@ interface ChatDao {
     @Query("DELETE FROM chats WHERE id = :chatId")
     suspend fun deleteChatById(chatId: String)
     
+    @Query("DELETE FROM chats WHERE id IN (:chatIds)")
+    suspend fun deleteChatsByIds(chatIds: List<String>)
+    
     @Query("SELECT COUNT(*) FROM chats")
     suspend fun getChatCount(): Int
+    
+    /**
+     * The chat list, newest activity first. One walk of the sortTimestamp
+     * index plus one batched lookup of members.
+     */
+    @Transaction
+    @Query("$CHAT_LIST_SELECT ORDER BY s.sortTimestamp DESC")
+    suspend fun getChatList(): List<ChatListRow>
+    
+    @Transaction
+    @Query("$CHAT_LIST_SELECT ORDER BY s.sortTimestamp DESC")
+    fun observeChatList(): Flow<List<ChatListRow>>
+    
+    @Transaction
+    @Query("$CHAT_LIST_SELECT WHERE s.chatId = :chatId")
+    suspend fun getChatListRow(chatId: String): ChatListRow?
+    
+    @Query("SELECT * FROM chat_participants WHERE chatId = :chatId ORDER BY position")
+    suspend fun getParticipants(chatId: String): List<ChatParticipantEntity>
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertParticipants(participants: List<ChatParticipantEntity>)
+    
+    @Query("DELETE FROM chat_participants WHERE chatId = :chatId")
+    suspend fun deleteParticipants(chatId: String)
+    
+    @Query("SELECT unreadCount FROM chat_summaries WHERE chatId = :chatId")
+    suspend fun getSummaryUnreadCount(chatId: String): Int?
+    
+    /**
+     * Everything up to the chat's last message is read. Messages at or
+     * before the watermark never count as unread again, even when re-saved.
+     */
+    @Query("UPDATE chat_summaries SET unreadCount = 0, lastReadAt = MAX(lastReadAt, COALESCE(lastMessageAt, 0)) WHERE chatId = :chatId")
+    suspend fun moveReadWatermark(chatId: String)
+    
+    /**
+     * Save [chat] and replace its members in one transaction. The summary
+     * row follows through the chats insert trigger.
+     */
+    @Transaction
+    suspend fun upsertChatWithParticipants(chat: ChatEntity, participants: List<ChatParticipantEntity>) {
+        insertChat(chat)
+        deleteParticipants(chat.id)
+        insertParticipants(participants)
+    }
+    
+    @Transaction
+    suspend fun updateChatWithParticipants(chat: ChatEntity, participants: List<ChatParticipantEntity>) {
+        updateChat(chat)
+        deleteParticipants(chat.id)
+        insertParticipants(participants)
+    }
+    
+    @Transaction
+    suspend fun markChatRead(chatId: String) {
+        updateUnreadCount(chatId, 0)
+        moveReadWatermark(chatId)
+    }
 }
\ No newline at end of file
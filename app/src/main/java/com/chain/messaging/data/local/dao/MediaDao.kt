@@ -4,6 +4,16 @@ import androidx.room.*
 import com.chain.messaging.data.local.entity.MediaEntity
 import kotlinx.coroutines.flow.Flow
 
+/**
+ * Media rows against the distinct files backing them
+ */
+data class MediaDedupCounts(
+    val referenceCount: Int,
+    val blobCount: Int,
+    val logicalBytes: Long,
+    val storedBytes: Long
+)
+
 /**
  * Data Access Object for Media operations
  */
@@ -154,6 +164,24 @@ interface MediaDao {
     @Query("SELECT COUNT(*) FROM media WHERE mimeType LIKE :mimeTypePattern")
     suspend fun getMediaCountByType(mimeTypePattern: String): Int
     
+    /**
+     * Number of media rows sharing a stored file, i.e. its reference count
+     */
+    @Query("SELECT COUNT(*) FROM media WHERE filePath = :filePath")
+    suspend fun countByFilePath(filePath: String): Int
+    
+    /**
+     * Rows and bytes as referenced versus as stored once per file
+     */
+    @Query("""
+        SELECT COUNT(*) AS referenceCount,
+            COUNT(DISTINCT filePath) AS blobCount,
+            COALESCE(SUM(fileSize), 0) AS logicalBytes,
+            (SELECT COALESCE(SUM(size), 0) FROM (SELECT MAX(fileSize) AS size FROM media GROUP BY filePath)) AS storedBytes
+        FROM media
+    """)
+    suspend fun getDedupCounts(): MediaDedupCounts
+    
     /**
      * Check if media exists
      */
@@ -5,6 +5,15 @@ import com.chain.messaging.data.local.entity.MessageEntity
 import com.chain.messaging.data.local.entity.MessageWithReactions
 import kotlinx.coroutines.flow.Flow
 
+/**
+ * Key columns of a disappearing message, without its content
+ */
+data class ExpiringMessageRow(
+    val id: String,
+    val chatId: String,
+    val expiresAt: Long
+)
+
 /**
  * Data Access Object for Message operations
  */
@@ -63,6 +72,25 @@ interface MessageDao {
     @Query("SELECT * FROM messages WHERE isDisappearing = 1 AND expiresAt IS NOT NULL ORDER BY expiresAt ASC")
     fun observeDisappearingMessages(): Flow<List<MessageEntity>>
     
+    // Earliest expiry after a time, answered from the (isDisappearing, expiresAt) index
+    @Query("SELECT MIN(expiresAt) FROM messages WHERE isDisappearing = 1 AND expiresAt > :time")
+    suspend fun getNextExpiryAfter(time: Long): Long?
+    
+    @Query("SELECT id, chatId, expiresAt FROM messages WHERE isDisappearing = 1 AND expiresAt <= :currentTime ORDER BY expiresAt ASC LIMIT :limit")
+    suspend fun getExpiredMessageRows(currentTime: Long, limit: Int): List<ExpiringMessageRow>
+    
+    /**
+     * Delete up to [limit] expired messages, earliest first, and return them.
+     * Reactions and media rows cascade and the search index follows through
+     * its delete trigger.
+     */
+    @Transaction
+    suspend fun deleteExpiredBatch(currentTime: Long, limit: Int): List<ExpiringMessageRow> {
+        val rows = getExpiredMessageRows(currentTime, limit)
+        if (rows.isNotEmpty()) deleteMessagesByIds(rows.map { it.id })
+        return rows
+    }
+    
     @Query("SELECT * FROM messages ORDER BY timestamp DESC LIMIT :limit")
     suspend fun getRecentMessages(limit: Int): List<MessageEntity>
     
@@ -71,7 +99,11 @@ interface MessageDao {
     
     @Query("SELECT * FROM messages WHERE timestamp >= :since ORDER BY timestamp DESC")
     suspend fun getMessagesSince(since: Long): List<MessageEntity>
-    
+
+    // Keyset page over (timestamp, id) used by cross-device sync streaming
+    @Query("SELECT * FROM messages WHERE timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId) ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    suspend fun getMessagePageAfter(afterTimestamp: Long, afterId: String, limit: Int): List<MessageEntity>
+
     // Methods for loading messages with reactions
     @Transaction
     @Query("SELECT * FROM messages WHERE chatId = :chatId ORDER BY timestamp DESC LIMIT :limit OFFSET :offset")
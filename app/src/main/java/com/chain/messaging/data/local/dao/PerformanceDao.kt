@@ -2,7 +2,7 @@ package com.chain.messaging.data.local.dao
 
 import androidx.room.*
 import com.chain.messaging.data.local.entity.PerformanceAlertEntity
-import com.chain.messaging.data.local.entity.PerformanceMetricsEntity
+import com.chain.messaging.data.local.entity.PerformanceSeriesBlockEntity
 
 /**
  * DAO for performance metrics and alerts
@@ -10,42 +10,35 @@ import com.chain.messaging.data.local.entity.PerformanceMetricsEntity
 @Dao
 interface PerformanceDao {
     
+    // Blocks with an id replace their stored copy; the rest get a new row
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    suspend fun insertMetrics(metrics: PerformanceMetricsEntity)
+    suspend fun insertSeriesBlocks(blocks: List<PerformanceSeriesBlockEntity>): List<Long>
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertAlert(alert: PerformanceAlertEntity)
     
-    @Query("SELECT * FROM performance_metrics WHERE timestamp BETWEEN :fromTimestamp AND :toTimestamp ORDER BY timestamp DESC")
-    suspend fun getMetrics(fromTimestamp: Long, toTimestamp: Long): List<PerformanceMetricsEntity>
+    @Query("SELECT * FROM performance_series_blocks WHERE metric = :metric AND tier = :tier AND endTimestamp >= :fromTimestamp AND startTimestamp <= :toTimestamp ORDER BY startTimestamp ASC")
+    suspend fun getSeriesBlocks(metric: String, tier: String, fromTimestamp: Long, toTimestamp: Long): List<PerformanceSeriesBlockEntity>
+    
+    // Each series writes its blocks in time order, so the highest id is the newest block
+    @Query("SELECT * FROM performance_series_blocks WHERE id IN (SELECT MAX(id) FROM performance_series_blocks GROUP BY metric, tier)")
+    suspend fun getLatestSeriesBlocks(): List<PerformanceSeriesBlockEntity>
     
     @Query("SELECT * FROM performance_alerts WHERE timestamp BETWEEN :fromTimestamp AND :toTimestamp ORDER BY timestamp DESC")
     suspend fun getAlerts(fromTimestamp: Long, toTimestamp: Long): List<PerformanceAlertEntity>
     
-    @Query("SELECT * FROM performance_metrics ORDER BY timestamp DESC LIMIT :limit")
-    suspend fun getRecentMetrics(limit: Int): List<PerformanceMetricsEntity>
-    
     @Query("SELECT * FROM performance_alerts ORDER BY timestamp DESC LIMIT :limit")
     suspend fun getRecentAlerts(limit: Int): List<PerformanceAlertEntity>
     
-    @Query("DELETE FROM performance_metrics WHERE timestamp < :cutoffTime")
-    suspend fun deleteOldMetrics(cutoffTime: Long)
+    @Query("DELETE FROM performance_series_blocks WHERE tier = :tier AND endTimestamp < :cutoffTime")
+    suspend fun deleteSeriesBlocksBefore(tier: String, cutoffTime: Long)
     
     @Query("DELETE FROM performance_alerts WHERE timestamp < :cutoffTime")
     suspend fun deleteOldAlerts(cutoffTime: Long)
     
-    @Query("SELECT COUNT(*) FROM performance_metrics")
-    suspend fun getMetricsCount(): Int
+    @Query("SELECT COUNT(*) FROM performance_series_blocks WHERE tier = :tier")
+    suspend fun getSeriesBlockCount(tier: String): Int
     
     @Query("SELECT COUNT(*) FROM performance_alerts")
     suspend fun getAlertsCount(): Int
-    
-    @Query("SELECT AVG(memoryUsagePercentage) FROM performance_metrics WHERE timestamp > :since")
-    suspend fun getAverageMemoryUsage(since: Long): Float?
-    
-    @Query("SELECT AVG(cpuUsagePercentage) FROM performance_metrics WHERE timestamp > :since")
-    suspend fun getAverageCpuUsage(since: Long): Float?
-    
-    @Query("SELECT AVG(messagesPerSecond) FROM performance_metrics WHERE timestamp > :since")
-    suspend fun getAverageMessageThroughput(since: Long): Double?
-}
\ No newline at end of file
+}
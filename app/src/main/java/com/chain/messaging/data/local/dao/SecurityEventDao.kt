@@ -39,6 +39,9 @@ interface SecurityEventDao {
     @Query("SELECT * FROM security_events WHERE severity IN ('HIGH', 'CRITICAL') AND isAcknowledged = 0 ORDER BY timestamp DESC")
     suspend fun getActiveHighSeverityEvents(): List<SecurityEventEntity>
     
+    @Query("SELECT COUNT(*) FROM security_events")
+    suspend fun getEventCount(): Int
+    
     @Query("SELECT COUNT(*) FROM security_events WHERE timestamp > :since")
     suspend fun getEventCountSince(since: LocalDateTime): Int
     
@@ -0,0 +1,78 @@
+package com.chain.messaging.data.local.entity
+
+import androidx.room.Embedded
+import androidx.room.Relation
+import com.chain.messaging.domain.model.Chat
+import com.chain.messaging.domain.model.ChatSettings
+import com.chain.messaging.domain.model.ChatType
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.model.MessageStatus
+import com.chain.messaging.domain.model.MessageType
+import java.util.Date
+
+/**
+ * A chat as the chat list shows it: the chat's own columns without the
+ * legacy JSON, its summary and its members
+ */
+data class ChatListRow(
+    val id: String,
+    val type: String,
+    val name: String,
+    val isNotificationsEnabled: Boolean,
+    val disappearingMessagesTimer: Long?,
+    val isArchived: Boolean,
+    val isPinned: Boolean,
+    val isMuted: Boolean,
+    val createdAt: Long,
+    val updatedAt: Long,
+    @Embedded val summary: ChatSummaryEntity,
+    @Relation(
+        parentColumn = "id",
+        entityColumn = "chatId"
+    )
+    val members: List<ChatParticipantEntity>
+)
+
+/**
+ * Extension function to convert ChatListRow to domain Chat model
+ */
+fun ChatListRow.toDomain(): Chat {
+    val ordered = members.sortedBy { it.position }
+    return Chat(
+        id = id,
+        type = ChatType.valueOf(type),
+        name = name,
+        participants = ordered.filter { it.isParticipant }.map { it.userId },
+        admins = ordered.filter { it.isAdmin }.map { it.userId },
+        settings = ChatSettings(
+            isNotificationsEnabled = isNotificationsEnabled,
+            disappearingMessagesTimer = disappearingMessagesTimer,
+            isArchived = isArchived,
+            isPinned = isPinned,
+            isMuted = isMuted
+        ),
+        lastMessage = summary.toLastMessage(),
+        unreadCount = summary.unreadCount,
+        createdAt = createdAt,
+        updatedAt = updatedAt,
+        lastMessageAt = summary.sortTimestamp,
+        isArchived = isArchived,
+        isPinned = isPinned
+    )
+}
+
+/**
+ * Preview of the last message; only the snippet of its content is stored
+ */
+private fun ChatSummaryEntity.toLastMessage(): Message? {
+    val messageId = lastMessageId ?: return null
+    return Message(
+        id = messageId,
+        chatId = chatId,
+        senderId = lastMessageSenderId.orEmpty(),
+        content = lastMessageSnippet.orEmpty(),
+        type = lastMessageType?.let { MessageType.valueOf(it) } ?: MessageType.TEXT,
+        timestamp = Date(lastMessageAt ?: sortTimestamp),
+        status = lastMessageStatus?.let { MessageStatus.valueOf(it) } ?: MessageStatus.SENT
+    )
+}
@@ -0,0 +1,40 @@
+package com.chain.messaging.data.local.entity
+
+import androidx.room.Entity
+import androidx.room.Index
+
+/**
+ * One member of a chat, replacing the participants and admins JSON columns
+ * on read. An admin that is not a participant has [isParticipant] false.
+ */
+@Entity(
+    tableName = "chat_participants",
+    primaryKeys = ["chatId", "userId"],
+    indices = [Index(value = ["userId"])]
+)
+data class ChatParticipantEntity(
+    val chatId: String,
+    val userId: String,
+    // Order in the chat's participant list, then its admin list
+    val position: Int,
+    val isParticipant: Boolean,
+    val isAdmin: Boolean
+)
+
+/**
+ * Join rows for a chat's [participants] and [admins], in list order
+ */
+fun chatParticipantRows(chatId: String, participants: List<String>, admins: List<String>): List<ChatParticipantEntity> {
+    val adminSet = admins.toSet()
+    val participantSet = participants.toSet()
+    val members = (participants + admins).distinct()
+    return members.mapIndexed { position, userId ->
+        ChatParticipantEntity(
+            chatId = chatId,
+            userId = userId,
+            position = position,
+            isParticipant = userId in participantSet,
+            isAdmin = userId in adminSet
+        )
+    }
+}
@@ -0,0 +1,37 @@
+package com.chain.messaging.data.local.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Denormalized chat-list row, one per chat. Kept current by the triggers in
+ * ChatSummarySchema as chats and messages are written, so the chat list
+ * never aggregates messages.
+ *
+ * There is deliberately no foreign key to chats: chats are saved with
+ * INSERT OR REPLACE, which would cascade and wipe the summary on every save.
+ */
+@Entity(
+    tableName = "chat_summaries",
+    indices = [Index(value = ["sortTimestamp"])]
+)
+data class ChatSummaryEntity(
+    @PrimaryKey
+    val chatId: String,
+    val lastMessageId: String?,
+    // First ChatSummarySchema.SNIPPET_LENGTH characters of the last message
+    val lastMessageSnippet: String?,
+    val lastMessageType: String?,
+    val lastMessageSenderId: String?,
+    val lastMessageStatus: String?,
+    val lastMessageAt: Long?,
+    // Messages from others that are not READ and newer than lastReadAt
+    val unreadCount: Int,
+    // Timestamp of the last message when the chat was last marked read
+    @ColumnInfo(defaultValue = "0")
+    val lastReadAt: Long,
+    // Later of the last message and the chat's own updatedAt
+    val sortTimestamp: Long
+)
@@ -19,7 +19,11 @@ import java.util.Date
     indices = [
         Index(value = ["chatId"]),
         Index(value = ["senderId"]),
-        Index(value = ["timestamp"])
+        Index(value = ["timestamp"]),
+        // Newest message of a chat, for the chat summary triggers
+        Index(value = ["chatId", "timestamp"]),
+        // Next-deadline and expired-batch lookups for disappearing messages
+        Index(value = ["isDisappearing", "expiresAt"])
     ]
 )
 data class MessageEntity(
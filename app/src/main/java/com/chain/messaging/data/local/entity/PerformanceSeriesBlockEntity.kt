@@ -0,0 +1,27 @@
+package com.chain.messaging.data.local.entity
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One compressed block of a performance time series at one rollup tier.
+ * [data] is a SeriesBlockCodec block covering [startTimestamp]..[endTimestamp].
+ */
+@Entity(
+    tableName = "performance_series_blocks",
+    indices = [
+        Index(value = ["metric", "tier", "startTimestamp"]),
+        Index(value = ["tier", "endTimestamp"])
+    ]
+)
+data class PerformanceSeriesBlockEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val metric: String,
+    val tier: String,
+    val startTimestamp: Long,
+    val endTimestamp: Long,
+    val pointCount: Int,
+    val data: ByteArray
+)
@@ -0,0 +1,94 @@
+package com.chain.messaging.data.local.storage
+
+import java.io.InputStream
+import java.io.OutputStream
+import java.security.MessageDigest
+
+/**
+ * Forwards writes to [target] while hashing and counting them, so one pass
+ * over the content feeds both the encryptor and the content hash
+ */
+class HashingOutputStream(
+    private val target: OutputStream,
+    algorithm: String = "SHA-256"
+) : OutputStream() {
+
+    private val digest = MessageDigest.getInstance(algorithm)
+
+    var bytesWritten = 0L
+        private set
+
+    override fun write(b: Int) {
+        target.write(b)
+        digest.update(b.toByte())
+        bytesWritten++
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        target.write(b, off, len)
+        digest.update(b, off, len)
+        bytesWritten += len
+    }
+
+    override fun flush() = target.flush()
+
+    override fun close() = target.close()
+
+    /**
+     * Hex digest of everything written; resets the digest, so call it once at the end
+     */
+    fun hashHex(): String = digest.digest().joinToString("") { "%02x".format(it) }
+}
+
+/**
+ * Copies every byte read from [source] into [sink], skipped bytes included,
+ * so a decoder can consume a stream while it is also being stored
+ */
+class TeeInputStream(
+    private val source: InputStream,
+    private val sink: OutputStream
+) : InputStream() {
+
+    private val scratch = ByteArray(8192)
+
+    override fun read(): Int {
+        val b = source.read()
+        if (b >= 0) sink.write(b)
+        return b
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        val count = source.read(b, off, len)
+        if (count > 0) sink.write(b, off, count)
+        return count
+    }
+
+    override fun skip(n: Long): Long {
+        // Skipped bytes still belong to the stored copy
+        var skipped = 0L
+        while (skipped < n) {
+            val count = read(scratch, 0, minOf(scratch.size.toLong(), n - skipped).toInt())
+            if (count < 0) break
+            skipped += count
+        }
+        return skipped
+    }
+
+    override fun available(): Int = source.available()
+
+    override fun markSupported(): Boolean = false
+
+    override fun close() = source.close()
+
+    /**
+     * Copy whatever the consumer left unread
+     */
+    fun drain(): Long {
+        var total = 0L
+        while (true) {
+            val count = read(scratch, 0, scratch.size)
+            if (count < 0) return total
+            total += count
+        }
+    }
+}
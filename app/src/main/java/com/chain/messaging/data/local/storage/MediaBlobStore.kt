@@ -0,0 +1,351 @@
+package com.chain.messaging.data.local.storage
+
+import android.content.Context
+import com.chain.messaging.core.security.SecureStorage
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.data.local.dao.MediaDao
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileInputStream
+import java.io.InputStream
+import java.security.SecureRandom
+import java.util.Base64
+import java.util.UUID
+import javax.crypto.Cipher
+import javax.crypto.Mac
+import javax.crypto.spec.GCMParameterSpec
+import javax.crypto.spec.SecretKeySpec
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Content-addressed store for encrypted media.
+ *
+ * Each distinct plaintext is stored once as a blob named by a keyed hash of
+ * its content, so the same photo forwarded to ten chats costs one file and one
+ * thumbnail. Blobs are encrypted with a key derived from their id, and each
+ * media row keeps that key wrapped for its own message. A blob's reference
+ * count is the number of media rows pointing at its path; it is deleted when
+ * the last row goes, and [collectGarbage] sweeps blobs orphaned by crashes.
+ */
+@Singleton
+class MediaBlobStore @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val secureStorage: SecureStorage,
+    private val mediaDao: MediaDao
+) {
+
+    companion object {
+        private const val BLOBS_DIR = "blobs"
+        private const val STAGING_DIR = ".staging"
+        private const val THUMBNAIL_SUFFIX = ".thumb.jpg"
+        private const val SECRET_KEY = "media_blob_secret"
+        private const val SECRET_LENGTH = 32
+        // Blobs committed moments ago may still be waiting for their row
+        private const val GC_GRACE_MS = 60 * 60 * 1000L
+    }
+
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    // Serialises the reference check with the file operations that depend on it
+    private val lock = Mutex()
+    private val keysLock = Mutex()
+    @Volatile
+    private var keys: BlobKeys? = null
+
+    private val blobDirectory: File by lazy {
+        File(context.filesDir, BLOBS_DIR).apply { mkdirs() }
+    }
+
+    private val stagingDirectory: File by lazy {
+        File(blobDirectory, STAGING_DIR).apply { mkdirs() }
+    }
+
+    /**
+     * Key material for this install, created on first use
+     */
+    suspend fun keys(): BlobKeys {
+        keys?.let { return it }
+        return keysLock.withLock {
+            keys ?: run {
+                val stored = secureStorage.get(SECRET_KEY)
+                val secret = if (stored != null) {
+                    Base64.getDecoder().decode(stored)
+                } else {
+                    ByteArray(SECRET_LENGTH).also {
+                        SecureRandom().nextBytes(it)
+                        secureStorage.store(SECRET_KEY, Base64.getEncoder().encodeToString(it))
+                    }
+                }
+                BlobKeys(secret).also { keys = it }
+            }
+        }
+    }
+
+    fun blobFile(blobId: String): File = File(blobDirectory, blobId)
+
+    fun thumbnailFile(blobId: String): File = File(blobDirectory, blobId + THUMBNAIL_SUFFIX)
+
+    /**
+     * Whether [blobId] is already stored; a hint only, [linkExisting] decides
+     */
+    fun contains(blobId: String): Boolean = blobFile(blobId).exists()
+
+    /**
+     * A fresh file on the blob volume, so committing it is an atomic rename
+     */
+    fun newStagingFile(): File = File(stagingDirectory, UUID.randomUUID().toString())
+
+    fun isBlobPath(path: String): Boolean = File(path).parentFile?.absolutePath == blobDirectory.absolutePath
+
+    /**
+     * Add a reference to a stored blob. Returns null if the blob is gone, in
+     * which case the caller stages the content and uses [linkStaged].
+     */
+    suspend fun <T> linkExisting(blobId: String, addReference: suspend (blob: File, thumbnail: File?) -> T): T? {
+        return lock.withLock {
+            val blob = blobFile(blobId)
+            if (!blob.exists()) return@withLock null
+            addReference(blob, thumbnailFile(blobId).takeIf { it.exists() })
+        }
+    }
+
+    /**
+     * Commit staged content as [blobId] and add a reference to it. If another
+     * ingest committed the same content first, the staged copy is discarded.
+     */
+    suspend fun <T> linkStaged(
+        blobId: String,
+        staged: File,
+        stagedThumbnail: File?,
+        addReference: suspend (blob: File, thumbnail: File?) -> T
+    ): T = withContext(Dispatchers.IO) {
+        lock.withLock {
+            val blob = blobFile(blobId)
+            commit(staged, blob)
+            val thumbnail = thumbnailFile(blobId)
+            stagedThumbnail?.let { commit(it, thumbnail) }
+            try {
+                addReference(blob, thumbnail.takeIf { it.exists() })
+            } catch (e: Exception) {
+                deleteIfUnreferenced(blob)
+                throw e
+            }
+        }
+    }
+
+    /**
+     * Drop a file whose media row has been deleted. Blobs go only with their
+     * last reference; files stored before blobs existed are deleted outright.
+     * Returns the bytes freed.
+     */
+    suspend fun release(filePath: String, thumbnailPath: String?): Long = withContext(Dispatchers.IO) {
+        if (isBlobPath(filePath)) {
+            lock.withLock { deleteIfUnreferenced(File(filePath)) }
+        } else {
+            deleteFile(File(filePath)).also { freed ->
+                thumbnailPath?.let { deleteFile(File(it)) }
+                if (freed > 0) log.d { "Deleted legacy media file" }
+            }
+        }
+    }
+
+    /**
+     * Delete blobs no row references, thumbnails without a blob, and staging
+     * files left by interrupted ingests
+     */
+    suspend fun collectGarbage(now: Long = System.currentTimeMillis()): BlobGcResult = withContext(Dispatchers.IO) {
+        val cutoff = now - GC_GRACE_MS
+        var blobsDeleted = 0
+        var otherFilesDeleted = 0
+        var spaceFreed = 0L
+
+        blobDirectory.listFiles()?.forEach { file ->
+            if (file.isFile && !file.name.endsWith(THUMBNAIL_SUFFIX) && file.lastModified() < cutoff) {
+                val freed = lock.withLock { deleteIfUnreferenced(file) }
+                if (freed > 0) {
+                    blobsDeleted++
+                    spaceFreed += freed
+                }
+            }
+        }
+        blobDirectory.listFiles()?.forEach { file ->
+            if (file.isFile && file.name.endsWith(THUMBNAIL_SUFFIX) && file.lastModified() < cutoff) {
+                val blob = blobFile(file.name.removeSuffix(THUMBNAIL_SUFFIX))
+                if (!blob.exists()) {
+                    spaceFreed += deleteFile(file)
+                    otherFilesDeleted++
+                }
+            }
+        }
+        stagingDirectory.listFiles()?.forEach { file ->
+            if (file.lastModified() < cutoff) {
+                spaceFreed += deleteFile(file)
+                otherFilesDeleted++
+            }
+        }
+
+        if (blobsDeleted + otherFilesDeleted > 0) {
+            log.i { "Blob GC removed $blobsDeleted blobs and $otherFilesDeleted stray files ($spaceFreed bytes)" }
+        }
+        BlobGcResult(blobsDeleted, otherFilesDeleted, spaceFreed)
+    }
+
+    /**
+     * How much storage deduplication is saving
+     */
+    suspend fun dedupStats(): MediaDedupStats {
+        val counts = mediaDao.getDedupCounts()
+        return MediaDedupStats(
+            references = counts.referenceCount,
+            blobs = counts.blobCount,
+            logicalBytes = counts.logicalBytes,
+            storedBytes = counts.storedBytes
+        )
+    }
+
+    private fun commit(staged: File, target: File) {
+        if (target.exists() || !staged.renameTo(target)) {
+            staged.delete()
+        }
+    }
+
+    private suspend fun deleteIfUnreferenced(blob: File): Long {
+        if (mediaDao.countByFilePath(blob.absolutePath) > 0) return 0L
+        val freed = deleteFile(blob)
+        deleteFile(File(blob.parentFile, blob.name + THUMBNAIL_SUFFIX))
+        return freed
+    }
+
+    private fun deleteFile(file: File): Long {
+        val size = file.length()
+        return if (file.exists() && file.delete()) size else 0L
+    }
+}
+
+/**
+ * Key derivation for [MediaBlobStore], from one per-install secret.
+ *
+ * - Blob ids are HMAC-SHA256 of the plaintext, so equal content shares a blob
+ *   without exposing a plain hash that could confirm known files.
+ * - Blob keys are derived from the id (convergent), so any ingest of the same
+ *   content can produce the same ciphertext key without looking it up.
+ * - Each media row stores the blob key AES-GCM wrapped under a key derived
+ *   from its message id.
+ */
+class BlobKeys(private val secret: ByteArray) {
+
+    private val random = SecureRandom()
+
+    fun contentId(bytes: ByteArray): String = contentMac().doFinal(bytes).toHex()
+
+    /**
+     * Id and length of everything in [input]
+     */
+    fun contentId(input: InputStream): ContentDigest {
+        val mac = contentMac()
+        val buffer = ByteArray(BUFFER_SIZE)
+        var size = 0L
+        while (true) {
+            val count = input.read(buffer)
+            if (count < 0) break
+            mac.update(buffer, 0, count)
+            size += count
+        }
+        return ContentDigest(mac.doFinal().toHex(), size)
+    }
+
+    fun contentId(file: File): ContentDigest = FileInputStream(file).use { contentId(it) }
+
+    fun blobKey(blobId: String): ByteArray = derive("blob-key:$blobId")
+
+    /**
+     * Key for the encrypted cache of display-size renditions
+     */
+    fun renditionCacheKey(): ByteArray = derive("rendition-cache")
+
+    /**
+     * Opaque file name for a rendition cache entry, so media ids and local
+     * paths do not appear on disk
+     */
+    fun renditionFileName(cacheKey: String): String = derive("rendition-name:$cacheKey").toHex()
+
+    fun wrapKey(messageId: String, blobKey: ByteArray): String {
+        val iv = ByteArray(GCM_IV_LENGTH).also { random.nextBytes(it) }
+        val cipher = Cipher.getInstance(TRANSFORMATION)
+        cipher.init(Cipher.ENCRYPT_MODE, SecretKeySpec(derive("wrap:$messageId"), "AES"), GCMParameterSpec(GCM_TAG_BITS, iv))
+        return WRAPPED_PREFIX + Base64.getEncoder().encodeToString(iv + cipher.doFinal(blobKey))
+    }
+
+    /**
+     * The Base64 file key for a stored media row. Keys written before blobs
+     * existed are stored unwrapped and returned as they are.
+     */
+    fun unwrapKey(messageId: String, storedKey: String): String {
+        if (!storedKey.startsWith(WRAPPED_PREFIX)) return storedKey
+        val wrapped = Base64.getDecoder().decode(storedKey.removePrefix(WRAPPED_PREFIX))
+        val cipher = Cipher.getInstance(TRANSFORMATION)
+        cipher.init(
+            Cipher.DECRYPT_MODE,
+            SecretKeySpec(derive("wrap:$messageId"), "AES"),
+            GCMParameterSpec(GCM_TAG_BITS, wrapped, 0, GCM_IV_LENGTH)
+        )
+        val key = cipher.doFinal(wrapped, GCM_IV_LENGTH, wrapped.size - GCM_IV_LENGTH)
+        return Base64.getEncoder().encodeToString(key)
+    }
+
+    private fun contentMac(): Mac = Mac.getInstance(MAC_ALGORITHM).apply {
+        init(SecretKeySpec(derive("content-id"), MAC_ALGORITHM))
+    }
+
+    private fun derive(label: String): ByteArray = Mac.getInstance(MAC_ALGORITHM).run {
+        init(SecretKeySpec(secret, MAC_ALGORITHM))
+        doFinal(label.toByteArray(Charsets.UTF_8))
+    }
+
+    private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+
+    companion object {
+        private const val MAC_ALGORITHM = "HmacSHA256"
+        private const val TRANSFORMATION = "AES/GCM/NoPadding"
+        private const val GCM_IV_LENGTH = 12
+        private const val GCM_TAG_BITS = 128
+        private const val BUFFER_SIZE = 64 * 1024
+        private const val WRAPPED_PREFIX = "w1:"
+    }
+}
+
+data class ContentDigest(
+    val blobId: String,
+    val size: Long
+)
+
+/**
+ * Result of a [MediaBlobStore.collectGarbage] sweep
+ */
+data class BlobGcResult(
+    val blobsDeleted: Int,
+    val otherFilesDeleted: Int,
+    val spaceFreed: Long
+)
+
+/**
+ * Media rows versus the blobs backing them
+ */
+data class MediaDedupStats(
+    val references: Int,
+    val blobs: Int,
+    val logicalBytes: Long,
+    val storedBytes: Long
+) {
+    // References served per stored blob; 1.0 means nothing was shared
+    val dedupRatio: Double
+        get() = if (blobs == 0) 0.0 else references.toDouble() / blobs
+
+    val bytesSaved: Long
+        get() = logicalBytes - storedBytes
+}
@@ -3,20 +3,20 @@ package com.chain.messaging.data.local.storage
 import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
-import android.media.MediaCodec
-import android.media.MediaCodecInfo
-import android.media.MediaExtractor
-import android.media.MediaFormat
 import android.media.MediaMetadataRetriever
-import android.media.MediaMuxer
 import android.net.Uri
-import android.util.Log
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
+import com.chain.messaging.data.local.storage.transcode.BitrateLadder
+import com.chain.messaging.data.local.storage.transcode.TranscodeResult
+import com.chain.messaging.data.local.storage.transcode.VideoTranscoder
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import java.io.File
 import java.io.FileOutputStream
-import java.nio.ByteBuffer
+import java.io.OutputStream
+import kotlin.coroutines.cancellation.CancellationException
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -28,21 +28,17 @@ class MediaCompressor @Inject constructor(
     @ApplicationContext private val context: Context
 ) {
     
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    
     companion object {
-        private const val TAG = "MediaCompressor"
-        
         // Image compression settings
         private const val MAX_IMAGE_WIDTH = 1920
         private const val MAX_IMAGE_HEIGHT = 1080
         private const val IMAGE_QUALITY = 85
         
         // Video compression settings
-        private const val MAX_VIDEO_BITRATE = 2000000 // 2 Mbps
         private const val MAX_VIDEO_WIDTH = 1280
         private const val MAX_VIDEO_HEIGHT = 720
-        private const val VIDEO_FRAME_RATE = 30
-        private const val VIDEO_I_FRAME_INTERVAL = 2
-        private const val TIMEOUT_USEC = 10000L
     }
     
     /**
@@ -72,77 +68,65 @@ class MediaCompressor @Inject constructor(
     private suspend fun compressImage(sourceUri: Uri, outputDir: File): File = withContext(Dispatchers.IO) {
         val outputFile = File(outputDir, "compressed_image_${System.currentTimeMillis()}.jpg")
         
-        context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
-            // First, get image dimensions
-            val options = BitmapFactory.Options().apply {
-                inJustDecodeBounds = true
-            }
-            BitmapFactory.decodeStream(inputStream, null, options)
-            
-            // Calculate sample size
-            val sampleSize = calculateImageSampleSize(options.outWidth, options.outHeight)
-            
-            // Decode with sample size
-            context.contentResolver.openInputStream(sourceUri)?.use { inputStream2 ->
-                val decodeOptions = BitmapFactory.Options().apply {
-                    inSampleSize = sampleSize
-                    inJustDecodeBounds = false
-                }
-                
-                val bitmap = BitmapFactory.decodeStream(inputStream2, null, decodeOptions)
-                bitmap?.let { bmp ->
-                    // Further resize if still too large
-                    val resizedBitmap = resizeBitmapIfNeeded(bmp)
-                    
-                    // Compress and save
-                    FileOutputStream(outputFile).use { outputStream ->
-                        resizedBitmap.compress(Bitmap.CompressFormat.JPEG, IMAGE_QUALITY, outputStream)
-                    }
-                    
-                    // Clean up bitmaps
-                    if (resizedBitmap != bmp) {
-                        bmp.recycle()
-                    }
-                    resizedBitmap.recycle()
-                }
+        decodeScaledImage(sourceUri)?.let { bitmap ->
+            FileOutputStream(outputFile).use { outputStream ->
+                writeCompressedImage(bitmap, outputStream)
             }
+            bitmap.recycle()
         }
         
         outputFile
     }
     
     /**
-     * Compress video file using MediaMuxer and MediaCodec
+     * Decode an image at the size it is stored at. The bounds pass only reads
+     * the header, so the source is decoded once.
+     */
+    fun decodeScaledImage(sourceUri: Uri): Bitmap? {
+        val options = BitmapFactory.Options().apply {
+            inJustDecodeBounds = true
+        }
+        context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
+            BitmapFactory.decodeStream(inputStream, null, options)
+        } ?: return null
+        
+        val decodeOptions = BitmapFactory.Options().apply {
+            inSampleSize = calculateImageSampleSize(options.outWidth, options.outHeight)
+        }
+        val bitmap = context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
+            BitmapFactory.decodeStream(inputStream, null, decodeOptions)
+        } ?: return null
+        
+        // Further resize if still too large
+        val resizedBitmap = resizeBitmapIfNeeded(bitmap)
+        if (resizedBitmap != bitmap) {
+            bitmap.recycle()
+        }
+        return resizedBitmap
+    }
+    
+    /**
+     * Encode a bitmap from [decodeScaledImage] into [output] with the storage quality
+     */
+    fun writeCompressedImage(bitmap: Bitmap, output: OutputStream): Boolean {
+        return bitmap.compress(Bitmap.CompressFormat.JPEG, IMAGE_QUALITY, output)
+    }
+    
+    /**
+     * Transcode a video read straight from [sourceUri], falling back to a
+     * plain copy if this device cannot transcode it
      */
     private suspend fun compressVideo(sourceUri: Uri, outputDir: File): File = withContext(Dispatchers.IO) {
         val outputFile = File(outputDir, "compressed_video_${System.currentTimeMillis()}.mp4")
         
         try {
-            // Create a temporary file from the URI for MediaExtractor
-            val tempInputFile = File(context.cacheDir, "temp_input_${System.currentTimeMillis()}.mp4")
-            context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
-                FileOutputStream(tempInputFile).use { outputStream ->
-                    inputStream.copyTo(outputStream)
-                }
-            }
-            
-            val success = compressVideoFile(tempInputFile, outputFile)
-            
-            // Clean up temporary file
-            tempInputFile.delete()
-            
-            if (!success) {
-                // If compression failed, fall back to copying the original
-                Log.w(TAG, "Video compression failed, copying original file")
-                context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
-                    FileOutputStream(outputFile).use { outputStream ->
-                        inputStream.copyTo(outputStream)
-                    }
-                }
-            }
+            val result = transcodeVideo(sourceUri, outputFile)
+            log.d { "Transcoded ${result.durationUs / 1000} ms of video at ${"%.1f".format(result.realtimeFactor)}x realtime" }
+        } catch (e: CancellationException) {
+            outputFile.delete()
+            throw e
         } catch (e: Exception) {
-            Log.e(TAG, "Error compressing video", e)
-            // Fall back to copying the original file
+            log.w(e) { "Video transcoding failed, copying original file" }
             context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
                 FileOutputStream(outputFile).use { outputStream ->
                     inputStream.copyTo(outputStream)
@@ -154,178 +138,23 @@ class MediaCompressor @Inject constructor(
     }
     
     /**
-     * Compress video file using MediaMuxer and MediaCodec
-     */
-    private fun compressVideoFile(inputFile: File, outputFile: File): Boolean {
-        var extractor: MediaExtractor? = null
-        var muxer: MediaMuxer? = null
-        var decoder: MediaCodec? = null
-        var encoder: MediaCodec? = null
-        
-        try {
-            // Set up MediaExtractor
-            extractor = MediaExtractor().apply {
-                setDataSource(inputFile.absolutePath)
-            }
-            
-            // Find video track
-            var videoTrackIndex = -1
-            var audioTrackIndex = -1
-            var videoFormat: MediaFormat? = null
-            var audioFormat: MediaFormat? = null
-            
-            for (i in 0 until extractor.trackCount) {
-                val format = extractor.getTrackFormat(i)
-                val mimeType = format.getString(MediaFormat.KEY_MIME) ?: continue
-                
-                when {
-                    mimeType.startsWith("video/") && videoTrackIndex == -1 -> {
-                        videoTrackIndex = i
-                        videoFormat = format
-                    }
-                    mimeType.startsWith("audio/") && audioTrackIndex == -1 -> {
-                        audioTrackIndex = i
-                        audioFormat = format
-                    }
-                }
-            }
-            
-            if (videoTrackIndex == -1) {
-                Log.e(TAG, "No video track found")
-                return false
-            }
-            
-            // Get original video properties
-            val originalWidth = videoFormat!!.getInteger(MediaFormat.KEY_WIDTH)
-            val originalHeight = videoFormat.getInteger(MediaFormat.KEY_HEIGHT)
-            val originalBitrate = if (videoFormat.containsKey(MediaFormat.KEY_BIT_RATE)) {
-                videoFormat.getInteger(MediaFormat.KEY_BIT_RATE)
-            } else {
-                MAX_VIDEO_BITRATE
-            }
-            
-            // Calculate new dimensions maintaining aspect ratio
-            val (newWidth, newHeight) = calculateVideoSize(originalWidth, originalHeight)
-            val newBitrate = minOf(originalBitrate, MAX_VIDEO_BITRATE)
-            
-            // Set up MediaMuxer
-            muxer = MediaMuxer(outputFile.absolutePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4)
-            
-            // Set up encoder format
-            val encoderFormat = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, newWidth, newHeight).apply {
-                setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface)
-                setInteger(MediaFormat.KEY_BIT_RATE, newBitrate)
-                setInteger(MediaFormat.KEY_FRAME_RATE, VIDEO_FRAME_RATE)
-                setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, VIDEO_I_FRAME_INTERVAL)
-            }
-            
-            // For simplicity, we'll use a basic transcoding approach
-            // In a production app, you might want to use Surface-to-Surface transcoding for better performance
-            return transcodeVideo(extractor, muxer, videoTrackIndex, audioTrackIndex, encoderFormat, newWidth, newHeight)
-            
-        } catch (e: Exception) {
-            Log.e(TAG, "Error in video compression", e)
-            return false
-        } finally {
-            try {
-                decoder?.stop()
-                decoder?.release()
-                encoder?.stop()
-                encoder?.release()
-                muxer?.stop()
-                muxer?.release()
-                extractor?.release()
-            } catch (e: Exception) {
-                Log.e(TAG, "Error releasing resources", e)
-            }
-        }
-    }
-    
-    /**
-     * Transcode video with basic frame-by-frame processing
+     * Re-encode a video to H.264 within the maximum video size, at a bitrate
+     * from [BitrateLadder]. [onProgress] is called on the transcoder's thread
+     * with the fraction done; cancelling the caller stops the transcode and
+     * deletes [outputFile].
      */
-    private fun transcodeVideo(
-        extractor: MediaExtractor,
-        muxer: MediaMuxer,
-        videoTrackIndex: Int,
-        audioTrackIndex: Int,
-        encoderFormat: MediaFormat,
-        newWidth: Int,
-        newHeight: Int
-    ): Boolean {
-        try {
-            // For basic implementation, we'll copy the video track with new parameters
-            // This is a simplified approach - a full implementation would decode and re-encode frames
-            
-            extractor.selectTrack(videoTrackIndex)
-            val videoFormat = extractor.getTrackFormat(videoTrackIndex)
-            
-            // Create new format with compressed settings
-            val outputVideoFormat = MediaFormat.createVideoFormat(
-                videoFormat.getString(MediaFormat.KEY_MIME) ?: MediaFormat.MIMETYPE_VIDEO_AVC,
-                newWidth,
-                newHeight
-            ).apply {
-                setInteger(MediaFormat.KEY_BIT_RATE, encoderFormat.getInteger(MediaFormat.KEY_BIT_RATE))
-                setInteger(MediaFormat.KEY_FRAME_RATE, VIDEO_FRAME_RATE)
-                setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, VIDEO_I_FRAME_INTERVAL)
-            }
-            
-            val videoTrackIndexOutput = muxer.addTrack(outputVideoFormat)
-            var audioTrackIndexOutput = -1
-            
-            // Add audio track if present
-            if (audioTrackIndex != -1) {
-                val audioFormat = extractor.getTrackFormat(audioTrackIndex)
-                audioTrackIndexOutput = muxer.addTrack(audioFormat)
-            }
-            
-            muxer.start()
-            
-            // Copy video samples
-            val buffer = ByteBuffer.allocate(1024 * 1024) // 1MB buffer
-            val bufferInfo = MediaCodec.BufferInfo()
-            
-            // Process video track
-            extractor.selectTrack(videoTrackIndex)
-            while (true) {
-                val sampleSize = extractor.readSampleData(buffer, 0)
-                if (sampleSize < 0) break
-                
-                bufferInfo.offset = 0
-                bufferInfo.size = sampleSize
-                bufferInfo.presentationTimeUs = extractor.sampleTime
-                bufferInfo.flags = extractor.sampleFlags
-                
-                muxer.writeSampleData(videoTrackIndexOutput, buffer, bufferInfo)
-                extractor.advance()
-            }
-            
-            // Process audio track if present
-            if (audioTrackIndex != -1 && audioTrackIndexOutput != -1) {
-                extractor.selectTrack(audioTrackIndex)
-                extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC)
-                
-                while (true) {
-                    val sampleSize = extractor.readSampleData(buffer, 0)
-                    if (sampleSize < 0) break
-                    
-                    bufferInfo.offset = 0
-                    bufferInfo.size = sampleSize
-                    bufferInfo.presentationTimeUs = extractor.sampleTime
-                    bufferInfo.flags = extractor.sampleFlags
-                    
-                    muxer.writeSampleData(audioTrackIndexOutput, buffer, bufferInfo)
-                    extractor.advance()
-                }
-            }
-            
-            return true
-            
-        } catch (e: Exception) {
-            Log.e(TAG, "Error in transcoding", e)
-            return false
-        }
+    suspend fun transcodeVideo(
+        sourceUri: Uri,
+        outputFile: File,
+        onProgress: (Float) -> Unit = {}
+    ): TranscodeResult {
+        return VideoTranscoder(
+            context = context,
+            sourceUri = sourceUri,
+            outputFile = outputFile,
+            targetSize = ::calculateVideoSize,
+            onProgress = onProgress
+        ).transcode()
     }
     
     /**
@@ -438,7 +267,7 @@ class MediaCompressor @Inject constructor(
     fun getEstimatedCompressedSize(mimeType: String, originalSize: Long): Long {
         return when {
             mimeType.startsWith("image/") -> (originalSize * 0.3).toLong() // ~30% of original
-            mimeType.startsWith("video/") -> (originalSize * 0.4).toLong() // ~40% of original with MediaMuxer compression
+            mimeType.startsWith("video/") -> (originalSize * 0.4).toLong() // ~40% of original after transcoding
             else -> originalSize
         }
     }
@@ -460,7 +289,7 @@ class MediaCompressor @Inject constructor(
                 VideoMetadata(width, height, duration, bitrate)
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Error getting video metadata", e)
+            log.e(e) { "Error getting video metadata" }
             null
         }
     }
@@ -5,20 +5,32 @@ import android.graphics.Bitmap
 import android.graphics.BitmapFactory
 import android.media.MediaMetadataRetriever
 import android.net.Uri
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.LatencySummary
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.data.local.dao.MediaDao
-import com.chain.messaging.data.local.entity.MediaEntity
 import com.chain.messaging.data.local.entity.Media
+import com.chain.messaging.data.local.entity.MediaEntity
 import com.chain.messaging.data.local.entity.toDomain
 import com.chain.messaging.data.local.entity.toEntity
 import com.chain.messaging.core.security.FileEncryption
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.withContext
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
 import java.io.File
 import java.io.FileInputStream
-import java.io.FileOutputStream
 import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
 import java.util.UUID
+import java.util.concurrent.atomic.AtomicLong
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -31,30 +43,40 @@ class MediaStorageService @Inject constructor(
     private val mediaDao: MediaDao,
     private val fileEncryption: FileEncryption,
     private val mediaCompressor: MediaCompressor,
-    private val thumbnailGenerator: ThumbnailGenerator
+    private val thumbnailGenerator: ThumbnailGenerator,
+    private val blobStore: MediaBlobStore,
+    metricsRegistry: MetricsRegistry
 ) {
     
     companion object {
-        private const val MEDIA_DIR = "media"
-        private const val THUMBNAILS_DIR = "thumbnails"
         private const val TEMP_DIR = "temp"
         private const val MAX_STORAGE_SIZE_MB = 500L // 500MB default limit
+        private const val MAX_PARALLEL_INGESTS = 3
+        private const val COPY_BUFFER_SIZE = 64 * 1024
+        private const val VIDEO_THUMBNAIL_TIME_US = 1_000_000L
     }
     
-    private val mediaDirectory: File by lazy {
-        File(context.filesDir, MEDIA_DIR).apply { mkdirs() }
-    }
-    
-    private val thumbnailDirectory: File by lazy {
-        File(context.filesDir, THUMBNAILS_DIR).apply { mkdirs() }
-    }
+    private val ingestPermits = Semaphore(MAX_PARALLEL_INGESTS)
+    private val photoIngestLatency = metricsRegistry.histogram(HotPathMetrics.MEDIA_INGEST_PHOTO)
+    private val videoIngestLatency = metricsRegistry.histogram(HotPathMetrics.MEDIA_INGEST_VIDEO)
+    private val tempPeakGauge = metricsRegistry.gauge(HotPathMetrics.MEDIA_INGEST_TEMP_PEAK_BYTES)
+    private val tempBytesInUse = AtomicLong()
+    private val peakTempBytes = AtomicLong()
     
     private val tempDirectory: File by lazy {
         File(context.cacheDir, TEMP_DIR).apply { mkdirs() }
     }
     
     /**
-     * Store media file with encryption and compression
+     * Store media file with encryption and compression.
+     *
+     * Content is stored once per distinct plaintext in [MediaBlobStore]: the
+     * keyed content hash is computed first, and encryption and the thumbnail
+     * are skipped when the blob already exists, e.g. for a forwarded photo.
+     * Images are decoded a single time, with metadata and the thumbnail taken
+     * from the decoded bitmap. Other content is hashed from the source and
+     * read again to encrypt only when it is new. At most
+     * [MAX_PARALLEL_INGESTS] items are processed at once.
      */
     suspend fun storeMedia(
         messageId: String,
@@ -63,81 +85,102 @@ class MediaStorageService @Inject constructor(
         mimeType: String,
         compress: Boolean = true
     ): Result<Media> = withContext(Dispatchers.IO) {
-        try {
+        ingestPermits.withPermit {
+            val startNanos = System.nanoTime()
             val mediaId = UUID.randomUUID().toString()
-            val fileExtension = fileName.substringAfterLast('.', "")
-            val secureFileName = "${mediaId}.${fileExtension}"
-            val mediaFile = File(mediaDirectory, secureFileName)
+            var ingested: IngestedMedia? = null
             
-            // Copy and optionally compress the file
-            val processedFile = if (compress && shouldCompress(mimeType)) {
-                mediaCompressor.compressMedia(sourceUri, mimeType, tempDirectory)
-            } else {
-                copyFileFromUri(sourceUri, File(tempDirectory, secureFileName))
+            try {
+                val keys = blobStore.keys()
+                suspend fun ingest(reuseExisting: Boolean) = when {
+                    mimeType.startsWith("image/") -> ingestImage(sourceUri, compress, keys, reuseExisting)
+                    mimeType.startsWith("video/") -> ingestVideo(sourceUri, mimeType, compress, keys, reuseExisting)
+                    else -> ingestFile(sourceUri, mimeType, keys, reuseExisting)
+                }
+                
+                val first = ingest(reuseExisting = true)
+                ingested = first
+                val media = link(first, mediaId, messageId, fileName, mimeType, keys) ?: run {
+                    // The blob was released between the lookup and the link; store it again
+                    val second = ingest(reuseExisting = false)
+                    ingested = second
+                    link(second, mediaId, messageId, fileName, mimeType, keys)
+                } ?: throw IOException("Unable to store $sourceUri")
+                
+                when {
+                    mimeType.startsWith("image/") -> photoIngestLatency.recordSince(startNanos)
+                    mimeType.startsWith("video/") -> videoIngestLatency.recordSince(startNanos)
+                }
+                
+                Result.success(media)
+            } catch (e: Exception) {
+                ingested?.staged?.delete()
+                ingested?.stagedThumbnail?.delete()
+                Result.failure(e)
             }
-            
-            // Get media metadata
-            val metadata = extractMediaMetadata(processedFile, mimeType)
-            
-            // Encrypt the file
-            val encryptionKey = fileEncryption.encryptFile(processedFile, mediaFile)
-            
-            // Generate thumbnail if applicable
-            val thumbnailPath = if (isImageOrVideo(mimeType)) {
-                generateThumbnail(processedFile, mediaId, mimeType)
-            } else null
-            
-            // Create media entity
-            val media = Media(
-                id = mediaId,
-                messageId = messageId,
-                fileName = fileName,
-                filePath = mediaFile.absolutePath,
-                mimeType = mimeType,
-                fileSize = mediaFile.length(),
-                width = metadata.width,
-                height = metadata.height,
-                duration = metadata.duration,
-                thumbnailPath = thumbnailPath,
-                isEncrypted = true,
-                encryptionKey = encryptionKey
-            )
-            
-            // Store in database
-            mediaDao.insertMedia(media.toEntity())
-            
-            // Clean up temp file
-            processedFile.delete()
-            
-            Result.success(media)
+        }
+    }
+    
+    /**
+     * Store several items for one message, e.g. a burst of photos, with
+     * bounded parallelism. Results are in the order of [items].
+     */
+    suspend fun storeMediaBatch(
+        messageId: String,
+        items: List<MediaIngestRequest>
+    ): List<Result<Media>> = coroutineScope {
+        items.map { item ->
+            async {
+                storeMedia(messageId, item.sourceUri, item.fileName, item.mimeType, item.compress)
+            }
+        }.awaitAll()
+    }
+    
+    /**
+     * Ingest timings per photo and per video, and the peak plaintext temp-disk use
+     */
+    fun getIngestStats(): MediaIngestStats {
+        return MediaIngestStats(
+            photos = photoIngestLatency.snapshot().toSummary(),
+            videos = videoIngestLatency.snapshot().toSummary(),
+            peakTempBytes = peakTempBytes.get()
+        )
+    }
+    
+    /**
+     * How many media rows share stored blobs, and the bytes that saves
+     */
+    suspend fun getDedupStats(): Result<MediaDedupStats> {
+        return try {
+            Result.success(blobStore.dedupStats())
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
     
     /**
-     * Retrieve media file and decrypt if necessary
+     * Open stored media for reading, decrypting as it streams. Nothing
+     * decrypted is written to disk; the caller closes the returned stream.
      */
-    suspend fun getMedia(mediaId: String): Result<File?> = withContext(Dispatchers.IO) {
+    suspend fun openMedia(mediaId: String): Result<OpenedMedia?> = withContext(Dispatchers.IO) {
         try {
             val mediaEntity = mediaDao.getMediaById(mediaId)
             if (mediaEntity == null) {
                 return@withContext Result.success(null)
             }
             
-            val encryptedFile = File(mediaEntity.filePath)
-            if (!encryptedFile.exists()) {
+            val storedFile = File(mediaEntity.filePath)
+            if (!storedFile.exists()) {
                 return@withContext Result.success(null)
             }
             
-            if (mediaEntity.isEncrypted && mediaEntity.encryptionKey != null) {
-                // Decrypt to temp file
-                val tempFile = File(tempDirectory, "decrypted_${mediaEntity.id}")
-                fileEncryption.decryptFile(encryptedFile, tempFile, mediaEntity.encryptionKey)
-                Result.success(tempFile)
+            val stream = if (mediaEntity.isEncrypted && mediaEntity.encryptionKey != null) {
+                val fileKey = blobStore.keys().unwrapKey(mediaEntity.messageId, mediaEntity.encryptionKey)
+                fileEncryption.openDecryptedInput(storedFile, fileKey)
             } else {
-                Result.success(encryptedFile)
+                FileInputStream(storedFile)
             }
+            Result.success(OpenedMedia(mediaEntity.toDomain(), stream))
         } catch (e: Exception) {
             Result.failure(e)
         }
@@ -190,28 +233,15 @@ class MediaStorageService @Inject constructor(
     }
     
     /**
-     * Delete media file and its thumbnail
+     * Delete media and release its blob, which goes with its last reference
      */
     suspend fun deleteMedia(mediaId: String): Result<Unit> = withContext(Dispatchers.IO) {
         try {
             val mediaEntity = mediaDao.getMediaById(mediaId)
             if (mediaEntity != null) {
-                // Delete media file
-                val mediaFile = File(mediaEntity.filePath)
-                if (mediaFile.exists()) {
-                    mediaFile.delete()
-                }
-                
-                // Delete thumbnail
-                mediaEntity.thumbnailPath?.let { thumbnailPath ->
-                    val thumbnailFile = File(thumbnailPath)
-                    if (thumbnailFile.exists()) {
-                        thumbnailFile.delete()
-                    }
-                }
-                
-                // Remove from database
+                // The row goes first so the blob's reference count no longer includes it
                 mediaDao.deleteMediaById(mediaId)
+                blobStore.release(mediaEntity.filePath, mediaEntity.thumbnailPath)
             }
             
             Result.success(Unit)
@@ -243,35 +273,17 @@ class MediaStorageService @Inject constructor(
     }
     
     /**
-     * Clean up old media files to free space
+     * Clean up old media files to free space. Blobs still referenced by newer
+     * media stay; unreferenced ones are left to [MediaBlobStore.collectGarbage].
      */
     suspend fun cleanupOldMedia(olderThanDays: Int = 30): Result<CleanupResult> = withContext(Dispatchers.IO) {
         try {
             val cutoffTime = System.currentTimeMillis() - (olderThanDays * 24 * 60 * 60 * 1000L)
             val oldMediaFiles = mediaDao.getOldMediaFiles(cutoffTime)
             
-            var deletedFiles = 0
-            var freedSpace = 0L
-            
-            oldMediaFiles.forEach { mediaEntity ->
-                val mediaFile = File(mediaEntity.filePath)
-                if (mediaFile.exists()) {
-                    freedSpace += mediaFile.length()
-                    mediaFile.delete()
-                    deletedFiles++
-                }
-                
-                // Delete thumbnail
-                mediaEntity.thumbnailPath?.let { thumbnailPath ->
-                    val thumbnailFile = File(thumbnailPath)
-                    if (thumbnailFile.exists()) {
-                        thumbnailFile.delete()
-                    }
-                }
-            }
-            
             // Remove from database
             val deletedCount = mediaDao.deleteOldMedia(cutoffTime)
+            val (deletedFiles, freedSpace) = releaseFiles(oldMediaFiles)
             
             val result = CleanupResult(
                 deletedFiles = deletedFiles,
@@ -293,28 +305,9 @@ class MediaStorageService @Inject constructor(
             val minSizeBytes = minSizeMB * 1024 * 1024
             val largeFiles = mediaDao.getLargeMediaFiles(minSizeBytes)
             
-            var deletedFiles = 0
-            var freedSpace = 0L
-            
-            largeFiles.forEach { mediaEntity ->
-                val mediaFile = File(mediaEntity.filePath)
-                if (mediaFile.exists()) {
-                    freedSpace += mediaFile.length()
-                    mediaFile.delete()
-                    deletedFiles++
-                }
-                
-                // Delete thumbnail
-                mediaEntity.thumbnailPath?.let { thumbnailPath ->
-                    val thumbnailFile = File(thumbnailPath)
-                    if (thumbnailFile.exists()) {
-                        thumbnailFile.delete()
-                    }
-                }
-                
-                // Remove from database
-                mediaDao.deleteMediaById(mediaEntity.id)
-            }
+            // Remove from database
+            largeFiles.forEach { mediaDao.deleteMediaById(it.id) }
+            val (deletedFiles, freedSpace) = releaseFiles(largeFiles)
             
             val result = CleanupResult(
                 deletedFiles = deletedFiles,
@@ -341,82 +334,271 @@ class MediaStorageService @Inject constructor(
         }
     }
     
-    private fun copyFileFromUri(sourceUri: Uri, destFile: File): File {
-        context.contentResolver.openInputStream(sourceUri)?.use { inputStream ->
-            FileOutputStream(destFile).use { outputStream ->
-                inputStream.copyTo(outputStream)
-            }
+    /**
+     * Add the row for [ingested], committing its staged blob if there is one.
+     * Null if an existing blob it expected has been released meanwhile.
+     */
+    private suspend fun link(
+        ingested: IngestedMedia,
+        mediaId: String,
+        messageId: String,
+        fileName: String,
+        mimeType: String,
+        keys: BlobKeys
+    ): Media? {
+        val addReference: suspend (File, File?) -> Media = { blob, thumbnail ->
+            val media = Media(
+                id = mediaId,
+                messageId = messageId,
+                fileName = fileName,
+                filePath = blob.absolutePath,
+                mimeType = mimeType,
+                fileSize = blob.length(),
+                width = ingested.metadata.width,
+                height = ingested.metadata.height,
+                duration = ingested.metadata.duration,
+                thumbnailPath = thumbnail?.absolutePath,
+                isEncrypted = true,
+                encryptionKey = keys.wrapKey(messageId, keys.blobKey(ingested.content.blobId))
+            )
+            mediaDao.insertMedia(media.toEntity())
+            media
+        }
+        val staged = ingested.staged
+        return if (staged != null) {
+            blobStore.linkStaged(ingested.content.blobId, staged, ingested.stagedThumbnail, addReference)
+        } else {
+            blobStore.linkExisting(ingested.content.blobId, addReference)
         }
-        return destFile
     }
     
-    private fun extractMediaMetadata(file: File, mimeType: String): MediaMetadata {
-        return when {
-            mimeType.startsWith("image/") -> extractImageMetadata(file)
-            mimeType.startsWith("video/") -> extractVideoMetadata(file)
-            mimeType.startsWith("audio/") -> extractAudioMetadata(file)
-            else -> MediaMetadata()
+    private suspend fun ingestImage(
+        sourceUri: Uri,
+        compress: Boolean,
+        keys: BlobKeys,
+        reuseExisting: Boolean
+    ): IngestedMedia {
+        if (!compress) {
+            return ingestOriginalImage(sourceUri, keys, reuseExisting)
+        }
+        
+        val bitmap = mediaCompressor.decodeScaledImage(sourceUri)
+            ?: throw IOException("Unable to decode image $sourceUri")
+        try {
+            // Compressed photos are small enough to hash before deciding whether to encrypt
+            val encoded = ByteArrayOutputStream()
+            if (!mediaCompressor.writeCompressedImage(bitmap, encoded)) {
+                throw IOException("Unable to encode image $sourceUri")
+            }
+            val bytes = encoded.toByteArray()
+            val content = ContentDigest(keys.contentId(bytes), bytes.size.toLong())
+            val metadata = MediaMetadata(width = bitmap.width, height = bitmap.height)
+            if (reuseExisting && blobStore.contains(content.blobId)) {
+                return IngestedMedia(content, metadata)
+            }
+            
+            val staged = stageEncrypted(content.blobId, keys) { it.write(bytes) }
+            val stagedThumbnail = stageThumbnail(bitmap)
+            return IngestedMedia(content, metadata, staged, stagedThumbnail)
+        } finally {
+            bitmap.recycle()
         }
     }
     
-    private fun extractImageMetadata(file: File): MediaMetadata {
-        return try {
-            val options = BitmapFactory.Options().apply {
-                inJustDecodeBounds = true
+    /**
+     * Store the original bytes and decode the thumbnail from the same read
+     */
+    private suspend fun ingestOriginalImage(sourceUri: Uri, keys: BlobKeys, reuseExisting: Boolean): IngestedMedia {
+        // Bounds only need the header
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        openSource(sourceUri).use { BitmapFactory.decodeStream(it, null, bounds) }
+        val metadata = if (bounds.outWidth > 0) MediaMetadata(width = bounds.outWidth, height = bounds.outHeight) else MediaMetadata()
+        
+        val content = openSource(sourceUri).use { keys.contentId(it) }
+        if (reuseExisting && blobStore.contains(content.blobId)) {
+            return IngestedMedia(content, metadata)
+        }
+        
+        var thumbnailBitmap: Bitmap? = null
+        val staged = stageEncrypted(content.blobId, keys) { output ->
+            openSource(sourceUri).use { input ->
+                val tee = TeeInputStream(input, output)
+                val options = BitmapFactory.Options().apply {
+                    inSampleSize = thumbnailGenerator.calculateSampleSize(bounds.outWidth, bounds.outHeight)
+                }
+                thumbnailBitmap = BitmapFactory.decodeStream(tee, null, options)
+                tee.drain()
             }
-            BitmapFactory.decodeFile(file.absolutePath, options)
-            MediaMetadata(width = options.outWidth, height = options.outHeight)
-        } catch (e: Exception) {
-            MediaMetadata()
         }
+        
+        val stagedThumbnail = thumbnailBitmap?.let { bitmap ->
+            try {
+                stageThumbnail(bitmap)
+            } finally {
+                bitmap.recycle()
+            }
+        }
+        return IngestedMedia(content, metadata, staged, stagedThumbnail)
     }
     
-    private fun extractVideoMetadata(file: File): MediaMetadata {
-        return try {
-            val retriever = MediaMetadataRetriever()
-            retriever.setDataSource(file.absolutePath)
+    private suspend fun ingestVideo(
+        sourceUri: Uri,
+        mimeType: String,
+        compress: Boolean,
+        keys: BlobKeys,
+        reuseExisting: Boolean
+    ): IngestedMedia {
+        // One retriever reads the container header and, for new content, the thumbnail frame
+        val retriever = MediaMetadataRetriever()
+        try {
+            val metadata = try {
+                retriever.setDataSource(context, sourceUri)
+                val width = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)?.toIntOrNull()
+                val height = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)?.toIntOrNull()
+                val duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)?.toLongOrNull()
+                val (outputWidth, outputHeight) = if (compress && width != null && height != null) {
+                    mediaCompressor.calculateVideoSize(width, height)
+                } else {
+                    Pair(width, height)
+                }
+                MediaMetadata(width = outputWidth, height = outputHeight, duration = duration)
+            } catch (e: Exception) {
+                // Metadata is best effort
+                MediaMetadata()
+            }
             
-            val width = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)?.toIntOrNull()
-            val height = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)?.toIntOrNull()
-            val duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)?.toLongOrNull()
+            val (content, staged) = if (compress) {
+                // The muxer needs a seekable file, so the compressed copy is the one temp file
+                val compressedFile = mediaCompressor.compressMedia(sourceUri, mimeType, tempDirectory)
+                val tempBytes = compressedFile.length()
+                reserveTemp(tempBytes)
+                try {
+                    val digest = keys.contentId(compressedFile)
+                    digest to stageIfNew(digest, keys, reuseExisting) { output ->
+                        FileInputStream(compressedFile).use { it.copyTo(output, COPY_BUFFER_SIZE) }
+                    }
+                } finally {
+                    compressedFile.delete()
+                    releaseTemp(tempBytes)
+                }
+            } else {
+                val digest = openSource(sourceUri).use { keys.contentId(it) }
+                digest to stageIfNew(digest, keys, reuseExisting) { output ->
+                    openSource(sourceUri).use { it.copyTo(output, COPY_BUFFER_SIZE) }
+                }
+            }
+            if (staged == null) {
+                return IngestedMedia(content, metadata)
+            }
             
+            // The frame is only decoded for content that has no shared thumbnail yet
+            val frame = try {
+                retriever.getFrameAtTime(VIDEO_THUMBNAIL_TIME_US, MediaMetadataRetriever.OPTION_CLOSEST_SYNC)
+            } catch (e: Exception) {
+                null
+            }
+            val stagedThumbnail = frame?.let { bitmap ->
+                try {
+                    stageThumbnail(bitmap)
+                } finally {
+                    bitmap.recycle()
+                }
+            }
+            return IngestedMedia(content, metadata, staged, stagedThumbnail)
+        } finally {
             retriever.release()
-            MediaMetadata(width = width, height = height, duration = duration)
-        } catch (e: Exception) {
-            MediaMetadata()
         }
     }
     
-    private fun extractAudioMetadata(file: File): MediaMetadata {
-        return try {
-            val retriever = MediaMetadataRetriever()
-            retriever.setDataSource(file.absolutePath)
-            
-            val duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)?.toLongOrNull()
-            
-            retriever.release()
-            MediaMetadata(duration = duration)
+    private fun ingestFile(sourceUri: Uri, mimeType: String, keys: BlobKeys, reuseExisting: Boolean): IngestedMedia {
+        val metadata = if (mimeType.startsWith("audio/")) extractAudioMetadata(sourceUri) else MediaMetadata()
+        val content = openSource(sourceUri).use { keys.contentId(it) }
+        val staged = stageIfNew(content, keys, reuseExisting) { output ->
+            openSource(sourceUri).use { it.copyTo(output, COPY_BUFFER_SIZE) }
+        }
+        return IngestedMedia(content, metadata, staged)
+    }
+    
+    /**
+     * Encrypt the content into staging unless its blob can be reused
+     */
+    private inline fun stageIfNew(
+        content: ContentDigest,
+        keys: BlobKeys,
+        reuseExisting: Boolean,
+        write: (OutputStream) -> Unit
+    ): File? {
+        if (reuseExisting && blobStore.contains(content.blobId)) return null
+        return stageEncrypted(content.blobId, keys, write)
+    }
+    
+    /**
+     * Run [write] against a sink that encrypts into a staging file under the
+     * blob's convergent key
+     */
+    private inline fun stageEncrypted(blobId: String, keys: BlobKeys, write: (OutputStream) -> Unit): File {
+        val staged = blobStore.newStagingFile()
+        try {
+            fileEncryption.openEncryptedOutput(staged, keys.blobKey(blobId)).stream.use(write)
         } catch (e: Exception) {
-            MediaMetadata()
+            staged.delete()
+            throw e
+        }
+        return staged
+    }
+    
+    private suspend fun stageThumbnail(bitmap: Bitmap): File? {
+        val staged = blobStore.newStagingFile()
+        return if (thumbnailGenerator.generateThumbnailFromBitmap(bitmap, staged)) {
+            staged
+        } else {
+            staged.delete()
+            null
+        }
+    }
+    
+    /**
+     * Release the files of deleted rows, once per shared path.
+     * Returns the files deleted and bytes freed.
+     */
+    private suspend fun releaseFiles(deleted: List<MediaEntity>): Pair<Int, Long> {
+        var deletedFiles = 0
+        var freedSpace = 0L
+        deleted.distinctBy { it.filePath }.forEach { mediaEntity ->
+            val freed = blobStore.release(mediaEntity.filePath, mediaEntity.thumbnailPath)
+            if (freed > 0) {
+                deletedFiles++
+                freedSpace += freed
+            }
         }
+        return Pair(deletedFiles, freedSpace)
     }
     
-    private suspend fun generateThumbnail(file: File, mediaId: String, mimeType: String): String? {
+    private fun openSource(sourceUri: Uri): InputStream {
+        return context.contentResolver.openInputStream(sourceUri)
+            ?: throw IOException("Unable to open $sourceUri")
+    }
+    
+    private fun extractAudioMetadata(sourceUri: Uri): MediaMetadata {
+        val retriever = MediaMetadataRetriever()
         return try {
-            val thumbnailFile = File(thumbnailDirectory, "${mediaId}_thumb.jpg")
-            val success = thumbnailGenerator.generateThumbnail(file, thumbnailFile, mimeType)
-            if (success) thumbnailFile.absolutePath else null
+            retriever.setDataSource(context, sourceUri)
+            val duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)?.toLongOrNull()
+            MediaMetadata(duration = duration)
         } catch (e: Exception) {
-            null
+            MediaMetadata()
+        } finally {
+            retriever.release()
         }
     }
     
-    private fun shouldCompress(mimeType: String): Boolean {
-        return mimeType.startsWith("image/") || mimeType.startsWith("video/")
+    private fun reserveTemp(bytes: Long) {
+        val inUse = tempBytesInUse.addAndGet(bytes)
+        tempPeakGauge.set(peakTempBytes.accumulateAndGet(inUse) { peak, current -> maxOf(peak, current) })
     }
     
-    private fun isImageOrVideo(mimeType: String): Boolean {
-        return mimeType.startsWith("image/") || mimeType.startsWith("video/")
+    private fun releaseTemp(bytes: Long) {
+        tempBytesInUse.addAndGet(-bytes)
     }
     
     private fun getAvailableStorageSpace(): Long {
@@ -437,6 +619,45 @@ data class MediaMetadata(
     val duration: Long? = null
 )
 
+/**
+ * Stored media opened by [MediaStorageService.openMedia], with its plaintext stream
+ */
+class OpenedMedia(
+    val media: Media,
+    val stream: InputStream
+) : Closeable {
+    override fun close() = stream.close()
+}
+
+/**
+ * One item of a [MediaStorageService.storeMediaBatch] call
+ */
+data class MediaIngestRequest(
+    val sourceUri: Uri,
+    val fileName: String,
+    val mimeType: String,
+    val compress: Boolean = true
+)
+
+/**
+ * Ingested content, with its blob and thumbnail staged when the content is new
+ */
+internal class IngestedMedia(
+    val content: ContentDigest,
+    val metadata: MediaMetadata,
+    val staged: File? = null,
+    val stagedThumbnail: File? = null
+)
+
+/**
+ * Ingest timings and temp-disk high-water mark since process start
+ */
+data class MediaIngestStats(
+    val photos: LatencySummary,
+    val videos: LatencySummary,
+    val peakTempBytes: Long
+)
+
 /**
  * Storage statistics data class
  */
@@ -1,18 +1,25 @@
 package com.chain.messaging.data.local.storage
 
+import com.chain.messaging.core.performance.memory.CachePriority
+import com.chain.messaging.core.performance.memory.ManagedCache
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import java.util.Collections
 import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
- * In-memory cache for messages to improve performance
+ * In-memory cache for messages to improve performance.
+ * Bounded by message count and by a byte budget from [MemoryBudgetManager].
  */
 @Singleton
-class MessageCache @Inject constructor() {
+class MessageCache @Inject constructor(
+    memoryBudgetManager: MemoryBudgetManager
+) : ManagedCache {
     
     private val messageCache = ConcurrentHashMap<String, Message>()
     private val chatMessagesCache = ConcurrentHashMap<String, MutableList<String>>()
@@ -22,29 +29,45 @@ class MessageCache @Inject constructor() {
     private val maxCacheSize = 1000
     private val maxChatCacheSize = 100
     
+    // Byte accounting, guarded by the monitor of this cache. Chat lists are
+    // synchronized because memory trims evict without the coroutine mutex.
+    @Volatile private var currentBytes = 0L
+    @Volatile private var maxBytes = Long.MAX_VALUE
+    
+    override val cacheName: String = "messages"
+    override val priority: CachePriority = CachePriority.HIGH
+    override val budgetShare: Float = BUDGET_SHARE
+    
+    init {
+        memoryBudgetManager.register(this)
+    }
+    
     /**
      * Put a message in the cache
      */
     suspend fun putMessage(message: Message) {
         cacheMutex.withLock {
             // Add to message cache
-            messageCache[message.id] = message
+            store(message)
             
             // Add to chat messages cache
-            val chatMessages = chatMessagesCache.getOrPut(message.chatId) { mutableListOf() }
+            val chatMessages = chatMessagesCache.getOrPut(message.chatId) { Collections.synchronizedList(mutableListOf()) }
             if (!chatMessages.contains(message.id)) {
                 chatMessages.add(0, message.id) // Add to beginning for chronological order
                 
                 // Limit chat cache size
                 if (chatMessages.size > maxChatCacheSize) {
                     val removedMessageId = chatMessages.removeAt(chatMessages.size - 1)
-                    messageCache.remove(removedMessageId)
+                    discard(removedMessageId)
                 }
             }
             
             // Limit overall cache size
             if (messageCache.size > maxCacheSize) {
-                evictOldestMessages()
+                evictOldestMessages(maxCacheSize / 10, Long.MAX_VALUE)
+            }
+            if (currentBytes > maxBytes) {
+                evictOldestMessages(Int.MAX_VALUE, maxBytes)
             }
         }
     }
@@ -62,15 +85,16 @@ class MessageCache @Inject constructor() {
     fun getMessages(chatId: String, limit: Int, offset: Int): List<Message> {
         val chatMessages = chatMessagesCache[chatId] ?: return emptyList()
         
-        val startIndex = offset
-        val endIndex = minOf(startIndex + limit, chatMessages.size)
-        
-        if (startIndex >= chatMessages.size) {
-            return emptyList()
+        val page = synchronized(chatMessages) {
+            val startIndex = offset
+            val endIndex = minOf(startIndex + limit, chatMessages.size)
+            
+            if (startIndex >= chatMessages.size) {
+                return emptyList()
+            }
+            chatMessages.subList(startIndex, endIndex).toList()
         }
-        
-        return chatMessages.subList(startIndex, endIndex)
-            .mapNotNull { messageId -> messageCache[messageId] }
+        return page.mapNotNull { messageId -> messageCache[messageId] }
     }
     
     /**
@@ -80,7 +104,7 @@ class MessageCache @Inject constructor() {
         cacheMutex.withLock {
             val message = messageCache[messageId]
             if (message != null) {
-                messageCache[messageId] = message.copy(status = status)
+                store(message.copy(status = status))
             }
         }
     }
@@ -90,7 +114,7 @@ class MessageCache @Inject constructor() {
      */
     suspend fun removeMessage(messageId: String) {
         cacheMutex.withLock {
-            val message = messageCache.remove(messageId)
+            val message = discard(messageId)
             if (message != null) {
                 val chatMessages = chatMessagesCache[message.chatId]
                 chatMessages?.remove(messageId)
@@ -110,7 +134,7 @@ class MessageCache @Inject constructor() {
         cacheMutex.withLock {
             val chatMessages = chatMessagesCache.remove(chatId)
             chatMessages?.forEach { messageId ->
-                messageCache.remove(messageId)
+                discard(messageId)
             }
         }
     }
@@ -120,7 +144,10 @@ class MessageCache @Inject constructor() {
      */
     suspend fun clearCache() {
         cacheMutex.withLock {
-            messageCache.clear()
+            synchronized(this) {
+                messageCache.clear()
+                currentBytes = 0L
+            }
             chatMessagesCache.clear()
         }
     }
@@ -133,7 +160,9 @@ class MessageCache @Inject constructor() {
             totalMessages = messageCache.size,
             totalChats = chatMessagesCache.size,
             maxCacheSize = maxCacheSize,
-            maxChatCacheSize = maxChatCacheSize
+            maxChatCacheSize = maxChatCacheSize,
+            sizeBytes = currentBytes,
+            maxBytes = maxBytes
         )
     }
     
@@ -159,20 +188,39 @@ class MessageCache @Inject constructor() {
         return chatMessagesCache[chatId]?.size ?: 0
     }
     
+    override fun sizeBytes(): Long = currentBytes
+    
+    override fun setMaxBytes(maxBytes: Long) {
+        this.maxBytes = maxBytes.coerceAtLeast(0L)
+        if (currentBytes > this.maxBytes) {
+            trimToBytes(this.maxBytes)
+        }
+    }
+    
+    override fun trimToBytes(maxBytes: Long): Long {
+        // Called from memory callbacks outside coroutines, so the mutex cannot be awaited
+        val before = currentBytes
+        evictOldestMessages(Int.MAX_VALUE, maxBytes)
+        return (before - currentBytes).coerceAtLeast(0L)
+    }
+    
     /**
-     * Evict oldest messages when cache is full
+     * Evict oldest messages, at most [maxCount] of them, stopping once the cache
+     * holds no more than [targetBytes]
      */
-    private fun evictOldestMessages() {
-        // Simple LRU eviction - remove 10% of cache
-        val evictionCount = maxCacheSize / 10
-        val messagesToEvict = messageCache.entries
-            .sortedBy { it.value.timestamp }
-            .take(evictionCount)
+    @Synchronized
+    private fun evictOldestMessages(maxCount: Int, targetBytes: Long) {
+        val messagesToEvict = messageCache.values
+            .sortedBy { it.timestamp }
+            .iterator()
         
-        messagesToEvict.forEach { (messageId, message) ->
-            messageCache.remove(messageId)
+        var evicted = 0
+        while (evicted < maxCount && messagesToEvict.hasNext() && (targetBytes == Long.MAX_VALUE || currentBytes > targetBytes)) {
+            val message = messagesToEvict.next()
+            discard(message.id) ?: continue
+            evicted++
             val chatMessages = chatMessagesCache[message.chatId]
-            chatMessages?.remove(messageId)
+            chatMessages?.remove(message.id)
             
             // Clean up empty chat caches
             if (chatMessages?.isEmpty() == true) {
@@ -181,15 +229,29 @@ class MessageCache @Inject constructor() {
         }
     }
     
+    @Synchronized
+    private fun store(message: Message) {
+        val previous = messageCache.put(message.id, message)
+        if (previous != null) currentBytes -= estimateBytes(previous)
+        currentBytes += estimateBytes(message)
+    }
+    
+    @Synchronized
+    private fun discard(messageId: String): Message? {
+        val removed = messageCache.remove(messageId) ?: return null
+        currentBytes -= estimateBytes(removed)
+        return removed
+    }
+    
     /**
      * Preload messages for a chat
      */
     suspend fun preloadChatMessages(chatId: String, messages: List<Message>) {
         cacheMutex.withLock {
-            val chatMessages = chatMessagesCache.getOrPut(chatId) { mutableListOf() }
+            val chatMessages = chatMessagesCache.getOrPut(chatId) { Collections.synchronizedList(mutableListOf()) }
             
             messages.forEach { message ->
-                messageCache[message.id] = message
+                store(message)
                 if (!chatMessages.contains(message.id)) {
                     chatMessages.add(message.id)
                 }
@@ -205,11 +267,30 @@ class MessageCache @Inject constructor() {
                 val excess = chatMessages.size - maxChatCacheSize
                 repeat(excess) {
                     val removedMessageId = chatMessages.removeAt(chatMessages.size - 1)
-                    messageCache.remove(removedMessageId)
+                    discard(removedMessageId)
                 }
             }
+            if (currentBytes > maxBytes) {
+                evictOldestMessages(Int.MAX_VALUE, maxBytes)
+            }
         }
     }
+    
+    companion object {
+        const val BUDGET_SHARE = 0.25f
+        
+        private const val MESSAGE_OVERHEAD_BYTES = 160L
+        private const val REACTION_BYTES = 96L
+        
+        /**
+         * Rough retained size: strings are UTF-16 plus the object headers of the model
+         */
+        internal fun estimateBytes(message: Message): Long =
+            MESSAGE_OVERHEAD_BYTES +
+                2L * (message.id.length + message.chatId.length + message.senderId.length +
+                    message.content.length + (message.replyTo?.length ?: 0)) +
+                message.reactions.size * REACTION_BYTES
+    }
 }
 
 /**
@@ -219,5 +300,7 @@ data class CacheStats(
     val totalMessages: Int,
     val totalChats: Int,
     val maxCacheSize: Int,
-    val maxChatCacheSize: Int
+    val maxChatCacheSize: Int,
+    val sizeBytes: Long = 0L,
+    val maxBytes: Long = 0L
 )
\ No newline at end of file
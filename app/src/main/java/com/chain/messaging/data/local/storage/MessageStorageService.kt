@@ -12,6 +12,10 @@ import com.chain.messaging.data.local.entity.toEntity
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.core.security.MessageEncryption
+import com.chain.messaging.core.performance.memory.AllocationSampler
+import com.chain.messaging.core.performance.memory.MemoryDiagnostics
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.combine
@@ -28,13 +32,17 @@ class MessageStorageService @Inject constructor(
     private val reactionDao: ReactionDao,
     private val mediaDao: MediaDao,
     private val messageEncryption: MessageEncryption,
-    private val messageCache: MessageCache
+    private val messageCache: MessageCache,
+    metricsRegistry: MetricsRegistry
 ) {
+
+    private val writeLatency = metricsRegistry.histogram(HotPathMetrics.DB_WRITE)
     
     /**
      * Store a message with encryption at rest
      */
     suspend fun storeMessage(message: Message): Result<Unit> {
+        val start = System.nanoTime()
         return try {
             // Encrypt message content before storing
             val encryptedContent = if (message.isEncrypted) {
@@ -44,6 +52,7 @@ class MessageStorageService @Inject constructor(
             }
             
             val messageEntity = message.copy(content = encryptedContent).toEntity()
+            MemoryDiagnostics.allocations.record(AllocationSampler.STORAGE, encryptedContent.length * 2L)
             messageDao.insertMessage(messageEntity)
             
             // Store reactions if any
@@ -54,6 +63,7 @@ class MessageStorageService @Inject constructor(
             
             // Update cache
             messageCache.putMessage(message)
+            writeLatency.recordSince(start)
             
             Result.success(Unit)
         } catch (e: Exception) {
@@ -65,6 +75,7 @@ class MessageStorageService @Inject constructor(
      * Store multiple messages in batch
      */
     suspend fun storeMessages(messages: List<Message>): Result<Unit> {
+        val start = System.nanoTime()
         return try {
             val messageEntities = messages.map { message ->
                 val encryptedContent = if (message.isEncrypted) {
@@ -89,6 +100,7 @@ class MessageStorageService @Inject constructor(
             
             // Update cache
             messages.forEach { messageCache.putMessage(it) }
+            writeLatency.recordSince(start)
             
             Result.success(Unit)
         } catch (e: Exception) {
@@ -171,7 +171,7 @@ class ThumbnailGenerator @Inject constructor() {
     /**
      * Calculate sample size for efficient bitmap loading
      */
-    private fun calculateSampleSize(width: Int, height: Int): Int {
+    internal fun calculateSampleSize(width: Int, height: Int): Int {
         var sampleSize = 1
         
         if (height > THUMBNAIL_SIZE || width > THUMBNAIL_SIZE) {
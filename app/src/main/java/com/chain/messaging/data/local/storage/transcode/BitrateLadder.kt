@@ -0,0 +1,34 @@
+package com.chain.messaging.data.local.storage.transcode
+
+/**
+ * Target H.264 bitrates by output resolution, tuned for chat video at 30 fps.
+ * Other frame rates scale the rung, and the source bitrate is never exceeded,
+ * so a transcode never makes a video larger than it was.
+ */
+object BitrateLadder {
+
+    private class Rung(val maxPixels: Int, val bitrate: Int)
+
+    private val RUNGS = listOf(
+        Rung(maxPixels = 426 * 240, bitrate = 400_000),
+        Rung(maxPixels = 640 * 360, bitrate = 800_000),
+        Rung(maxPixels = 854 * 480, bitrate = 1_200_000),
+        Rung(maxPixels = 1280 * 720, bitrate = 2_500_000),
+        Rung(maxPixels = 1920 * 1080, bitrate = 4_500_000)
+    )
+
+    private const val REFERENCE_FRAME_RATE = 30.0
+    private const val MIN_FRAME_RATE_SCALE = 0.5
+    private const val MAX_FRAME_RATE_SCALE = 1.5
+    const val MIN_BITRATE = 250_000
+
+    fun bitrateFor(width: Int, height: Int, frameRate: Int = REFERENCE_FRAME_RATE.toInt(), sourceBitrate: Int? = null): Int {
+        val pixels = width.toLong() * height
+        val rung = RUNGS.firstOrNull { pixels <= it.maxPixels } ?: RUNGS.last()
+        val frameRateScale = (frameRate / REFERENCE_FRAME_RATE).coerceIn(MIN_FRAME_RATE_SCALE, MAX_FRAME_RATE_SCALE)
+        val target = (rung.bitrate * frameRateScale).toInt()
+        val floored = target.coerceAtLeast(MIN_BITRATE)
+        // The source cap wins over the floor: a low-bitrate source is never inflated
+        return if (sourceBitrate != null && sourceBitrate > 0) minOf(floored, sourceBitrate) else floored
+    }
+}
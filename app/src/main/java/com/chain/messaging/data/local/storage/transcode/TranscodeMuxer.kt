@@ -0,0 +1,91 @@
+package com.chain.messaging.data.local.storage.transcode
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import java.nio.ByteBuffer
+
+/**
+ * Output track of a transcode
+ */
+enum class SampleTrack { VIDEO, AUDIO }
+
+/**
+ * [MediaMuxer] that starts once every expected track has its format.
+ *
+ * Encoders report their output format just before their first sample, so one
+ * track can produce samples while another is still unknown. Those early
+ * samples are copied aside and written when the muxer starts.
+ */
+internal class TranscodeMuxer(
+    private val muxer: MediaMuxer,
+    private val onStarted: () -> Unit = {}
+) {
+
+    private class PendingSample(
+        val track: SampleTrack,
+        val data: ByteBuffer,
+        val info: MediaCodec.BufferInfo
+    )
+
+    private val expected = mutableSetOf<SampleTrack>()
+    private val trackIndices = mutableMapOf<SampleTrack, Int>()
+    private val pending = ArrayList<PendingSample>()
+
+    var started = false
+        private set
+
+    fun expect(track: SampleTrack) {
+        check(!started) { "Muxer already started" }
+        expected.add(track)
+    }
+
+    fun setOrientationHint(degrees: Int) = muxer.setOrientationHint(degrees)
+
+    fun addTrack(track: SampleTrack, format: MediaFormat) {
+        if (track in trackIndices) return
+        trackIndices[track] = muxer.addTrack(format)
+        if (!trackIndices.keys.containsAll(expected)) return
+
+        muxer.start()
+        started = true
+        pending.forEach { muxer.writeSampleData(trackIndices.getValue(it.track), it.data, it.info) }
+        pending.clear()
+        onStarted()
+    }
+
+    /**
+     * Write one encoded sample. [buffer] is only read during the call.
+     */
+    fun writeSample(track: SampleTrack, buffer: ByteBuffer, info: MediaCodec.BufferInfo) {
+        if (started) {
+            muxer.writeSampleData(trackIndices.getValue(track), buffer, info)
+            return
+        }
+        val source = buffer.duplicate().apply {
+            position(info.offset)
+            limit(info.offset + info.size)
+        }
+        val copy = ByteBuffer.allocate(info.size).put(source).apply { flip() }
+        val copyInfo = MediaCodec.BufferInfo().apply {
+            offset = 0
+            size = info.size
+            presentationTimeUs = info.presentationTimeUs
+            flags = info.flags
+        }
+        pending.add(PendingSample(track, copy, copyInfo))
+    }
+
+    val pendingSamples: Int
+        get() = pending.size
+
+    fun finish() = muxer.stop()
+
+    fun release() {
+        try {
+            muxer.release()
+        } catch (e: Exception) {
+            // Already released
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.chain.messaging.data.local.storage.transcode
+
+import android.graphics.SurfaceTexture
+import android.opengl.EGL14
+import android.opengl.EGLConfig
+import android.opengl.EGLContext
+import android.opengl.EGLDisplay
+import android.opengl.EGLExt
+import android.opengl.EGLSurface
+import android.opengl.GLES11Ext
+import android.opengl.GLES20
+import android.os.Handler
+import android.view.Surface
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.FloatBuffer
+
+/**
+ * EGL window surface over an encoder's input [Surface]. Frames drawn while it
+ * is current go straight to the encoder when [swapBuffers] is called.
+ */
+internal class InputSurface(private val surface: Surface) {
+
+    private var display: EGLDisplay = EGL14.EGL_NO_DISPLAY
+    private var context: EGLContext = EGL14.EGL_NO_CONTEXT
+    private var eglSurface: EGLSurface = EGL14.EGL_NO_SURFACE
+
+    init {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY)
+        check(display != EGL14.EGL_NO_DISPLAY) { "No EGL display" }
+        val version = IntArray(2)
+        check(EGL14.eglInitialize(display, version, 0, version, 1)) { "eglInitialize failed" }
+
+        val configs = arrayOfNulls<EGLConfig>(1)
+        val numConfigs = IntArray(1)
+        val attributes = intArrayOf(
+            EGL14.EGL_RED_SIZE, 8,
+            EGL14.EGL_GREEN_SIZE, 8,
+            EGL14.EGL_BLUE_SIZE, 8,
+            EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+            EGLExt.EGL_RECORDABLE_ANDROID, 1,
+            EGL14.EGL_NONE
+        )
+        check(EGL14.eglChooseConfig(display, attributes, 0, configs, 0, 1, numConfigs, 0) && numConfigs[0] > 0) {
+            "No recordable EGL config"
+        }
+
+        context = EGL14.eglCreateContext(
+            display,
+            configs[0],
+            EGL14.EGL_NO_CONTEXT,
+            intArrayOf(EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE),
+            0
+        )
+        checkEgl("eglCreateContext")
+        eglSurface = EGL14.eglCreateWindowSurface(display, configs[0], surface, intArrayOf(EGL14.EGL_NONE), 0)
+        checkEgl("eglCreateWindowSurface")
+    }
+
+    fun makeCurrent() {
+        check(EGL14.eglMakeCurrent(display, eglSurface, eglSurface, context)) { "eglMakeCurrent failed" }
+    }
+
+    fun setPresentationTime(nanos: Long) {
+        EGLExt.eglPresentationTimeANDROID(display, eglSurface, nanos)
+    }
+
+    fun swapBuffers(): Boolean = EGL14.eglSwapBuffers(display, eglSurface)
+
+    fun release() {
+        if (display != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT)
+            EGL14.eglDestroySurface(display, eglSurface)
+            EGL14.eglDestroyContext(display, context)
+            EGL14.eglReleaseThread()
+            EGL14.eglTerminate(display)
+        }
+        surface.release()
+        display = EGL14.EGL_NO_DISPLAY
+        context = EGL14.EGL_NO_CONTEXT
+        eglSurface = EGL14.EGL_NO_SURFACE
+    }
+
+    private fun checkEgl(operation: String) {
+        val error = EGL14.eglGetError()
+        check(error == EGL14.EGL_SUCCESS) { "$operation: EGL error 0x${Integer.toHexString(error)}" }
+    }
+}
+
+/**
+ * Decoder output target. Decoded frames land in a [SurfaceTexture] bound to an
+ * external GL texture, and [drawImage] draws the latest one over the whole
+ * current surface, which is where the resize happens. Must be created with
+ * the [InputSurface] context current.
+ */
+internal class OutputSurface(
+    handler: Handler,
+    onFrameAvailable: () -> Unit
+) {
+
+    private val renderer = TextureRenderer()
+    private val surfaceTexture = SurfaceTexture(renderer.textureId)
+    private val transform = FloatArray(16)
+
+    val surface = Surface(surfaceTexture)
+
+    init {
+        surfaceTexture.setOnFrameAvailableListener({ onFrameAvailable() }, handler)
+    }
+
+    /**
+     * Latch the newest decoded frame and draw it into a [width] x [height] viewport
+     */
+    fun drawImage(width: Int, height: Int) {
+        surfaceTexture.updateTexImage()
+        surfaceTexture.getTransformMatrix(transform)
+        renderer.draw(transform, width, height)
+    }
+
+    fun release() {
+        surface.release()
+        surfaceTexture.release()
+        renderer.release()
+    }
+}
+
+/**
+ * Draws an external OES texture as a full-viewport quad
+ */
+private class TextureRenderer {
+
+    private val vertices: FloatBuffer = ByteBuffer.allocateDirect(QUAD.size * FLOAT_BYTES)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer()
+        .put(QUAD)
+        .apply { position(0) }
+
+    private val program = createProgram(VERTEX_SHADER, FRAGMENT_SHADER)
+    private val positionHandle = GLES20.glGetAttribLocation(program, "aPosition")
+    private val textureCoordHandle = GLES20.glGetAttribLocation(program, "aTextureCoord")
+    private val transformHandle = GLES20.glGetUniformLocation(program, "uSTMatrix")
+
+    val textureId: Int = IntArray(1).also { GLES20.glGenTextures(1, it, 0) }[0]
+
+    init {
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId)
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR)
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR)
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE)
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE)
+    }
+
+    fun draw(transform: FloatArray, width: Int, height: Int) {
+        GLES20.glViewport(0, 0, width, height)
+        GLES20.glUseProgram(program)
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0)
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId)
+
+        vertices.position(0)
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, vertices)
+        GLES20.glEnableVertexAttribArray(positionHandle)
+        vertices.position(2)
+        GLES20.glVertexAttribPointer(textureCoordHandle, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, vertices)
+        GLES20.glEnableVertexAttribArray(textureCoordHandle)
+
+        GLES20.glUniformMatrix4fv(transformHandle, 1, false, transform, 0)
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4)
+        GLES20.glFinish()
+    }
+
+    fun release() {
+        GLES20.glDeleteProgram(program)
+        GLES20.glDeleteTextures(1, intArrayOf(textureId), 0)
+    }
+
+    private fun createProgram(vertexSource: String, fragmentSource: String): Int {
+        val program = GLES20.glCreateProgram()
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, vertexSource))
+        GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource))
+        GLES20.glLinkProgram(program)
+        val status = IntArray(1)
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0)
+        check(status[0] == GLES20.GL_TRUE) { "Program link failed: ${GLES20.glGetProgramInfoLog(program)}" }
+        return program
+    }
+
+    private fun compileShader(type: Int, source: String): Int {
+        val shader = GLES20.glCreateShader(type)
+        GLES20.glShaderSource(shader, source)
+        GLES20.glCompileShader(shader)
+        val status = IntArray(1)
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0)
+        check(status[0] == GLES20.GL_TRUE) { "Shader compile failed: ${GLES20.glGetShaderInfoLog(shader)}" }
+        return shader
+    }
+
+    private companion object {
+        const val FLOAT_BYTES = 4
+        const val STRIDE_BYTES = 4 * FLOAT_BYTES
+
+        // x, y, u, v as a triangle strip
+        val QUAD = floatArrayOf(
+            -1f, -1f, 0f, 0f,
+            1f, -1f, 1f, 0f,
+            -1f, 1f, 0f, 1f,
+            1f, 1f, 1f, 1f
+        )
+
+        const val VERTEX_SHADER = """
+            uniform mat4 uSTMatrix;
+            attribute vec4 aPosition;
+            attribute vec4 aTextureCoord;
+            varying vec2 vTextureCoord;
+            void main() {
+                gl_Position = aPosition;
+                vTextureCoord = (uSTMatrix * aTextureCoord).xy;
+            }
+        """
+
+        const val FRAGMENT_SHADER = """
+            #extension GL_OES_EGL_image_external : require
+            precision mediump float;
+            varying vec2 vTextureCoord;
+            uniform samplerExternalOES sTexture;
+            void main() {
+                gl_FragColor = texture2D(sTexture, vTextureCoord);
+            }
+        """
+    }
+}
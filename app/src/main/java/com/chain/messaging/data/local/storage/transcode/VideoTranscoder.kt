@@ -0,0 +1,542 @@
+package com.chain.messaging.data.local.storage.transcode
+
+import android.content.Context
+import android.media.MediaCodec
+import android.media.MediaCodecInfo
+import android.media.MediaCodecList
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import android.net.Uri
+import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import kotlin.coroutines.cancellation.CancellationException
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Re-encodes one video to H.264 at a smaller size without copying frames
+ * through the CPU.
+ *
+ * The decoder renders into a SurfaceTexture, and each frame is drawn through
+ * GL onto the encoder's input surface at the output size. All four codecs run
+ * asynchronously with their callbacks on one handler thread, so the state
+ * below is confined to that thread. Audio is copied sample by sample when the
+ * MP4 muxer accepts its codec and re-encoded to AAC otherwise. The source is
+ * read straight from its URI; nothing but the output file is written.
+ *
+ * Single use: create one transcoder per [transcode] call.
+ */
+class VideoTranscoder(
+    private val context: Context,
+    private val sourceUri: Uri,
+    private val outputFile: File,
+    private val targetSize: (width: Int, height: Int) -> Pair<Int, Int>,
+    private val onProgress: (Float) -> Unit = {}
+) {
+
+    /**
+     * A codec output buffer waiting for its consumer
+     */
+    private class PendingBuffer(
+        val index: Int,
+        var offset: Int,
+        var size: Int,
+        var presentationTimeUs: Long,
+        val flags: Int
+    ) {
+        val isEndOfStream: Boolean
+            get() = flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0
+    }
+
+    private val thread = HandlerThread("VideoTranscoder")
+    private lateinit var handler: Handler
+    private var continuation: CancellableContinuation<TranscodeResult>? = null
+    private var finished = false
+
+    private var videoExtractor: MediaExtractor? = null
+    private var audioExtractor: MediaExtractor? = null
+    private var videoDecoder: MediaCodec? = null
+    private var videoEncoder: MediaCodec? = null
+    private var audioDecoder: MediaCodec? = null
+    private var audioEncoder: MediaCodec? = null
+    private var inputSurface: InputSurface? = null
+    private var outputSurface: OutputSurface? = null
+    private var muxer: TranscodeMuxer? = null
+
+    private var outputWidth = 0
+    private var outputHeight = 0
+    private var durationUs = 0L
+    private var startNanos = 0L
+    private var lastProgressPercent = -1
+
+    // Decoded frames are drawn one at a time: the SurfaceTexture only holds the latest
+    private val pendingFrames = ArrayDeque<PendingBuffer>()
+    private var frameInFlightUs = NO_FRAME
+    private var videoInputEnded = false
+    private var encoderInputEnded = false
+    private var videoDone = false
+    private var videoWrittenUs = 0L
+
+    // Audio copied as-is, or decoded PCM waiting for encoder input buffers
+    private var audioPassthrough = false
+    private var passthroughBuffer: ByteBuffer? = null
+    private val passthroughInfo = MediaCodec.BufferInfo()
+    private val pendingPcm = ArrayDeque<PendingBuffer>()
+    private val freeAudioInputs = ArrayDeque<Int>()
+    private var pcmBytesPerSecond = 0L
+    private var audioDone = true
+
+    /**
+     * Run the transcode. Cancelling the calling coroutine stops the codecs and
+     * deletes the partial output.
+     */
+    suspend fun transcode(): TranscodeResult {
+        thread.start()
+        handler = Handler(thread.looper)
+        return try {
+            suspendCancellableCoroutine { cont ->
+                cont.invokeOnCancellation {
+                    handler.post { fail(CancellationException("Transcode cancelled")) }
+                }
+                val posted = handler.post {
+                    continuation = cont
+                    try {
+                        setUp()
+                    } catch (e: Exception) {
+                        fail(e)
+                    }
+                }
+                if (!posted) {
+                    cont.resumeWithException(IllegalStateException("Transcoder thread is not running"))
+                }
+            }
+        } finally {
+            // Already-posted cleanup still runs before the looper quits
+            thread.quitSafely()
+        }
+    }
+
+    private fun setUp() {
+        startNanos = System.nanoTime()
+
+        val videoSource = MediaExtractor().also { videoExtractor = it }
+        videoSource.setDataSource(context, sourceUri, null)
+        val videoTrack = findTrack(videoSource, "video/") ?: throw IOException("No video track in $sourceUri")
+        videoSource.selectTrack(videoTrack)
+        val inputFormat = videoSource.getTrackFormat(videoTrack)
+        durationUs = inputFormat.longOrNull(MediaFormat.KEY_DURATION) ?: 0L
+
+        val (width, height) = targetSize(
+            inputFormat.getInteger(MediaFormat.KEY_WIDTH),
+            inputFormat.getInteger(MediaFormat.KEY_HEIGHT)
+        )
+        outputWidth = width
+        outputHeight = height
+        val frameRate = inputFormat.intOrNull(MediaFormat.KEY_FRAME_RATE) ?: DEFAULT_FRAME_RATE
+        val outputFormat = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height).apply {
+            setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface)
+            setInteger(MediaFormat.KEY_BIT_RATE, BitrateLadder.bitrateFor(width, height, frameRate, inputFormat.intOrNull(MediaFormat.KEY_BIT_RATE)))
+            setInteger(MediaFormat.KEY_FRAME_RATE, frameRate)
+            setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS)
+        }
+
+        val muxer = TranscodeMuxer(
+            MediaMuxer(outputFile.absolutePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4),
+            onStarted = ::pumpPassthroughAudio
+        ).also { this.muxer = it }
+        muxer.expect(SampleTrack.VIDEO)
+        // Rotation is left to the player rather than applied in GL
+        inputFormat.intOrNull(MediaFormat.KEY_ROTATION)?.let { rotation ->
+            muxer.setOrientationHint(rotation)
+            inputFormat.setInteger(MediaFormat.KEY_ROTATION, 0)
+        }
+
+        val encoder = createVideoEncoder(outputFormat).also { videoEncoder = it }
+        encoder.setCallback(videoEncoderCallback, handler)
+        encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+        inputSurface = InputSurface(encoder.createInputSurface()).also { it.makeCurrent() }
+        val decoderOutput = OutputSurface(handler, ::onFrameAvailable).also { outputSurface = it }
+
+        val decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME)!!).also { videoDecoder = it }
+        decoder.setCallback(videoDecoderCallback, handler)
+        decoder.configure(inputFormat, decoderOutput.surface, null, 0)
+
+        setUpAudio(muxer)
+
+        encoder.start()
+        decoder.start()
+        audioEncoder?.start()
+        audioDecoder?.start()
+    }
+
+    private fun setUpAudio(muxer: TranscodeMuxer) {
+        val source = MediaExtractor()
+        source.setDataSource(context, sourceUri, null)
+        val track = findTrack(source, "audio/")
+        if (track == null) {
+            source.release()
+            return
+        }
+        audioExtractor = source
+        source.selectTrack(track)
+        val format = source.getTrackFormat(track)
+        muxer.expect(SampleTrack.AUDIO)
+        audioDone = false
+
+        if (format.getString(MediaFormat.KEY_MIME) in PASSTHROUGH_AUDIO) {
+            audioPassthrough = true
+            passthroughBuffer = ByteBuffer.allocateDirect(format.intOrNull(MediaFormat.KEY_MAX_INPUT_SIZE) ?: DEFAULT_AUDIO_SAMPLE_BYTES)
+            muxer.addTrack(SampleTrack.AUDIO, format)
+            return
+        }
+
+        val sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+        val channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+        pcmBytesPerSecond = sampleRate.toLong() * channels * PCM_BYTES_PER_SAMPLE
+        val outputFormat = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, channels).apply {
+            setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC)
+            setInteger(MediaFormat.KEY_BIT_RATE, AUDIO_BITRATE)
+        }
+        audioEncoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC).apply {
+            setCallback(audioEncoderCallback, handler)
+            configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+        }
+        audioDecoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME)!!).apply {
+            setCallback(audioDecoderCallback, handler)
+            configure(format, null, null, 0)
+        }
+    }
+
+    private val videoDecoderCallback = object : MediaCodec.Callback() {
+        override fun onInputBufferAvailable(codec: MediaCodec, index: Int) {
+            if (!finished) queueSample(videoExtractor!!, codec, index)
+        }
+
+        override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
+            if (finished) return
+            pendingFrames.addLast(PendingBuffer(index, info.offset, info.size, info.presentationTimeUs, info.flags))
+            renderNextFrame()
+        }
+
+        override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) = Unit
+
+        override fun onError(codec: MediaCodec, e: MediaCodec.CodecException) = fail(e)
+    }
+
+    private val videoEncoderCallback = object : MediaCodec.Callback() {
+        override fun onInputBufferAvailable(codec: MediaCodec, index: Int) = Unit
+
+        override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) {
+            if (!finished) muxer!!.addTrack(SampleTrack.VIDEO, format)
+        }
+
+        override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
+            if (finished) return
+            if (info.size > 0 && info.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG == 0) {
+                muxer!!.writeSample(SampleTrack.VIDEO, codec.getOutputBuffer(index)!!, info)
+                videoWrittenUs = info.presentationTimeUs
+                reportProgress(info.presentationTimeUs)
+            }
+            codec.releaseOutputBuffer(index, false)
+            if (info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) videoDone = true
+            pumpPassthroughAudio()
+            maybeFinish()
+        }
+
+        override fun onError(codec: MediaCodec, e: MediaCodec.CodecException) = fail(e)
+    }
+
+    private val audioDecoderCallback = object : MediaCodec.Callback() {
+        override fun onInputBufferAvailable(codec: MediaCodec, index: Int) {
+            if (!finished) queueSample(audioExtractor!!, codec, index)
+        }
+
+        override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
+            if (finished) return
+            pendingPcm.addLast(PendingBuffer(index, info.offset, info.size, info.presentationTimeUs, info.flags))
+            feedAudioEncoder()
+        }
+
+        override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) {
+            pcmBytesPerSecond = format.getInteger(MediaFormat.KEY_SAMPLE_RATE).toLong() *
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) * PCM_BYTES_PER_SAMPLE
+        }
+
+        override fun onError(codec: MediaCodec, e: MediaCodec.CodecException) = fail(e)
+    }
+
+    private val audioEncoderCallback = object : MediaCodec.Callback() {
+        override fun onInputBufferAvailable(codec: MediaCodec, index: Int) {
+            if (finished) return
+            freeAudioInputs.addLast(index)
+            feedAudioEncoder()
+        }
+
+        override fun onOutputFormatChanged(codec: MediaCodec, format: MediaFormat) {
+            if (!finished) muxer!!.addTrack(SampleTrack.AUDIO, format)
+        }
+
+        override fun onOutputBufferAvailable(codec: MediaCodec, index: Int, info: MediaCodec.BufferInfo) {
+            if (finished) return
+            if (info.size > 0 && info.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG == 0) {
+                muxer!!.writeSample(SampleTrack.AUDIO, codec.getOutputBuffer(index)!!, info)
+            }
+            codec.releaseOutputBuffer(index, false)
+            if (info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) {
+                audioDone = true
+                maybeFinish()
+            }
+        }
+
+        override fun onError(codec: MediaCodec, e: MediaCodec.CodecException) = fail(e)
+    }
+
+    private fun queueSample(extractor: MediaExtractor, codec: MediaCodec, index: Int) {
+        val buffer = codec.getInputBuffer(index)!!
+        val size = extractor.readSampleData(buffer, 0)
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.sampleTime, 0)
+            extractor.advance()
+        }
+    }
+
+    /**
+     * Release the next decoded frame to the SurfaceTexture unless one is still
+     * waiting to be drawn
+     */
+    private fun renderNextFrame() {
+        while (frameInFlightUs == NO_FRAME) {
+            val frame = pendingFrames.removeFirstOrNull() ?: break
+            val render = frame.size > 0
+            videoDecoder!!.releaseOutputBuffer(frame.index, render)
+            if (render) frameInFlightUs = frame.presentationTimeUs
+            if (frame.isEndOfStream) videoInputEnded = true
+        }
+        // The encoder sees end of stream only after the last frame is drawn
+        if (videoInputEnded && frameInFlightUs == NO_FRAME && !encoderInputEnded) {
+            encoderInputEnded = true
+            videoEncoder!!.signalEndOfInputStream()
+        }
+    }
+
+    private fun onFrameAvailable() {
+        if (finished || frameInFlightUs == NO_FRAME) return
+        outputSurface!!.drawImage(outputWidth, outputHeight)
+        inputSurface!!.apply {
+            setPresentationTime(frameInFlightUs * NANOS_PER_MICRO)
+            swapBuffers()
+        }
+        frameInFlightUs = NO_FRAME
+        renderNextFrame()
+    }
+
+    /**
+     * Copy decoded PCM into free encoder input buffers, splitting chunks that
+     * do not fit and advancing their timestamps by the audio they carried
+     */
+    private fun feedAudioEncoder() {
+        val decoder = audioDecoder ?: return
+        val encoder = audioEncoder ?: return
+        while (pendingPcm.isNotEmpty() && freeAudioInputs.isNotEmpty()) {
+            val pcm = pendingPcm.first()
+            val inputIndex = freeAudioInputs.removeFirst()
+            val target = encoder.getInputBuffer(inputIndex)!!.apply { clear() }
+            val chunk = minOf(pcm.size, target.remaining())
+            if (chunk > 0) {
+                val source = decoder.getOutputBuffer(pcm.index)!!
+                source.position(pcm.offset)
+                source.limit(pcm.offset + chunk)
+                target.put(source)
+            }
+
+            val last = chunk == pcm.size
+            val flags = if (last && pcm.isEndOfStream) MediaCodec.BUFFER_FLAG_END_OF_STREAM else 0
+            encoder.queueInputBuffer(inputIndex, 0, chunk, pcm.presentationTimeUs, flags)
+            if (last) {
+                decoder.releaseOutputBuffer(pcm.index, false)
+                pendingPcm.removeFirst()
+            } else {
+                pcm.offset += chunk
+                pcm.size -= chunk
+                if (pcmBytesPerSecond > 0) pcm.presentationTimeUs += chunk * MICROS_PER_SECOND / pcmBytesPerSecond
+            }
+        }
+    }
+
+    /**
+     * Copy passthrough audio up to a little ahead of the video written so far,
+     * so the two tracks stay interleaved in the file
+     */
+    private fun pumpPassthroughAudio() {
+        if (!audioPassthrough || audioDone || finished) return
+        val muxer = muxer ?: return
+        if (!muxer.started) return
+        val extractor = audioExtractor!!
+        val buffer = passthroughBuffer!!
+        val limitUs = if (videoDone) Long.MAX_VALUE else videoWrittenUs + AUDIO_LEAD_US
+        while (true) {
+            val sampleTimeUs = extractor.sampleTime
+            if (sampleTimeUs < 0) {
+                audioDone = true
+                maybeFinish()
+                return
+            }
+            if (sampleTimeUs > limitUs) return
+            buffer.clear()
+            val size = extractor.readSampleData(buffer, 0)
+            passthroughInfo.offset = 0
+            passthroughInfo.size = size
+            passthroughInfo.presentationTimeUs = sampleTimeUs
+            passthroughInfo.flags = if (extractor.sampleFlags and MediaExtractor.SAMPLE_FLAG_SYNC != 0) MediaCodec.BUFFER_FLAG_KEY_FRAME else 0
+            muxer.writeSample(SampleTrack.AUDIO, buffer, passthroughInfo)
+            extractor.advance()
+        }
+    }
+
+    private fun reportProgress(presentationTimeUs: Long) {
+        if (durationUs <= 0) return
+        val percent = (presentationTimeUs * 100 / durationUs).toInt().coerceIn(0, 100)
+        if (percent > lastProgressPercent) {
+            lastProgressPercent = percent
+            onProgress(percent / 100f)
+        }
+    }
+
+    private fun maybeFinish() {
+        if (finished || !videoDone || !audioDone) return
+        try {
+            muxer!!.finish()
+        } catch (e: Exception) {
+            fail(e)
+            return
+        }
+        finished = true
+        release()
+        continuation?.resume(
+            TranscodeResult(
+                outputBytes = outputFile.length(),
+                durationUs = durationUs,
+                elapsedNanos = System.nanoTime() - startNanos,
+                width = outputWidth,
+                height = outputHeight
+            )
+        )
+    }
+
+    private fun fail(error: Throwable) {
+        if (finished) return
+        finished = true
+        release()
+        outputFile.delete()
+        continuation?.resumeWithException(error)
+    }
+
+    private fun release() {
+        listOf(videoDecoder, videoEncoder, audioDecoder, audioEncoder).forEach { codec ->
+            codec ?: return@forEach
+            try {
+                codec.stop()
+            } catch (e: Exception) {
+                // Never started or already in error
+            }
+            codec.release()
+        }
+        outputSurface?.release()
+        inputSurface?.release()
+        muxer?.release()
+        videoExtractor?.release()
+        audioExtractor?.release()
+        videoDecoder = null
+        videoEncoder = null
+        audioDecoder = null
+        audioEncoder = null
+        outputSurface = null
+        inputSurface = null
+        muxer = null
+        videoExtractor = null
+        audioExtractor = null
+    }
+
+    /**
+     * A hardware AVC encoder that accepts [format], falling back to the
+     * platform default
+     */
+    private fun createVideoEncoder(format: MediaFormat): MediaCodec {
+        val candidates = MediaCodecList(MediaCodecList.REGULAR_CODECS).codecInfos.filter { info ->
+            info.isEncoder &&
+                info.supportedTypes.any { it.equals(MediaFormat.MIMETYPE_VIDEO_AVC, ignoreCase = true) } &&
+                info.getCapabilitiesForType(MediaFormat.MIMETYPE_VIDEO_AVC).isFormatSupported(format)
+        }
+        val hardware = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            candidates.firstOrNull { it.isHardwareAccelerated }
+        } else {
+            candidates.firstOrNull { info -> SOFTWARE_CODEC_PREFIXES.none { info.name.startsWith(it) } }
+        }
+        val name = hardware?.name ?: candidates.firstOrNull()?.name
+        return if (name != null) MediaCodec.createByCodecName(name) else MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC)
+    }
+
+    private fun findTrack(extractor: MediaExtractor, mimePrefix: String): Int? {
+        return (0 until extractor.trackCount).firstOrNull { index ->
+            extractor.getTrackFormat(index).getString(MediaFormat.KEY_MIME)?.startsWith(mimePrefix) == true
+        }
+    }
+
+    private fun MediaFormat.intOrNull(key: String): Int? {
+        if (!containsKey(key)) return null
+        // Some extractors report the frame rate as a float
+        return try {
+            getInteger(key)
+        } catch (e: ClassCastException) {
+            getFloat(key).toInt()
+        }
+    }
+
+    private fun MediaFormat.longOrNull(key: String): Long? = if (containsKey(key)) getLong(key) else null
+
+    companion object {
+        private const val NO_FRAME = -1L
+        private const val DEFAULT_FRAME_RATE = 30
+        private const val I_FRAME_INTERVAL_SECONDS = 2
+        private const val AUDIO_BITRATE = 128_000
+        private const val PCM_BYTES_PER_SAMPLE = 2
+        private const val DEFAULT_AUDIO_SAMPLE_BYTES = 256 * 1024
+        private const val AUDIO_LEAD_US = 500_000L
+        private const val NANOS_PER_MICRO = 1_000L
+        private const val MICROS_PER_SECOND = 1_000_000L
+
+        // Audio codecs the MP4 muxer stores as-is
+        private val PASSTHROUGH_AUDIO = setOf(
+            MediaFormat.MIMETYPE_AUDIO_AAC,
+            MediaFormat.MIMETYPE_AUDIO_AMR_NB,
+            MediaFormat.MIMETYPE_AUDIO_AMR_WB
+        )
+        private val SOFTWARE_CODEC_PREFIXES = listOf("OMX.google.", "c2.android.")
+    }
+}
+
+/**
+ * Outcome of one [VideoTranscoder.transcode]
+ */
+data class TranscodeResult(
+    val outputBytes: Long,
+    val durationUs: Long,
+    val elapsedNanos: Long,
+    val width: Int,
+    val height: Int
+) {
+    /**
+     * Seconds of video encoded per second of wall time
+     */
+    val realtimeFactor: Double
+        get() = if (elapsedNanos <= 0) 0.0 else durationUs * 1_000.0 / elapsedNanos
+}
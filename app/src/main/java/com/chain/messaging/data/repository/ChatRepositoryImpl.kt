@@ -1,6 +1,8 @@
 package com.chain.messaging.data.repository
 
 import com.chain.messaging.data.local.dao.ChatDao
+import com.chain.messaging.data.local.entity.ChatEntity
+import com.chain.messaging.data.local.entity.chatParticipantRows
 import com.chain.messaging.data.local.entity.toDomain
 import com.chain.messaging.data.local.entity.toEntity
 import com.chain.messaging.domain.model.Chat
@@ -17,7 +19,11 @@ import javax.inject.Inject
 import javax.inject.Singleton
 
 /**
- * Implementation of ChatRepository
+ * Implementation of ChatRepository.
+ *
+ * Chats are read from chat_summaries and chat_participants, which the
+ * database keeps current, so reads decode no JSON. The participants and
+ * admins JSON columns of chats are still written for older readers.
  */
 @Singleton
 class ChatRepositoryImpl @Inject constructor(
@@ -28,13 +34,11 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun getChats(): List<Chat> {
         return try {
-            chatDao.getAllChats().mapNotNull { entity ->
+            chatDao.getChatList().mapNotNull { row ->
                 try {
-                    val participants = gson.fromJson(entity.participants, Array<String>::class.java)?.toList() ?: emptyList()
-                    val admins = gson.fromJson(entity.admins, Array<String>::class.java)?.toList() ?: emptyList()
-                    entity.toDomain(participants, admins)
+                    row.toDomain()
                 } catch (e: Exception) {
-                    null // Skip invalid entities
+                    null // Skip invalid rows
                 }
             }
         } catch (e: Exception) {
@@ -47,11 +51,9 @@ class ChatRepositoryImpl @Inject constructor(
             if (chatId.isBlank()) {
                 return null
             }
-            chatDao.getChatById(chatId)?.let { entity ->
+            chatDao.getChatListRow(chatId)?.let { row ->
                 try {
-                    val participants = gson.fromJson(entity.participants, Array<String>::class.java)?.toList() ?: emptyList()
-                    val admins = gson.fromJson(entity.admins, Array<String>::class.java)?.toList() ?: emptyList()
-                    entity.toDomain(participants, admins)
+                    row.toDomain()
                 } catch (e: Exception) {
                     null
                 }
@@ -83,10 +85,7 @@ class ChatRepositoryImpl @Inject constructor(
                 updatedAt = currentTime
             )
             
-            val participantsJson = gson.toJson(chat.participants)
-            val adminsJson = gson.toJson(chat.admins)
-            
-            chatDao.insertChat(chat.toEntity(participantsJson, adminsJson))
+            persistChat(chat)
             Result.success(chat)
         } catch (e: Exception) {
             Result.failure(e)
@@ -122,10 +121,7 @@ class ChatRepositoryImpl @Inject constructor(
                 updatedAt = currentTime
             )
             
-            val participantsJson = gson.toJson(chat.participants)
-            val adminsJson = gson.toJson(chat.admins)
-            
-            chatDao.insertChat(chat.toEntity(participantsJson, adminsJson))
+            persistChat(chat)
             
             val groupChat = GroupChat(
                 chat = chat,
@@ -143,16 +139,10 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun updateChatSettings(chatId: String, settings: ChatSettings): Result<Unit> {
         return try {
-            val existingChat = chatDao.getChatById(chatId)
+            val existingChat = chatDao.getChatListRow(chatId)
             if (existingChat != null) {
-                val participants = gson.fromJson(existingChat.participants, Array<String>::class.java).toList()
-                val admins = gson.fromJson(existingChat.admins, Array<String>::class.java).toList()
-                val chat = existingChat.toDomain(participants, admins).copy(settings = settings)
-                
-                val participantsJson = gson.toJson(chat.participants)
-                val adminsJson = gson.toJson(chat.admins)
-                
-                chatDao.updateChat(chat.toEntity(participantsJson, adminsJson))
+                val chat = existingChat.toDomain().copy(settings = settings)
+                chatDao.updateChat(chat.toLegacyEntity())
                 Result.success(Unit)
             } else {
                 Result.failure(Exception("Chat not found"))
@@ -164,17 +154,11 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun addMembersToGroup(chatId: String, memberIds: List<String>): Result<Unit> {
         return try {
-            val existingChat = chatDao.getChatById(chatId)
+            val existingChat = chatDao.getChatListRow(chatId)
             if (existingChat != null) {
-                val currentParticipants = gson.fromJson(existingChat.participants, Array<String>::class.java).toList()
-                val admins = gson.fromJson(existingChat.admins, Array<String>::class.java).toList()
-                
-                val updatedParticipants = (currentParticipants + memberIds).distinct()
-                val participantsJson = gson.toJson(updatedParticipants)
-                val adminsJson = gson.toJson(admins)
-                
-                val chat = existingChat.toDomain(updatedParticipants, admins)
-                chatDao.updateChat(chat.toEntity(participantsJson, adminsJson))
+                val current = existingChat.toDomain()
+                val updatedParticipants = (current.participants + memberIds).distinct()
+                updateMembers(current.copy(participants = updatedParticipants))
                 Result.success(Unit)
             } else {
                 Result.failure(Exception("Chat not found"))
@@ -186,17 +170,11 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun removeMembersFromGroup(chatId: String, memberIds: List<String>): Result<Unit> {
         return try {
-            val existingChat = chatDao.getChatById(chatId)
+            val existingChat = chatDao.getChatListRow(chatId)
             if (existingChat != null) {
-                val currentParticipants = gson.fromJson(existingChat.participants, Array<String>::class.java).toList()
-                val admins = gson.fromJson(existingChat.admins, Array<String>::class.java).toList()
-                
-                val updatedParticipants = currentParticipants.filterNot { it in memberIds }
-                val participantsJson = gson.toJson(updatedParticipants)
-                val adminsJson = gson.toJson(admins)
-                
-                val chat = existingChat.toDomain(updatedParticipants, admins)
-                chatDao.updateChat(chat.toEntity(participantsJson, adminsJson))
+                val current = existingChat.toDomain()
+                val updatedParticipants = current.participants.filterNot { it in memberIds }
+                updateMembers(current.copy(participants = updatedParticipants))
                 Result.success(Unit)
             } else {
                 Result.failure(Exception("Chat not found"))
@@ -217,14 +195,12 @@ class ChatRepositoryImpl @Inject constructor(
     }
     
     override fun observeChats(): Flow<List<Chat>> {
-        return chatDao.observeAllChats().map { entities ->
-            entities.mapNotNull { entity ->
+        return chatDao.observeChatList().map { rows ->
+            rows.mapNotNull { row ->
                 try {
-                    val participants = gson.fromJson(entity.participants, Array<String>::class.java)?.toList() ?: emptyList()
-                    val admins = gson.fromJson(entity.admins, Array<String>::class.java)?.toList() ?: emptyList()
-                    entity.toDomain(participants, admins)
+                    row.toDomain()
                 } catch (e: Exception) {
-                    null // Skip invalid entities
+                    null // Skip invalid rows
                 }
             }
         }
@@ -232,9 +208,7 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun saveChat(chat: Chat): Result<Unit> {
         return try {
-            val participantsJson = gson.toJson(chat.participants)
-            val adminsJson = gson.toJson(chat.admins)
-            chatDao.insertChat(chat.toEntity(participantsJson, adminsJson))
+            persistChat(chat)
             Result.success(Unit)
         } catch (e: Exception) {
             Result.failure(e)
@@ -252,7 +226,7 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun markChatAsRead(chatId: String): Result<Unit> {
         return try {
-            chatDao.updateUnreadCount(chatId, 0)
+            chatDao.markChatRead(chatId)
             Result.success(Unit)
         } catch (e: Exception) {
             Result.failure(e)
@@ -261,9 +235,25 @@ class ChatRepositoryImpl @Inject constructor(
     
     override suspend fun getUnreadMessageCount(chatId: String): Int {
         return try {
-            chatDao.getChatById(chatId)?.unreadCount ?: 0
+            chatDao.getSummaryUnreadCount(chatId) ?: 0
         } catch (e: Exception) {
             0
         }
     }
+    
+    private suspend fun persistChat(chat: Chat) {
+        chatDao.upsertChatWithParticipants(
+            chat.toLegacyEntity(),
+            chatParticipantRows(chat.id, chat.participants, chat.admins)
+        )
+    }
+    
+    private suspend fun updateMembers(chat: Chat) {
+        chatDao.updateChatWithParticipants(
+            chat.toLegacyEntity(),
+            chatParticipantRows(chat.id, chat.participants, chat.admins)
+        )
+    }
+    
+    private fun Chat.toLegacyEntity(): ChatEntity = toEntity(gson.toJson(participants), gson.toJson(admins))
 }
\ No newline at end of file
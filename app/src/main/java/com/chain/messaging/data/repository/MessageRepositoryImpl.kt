@@ -1,13 +1,18 @@
 package com.chain.messaging.data.repository
 
-import android.util.Log
 import com.chain.messaging.core.auth.AuthenticationService
 import com.chain.messaging.core.blockchain.BlockchainManager
 import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.performance.metrics.HotPathMetrics
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.core.performance.metrics.time
+import com.chain.messaging.core.util.Logger
+import com.chain.messaging.core.util.log.LogSubsystem
 import com.chain.messaging.data.local.dao.MessageDao
 import com.chain.messaging.data.local.dao.ReactionDao
 import com.chain.messaging.data.local.entity.toDomain
 import com.chain.messaging.data.local.entity.toEntity
+import com.chain.messaging.domain.model.ExpiredMessage
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.model.Reaction
@@ -27,38 +32,42 @@ class MessageRepositoryImpl @Inject constructor(
     private val reactionDao: ReactionDao,
     private val blockchainManager: BlockchainManager,
     private val encryptionService: SignalEncryptionService,
-    private val authenticationService: AuthenticationService
+    private val authenticationService: AuthenticationService,
+    metricsRegistry: MetricsRegistry
 ) : MessageRepository {
     
-    companion object {
-        private const val TAG = "MessageRepositoryImpl"
-    }
+    private val log = Logger.of(LogSubsystem.STORAGE)
+    private val sendLatency = metricsRegistry.histogram(HotPathMetrics.MESSAGE_SEND)
+    private val renderReadyLatency = metricsRegistry.histogram(HotPathMetrics.RENDER_READY)
+    private val messagesSent = metricsRegistry.counter(HotPathMetrics.MESSAGES_SENT)
+    private val messagesFailed = metricsRegistry.counter(HotPathMetrics.MESSAGES_FAILED)
     
     override suspend fun sendMessage(message: Message): Result<Unit> {
+        val start = System.nanoTime()
         return try {
-            Log.d(TAG, "Sending message: ${message.id}")
+            log.d { "Sending message: ${message.id}" }
             
             // Get current user to verify sender
             val currentUser = authenticationService.getCurrentUser()
             if (currentUser == null) {
-                Log.e(TAG, "Cannot send message: No authenticated user")
+                log.e { "Cannot send message: No authenticated user" }
                 return Result.failure(IllegalStateException("No authenticated user"))
             }
             
             // Verify the message sender matches current user
             if (message.senderId != currentUser.userId) {
-                Log.e(TAG, "Cannot send message: Sender ID mismatch")
+                log.e { "Cannot send message: Sender ID mismatch" }
                 return Result.failure(IllegalStateException("Sender ID mismatch"))
             }
             
             // Update message status to SENDING and save locally first
             val sendingMessage = message.copy(status = MessageStatus.SENDING)
             messageDao.insertMessage(sendingMessage.toEntity())
-            Log.d(TAG, "Message saved locally with SENDING status")
+            log.d { "Message saved locally with SENDING status" }
             
             // Check if connected to blockchain network
             if (!blockchainManager.isConnected()) {
-                Log.w(TAG, "Not connected to blockchain network, message will be queued")
+                log.w { "Not connected to blockchain network, message will be queued" }
                 // Message remains in SENDING status and will be retried when connection is restored
                 return Result.success(Unit)
             }
@@ -69,15 +78,16 @@ class MessageRepositoryImpl @Inject constructor(
             
             val encryptionResult = encryptionService.encryptMessage(recipientAddress, messageContent)
             if (encryptionResult.isFailure) {
-                Log.e(TAG, "Failed to encrypt message", encryptionResult.exceptionOrNull())
+                log.e(encryptionResult.exceptionOrNull()) { "Failed to encrypt message" }
                 // Update message status to FAILED
                 val failedMessage = message.copy(status = MessageStatus.FAILED)
                 messageDao.updateMessage(failedMessage.toEntity())
+                messagesFailed.increment()
                 return Result.failure(encryptionResult.exceptionOrNull() ?: Exception("Encryption failed"))
             }
             
             val encryptedMessage = encryptionResult.getOrThrow()
-            Log.d(TAG, "Message encrypted successfully")
+            log.d { "Message encrypted successfully" }
             
             // Send encrypted message through blockchain
             val blockchainResult = try {
@@ -87,19 +97,22 @@ class MessageRepositoryImpl @Inject constructor(
                     messageType = message.type.name
                 )
                 
-                Log.d(TAG, "Message sent to blockchain with transaction hash: $transactionHash")
+                log.d { "Message sent to blockchain with transaction hash: $transactionHash" }
                 
                 // Update message status to SENT
                 val sentMessage = message.copy(status = MessageStatus.SENT)
                 messageDao.updateMessage(sentMessage.toEntity())
+                sendLatency.recordSince(start)
+                messagesSent.increment()
                 
                 Result.success(Unit)
             } catch (e: Exception) {
-                Log.e(TAG, "Failed to send message through blockchain", e)
+                log.e(e) { "Failed to send message through blockchain" }
                 
                 // Update message status to FAILED
                 val failedMessage = message.copy(status = MessageStatus.FAILED)
                 messageDao.updateMessage(failedMessage.toEntity())
+                messagesFailed.increment()
                 
                 Result.failure(e)
             }
@@ -107,14 +120,15 @@ class MessageRepositoryImpl @Inject constructor(
             blockchainResult
             
         } catch (e: Exception) {
-            Log.e(TAG, "Unexpected error sending message", e)
+            log.e(e) { "Unexpected error sending message" }
+            messagesFailed.increment()
             
             // Try to update message status to FAILED if possible
             try {
                 val failedMessage = message.copy(status = MessageStatus.FAILED)
                 messageDao.updateMessage(failedMessage.toEntity())
             } catch (updateException: Exception) {
-                Log.e(TAG, "Failed to update message status to FAILED", updateException)
+                log.e(updateException) { "Failed to update message status to FAILED" }
             }
             
             Result.failure(e)
@@ -146,16 +160,18 @@ class MessageRepositoryImpl @Inject constructor(
             if (chatId.isBlank() || limit <= 0) {
                 return emptyList()
             }
-            messageDao.getMessagesWithReactionsByChatId(chatId, limit, offset).mapNotNull { entity ->
-                try {
-                    entity.toDomain()
-                } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert message entity to domain", e)
-                    null // Skip invalid entities
+            renderReadyLatency.time {
+                messageDao.getMessagesWithReactionsByChatId(chatId, limit, offset).mapNotNull { entity ->
+                    try {
+                        entity.toDomain()
+                    } catch (e: Exception) {
+                        log.w(e) { "Failed to convert message entity to domain" }
+                        null // Skip invalid entities
+                    }
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get messages", e)
+            log.e(e) { "Failed to get messages" }
             emptyList()
         }
     }
@@ -177,12 +193,12 @@ class MessageRepositoryImpl @Inject constructor(
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert message entity to domain", e)
+                    log.w(e) { "Failed to convert message entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to search messages", e)
+            log.e(e) { "Failed to search messages" }
             emptyList()
         }
     }
@@ -210,12 +226,14 @@ class MessageRepositoryImpl @Inject constructor(
             kotlinx.coroutines.flow.flowOf(emptyList())
         } else {
             messageDao.observeMessagesWithReactionsByChatId(chatId).map { messagesWithReactions ->
-                messagesWithReactions.mapNotNull { entity ->
-                    try {
-                        entity.toDomain()
-                    } catch (e: Exception) {
-                        Log.w(TAG, "Failed to convert message entity to domain", e)
-                        null // Skip invalid entities
+                renderReadyLatency.time {
+                    messagesWithReactions.mapNotNull { entity ->
+                        try {
+                            entity.toDomain()
+                        } catch (e: Exception) {
+                            log.w(e) { "Failed to convert message entity to domain" }
+                            null // Skip invalid entities
+                        }
                     }
                 }
             }
@@ -238,12 +256,12 @@ class MessageRepositoryImpl @Inject constructor(
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert expired message entity to domain", e)
+                    log.w(e) { "Failed to convert expired message entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get expired messages", e)
+            log.e(e) { "Failed to get expired messages" }
             emptyList()
         }
     }
@@ -254,12 +272,12 @@ class MessageRepositoryImpl @Inject constructor(
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert expiring message entity to domain", e)
+                    log.w(e) { "Failed to convert expiring message entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get messages expiring before time", e)
+            log.e(e) { "Failed to get messages expiring before time" }
             emptyList()
         }
     }
@@ -281,13 +299,28 @@ class MessageRepositoryImpl @Inject constructor(
         }
     }
     
+    override suspend fun getNextExpiryAfter(time: Long): Long? {
+        return try {
+            messageDao.getNextExpiryAfter(time)
+        } catch (e: Exception) {
+            log.e(e) { "Failed to get next expiry time" }
+            null
+        }
+    }
+    
+    override suspend fun deleteExpiredBatch(currentTime: Long, limit: Int): List<ExpiredMessage> {
+        return messageDao.deleteExpiredBatch(currentTime, limit).map { row ->
+            ExpiredMessage(id = row.id, chatId = row.chatId, expiresAt = row.expiresAt)
+        }
+    }
+    
     override fun observeDisappearingMessages(): Flow<List<Message>> {
         return messageDao.observeDisappearingMessages().map { entities ->
             entities.mapNotNull { entity ->
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert disappearing message entity to domain", e)
+                    log.w(e) { "Failed to convert disappearing message entity to domain" }
                     null // Skip invalid entities
                 }
             }
@@ -303,12 +336,12 @@ class MessageRepositoryImpl @Inject constructor(
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert recent message entity to domain", e)
+                    log.w(e) { "Failed to convert recent message entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get recent messages", e)
+            log.e(e) { "Failed to get recent messages" }
             emptyList()
         }
     }
@@ -333,18 +366,18 @@ class MessageRepositoryImpl @Inject constructor(
     
     override suspend fun addReaction(messageId: String, userId: String, emoji: String): Result<Unit> {
         return try {
-            Log.d(TAG, "Adding reaction: messageId=$messageId, userId=$userId, emoji=$emoji")
+            log.d { "Adding reaction: messageId=$messageId, userId=$userId, emoji=$emoji" }
             
             // Check if the user has already reacted with this emoji
             val existingReaction = reactionDao.getSpecificReaction(messageId, userId, emoji)
             
             if (existingReaction != null) {
                 // Remove the existing reaction (toggle behavior)
-                Log.d(TAG, "Removing existing reaction")
+                log.d { "Removing existing reaction" }
                 reactionDao.deleteSpecificReaction(messageId, userId, emoji)
             } else {
                 // Add new reaction
-                Log.d(TAG, "Adding new reaction")
+                log.d { "Adding new reaction" }
                 val reaction = Reaction(
                     userId = userId,
                     emoji = emoji,
@@ -355,18 +388,18 @@ class MessageRepositoryImpl @Inject constructor(
             
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to add reaction", e)
+            log.e(e) { "Failed to add reaction" }
             Result.failure(e)
         }
     }
     
     override suspend fun removeReaction(messageId: String, userId: String, emoji: String): Result<Unit> {
         return try {
-            Log.d(TAG, "Removing reaction: messageId=$messageId, userId=$userId, emoji=$emoji")
+            log.d { "Removing reaction: messageId=$messageId, userId=$userId, emoji=$emoji" }
             reactionDao.deleteSpecificReaction(messageId, userId, emoji)
             Result.success(Unit)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to remove reaction", e)
+            log.e(e) { "Failed to remove reaction" }
             Result.failure(e)
         }
     }
@@ -380,12 +413,12 @@ class MessageRepositoryImpl @Inject constructor(
                 try {
                     entity.toDomain()
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert reaction entity to domain", e)
+                    log.w(e) { "Failed to convert reaction entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get reactions", e)
+            log.e(e) { "Failed to get reactions" }
             emptyList()
         }
     }
@@ -399,7 +432,7 @@ class MessageRepositoryImpl @Inject constructor(
                     try {
                         entity.toDomain()
                     } catch (e: Exception) {
-                        Log.w(TAG, "Failed to convert reaction entity to domain", e)
+                        log.w(e) { "Failed to convert reaction entity to domain" }
                         null // Skip invalid entities
                     }
                 }
@@ -411,7 +444,7 @@ class MessageRepositoryImpl @Inject constructor(
         return try {
             reactionDao.hasUserReacted(messageId, userId, emoji)
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to check user reaction", e)
+            log.e(e) { "Failed to check user reaction" }
             false
         }
     }
@@ -421,7 +454,7 @@ class MessageRepositoryImpl @Inject constructor(
             // Get current user to filter out their own messages
             val currentUser = authenticationService.getCurrentUser()
             if (currentUser == null) {
-                Log.w(TAG, "No authenticated user, returning empty list")
+                log.w { "No authenticated user, returning empty list" }
                 return emptyList()
             }
             
@@ -436,12 +469,12 @@ class MessageRepositoryImpl @Inject constructor(
                         null
                     }
                 } catch (e: Exception) {
-                    Log.w(TAG, "Failed to convert message entity to domain", e)
+                    log.w(e) { "Failed to convert message entity to domain" }
                     null // Skip invalid entities
                 }
             }
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to get incoming messages", e)
+            log.e(e) { "Failed to get incoming messages" }
             emptyList()
         }
     }
@@ -4,6 +4,7 @@ import android.content.Context
 import com.chain.messaging.core.audio.VoiceMessageProcessor
 import com.chain.messaging.core.audio.VoicePlayer
 import com.chain.messaging.core.audio.VoiceRecorder
+import com.chain.messaging.core.audio.WaveformExtractor
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -37,8 +38,9 @@ object AudioModule {
     @Provides
     @Singleton
     fun provideVoiceMessageProcessor(
-        @ApplicationContext context: Context
+        @ApplicationContext context: Context,
+        waveformExtractor: WaveformExtractor
     ): VoiceMessageProcessor {
-        return VoiceMessageProcessor(context)
+        return VoiceMessageProcessor(context, waveformExtractor)
     }
 }
\ No newline at end of file
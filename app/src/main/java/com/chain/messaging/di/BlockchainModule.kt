@@ -44,8 +44,10 @@ abstract class BlockchainModule {
         
         @Provides
         @Singleton
-        fun provideP2PManagerImpl(): P2PManagerImpl {
-            return P2PManagerImpl()
+        fun provideP2PManagerImpl(
+            memoryBudgetManager: com.chain.messaging.core.performance.memory.MemoryBudgetManager
+        ): P2PManagerImpl {
+            return P2PManagerImpl().also { memoryBudgetManager.register(it.routedMessageCache) }
         }
         
         @Provides
@@ -53,9 +55,11 @@ abstract class BlockchainModule {
         fun provideBlockchainManagerImpl(
             transactionSigner: TransactionSigner,
             consensusHandler: ConsensusHandler,
-            authenticationService: com.chain.messaging.core.auth.AuthenticationService
+            authenticationService: com.chain.messaging.core.auth.AuthenticationService,
+            httpClient: okhttp3.OkHttpClient,
+            metricsRegistry: com.chain.messaging.core.performance.metrics.MetricsRegistry
         ): BlockchainManagerImpl {
-            return BlockchainManagerImpl(transactionSigner, consensusHandler, authenticationService)
+            return BlockchainManagerImpl(transactionSigner, consensusHandler, authenticationService, httpClient, metricsRegistry)
         }
     }
 }
\ No newline at end of file
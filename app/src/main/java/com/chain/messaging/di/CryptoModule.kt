@@ -11,6 +11,7 @@ import com.chain.messaging.core.crypto.SessionStorageImpl
 import com.chain.messaging.core.crypto.SignalEncryptionService
 import com.chain.messaging.core.crypto.SignalProtocolStore
 import com.chain.messaging.core.crypto.SignalProtocolStoreAdapter
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -44,9 +45,10 @@ object CryptoModule {
     @Provides
     @Singleton
     fun provideIdentityStorage(
-        @ApplicationContext context: Context
+        identityStorage: IdentityStorageImpl
     ): IdentityStorage {
-        return IdentityStorageImpl(context)
+        // The same instance the protocol store adapter saves identities through
+        return identityStorage
     }
 
     @Provides
@@ -81,8 +83,9 @@ object CryptoModule {
     @Provides
     @Singleton
     fun provideSignalEncryptionService(
-        protocolStoreAdapter: SignalProtocolStoreAdapter
+        protocolStoreAdapter: SignalProtocolStoreAdapter,
+        metricsRegistry: MetricsRegistry
     ): SignalEncryptionService {
-        return SignalEncryptionService(protocolStoreAdapter)
+        return SignalEncryptionService(protocolStoreAdapter, metricsRegistry)
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.chain.messaging.di
 
 import com.chain.messaging.core.integration.ChainApplicationManager
 import com.chain.messaging.core.integration.UserJourneyOrchestrator
+import dagger.Lazy
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -21,14 +22,16 @@ object IntegrationModule {
         messagingService: com.chain.messaging.core.messaging.MessagingService,
         p2pManager: com.chain.messaging.core.p2p.P2PManager,
         webrtcManager: com.chain.messaging.core.webrtc.WebRTCManager,
-        cloudStorageManager: com.chain.messaging.core.cloud.CloudStorageManager,
+        cloudStorageManager: Lazy<com.chain.messaging.core.cloud.CloudStorageManager>,
         notificationService: com.chain.messaging.core.notification.NotificationService,
         offlineMessageQueue: com.chain.messaging.core.offline.OfflineMessageQueue,
-        crossDeviceSyncService: com.chain.messaging.core.sync.CrossDeviceSyncService,
+        crossDeviceSyncService: Lazy<com.chain.messaging.core.sync.CrossDeviceSyncService>,
         disappearingMessageManager: com.chain.messaging.core.privacy.DisappearingMessageManager,
-        securityMonitoringManager: com.chain.messaging.core.security.SecurityMonitoringManager,
+        securityMonitoringManager: Lazy<com.chain.messaging.core.security.SecurityMonitoringManager>,
         performanceMonitor: com.chain.messaging.core.performance.PerformanceMonitor,
-        networkMonitor: com.chain.messaging.core.network.NetworkMonitor
+        networkMonitor: com.chain.messaging.core.network.NetworkMonitor,
+        memoryManager: Lazy<com.chain.messaging.core.performance.MemoryManager>,
+        batteryOptimizer: Lazy<com.chain.messaging.core.performance.BatteryOptimizer>
     ): ChainApplicationManager {
         return ChainApplicationManager(
             authenticationService,
@@ -44,7 +47,9 @@ object IntegrationModule {
             disappearingMessageManager,
             securityMonitoringManager,
             performanceMonitor,
-            networkMonitor
+            networkMonitor,
+            memoryManager,
+            batteryOptimizer
         )
     }
 
@@ -5,6 +5,9 @@ import com.chain.messaging.core.crypto.SignalEncryptionService
 import com.chain.messaging.core.messaging.MessagingService
 import com.chain.messaging.core.messaging.MessageStatusTracker
 import com.chain.messaging.core.messaging.TypingIndicatorService
+import com.chain.messaging.core.messaging.presence.P2PPresenceTransport
+import com.chain.messaging.core.messaging.presence.PresenceEngine
+import com.chain.messaging.core.messaging.presence.PresenceTransport
 import com.chain.messaging.domain.repository.MessageRepository
 import dagger.Module
 import dagger.Provides
@@ -31,8 +34,14 @@ object MessagingModule {
     
     @Provides
     @Singleton
-    fun provideTypingIndicatorService(): TypingIndicatorService {
-        return TypingIndicatorService()
+    fun providePresenceTransport(transport: P2PPresenceTransport): PresenceTransport {
+        return transport
+    }
+    
+    @Provides
+    @Singleton
+    fun provideTypingIndicatorService(presenceEngine: PresenceEngine): TypingIndicatorService {
+        return TypingIndicatorService(presenceEngine)
     }
     
     @Provides
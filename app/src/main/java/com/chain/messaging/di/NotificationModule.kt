@@ -7,6 +7,7 @@ import com.chain.messaging.core.notification.NotificationManager
 import com.chain.messaging.core.notification.NotificationPermissionHelper
 import com.chain.messaging.core.notification.NotificationService
 import com.chain.messaging.core.messaging.MessagingService
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.repository.ChatRepository
 import com.chain.messaging.domain.repository.MessageRepository
 import com.chain.messaging.domain.repository.SettingsRepository
@@ -28,9 +29,10 @@ object NotificationModule {
     @Provides
     @Singleton
     fun provideNotificationService(
-        @ApplicationContext context: Context
+        @ApplicationContext context: Context,
+        metricsRegistry: MetricsRegistry
     ): NotificationService {
-        return NotificationService(context)
+        return NotificationService(context, metricsRegistry)
     }
     
     @Provides
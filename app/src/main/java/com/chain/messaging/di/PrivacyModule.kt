@@ -5,6 +5,7 @@ import com.chain.messaging.core.privacy.*
 import com.chain.messaging.domain.repository.MessageRepository
 import com.chain.messaging.core.blockchain.BlockchainManager
 import com.chain.messaging.core.messaging.MessagingService
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -27,19 +28,31 @@ object PrivacyModule {
         return ScreenshotDetectorImpl(context)
     }
     
+    @Provides
+    @Singleton
+    fun provideExpiryAlarm(
+        @ApplicationContext context: Context
+    ): ExpiryAlarm {
+        return AlarmManagerExpiryAlarm(context)
+    }
+    
     @Provides
     @Singleton
     fun provideDisappearingMessageManager(
         @ApplicationContext context: Context,
         messageRepository: MessageRepository,
         blockchainManager: BlockchainManager,
-        screenshotDetector: ScreenshotDetector
+        screenshotDetector: ScreenshotDetector,
+        expiryAlarm: ExpiryAlarm,
+        metricsRegistry: MetricsRegistry
     ): DisappearingMessageManager {
         return DisappearingMessageManagerImpl(
             context,
             messageRepository,
             blockchainManager,
-            screenshotDetector
+            screenshotDetector,
+            expiryAlarm,
+            metricsRegistry
         )
     }
     
@@ -1,5 +1,6 @@
 package com.chain.messaging.di
 
+import com.chain.messaging.core.crypto.IdentityStorage
 import com.chain.messaging.core.crypto.KeyManager
 import com.chain.messaging.core.security.IdentityVerificationManager
 import com.chain.messaging.core.security.QRCodeGenerator
@@ -30,8 +31,13 @@ object SecurityModule {
     
     @Provides
     @Singleton
-    fun provideSafetyNumberGenerator(): SafetyNumberGenerator {
-        return SafetyNumberGenerator()
+    fun provideSafetyNumberGenerator(
+        identityStorage: IdentityStorage
+    ): SafetyNumberGenerator {
+        val generator = SafetyNumberGenerator()
+        // Frees a contact's cache entries once their identity key changes
+        identityStorage.addIdentityChangeListener { address -> generator.invalidate(address.name) }
+        return generator
     }
     
     @Provides
@@ -80,9 +80,10 @@ object WebRTCModule {
     @Provides
     @Singleton
     fun provideBandwidthMonitor(
-        @ApplicationContext context: Context
+        @ApplicationContext context: Context,
+        statsSampler: CallStatsSampler
     ): BandwidthMonitor {
-        return BandwidthMonitorImpl(context)
+        return BandwidthMonitorImpl(context, statsSampler)
     }
     
     @Provides
@@ -97,9 +98,10 @@ object WebRTCModule {
         bandwidthMonitor: BandwidthMonitor,
         codecManager: CodecManager,
         callRecordingManager: CallRecordingManager,
-        screenshotDetector: ScreenshotDetector
+        screenshotDetector: ScreenshotDetector,
+        statsSampler: CallStatsSampler
     ): CallQualityManager {
-        return CallQualityManager(bandwidthMonitor, codecManager, callRecordingManager, screenshotDetector)
+        return CallQualityManager(bandwidthMonitor, codecManager, callRecordingManager, screenshotDetector, statsSampler)
     }
     
     @Provides
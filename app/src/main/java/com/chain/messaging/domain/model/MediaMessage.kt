@@ -12,7 +12,8 @@ data class MediaMessage(
     val width: Int? = null,     // For images/videos
     val height: Int? = null,    // For images/videos
     val thumbnailUri: String? = null,
-    val isLocal: Boolean = true
+    val isLocal: Boolean = true,
+    val mediaId: String? = null // Set once stored encrypted by MediaStorageService
 )
 
 /**
@@ -66,6 +67,7 @@ private fun parseMediaContent(content: String): MediaMessage? {
             val heightRegex = "\"height\":\\s*(\\d+|null)".toRegex()
             val thumbnailUriRegex = "\"thumbnailUri\":\\s*(\"[^\"]+\"|null)".toRegex()
             val isLocalRegex = "\"isLocal\":\\s*(true|false)".toRegex()
+            val mediaIdRegex = "\"mediaId\":\\s*\"([^\"]+)\"".toRegex()
             
             val uri = uriRegex.find(content)?.groupValues?.get(1) ?: return null
             val fileName = fileNameRegex.find(content)?.groupValues?.get(1) ?: return null
@@ -84,6 +86,7 @@ private fun parseMediaContent(content: String): MediaMessage? {
                 if (it == "null") null else it.removeSurrounding("\"")
             }
             val isLocal = isLocalRegex.find(content)?.groupValues?.get(1)?.toBoolean() ?: true
+            val mediaId = mediaIdRegex.find(content)?.groupValues?.get(1)
             
             MediaMessage(
                 uri = uri,
@@ -94,7 +97,8 @@ private fun parseMediaContent(content: String): MediaMessage? {
                 width = width,
                 height = height,
                 thumbnailUri = thumbnailUri,
-                isLocal = isLocal
+                isLocal = isLocal,
+                mediaId = mediaId
             )
         } else {
             null
@@ -19,6 +19,21 @@ data class Message(
     val disappearingMessageTimer: Long? = null, // Timer in milliseconds, null means no expiration
     val expiresAt: Date? = null, // When the message should be deleted
     val isDisappearing: Boolean = false
+) {
+    companion object {
+        // Sender id stamped on messages sent from this device until the
+        // session supplies the account id; never a remote sender
+        const val LOCAL_SENDER_ID = "current_user"
+    }
+}
+
+/**
+ * A disappearing message that was deleted when its timer ran out
+ */
+data class ExpiredMessage(
+    val id: String,
+    val chatId: String,
+    val expiresAt: Long
 )
 
 enum class MessageType {
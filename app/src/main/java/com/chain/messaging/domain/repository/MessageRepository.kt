@@ -1,5 +1,6 @@
 package com.chain.messaging.domain.repository
 
+import com.chain.messaging.domain.model.ExpiredMessage
 import com.chain.messaging.domain.model.Message
 import kotlinx.coroutines.flow.Flow
 
@@ -68,6 +69,16 @@ interface MessageRepository {
      */
     suspend fun deleteExpiredMessages(currentTime: Long): Int
     
+    /**
+     * Earliest expiry time after [time], or null when no disappearing message expires later
+     */
+    suspend fun getNextExpiryAfter(time: Long): Long?
+    
+    /**
+     * Delete at most [limit] messages that expired by [currentTime], earliest first
+     */
+    suspend fun deleteExpiredBatch(currentTime: Long, limit: Int): List<ExpiredMessage>
+    
     /**
      * Observe all disappearing messages
      */
@@ -22,7 +22,7 @@ class SendMessageUseCase @Inject constructor(
         replyToMessageId: String? = null
     ): Result<Message> {
         // For now, use a default sender ID - in production this would come from auth service
-        val senderId = "current_user"
+        val senderId = Message.LOCAL_SENDER_ID
         
         return sendMessageWithDisappearing(
             chatId = chatId,
@@ -39,6 +39,27 @@ class TypingIndicatorUseCase @Inject constructor(
         return typingIndicatorService.typingUsers
     }
     
+    /**
+     * Observes users typing in one chat
+     */
+    fun observeTypingUsers(chatId: String): StateFlow<Set<String>> {
+        return typingIndicatorService.observeTypingUsers(chatId)
+    }
+    
+    /**
+     * Reports a keystroke by the local user in a chat
+     */
+    fun onLocalTyping(chatId: String) {
+        typingIndicatorService.onLocalTyping(chatId)
+    }
+    
+    /**
+     * Reports that the local user stopped typing in a chat
+     */
+    fun onLocalTypingStopped(chatId: String) {
+        typingIndicatorService.onLocalTypingStopped(chatId)
+    }
+    
     /**
      * Sets user online status
      */
@@ -13,6 +13,7 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.tooling.preview.Preview
 import androidx.navigation.compose.rememberNavController
 import com.chain.messaging.core.cloud.OAuthCallbackHandler
+import com.chain.messaging.core.notification.NotificationService
 import com.chain.messaging.presentation.navigation.ChainNavigation
 import com.chain.messaging.presentation.theme.ChainTheme
 import dagger.hilt.android.AndroidEntryPoint
@@ -28,11 +29,15 @@ class MainActivity : ComponentActivity() {
     @Inject
     lateinit var oAuthCallbackHandler: OAuthCallbackHandler
     
+    @Inject
+    lateinit var notificationService: NotificationService
+    
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         
         // Handle OAuth callback if present
         handleOAuthCallback(intent)
+        handleChatNotificationOpened(intent)
         
         setContent {
             ChainTheme {
@@ -48,12 +53,22 @@ class MainActivity : ComponentActivity() {
     
     override fun onNewIntent(intent: Intent?) {
         super.onNewIntent(intent)
-        intent?.let { handleOAuthCallback(it) }
+        intent?.let {
+            handleOAuthCallback(it)
+            handleChatNotificationOpened(it)
+        }
     }
     
     private fun handleOAuthCallback(intent: Intent) {
         oAuthCallbackHandler.handleCallback(intent)
     }
+    
+    /**
+     * A chat notification auto-cancels when tapped, so forget it here
+     */
+    private fun handleChatNotificationOpened(intent: Intent) {
+        intent.getStringExtra("chat_id")?.let { notificationService.onChatNotificationRemoved(it) }
+    }
 }
 
 @Composable
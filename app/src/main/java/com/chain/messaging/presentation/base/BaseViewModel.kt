@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.base
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -12,6 +13,10 @@ import kotlinx.coroutines.launch
  */
 abstract class BaseViewModel<T : UiState> : ViewModel() {
     
+    init {
+        watchLifetime()
+    }
+    
     protected abstract val initialState: T
     
     private val _uiState = MutableStateFlow(initialState)
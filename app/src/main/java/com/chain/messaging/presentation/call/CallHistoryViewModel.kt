@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.call
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.domain.model.CallNotification
 import com.chain.messaging.domain.repository.CallNotificationRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -22,6 +23,7 @@ class CallHistoryViewModel @Inject constructor(
     val uiState: StateFlow<CallHistoryUiState> = _uiState.asStateFlow()
 
     init {
+        watchLifetime()
         // Observe call notifications for real-time updates
         viewModelScope.launch {
             callNotificationRepository.observeCallNotifications().collect { notifications ->
@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.call
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.webrtc.*
 import com.chain.messaging.domain.model.CallEvent
 import com.chain.messaging.domain.model.CallSession
@@ -33,6 +34,7 @@ class CallViewModel @Inject constructor(
     private var eglBase: EglBase? = null
     
     init {
+        watchLifetime()
         // Initialize EGL context for video rendering
         eglBase = EglBase.create()
         _uiState.value = _uiState.value.copy(eglBaseContext = eglBase?.eglBaseContext)
@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.call
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.webrtc.CallManager
 import com.chain.messaging.core.webrtc.CallNotificationService
 import com.chain.messaging.core.webrtc.PendingCall
@@ -22,6 +23,10 @@ class IncomingCallViewModel @Inject constructor(
     private val callNotificationService: CallNotificationService
 ) : ViewModel() {
     
+    init {
+        watchLifetime()
+    }
+    
     private val _uiState = MutableStateFlow(IncomingCallUiState())
     val uiState: StateFlow<IncomingCallUiState> = _uiState.asStateFlow()
     
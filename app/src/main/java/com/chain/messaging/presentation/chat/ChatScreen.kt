@@ -16,6 +16,7 @@ import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalView
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.unit.dp
 import androidx.hilt.navigation.compose.hiltViewModel
@@ -49,6 +50,20 @@ fun ChatScreen(
         viewModel.loadMessages(chatId)
     }
     
+    // Measure frame pacing only while the message list is scrolling
+    val view = LocalView.current
+    LaunchedEffect(listState) {
+        val jankMonitor = viewModel.scrollJankMonitor
+        view.display?.let { jankMonitor.setRefreshRate(it.refreshRate) }
+        try {
+            snapshotFlow { listState.isScrollInProgress }.collect { scrolling ->
+                if (scrolling) jankMonitor.start() else jankMonitor.stop()
+            }
+        } finally {
+            jankMonitor.stop()
+        }
+    }
+    
     // Auto-scroll to bottom when new messages arrive
     LaunchedEffect(uiState.messages.size) {
         if (uiState.messages.isNotEmpty()) {
@@ -66,11 +81,19 @@ fun ChatScreen(
         // Top App Bar
         TopAppBar(
             title = {
-                Text(
-                    text = chatName,
-                    style = MaterialTheme.typography.titleLarge,
-                    fontWeight = FontWeight.SemiBold
-                )
+                Column {
+                    Text(
+                        text = chatName,
+                        style = MaterialTheme.typography.titleLarge,
+                        fontWeight = FontWeight.SemiBold
+                    )
+                    if (uiState.typingUsers.isNotEmpty()) {
+                        Text(
+                            text = "typing...",
+                            style = MaterialTheme.typography.bodySmall
+                        )
+                    }
+                }
             },
             navigationIcon = {
                 IconButton(onClick = onBackClick) {
@@ -177,6 +200,9 @@ fun ChatScreen(
             },
             onClearReply = {
                 viewModel.clearReplyToMessage()
+            },
+            onDraftChanged = { draft ->
+                viewModel.onDraftChanged(chatId, draft)
             }
         )
     }
@@ -2,13 +2,17 @@ package com.chain.messaging.presentation.chat
 
 import android.net.Uri
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.audio.VoiceNoteManifest
 import com.chain.messaging.core.auth.AuthenticationService
 import com.chain.messaging.core.media.MediaHandler
+import com.chain.messaging.core.performance.metrics.FrameJankMonitor
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.usecase.AddReactionUseCase
 import com.chain.messaging.domain.usecase.GetMessagesUseCase
 import com.chain.messaging.domain.usecase.SendMessageUseCase
+import com.chain.messaging.domain.usecase.TypingIndicatorUseCase
 import com.chain.messaging.presentation.base.BaseViewModel
 import com.chain.messaging.presentation.base.UiState
 import com.chain.messaging.presentation.media.MediaPickerType
@@ -28,12 +32,23 @@ class ChatViewModel @Inject constructor(
     private val sendMessageUseCase: SendMessageUseCase,
     private val addReactionUseCase: AddReactionUseCase,
     private val mediaHandler: MediaHandler,
-    private val authenticationService: AuthenticationService
+    private val authenticationService: AuthenticationService,
+    private val typingIndicatorUseCase: TypingIndicatorUseCase,
+    metricsRegistry: MetricsRegistry
 ) : BaseViewModel<ChatUiState>() {
     
     override val initialState = ChatUiState()
     
+    // Frame pacing of the message list, driven by the screen while it scrolls
+    val scrollJankMonitor = FrameJankMonitor(metricsRegistry)
+    
     fun loadMessages(chatId: String) {
+        launchSafe {
+            typingIndicatorUseCase.observeTypingUsers(chatId).collect { typingUsers ->
+                updateState { copy(typingUsers = typingUsers) }
+            }
+        }
+        
         launchSafe {
             updateState { copy(isLoading = true, error = null) }
             
@@ -53,8 +68,20 @@ class ChatViewModel @Inject constructor(
         }
     }
     
+    /**
+     * Called on every edit of the draft; the typing engine throttles what is sent
+     */
+    fun onDraftChanged(chatId: String, draft: String) {
+        if (draft.isBlank()) {
+            typingIndicatorUseCase.onLocalTypingStopped(chatId)
+        } else {
+            typingIndicatorUseCase.onLocalTyping(chatId)
+        }
+    }
+    
     fun sendMessage(chatId: String, content: String) {
         val replyToMessageId = uiState.value.replyToMessage?.id
+        typingIndicatorUseCase.onLocalTypingStopped(chatId)
         
         launchSafe {
             sendMessageUseCase(
@@ -125,7 +152,8 @@ class ChatViewModel @Inject constructor(
                             "width": ${mediaMessage.width},
                             "height": ${mediaMessage.height},
                             "thumbnailUri": ${mediaMessage.thumbnailUri?.let { "\"$it\"" } ?: "null"},
-                            "isLocal": ${mediaMessage.isLocal}
+                            "isLocal": ${mediaMessage.isLocal},
+                            "mediaId": ${mediaMessage.mediaId?.let { "\"$it\"" } ?: "null"}
                         }
                     """.trimIndent()
                     
@@ -180,20 +208,24 @@ class ChatViewModel @Inject constructor(
                 return@launchSafe
             }
             
+            // A note streamed while recording is already uploaded; its manifest is all that is left to send
+            val manifest = VoiceNoteManifest.read(voiceFile.absolutePath)
+            
             // Create MediaMessage for voice file
-            val duration = extractAudioDuration(voiceFile)
+            val duration = manifest?.durationMs ?: extractAudioDuration(voiceFile)
             
             val mediaContent = """
                 {
                     "uri": "${voiceFile.absolutePath}",
                     "fileName": "${voiceFile.name}",
-                    "mimeType": "audio/mp4",
+                    "mimeType": "${manifest?.mimeType ?: "audio/mp4"}",
                     "fileSize": ${voiceFile.length()},
                     "duration": $duration,
                     "width": null,
                     "height": null,
                     "thumbnailUri": null,
-                    "isLocal": true
+                    "isLocal": true,
+                    "manifest": ${manifest?.toJson() ?: "null"}
                 }
             """.trimIndent()
             
@@ -256,5 +288,6 @@ data class ChatUiState(
     val messages: List<Message> = emptyList(),
     val replyToMessage: Message? = null,
     val currentUserId: String? = null,
+    val typingUsers: Set<String> = emptySet(),
     val error: String? = null
 ) : UiState
\ No newline at end of file
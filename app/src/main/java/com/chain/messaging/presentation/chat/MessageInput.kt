@@ -35,7 +35,8 @@ fun MessageInput(
     onSendMessage: (String) -> Unit,
     onSendMedia: (Uri, MediaPickerType) -> Unit,
     onSendVoiceMessage: (String) -> Unit,
-    onClearReply: () -> Unit
+    onClearReply: () -> Unit,
+    onDraftChanged: (String) -> Unit = {}
 ) {
     var messageText by remember { mutableStateOf("") }
     var showMediaPicker by remember { mutableStateOf(false) }
@@ -77,7 +78,10 @@ fun MessageInput(
             // Text input field
             OutlinedTextField(
                 value = messageText,
-                onValueChange = { messageText = it },
+                onValueChange = {
+                    messageText = it
+                    onDraftChanged(it)
+                },
                 modifier = Modifier.weight(1f),
                 placeholder = {
                     Text(
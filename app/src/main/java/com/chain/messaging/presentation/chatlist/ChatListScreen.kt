@@ -1,5 +1,6 @@
 package com.chain.messaging.presentation.chatlist
 
+import androidx.activity.compose.ReportDrawnWhen
 import androidx.compose.animation.AnimatedVisibility
 import androidx.compose.foundation.ExperimentalFoundationApi
 import androidx.compose.foundation.background
@@ -27,6 +28,7 @@ import androidx.compose.ui.text.style.TextOverflow
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
+import com.chain.messaging.core.integration.StartupTimeline
 import com.chain.messaging.domain.model.Chat
 import com.chain.messaging.domain.model.ChatType
 import com.chain.messaging.domain.model.MessageStatus
@@ -50,6 +52,12 @@ fun ChatListScreen(
     var showSearchBar by remember { mutableStateOf(false) }
     var showSortMenu by remember { mutableStateOf(false) }
     
+    // Cold start ends when the first page of chats is on screen
+    ReportDrawnWhen { uiState.hasLoadedOnce }
+    LaunchedEffect(uiState.hasLoadedOnce) {
+        if (uiState.hasLoadedOnce) StartupTimeline.mark(StartupTimeline.FIRST_CHAT_LIST)
+    }
+    
     Column(
         modifier = Modifier
             .fillMaxSize()
@@ -71,6 +71,7 @@ class ChatListViewModel @Inject constructor(
                 updateState { 
                     copy(
                         isLoading = false,
+                        hasLoadedOnce = true,
                         chats = chats,
                         error = null
                     )
@@ -221,6 +222,7 @@ class ChatListViewModel @Inject constructor(
         updateState { 
             copy(
                 isLoading = false,
+                hasLoadedOnce = true,
                 error = error.message ?: "Unknown error occurred"
             )
         }
@@ -232,6 +234,7 @@ class ChatListViewModel @Inject constructor(
  */
 data class ChatListUiState(
     val isLoading: Boolean = false,
+    val hasLoadedOnce: Boolean = false,
     val chats: List<Chat> = emptyList(),
     val filteredChats: List<Chat> = emptyList(),
     val searchQuery: String = "",
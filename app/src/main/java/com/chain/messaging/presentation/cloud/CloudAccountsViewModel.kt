@@ -6,6 +6,7 @@ import com.chain.messaging.core.cloud.AuthResult
 import com.chain.messaging.core.cloud.CloudAccount
 import com.chain.messaging.core.cloud.CloudAuthManager
 import com.chain.messaging.core.cloud.CloudService
+import com.chain.messaging.core.performance.memory.watchLifetime
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
@@ -22,6 +23,7 @@ class CloudAccountsViewModel @Inject constructor(
     val uiState: StateFlow<CloudAccountsUiState> = _uiState.asStateFlow()
     
     init {
+        watchLifetime()
         loadAccounts()
         observeAuthState()
     }
@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.cloud
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.cloud.*
+import com.chain.messaging.core.performance.memory.watchLifetime
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
@@ -21,6 +22,7 @@ class StorageManagementViewModel @Inject constructor(
     val uiState: StateFlow<StorageManagementUiState> = _uiState.asStateFlow()
     
     init {
+        watchLifetime()
         loadStorageInfo()
         observeQuotaAlerts()
     }
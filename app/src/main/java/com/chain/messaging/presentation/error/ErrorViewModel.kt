@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.error
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.error.*
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.util.Logger
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.*
@@ -24,6 +25,7 @@ class ErrorViewModel @Inject constructor(
     private val dismissedErrors = mutableSetOf<Long>()
     
     init {
+        watchLifetime()
         // Collect error events
         errorHandler.errorEvents
             .onEach { errorEvent ->
@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.group
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.group.GroupManager
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.domain.model.GroupPermissions
 import com.chain.messaging.domain.model.isOnline
 import com.chain.messaging.domain.repository.UserRepository
@@ -23,6 +24,7 @@ class GroupCreationViewModel @Inject constructor(
     val uiState: StateFlow<GroupCreationUiState> = _uiState.asStateFlow()
     
     init {
+        watchLifetime()
         loadContacts()
     }
     
@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.group
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.group.GroupManager
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.domain.model.isOnline
 import com.chain.messaging.domain.repository.UserRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -18,6 +19,10 @@ class GroupSettingsViewModel @Inject constructor(
     private val userRepository: UserRepository
 ) : ViewModel() {
     
+    init {
+        watchLifetime()
+    }
+    
     private val _uiState = MutableStateFlow(GroupSettingsUiState())
     val uiState: StateFlow<GroupSettingsUiState> = _uiState.asStateFlow()
     
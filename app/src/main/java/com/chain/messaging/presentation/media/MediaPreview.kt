@@ -15,10 +15,13 @@ import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.layout.ContentScale
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.text.style.TextOverflow
+import androidx.compose.ui.unit.Dp
 import androidx.compose.ui.unit.dp
 import coil.compose.AsyncImage
 import coil.request.ImageRequest
+import com.chain.messaging.core.media.cache.MediaRendition
 import com.chain.messaging.domain.model.MediaMessage
 import com.chain.messaging.domain.model.MediaType
 
@@ -36,7 +39,7 @@ fun MediaPreview(
     Card(
         modifier = modifier
             .clickable { onClick() }
-            .widthIn(max = 250.dp),
+            .widthIn(max = PREVIEW_MAX_WIDTH),
         shape = RoundedCornerShape(12.dp)
     ) {
         when (mediaType) {
@@ -67,10 +70,7 @@ private fun ImagePreview(
 ) {
     Box {
         AsyncImage(
-            model = ImageRequest.Builder(LocalContext.current)
-                .data(mediaMessage.uri)
-                .crossfade(true)
-                .build(),
+            model = previewRequest(mediaMessage, mediaMessage.uri),
             contentDescription = "Image message",
             modifier = Modifier
                 .fillMaxWidth()
@@ -103,13 +103,11 @@ private fun VideoPreview(
     onClick: () -> Unit
 ) {
     Box {
-        // Use thumbnail if available, otherwise show video icon
-        if (mediaMessage.thumbnailUri != null) {
+        // Use the thumbnail, or a frame of a local video, otherwise show video icon
+        val framePath = mediaMessage.thumbnailUri ?: mediaMessage.uri.takeIf { mediaMessage.isLocal || mediaMessage.mediaId != null }
+        if (framePath != null) {
             AsyncImage(
-                model = ImageRequest.Builder(LocalContext.current)
-                    .data(mediaMessage.thumbnailUri)
-                    .crossfade(true)
-                    .build(),
+                model = previewRequest(mediaMessage, framePath),
                 contentDescription = "Video thumbnail",
                 modifier = Modifier
                     .fillMaxWidth()
@@ -168,6 +166,29 @@ private fun VideoPreview(
     }
 }
 
+/**
+ * Stored and local media load as a rendition sized for the bubble rather than
+ * at full resolution; remote media goes through Coil as before
+ */
+@Composable
+private fun previewRequest(mediaMessage: MediaMessage, path: String): ImageRequest {
+    val sizePx = with(LocalDensity.current) { PREVIEW_MAX_WIDTH.roundToPx() }
+    return ImageRequest.Builder(LocalContext.current)
+        .data(mediaImageData(mediaMessage, path, sizePx))
+        .crossfade(true)
+        .build()
+}
+
+/**
+ * Coil request data for [mediaMessage]. Stored media is decrypted as it
+ * streams through the rendition cache, never to a plaintext file.
+ */
+internal fun mediaImageData(mediaMessage: MediaMessage, path: String, sizePx: Int): Any = when {
+    mediaMessage.mediaId != null -> MediaRendition.stored(mediaMessage.mediaId, sizePx)
+    mediaMessage.isLocal -> MediaRendition.localFile(path, sizePx)
+    else -> path
+}
+
 @Composable
 private fun AudioPreview(
     mediaMessage: MediaMessage,
@@ -266,6 +287,8 @@ private fun DocumentPreview(
     }
 }
 
+private val PREVIEW_MAX_WIDTH: Dp = 250.dp
+
 private fun formatFileSize(bytes: Long): String {
     val kb = bytes / 1024.0
     val mb = kb / 1024.0
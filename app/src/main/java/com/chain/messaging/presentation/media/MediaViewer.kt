@@ -53,7 +53,7 @@ fun MediaViewer(
                 MediaType.IMAGE -> {
                     AsyncImage(
                         model = ImageRequest.Builder(LocalContext.current)
-                            .data(mediaMessage.uri)
+                            .data(mediaImageData(mediaMessage, mediaMessage.uri, FULL_SCREEN_SIZE_PX))
                             .crossfade(true)
                             .build(),
                         contentDescription = "Full screen image",
@@ -183,4 +183,7 @@ private fun formatFileSize(bytes: Long): String {
         kb >= 1 -> "%.1f KB".format(kb)
         else -> "$bytes B"
     }
-}
\ No newline at end of file
+}
+
+// Largest rendition bucket; enough for a full-screen image on most displays
+private const val FULL_SCREEN_SIZE_PX = 2048
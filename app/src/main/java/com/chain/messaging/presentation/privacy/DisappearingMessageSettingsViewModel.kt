@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.privacy
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.privacy.DisappearingMessageManager
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -22,6 +23,7 @@ class DisappearingMessageSettingsViewModel @Inject constructor(
     val uiState: StateFlow<DisappearingMessageSettingsUiState> = _uiState.asStateFlow()
     
     init {
+        watchLifetime()
         loadAvailableTimers()
     }
     
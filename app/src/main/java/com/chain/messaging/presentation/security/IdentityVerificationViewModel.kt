@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.security
 import android.graphics.Bitmap
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.security.IdentityVerificationManager
 import com.chain.messaging.core.security.QRCodeScanner
 import com.chain.messaging.domain.model.ScanResult
@@ -39,6 +40,7 @@ class IdentityVerificationViewModel @Inject constructor(
     val safetyNumber: StateFlow<String?> = _safetyNumber.asStateFlow()
     
     init {
+        watchLifetime()
         observeVerificationState()
         observeSecurityAlerts()
     }
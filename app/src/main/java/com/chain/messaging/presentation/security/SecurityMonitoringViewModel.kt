@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.security
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.security.*
 import com.chain.messaging.domain.model.SecurityAlert
 import com.chain.messaging.domain.model.SecurityRecommendation
@@ -24,6 +25,7 @@ class SecurityMonitoringViewModel @Inject constructor(
     val alerts: StateFlow<List<SecurityAlert>> = _alerts.asStateFlow()
     
     init {
+        watchLifetime()
         observeSecurityStatus()
         observeSecurityAlerts()
         loadInitialData()
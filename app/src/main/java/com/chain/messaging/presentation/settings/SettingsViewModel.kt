@@ -4,6 +4,7 @@ import android.net.Uri
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.auth.AuthenticationService
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.profile.ProfileImageManager
 import com.chain.messaging.domain.model.*
 import com.chain.messaging.domain.usecase.GetUserSettingsUseCase
@@ -30,6 +31,7 @@ class SettingsViewModel @Inject constructor(
     private val _currentUserId = MutableStateFlow<String?>(null)
     
     init {
+        watchLifetime()
         // Observe settings changes
         _currentUserId.filterNotNull().flatMapLatest { userId ->
             getUserSettingsUseCase.asFlow(userId)
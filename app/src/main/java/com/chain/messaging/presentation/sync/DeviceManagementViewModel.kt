@@ -2,6 +2,7 @@ package com.chain.messaging.presentation.sync
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.chain.messaging.core.performance.memory.watchLifetime
 import com.chain.messaging.core.sync.*
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.*
@@ -21,6 +22,7 @@ class DeviceManagementViewModel @Inject constructor(
     val uiState: StateFlow<DeviceManagementUiState> = _uiState.asStateFlow()
     
     init {
+        watchLifetime()
         viewModelScope.launch {
             // Initialize sync service
             crossDeviceSyncService.initialize()
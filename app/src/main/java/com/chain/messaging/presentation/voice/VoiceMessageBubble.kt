@@ -44,6 +44,7 @@ fun VoiceMessageBubble(
     val currentPosition by viewModel.currentPosition.collectAsStateWithLifecycle()
     val duration by viewModel.duration.collectAsStateWithLifecycle()
     val waveformData by viewModel.waveformData.collectAsStateWithLifecycle()
+    val waveformBars = remember(waveformData) { waveformData.bars(WAVEFORM_BAR_COUNT) }
     
     val isCurrentlyPlaying = viewModel.isPlayingFile(mediaMessage.uri)
     
@@ -122,7 +123,7 @@ fun VoiceMessageBubble(
             ) {
                 // Waveform visualization
                 VoiceWaveform(
-                    waveformData = waveformData,
+                    bars = waveformBars,
                     progress = if (duration > 0) currentPosition.toFloat() / duration.toFloat() else 0f,
                     isPlaying = isCurrentlyPlaying && playbackState == PlaybackState.PLAYING,
                     color = if (isFromCurrentUser) Color.White else MaterialTheme.colorScheme.primary,
@@ -170,7 +171,7 @@ fun VoiceMessageBubble(
  */
 @Composable
 private fun VoiceWaveform(
-    waveformData: List<Float>,
+    bars: FloatArray,
     progress: Float,
     isPlaying: Boolean,
     color: Color,
@@ -184,7 +185,7 @@ private fun VoiceWaveform(
     
     Canvas(modifier = modifier) {
         drawVoiceWaveform(
-            waveformData = waveformData,
+            bars = bars,
             progress = animatedProgress,
             isPlaying = isPlaying,
             color = color,
@@ -197,7 +198,7 @@ private fun VoiceWaveform(
  * Draw voice waveform on canvas
  */
 private fun drawVoiceWaveform(
-    waveformData: List<Float>,
+    bars: FloatArray,
     progress: Float,
     isPlaying: Boolean,
     color: Color,
@@ -207,7 +208,7 @@ private fun drawVoiceWaveform(
     val height = drawScope.size.height
     val centerY = height / 2
     
-    if (waveformData.isEmpty()) {
+    if (bars.isEmpty()) {
         // Draw placeholder bars
         val barCount = 30
         val barWidth = width / barCount
@@ -233,12 +234,12 @@ private fun drawVoiceWaveform(
         }
     } else {
         // Draw actual waveform data
-        val barCount = waveformData.size
+        val barCount = bars.size
         val barWidth = width / barCount
         val barSpacing = barWidth * 0.1f
         val actualBarWidth = barWidth - barSpacing
         
-        waveformData.forEachIndexed { index, amplitude ->
+        bars.forEachIndexed { index, amplitude ->
             val x = index * barWidth + barSpacing / 2
             val barHeight = amplitude * height * 0.8f
             
@@ -258,6 +259,9 @@ private fun drawVoiceWaveform(
     }
 }
 
+// Bars drawn per bubble, whatever the length of the message
+private const val WAVEFORM_BAR_COUNT = 40
+
 /**
  * Format duration in MM:SS format
  */
@@ -4,6 +4,8 @@ import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.audio.VoiceMessageProcessor
 import com.chain.messaging.core.audio.VoicePlayer
+import com.chain.messaging.core.audio.Waveform
+import com.chain.messaging.core.performance.memory.watchLifetime
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
@@ -21,8 +23,12 @@ class VoicePlayerViewModel @Inject constructor(
     private val voiceMessageProcessor: VoiceMessageProcessor
 ) : ViewModel() {
     
-    private val _waveformData = MutableStateFlow<List<Float>>(emptyList())
-    val waveformData: StateFlow<List<Float>> = _waveformData.asStateFlow()
+    init {
+        watchLifetime()
+    }
+    
+    private val _waveformData = MutableStateFlow(Waveform.EMPTY)
+    val waveformData: StateFlow<Waveform> = _waveformData.asStateFlow()
     
     private val _error = MutableStateFlow<String?>(null)
     val error: StateFlow<String?> = _error.asStateFlow()
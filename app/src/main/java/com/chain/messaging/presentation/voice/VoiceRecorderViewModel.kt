@@ -9,12 +9,19 @@ import androidx.lifecycle.viewModelScope
 import com.chain.messaging.core.audio.CompressionLevel
 import com.chain.messaging.core.audio.RecordingState
 import com.chain.messaging.core.audio.VoiceMessageProcessor
+import com.chain.messaging.core.audio.VoiceNoteManifest
+import com.chain.messaging.core.audio.VoiceNoteStream
+import com.chain.messaging.core.audio.VoiceNoteStreamer
 import com.chain.messaging.core.audio.VoiceRecorder
+import com.chain.messaging.core.performance.memory.watchLifetime
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import javax.inject.Inject
 
 /**
@@ -23,9 +30,13 @@ import javax.inject.Inject
 @HiltViewModel
 class VoiceRecorderViewModel @Inject constructor(
     private val voiceRecorder: VoiceRecorder,
-    private val voiceMessageProcessor: VoiceMessageProcessor
+    private val voiceMessageProcessor: VoiceMessageProcessor,
+    private val voiceNoteStreamer: VoiceNoteStreamer
 ) : ViewModel() {
     
+    // Upload of the recording in progress, when streaming is available
+    private var activeStream: VoiceNoteStream? = null
+    
     private val _hasPermission = MutableStateFlow(false)
     val hasPermission: StateFlow<Boolean> = _hasPermission.asStateFlow()
     
@@ -41,6 +52,7 @@ class VoiceRecorderViewModel @Inject constructor(
     val duration = voiceRecorder.duration
     
     init {
+        watchLifetime()
         // Monitor amplitude changes to update waveform
         viewModelScope.launch {
             amplitude.collect { amp ->
@@ -71,8 +83,11 @@ class VoiceRecorderViewModel @Inject constructor(
         }
         
         viewModelScope.launch {
-            voiceRecorder.startRecording()
+            val stream = voiceNoteStreamer.open()
+            voiceRecorder.startRecording(stream?.let { it::onFrame })
+                .onSuccess { activeStream = stream }
                 .onFailure { exception ->
+                    stream?.cancel()
                     _error.value = "Failed to start recording: ${exception.message}"
                 }
         }
@@ -83,12 +98,17 @@ class VoiceRecorderViewModel @Inject constructor(
      */
     fun stopRecording(onComplete: (String) -> Unit) {
         viewModelScope.launch {
+            val stream = activeStream
+            activeStream = null
             voiceRecorder.stopRecording()
                 .onSuccess { recordingResult ->
-                    // Process the recording
+                    // Most of a streamed note is uploaded already; only the tail goes out now
+                    val streamed = stream?.let { finishStream(it, recordingResult.file.absolutePath) } ?: false
+                    
+                    // Streamed chunks must match the local file, so it is not re-encoded
                     voiceMessageProcessor.processVoiceMessage(
                         recordingResult,
-                        CompressionLevel.MEDIUM
+                        if (streamed) CompressionLevel.NONE else CompressionLevel.MEDIUM
                     ).onSuccess { mediaMessage ->
                         onComplete(mediaMessage.uri)
                         clearWaveform()
@@ -97,16 +117,36 @@ class VoiceRecorderViewModel @Inject constructor(
                     }
                 }
                 .onFailure { exception ->
+                    stream?.cancel()
                     _error.value = "Failed to stop recording: ${exception.message}"
                 }
         }
     }
     
+    /**
+     * Complete [stream] and keep its manifest next to the recording for the
+     * send path. Returns false if the note has to be sent whole instead.
+     */
+    private suspend fun finishStream(stream: VoiceNoteStream, audioPath: String): Boolean {
+        return try {
+            val manifest = stream.finish()
+            withContext(Dispatchers.IO) { manifest.writeTo(VoiceNoteManifest.sidecarFor(audioPath)) }
+            true
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            stream.cancel()
+            false
+        }
+    }
+    
     /**
      * Cancel current recording
      */
     fun cancelRecording() {
         viewModelScope.launch {
+            activeStream?.cancel()
+            activeStream = null
             voiceRecorder.cancelRecording()
                 .onFailure { exception ->
                     _error.value = "Failed to cancel recording: ${exception.message}"
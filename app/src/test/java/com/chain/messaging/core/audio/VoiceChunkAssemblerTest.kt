@@ -0,0 +1,72 @@
+package com.chain.messaging.core.audio
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.EOFException
+
+/**
+ * Unit tests for AdtsFrameReader and VoiceChunkAssembler
+ */
+class VoiceChunkAssemblerTest {
+
+    @Test
+    fun `reader should split an adts stream into whole frames`() {
+        // Given
+        val frames = listOf(frame(100, fill = 1), frame(250, fill = 2), frame(10, fill = 3))
+        val stream = frames.reduce { acc, bytes -> acc + bytes }
+
+        // When
+        val reader = AdtsFrameReader(ByteArrayInputStream(stream))
+        val read = generateSequence { reader.read() }.toList()
+
+        // Then
+        assertEquals(3, read.size)
+        frames.zip(read).forEach { (expected, actual) -> assertArrayEquals(expected, actual) }
+    }
+
+    @Test
+    fun `header fields should round trip`() {
+        // Given
+        val frame = frame(365, sampleRate = 16_000)
+
+        // Then
+        assertEquals(372, AdtsFrameReader.frameLength(frame, 0))
+        assertEquals(16_000, AdtsFrameReader.sampleRate(frame, 0))
+        assertEquals(64_000L, AdtsFrameReader.frameDurationUs(frame, 0))
+    }
+
+    @Test(expected = EOFException::class)
+    fun `reader should reject a truncated frame`() {
+        // Given
+        val truncated = frame(100).copyOf(50)
+
+        // When
+        AdtsFrameReader(ByteArrayInputStream(truncated)).read()
+    }
+
+    @Test
+    fun `assembler should cut chunks on frame boundaries once the duration is reached`() {
+        // Given - 16 kHz frames are 64 ms, so a 1 s chunk closes on the 16th frame
+        val assembler = VoiceChunkAssembler(chunkDurationMs = 1_000)
+        val frame = frame(50, sampleRate = 16_000)
+
+        // When
+        val chunks = (0 until 40).mapNotNull { assembler.add(frame) }
+        val trailing = assembler.flush()
+
+        // Then
+        assertEquals(2, chunks.size)
+        assertEquals(listOf(0, 1), chunks.map { it.index })
+        assertEquals(16, chunks[0].frameCount)
+        assertEquals(16 * frame.size, chunks[0].bytes.size)
+        assertEquals(1_024_000L, chunks[0].durationUs)
+        assertNotNull(trailing)
+        assertEquals(2, trailing!!.index)
+        assertEquals(8, trailing.frameCount)
+        assertNull(assembler.flush())
+    }
+
+    private fun frame(payloadBytes: Int, sampleRate: Int = 44_100, fill: Int = 0): ByteArray =
+        AdtsFrameReader.header(payloadBytes, sampleRate, channelCount = 1) + ByteArray(payloadBytes) { fill.toByte() }
+}
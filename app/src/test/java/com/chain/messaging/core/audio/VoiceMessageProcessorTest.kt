@@ -17,6 +17,7 @@ import java.io.File
 class VoiceMessageProcessorTest {
     
     private lateinit var context: Context
+    private lateinit var waveformExtractor: WaveformExtractor
     private lateinit var voiceMessageProcessor: VoiceMessageProcessor
     private lateinit var mockFile: File
     private lateinit var recordingResult: VoiceRecordingResult
@@ -24,6 +25,7 @@ class VoiceMessageProcessorTest {
     @Before
     fun setup() {
         context = mockk(relaxed = true)
+        waveformExtractor = mockk(relaxed = true)
         mockFile = mockk(relaxed = true)
         
         every { mockFile.exists() } returns true
@@ -38,7 +40,7 @@ class VoiceMessageProcessorTest {
             fileSize = 1024L
         )
         
-        voiceMessageProcessor = VoiceMessageProcessor(context)
+        voiceMessageProcessor = VoiceMessageProcessor(context, waveformExtractor)
     }
     
     @After
@@ -86,6 +88,31 @@ class VoiceMessageProcessorTest {
         assertEquals("audio/mp4", mediaMessage?.mimeType)
     }
     
+    @Test
+    fun `processVoiceMessage uses the waveform built while recording`() = runTest {
+        // Given
+        val recorded = recordingResult.copy(
+            waveform = WaveformBuilder().apply { addLevel(0.4f) }.build()
+        )
+        
+        // When
+        val result = voiceMessageProcessor.processVoiceMessage(recorded, CompressionLevel.NONE)
+        
+        // Then
+        assertTrue(result.isSuccess)
+        coVerify(exactly = 0) { waveformExtractor.extract(any(), any()) }
+    }
+    
+    @Test
+    fun `processVoiceMessage extracts the waveform when none was recorded`() = runTest {
+        // When
+        val result = voiceMessageProcessor.processVoiceMessage(recordingResult, CompressionLevel.NONE)
+        
+        // Then
+        assertTrue(result.isSuccess)
+        coVerify { waveformExtractor.extract(mockFile, any()) }
+    }
+    
     @Test
     fun `loadWaveformData returns empty list when file not found`() = runTest {
         // Given
@@ -0,0 +1,151 @@
+package com.chain.messaging.core.audio
+
+import com.chain.messaging.core.cloud.CloudService
+import com.chain.messaging.core.cloud.EncryptedLink
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.runTest
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeout
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.time.Instant
+import java.util.Collections
+
+/**
+ * Unit tests for VoiceNoteStream
+ */
+class VoiceNoteStreamTest {
+
+    private lateinit var stagingDir: File
+    private lateinit var uploader: FakeUploader
+
+    // 16 kHz frames are 64 ms, so 16 of them fill a 1 s chunk
+    private val frame = AdtsFrameReader.header(40, 16_000, channelCount = 1) + ByteArray(40)
+
+    @Before
+    fun setup() {
+        stagingDir = Files.createTempDirectory("voice_stream").toFile()
+        uploader = FakeUploader()
+    }
+
+    @After
+    fun tearDown() {
+        stagingDir.deleteRecursively()
+    }
+
+    @Test
+    fun `chunks should upload while recording and finish should send only the tail`() = runTest {
+        // Given
+        val stream = stream()
+        repeat(40) { stream.onFrame(frame) }
+        awaitUploads(stream)
+        val uploadedWhileRecording = uploader.uploaded.toList()
+
+        // When
+        val manifest = stream.finish()
+
+        // Then
+        assertEquals(listOf("note_0.aac", "note_1.aac"), uploadedWhileRecording)
+        assertEquals("note_2.aac", uploader.uploaded.last())
+        assertEquals(listOf(0, 1, 2), manifest.chunks.map { it.index })
+        assertEquals(40L * 64, manifest.durationMs)
+        assertEquals(40L * frame.size, manifest.sizeBytes)
+        assertEquals(VoiceNoteManifest.MIME_TYPE, manifest.mimeType)
+        assertFalse(stagingDir.exists())
+    }
+
+    @Test
+    fun `chunks that failed while recording should be retried on finish`() = runTest {
+        // Given
+        uploader.failuresLeft = 1
+        val stream = stream()
+        repeat(16) { stream.onFrame(frame) }
+        awaitUploads(stream)
+
+        // When
+        val manifest = stream.finish()
+
+        // Then
+        assertEquals(listOf(0), manifest.chunks.map { it.index })
+    }
+
+    @Test
+    fun `finish should fail when a chunk cannot be uploaded`() = runTest {
+        // Given
+        uploader.failuresLeft = Int.MAX_VALUE
+        val stream = stream()
+        repeat(20) { stream.onFrame(frame) }
+
+        // When
+        val error = runCatching { stream.finish() }.exceptionOrNull()
+
+        // Then
+        assertTrue(error is IOException)
+        assertFalse(stagingDir.exists())
+    }
+
+    @Test
+    fun `cancel should delete chunks that were already uploaded`() = runTest {
+        // Given
+        val stream = stream()
+        repeat(32) { stream.onFrame(frame) }
+        awaitUploads(stream)
+
+        // When
+        stream.cancel()
+
+        // Then
+        assertEquals(listOf("note_0.aac", "note_1.aac"), uploader.deleted.map { it.fileName })
+        assertFalse(stagingDir.exists())
+    }
+
+    private fun stream() = VoiceNoteStream(
+        noteId = "note",
+        stagingDir = stagingDir,
+        uploader = uploader,
+        chunkDurationMs = 1_000
+    )
+
+    // Uploads run on real threads, so wait in real time rather than test time
+    private suspend fun awaitUploads(stream: VoiceNoteStream) = withContext(Dispatchers.Default) {
+        withTimeout(5_000) {
+            while (stream.pendingUploads() > 0) delay(5)
+        }
+    }
+
+    private class FakeUploader : VoiceChunkUploader {
+        val uploaded: MutableList<String> = Collections.synchronizedList(mutableListOf())
+        val deleted: MutableList<EncryptedLink> = Collections.synchronizedList(mutableListOf())
+
+        @Volatile
+        var failuresLeft = 0
+
+        override suspend fun upload(file: File): EncryptedLink {
+            if (failuresLeft > 0) {
+                failuresLeft--
+                throw IOException("offline")
+            }
+            uploaded += file.name
+            return EncryptedLink(
+                url = "https://storage.test/${file.name}",
+                encryptionKey = "key",
+                service = CloudService.GOOGLE_DRIVE,
+                expiresAt = Instant.now().plusSeconds(60),
+                fileName = file.name,
+                fileSize = file.length(),
+                mimeType = VoiceNoteManifest.MIME_TYPE,
+                checksum = "checksum"
+            )
+        }
+
+        override suspend fun delete(link: EncryptedLink) {
+            deleted += link
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.chain.messaging.core.audio
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.nio.ByteBuffer
+
+/**
+ * Unit tests for Waveform and WaveformBuilder
+ */
+class WaveformTest {
+
+    @Test
+    fun `builder should bucket pcm into peak and rms levels`() {
+        // Given - 1 kHz mono, so a 100 ms bucket is 100 samples
+        val builder = WaveformBuilder()
+        builder.setFormat(sampleRate = 1_000, channelCount = 1)
+        val loud = ShortArray(100) { if (it % 2 == 0) 16384 else -16384 }
+        val quiet = ShortArray(100) { if (it == 10) -8192 else 0 }
+
+        // When
+        builder.addPcm16(loud)
+        builder.addPcm16(quiet)
+        val waveform = builder.build()
+
+        // Then
+        assertEquals(2, waveform.bucketCount)
+        assertEquals(200L, waveform.durationMs)
+        assertEquals(0.5f, waveform.peak(0), LEVEL_TOLERANCE)
+        assertEquals(0.5f, waveform.rms(0), LEVEL_TOLERANCE)
+        assertEquals(0.25f, waveform.peak(1), LEVEL_TOLERANCE)
+        assertEquals(0.025f, waveform.rms(1), LEVEL_TOLERANCE)
+    }
+
+    @Test
+    fun `builder should carry buckets across buffers and close the last partial one`() {
+        // Given - stereo, so a bucket spans 200 interleaved samples
+        val builder = WaveformBuilder()
+        builder.setFormat(sampleRate = 1_000, channelCount = 2)
+        val samples = ShortArray(500) { 1000 }
+
+        // When
+        builder.addPcm16(samples, 0, 150)
+        builder.addPcm16(samples, 150, 350)
+        val waveform = builder.build()
+
+        // Then
+        assertEquals(3, waveform.bucketCount)
+        assertEquals(waveform.peak(0), waveform.peak(2), 0f)
+    }
+
+    @Test
+    fun `serialized waveform should round trip without copying levels`() {
+        // Given
+        val builder = WaveformBuilder(bucketDurationMs = 50)
+        listOf(0.1f, 1f, 0.5f).forEach { builder.addLevel(it, it / 2) }
+        val waveform = builder.build()
+
+        // When
+        val bytes = waveform.toByteArray()
+        val loaded = Waveform.fromBytes(bytes)
+
+        // Then
+        assertNotNull(loaded)
+        assertEquals(12 + 2 * 3, bytes.size)
+        assertEquals(50, loaded!!.bucketDurationMs)
+        assertEquals(3, loaded.bucketCount)
+        assertEquals(1f, loaded.peak(1), 0f)
+        assertEquals(0.25f, loaded.rms(2), LEVEL_TOLERANCE)
+    }
+
+    @Test
+    fun `fromBytes should reject legacy text sidecars and truncated data`() {
+        // Given
+        val legacy = "0.5,0.8,0.3".toByteArray()
+        val truncated = WaveformBuilder().apply { repeat(4) { addLevel(0.5f) } }.build().toByteArray().copyOf(14)
+        val negativeCount = ByteBuffer.allocate(12).putInt(0x43574631).putInt(100).putInt(-1).array()
+
+        // Then
+        assertNull(Waveform.fromBytes(legacy))
+        assertNull(Waveform.fromBytes(truncated))
+        assertNull(Waveform.fromBytes(negativeCount))
+    }
+
+    @Test
+    fun `bars should take the loudest bucket per bar relative to the whole message`() {
+        // Given
+        val builder = WaveformBuilder()
+        listOf(0.1f, 0.2f, 0.4f, 0.2f, 0f, 0.1f).forEach { builder.addLevel(it) }
+        val waveform = builder.build()
+
+        // When
+        val bars = waveform.bars(3)
+
+        // Then
+        assertArrayEquals(floatArrayOf(0.5f, 1f, 0.25f), bars, 0.01f)
+    }
+
+    @Test
+    fun `bars should stretch short waveforms and handle empty ones`() {
+        // Given
+        val waveform = WaveformBuilder().apply { addLevel(0.2f) }.build()
+
+        // Then
+        assertArrayEquals(floatArrayOf(1f, 1f, 1f, 1f), waveform.bars(4), 0f)
+        assertEquals(0, Waveform.EMPTY.bars(40).size)
+        assertTrue(Waveform.EMPTY.isEmpty())
+    }
+
+    private companion object {
+        // One quantization step
+        const val LEVEL_TOLERANCE = 1f / 255
+    }
+}
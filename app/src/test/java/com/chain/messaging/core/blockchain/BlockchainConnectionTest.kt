@@ -0,0 +1,261 @@
+package com.chain.messaging.core.blockchain
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.WebSocket
+import okhttp3.WebSocketListener
+import okio.ByteString
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.IOException
+import kotlin.math.ceil
+import kotlin.random.Random
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class BlockchainConnectionTest {
+
+    @Test
+    fun `connect should return as soon as the handshake completes`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = 50) }
+        val connection = newConnection(node)
+
+        // When
+        connection.connect(listOf("wss://node-a.test"))
+
+        // Then - no fixed settle delay on top of the handshake
+        assertEquals(50L, currentTime)
+        assertTrue(connection.isConnected)
+        assertEquals(50L, (connection.state.value as BlockchainConnectionState.Connected).handshakeMs)
+    }
+
+    @Test
+    fun `slow handshake within the timeout should still connect`() = runTest {
+        // Given - used to be reported as a failure by the fixed 2 s wait
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = 2_500) }
+        val connection = newConnection(node)
+
+        // When
+        connection.connect(listOf("wss://node-a.test"))
+
+        // Then
+        assertTrue(connection.isConnected)
+        assertEquals(2_500L, currentTime)
+    }
+
+    @Test
+    fun `time to connected percentiles should track the handshake latency`() = runTest {
+        // Given - mostly fast handshakes with a slow tail
+        val random = Random(7)
+        val latencies = List(100) { if (it % 20 == 0) 2_000L + random.nextLong(2_000) else 20L + random.nextLong(280) }
+        var next = 0
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = latencies[next++]) }
+        val connection = newConnection(node)
+
+        // When
+        val connectTimes = latencies.map {
+            val started = currentTime
+            connection.connect(listOf("wss://node-a.test"))
+            currentTime - started
+        }
+        val stats = connection.getStats()
+        println("time-to-connected over ${latencies.size} connects: p50=${stats.p50HandshakeMs}ms p99=${stats.p99HandshakeMs}ms")
+
+        // Then
+        assertEquals(latencies, connectTimes)
+        val sorted = latencies.sorted()
+        assertEquals(sorted[ceil(0.50 * sorted.size).toInt() - 1], stats.p50HandshakeMs)
+        assertEquals(sorted[ceil(0.99 * sorted.size).toInt() - 1], stats.p99HandshakeMs)
+        assertTrue(stats.p50HandshakeMs < 300)
+        assertEquals(0, stats.failures)
+    }
+
+    @Test
+    fun `connect should fail over to the next node when one refuses`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { host ->
+            if (host == "node-a.test") NodeBehaviour(handshakeMs = 30, refuse = true) else NodeBehaviour(handshakeMs = 40)
+        }
+        val connection = newConnection(node)
+
+        // When
+        connection.connect(listOf("wss://node-a.test", "wss://node-b.test"))
+
+        // Then
+        val state = connection.state.value as BlockchainConnectionState.Connected
+        assertEquals("wss://node-b.test", state.nodeUrl)
+        assertEquals(70L, currentTime)
+        assertEquals(1, connection.getStats().failures)
+    }
+
+    @Test
+    fun `unresponsive node should time out and fail over`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { host ->
+            if (host == "node-a.test") NodeBehaviour(handshakeMs = Long.MAX_VALUE) else NodeBehaviour(handshakeMs = 40)
+        }
+        val connection = newConnection(node, ConnectionPolicy(connectTimeoutMs = 1_000))
+
+        // When
+        connection.connect(listOf("wss://node-a.test", "wss://node-b.test"))
+
+        // Then
+        assertEquals(1_040L, currentTime)
+        assertEquals("wss://node-b.test", (connection.state.value as BlockchainConnectionState.Connected).nodeUrl)
+    }
+
+    @Test
+    fun `connect should throw when no node answers`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = 10, refuse = true) }
+        val connection = newConnection(node)
+
+        // When
+        val result = runCatching { connection.connect(listOf("wss://node-a.test", "wss://node-b.test")) }
+
+        // Then
+        assertTrue(result.exceptionOrNull() is IOException)
+        assertTrue(connection.state.value is BlockchainConnectionState.Failed)
+    }
+
+    @Test
+    fun `dropped connection should reconnect with backoff`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = 20) }
+        val connection = newConnection(node, ConnectionPolicy(initialBackoffMs = 1_000))
+        connection.connect(listOf("wss://node-a.test"))
+        val droppedAt = currentTime
+
+        // When
+        node.dropAll()
+        advanceUntilIdle()
+
+        // Then - equal jitter waits between 500 and 1000 ms before the first retry
+        assertTrue(connection.isConnected)
+        assertEquals(1, connection.getStats().reconnects)
+        assertTrue(currentTime - droppedAt in 520L..1_020L)
+    }
+
+    @Test
+    fun `disconnect should stop reconnection and ignore late callbacks`() = runTest {
+        // Given
+        val node = LocalNodeStandIn(backgroundScope) { NodeBehaviour(handshakeMs = 20) }
+        val connection = newConnection(node)
+        connection.connect(listOf("wss://node-a.test"))
+
+        // When
+        connection.disconnect()
+        node.dropAll()
+        advanceUntilIdle()
+
+        // Then
+        assertEquals(BlockchainConnectionState.Disconnected, connection.state.value)
+        assertEquals(1, node.openedCount)
+        assertFalse(connection.send("ping"))
+    }
+
+    @Test
+    fun `backoff should grow exponentially with jitter up to the cap`() {
+        // Given
+        val backoff = ReconnectBackoff(initialMs = 500, maxMs = 30_000, random = Random(1))
+
+        // When
+        val delays = (0 until 10).map { attempt -> attempt to backoff.delayFor(attempt) }
+
+        // Then
+        delays.forEach { (attempt, delayMs) ->
+            val cap = minOf(30_000L, 500L shl attempt)
+            assertTrue("attempt $attempt: $delayMs", delayMs in cap / 2..cap)
+        }
+    }
+
+    private fun TestScope.newConnection(
+        node: LocalNodeStandIn,
+        policy: ConnectionPolicy = ConnectionPolicy()
+    ): BlockchainConnection {
+        return BlockchainConnection(
+            socketFactory = node,
+            scope = backgroundScope,
+            policy = policy,
+            backoff = ReconnectBackoff(policy.initialBackoffMs, policy.maxBackoffMs, Random(3)),
+            clock = { currentTime },
+            onText = {}
+        )
+    }
+
+    private data class NodeBehaviour(
+        val handshakeMs: Long,
+        val refuse: Boolean = false
+    )
+
+    /**
+     * Local stand-in for a blockchain node: completes or refuses the WebSocket
+     * handshake after a scripted delay on the test scheduler
+     */
+    private class LocalNodeStandIn(
+        private val scope: CoroutineScope,
+        private val behaviour: (host: String) -> NodeBehaviour
+    ) : WebSocket.Factory {
+
+        private val open = mutableListOf<Pair<FakeSocket, WebSocketListener>>()
+        var openedCount = 0
+            private set
+
+        override fun newWebSocket(request: Request, listener: WebSocketListener): WebSocket {
+            val socket = FakeSocket(request)
+            val node = behaviour(request.url.host)
+            scope.launch {
+                delay(node.handshakeMs)
+                if (socket.cancelled) return@launch
+                if (node.refuse) {
+                    listener.onFailure(socket, IOException("Connection refused"), null)
+                } else {
+                    openedCount++
+                    open += socket to listener
+                    listener.onOpen(socket, switchingProtocols(request))
+                }
+            }
+            return socket
+        }
+
+        fun dropAll() {
+            open.toList().forEach { (socket, listener) -> listener.onFailure(socket, IOException("Connection reset"), null) }
+            open.clear()
+        }
+
+        private fun switchingProtocols(request: Request): Response {
+            return Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(101)
+                .message("Switching Protocols")
+                .build()
+        }
+    }
+
+    private class FakeSocket(private val request: Request) : WebSocket {
+        var cancelled = false
+            private set
+
+        override fun request(): Request = request
+        override fun queueSize(): Long = 0
+        override fun send(text: String): Boolean = !cancelled
+        override fun send(bytes: ByteString): Boolean = !cancelled
+        override fun close(code: Int, reason: String?): Boolean {
+            cancelled = true
+            return true
+        }
+        override fun cancel() {
+            cancelled = true
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.chain.messaging.core.blockchain
+
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class BlockchainResponseDispatcherTest {
+
+    private val blockchainManager = mockk<BlockchainManager>()
+    private val incoming = MutableSharedFlow<IncomingMessage>(extraBufferCapacity = 16)
+    private val decodeCount = AtomicInteger(0)
+
+    private lateinit var dispatcher: BlockchainResponseDispatcher
+
+    @Before
+    fun setup() {
+        every { blockchainManager.subscribeToMessages(any()) } returns incoming
+
+        dispatcher = BlockchainResponseDispatcher(blockchainManager)
+        dispatcher.registerResponseType("TEST_RESPONSE") { message ->
+            decodeCount.incrementAndGet()
+            CorrelatedResponse(message.encryptedContent.substringBefore(':'), message.encryptedContent)
+        }
+    }
+
+    @After
+    fun tearDown() {
+        dispatcher.shutdown()
+    }
+
+    @Test
+    fun `request should complete with the response carrying its correlation id`() = runBlocking {
+        // When
+        val response = dispatcher.request<String>("user-1", "TEST_RESPONSE", "req-1", timeoutMs = 5_000) {
+            incoming.emit(createMessage("req-1:payload"))
+        }
+
+        // Then
+        assertEquals("req-1:payload", response)
+        assertEquals(1L, dispatcher.getStats().completedRequests)
+        assertEquals(0, dispatcher.getStats().pendingRequests)
+    }
+
+    @Test
+    fun `concurrent requests should share one subscription and decode each response once`() = runBlocking {
+        // When
+        val first = async {
+            dispatcher.request<String>("user-1", "TEST_RESPONSE", "req-a", timeoutMs = 5_000) {}
+        }
+        val second = async {
+            dispatcher.request<String>("user-1", "TEST_RESPONSE", "req-b", timeoutMs = 5_000) {}
+        }
+        while (dispatcher.getStats().pendingRequests < 2) {
+            kotlinx.coroutines.yield()
+        }
+        incoming.emit(createMessage("req-b:second"))
+        incoming.emit(createMessage("req-a:first"))
+
+        // Then
+        assertEquals("req-a:first", first.await())
+        assertEquals("req-b:second", second.await())
+        assertEquals(2, decodeCount.get())
+        verify(exactly = 1) { blockchainManager.subscribeToMessages("user-1") }
+    }
+
+    @Test
+    fun `request should return null when no response arrives in time`() = runBlocking {
+        // When
+        val response = dispatcher.request<String>("user-1", "TEST_RESPONSE", "req-slow", timeoutMs = 50) {}
+
+        // Then
+        assertNull(response)
+        assertEquals(1L, dispatcher.getStats().timedOutRequests)
+        assertEquals(0, dispatcher.getStats().pendingRequests)
+    }
+
+    @Test
+    fun `responses of other types should be ignored without decoding`() = runBlocking {
+        // When
+        val response = dispatcher.request<String>("user-1", "TEST_RESPONSE", "req-1", timeoutMs = 200) {
+            incoming.emit(createMessage("req-1:wrong", type = "OTHER"))
+        }
+
+        // Then
+        assertNull(response)
+        assertEquals(0, decodeCount.get())
+    }
+
+    @Test
+    fun `a second decoder for a registered type should be rejected`() {
+        // When / Then
+        assertFailsWith<IllegalStateException> {
+            dispatcher.registerResponseType("TEST_RESPONSE") { null }
+        }
+    }
+
+    private fun createMessage(content: String, type: String = "TEST_RESPONSE"): IncomingMessage {
+        return IncomingMessage(
+            transactionHash = "tx-$content",
+            senderId = "peer-1",
+            recipientId = "user-1",
+            encryptedContent = content,
+            type = type,
+            timestamp = System.currentTimeMillis(),
+            blockNumber = 1L
+        )
+    }
+}
@@ -0,0 +1,47 @@
+package com.chain.messaging.core.group
+
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.model.MessageStatus
+import com.chain.messaging.domain.model.MessageType
+import io.mockk.coEvery
+import io.mockk.mockk
+import kotlinx.coroutines.test.runTest
+import org.junit.jupiter.api.Test
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import java.util.Date
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+
+class GroupMessageEnvelopesTest {
+
+    private val encryptionService = mockk<SignalEncryptionService>()
+    private val envelopes = GroupMessageEnvelopes(encryptionService)
+
+    @Test
+    fun `ciphertext that is not valid UTF-8 should survive the envelope`() = runTest {
+        // Given
+        val address = SignalProtocolAddress("member-1", 1)
+        val ciphertext = byteArrayOf(0x33, 0xC3.toByte(), 0x28, 0xFF.toByte(), 0x00, 0x80.toByte())
+        coEvery { encryptionService.encryptMessage(address, any()) } returns
+            Result.success(EncryptedMessage(address, ciphertext, EncryptedMessage.Type.SIGNAL))
+        val message = Message(
+            id = "msg-1",
+            chatId = "group-1",
+            senderId = "sender-1",
+            content = "hello group",
+            type = MessageType.TEXT,
+            timestamp = Date(1_000),
+            status = MessageStatus.SENDING
+        )
+
+        // When
+        val envelope = envelopes.envelopeFor("member-1", message)
+
+        // Then
+        assertContentEquals(ciphertext, GroupMessageEnvelopes.ciphertextOf(envelope))
+        assertEquals(GroupMessageEnvelopes.KEY_ID, envelope.keyId)
+        assertEquals(1_000L, envelope.timestamp)
+    }
+}
@@ -3,6 +3,9 @@ package com.chain.messaging.core.group
 import com.chain.messaging.core.blockchain.BlockchainManager
 import com.chain.messaging.core.crypto.SignalEncryptionService
 import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.memory.MemoryBudgetPolicy
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.*
 import com.chain.messaging.domain.repository.ChatRepository
 import io.mockk.*
@@ -43,7 +46,10 @@ class LargeGroupPerformanceTest {
             p2pManager
         )
         
-        optimizer = MessageDeliveryOptimizerImpl(p2pManager)
+        optimizer = MessageDeliveryOptimizerImpl(
+            p2pManager,
+            MemoryBudgetManager(MemoryBudgetPolicy.forDevice(256, isLowRamDevice = false), MetricsRegistry())
+        )
         historyManager = GroupHistoryManagerImpl(mockk())
         
         // Setup common mocks
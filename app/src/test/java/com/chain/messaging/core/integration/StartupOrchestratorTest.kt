@@ -0,0 +1,171 @@
+package com.chain.messaging.core.integration
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Collections
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class StartupOrchestratorTest {
+
+    @Test
+    fun `independent stages should initialize concurrently`() = runTest {
+        // Given
+        val orchestrator = StartupOrchestrator(
+            listOf(
+                StartupStage("a") { delay(100) },
+                StartupStage("b") { delay(100) },
+                StartupStage("c") { delay(100) }
+            ),
+            supervisedScope(),
+            clock = { currentTime }
+        )
+
+        // When
+        orchestrator.startCritical()
+
+        // Then
+        assertEquals(100L, currentTime)
+        assertEquals(setOf("a", "b", "c"), orchestrator.getTraces().map { it.name }.toSet())
+        assertTrue(orchestrator.getTraces().all { it.startMs == 0L && it.durationMs == 100L })
+    }
+
+    @Test
+    fun `stages should start only after their dependencies complete`() = runTest {
+        // Given
+        val order = Collections.synchronizedList(mutableListOf<String>())
+        val orchestrator = StartupOrchestrator(
+            listOf(
+                StartupStage("messaging", dependsOn = setOf("encryption")) { order += "messaging" },
+                StartupStage("encryption") { delay(50); order += "encryption" },
+                StartupStage("offline_queue", dependsOn = setOf("messaging", "encryption")) { order += "offline_queue" }
+            ),
+            supervisedScope()
+        )
+
+        // When
+        orchestrator.startCritical()
+
+        // Then - each stage ran exactly once despite the shared dependency
+        assertEquals(listOf("encryption", "messaging", "offline_queue"), order)
+    }
+
+    @Test
+    fun `deferred stages should run on first use or idle only`() = runTest {
+        // Given
+        var cloudStarts = 0
+        var syncStarts = 0
+        val orchestrator = StartupOrchestrator(
+            listOf(
+                StartupStage("encryption") {},
+                StartupStage("cloud", priority = StartupPriority.DEFERRED) { cloudStarts++ },
+                StartupStage("sync", dependsOn = setOf("encryption"), priority = StartupPriority.DEFERRED) { syncStarts++ }
+            ),
+            supervisedScope()
+        )
+
+        // When
+        orchestrator.startCritical()
+        val cloudStartedEarly = orchestrator.isStarted("cloud")
+        orchestrator.ensureStarted("sync")
+        orchestrator.startDeferred()
+        orchestrator.ensureStarted("cloud")
+
+        // Then
+        assertFalse(cloudStartedEarly)
+        assertTrue(orchestrator.isCompleted("sync"))
+        assertEquals(1, cloudStarts)
+        assertEquals(1, syncStarts)
+    }
+
+    @Test
+    fun `critical failure should propagate to dependents and the caller`() = runTest {
+        // Given
+        var messagingRan = false
+        val orchestrator = StartupOrchestrator(
+            listOf(
+                StartupStage("encryption") { throw IllegalStateException("keystore unavailable") },
+                StartupStage("messaging", dependsOn = setOf("encryption")) { messagingRan = true },
+                StartupStage("webrtc") {}
+            ),
+            supervisedScope()
+        )
+
+        // When
+        val result = runCatching { orchestrator.startCritical() }
+
+        // Then
+        assertTrue(result.exceptionOrNull() is IllegalStateException)
+        assertFalse(messagingRan)
+        assertFalse(orchestrator.getTraces().first { it.name == "encryption" }.isSuccess)
+    }
+
+    @Test
+    fun `a failed stage should be retried on next use`() = runTest {
+        // Given
+        var attempts = 0
+        var messagingRuns = 0
+        val orchestrator = StartupOrchestrator(
+            listOf(
+                StartupStage("encryption") { if (++attempts == 1) throw IllegalStateException("keystore unavailable") },
+                StartupStage("messaging", dependsOn = setOf("encryption")) { messagingRuns++ }
+            ),
+            supervisedScope()
+        )
+        val first = runCatching { orchestrator.ensureStarted("messaging") }
+
+        // When
+        orchestrator.ensureStarted("messaging")
+
+        // Then
+        assertTrue(first.isFailure)
+        assertEquals(2, attempts)
+        assertEquals(1, messagingRuns)
+        assertTrue(orchestrator.isCompleted("messaging"))
+    }
+
+    @Test
+    fun `invalid graphs should be rejected`() = runTest {
+        val scope = supervisedScope()
+
+        val cycle = runCatching {
+            StartupOrchestrator(
+                listOf(
+                    StartupStage("a", dependsOn = setOf("b")) {},
+                    StartupStage("b", dependsOn = setOf("a")) {}
+                ),
+                scope
+            )
+        }
+        val unknown = runCatching {
+            StartupOrchestrator(listOf(StartupStage("a", dependsOn = setOf("missing")) {}), scope)
+        }
+        val criticalOnDeferred = runCatching {
+            StartupOrchestrator(
+                listOf(
+                    StartupStage("cloud", priority = StartupPriority.DEFERRED) {},
+                    StartupStage("messaging", dependsOn = setOf("cloud")) {}
+                ),
+                scope
+            )
+        }
+
+        assertTrue(cycle.exceptionOrNull() is IllegalArgumentException)
+        assertTrue(unknown.exceptionOrNull() is IllegalArgumentException)
+        assertTrue(criticalOnDeferred.exceptionOrNull() is IllegalArgumentException)
+    }
+
+    /**
+     * Scope on the test scheduler whose failed stages do not cancel the test itself
+     */
+    private fun TestScope.supervisedScope(): CoroutineScope {
+        return CoroutineScope(backgroundScope.coroutineContext + SupervisorJob(backgroundScope.coroutineContext[Job]))
+    }
+}
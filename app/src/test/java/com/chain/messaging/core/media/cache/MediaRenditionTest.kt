@@ -0,0 +1,43 @@
+package com.chain.messaging.core.media.cache
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class MediaRenditionTest {
+
+    @Test
+    fun `requested sizes should round up to a bucket`() {
+        assertEquals(128, MediaRendition.bucketFor(1))
+        assertEquals(256, MediaRendition.bucketFor(256))
+        assertEquals(1024, MediaRendition.bucketFor(700))
+        assertEquals(2048, MediaRendition.bucketFor(10_000))
+        assertEquals(MediaRendition.stored("m", 600), MediaRendition.stored("m", 1000))
+    }
+
+    @Test
+    fun `local renditions should keep their path`() {
+        // When
+        val local = MediaRendition.localFile("/data/media/a.jpg", 300)
+        val stored = MediaRendition.stored("media1", 300)
+
+        // Then
+        assertEquals("/data/media/a.jpg", local.localPath)
+        assertNull(stored.localPath)
+        assertNotEquals(local.cacheKey, MediaRendition.localFile("/data/media/a.jpg", 1000).cacheKey)
+    }
+
+    @Test
+    fun `sample size should never drop below the target size`() {
+        assertEquals(1, MediaImageCache.sampleSizeFor(300, 200, 512))
+        assertEquals(4, MediaImageCache.sampleSizeFor(4000, 3000, 1000))
+        assertEquals(8, MediaImageCache.sampleSizeFor(3000, 4096, 512))
+        assertTrue(4000 / MediaImageCache.sampleSizeFor(4000, 3000, 1000) >= 1000)
+    }
+
+    @Test
+    fun `video paths should be recognised by extension`() {
+        assertTrue(MediaImageCache.isVideoPath("/x/clip.MP4"))
+        assertFalse(MediaImageCache.isVideoPath("/x/photo.jpg"))
+        assertFalse(MediaImageCache.isVideoPath("/x/noextension"))
+    }
+}
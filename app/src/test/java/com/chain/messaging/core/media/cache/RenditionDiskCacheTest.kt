@@ -0,0 +1,87 @@
+package com.chain.messaging.core.media.cache
+
+import com.chain.messaging.core.security.FileEncryption
+import com.chain.messaging.data.local.storage.BlobKeys
+import kotlinx.coroutines.test.runTest
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import java.nio.file.Files
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [33])
+class RenditionDiskCacheTest {
+
+    private lateinit var directory: File
+    private val keys = BlobKeys(ByteArray(32) { 3 })
+
+    @Before
+    fun setup() {
+        directory = Files.createTempDirectory("renditions").toFile()
+    }
+
+    @After
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `renditions should round trip and be encrypted at rest`() = runTest {
+        // Given
+        val cache = cache(maxBytes = 1_000_000L)
+        val bytes = ByteArray(4_000) { (it % 7).toByte() }
+
+        // When
+        cache.put("media1@256", bytes)
+
+        // Then
+        assertArrayEquals(bytes, cache.get("media1@256"))
+        assertNull(cache.get("media1@512"))
+        val stored = directory.listFiles()!!.single()
+        assertFalse(stored.name.contains("media1"))
+        assertFalse(stored.readBytes().contentEquals(bytes))
+        assertEquals(stored.length(), cache.sizeBytes())
+    }
+
+    @Test
+    fun `least recently used entries should be evicted over budget`() = runTest {
+        // Given - room for about three entries
+        val cache = cache(maxBytes = 3_200L)
+        val entry = ByteArray(1_000)
+        cache.put("a", entry)
+        cache.put("b", entry)
+        cache.put("c", entry)
+        File(directory, keys.renditionFileName("a")).setLastModified(System.currentTimeMillis() - 60_000)
+        File(directory, keys.renditionFileName("b")).setLastModified(System.currentTimeMillis() - 120_000)
+
+        // When
+        cache.put("d", entry)
+
+        // Then
+        assertNull(cache.get("b"))
+        assertNotNull(cache.get("d"))
+        assertTrue(cache.sizeBytes() <= 3_200L)
+    }
+
+    @Test
+    fun `corrupt entries should be dropped`() = runTest {
+        // Given
+        val cache = cache(maxBytes = 1_000_000L)
+        cache.put("media1@256", ByteArray(100) { 1 })
+        File(directory, keys.renditionFileName("media1@256")).writeBytes(ByteArray(50))
+
+        // When
+        val result = cache.get("media1@256")
+
+        // Then
+        assertNull(result)
+        assertFalse(File(directory, keys.renditionFileName("media1@256")).exists())
+    }
+
+    private fun cache(maxBytes: Long) = RenditionDiskCache(directory, FileEncryption(), { keys }, maxBytes)
+}
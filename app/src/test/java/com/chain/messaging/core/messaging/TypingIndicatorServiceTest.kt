@@ -1,7 +1,11 @@
 package com.chain.messaging.core.messaging
 
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.flow.first
+import com.chain.messaging.core.messaging.presence.PresenceEngine
+import com.chain.messaging.core.messaging.presence.PresenceTransport
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.*
 import org.junit.Before
@@ -13,23 +17,25 @@ class TypingIndicatorServiceTest {
     
     @Before
     fun setup() {
-        typingIndicatorService = TypingIndicatorService()
+        typingIndicatorService = TypingIndicatorService(PresenceEngine(PresenceTransport.NONE, MetricsRegistry()))
     }
     
     @Test
     fun `startTyping should add user to typing list`() = runTest {
         // Given
+        val service = testService()
         val chatId = "chat123"
         val userId = "user123"
         
         // When
-        typingIndicatorService.startTyping(chatId, userId)
+        service.startTyping(chatId, userId)
+        runCurrent()
         
         // Then
-        val typingUsers = typingIndicatorService.getTypingUsers(chatId)
+        val typingUsers = service.getTypingUsers(chatId)
         assertTrue(typingUsers.contains(userId))
         
-        val allTypingUsers = typingIndicatorService.typingUsers.first()
+        val allTypingUsers = service.typingUsers.value
         assertTrue(allTypingUsers[chatId]?.contains(userId) == true)
     }
     
@@ -72,18 +78,21 @@ class TypingIndicatorServiceTest {
         val chatId = "chat123"
         val userId = "user123"
         
+        val service = testService()
+        
         // When
-        typingIndicatorService.startTyping(chatId, userId)
+        service.startTyping(chatId, userId)
         
         // Verify user is typing
-        assertTrue(typingIndicatorService.getTypingUsers(chatId).contains(userId))
+        assertTrue(service.getTypingUsers(chatId).contains(userId))
         
         // Wait for timeout (3 seconds + buffer)
-        delay(3500)
+        advanceTimeBy(3500)
         
         // Then
-        val typingUsers = typingIndicatorService.getTypingUsers(chatId)
+        val typingUsers = service.getTypingUsers(chatId)
         assertFalse(typingUsers.contains(userId))
+        assertNull(service.typingUsers.value[chatId])
     }
     
     @Test
@@ -91,13 +100,16 @@ class TypingIndicatorServiceTest {
         // Given
         val userId = "user123"
         
+        val service = testService()
+        
         // When
-        typingIndicatorService.setUserOnline(userId, true)
+        service.setUserOnline(userId, true)
+        runCurrent()
         
         // Then
-        assertTrue(typingIndicatorService.isUserOnline(userId))
+        assertTrue(service.isUserOnline(userId))
         
-        val onlineUsers = typingIndicatorService.onlineUsers.first()
+        val onlineUsers = service.onlineUsers.value
         assertEquals(true, onlineUsers[userId])
     }
     
@@ -174,4 +186,14 @@ class TypingIndicatorServiceTest {
         // In a real implementation, you'd inject a time provider for testing
         assertTrue(typingIndicatorService.isUserOnline(userId))
     }
-}
\ No newline at end of file
+    
+    // Frames and timeouts run on the test scheduler's virtual clock
+    private fun TestScope.testService() = TypingIndicatorService(
+        PresenceEngine(
+            transport = PresenceTransport.NONE,
+            metricsRegistry = MetricsRegistry(),
+            scope = backgroundScope,
+            clock = { testScheduler.currentTime }
+        )
+    )
+}
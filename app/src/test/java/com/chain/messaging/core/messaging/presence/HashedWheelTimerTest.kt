@@ -0,0 +1,110 @@
+package com.chain.messaging.core.messaging.presence
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for HashedWheelTimer
+ */
+class HashedWheelTimerTest {
+
+    @Test
+    fun `keys should fire once their deadline tick has passed`() {
+        // Given
+        val timer = HashedWheelTimer<String>(tickMs = 100, wheelSize = 8)
+        timer.schedule("a", delayMs = 250, nowMs = 0)
+        timer.schedule("b", delayMs = 500, nowMs = 0)
+
+        // When
+        val early = advance(timer, 200)
+        val first = advance(timer, 300)
+        val second = advance(timer, 500)
+
+        // Then
+        assertEquals(emptyList<String>(), early)
+        assertEquals(listOf("a"), first)
+        assertEquals(listOf("b"), second)
+        assertTrue(timer.isEmpty())
+    }
+
+    @Test
+    fun `rescheduling should move the deadline instead of adding a timeout`() {
+        // Given
+        val timer = HashedWheelTimer<String>(tickMs = 100, wheelSize = 8)
+        timer.schedule("typing", delayMs = 300, nowMs = 0)
+
+        // When
+        timer.schedule("typing", delayMs = 300, nowMs = 200)
+        val beforeNewDeadline = advance(timer, 400)
+        val afterNewDeadline = advance(timer, 500)
+
+        // Then
+        assertEquals(1, timer.size + afterNewDeadline.size)
+        assertEquals(emptyList<String>(), beforeNewDeadline)
+        assertEquals(listOf("typing"), afterNewDeadline)
+    }
+
+    @Test
+    fun `deadlines beyond one turn of the wheel should wait for their round`() {
+        // Given - 8 slots of 100 ms turn every 800 ms
+        val timer = HashedWheelTimer<String>(tickMs = 100, wheelSize = 8)
+        timer.schedule("late", delayMs = 1_000, nowMs = 0)
+
+        // When
+        val firstTurn = advance(timer, 900)
+        val secondTurn = advance(timer, 1_000)
+
+        // Then
+        assertEquals(emptyList<String>(), firstTurn)
+        assertEquals(listOf("late"), secondTurn)
+    }
+
+    @Test
+    fun `a long pause should fire everything that came due`() {
+        // Given
+        val timer = HashedWheelTimer<Int>(tickMs = 100, wheelSize = 8)
+        (1..20).forEach { timer.schedule(it, delayMs = it * 100L, nowMs = 0) }
+
+        // When
+        val fired = advance(timer, 60_000)
+
+        // Then
+        assertEquals((1..20).toSet(), fired.toSet())
+        assertTrue(timer.isEmpty())
+    }
+
+    @Test
+    fun `cancelled keys should not fire`() {
+        // Given
+        val timer = HashedWheelTimer<String>(tickMs = 100, wheelSize = 8)
+        timer.schedule("a", delayMs = 100, nowMs = 0)
+
+        // When
+        val cancelled = timer.cancel("a")
+
+        // Then
+        assertTrue(cancelled)
+        assertFalse(timer.cancel("a"))
+        assertEquals(emptyList<String>(), advance(timer, 1_000))
+        assertNull(timer.nextDeadlineMs())
+    }
+
+    @Test
+    fun `next deadline should be the earliest pending one`() {
+        // Given
+        val timer = HashedWheelTimer<String>(tickMs = 100, wheelSize = 8)
+
+        // When
+        timer.schedule("a", delayMs = 2_000, nowMs = 0)
+        timer.schedule("b", delayMs = 450, nowMs = 0)
+
+        // Then
+        assertEquals(500L, timer.nextDeadlineMs())
+    }
+
+    private fun <K : Any> advance(timer: HashedWheelTimer<K>, nowMs: Long): List<K> {
+        val fired = mutableListOf<K>()
+        timer.advance(nowMs) { fired += it }
+        return fired
+    }
+}
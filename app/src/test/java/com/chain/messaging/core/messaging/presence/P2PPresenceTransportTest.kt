@@ -0,0 +1,99 @@
+package com.chain.messaging.core.messaging.presence
+
+import com.chain.messaging.core.auth.AuthenticationService
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.p2p.Message
+import com.chain.messaging.core.p2p.MessageType
+import com.chain.messaging.core.p2p.NetworkEvent
+import com.chain.messaging.core.p2p.P2PManager
+import com.chain.messaging.data.local.dao.ChatDao
+import com.chain.messaging.data.local.entity.chatParticipantRows
+import com.chain.messaging.domain.model.CryptoException
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.slot
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.signal.libsignal.protocol.SignalProtocolAddress
+
+/**
+ * Unit tests for P2PPresenceTransport
+ */
+class P2PPresenceTransportTest {
+
+    private val p2pManager = mockk<P2PManager>(relaxed = true)
+    private val authenticationService = mockk<AuthenticationService>()
+    private val encryptionService = mockk<SignalEncryptionService>()
+    private val chatDao = mockk<ChatDao>()
+    private val transport = P2PPresenceTransport(p2pManager, authenticationService, encryptionService, chatDao)
+
+    @Before
+    fun setup() {
+        coEvery { authenticationService.getCurrentUser() } returns mockk { every { userId } returns "alice" }
+        // dave administers the chat without being a participant
+        coEvery { chatDao.getParticipants("chat") } returns chatParticipantRows("chat", listOf("alice", "bob", "carol"), listOf("dave"))
+    }
+
+    @Test
+    fun `typing should be encrypted for each other member only`() = runTest {
+        // Given
+        val plaintexts = mutableListOf<String>()
+        val address = slot<SignalProtocolAddress>()
+        coEvery { encryptionService.encryptMessage(capture(address), any()) } answers {
+            plaintexts += secondArg<ByteArray>().decodeToString()
+            Result.success(EncryptedMessage(address.captured, "sealed".toByteArray(), EncryptedMessage.Type.SIGNAL))
+        }
+        val sent = mutableListOf<Message>()
+        coEvery { p2pManager.broadcastMessage(capture(sent)) } returns Unit
+
+        // When
+        transport.sendTyping("chat", isTyping = true)
+
+        // Then
+        assertEquals(listOf("bob", "carol"), sent.map { it.to })
+        assertTrue(sent.all { it.from == "alice" && !it.payload.contains("chat") })
+        assertTrue(plaintexts.all { it.contains("\"chat\"") })
+    }
+
+    @Test
+    fun `signals should be dropped unless the sender is authenticated and a member`() = runTest {
+        // Given
+        val typing = """{"chatId":"chat","typing":true}""".toByteArray()
+        coEvery { encryptionService.decryptMessage(match { it.name in setOf("bob", "mallory") }, any()) } returns Result.success(typing)
+        coEvery { encryptionService.decryptMessage(match { it.name == "carol" }, any()) } returns
+            Result.failure(CryptoException("Invalid message"))
+        every { p2pManager.subscribeToNetwork() } returns flowOf(
+            received("bob"),
+            // Not in the chat
+            received("mallory"),
+            // Claims to be a member, but does not hold carol's session
+            received("carol")
+        )
+
+        // When
+        val signals = transport.incoming().toList()
+
+        // Then
+        assertEquals(listOf(PresenceSignal.Typing("chat", "bob", isTyping = true)), signals)
+        coVerify(exactly = 0) { p2pManager.broadcastMessage(any()) }
+    }
+
+    private fun received(from: String) = NetworkEvent.MessageReceived(
+        Message(
+            id = "presence-$from",
+            type = MessageType.PRESENCE,
+            payload = """{"type":"SIGNAL","ciphertext":"c2VhbGVk"}""",
+            from = from,
+            to = "alice",
+            timestamp = 1_000L
+        ),
+        fromPeer = "relay"
+    )
+}
@@ -0,0 +1,162 @@
+package com.chain.messaging.core.messaging.presence
+
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for PresenceEngine
+ */
+class PresenceEngineTest {
+
+    private val transport = FakeTransport()
+
+    @Test
+    fun `a burst of typing events should publish once per frame`() = runTest {
+        // Given
+        val engine = engine()
+        val emitted = collect(engine.typingIn("group"))
+
+        // When - 200 members type, most of them repeatedly, within one frame
+        repeat(1_000) { engine.onTyping("group", "user${it % 200}", isTyping = true) }
+        advanceTimeBy(PresenceEngine.FRAME_MS * 2)
+
+        // Then
+        assertEquals(2, emitted.size)
+        assertEquals(200, emitted.last().size)
+        assertEquals(200, engine.typingUsers.value["group"]?.size)
+    }
+
+    @Test
+    fun `typing should expire unless it is repeated`() = runTest {
+        // Given
+        val engine = engine()
+        engine.onTyping("chat", "alice", isTyping = true)
+        engine.onTyping("chat", "bob", isTyping = true)
+
+        // When
+        advanceTimeBy(2_000)
+        engine.onTyping("chat", "bob", isTyping = true)
+        advanceTimeBy(1_500)
+
+        // Then
+        assertEquals(setOf("bob"), engine.typingIn("chat").value)
+
+        advanceTimeBy(2_000)
+        assertEquals(emptySet<String>(), engine.typingIn("chat").value)
+    }
+
+    @Test
+    fun `local keystrokes should be throttled and debounced`() = runTest {
+        // Given
+        val engine = engine()
+
+        // When - a keystroke every 100 ms for 5 s, then nothing
+        repeat(50) {
+            engine.onLocalTyping("chat")
+            advanceTimeBy(100)
+        }
+        advanceTimeBy(PresenceEngine.OUTBOUND_IDLE_MS + 500)
+
+        // Then - a start, refreshes every 2 s and one stop
+        assertEquals(listOf(true, true, true, false), transport.sent.map { it.second })
+    }
+
+    @Test
+    fun `a stop before the start went out should send nothing`() = runTest {
+        // Given
+        val engine = engine()
+
+        // When
+        engine.onLocalTyping("chat")
+        engine.onLocalTypingStopped("chat")
+        advanceTimeBy(PresenceEngine.FRAME_MS * 2)
+
+        // Then
+        assertTrue(transport.sent.isEmpty())
+    }
+
+    @Test
+    fun `online users should go offline when not refreshed`() = runTest {
+        // Given
+        val engine = engine()
+        val presence = engine.presenceOf("alice")
+
+        // When
+        engine.onPresence("alice", isOnline = true, lastSeen = 1_000L)
+        advanceTimeBy(PresenceEngine.FRAME_MS * 2)
+        val online = presence.value
+        advanceTimeBy(PresenceEngine.ONLINE_TIMEOUT_MS + 1_000)
+
+        // Then
+        assertEquals(UserPresence(isOnline = true, lastSeen = 1_000L), online)
+        assertEquals(UserPresence(isOnline = false, lastSeen = 1_000L), presence.value)
+        assertEquals(false, engine.onlineUsers.value["alice"])
+    }
+
+    @Test
+    fun `signals from the transport should be applied`() = runTest {
+        // Given
+        val engine = engine()
+        runCurrent()
+
+        // When
+        transport.signals.emit(PresenceSignal.Typing("chat", "alice", isTyping = true))
+        transport.signals.emit(PresenceSignal.Online("alice", isOnline = true, lastSeen = 5L))
+        advanceTimeBy(PresenceEngine.FRAME_MS * 2)
+
+        // Then
+        assertEquals(setOf("alice"), engine.typingIn("chat").value)
+        assertTrue(engine.isUserOnline("alice"))
+    }
+
+    @Test
+    fun `stats should report event rates`() = runTest {
+        // Given
+        val engine = engine()
+        engine.stats()
+
+        // When
+        repeat(100) { engine.onTyping("chat", "user$it", isTyping = true) }
+        advanceTimeBy(1_000)
+        val stats = engine.stats()
+
+        // Then
+        assertEquals(100.0, stats.inboundEventsPerSecond, 0.01)
+        assertTrue(stats.emissionsPerSecond > 0.0)
+        assertTrue(stats.allocatedBytesPerSecond > 0L)
+    }
+
+    // Frames and timeouts run on the test scheduler's virtual clock
+    private fun TestScope.engine() = PresenceEngine(
+        transport = transport,
+        metricsRegistry = MetricsRegistry(),
+        scope = backgroundScope,
+        clock = { testScheduler.currentTime }
+    )
+
+    private fun <T> TestScope.collect(flow: Flow<T>): List<T> {
+        val values = mutableListOf<T>()
+        backgroundScope.launch(UnconfinedTestDispatcher(testScheduler)) { flow.collect { values += it } }
+        return values
+    }
+
+    private class FakeTransport : PresenceTransport {
+        val sent = mutableListOf<Pair<String, Boolean>>()
+        val signals = MutableSharedFlow<PresenceSignal>()
+
+        override suspend fun sendTyping(chatId: String, isTyping: Boolean) {
+            sent += chatId to isTyping
+        }
+
+        override fun incoming(): Flow<PresenceSignal> = signals
+    }
+}
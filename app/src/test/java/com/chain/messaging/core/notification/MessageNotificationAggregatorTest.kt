@@ -0,0 +1,125 @@
+package com.chain.messaging.core.notification
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for MessageNotificationAggregator
+ */
+class MessageNotificationAggregatorTest {
+
+    private val aggregator = MessageNotificationAggregator(windowMs = 300, maxLines = 5)
+
+    @Test
+    fun `a burst should fold into one notification per chat plus a summary`() {
+        // Given - 500 messages round-robin over 20 chats
+        val opened = (0 until 500).map { add("chat_${it % 20}", "msg_$it") }
+
+        // When
+        val batch = aggregator.drain()
+
+        // Then
+        assertEquals(1, opened.count { it })
+        assertTrue(opened.first())
+        assertEquals(20, batch.chats.size)
+        assertEquals(20, batch.summary?.size)
+        assertEquals(21, batch.posts)
+        assertEquals(500, batch.messages.size)
+        val chat = batch.chats.first { it.chatId == "chat_0" }
+        assertEquals(listOf("msg_400", "msg_420", "msg_440", "msg_460", "msg_480"), chat.lines.map { it.messageId })
+    }
+
+    @Test
+    fun `a replayed message should not be posted again`() {
+        // Given
+        add("chat_a", "msg_1")
+        add("chat_b", "msg_2")
+        aggregator.drain()
+
+        // When
+        add("chat_a", "msg_1")
+        val batch = aggregator.drain()
+
+        // Then
+        assertTrue(batch.isEmpty)
+        assertEquals(1, batch.skippedUnchanged)
+        assertTrue(batch.messages.isEmpty())
+    }
+
+    @Test
+    fun `only chats with new messages should be posted after the first window`() {
+        // Given
+        add("chat_a", "msg_1")
+        add("chat_b", "msg_2")
+        aggregator.drain()
+
+        // When
+        val opened = add("chat_b", "msg_3")
+        val batch = aggregator.drain()
+
+        // Then
+        assertTrue(opened)
+        assertEquals(listOf("chat_b"), batch.chats.map { it.chatId })
+        assertEquals(listOf("msg_2", "msg_3"), batch.chats.single().lines.map { it.messageId })
+        assertEquals(listOf("chat_a", "chat_b"), batch.summary?.map { it.chatId })
+    }
+
+    @Test
+    fun `clearing a chat should start it afresh and keep the summary for the rest`() {
+        // Given
+        add("chat_a", "msg_1")
+        add("chat_b", "msg_2")
+        aggregator.drain()
+
+        // When
+        val cleared = aggregator.clear("chat_a")
+        val afterClear = aggregator.drain()
+        add("chat_a", "msg_3")
+        val afterNewMessage = aggregator.drain()
+
+        // Then
+        assertTrue(cleared)
+        assertFalse(aggregator.clear("unknown"))
+        assertEquals(listOf("chat_b"), afterClear.summary?.map { it.chatId })
+        assertTrue(afterClear.chats.isEmpty())
+        assertEquals(listOf("msg_3"), afterNewMessage.chats.single().lines.map { it.messageId })
+        assertEquals(2, afterNewMessage.summary?.size)
+    }
+
+    @Test
+    fun `the summary should go only with the last chat`() {
+        // Given
+        add("chat_a", "msg_1")
+        add("chat_b", "msg_2")
+        aggregator.drain()
+        aggregator.clear("chat_a")
+        aggregator.drain()
+
+        // When
+        aggregator.clear("chat_b")
+        val afterLast = aggregator.drain()
+        add("chat_c", "msg_3")
+        val afterNewChat = aggregator.drain()
+
+        // Then
+        assertNull(afterLast.summary)
+        assertEquals(1, aggregator.chatCount())
+        assertNull(afterNewChat.summary)
+    }
+
+    private fun add(chatId: String, messageId: String): Boolean = aggregator.add(
+        chatId = chatId,
+        chatName = null,
+        line = NotificationLine(
+            messageId = messageId,
+            senderId = "sender_$chatId",
+            senderName = "Sender",
+            text = "text of $messageId",
+            timestamp = 0L
+        ),
+        unreadCount = 0,
+        channelId = "messages",
+        defaults = 0,
+        canReply = true
+    )
+}
@@ -3,6 +3,7 @@ package com.chain.messaging.core.notification
 import android.content.Context
 import androidx.core.app.NotificationManagerCompat
 import androidx.test.core.app.ApplicationProvider
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.model.NotificationSettings
@@ -32,7 +33,7 @@ class NotificationServiceTest {
     @Before
     fun setup() {
         context = ApplicationProvider.getApplicationContext()
-        notificationService = NotificationService(context)
+        notificationService = NotificationService(context, MetricsRegistry())
     }
     
     @Test
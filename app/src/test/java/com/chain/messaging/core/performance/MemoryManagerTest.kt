@@ -2,6 +2,9 @@ package com.chain.messaging.core.performance
 
 import android.app.ActivityManager
 import android.content.Context
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.memory.MemoryBudgetPolicy
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.first
@@ -35,7 +38,10 @@ class MemoryManagerTest {
             memoryInfo.availMem = mockMemoryInfo.availMem
         }
         
-        memoryManager = MemoryManagerImpl(mockContext)
+        memoryManager = MemoryManagerImpl(
+            mockContext,
+            MemoryBudgetManager(MemoryBudgetPolicy.forDevice(256, isLowRamDevice = false), MetricsRegistry())
+        )
     }
     
     @After
@@ -2,6 +2,7 @@ package com.chain.messaging.core.performance
 
 import android.content.Context
 import android.os.BatteryManager
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.first
@@ -29,7 +30,7 @@ class PerformanceMonitorTest {
         every { mockBatteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) } returns 80
         every { mockBatteryManager.isCharging } returns false
         
-        performanceMonitor = PerformanceMonitorImpl(mockContext, mockPerformanceStorage)
+        performanceMonitor = PerformanceMonitorImpl(mockContext, mockPerformanceStorage, MetricsRegistry())
     }
     
     @After
@@ -2,6 +2,9 @@ package com.chain.messaging.core.performance
 
 import android.content.Context
 import android.view.WindowManager
+import com.chain.messaging.core.performance.benchmark.BenchmarkMeasurement
+import com.chain.messaging.core.performance.benchmark.BenchmarkReport
+import com.chain.messaging.core.performance.benchmark.MessagingBenchmarkSuite
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.first
@@ -19,6 +22,7 @@ class PerformanceTesterTest {
     private lateinit var mockPerformanceMonitor: PerformanceMonitor
     private lateinit var mockMemoryManager: MemoryManager
     private lateinit var mockWindowManager: WindowManager
+    private lateinit var mockBenchmarkSuite: MessagingBenchmarkSuite
     
     @Before
     fun setup() {
@@ -26,10 +30,20 @@ class PerformanceTesterTest {
         mockPerformanceMonitor = mockk(relaxed = true)
         mockMemoryManager = mockk(relaxed = true)
         mockWindowManager = mockk(relaxed = true)
+        mockBenchmarkSuite = mockk()
         
         every { mockContext.getSystemService(Context.WINDOW_SERVICE) } returns mockWindowManager
+        every { mockContext.filesDir } returns java.nio.file.Files.createTempDirectory("benchmarks").toFile()
+        coEvery { mockBenchmarkSuite.runMessagePipeline(any(), any()) } answers {
+            pipelineMeasurement(firstArg())
+        }
+        coEvery { mockBenchmarkSuite.runAll(any()) } returns BenchmarkReport(
+            suite = MessagingBenchmarkSuite.SUITE_NAME,
+            createdAt = 0L,
+            results = listOf(pipelineMeasurement(100))
+        )
         
-        performanceTester = PerformanceTesterImpl(mockContext, mockPerformanceMonitor, mockMemoryManager)
+        performanceTester = PerformanceTesterImpl(mockContext, mockPerformanceMonitor, mockMemoryManager, mockBenchmarkSuite)
     }
     
     @After
@@ -110,7 +124,7 @@ class PerformanceTesterTest {
         
         // Then
         assertTrue("Should have test results", result.testResults.isNotEmpty())
-        assertEquals("Should have 4 test results", 4, result.testResults.size)
+        assertEquals("Should have 5 test results", 5, result.testResults.size)
         assertTrue("Should have overall score", result.overallScore >= 0.0)
         assertNotNull("Should have summary", result.summary)
         assertNotNull("Should have recommendations", result.recommendations)
@@ -166,4 +180,18 @@ class PerformanceTesterTest {
         }
         assertEquals("Performance grade should match score", expectedGrade, report.performanceGrade)
     }
-}
\ No newline at end of file
+    
+    private fun pipelineMeasurement(operations: Int): BenchmarkMeasurement {
+        return BenchmarkMeasurement(
+            name = "message_send_pipeline",
+            operations = operations,
+            meanNs = 2_000_000.0,
+            p50Ns = 1_800_000,
+            p90Ns = 2_500_000,
+            p99Ns = 4_000_000,
+            minNs = 900_000,
+            maxNs = 6_000_000,
+            opsPerSecond = 500.0
+        )
+    }
+}
@@ -0,0 +1,142 @@
+package com.chain.messaging.core.performance.benchmark
+
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+
+/**
+ * JVM runs of the benchmarks that do not need the device database or libsignal
+ * natives. Only the shape of the report is checked here, since JVM timings say
+ * nothing about devices; reports are written to build/benchmarks so CI can
+ * archive them.
+ */
+class MessagingBenchmarksTest {
+
+    private val runner = BenchmarkRunner()
+    private val config = BenchmarkConfig(warmupIterations = 1, measurementIterations = 2, operationsPerIteration = 100)
+
+    @Test
+    fun `summary should use nearest-rank percentiles`() {
+        // Given
+        val samples = LongArray(100) { (it + 1).toLong() }
+
+        // When
+        val measurement = BenchmarkRunner.summarize("sample", samples, elapsedNs = 1_000_000)
+
+        // Then
+        assertEquals(50L, measurement.p50Ns)
+        assertEquals(90L, measurement.p90Ns)
+        assertEquals(99L, measurement.p99Ns)
+        assertEquals(1L, measurement.minNs)
+        assertEquals(100L, measurement.maxNs)
+        assertEquals(100_000.0, measurement.opsPerSecond, 0.001)
+    }
+
+    @Test
+    fun `runner should count failed operations as errors`() = runTest {
+        // Given
+        val definition = BenchmarkDefinition(
+            name = "flaky",
+            config = config,
+            operation = { index, _ -> if (index % 10 == 0) throw IllegalStateException("boom") }
+        )
+
+        // When
+        val measurement = runner.run(definition)
+
+        // Then
+        assertEquals(200, measurement.operations)
+        assertEquals(20, measurement.errors)
+    }
+
+    @Test
+    fun `regression checker should flag absolute limits and baseline slowdowns`() {
+        // Given
+        val baseline = report(measurement(MessagingBenchmarks.CACHE_PUT, p50Ns = 1_000))
+        val current = report(measurement(MessagingBenchmarks.CACHE_PUT, p50Ns = 1_500, p99Ns = 9_000))
+        val thresholds = listOf(RegressionThreshold(MessagingBenchmarks.CACHE_PUT, maxP99Ns = 5_000))
+
+        // When
+        val violations = RegressionChecker.check(current, thresholds, baseline)
+
+        // Then
+        assertEquals(listOf("p99_ns", "p50_slowdown_percent"), violations.map { it.metric })
+        assertTrue(violations[1].message.contains("above maximum"))
+    }
+
+    @Test
+    fun `every on-device benchmark should have a default threshold`() {
+        val names = listOf(
+            MessagingBenchmarks.CACHE_PUT,
+            MessagingBenchmarks.SIGNAL_ENCRYPT,
+            MessagingBenchmarks.GROUP_FAN_OUT,
+            MessagingBenchmarks.CHAT_LIST_LOAD
+        )
+
+        val missing = names.filter { name -> MessagingBenchmarkSuite.DEFAULT_THRESHOLDS.none { it.benchmark == name } }
+
+        assertEquals(emptyList<String>(), missing)
+    }
+
+    @Test
+    fun `report should survive a json round trip`() {
+        // Given
+        val report = report(measurement(MessagingBenchmarks.DHT_FIND_CLOSEST, p50Ns = 42))
+
+        // When
+        val decoded = BenchmarkReport.fromJson(report.toJson())
+
+        // Then
+        assertEquals(report, decoded)
+    }
+
+    @Test
+    fun `jvm benchmarks should produce a complete report`() = runTest {
+        // Given
+        val definitions = listOf(
+            MessagingBenchmarks.messageCachePut(config),
+            MessagingBenchmarks.messageCachePage(config),
+            MessagingBenchmarks.dhtFindClosest(peerCount = 500, config = config),
+            MessagingBenchmarks.waveformBuild(),
+            MessagingBenchmarks.waveformLoad(config),
+            MessagingBenchmarks.waveformLoadText(config),
+            MessagingBenchmarks.notificationBurst()
+        )
+
+        // When
+        val report = runner.runSuite("messaging-jvm", definitions)
+        writeReport(report)
+
+        // Then
+        assertEquals(definitions.map { it.name }, report.results.map { it.name })
+        report.results.forEach { result ->
+            assertEquals(0, result.errors)
+            assertTrue(result.p50Ns <= result.p99Ns)
+            assertTrue(result.opsPerSecond > 0)
+        }
+    }
+
+    private fun writeReport(report: BenchmarkReport) {
+        val directory = File("build/benchmarks").apply { mkdirs() }
+        File(directory, "${report.suite}.json").writeText(report.toJson())
+    }
+
+    private fun report(vararg results: BenchmarkMeasurement): BenchmarkReport {
+        return BenchmarkReport(suite = "test", createdAt = 0L, results = results.toList())
+    }
+
+    private fun measurement(name: String, p50Ns: Long, p99Ns: Long = p50Ns): BenchmarkMeasurement {
+        return BenchmarkMeasurement(
+            name = name,
+            operations = 100,
+            meanNs = p50Ns.toDouble(),
+            p50Ns = p50Ns,
+            p90Ns = p99Ns,
+            p99Ns = p99Ns,
+            minNs = p50Ns,
+            maxNs = p99Ns,
+            opsPerSecond = 1_000.0
+        )
+    }
+}
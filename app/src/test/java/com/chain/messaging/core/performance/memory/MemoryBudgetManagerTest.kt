@@ -0,0 +1,157 @@
+package com.chain.messaging.core.performance.memory
+
+import android.content.ComponentCallbacks2
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.data.local.storage.MessageCache
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.model.MessageStatus
+import com.chain.messaging.domain.model.MessageType
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.util.Date
+
+class MemoryBudgetManagerTest {
+
+    private lateinit var metricsRegistry: MetricsRegistry
+    private lateinit var manager: MemoryBudgetManager
+
+    @Before
+    fun setup() {
+        metricsRegistry = MetricsRegistry()
+        manager = MemoryBudgetManager(MemoryBudgetPolicy(BUDGET_BYTES), metricsRegistry)
+    }
+
+    @Test
+    fun `budget should follow the device memory class`() {
+        val regular = MemoryBudgetPolicy.forDevice(256, isLowRamDevice = false)
+        val lowRam = MemoryBudgetPolicy.forDevice(256, isLowRamDevice = true)
+
+        assertEquals(64L * 1024 * 1024, regular.totalBudgetBytes)
+        assertEquals(32L * 1024 * 1024, lowRam.totalBudgetBytes)
+        assertEquals(16L * 1024 * 1024, regular.budgetFor(0.25f))
+    }
+
+    @Test
+    fun `register should apply the cache's share of the budget`() {
+        // Given
+        val cache = lruCache("low", CachePriority.LOW, share = 0.1f)
+        repeat(50) { cache.put("key$it", ByteArray(100)) }
+
+        // When
+        manager.register(cache)
+
+        // Then
+        assertEquals(10_000L, cache.maxBytes())
+        assertTrue(cache.sizeBytes() <= 10_000L)
+        assertEquals(listOf("low"), manager.getCacheUsage().map { it.name })
+    }
+
+    @Test
+    fun `lru cache should evict least recently used entries by bytes`() {
+        // Given
+        val cache = lruCache("lru", CachePriority.MEDIUM, share = 0.1f, initialMaxBytes = 300L)
+        cache.put("a", ByteArray(100))
+        cache.put("b", ByteArray(100))
+        cache.put("c", ByteArray(100))
+
+        // When - touch "a" so "b" is the eldest
+        cache.get("a")
+        cache.put("d", ByteArray(100))
+
+        // Then
+        assertNull(cache.get("b"))
+        assertNotNull(cache.get("a"))
+        assertEquals(300L, cache.sizeBytes())
+    }
+
+    @Test
+    fun `pressure should shrink low priority caches first`() {
+        // Given
+        val low = lruCache("low", CachePriority.LOW, share = 0.3f)
+        val medium = lruCache("medium", CachePriority.MEDIUM, share = 0.3f)
+        val high = lruCache("high", CachePriority.HIGH, share = 0.3f)
+        listOf(low, medium, high).forEach { cache ->
+            manager.register(cache)
+            repeat(100) { cache.put("key$it", ByteArray(100)) }
+        }
+
+        // When
+        val result = manager.trim(MemoryPressure.LOW)
+
+        // Then - 25%, 50% and 75% of each cache is kept
+        assertEquals(2_500L, low.sizeBytes())
+        assertEquals(5_000L, medium.sizeBytes())
+        assertEquals(7_500L, high.sizeBytes())
+        assertEquals(7_500L + 5_000L + 2_500L, result.reclaimedBytes)
+        assertEquals(result.reclaimedBytes, metricsRegistry.counter(MemoryBudgetManager.RECLAIMED_BYTES).sum())
+        assertEquals(15_000L, metricsRegistry.gauge(MemoryBudgetManager.CACHE_BYTES).get())
+    }
+
+    @Test
+    fun `trim levels should map to pressure`() {
+        assertEquals(MemoryPressure.MODERATE, MemoryPressure.fromTrimLevel(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN))
+        assertEquals(MemoryPressure.LOW, MemoryPressure.fromTrimLevel(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND))
+        assertEquals(MemoryPressure.CRITICAL, MemoryPressure.fromTrimLevel(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL))
+        assertEquals(MemoryPressure.COMPLETE, MemoryPressure.fromTrimLevel(ComponentCallbacks2.TRIM_MEMORY_COMPLETE))
+        assertEquals(MemoryPressure.NONE, MemoryPressure.fromTrimLevel(0))
+    }
+
+    @Test
+    fun `clearAll should empty every cache`() {
+        // Given
+        val high = lruCache("high", CachePriority.HIGH, share = 0.5f)
+        manager.register(high)
+        repeat(10) { high.put("key$it", ByteArray(100)) }
+
+        // When
+        val result = manager.clearAll()
+
+        // Then
+        assertEquals(0L, high.sizeBytes())
+        assertEquals(1_000L, result.reclaimedByCache["high"])
+        assertEquals(1_000L, manager.getCacheUsage().single().reclaimedBytes)
+    }
+
+    @Test
+    fun `message cache should evict oldest messages to its byte budget`() = runTest {
+        // Given
+        val messageCache = MessageCache(manager)
+        repeat(20) { index -> messageCache.putMessage(message(index)) }
+        val bytesPerMessage = messageCache.sizeBytes() / 20
+
+        // When
+        val freed = messageCache.trimToBytes(bytesPerMessage * 5)
+
+        // Then - the newest five remain and the chat index matches
+        assertEquals(bytesPerMessage * 15, freed)
+        assertNull(messageCache.getMessage(messageId(0)))
+        assertNotNull(messageCache.getMessage(messageId(19)))
+        assertEquals(5, messageCache.getCachedMessageCount("chat1"))
+        assertEquals((19 downTo 15).map(::messageId), messageCache.getMessages("chat1", 10, 0).map { it.id })
+    }
+
+    private fun lruCache(
+        name: String,
+        priority: CachePriority,
+        share: Float,
+        initialMaxBytes: Long = Long.MAX_VALUE
+    ) = ByteBudgetLruCache<String, ByteArray>(name, priority, share, initialMaxBytes) { _, value -> value.size.toLong() }
+
+    private fun message(index: Int) = Message(
+        id = messageId(index),
+        chatId = "chat1",
+        senderId = "user1",
+        content = "Message body $index".padEnd(32, '.'),
+        type = MessageType.TEXT,
+        timestamp = Date(1_000L * index),
+        status = MessageStatus.SENT
+    )
+
+    private fun messageId(index: Int) = "message${index.toString().padStart(2, '0')}"
+
+    private companion object {
+        const val BUDGET_BYTES = 100_000L
+    }
+}
@@ -0,0 +1,163 @@
+package com.chain.messaging.core.performance.memory
+
+import com.chain.messaging.core.performance.LeakType
+import org.junit.Assert.*
+import org.junit.Test
+
+class ObjectLifetimeTrackerTest {
+
+    private var now = 0L
+    private var collections = 0
+
+    private val tracker = ObjectLifetimeTracker(
+        retainedAfterMs = 5_000L,
+        clock = { now },
+        gcTrigger = {
+            collections++
+            System.gc()
+            Thread.sleep(50)
+        }
+    )
+
+    @Test
+    fun `reachable objects should be reported once past the threshold`() {
+        // Given
+        val viewModel = Any()
+        tracker.watch(viewModel, WatchedObjectKind.VIEW_MODEL, "ChatViewModel", estimatedBytes = 2_048L)
+
+        // When
+        now = 1_000L
+        val early = tracker.check()
+        now = 6_000L
+        val late = tracker.check()
+
+        // Then
+        assertEquals(0, early.retainedCount)
+        assertEquals(1, late.retainedCount)
+        assertEquals(2_048L, late.retainedBytes)
+        assertEquals(mapOf(WatchedObjectKind.VIEW_MODEL to 1), late.retainedByKind)
+        assertEquals(LeakType.VIEW_MODEL_LEAK, late.retained.single().kind.leakType)
+        assertNotNull(viewModel)
+    }
+
+    @Test
+    fun `each candidate should trigger at most one collection`() {
+        // Given
+        val connection = Any()
+        tracker.watch(connection, WatchedObjectKind.PEER_CONNECTION)
+        now = 10_000L
+
+        // When
+        repeat(3) { tracker.check() }
+
+        // Then
+        assertEquals(1, collections)
+        assertEquals(1, tracker.watchedCount())
+        assertNotNull(connection)
+    }
+
+    @Test
+    fun `collections should wait until allowed and stay rate limited`() {
+        // Given
+        var allowed = false
+        val gated = ObjectLifetimeTracker(
+            retainedAfterMs = 5_000L,
+            clock = { now },
+            gcTrigger = { collections++ },
+            collectionAllowed = { allowed },
+            minCollectionIntervalMs = 60_000L
+        )
+        val first = Any()
+        val second = Any()
+        gated.watch(first, WatchedObjectKind.VIEW_MODEL)
+        now = 10_000L
+
+        // When
+        val whileForeground = gated.check()
+        allowed = true
+        val inBackground = gated.check()
+        gated.watch(second, WatchedObjectKind.VIEW_MODEL)
+        now = 20_000L
+        val withinInterval = gated.check()
+        now = 80_000L
+        val afterInterval = gated.check()
+
+        // Then - nothing is reported before it was given a collection
+        assertEquals(0, whileForeground.retainedCount)
+        assertEquals(1, inBackground.retainedCount)
+        assertEquals(1, withinInterval.retainedCount)
+        assertEquals(2, afterInterval.retainedCount)
+        assertEquals(2, collections)
+        assertNotNull(first)
+        assertNotNull(second)
+    }
+
+    @Test
+    fun `collected objects should not be reported`() {
+        // Given
+        watchUnreachable()
+        now = 10_000L
+
+        // When - collections are not guaranteed, so allow a few
+        var report = tracker.check()
+        repeat(5) {
+            if (report.retainedCount == 0) return@repeat
+            System.gc()
+            Thread.sleep(50)
+            report = tracker.check()
+        }
+
+        // Then
+        assertEquals(0, report.retainedCount)
+        assertEquals(0, tracker.watchedCount())
+    }
+
+    @Test
+    fun `unwatch should stop tracking`() {
+        // Given
+        val session = Any()
+        val key = tracker.watch(session, WatchedObjectKind.CALL_SESSION, key = "call-1")
+
+        // When
+        tracker.unwatch(key!!)
+        now = 10_000L
+
+        // Then
+        assertEquals(0, tracker.check().retainedCount)
+        assertEquals(0, collections)
+        assertNotNull(session)
+    }
+
+    @Test
+    fun `allocation sampler should report per subsystem rates`() {
+        // Given
+        var clock = 0L
+        var processBytes = 1_000_000L
+        val sampler = AllocationSampler(sampleRate = 1, clock = { clock }, processAllocatedBytes = { processBytes })
+
+        // When
+        sampler.record(AllocationSampler.CRYPTO, 4_000L)
+        sampler.record(AllocationSampler.BLOCKCHAIN, 1_000L)
+        sampler.record(AllocationSampler.CRYPTO, 6_000L)
+        clock = 2_000L
+        processBytes = 3_000_000L
+        val rates = sampler.sample()
+
+        // Then
+        assertEquals(1_000_000L, rates.processBytesPerSecond)
+        assertEquals(5_000L, rates.bySubsystem[AllocationSampler.CRYPTO])
+        assertEquals(500L, rates.bySubsystem[AllocationSampler.BLOCKCHAIN])
+
+        // When - nothing new recorded
+        clock = 4_000L
+        val idle = sampler.sample()
+
+        // Then
+        assertEquals(0L, idle.bySubsystem[AllocationSampler.CRYPTO])
+    }
+
+    // Separate frame so no local keeps the object alive
+    private fun watchUnreachable() {
+        tracker.watch(ByteArray(1024), WatchedObjectKind.DISTRIBUTION_JOB)
+    }
+}
@@ -0,0 +1,50 @@
+package com.chain.messaging.core.performance.metrics
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class FrameJankMonitorTest {
+
+    @Test
+    fun `frames over one and a half intervals should count as janky`() {
+        // Given - a 60 Hz display, so a 16.7 ms frame budget
+        val monitor = FrameJankMonitor(MetricsRegistry(), refreshRateHz = 60f)
+        val frameTimes = longArrayOf(0, 16, 33, 50, 90, 106, 140, 156).map { 1_000_000_000L + it * MS }
+
+        // When
+        frameTimes.forEach(monitor::recordFrame)
+        val summary = monitor.summary()
+
+        // Then - the first frame is only the baseline; 40 ms and 34 ms gaps are janky
+        assertEquals(7L, summary.frames)
+        assertEquals(2L, summary.jankyFrames)
+        assertEquals(200.0 / 7, summary.jankPercent, 0.001)
+        assertEquals(40_000L, summary.frameIntervals.maxMicros)
+    }
+
+    @Test
+    fun `faster displays should have a tighter budget`() {
+        // Given
+        val monitor = FrameJankMonitor(MetricsRegistry())
+        monitor.setRefreshRate(120f)
+
+        // When - 14 ms frames are fine at 60 Hz but janky at 120 Hz
+        monitor.recordFrame(1_000 * MS)
+        monitor.recordFrame(1_014 * MS)
+
+        // Then
+        assertEquals(1L, monitor.summary().jankyFrames)
+    }
+
+    @Test
+    fun `no frames should report no jank`() {
+        val summary = FrameJankMonitor(MetricsRegistry()).summary()
+
+        assertEquals(0L, summary.frames)
+        assertEquals(0.0, summary.jankPercent, 0.0)
+    }
+
+    private companion object {
+        const val MS = 1_000_000L
+    }
+}
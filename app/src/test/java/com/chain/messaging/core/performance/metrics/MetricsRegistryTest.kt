@@ -0,0 +1,115 @@
+package com.chain.messaging.core.performance.metrics
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MetricsRegistryTest {
+
+    @Test
+    fun `bucket bounds should stay within the relative error`() {
+        // Given
+        val values = (0L..10_000L) + listOf(123_456L, 9_876_543L, 1L shl 40, Long.MAX_VALUE / 3)
+
+        // Then
+        values.forEach { value ->
+            val upper = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value))
+            assertTrue("upper bound $upper below $value", upper >= value)
+            assertTrue("upper bound $upper too far above $value", upper - value <= value / LatencyHistogram.SUB_BUCKETS)
+        }
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < LatencyHistogram.BUCKET_COUNT)
+    }
+
+    @Test
+    fun `percentiles should be accurate to one bucket`() {
+        // Given
+        val histogram = LatencyHistogram("test")
+
+        // When
+        (1L..1_000L).forEach { histogram.record(it) }
+        val snapshot = histogram.snapshot()
+
+        // Then
+        assertEquals(1_000L, snapshot.count)
+        assertEquals(500.5, snapshot.meanMicros, 0.001)
+        assertEquals(1_000L, snapshot.maxMicros)
+        assertWithinBucket(500L, snapshot.percentile(0.50))
+        assertWithinBucket(990L, snapshot.percentile(0.99))
+        assertEquals(1_000L, snapshot.percentile(1.0))
+    }
+
+    @Test
+    fun `snapshot difference should cover only the interval`() {
+        // Given
+        val histogram = LatencyHistogram("test")
+        repeat(100) { histogram.record(10_000) }
+        val before = histogram.snapshot()
+
+        // When
+        repeat(10) { histogram.record(100) }
+        val interval = histogram.snapshot() - before
+
+        // Then
+        assertEquals(10L, interval.count)
+        assertEquals(100.0, interval.meanMicros, 0.001)
+        assertWithinBucket(100L, interval.percentile(0.99))
+    }
+
+    @Test
+    fun `registry snapshots should report counter deltas`() {
+        // Given
+        val registry = MetricsRegistry()
+        registry.counter(HotPathMetrics.MESSAGES_SENT).add(5)
+        registry.gauge(HotPathMetrics.BLOCKCHAIN_PENDING_CONFIRMATIONS).set(3)
+        val first = registry.snapshot()
+
+        // When
+        registry.counter(HotPathMetrics.MESSAGES_SENT).add(7)
+        registry.histogram(HotPathMetrics.MESSAGE_SEND).record(2_000)
+        val interval = registry.snapshot() - first
+
+        // Then
+        assertSame(registry.counter(HotPathMetrics.MESSAGES_SENT), registry.counter(HotPathMetrics.MESSAGES_SENT))
+        assertEquals(7L, interval.counters[HotPathMetrics.MESSAGES_SENT])
+        assertEquals(3L, interval.gauges[HotPathMetrics.BLOCKCHAIN_PENDING_CONFIRMATIONS])
+        assertEquals(1L, interval.histograms[HotPathMetrics.MESSAGE_SEND]?.count)
+    }
+
+    @Test
+    fun `concurrent recording should not lose updates`() {
+        // Given
+        val registry = MetricsRegistry()
+        val counter = registry.counter("concurrent")
+        val histogram = registry.histogram("concurrent")
+        val threads = 8
+        val perThread = 10_000
+        val executor = Executors.newFixedThreadPool(threads)
+        val start = CountDownLatch(1)
+
+        // When
+        repeat(threads) { thread ->
+            executor.execute {
+                start.await()
+                repeat(perThread) { i ->
+                    counter.increment()
+                    histogram.record((thread * perThread + i).toLong())
+                }
+            }
+        }
+        start.countDown()
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+
+        // Then
+        val snapshot = histogram.snapshot()
+        assertEquals((threads * perThread).toLong(), counter.sum())
+        assertEquals((threads * perThread).toLong(), snapshot.count)
+        assertEquals((threads * perThread - 1).toLong(), snapshot.maxMicros)
+    }
+
+    private fun assertWithinBucket(expected: Long, actual: Long) {
+        assertTrue("$actual not within 12.5% of $expected", actual >= expected && actual - expected <= expected / 8)
+    }
+}
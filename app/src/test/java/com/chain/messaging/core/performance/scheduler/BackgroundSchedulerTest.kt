@@ -0,0 +1,204 @@
+package com.chain.messaging.core.performance.scheduler
+
+import com.chain.messaging.core.performance.OptimizationMode
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import kotlin.random.Random
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class BackgroundSchedulerTest {
+
+    @Test
+    fun `tasks due within the flex window should share a wake-up`() = runTest {
+        // Given - two minute-long tasks registered ten seconds apart
+        val scheduler = scheduler()
+        var first = 0
+        var second = 0
+        scheduler.schedulePeriodic("first", MINUTE_MS, backgroundScope) { first++ }
+        scheduler.schedulePeriodic("second", MINUTE_MS, backgroundScope, initialDelayMs = 10_000L) { second++ }
+
+        // When
+        advanceTimeBy(10 * MINUTE_MS)
+        runCurrent()
+
+        // Then - the second task is always pulled into the first one's wake-up
+        val stats = scheduler.stats()
+        assertEquals(11, first)
+        assertEquals(11, second)
+        assertEquals(11, stats.wakeUpsLastHour)
+        assertEquals(22, stats.taskRunsLastHour)
+        assertEquals(2.0, stats.coalescingRatio, 0.0)
+    }
+
+    @Test
+    fun `pulled forward tasks should keep their period`() = runTest {
+        // Given
+        val scheduler = scheduler()
+        val runsAt = mutableListOf<Long>()
+        scheduler.schedulePeriodic("fast", 5_000L, backgroundScope) { }
+        scheduler.schedulePeriodic("slow", 30_000L, backgroundScope, initialDelayMs = 30_000L) {
+            runsAt += testScheduler.currentTime
+        }
+
+        // When
+        advanceTimeBy(2 * MINUTE_MS)
+        runCurrent()
+
+        // Then - served early by the fast task's wake-ups, but still every 30 seconds
+        assertEquals(listOf(25_000L, 55_000L, 85_000L, 115_000L), runsAt)
+        assertEquals(25, scheduler.stats().wakeUpsLastHour)
+    }
+
+    @Test
+    fun `intervals should scale with the optimization mode`() = runTest {
+        // Given
+        val scheduler = scheduler()
+        var runs = 0
+        scheduler.schedulePeriodic("sync", 30_000L, backgroundScope) { runs++ }
+        runCurrent()
+
+        // When
+        scheduler.setOptimizationMode(OptimizationMode.POWER_SAVER)
+        advanceTimeBy(10 * MINUTE_MS)
+        runCurrent()
+
+        // Then - every minute instead of every 30 seconds
+        assertEquals(11, runs)
+        assertEquals(OptimizationMode.POWER_SAVER, scheduler.stats().mode)
+
+        // When - back to normal
+        scheduler.setOptimizationMode(OptimizationMode.NORMAL)
+        advanceTimeBy(5 * MINUTE_MS)
+        runCurrent()
+
+        // Then
+        assertEquals(21, runs)
+    }
+
+    @Test
+    fun `deferrable work should pause in the background while essential work continues`() = runTest {
+        // Given
+        val scheduler = scheduler()
+        var essential = 0
+        var deferrable = 0
+        scheduler.setForeground(false)
+        scheduler.schedulePeriodic("retry", MINUTE_MS, backgroundScope, policy = WorkPolicy.ESSENTIAL) { essential++ }
+        scheduler.schedulePeriodic("scan", MINUTE_MS, backgroundScope) { deferrable++ }
+
+        // When
+        advanceTimeBy(5 * MINUTE_MS)
+
+        // Then
+        assertEquals(5, essential)
+        assertEquals(0, deferrable)
+        assertTrue(scheduler.stats().isPaused)
+
+        // When - foregrounded, overdue work runs at once
+        scheduler.setForeground(true)
+        runCurrent()
+
+        // Then
+        assertEquals(6, essential)
+        assertEquals(1, deferrable)
+
+        // When - Doze holds deferrable work again
+        scheduler.setDeviceIdle(true)
+        advanceTimeBy(3 * MINUTE_MS)
+        runCurrent()
+
+        // Then
+        assertEquals(9, essential)
+        assertEquals(1, deferrable)
+    }
+
+    @Test
+    fun `cancelled tasks should stop running`() = runTest {
+        // Given
+        val scheduler = scheduler()
+        var runs = 0
+        val task = scheduler.schedulePeriodic("maintenance", 30_000L, backgroundScope) { runs++ }
+        advanceTimeBy(MINUTE_MS)
+
+        // When
+        task.cancel()
+        advanceTimeBy(5 * MINUTE_MS)
+        runCurrent()
+
+        // Then
+        assertEquals(2, runs)
+        assertEquals(0, scheduler.stats().registeredTasks)
+    }
+
+    @Test
+    fun `failed runs should be retried after twice the interval`() = runTest {
+        // Given
+        val scheduler = scheduler()
+        val runsAt = mutableListOf<Long>()
+        scheduler.schedulePeriodic("flaky", 30_000L, backgroundScope) {
+            runsAt += testScheduler.currentTime
+            throw IllegalStateException("network down")
+        }
+
+        // When
+        advanceTimeBy(2 * MINUTE_MS)
+        runCurrent()
+
+        // Then
+        assertEquals(listOf(0L, 60_000L, 120_000L), runsAt)
+    }
+
+    @Test
+    fun `benchmark wake-ups per hour against separate timers`() = runTest {
+        // Given - the app's periodic loops at their real intervals, started at random offsets
+        val scheduler = scheduler()
+        val random = Random(42)
+        val loops = listOf(
+            "transaction-pool.cleanup" to 60_000L,
+            "message-pruner" to 60 * MINUTE_MS,
+            "message-router.maintenance" to 60_000L,
+            "dht.maintenance" to 60_000L,
+            "connection-manager.maintenance" to 30_000L,
+            "offline-queue.process" to 30_000L,
+            "cross-device-sync.monitor" to 30 * MINUTE_MS,
+            "threat-detector.scan" to 60_000L,
+            "security-monitoring.scan" to 30_000L,
+            "disappearing-messages.cleanup" to 30_000L,
+            "performance-monitor.metrics" to 5_000L,
+            "performance-monitor.cleanup" to 60 * MINUTE_MS,
+            "performance-monitor.report" to 15 * MINUTE_MS,
+            "battery-optimizer.check" to 30_000L
+        )
+        var separateWakeUps = 0L
+        loops.forEach { (name, interval) ->
+            val offset = random.nextLong(interval)
+            separateWakeUps += (HOUR_MS - offset) / interval + 1
+            scheduler.schedulePeriodic(name, interval, backgroundScope, initialDelayMs = offset) { }
+        }
+
+        // When
+        advanceTimeBy(HOUR_MS)
+        runCurrent()
+        val stats = scheduler.stats()
+
+        println(
+            "background scheduler: ${stats.wakeUpsLastHour} wake-ups/h for ${stats.taskRunsLastHour} runs " +
+                "(separate timers: $separateWakeUps wake-ups/h), coalescing ratio ${"%.2f".format(stats.coalescingRatio)}"
+        )
+
+        // Then - every loop still ran, on well under half the wake-ups
+        assertTrue(stats.taskRunsLastHour >= separateWakeUps - loops.size)
+        assertTrue("${stats.wakeUpsLastHour} wake-ups", stats.wakeUpsLastHour * 2 < separateWakeUps)
+    }
+
+    private fun TestScope.scheduler() = BackgroundScheduler(backgroundScope, clock = { testScheduler.currentTime })
+
+    private companion object {
+        const val MINUTE_MS = 60_000L
+        const val HOUR_MS = 60 * MINUTE_MS
+    }
+}
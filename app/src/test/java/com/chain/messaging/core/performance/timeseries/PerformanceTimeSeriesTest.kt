@@ -0,0 +1,278 @@
+package com.chain.messaging.core.performance.timeseries
+
+import com.chain.messaging.data.local.dao.PerformanceDao
+import com.chain.messaging.data.local.entity.PerformanceAlertEntity
+import com.chain.messaging.data.local.entity.PerformanceSeriesBlockEntity
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import kotlin.math.sin
+import kotlin.random.Random
+
+class PerformanceTimeSeriesTest {
+
+    @Test
+    fun `codec should round trip irregular timestamps and values`() {
+        // Given
+        val random = Random(11)
+        var timestamp = START
+        val timestamps = LongArray(1_000) { timestamp += 5_000L + random.nextLong(-3_000, 3_000_000); timestamp }
+        val values = DoubleArray(1_000) { if (it % 7 == 0) random.nextDouble() * 1e9 else (it / 10).toDouble() }
+        val counts = DoubleArray(1_000) { 12.0 }
+
+        // When
+        val decoded = SeriesBlockCodec.decode(SeriesBlockCodec.encode(timestamps, listOf(values, counts)))
+
+        // Then
+        assertArrayEquals(timestamps, decoded.timestamps)
+        assertArrayEquals(values, decoded.columns[0], 0.0)
+        assertArrayEquals(counts, decoded.columns[1], 0.0)
+    }
+
+    @Test
+    fun `steady gauge samples should compress to a few bits each`() {
+        // Given - 5 s samples of a slowly moving percentage
+        val timestamps = LongArray(720) { START + it * 5_000L }
+        val values = DoubleArray(720) { 0.40 + (it / 60) * 0.01 }
+
+        // When
+        val encoded = SeriesBlockCodec.encode(timestamps, listOf(values))
+
+        // Then - a wide row per sample used well over 100 bytes
+        assertTrue("${encoded.size} bytes", encoded.size < 720 * 2)
+    }
+
+    @Test
+    fun `rollups should match aggregates computed from the raw samples`() = runTest {
+        // Given
+        val dao = InMemoryPerformanceDao()
+        val timeSeries = PerformanceTimeSeries(dao)
+        val samples = (0 until 3 * 720).map { START + it * 5_000L to (it % 97).toDouble() }
+
+        // When
+        samples.forEach { (timestamp, value) -> timeSeries.append(timestamp, mapOf(METRIC to value)) }
+        val to = samples.last().first
+        val result = timeSeries.query(METRIC, START, to, now = to)
+
+        // Then - 3 hours at 5 s exceeds 500 raw points, so minutes are served
+        assertEquals(SeriesTier.MINUTE, result.tier)
+        val expected = samples.groupBy { (timestamp, _) -> timestamp - Math.floorMod(timestamp, 60_000L) }
+        assertEquals(expected.keys.sorted(), result.points.map { it.timestamp })
+        result.points.forEach { point ->
+            val values = expected.getValue(point.timestamp).map { it.second }
+            assertEquals(values.size.toLong(), point.count)
+            assertEquals(values.minOrNull()!!, point.min, 0.0)
+            assertEquals(values.maxOrNull()!!, point.max, 0.0)
+            assertEquals(values.sum(), point.sum, 1e-9)
+        }
+    }
+
+    @Test
+    fun `short ranges should be served from raw samples`() = runTest {
+        // Given
+        val timeSeries = PerformanceTimeSeries(InMemoryPerformanceDao())
+        repeat(200) { timeSeries.append(START + it * 5_000L, mapOf(METRIC to it.toDouble())) }
+
+        // When
+        val result = timeSeries.query(METRIC, START + 50_000L, START + 100_000L, now = START + 1_000_000L)
+
+        // Then
+        assertEquals(SeriesTier.RAW, result.tier)
+        assertEquals((10..20).map { it.toDouble() }, result.points.map { it.mean })
+    }
+
+    @Test
+    fun `flushed partial buckets should merge with their continuation`() = runTest {
+        // Given
+        val dao = InMemoryPerformanceDao()
+        val timeSeries = PerformanceTimeSeries(dao)
+        repeat(6) { timeSeries.append(START + it * 5_000L, mapOf(METRIC to 1.0)) }
+
+        // When
+        timeSeries.flush()
+        repeat(6) { timeSeries.append(START + (it + 6) * 5_000L, mapOf(METRIC to 3.0)) }
+        timeSeries.append(START + 60_000L, mapOf(METRIC to 5.0))
+        val minute = timeSeries.query(METRIC, START, START + 59_999L, maxPoints = 1, now = START + 60_000L)
+
+        // Then
+        assertTrue(dao.blocks.isNotEmpty())
+        assertEquals(SeriesTier.MINUTE, minute.tier)
+        assertEquals(1, minute.points.size)
+        assertEquals(12L, minute.points[0].count)
+        assertEquals(2.0, minute.points[0].mean, 1e-9)
+    }
+
+    @Test
+    fun `a restarted series should continue its open blocks and rollups`() = runTest {
+        // Given - 3 hours of samples, with the process killed mid-minute and mid-hour
+        val dao = InMemoryPerformanceDao()
+        val samples = (0 until 3 * 720).map { START + it * 5_000L to (it % 13).toDouble() }
+        val beforeRestart = samples.take(1_000)
+        val first = PerformanceTimeSeries(dao)
+        beforeRestart.forEach { (timestamp, value) -> first.append(timestamp, mapOf(METRIC to value)) }
+        first.flush()
+
+        // When
+        val second = PerformanceTimeSeries(dao)
+        samples.drop(1_000).forEach { (timestamp, value) -> second.append(timestamp, mapOf(METRIC to value)) }
+        val to = samples.last().first
+        val raw = second.query(METRIC, START, START + HOUR_MS - 1, maxPoints = 1_000, now = to)
+        val minutes = second.query(METRIC, START, to, now = to)
+        val hours = second.query(METRIC, START, to, maxPoints = 3, now = to)
+
+        // Then - every sample is counted exactly once in every tier
+        assertEquals(SeriesTier.RAW, raw.tier)
+        assertEquals(720, raw.points.size)
+        assertEquals(SeriesTier.MINUTE, minutes.tier)
+        val expected = samples.groupBy { (timestamp, _) -> timestamp - Math.floorMod(timestamp, 60_000L) }
+        assertEquals(expected.keys.sorted(), minutes.points.map { it.timestamp })
+        minutes.points.forEach { point ->
+            assertEquals(expected.getValue(point.timestamp).sumOf { it.second }, point.sum, 1e-9)
+        }
+        assertEquals(SeriesTier.HOUR, hours.tier)
+        assertEquals(listOf(720L, 720L, 720L), hours.points.map { it.count })
+    }
+
+    @Test
+    fun `carried over samples should continue like appended ones`() = runTest {
+        // Given - 2 hours of samples from before the series table
+        val dao = InMemoryPerformanceDao()
+        val legacy = (0 until 2 * 720 - 5).map { START + it * 5_000L }
+        dao.insertSeriesBlocks(PerformanceTimeSeries.blocksOf(METRIC, legacy.map { SeriesPoint(it, 1, 1.0, 1.0, 1.0) }))
+
+        // When
+        val timeSeries = PerformanceTimeSeries(dao)
+        (legacy.size until 4 * 720).forEach { timeSeries.append(START + it * 5_000L, mapOf(METRIC to 1.0)) }
+        val to = START + (4 * 720 - 1) * 5_000L
+        val hours = timeSeries.query(METRIC, START, to, maxPoints = 4, now = to)
+
+        // Then
+        assertEquals(SeriesTier.HOUR, hours.tier)
+        assertEquals(listOf(720L, 720L, 720L, 720L), hours.points.map { it.count })
+    }
+
+    @Test
+    fun `retention should apply per tier`() = runTest {
+        // Given - two days of minute samples
+        val dao = InMemoryPerformanceDao()
+        val timeSeries = PerformanceTimeSeries(dao)
+        val end = START + 2 * DAY_MS
+        var timestamp = START
+        while (timestamp <= end) {
+            timeSeries.append(timestamp, mapOf(METRIC to 1.0))
+            timestamp += 60_000L
+        }
+
+        // When
+        timeSeries.applyRetention(end)
+
+        // Then - raw blocks older than a day are gone, rollups are kept
+        assertTrue(dao.blocks.filter { it.tier == SeriesTier.RAW.name }.all { it.endTimestamp >= end - DAY_MS })
+        assertTrue(dao.blocks.any { it.tier == SeriesTier.MINUTE.name && it.startTimestamp < end - DAY_MS })
+    }
+
+    @Test
+    fun `benchmark 30 days of 5 second samples`() = runTest {
+        // Given
+        val dao = InMemoryPerformanceDao()
+        val timeSeries = PerformanceTimeSeries(dao)
+        val sampleCount = (30 * DAY_MS / 5_000L).toInt()
+        val random = Random(5)
+
+        // When - write
+        val writeStart = System.nanoTime()
+        for (i in 0 until sampleCount) {
+            val value = 0.5 + 0.3 * sin(i / 720.0) + random.nextDouble(0.0, 0.01)
+            timeSeries.append(START + i * 5_000L, mapOf(METRIC to value))
+        }
+        val writeNanos = System.nanoTime() - writeStart
+        val end = START + (sampleCount - 1) * 5_000L
+        timeSeries.applyRetention(end)
+
+        // When - query
+        val ranges = mapOf("1h" to HOUR_MS, "1d" to DAY_MS, "7d" to 7 * DAY_MS, "30d" to 30 * DAY_MS)
+        val results = ranges.mapValues { (_, span) ->
+            val queryStart = System.nanoTime()
+            val result = timeSeries.query(METRIC, end - span + 1, end, now = end)
+            result to (System.nanoTime() - queryStart)
+        }
+
+        val storedBytes = dao.blocks.sumOf { it.data.size }
+        println(
+            "time series: $sampleCount samples, write ${writeNanos / sampleCount} ns/sample, " +
+                "${dao.blocks.size} blocks, ${storedBytes / 1024} KiB stored after retention"
+        )
+        results.forEach { (name, value) ->
+            val (result, nanos) = value
+            println("  query $name: tier=${result.tier} points=${result.points.size} latency=${nanos / 1_000} us")
+        }
+
+        // Then - every retained sample is accounted for in the rollups
+        results.forEach { (name, value) ->
+            val result = value.first
+            assertTrue("$name returned ${result.points.size} points", result.points.size in 1..PerformanceTimeSeries.DEFAULT_MAX_POINTS)
+        }
+        assertEquals(SeriesTier.MINUTE, results.getValue("1h").first.tier)
+        assertEquals(SeriesTier.HOUR, results.getValue("7d").first.tier)
+        assertEquals(SeriesTier.DAY, results.getValue("30d").first.tier)
+        assertEquals(sampleCount.toLong(), results.getValue("30d").first.points.sumOf { it.count })
+    }
+
+    private class InMemoryPerformanceDao : PerformanceDao {
+        val blocks = mutableListOf<PerformanceSeriesBlockEntity>()
+        private val alerts = mutableListOf<PerformanceAlertEntity>()
+        private var nextId = 1L
+
+        override suspend fun insertSeriesBlocks(blocks: List<PerformanceSeriesBlockEntity>): List<Long> = blocks.map { block ->
+            val id = if (block.id == 0L) nextId++ else block.id
+            this.blocks.removeAll { it.id == id }
+            this.blocks += block.copy(id = id)
+            id
+        }
+
+        override suspend fun getLatestSeriesBlocks(): List<PerformanceSeriesBlockEntity> = blocks
+            .groupBy { it.metric to it.tier }
+            .values
+            .map { group -> group.maxByOrNull { it.id }!! }
+
+        override suspend fun insertAlert(alert: PerformanceAlertEntity) {
+            alerts.removeAll { it.id == alert.id }
+            alerts += alert
+        }
+
+        override suspend fun getSeriesBlocks(
+            metric: String,
+            tier: String,
+            fromTimestamp: Long,
+            toTimestamp: Long
+        ): List<PerformanceSeriesBlockEntity> = blocks
+            .filter { it.metric == metric && it.tier == tier && it.endTimestamp >= fromTimestamp && it.startTimestamp <= toTimestamp }
+            .sortedBy { it.startTimestamp }
+
+        override suspend fun getAlerts(fromTimestamp: Long, toTimestamp: Long): List<PerformanceAlertEntity> =
+            alerts.filter { it.timestamp in fromTimestamp..toTimestamp }.sortedByDescending { it.timestamp }
+
+        override suspend fun getRecentAlerts(limit: Int): List<PerformanceAlertEntity> =
+            alerts.sortedByDescending { it.timestamp }.take(limit)
+
+        override suspend fun deleteSeriesBlocksBefore(tier: String, cutoffTime: Long) {
+            blocks.removeAll { it.tier == tier && it.endTimestamp < cutoffTime }
+        }
+
+        override suspend fun deleteOldAlerts(cutoffTime: Long) {
+            alerts.removeAll { it.timestamp < cutoffTime }
+        }
+
+        override suspend fun getSeriesBlockCount(tier: String): Int = blocks.count { it.tier == tier }
+
+        override suspend fun getAlertsCount(): Int = alerts.size
+    }
+
+    private companion object {
+        const val METRIC = "memory.usage"
+        const val HOUR_MS = 60 * 60 * 1000L
+        const val DAY_MS = 24 * HOUR_MS
+        // Day-aligned so rollup buckets line up with the sample grid
+        const val START = 19_000L * DAY_MS
+    }
+}
@@ -2,11 +2,13 @@ package com.chain.messaging.core.privacy
 
 import android.content.Context
 import android.content.SharedPreferences
+import com.chain.messaging.domain.model.ExpiredMessage
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.repository.MessageRepository
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.flowOf
@@ -40,7 +42,9 @@ class DisappearingMessageManagerTest {
             mockContext,
             mockMessageRepository,
             mockBlockchainManager,
-            mockScreenshotDetector
+            mockScreenshotDetector,
+            ExpiryAlarm.NONE,
+            MetricsRegistry()
         )
     }
     
@@ -141,12 +145,13 @@ class DisappearingMessageManagerTest {
     fun `cleanupExpiredMessages should delete expired messages and return count`() = runTest {
         // Given
         val expiredMessages = listOf(
-            createTestMessage("chat1", isExpired = true),
-            createTestMessage("chat2", isExpired = true)
+            createExpiredMessage("chat1", "message-1"),
+            createExpiredMessage("chat2", "message-2")
         )
         
-        coEvery { mockMessageRepository.getExpiredMessages(any()) } returns expiredMessages
-        coEvery { mockMessageRepository.deleteMessage(any()) } returns Result.success(Unit)
+        coEvery { mockMessageRepository.deleteExpiredBatch(any(), any()) } returns expiredMessages
+        coEvery { mockMessageRepository.getMessagesExpiringBefore(any()) } returns emptyList()
+        coEvery { mockMessageRepository.getNextExpiryAfter(any()) } returns null
         coEvery { mockBlockchainManager.sendDeletionTransaction(any()) } just Runs
         
         // When
@@ -154,28 +159,31 @@ class DisappearingMessageManagerTest {
         
         // Then
         assertEquals(2, result)
-        coVerify(exactly = 2) { mockMessageRepository.deleteMessage(any()) }
-        coVerify(exactly = 2) { mockBlockchainManager.sendDeletionTransaction(any()) }
+        coVerify(exactly = 1) { mockMessageRepository.deleteExpiredBatch(any(), any()) }
+        coVerify(exactly = 0) { mockMessageRepository.getExpiredMessages(any()) }
+        coVerify(timeout = 1000, exactly = 2) { mockBlockchainManager.sendDeletionTransaction(any()) }
     }
     
     @Test
-    fun `cleanupExpiredMessages should handle deletion errors gracefully`() = runTest {
+    fun `cleanupExpiredMessages should count local deletions when announcing them fails`() = runTest {
         // Given
         val expiredMessages = listOf(
-            createTestMessage("chat1", isExpired = true),
-            createTestMessage("chat2", isExpired = true)
+            createExpiredMessage("chat1", "message-1"),
+            createExpiredMessage("chat2", "message-2")
         )
         
-        coEvery { mockMessageRepository.getExpiredMessages(any()) } returns expiredMessages
-        coEvery { mockMessageRepository.deleteMessage(expiredMessages[0].id) } returns Result.failure(Exception("Delete failed"))
-        coEvery { mockMessageRepository.deleteMessage(expiredMessages[1].id) } returns Result.success(Unit)
-        coEvery { mockBlockchainManager.sendDeletionTransaction(any()) } just Runs
+        coEvery { mockMessageRepository.deleteExpiredBatch(any(), any()) } returns expiredMessages
+        coEvery { mockMessageRepository.getMessagesExpiringBefore(any()) } returns emptyList()
+        coEvery { mockMessageRepository.getNextExpiryAfter(any()) } returns null
+        coEvery { mockBlockchainManager.sendDeletionTransaction("message-1") } throws Exception("Network down")
+        coEvery { mockBlockchainManager.sendDeletionTransaction("message-2") } just Runs
         
         // When
         val result = disappearingMessageManager.cleanupExpiredMessages()
         
         // Then
-        assertEquals(1, result) // Only one successful deletion
+        assertEquals(2, result)
+        coVerify(timeout = 1000) { mockBlockchainManager.sendDeletionTransaction("message-2") }
     }
     
     @Test
@@ -192,18 +200,24 @@ class DisappearingMessageManagerTest {
     @Test
     fun `startCleanupService should start periodic cleanup`() = runTest {
         // Given
-        coEvery { mockMessageRepository.getExpiredMessages(any()) } returns emptyList()
+        coEvery { mockMessageRepository.deleteExpiredBatch(any(), any()) } returns emptyList()
         coEvery { mockMessageRepository.getMessagesExpiringBefore(any()) } returns emptyList()
+        coEvery { mockMessageRepository.getNextExpiryAfter(any()) } returns null
         
         // When
         disappearingMessageManager.startCleanupService()
         
-        // Then
-        // Verify that cleanup service is running (this is a simplified test)
-        // In a real implementation, you might want to test the periodic behavior
-        coVerify(timeout = 1000) { mockMessageRepository.getExpiredMessages(any()) }
+        // Then - the first cycle runs right away and plans the next deadline
+        coVerify(timeout = 1000) { mockMessageRepository.deleteExpiredBatch(any(), any()) }
+        coVerify(timeout = 1000) { mockMessageRepository.getNextExpiryAfter(any()) }
     }
     
+    private fun createExpiredMessage(chatId: String, messageId: String) = ExpiredMessage(
+        id = messageId,
+        chatId = chatId,
+        expiresAt = System.currentTimeMillis() - 1000
+    )
+    
     private fun createTestMessage(
         chatId: String,
         isExpired: Boolean = false
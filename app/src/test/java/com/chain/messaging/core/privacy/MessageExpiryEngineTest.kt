@@ -0,0 +1,200 @@
+package com.chain.messaging.core.privacy
+
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
+import com.chain.messaging.domain.model.ExpiredMessage
+import com.chain.messaging.domain.model.Message
+import com.chain.messaging.domain.model.MessageStatus
+import com.chain.messaging.domain.model.MessageType
+import com.chain.messaging.domain.repository.MessageRepository
+import io.mockk.coEvery
+import io.mockk.mockk
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Date
+
+/**
+ * Unit tests for MessageExpiryEngine
+ */
+class MessageExpiryEngineTest {
+
+    private val store = FakeStore()
+    private val alarm = RecordingAlarm()
+
+    @Test
+    fun `a backlog should be deleted earliest first in bounded batches`() = runTest {
+        // Given
+        val batches = mutableListOf<List<ExpiredMessage>>()
+        (1..450).forEach { store.add("msg_$it", expiresAt = -it.toLong()) }
+        val engine = engine(onExpired = { batches += it })
+
+        // When
+        val deleted = engine.runCycle()
+
+        // Then
+        assertEquals(450, deleted)
+        assertEquals(listOf(200, 200, 50), batches.map { it.size })
+        assertEquals("msg_450", batches.first().first().id)
+        assertTrue(store.isEmpty())
+    }
+
+    @Test
+    fun `messages should be deleted at their deadline without polling`() = runTest {
+        // Given
+        store.add("first", expiresAt = 10_000)
+        store.add("second", expiresAt = 20_000)
+        val engine = engine()
+
+        // When
+        engine.start()
+        advanceTimeBy(9_999)
+        val beforeDeadline = store.ids()
+        advanceTimeBy(2)
+        val afterFirst = store.ids()
+        advanceTimeBy(10_000)
+
+        // Then
+        assertEquals(listOf("first", "second"), beforeDeadline)
+        assertEquals(listOf("second"), afterFirst)
+        assertTrue(store.isEmpty())
+        val stats = engine.stats()
+        assertEquals(3L, stats.cycles)
+        assertEquals(2L, stats.deleted)
+        assertEquals(0L, stats.lateness.maxMicros)
+        engine.stop()
+    }
+
+    @Test
+    fun `warnings should come from the same timeline`() = runTest {
+        // Given
+        store.add("msg", expiresAt = 100_000)
+        val engine = engine()
+
+        // When
+        engine.start()
+        advanceTimeBy(39_999)
+        val beforeWindow = engine.messagesAboutToExpire.value
+        advanceTimeBy(2)
+        val inWindow = engine.messagesAboutToExpire.value
+        advanceTimeBy(60_000)
+
+        // Then
+        assertTrue(beforeWindow.isEmpty())
+        assertEquals(listOf("msg"), inWindow.map { it.id })
+        assertTrue(engine.messagesAboutToExpire.value.isEmpty())
+        assertEquals(3L, engine.stats().cycles)
+        engine.stop()
+    }
+
+    @Test
+    fun `a newly scheduled message should wake an idle engine`() = runTest {
+        // Given
+        val engine = engine()
+        engine.start()
+        advanceTimeBy(1_000)
+
+        // When - announced first, saved right after
+        engine.onExpiryScheduled(6_000)
+        store.add("msg", expiresAt = 6_000)
+        advanceTimeBy(1_000)
+        val warned = engine.messagesAboutToExpire.value
+        advanceTimeBy(4_001)
+
+        // Then
+        assertEquals(listOf("msg"), warned.map { it.id })
+        assertTrue(store.isEmpty())
+        engine.stop()
+    }
+
+    @Test
+    fun `the alarm should follow the next stored expiry`() = runTest {
+        // Given
+        store.add("msg", expiresAt = 5_000)
+        val engine = engine()
+
+        // When
+        engine.runCycle()
+        val armed = alarm.scheduledAt
+        advanceTimeBy(5_000)
+        engine.runCycle()
+
+        // Then
+        assertEquals(5_000L, armed)
+        assertNull(alarm.scheduledAt)
+        assertEquals(1, alarm.cancels)
+    }
+
+    // Deadlines run on the test scheduler's virtual clock
+    private fun TestScope.engine(
+        onExpired: suspend (List<ExpiredMessage>) -> Unit = {}
+    ): MessageExpiryEngine {
+        store.clock = { testScheduler.currentTime }
+        return MessageExpiryEngine(
+            messageRepository = store.repository,
+            alarm = alarm,
+            metricsRegistry = MetricsRegistry(),
+            scope = backgroundScope,
+            onExpired = onExpired,
+            clock = { testScheduler.currentTime },
+            batchSize = 200,
+            warningThresholdMs = 60_000
+        )
+    }
+
+    private class FakeStore {
+        var clock: () -> Long = { 0L }
+        private val messages = mutableListOf<Message>()
+
+        val repository = mockk<MessageRepository>().also { repository ->
+            coEvery { repository.deleteExpiredBatch(any(), any()) } answers {
+                val batch = sorted().filter { it.expiresAt!!.time <= firstArg<Long>() }.take(secondArg())
+                messages.removeAll(batch)
+                batch.map { ExpiredMessage(it.id, it.chatId, it.expiresAt!!.time) }
+            }
+            coEvery { repository.getNextExpiryAfter(any()) } answers {
+                sorted().map { it.expiresAt!!.time }.firstOrNull { it > firstArg<Long>() }
+            }
+            coEvery { repository.getMessagesExpiringBefore(any()) } answers {
+                val now = clock()
+                sorted().filter { it.expiresAt!!.time in (now + 1)..firstArg<Long>() }
+            }
+        }
+
+        fun add(id: String, expiresAt: Long) {
+            messages += Message(
+                id = id,
+                chatId = "chat",
+                senderId = "sender",
+                content = "content",
+                type = MessageType.TEXT,
+                timestamp = Date(0L),
+                status = MessageStatus.SENT,
+                isDisappearing = true,
+                disappearingMessageTimer = DisappearingMessageTimers.ONE_MINUTE,
+                expiresAt = Date(expiresAt)
+            )
+        }
+
+        fun ids(): List<String> = sorted().map { it.id }
+
+        fun isEmpty(): Boolean = messages.isEmpty()
+
+        private fun sorted(): List<Message> = messages.sortedBy { it.expiresAt!!.time }
+    }
+
+    private class RecordingAlarm : ExpiryAlarm {
+        var scheduledAt: Long? = null
+        var cancels = 0
+
+        override fun schedule(atMillis: Long) {
+            scheduledAt = atMillis
+        }
+
+        override fun cancel() {
+            scheduledAt = null
+            cancels++
+        }
+    }
+}
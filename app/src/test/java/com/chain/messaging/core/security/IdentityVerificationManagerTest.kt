@@ -50,6 +50,7 @@ class IdentityVerificationManagerTest {
         
         every { keyManager.getIdentityKey() } returns testIdentityKey
         every { keyManager.getRegistrationId() } returns 12345
+        every { safetyNumberGenerator.invalidate(any()) } just Runs
     }
     
     @Test
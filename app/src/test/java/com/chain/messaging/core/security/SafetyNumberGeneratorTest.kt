@@ -1,9 +1,11 @@
 package com.chain.messaging.core.security
 
+import kotlinx.coroutines.test.runTest
 import org.junit.Before
 import org.junit.Test
 import org.signal.libsignal.protocol.IdentityKey
 import org.signal.libsignal.protocol.ecc.Curve
+import java.security.MessageDigest
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertNotEquals
@@ -266,4 +268,106 @@ class SafetyNumberGeneratorTest {
         assertEquals(71, safetyNumber.length)
         assertTrue(safetyNumberGenerator.isValidSafetyNumberFormat(safetyNumber))
     }
+    
+    @Test
+    fun `generateSafetyNumber should match the uncached digest chain`() {
+        // Given - the original per-iteration MessageDigest computation
+        fun reference(key: IdentityKey, userId: String): ByteArray {
+            var hash = key.serialize() + userId.toByteArray(Charsets.UTF_8)
+            repeat(5200) { hash = MessageDigest.getInstance("SHA-256").digest(hash) }
+            return hash
+        }
+        val local = reference(localIdentityKey, localUserId)
+        val remote = reference(remoteIdentityKey, remoteUserId)
+        val first = if (compareBytes(local, remote) < 0) local + remote else remote + local
+        val expected = (0 until 30).joinToString("") { "%02d".format((first[it].toInt() and 0xFF) % 100) }
+        
+        // When
+        val safetyNumber = safetyNumberGenerator.generateSafetyNumber(
+            localIdentityKey, remoteIdentityKey, localUserId, remoteUserId
+        )
+        
+        // Then
+        assertEquals(expected, safetyNumberGenerator.normalizeSafetyNumber(safetyNumber))
+    }
+    
+    @Test
+    fun `generateSafetyNumbers should match individual generation`() = runTest {
+        // Given
+        val contacts = (0 until 16).associate { "contact-$it" to IdentityKey(Curve.generateKeyPair().publicKey) }
+        
+        // When
+        val bulk = safetyNumberGenerator.generateSafetyNumbers(localIdentityKey, localUserId, contacts)
+        
+        // Then
+        val reference = SafetyNumberGenerator()
+        assertEquals(contacts.keys, bulk.keys)
+        contacts.forEach { (userId, key) ->
+            assertEquals(reference.generateSafetyNumber(localIdentityKey, key, localUserId, userId), bulk[userId])
+        }
+    }
+    
+    @Test
+    fun `invalidate should recompute safety numbers for the changed contact`() {
+        // Given
+        val before = safetyNumberGenerator.generateSafetyNumber(
+            localIdentityKey, remoteIdentityKey, localUserId, remoteUserId
+        )
+        
+        // When
+        safetyNumberGenerator.invalidate(remoteUserId)
+        val changedKey = IdentityKey(Curve.generateKeyPair().publicKey)
+        val after = safetyNumberGenerator.generateSafetyNumber(localIdentityKey, changedKey, localUserId, remoteUserId)
+        val recomputed = safetyNumberGenerator.generateSafetyNumber(
+            localIdentityKey, remoteIdentityKey, localUserId, remoteUserId
+        )
+        
+        // Then
+        assertNotEquals(before, after)
+        assertEquals(before, recomputed)
+    }
+    
+    @Test
+    fun `benchmark cached and bulk safety number generation`() = runTest {
+        // Given
+        val contacts = (0 until 64).associate { "contact-$it" to IdentityKey(Curve.generateKeyPair().publicKey) }
+        
+        // When - first open of the verification screen
+        val coldStart = System.nanoTime()
+        val cold = safetyNumberGenerator.generateSafetyNumber(localIdentityKey, remoteIdentityKey, localUserId, remoteUserId)
+        val coldNanos = System.nanoTime() - coldStart
+        
+        // When - reopening the screen
+        val warmStart = System.nanoTime()
+        val warm = safetyNumberGenerator.generateSafetyNumber(localIdentityKey, remoteIdentityKey, localUserId, remoteUserId)
+        val warmNanos = System.nanoTime() - warmStart
+        
+        // When - bulk verification of every contact
+        val sequentialStart = System.nanoTime()
+        val sequential = SafetyNumberGenerator().let { generator ->
+            contacts.mapValues { (userId, key) -> generator.generateSafetyNumber(localIdentityKey, key, localUserId, userId) }
+        }
+        val sequentialNanos = System.nanoTime() - sequentialStart
+        val bulkStart = System.nanoTime()
+        val bulk = SafetyNumberGenerator().generateSafetyNumbers(localIdentityKey, localUserId, contacts)
+        val bulkNanos = System.nanoTime() - bulkStart
+        
+        println(
+            "safety numbers: cold ${coldNanos / 1_000} us, cached ${warmNanos / 1_000} us, " +
+                "${contacts.size} contacts sequential ${sequentialNanos / 1_000_000} ms, bulk ${bulkNanos / 1_000_000} ms"
+        )
+        
+        // Then
+        assertEquals(cold, warm)
+        assertTrue(warmNanos < coldNanos)
+        assertEquals(sequential, bulk)
+    }
+    
+    private fun compareBytes(a: ByteArray, b: ByteArray): Int {
+        for (i in 0 until minOf(a.size, b.size)) {
+            val comparison = a[i].compareTo(b[i])
+            if (comparison != 0) return comparison
+        }
+        return a.size.compareTo(b.size)
+    }
 }
\ No newline at end of file
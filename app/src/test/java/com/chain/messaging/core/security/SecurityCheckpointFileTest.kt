@@ -0,0 +1,84 @@
+package com.chain.messaging.core.security
+
+import org.junit.After
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.file.Files
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class SecurityCheckpointFileTest {
+
+    private val directory = Files.createTempDirectory("checkpoint").toFile()
+
+    @After
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `a written checkpoint should read back through a name-bound cipher`() {
+        // Given
+        val checkpoint = checkpointFile()
+
+        // When
+        val before = checkpoint.read()
+        checkpoint.write("first")
+        checkpoint.write("second")
+
+        // Then
+        assertNull(before)
+        assertEquals("second", checkpoint.read())
+        assertEquals(listOf("security_windows.enc", "security_windows.enc.staging"), directory.list()!!.sorted())
+    }
+
+    @Test
+    fun `a write interrupted before the rename should not affect the next one`() {
+        // Given
+        val checkpoint = checkpointFile()
+        checkpoint.write("saved")
+        File(directory, "security_windows.enc.staging/security_windows.enc").writeText("torn")
+
+        // When
+        val afterCrash = checkpoint.read()
+        checkpoint.write("next")
+
+        // Then
+        assertEquals("saved", afterCrash)
+        assertEquals("next", checkpoint.read())
+    }
+
+    private fun checkpointFile() = SecurityCheckpointFile(
+        directory = directory,
+        name = "security_windows.enc",
+        openOutput = ::openNameBoundOutput,
+        openInput = ::openNameBoundInput
+    )
+
+    /**
+     * Stands in for EncryptedFile: the file name is authenticated with the
+     * content, so a file renamed after writing fails to open
+     */
+    private fun openNameBoundOutput(file: File): OutputStream {
+        if (file.exists()) throw IOException("output file already exists")
+        return object : ByteArrayOutputStream() {
+            override fun close() {
+                FileOutputStream(file).use { it.write("${file.name}\n".toByteArray() + toByteArray()) }
+            }
+        }
+    }
+
+    private fun openNameBoundInput(file: File): InputStream {
+        val bytes = FileInputStream(file).use { it.readBytes() }
+        val separator = bytes.indexOf('\n'.code.toByte())
+        if (String(bytes, 0, separator) != file.name) throw IOException("associated data mismatch")
+        return ByteArrayInputStream(bytes, separator + 1, bytes.size - separator - 1)
+    }
+}
@@ -0,0 +1,167 @@
+package com.chain.messaging.core.security
+
+import com.chain.messaging.domain.model.SecurityEvent
+import com.chain.messaging.domain.model.SecurityEventType
+import com.chain.messaging.domain.model.SecuritySeverity
+import kotlinx.serialization.json.Json
+import org.junit.Assert.*
+import org.junit.Test
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class SecurityEventWindowsTest {
+
+    private var now = START
+    private val windows = SecurityEventWindows(clock = { now }, zone = ZoneOffset.UTC)
+
+    @Test
+    fun `sliding window counter should drop buckets that leave the window`() {
+        // Given
+        val counter = SlidingWindowCounter(bucketMs = 1_000L, bucketCount = 10)
+
+        // When
+        repeat(20) { counter.add(START + it * 1_000L) }
+
+        // Then - only the last ten seconds remain
+        assertEquals(10L, counter.sum(START + 19_000L))
+        assertEquals(5L, counter.sum(START + 19_000L, windowMs = 5_000L))
+        assertEquals(0L, counter.sum(START + 60_000L))
+    }
+
+    @Test
+    fun `metrics should come from the windows`() {
+        // Given
+        windows.record(event(SecurityEventType.FAILED_LOGIN_ATTEMPT, SecuritySeverity.MEDIUM, ageMs = HOUR_MS))
+        windows.record(event(SecurityEventType.SUSPICIOUS_KEY_CHANGE, SecuritySeverity.HIGH, ageMs = 2 * DAY_MS))
+        windows.record(event(SecurityEventType.POTENTIAL_MITM_ATTACK, SecuritySeverity.CRITICAL, ageMs = 10 * DAY_MS))
+
+        // When
+        val snapshot = windows.snapshot()
+
+        // Then
+        assertEquals(3L, snapshot.totalEvents)
+        assertEquals(1L, snapshot.eventsLast24Hours)
+        assertEquals(2L, snapshot.eventsLast7Days)
+        assertEquals(3, snapshot.eventsByType.size)
+        assertEquals(setOf(SecurityEventType.FAILED_LOGIN_ATTEMPT, SecurityEventType.SUSPICIOUS_KEY_CHANGE), snapshot.recentEventsByType.keys)
+        assertEquals(toDateTime(START - 10 * DAY_MS), snapshot.lastCriticalEventAt)
+    }
+
+    @Test
+    fun `failed logins from one source should trigger brute force detection once`() {
+        // When
+        val detections = (1..8).flatMap {
+            now += 1_000L
+            windows.record(event(SecurityEventType.FAILED_LOGIN_ATTEMPT, SecuritySeverity.LOW, deviceId = "device-1"))
+        }
+
+        // Then
+        val bruteForce = detections.filter { it.type == SecurityEventType.UNAUTHORIZED_ACCESS_ATTEMPT }
+        assertEquals(1, bruteForce.size)
+        assertEquals(SecuritySeverity.HIGH, bruteForce[0].severity)
+        assertEquals("device-1", bruteForce[0].metadata["source"])
+        assertEquals(SecurityEventWindows.MAX_FAILED_ATTEMPTS, bruteForce[0].metadata["failed_attempts"])
+    }
+
+    @Test
+    fun `detection should fire again after the cooldown`() {
+        // Given
+        repeat(3) { windows.record(event(SecurityEventType.KEY_VERIFICATION_FAILURE, SecuritySeverity.HIGH)) }
+
+        // When - one bucket past the cooldown, so the first three have left the hour
+        now += SecurityEventWindows.DETECTION_COOLDOWN_MS + 60_000L
+        val early = (1..2).flatMap { windows.record(event(SecurityEventType.SUSPICIOUS_KEY_CHANGE, SecuritySeverity.HIGH)) }
+        val later = windows.record(event(SecurityEventType.SUSPICIOUS_KEY_CHANGE, SecuritySeverity.HIGH))
+
+        // Then
+        assertTrue(early.none { it.type == SecurityEventType.POTENTIAL_MITM_ATTACK })
+        assertTrue(later.any { it.type == SecurityEventType.POTENTIAL_MITM_ATTACK })
+    }
+
+    @Test
+    fun `checkpoint should restore the same snapshot`() {
+        // Given
+        repeat(50) {
+            windows.record(event(SecurityEventType.values()[it % 10], SecuritySeverity.values()[it % 4], ageMs = it * 30 * 60_000L, userId = "user-${it % 3}"))
+        }
+        val json = Json { ignoreUnknownKeys = true }
+
+        // When
+        val encoded = json.encodeToString(SecurityWindowsCheckpoint.serializer(), windows.checkpoint())
+        val restored = SecurityEventWindows(clock = { now }, zone = ZoneOffset.UTC)
+        restored.restore(json.decodeFromString(SecurityWindowsCheckpoint.serializer(), encoded))
+
+        // Then
+        assertEquals(windows.snapshot(), restored.snapshot())
+        assertFalse(windows.isDirty)
+    }
+
+    @Test
+    fun `benchmark one million events`() {
+        // Given - a month of events at a steady rate
+        val eventCount = 1_000_000
+        val spacingMs = 30 * DAY_MS / eventCount
+        val types = SecurityEventType.values()
+        val severities = SecuritySeverity.values()
+        val base = START - 30 * DAY_MS
+
+        // When - ingest
+        val ingestStart = System.nanoTime()
+        for (i in 0 until eventCount) {
+            now = base + i * spacingMs
+            windows.record(
+                SecurityEvent(
+                    id = "e$i",
+                    type = types[i % types.size],
+                    timestamp = toDateTime(now),
+                    severity = severities[i % severities.size],
+                    description = "",
+                    deviceId = "device-${i % 500}",
+                    userId = "user-${i % 200}"
+                )
+            )
+        }
+        val ingestNanos = System.nanoTime() - ingestStart
+
+        // When - the periodic scan and a metrics read
+        val queryStart = System.nanoTime()
+        windows.prune()
+        val snapshot = windows.snapshot()
+        val queryNanos = System.nanoTime() - queryStart
+
+        println(
+            "security windows: $eventCount events, ingest ${ingestNanos / eventCount} ns/event, " +
+                "scan+snapshot ${queryNanos / 1_000} us, ${windows.checkpoint().bySource.size} sources tracked"
+        )
+
+        // Then - reads cost a fixed number of buckets however many events were stored
+        assertEquals(eventCount.toLong(), snapshot.totalEvents)
+        assertEquals((7 * DAY_MS / spacingMs).toDouble(), snapshot.eventsLast7Days.toDouble(), 3_000.0)
+        assertTrue("snapshot took ${queryNanos / 1_000_000} ms", queryNanos < 1_000_000_000L)
+    }
+
+    private fun event(
+        type: SecurityEventType,
+        severity: SecuritySeverity,
+        ageMs: Long = 0L,
+        deviceId: String? = null,
+        userId: String? = null
+    ) = SecurityEvent(
+        id = "event-${type.name}-$ageMs-$now",
+        type = type,
+        timestamp = toDateTime(now - ageMs),
+        severity = severity,
+        description = type.name,
+        deviceId = deviceId,
+        userId = userId
+    )
+
+    private fun toDateTime(millis: Long): LocalDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC)
+
+    private companion object {
+        const val HOUR_MS = 60 * 60 * 1000L
+        const val DAY_MS = 24 * HOUR_MS
+        const val START = 1_700_000_000_000L
+    }
+}
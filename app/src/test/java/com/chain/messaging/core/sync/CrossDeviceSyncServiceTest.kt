@@ -3,6 +3,7 @@ package com.chain.messaging.core.sync
 import android.content.Context
 import android.content.SharedPreferences
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.blockchain.BlockchainResponseDispatcher
 import com.chain.messaging.core.crypto.KeyManager
 import com.chain.messaging.data.local.dao.DeviceDao
 import com.chain.messaging.data.local.dao.MessageDao
@@ -30,6 +31,8 @@ class CrossDeviceSyncServiceTest {
     private val messageRepository = mockk<MessageRepository>()
     private val keyManager = mockk<KeyManager>()
     private val blockchainManager = mockk<BlockchainManager>()
+    private val syncChunkStreamer = mockk<SyncChunkStreamer>()
+    private val syncFrameCipher = mockk<SyncFrameCipher>(relaxed = true)
     private val sharedPreferences = mockk<SharedPreferences>()
     private val editor = mockk<SharedPreferences.Editor>()
     
@@ -43,6 +46,7 @@ class CrossDeviceSyncServiceTest {
         every { editor.putBoolean(any(), any()) } returns editor
         every { editor.apply() } just Runs
         every { sharedPreferences.all } returns emptyMap()
+        every { sharedPreferences.getLong(any(), any()) } returns -1L
         
         syncService = CrossDeviceSyncServiceImpl(
             context,
@@ -52,7 +56,10 @@ class CrossDeviceSyncServiceTest {
             messageDao,
             messageRepository,
             keyManager,
-            blockchainManager
+            blockchainManager,
+            syncChunkStreamer,
+            syncFrameCipher,
+            BlockchainResponseDispatcher(blockchainManager)
         )
     }
     
@@ -78,7 +85,7 @@ class CrossDeviceSyncServiceTest {
         coEvery { syncLogDao.insertSyncLog(any()) } just Runs
         coEvery { syncLogDao.updateSyncLog(any()) } just Runs
         coEvery { syncLogDao.getRecentSyncLogs(any()) } returns emptyList()
-        every { keyManager.exportKeys() } returns emptyMap()
+        every { keyManager.exportPublicKeys() } returns emptyMap()
         
         // When
         val result = syncService.syncMessageHistory()
@@ -98,7 +105,7 @@ class CrossDeviceSyncServiceTest {
         
         coEvery { deviceManager.getCurrentDevice() } returns currentDevice
         coEvery { deviceDao.getTrustedDevices() } returns trustedDevices
-        every { keyManager.exportKeys() } returns keys
+        every { keyManager.exportPublicKeys() } returns keys
         coEvery { syncLogDao.insertSyncLog(any()) } just Runs
         coEvery { syncLogDao.updateSyncLog(any()) } just Runs
         coEvery { syncLogDao.getRecentSyncLogs(any()) } returns emptyList()
@@ -178,7 +185,7 @@ class CrossDeviceSyncServiceTest {
         coEvery { deviceManager.getCurrentDevice() } returns currentDevice
         coEvery { deviceDao.getTrustedDevices() } returns trustedDevices
         coEvery { messageDao.getRecentMessages(any()) } returns messages
-        every { keyManager.exportKeys() } returns keys
+        every { keyManager.exportPublicKeys() } returns keys
         coEvery { syncLogDao.insertSyncLog(any()) } just Runs
         coEvery { syncLogDao.updateSyncLog(any()) } just Runs
         coEvery { syncLogDao.getRecentSyncLogs(any()) } returns emptyList()
@@ -220,8 +227,7 @@ class CrossDeviceSyncServiceTest {
         val device = createTestDeviceEntity().copy(isTrusted = true)
         
         coEvery { deviceDao.getDeviceById(request.fromDeviceId) } returns device
-        coEvery { messageDao.getAllMessages() } returns emptyList()
-        every { keyManager.exportKeys() } returns emptyMap()
+        every { keyManager.exportPublicKeys() } returns emptyMap()
         
         // When
         val response = syncService.handleSyncRequest(request)
@@ -229,6 +235,28 @@ class CrossDeviceSyncServiceTest {
         // Then
         assertTrue(response.success)
         assertEquals(request.requestId, response.requestId)
+        assertTrue(response.streamsMessages)
+        coVerify(exactly = 0) { messageDao.getAllMessages() }
+    }
+    
+    @Test
+    fun `sync responses should carry public keys only`() = runTest {
+        // Given
+        val request = SyncRequest(
+            requestId = "request-1",
+            fromDeviceId = "device-1",
+            syncType = SyncType.FULL,
+            timestamp = LocalDateTime.now()
+        )
+        coEvery { deviceDao.getDeviceById(request.fromDeviceId) } returns createTestDeviceEntity().copy(isTrusted = true)
+        every { keyManager.exportPublicKeys() } returns mapOf("identity_public" to "public")
+        
+        // When
+        val response = syncService.handleSyncRequest(request)
+        
+        // Then
+        assertEquals(mapOf("identity_public" to "public"), response.data?.encryptionKeys)
+        verify(exactly = 0) { keyManager.exportKeys() }
     }
     
     @Test
@@ -0,0 +1,115 @@
+package com.chain.messaging.core.sync
+
+import com.chain.messaging.data.local.dao.MessageDao
+import com.chain.messaging.data.local.entity.MessageEntity
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.mockk
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.test.runTest
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class SyncChunkStreamTest {
+
+    private val messageDao = mockk<MessageDao>()
+    private val streamer = SyncChunkStreamer(messageDao)
+
+    @Test
+    fun `streamMessages should page through history with a keyset cursor`() = runTest {
+        // Given
+        val history = (1..5).map { createMessageEntity("msg-$it", timestamp = it * 1000L) }
+        coEvery { messageDao.getMessagePageAfter(any(), any(), any()) } answers {
+            val afterTimestamp = firstArg<Long>()
+            val afterId = secondArg<String>()
+            val limit = thirdArg<Int>()
+            history.filter { it.timestamp > afterTimestamp || (it.timestamp == afterTimestamp && it.id > afterId) }
+                .take(limit)
+        }
+
+        // When
+        val chunks = streamer.streamMessages("req-1", SyncCursor.startingAt(0L), pageSize = 2).toList()
+
+        // Then
+        assertEquals(3, chunks.size)
+        assertEquals(listOf(0, 1, 2), chunks.map { it.sequence })
+        assertEquals(listOf(false, false, true), chunks.map { it.isLast })
+        assertEquals(SyncCursor(5000L, "msg-5"), chunks.last().cursor)
+        assertEquals(history.map { it.id }, chunks.flatMap { SyncCodec.readRecords(it) }.map { it.id })
+        coVerify(exactly = 0) { messageDao.getAllMessages() }
+    }
+
+    @Test
+    fun `streamMessages should resume after the given cursor`() = runTest {
+        // Given
+        coEvery { messageDao.getMessagePageAfter(3000L, "msg-3", 50) } returns listOf(
+            createMessageEntity("msg-4", timestamp = 4000L)
+        )
+
+        // When
+        val chunks = streamer.streamMessages("req-2", SyncCursor(3000L, "msg-3"), pageSize = 50).toList()
+
+        // Then
+        assertEquals(1, chunks.size)
+        assertTrue(chunks.single().isLast)
+        assertEquals("msg-4", SyncCodec.readRecords(chunks.single()).single().id)
+    }
+
+    @Test
+    fun `chunk frames should round trip through the codec`() {
+        // Given
+        val records = listOf(createMessageEntity("msg-1", timestamp = 1000L).toSyncRecord())
+        val chunk = SyncCodec.buildChunk("req-3", 7, SyncCursor(1000L, "msg-1"), records, isLast = false)
+
+        // When
+        val decoded = SyncCodec.decodeChunk(SyncCodec.encodeChunk(chunk))
+
+        // Then
+        assertEquals(chunk, decoded)
+        assertFalse(decoded.isLast)
+        assertEquals(records, SyncCodec.readRecords(decoded))
+    }
+
+    @Test
+    fun `readRecords should reject a corrupted payload`() {
+        // Given
+        val chunk = SyncCodec.buildChunk("req-4", 0, SyncCursor(0L, ""), emptyList(), isLast = true)
+
+        // When / Then
+        assertFailsWith<IllegalStateException> {
+            SyncCodec.readRecords(chunk.copy(checksum = chunk.checksum + 1))
+        }
+    }
+
+    @Test
+    fun `settings should keep their types across devices`() {
+        // Given
+        val settings = mapOf<String, Any?>("theme" to "dark", "fontSize" to 14, "sounds" to true, "ratio" to 1.5f)
+
+        // When
+        val decoded = SyncCodec.decodeSettings(SyncCodec.encodeSettings(settings))
+
+        // Then
+        assertEquals(settings, decoded)
+    }
+
+    private fun createMessageEntity(id: String, timestamp: Long): MessageEntity {
+        return MessageEntity(
+            id = id,
+            chatId = "chat-1",
+            senderId = "user-1",
+            content = "Content of $id",
+            type = "TEXT",
+            timestamp = timestamp,
+            status = "SENT",
+            replyTo = null,
+            isEncrypted = true,
+            disappearingMessageTimer = null,
+            expiresAt = null,
+            isDisappearing = false
+        )
+    }
+}
@@ -0,0 +1,61 @@
+package com.chain.messaging.core.sync
+
+import com.chain.messaging.core.crypto.EncryptedMessage
+import com.chain.messaging.core.crypto.IdentityStorage
+import com.chain.messaging.core.crypto.SignalEncryptionService
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.slot
+import kotlinx.coroutines.test.runTest
+import org.junit.Test
+import org.signal.libsignal.protocol.IdentityKey
+import org.signal.libsignal.protocol.SignalProtocolAddress
+import org.signal.libsignal.protocol.ecc.Curve
+import org.signal.libsignal.protocol.state.IdentityKeyStore
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class SyncFrameCipherTest {
+
+    private val encryptionService = mockk<SignalEncryptionService>()
+    private val identityStorage = mockk<IdentityStorage>()
+    private val cipher = SyncFrameCipher(encryptionService, identityStorage)
+
+    private val tabletIdentity = IdentityKey(Curve.generateKeyPair().publicKey)
+
+    @Test
+    fun `frames from a verified device should round trip`() = runTest {
+        // Given
+        val sealed = slot<ByteArray>()
+        coEvery { encryptionService.encryptMessage(any(), capture(sealed)) } answers {
+            Result.success(EncryptedMessage(firstArg(), sealed.captured, EncryptedMessage.Type.SIGNAL))
+        }
+        coEvery { encryptionService.decryptMessage(any(), any()) } answers {
+            Result.success(secondArg<EncryptedMessage>().ciphertext)
+        }
+        every { identityStorage.getIdentity(SignalProtocolAddress("tablet", 1)) } returns tabletIdentity
+        every { identityStorage.isTrustedIdentity(any(), tabletIdentity, IdentityKeyStore.Direction.SENDING) } returns true
+
+        // When
+        val frame = SyncCodec.decodeSealedOrNull(cipher.seal("tablet", "phone", "req-1", "history"))!!
+
+        // Then
+        assertEquals("req-1", frame.correlationId)
+        assertEquals("history", cipher.open(frame, "tablet"))
+    }
+
+    @Test
+    fun `frames from an unverified identity should be rejected before decrypting`() = runTest {
+        // Given
+        every { identityStorage.getIdentity(any()) } returns tabletIdentity
+        every { identityStorage.isTrustedIdentity(any(), any(), any()) } returns false
+        val frame = SealedSyncFrame("tablet", "req-1", EncryptedMessage.Type.SIGNAL.name, "c2VhbGVk")
+
+        // When / Then
+        assertFailsWith<SecurityException> { cipher.open(frame, "tablet") }
+        assertFailsWith<SecurityException> { cipher.open(frame, "laptop") }
+        coVerify(exactly = 0) { encryptionService.decryptMessage(any(), any()) }
+    }
+}
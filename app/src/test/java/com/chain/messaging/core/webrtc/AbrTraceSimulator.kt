@@ -0,0 +1,151 @@
+package com.chain.messaging.core.webrtc
+
+import kotlin.math.abs
+import kotlin.math.min
+
+/**
+ * Bottleneck capacity over time, one value per step
+ */
+data class BandwidthTrace(
+    val name: String,
+    val capacityKbps: List<Int>,
+    val stepMs: Long = 1000L,
+    val baseRttMs: Long = 60L,
+    val reportTransportEstimate: Boolean = false // expose last step's capacity as availableOutgoingKbps
+) {
+    companion object {
+        /**
+         * Build a trace from (capacity kbps, duration in steps) segments
+         */
+        fun piecewise(name: String, vararg segments: Pair<Int, Int>, reportTransportEstimate: Boolean = false): BandwidthTrace {
+            return BandwidthTrace(
+                name = name,
+                capacityKbps = segments.flatMap { (kbps, steps) -> List(steps) { kbps } },
+                reportTransportEstimate = reportTransportEstimate
+            )
+        }
+    }
+}
+
+/**
+ * Score of one policy on one trace
+ */
+data class SimulationResult(
+    val traceName: String,
+    val durationMs: Long,
+    val stallMs: Long,
+    val qualitySwitches: Int, // resolution or pause/resume changes
+    val bitrateChanges: Int,
+    val meanTargetKbps: Double,
+    val meanDeliveredKbps: Double,
+    val meanCapacityKbps: Double,
+    val targets: List<RateTarget>
+) {
+    val stallRatio: Double get() = if (durationMs > 0) stallMs.toDouble() / durationMs else 0.0
+    val utilization: Double get() = if (meanCapacityKbps > 0) meanDeliveredKbps / meanCapacityKbps else 0.0
+}
+
+/**
+ * Offline replay of bandwidth traces through a [RatePolicy].
+ *
+ * Models a single drop-tail bottleneck: whatever the policy sends above
+ * capacity queues up to [bufferMs] worth of data and is dropped beyond that.
+ * Queueing delay and loss are fed back to the policy as the next
+ * [CallNetworkEstimate], the way CallStatsSampler reports them in a call.
+ * A step counts as stalled when video is paused, the queue delay exceeds
+ * [stallDelayMs] or loss exceeds [stallLossFraction].
+ */
+class AbrTraceSimulator(
+    private val bufferMs: Long = 300L,
+    private val audioKbps: Int = 48,
+    private val stallDelayMs: Long = 400L,
+    private val stallLossFraction: Double = 0.10
+) {
+
+    fun run(trace: BandwidthTrace, policy: RatePolicy): SimulationResult {
+        val stepSec = trace.stepMs / 1000.0
+        val targets = ArrayList<RateTarget>(trace.capacityKbps.size)
+
+        var queueKbit = 0.0
+        var queueDelayMs = 0.0
+        var lossFraction = 0.0
+        var jitterMs = 0.0
+        var lastSendKbps = 0
+        var lastCapacityKbps = 0
+        var previous: RateTarget? = null
+
+        var stallMs = 0L
+        var qualitySwitches = 0
+        var bitrateChanges = 0
+        var targetSum = 0.0
+        var deliveredSum = 0.0
+
+        trace.capacityKbps.forEachIndexed { step, capacityKbps ->
+            val nowMs = step * trace.stepMs
+
+            // Policy sees what was measured during the previous step
+            val estimate = CallNetworkEstimate(
+                callId = trace.name,
+                sendKbps = lastSendKbps,
+                receiveKbps = 0,
+                availableOutgoingKbps = if (trace.reportTransportEstimate) lastCapacityKbps else 0,
+                lossFraction = lossFraction,
+                rttMs = trace.baseRttMs + queueDelayMs.toLong(),
+                jitterMs = jitterMs,
+                audioLevel = 0.0,
+                framesPerSecond = previous?.frameRate ?: 0,
+                frameWidth = previous?.width ?: 0,
+                frameHeight = previous?.height ?: 0,
+                sampleCount = step,
+                timestamp = nowMs
+            )
+            val target = policy.update(estimate, nowMs)
+            previous?.let {
+                if (it.height != target.height || it.isVideoPaused != target.isVideoPaused) qualitySwitches++
+                if (it.bitrateKbps != target.bitrateKbps) bitrateChanges++
+            }
+            previous = target
+            targets += target
+
+            // Push this step's traffic through the bottleneck
+            val sendKbps = target.bitrateKbps + audioKbps
+            val bufferKbit = capacityKbps * bufferMs / 1000.0
+            queueKbit = (queueKbit + (sendKbps - capacityKbps) * stepSec).coerceAtLeast(0.0)
+            var droppedKbit = 0.0
+            if (queueKbit > bufferKbit) {
+                droppedKbit = queueKbit - bufferKbit
+                queueKbit = bufferKbit
+            }
+
+            val newQueueDelayMs = if (capacityKbps > 0) queueKbit / capacityKbps * 1000.0 else bufferMs.toDouble()
+            jitterMs = abs(newQueueDelayMs - queueDelayMs) / 2 + BASE_JITTER_MS
+            queueDelayMs = newQueueDelayMs
+            lossFraction = if (sendKbps > 0) (droppedKbit / (sendKbps * stepSec)).coerceAtMost(1.0) else 0.0
+            lastSendKbps = sendKbps
+            lastCapacityKbps = capacityKbps
+
+            if (target.isVideoPaused || queueDelayMs > stallDelayMs || lossFraction > stallLossFraction) {
+                stallMs += trace.stepMs
+            }
+            targetSum += target.bitrateKbps
+            deliveredSum += min(sendKbps * (1 - lossFraction), capacityKbps.toDouble())
+        }
+
+        val steps = trace.capacityKbps.size.coerceAtLeast(1)
+        return SimulationResult(
+            traceName = trace.name,
+            durationMs = trace.capacityKbps.size * trace.stepMs,
+            stallMs = stallMs,
+            qualitySwitches = qualitySwitches,
+            bitrateChanges = bitrateChanges,
+            meanTargetKbps = targetSum / steps,
+            meanDeliveredKbps = deliveredSum / steps,
+            meanCapacityKbps = trace.capacityKbps.sum().toDouble() / steps,
+            targets = targets
+        )
+    }
+
+    companion object {
+        private const val BASE_JITTER_MS = 2.0
+    }
+}
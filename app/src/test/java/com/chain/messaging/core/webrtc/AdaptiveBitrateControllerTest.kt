@@ -0,0 +1,174 @@
+package com.chain.messaging.core.webrtc
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class AdaptiveBitrateControllerTest {
+
+    private val simulator = AbrTraceSimulator()
+
+    @Test
+    fun `increase should wait for the hold time after a loss decrease`() {
+        // Given
+        val controller = AdaptiveBitrateController(RateControllerConfig(startBitrateKbps = 1000))
+
+        // When - 20% loss, then a clean link
+        val afterLoss = controller.update(estimate(lossFraction = 0.2), nowMs = 1000)
+        val held = (2..4).map { controller.update(estimate(), nowMs = it * 1000L) }
+        val released = controller.update(estimate(), nowMs = 6000)
+
+        // Then
+        assertEquals(900, afterLoss.bitrateKbps)
+        assertEquals(RateChangeReason.PACKET_LOSS, afterLoss.reason)
+        assertTrue(held.all { it.bitrateKbps == 900 })
+        assertTrue(released.bitrateKbps > 900)
+    }
+
+    @Test
+    fun `video should pause when the transport cannot carry the minimum bitrate`() {
+        // Given
+        val controller = AdaptiveBitrateController(RateControllerConfig(startBitrateKbps = 1000))
+
+        // When
+        val target = controller.update(estimate(availableOutgoingKbps = 100), nowMs = 1000)
+
+        // Then
+        assertTrue(target.isVideoPaused)
+        assertEquals(VideoQuality.AUDIO_ONLY, target.toVideoQuality())
+        assertEquals(RateChangeReason.TRANSPORT_LIMIT, target.reason)
+    }
+
+    @Test
+    fun `a target that was not committed should be proposed again`() {
+        // Given
+        val controller = AdaptiveBitrateController(RateControllerConfig(startBitrateKbps = 1000))
+
+        // When - the first apply fails, the retry succeeds
+        val rejected = controller.propose(estimate(availableOutgoingKbps = 100), nowMs = 1000)
+        val afterRejection = controller.currentTarget
+        val retried = controller.propose(estimate(availableOutgoingKbps = 100), nowMs = 2000)
+        controller.commit(retried)
+
+        // Then
+        assertTrue(rejected.isVideoPaused)
+        assertEquals(1000, afterRejection.bitrateKbps)
+        assertTrue(retried.isVideoPaused)
+        assertTrue(controller.currentTarget.isVideoPaused)
+    }
+
+    @Test
+    fun `simulcast layers should be activated from the lowest up within the budget`() {
+        // Given
+        val controller = AdaptiveBitrateController(
+            RateControllerConfig(
+                startBitrateKbps = 1000,
+                simulcastLayers = AdaptiveBitrateController.DEFAULT_SIMULCAST_LAYERS
+            )
+        )
+
+        // When
+        val initial = controller.currentTarget
+        val constrained = controller.update(estimate(availableOutgoingKbps = 248), nowMs = 1000)
+
+        // Then - 1000 kbps carries q and h; 200 kbps only q
+        assertEquals(listOf(true, true, false), initial.simulcastLayers.map { it.active })
+        assertEquals(750, initial.simulcastLayers[1].maxBitrateKbps)
+        assertEquals(listOf(true, false, false), constrained.simulcastLayers.map { it.active })
+        assertEquals(200, constrained.simulcastLayers[0].maxBitrateKbps)
+        assertEquals(180, constrained.height)
+    }
+
+    @Test
+    fun `steady link should ramp up without stalls`() {
+        // Given
+        val trace = BandwidthTrace.piecewise("steady-2m", 2000 to 60)
+
+        // When
+        val result = simulator.run(trace, AdaptiveBitrateController())
+
+        // Then
+        assertEquals(0L, result.stallMs)
+        assertTrue(result.meanTargetKbps > 1000)
+        assertEquals(720, result.targets.last().height)
+    }
+
+    @Test
+    fun `capacity drop should be tracked below the new capacity`() {
+        // Given
+        val trace = BandwidthTrace.piecewise("step-down", 2000 to 30, 500 to 30)
+
+        // When
+        val result = simulator.run(trace, AdaptiveBitrateController())
+
+        // Then - a few seconds of loss at the drop, then a rate that fits
+        val settled = result.targets.takeLast(15).map { it.bitrateKbps }
+        assertTrue(result.stallMs <= 10_000L)
+        assertTrue(settled.average() in 250.0..525.0)
+        assertTrue(settled.none { it == 0 })
+    }
+
+    @Test
+    fun `controller should switch quality far less than discrete steps on a fluctuating link`() {
+        // Given - capacity alternating around the old HD threshold every second
+        val trace = BandwidthTrace(
+            name = "fluctuating",
+            capacityKbps = List(60) { if (it % 2 == 0) 2100 else 1900 },
+            reportTransportEstimate = true
+        )
+
+        // When
+        val controller = simulator.run(trace, AdaptiveBitrateController())
+        val discrete = simulator.run(trace, discreteStepPolicy())
+
+        // Then
+        assertTrue(controller.qualitySwitches <= 4)
+        assertTrue(discrete.qualitySwitches >= 20)
+    }
+
+    /**
+     * The per-snapshot VideoQuality stepping the controller replaced
+     */
+    private fun discreteStepPolicy(): RatePolicy {
+        val codecManager = CodecManagerImpl()
+        return RatePolicy { estimate, nowMs ->
+            val quality = when {
+                estimate.availableOutgoingKbps > 2000 -> VideoQuality.HD
+                estimate.availableOutgoingKbps > 800 -> VideoQuality.STANDARD
+                estimate.availableOutgoingKbps > 300 -> VideoQuality.LOW
+                else -> VideoQuality.AUDIO_ONLY
+            }
+            val settings = codecManager.getCodecSettingsForQuality(quality)
+            RateTarget(
+                bitrateKbps = settings.videoBitrate,
+                width = settings.videoWidth,
+                height = settings.videoHeight,
+                frameRate = settings.videoFrameRate,
+                scaleDownBy = 1.0,
+                reason = RateChangeReason.TRANSPORT_LIMIT,
+                timestamp = nowMs
+            )
+        }
+    }
+
+    private fun estimate(
+        lossFraction: Double = 0.0,
+        availableOutgoingKbps: Int = 0,
+        rttMs: Long = 60
+    ): CallNetworkEstimate {
+        return CallNetworkEstimate(
+            callId = "call_1",
+            sendKbps = 0,
+            receiveKbps = 0,
+            availableOutgoingKbps = availableOutgoingKbps,
+            lossFraction = lossFraction,
+            rttMs = rttMs,
+            jitterMs = 0.0,
+            audioLevel = 0.0,
+            framesPerSecond = 0,
+            frameWidth = 0,
+            frameHeight = 0,
+            sampleCount = 1,
+            timestamp = 0L
+        )
+    }
+}
@@ -0,0 +1,138 @@
+package com.chain.messaging.core.webrtc
+
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+
+class BandwidthEstimatorTest {
+
+    private lateinit var estimator: BandwidthEstimator
+
+    @Before
+    fun setup() {
+        estimator = BandwidthEstimator(capacity = 4)
+    }
+
+    @Test
+    fun `estimate should compute throughput from counter deltas`() {
+        // Given - a recorded trace sending 1 Mbps and receiving 500 kbps, one report per second
+        replay(steadyTrace(sendKbps = 1000, receiveKbps = 500, samples = 5))
+
+        // When
+        val estimate = estimator.estimate("call_1")
+
+        // Then
+        assertEquals(1000, estimate.sendKbps)
+        assertEquals(500, estimate.receiveKbps)
+        assertEquals(1500, estimate.usedKbps)
+        assertEquals(4, estimate.sampleCount)
+    }
+
+    @Test
+    fun `estimate should report loss over the window`() {
+        // Given - 100 packets per second with 5 lost per second
+        val trace = (0..4).map { i ->
+            snapshot(timestampMs = i * 1000L, packetsReceived = i * 95L, packetsLost = i * 5L)
+        }
+        replay(trace)
+
+        // When
+        val estimate = estimator.estimate("call_1")
+
+        // Then
+        assertEquals(0.05, estimate.lossFraction, 0.0001)
+    }
+
+    @Test
+    fun `estimate should smooth available bitrate and rtt`() {
+        // Given - available bitrate drops from 2 Mbps to 1 Mbps in one report
+        replay(
+            listOf(
+                snapshot(timestampMs = 0, availableBps = 2_000_000, rttMs = 100.0),
+                snapshot(timestampMs = 1000, availableBps = 2_000_000, rttMs = 100.0),
+                snapshot(timestampMs = 2000, availableBps = 1_000_000, rttMs = 200.0)
+            )
+        )
+
+        // When
+        val estimate = estimator.estimate("call_1")
+
+        // Then - moves toward the new value without jumping to it
+        assertTrue(estimate.availableOutgoingKbps in 1001..1999)
+        assertTrue(estimate.rttMs in 101..199)
+    }
+
+    @Test
+    fun `counter reset should not produce negative rates`() {
+        // Given - counters restart after an ICE restart
+        replay(
+            listOf(
+                snapshot(timestampMs = 0, bytesSent = 0),
+                snapshot(timestampMs = 1000, bytesSent = 125_000),
+                snapshot(timestampMs = 2000, bytesSent = 1_000),
+                snapshot(timestampMs = 3000, bytesSent = 126_000)
+            )
+        )
+
+        // When
+        val estimate = estimator.estimate("call_1")
+
+        // Then
+        assertEquals(2, estimate.sampleCount)
+        assertEquals(1000, estimate.sendKbps)
+    }
+
+    @Test
+    fun `window should only keep the most recent samples`() {
+        // Given - a slow start followed by a fast phase longer than the window
+        replay(steadyTrace(sendKbps = 100, receiveKbps = 0, samples = 4))
+        replay(steadyTrace(sendKbps = 2000, receiveKbps = 0, samples = 6, startMs = 3000L, startBytesSent = 37_500L))
+
+        // When
+        val estimate = estimator.estimate("call_1")
+
+        // Then
+        assertEquals(2000, estimate.sendKbps)
+    }
+
+    private fun replay(trace: List<RtcStatsSnapshot>) {
+        trace.forEach { estimator.addSample(it) }
+    }
+
+    private fun steadyTrace(
+        sendKbps: Int,
+        receiveKbps: Int,
+        samples: Int,
+        startMs: Long = 0L,
+        startBytesSent: Long = 0L
+    ): List<RtcStatsSnapshot> {
+        return (0 until samples).map { i ->
+            snapshot(
+                timestampMs = startMs + i * 1000L,
+                bytesSent = startBytesSent + i * sendKbps * 125L,
+                bytesReceived = i * receiveKbps * 125L
+            )
+        }
+    }
+
+    private fun snapshot(
+        timestampMs: Long,
+        bytesSent: Long = 0,
+        bytesReceived: Long = 0,
+        packetsReceived: Long = 0,
+        packetsLost: Long = 0,
+        availableBps: Long = 0,
+        rttMs: Double = 0.0
+    ): RtcStatsSnapshot {
+        return RtcStatsSnapshot(
+            timestampMs = timestampMs,
+            bytesSent = bytesSent,
+            bytesReceived = bytesReceived,
+            packetsReceived = packetsReceived,
+            packetsLost = packetsLost,
+            availableOutgoingBitrateBps = availableBps,
+            rttMs = rttMs,
+            jitterMs = 0.0
+        )
+    }
+}
@@ -19,6 +19,7 @@ class CallQualityManagerTest {
     private val mockCodecManager = mockk<CodecManager>()
     private val mockCallRecordingManager = mockk<CallRecordingManager>()
     private val mockScreenshotDetector = mockk<ScreenshotDetector>()
+    private val mockStatsSampler = mockk<CallStatsSampler>(relaxed = true)
     
     @Before
     fun setup() {
@@ -27,7 +28,8 @@ class CallQualityManagerTest {
             mockBandwidthMonitor,
             mockCodecManager,
             mockCallRecordingManager,
-            mockScreenshotDetector
+            mockScreenshotDetector,
+            mockStatsSampler
         )
     }
     
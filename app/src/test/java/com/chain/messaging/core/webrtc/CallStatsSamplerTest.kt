@@ -0,0 +1,26 @@
+package com.chain.messaging.core.webrtc
+
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.junit.Test
+import org.webrtc.PeerConnection
+import org.webrtc.RTCStatsCollectorCallback
+
+class CallStatsSamplerTest {
+
+    @Test
+    fun `sampling should continue when a stats callback never fires`() {
+        // Given - getStats never invokes its callback
+        val peerConnection = mockk<PeerConnection>()
+        every { peerConnection.getStats(any<RTCStatsCollectorCallback>()) } returns Unit
+        val sampler = CallStatsSampler()
+
+        // When
+        sampler.startSampling("call-1", peerConnection, intervalMs = 10)
+
+        // Then - the stalled request times out and the next poll goes ahead
+        verify(timeout = 10_000, atLeast = 2) { peerConnection.getStats(any<RTCStatsCollectorCallback>()) }
+        sampler.stopSampling("call-1")
+    }
+}
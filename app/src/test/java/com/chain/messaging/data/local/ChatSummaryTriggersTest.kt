@@ -0,0 +1,191 @@
+package com.chain.messaging.data.local
+
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.chain.messaging.data.local.entity.ChatEntity
+import com.chain.messaging.data.local.entity.MessageEntity
+import com.chain.messaging.data.local.entity.chatParticipantRows
+import com.chain.messaging.domain.model.Message
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Tests for the triggers that maintain chat_summaries
+ */
+@RunWith(AndroidJUnit4::class)
+class ChatSummaryTriggersTest {
+
+    private lateinit var database: ChainDatabase
+
+    @Before
+    fun setup() {
+        database = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            ChainDatabase::class.java
+        ).addCallback(ChatSummarySchema.CALLBACK).allowMainThreadQueries().build()
+    }
+
+    @After
+    fun teardown() {
+        database.close()
+    }
+
+    @Test
+    fun messagesShouldKeepTheLastMessageAndUnreadCountCurrent() = runBlocking {
+        // Given
+        val chatDao = database.chatDao()
+        val messageDao = database.messageDao()
+        chatDao.upsertChatWithParticipants(chat("chat_1"), chatParticipantRows("chat_1", listOf("bob", "alice"), listOf("alice")))
+
+        // When
+        messageDao.insertMessage(message("m1", timestamp = 2_000, status = "DELIVERED"))
+        messageDao.insertMessage(message("m2", timestamp = 3_000, status = "DELIVERED"))
+        messageDao.insertMessage(message("m0", timestamp = 1_500, status = "READ"))
+        val afterInserts = chatDao.getChatListRow("chat_1")!!
+
+        // Then
+        assertEquals("m2", afterInserts.summary.lastMessageId)
+        assertEquals(3_000L, afterInserts.summary.sortTimestamp)
+        assertEquals(2, afterInserts.summary.unreadCount)
+        assertEquals(listOf("bob", "alice"), afterInserts.members.sortedBy { it.position }.map { it.userId })
+
+        // When - read, replaced and deleted
+        messageDao.updateMessageStatus(listOf("m1"), "READ")
+        messageDao.insertMessage(message("m2", timestamp = 3_000, status = "DELIVERED", content = "edited"))
+        val afterReplace = chatDao.getChatListRow("chat_1")!!
+        messageDao.deleteMessagesByIds(listOf("m2"))
+        val afterDelete = chatDao.getChatListRow("chat_1")!!
+
+        // Then
+        assertEquals(1, afterReplace.summary.unreadCount)
+        assertEquals("edited", afterReplace.summary.lastMessageSnippet)
+        assertEquals("m1", afterDelete.summary.lastMessageId)
+        assertEquals(0, afterDelete.summary.unreadCount)
+        assertEquals(2_000L, afterDelete.summary.sortTimestamp)
+    }
+
+    @Test
+    fun replayingAnOldMessageShouldNotUnreadAReadChat() = runBlocking {
+        // Given
+        val chatDao = database.chatDao()
+        val messageDao = database.messageDao()
+        chatDao.insertChat(chat("chat_1"))
+        messageDao.insertMessage(message("m1", timestamp = 2_000, status = "DELIVERED"))
+        messageDao.insertMessage(message("m2", timestamp = 3_000, status = "DELIVERED"))
+        chatDao.markChatRead("chat_1")
+
+        // When - a reconnect re-saves the old messages, then a new one arrives
+        messageDao.insertMessages(listOf(
+            message("m1", timestamp = 2_000, status = "DELIVERED"),
+            message("m2", timestamp = 3_000, status = "DELIVERED")
+        ))
+        val afterReplay = chatDao.getSummaryUnreadCount("chat_1")
+        messageDao.insertMessage(message("m3", timestamp = 4_000, status = "DELIVERED"))
+
+        // Then
+        assertEquals(0, afterReplay)
+        assertEquals(1, chatDao.getSummaryUnreadCount("chat_1"))
+    }
+
+    @Test
+    fun chatListShouldFollowActivityAndSurviveChatSaves() = runBlocking {
+        // Given
+        val chatDao = database.chatDao()
+        val messageDao = database.messageDao()
+        chatDao.insertChat(chat("quiet", updatedAt = 5_000))
+        chatDao.insertChat(chat("busy", updatedAt = 1_000))
+        messageDao.insertMessage(message("m1", chatId = "busy", timestamp = 9_000, status = "SENT"))
+
+        // When - saving a chat again replaces its row
+        chatDao.insertChat(chat("busy", updatedAt = 1_000))
+        val list = chatDao.getChatList()
+        chatDao.deleteChatById("quiet")
+
+        // Then
+        assertEquals(listOf("busy", "quiet"), list.map { it.id })
+        assertEquals(1, list.first().summary.unreadCount)
+        assertEquals(listOf("busy"), chatDao.getChatList().map { it.id })
+    }
+
+    @Test
+    fun messagesSentFromThisDeviceShouldNotCountAsUnread() = runBlocking {
+        // Given
+        val chatDao = database.chatDao()
+        val messageDao = database.messageDao()
+        chatDao.insertChat(chat("chat_1"))
+        messageDao.insertMessage(message("m1", timestamp = 2_000, status = "DELIVERED"))
+
+        // When - the reply goes out, then is confirmed
+        messageDao.insertMessage(message("m2", timestamp = 3_000, status = "SENDING", senderId = Message.LOCAL_SENDER_ID))
+        messageDao.updateMessageStatus(listOf("m2"), "SENT")
+        val row = chatDao.getChatListRow("chat_1")!!
+
+        // Then
+        assertEquals("m2", row.summary.lastMessageId)
+        assertEquals(1, row.summary.unreadCount)
+    }
+
+    @Test
+    fun openingShouldRestoreTriggersLostToADestructiveMigration() {
+        // Given - recreated tables come back without their triggers
+        val db = database.openHelper.writableDatabase
+        val triggers = triggerNames()
+        triggers.forEach { db.execSQL("DROP TRIGGER `$it`") }
+
+        // When
+        ChatSummarySchema.CALLBACK.onOpen(db)
+        ChatSummarySchema.CALLBACK.onOpen(db)
+
+        // Then
+        assertTrue(triggers.isNotEmpty())
+        assertEquals(triggers, triggerNames())
+    }
+
+    private fun triggerNames(): List<String> =
+        database.openHelper.readableDatabase
+            .query("SELECT `name` FROM `sqlite_master` WHERE `type` = 'trigger' ORDER BY `name`")
+            .use { cursor -> generateSequence { if (cursor.moveToNext()) cursor.getString(0) else null }.toList() }
+
+    private fun chat(id: String, updatedAt: Long = 1_000) = ChatEntity(
+        id = id,
+        type = "GROUP",
+        name = id,
+        participants = "[]",
+        admins = "[]",
+        isNotificationsEnabled = true,
+        disappearingMessagesTimer = null,
+        isArchived = false,
+        isPinned = false,
+        isMuted = false,
+        unreadCount = 0,
+        createdAt = 1_000,
+        updatedAt = updatedAt
+    )
+
+    private fun message(
+        id: String,
+        chatId: String = "chat_1",
+        timestamp: Long,
+        status: String,
+        content: String = "text of $id",
+        senderId: String = "bob"
+    ) = MessageEntity(
+        id = id,
+        chatId = chatId,
+        senderId = senderId,
+        content = content,
+        type = "TEXT",
+        timestamp = timestamp,
+        status = status,
+        replyTo = null,
+        isEncrypted = true,
+        disappearingMessageTimer = null,
+        expiresAt = null,
+        isDisappearing = false
+    )
+}
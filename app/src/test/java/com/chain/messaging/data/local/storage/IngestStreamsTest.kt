@@ -0,0 +1,91 @@
+package com.chain.messaging.data.local.storage
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.security.MessageDigest
+import kotlin.random.Random
+
+class IngestStreamsTest {
+
+    @Test
+    fun `hashing stream should forward bytes and hash them`() {
+        // Given
+        val content = Random(7).nextBytes(100_000)
+        val target = ByteArrayOutputStream()
+
+        // When
+        val sink = HashingOutputStream(target)
+        sink.use { output ->
+            output.write(content[0].toInt())
+            output.write(content, 1, content.size - 1)
+        }
+
+        // Then
+        assertArrayEquals(content, target.toByteArray())
+        assertEquals(content.size.toLong(), sink.bytesWritten)
+        assertEquals(sha256(content), sink.hashHex())
+    }
+
+    @Test
+    fun `tee should copy read and skipped bytes in order`() {
+        // Given
+        val content = Random(11).nextBytes(50_000)
+        val copy = ByteArrayOutputStream()
+        val tee = TeeInputStream(ByteArrayInputStream(content), copy)
+
+        // When - a consumer reads a little, skips ahead and stops early
+        val head = ByteArray(16)
+        tee.read(head)
+        tee.read()
+        tee.skip(20_000)
+        val drained = tee.drain()
+
+        // Then
+        assertArrayEquals(content.copyOf(16), head)
+        assertEquals(content.size - 16L - 1 - 20_000, drained)
+        assertArrayEquals(content, copy.toByteArray())
+    }
+
+    @Test
+    fun `benchmark single pass against separate reads`() {
+        // Given - a 12 MB photo-sized payload
+        val content = Random(3).nextBytes(12 * 1024 * 1024)
+        val passes = 4
+
+        // When - the old flow: copy, then read again for metadata, encryption and thumbnail
+        val separateStart = System.nanoTime()
+        repeat(passes) {
+            val digest = MessageDigest.getInstance("SHA-256")
+            ByteArrayInputStream(content).use { input ->
+                val buffer = ByteArray(64 * 1024)
+                while (true) {
+                    val count = input.read(buffer)
+                    if (count < 0) break
+                    digest.update(buffer, 0, count)
+                }
+            }
+        }
+        val separateNanos = System.nanoTime() - separateStart
+
+        // When - one tee'd pass into the hashing sink
+        val singleStart = System.nanoTime()
+        val sink = HashingOutputStream(ByteArrayOutputStream(content.size))
+        TeeInputStream(ByteArrayInputStream(content), sink).use { it.drain() }
+        val hash = sink.hashHex()
+        val singleNanos = System.nanoTime() - singleStart
+
+        println(
+            "media ingest: $passes separate passes ${separateNanos / 1_000_000} ms, " +
+                "single tee'd pass ${singleNanos / 1_000_000} ms for ${content.size / 1024 / 1024} MB"
+        )
+
+        // Then
+        assertEquals(sha256(content), hash)
+        assertEquals(content.size.toLong(), sink.bytesWritten)
+    }
+
+    private fun sha256(bytes: ByteArray): String =
+        MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+}
@@ -0,0 +1,227 @@
+package com.chain.messaging.data.local.storage
+
+import android.content.Context
+import com.chain.messaging.core.security.SecureStorage
+import com.chain.messaging.data.local.dao.MediaDao
+import com.chain.messaging.data.local.dao.MediaDedupCounts
+import io.mockk.*
+import kotlinx.coroutines.test.runTest
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.nio.file.Files
+import java.util.Base64
+
+class MediaBlobStoreTest {
+
+    private lateinit var filesDir: File
+    private lateinit var secureStorage: SecureStorage
+    private lateinit var mediaDao: MediaDao
+    private lateinit var blobStore: MediaBlobStore
+
+    // Reference counts as the media table would report them, by file path
+    private val references = mutableMapOf<String, Int>()
+    private val secrets = mutableMapOf<String, String>()
+
+    @Before
+    fun setup() {
+        filesDir = Files.createTempDirectory("blobs").toFile()
+        val context = mockk<Context>()
+        every { context.filesDir } returns filesDir
+
+        secureStorage = mockk()
+        coEvery { secureStorage.get(any()) } answers { secrets[firstArg()] }
+        coEvery { secureStorage.store(any(), any()) } answers { secrets[firstArg()] = secondArg() }
+
+        mediaDao = mockk()
+        coEvery { mediaDao.countByFilePath(any()) } answers { references[firstArg()] ?: 0 }
+
+        blobStore = MediaBlobStore(context, secureStorage, mediaDao)
+    }
+
+    @After
+    fun tearDown() {
+        filesDir.deleteRecursively()
+    }
+
+    @Test
+    fun `blob ids should depend on content and secret only`() {
+        // Given
+        val keys = BlobKeys(ByteArray(32) { 1 })
+        val otherInstall = BlobKeys(ByteArray(32) { 2 })
+        val content = ByteArray(200_000) { (it % 251).toByte() }
+
+        // When
+        val fromBytes = keys.contentId(content)
+        val fromStream = keys.contentId(ByteArrayInputStream(content))
+
+        // Then
+        assertEquals(fromBytes, fromStream.blobId)
+        assertEquals(content.size.toLong(), fromStream.size)
+        assertNotEquals(fromBytes, keys.contentId(content.copyOf(content.size - 1)))
+        assertNotEquals(fromBytes, otherInstall.contentId(content))
+        assertArrayEquals(keys.blobKey(fromBytes), BlobKeys(ByteArray(32) { 1 }).blobKey(fromBytes))
+    }
+
+    @Test
+    fun `wrapped keys should only unwrap for their own message`() {
+        // Given
+        val keys = BlobKeys(ByteArray(32) { 7 })
+        val blobKey = keys.blobKey("abc")
+
+        // When
+        val wrapped = keys.wrapKey("msg1", blobKey)
+
+        // Then
+        assertEquals(Base64.getEncoder().encodeToString(blobKey), keys.unwrapKey("msg1", wrapped))
+        assertNotEquals(wrapped, keys.wrapKey("msg1", blobKey))
+        assertTrue(runCatching { keys.unwrapKey("msg2", wrapped) }.isFailure)
+        // Keys stored before blobs existed pass through
+        assertEquals("legacy-key", keys.unwrapKey("msg1", "legacy-key"))
+    }
+
+    @Test
+    fun `the install secret should be created once and reused`() = runTest {
+        // When
+        val first = blobStore.keys()
+        val restarted = MediaBlobStore(mockk<Context> { every { filesDir } returns this@MediaBlobStoreTest.filesDir }, secureStorage, mediaDao)
+
+        // Then
+        assertEquals(first.contentId(ByteArray(10)), restarted.keys().contentId(ByteArray(10)))
+        coVerify(exactly = 1) { secureStorage.store(any(), any()) }
+    }
+
+    @Test
+    fun `staged content should be committed once and shared`() = runTest {
+        // Given - two ingests of the same content racing to commit
+        val first = stage("ciphertext")
+        val second = stage("ciphertext")
+        val thumbnail = stage("thumb")
+
+        // When
+        val firstBlob = blobStore.linkStaged("blob1", first, thumbnail) { blob, thumb -> reference(blob); blob to thumb }
+        val secondBlob = blobStore.linkStaged("blob1", second, null) { blob, thumb -> reference(blob); blob to thumb }
+        val third = blobStore.linkExisting("blob1") { blob, thumb -> reference(blob); blob to thumb }
+
+        // Then
+        assertEquals(firstBlob, secondBlob)
+        assertEquals(firstBlob, third)
+        assertNotNull(third!!.second)
+        assertFalse(first.exists())
+        assertFalse(second.exists())
+        assertEquals(3, references[firstBlob.first.absolutePath])
+        assertNull(blobStore.linkExisting("missing") { _, _ -> Unit })
+    }
+
+    @Test
+    fun `blobs should be deleted with their last reference`() = runTest {
+        // Given
+        val (blob, thumbnail) = blobStore.linkStaged("blob1", stage("ciphertext"), stage("thumb")) { blob, thumb ->
+            reference(blob)
+            reference(blob)
+            blob to thumb!!
+        }
+
+        // When - one of two rows deleted
+        references[blob.absolutePath] = 1
+        val freedWhileShared = blobStore.release(blob.absolutePath, thumbnail.absolutePath)
+
+        // Then
+        assertEquals(0L, freedWhileShared)
+        assertTrue(blob.exists())
+
+        // When - the last row deleted
+        references.remove(blob.absolutePath)
+        val freed = blobStore.release(blob.absolutePath, thumbnail.absolutePath)
+
+        // Then
+        assertEquals("ciphertext".length.toLong(), freed)
+        assertFalse(blob.exists())
+        assertFalse(thumbnail.exists())
+    }
+
+    @Test
+    fun `failed references should not leave the blob behind`() = runTest {
+        // When
+        val result = runCatching {
+            blobStore.linkStaged<Unit>("blob1", stage("ciphertext"), null) { _, _ -> throw IllegalStateException("insert failed") }
+        }
+
+        // Then
+        assertTrue(result.isFailure)
+        assertFalse(blobStore.contains("blob1"))
+    }
+
+    @Test
+    fun `legacy files should be deleted outright`() = runTest {
+        // Given
+        val legacy = File(filesDir, "media/old.jpg").apply { parentFile!!.mkdirs(); writeText("plain") }
+        val legacyThumb = File(filesDir, "thumbnails/old_thumb.jpg").apply { parentFile!!.mkdirs(); writeText("t") }
+
+        // When
+        val freed = blobStore.release(legacy.absolutePath, legacyThumb.absolutePath)
+
+        // Then
+        assertEquals(5L, freed)
+        assertFalse(legacy.exists())
+        assertFalse(legacyThumb.exists())
+        coVerify(exactly = 0) { mediaDao.countByFilePath(any()) }
+    }
+
+    @Test
+    fun `garbage collection should sweep only old unreferenced files`() = runTest {
+        // Given
+        val now = System.currentTimeMillis()
+        val old = now - 2 * HOUR_MS
+        val kept = blobStore.linkStaged("kept", stage("kept"), null) { blob, _ -> reference(blob); blob }
+        val orphan = blobStore.linkStaged("orphan", stage("orphan"), stage("thumb")) { blob, _ -> blob }
+        val fresh = blobStore.linkStaged("fresh", stage("fresh"), null) { blob, _ -> blob }
+        val strayThumbnail = blobStore.thumbnailFile("gone").apply { writeText("thumb") }
+        val strayStaging = stage("partial")
+        listOf(kept, orphan, blobStore.thumbnailFile("orphan"), strayThumbnail, strayStaging).forEach { it.setLastModified(old) }
+
+        // When
+        val result = blobStore.collectGarbage(now)
+
+        // Then
+        assertEquals(1, result.blobsDeleted)
+        assertEquals(2, result.otherFilesDeleted)
+        assertTrue(kept.exists())
+        assertTrue(fresh.exists())
+        assertFalse(orphan.exists())
+        assertFalse(blobStore.thumbnailFile("orphan").exists())
+        assertFalse(strayThumbnail.exists())
+        assertFalse(strayStaging.exists())
+    }
+
+    @Test
+    fun `dedup stats should report ratio and bytes saved`() = runTest {
+        // Given - ten rows over four blobs
+        coEvery { mediaDao.getDedupCounts() } returns MediaDedupCounts(
+            referenceCount = 10,
+            blobCount = 4,
+            logicalBytes = 10_000L,
+            storedBytes = 4_000L
+        )
+
+        // When
+        val stats = blobStore.dedupStats()
+
+        // Then
+        assertEquals(2.5, stats.dedupRatio, 0.0)
+        assertEquals(6_000L, stats.bytesSaved)
+    }
+
+    private fun stage(content: String): File = blobStore.newStagingFile().apply { writeText(content) }
+
+    private fun reference(blob: File) {
+        references.merge(blob.absolutePath, 1, Int::plus)
+    }
+
+    private companion object {
+        const val HOUR_MS = 60 * 60 * 1000L
+    }
+}
@@ -1,18 +1,26 @@
 package com.chain.messaging.data.local.storage
 
 import android.content.Context
+import android.graphics.Bitmap
 import android.net.Uri
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.data.local.dao.MediaDao
+import com.chain.messaging.data.local.entity.Media
 import com.chain.messaging.data.local.entity.MediaEntity
+import com.chain.messaging.core.security.EncryptedOutput
 import com.chain.messaging.core.security.FileEncryption
 import io.mockk.*
 import kotlinx.coroutines.test.runTest
 import org.junit.Before
 import org.junit.Test
 import org.junit.Assert.*
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileInputStream
-import java.io.InputStream
+import java.io.OutputStream
+import java.util.Base64
+import java.util.concurrent.atomic.AtomicInteger
 
 class MediaStorageServiceTest {
     
@@ -21,12 +29,16 @@ class MediaStorageServiceTest {
     private lateinit var fileEncryption: FileEncryption
     private lateinit var mediaCompressor: MediaCompressor
     private lateinit var thumbnailGenerator: ThumbnailGenerator
+    private lateinit var blobStore: MediaBlobStore
     private lateinit var mediaStorageService: MediaStorageService
     
     private lateinit var mockSourceUri: Uri
     private lateinit var mockMediaFile: File
     private lateinit var mockTempDir: File
     
+    private val keys = BlobKeys(ByteArray(32) { it.toByte() })
+    private val blobFile = File.createTempFile("blob", null).apply { deleteOnExit() }
+    
     @Before
     fun setup() {
         context = mockk()
@@ -34,6 +46,7 @@ class MediaStorageServiceTest {
         fileEncryption = mockk()
         mediaCompressor = mockk()
         thumbnailGenerator = mockk()
+        blobStore = mockk()
         
         mockSourceUri = mockk()
         mockMediaFile = mockk()
@@ -55,35 +68,43 @@ class MediaStorageServiceTest {
         every { any<File>().length() } returns 1000L
         every { any<File>().absolutePath } returns "/mock/path"
         
+        // Blob store: nothing stored yet, staged content is committed as-is
+        coEvery { blobStore.keys() } returns keys
+        every { blobStore.contains(any()) } returns false
+        every { blobStore.newStagingFile() } answers { File.createTempFile("staged", null).apply { deleteOnExit() } }
+        coEvery { blobStore.linkStaged<Media>(any(), any(), any(), any()) } coAnswers {
+            arg<suspend (File, File?) -> Media>(3).invoke(blobFile, arg<File?>(2))
+        }
+        
         mediaStorageService = MediaStorageService(
             context,
             mediaDao,
             fileEncryption,
             mediaCompressor,
-            thumbnailGenerator
+            thumbnailGenerator,
+            blobStore,
+            MetricsRegistry()
         )
     }
     
     @Test
-    fun `storeMedia should compress, encrypt and store media file`() = runTest {
+    fun `storeMedia should decode the image once and stream it into the encryptor`() = runTest {
         // Given
         val messageId = "msg1"
         val fileName = "test.jpg"
         val mimeType = "image/jpeg"
-        val encryptionKey = "test_key"
-        val thumbnailPath = "/mock/thumbnail/path"
-        
-        val mockInputStream = mockk<InputStream>()
-        val mockContentResolver = mockk<android.content.ContentResolver>()
-        
-        every { context.contentResolver } returns mockContentResolver
-        every { mockContentResolver.openInputStream(mockSourceUri) } returns mockInputStream
-        every { mockInputStream.copyTo(any()) } just Runs
-        every { mockInputStream.close() } just Runs
-        
-        coEvery { mediaCompressor.compressMedia(mockSourceUri, mimeType, any()) } returns mockMediaFile
-        every { fileEncryption.encryptFile(mockMediaFile, any()) } returns encryptionKey
-        coEvery { thumbnailGenerator.generateThumbnail(mockMediaFile, any(), mimeType) } returns true
+        val bitmap = mockk<Bitmap>(relaxed = true)
+        val encrypted = ByteArrayOutputStream()
+        
+        every { bitmap.width } returns 1280
+        every { bitmap.height } returns 720
+        every { mediaCompressor.decodeScaledImage(mockSourceUri) } returns bitmap
+        every { mediaCompressor.writeCompressedImage(bitmap, any()) } answers {
+            secondArg<OutputStream>().write(ByteArray(100))
+            true
+        }
+        every { fileEncryption.openEncryptedOutput(any(), any<ByteArray>()) } returns EncryptedOutput(encrypted, "unused")
+        coEvery { thumbnailGenerator.generateThumbnailFromBitmap(bitmap, any()) } returns true
         coEvery { mediaDao.insertMedia(any()) } just Runs
         
         // When
@@ -95,32 +116,68 @@ class MediaStorageServiceTest {
         assertEquals(messageId, media.messageId)
         assertEquals(fileName, media.fileName)
         assertEquals(mimeType, media.mimeType)
-        assertEquals(encryptionKey, media.encryptionKey)
+        val blobId = keys.contentId(ByteArray(100))
+        assertEquals(Base64.getEncoder().encodeToString(keys.blobKey(blobId)), keys.unwrapKey(messageId, media.encryptionKey!!))
+        assertEquals(1280, media.width)
+        assertEquals(720, media.height)
+        assertNotNull(media.thumbnailPath)
         assertTrue(media.isEncrypted)
+        assertEquals(100, encrypted.size())
         
-        coVerify { mediaCompressor.compressMedia(mockSourceUri, mimeType, any()) }
-        verify { fileEncryption.encryptFile(mockMediaFile, any()) }
-        coVerify { thumbnailGenerator.generateThumbnail(mockMediaFile, any(), mimeType) }
+        verify(exactly = 1) { mediaCompressor.decodeScaledImage(mockSourceUri) }
+        coVerify(exactly = 0) { mediaCompressor.compressMedia(any(), any(), any()) }
+        coVerify { thumbnailGenerator.generateThumbnailFromBitmap(bitmap, any()) }
+        verify { bitmap.recycle() }
         coVerify { mediaDao.insertMedia(any()) }
+        coVerify { blobStore.linkStaged<Media>(blobId, any(), any(), any()) }
+        assertEquals(1L, mediaStorageService.getIngestStats().photos.count)
+    }
+    
+    @Test
+    fun `storeMedia should reference an existing blob without encrypting again`() = runTest {
+        // Given - the same photo was stored for another message
+        val bitmap = mockk<Bitmap>(relaxed = true)
+        val thumbnail = File("/blobs/shared.thumb.jpg")
+        
+        every { bitmap.width } returns 1280
+        every { bitmap.height } returns 720
+        every { mediaCompressor.decodeScaledImage(mockSourceUri) } returns bitmap
+        every { mediaCompressor.writeCompressedImage(bitmap, any()) } answers {
+            secondArg<OutputStream>().write(ByteArray(100))
+            true
+        }
+        every { blobStore.contains(keys.contentId(ByteArray(100))) } returns true
+        coEvery { blobStore.linkExisting<Media>(any(), any()) } coAnswers {
+            secondArg<suspend (File, File?) -> Media>().invoke(blobFile, thumbnail)
+        }
+        coEvery { mediaDao.insertMedia(any()) } just Runs
+        
+        // When
+        val first = mediaStorageService.storeMedia("msg1", mockSourceUri, "a.jpg", "image/jpeg").getOrThrow()
+        val second = mediaStorageService.storeMedia("msg2", mockSourceUri, "b.jpg", "image/jpeg").getOrThrow()
+        
+        // Then - both rows share the blob and thumbnail, each with its own wrapped key
+        assertEquals(first.filePath, second.filePath)
+        assertEquals(thumbnail.absolutePath, second.thumbnailPath)
+        assertNotEquals(first.encryptionKey, second.encryptionKey)
+        assertEquals(keys.unwrapKey("msg1", first.encryptionKey!!), keys.unwrapKey("msg2", second.encryptionKey!!))
+        verify(exactly = 0) { fileEncryption.openEncryptedOutput(any(), any<ByteArray>()) }
+        coVerify(exactly = 0) { thumbnailGenerator.generateThumbnailFromBitmap(any(), any()) }
+        coVerify(exactly = 0) { blobStore.linkStaged<Media>(any(), any(), any(), any()) }
     }
     
     @Test
-    fun `storeMedia should skip compression when compress is false`() = runTest {
+    fun `storeMedia should stream other files without compression or thumbnails`() = runTest {
         // Given
         val messageId = "msg1"
         val fileName = "test.pdf"
         val mimeType = "application/pdf"
-        val encryptionKey = "test_key"
-        
-        val mockInputStream = mockk<InputStream>()
+        val encrypted = ByteArrayOutputStream()
         val mockContentResolver = mockk<android.content.ContentResolver>()
         
         every { context.contentResolver } returns mockContentResolver
-        every { mockContentResolver.openInputStream(mockSourceUri) } returns mockInputStream
-        every { mockInputStream.copyTo(any()) } just Runs
-        every { mockInputStream.close() } just Runs
-        
-        every { fileEncryption.encryptFile(any(), any()) } returns encryptionKey
+        every { mockContentResolver.openInputStream(mockSourceUri) } answers { ByteArrayInputStream(ByteArray(4096) { it.toByte() }) }
+        every { fileEncryption.openEncryptedOutput(any(), any<ByteArray>()) } returns EncryptedOutput(encrypted, "unused")
         coEvery { mediaDao.insertMedia(any()) } just Runs
         
         // When
@@ -128,15 +185,45 @@ class MediaStorageServiceTest {
         
         // Then
         assertTrue(result.isSuccess)
+        assertEquals(4096, encrypted.size())
         coVerify(exactly = 0) { mediaCompressor.compressMedia(any(), any(), any()) }
-        coVerify(exactly = 0) { thumbnailGenerator.generateThumbnail(any(), any(), any()) }
+        verify(exactly = 0) { mediaCompressor.decodeScaledImage(any()) }
+        coVerify(exactly = 0) { thumbnailGenerator.generateThumbnailFromBitmap(any(), any()) }
     }
     
     @Test
-    fun `getMedia should decrypt and return file`() = runTest {
+    fun `storeMediaBatch should bound parallel ingests`() = runTest {
+        // Given
+        val items = (1..8).map { MediaIngestRequest(mockSourceUri, "file$it.pdf", "application/pdf") }
+        val mockContentResolver = mockk<android.content.ContentResolver>()
+        val active = AtomicInteger()
+        val maxActive = AtomicInteger()
+        
+        every { context.contentResolver } returns mockContentResolver
+        every { mockContentResolver.openInputStream(mockSourceUri) } answers { ByteArrayInputStream(ByteArray(1024)) }
+        every { fileEncryption.openEncryptedOutput(any(), any<ByteArray>()) } answers {
+            maxActive.accumulateAndGet(active.incrementAndGet()) { a, b -> maxOf(a, b) }
+            Thread.sleep(20)
+            active.decrementAndGet()
+            EncryptedOutput(ByteArrayOutputStream(), "key")
+        }
+        coEvery { mediaDao.insertMedia(any()) } just Runs
+        
+        // When
+        val results = mediaStorageService.storeMediaBatch("msg1", items)
+        
+        // Then
+        assertEquals(8, results.size)
+        assertTrue(results.all { it.isSuccess })
+        assertEquals(items.map { it.fileName }, results.map { it.getOrNull()!!.fileName })
+        assertTrue("${maxActive.get()} concurrent ingests", maxActive.get() <= 3)
+    }
+    
+    @Test
+    fun `openMedia should stream decrypted content without a temp file`() = runTest {
         // Given
         val mediaId = "media1"
-        val encryptionKey = "test_key"
+        val storedKey = keys.wrapKey("msg1", ByteArray(32) { 9 })
         val mediaEntity = MediaEntity(
             id = mediaId,
             messageId = "msg1",
@@ -145,46 +232,45 @@ class MediaStorageServiceTest {
             mimeType = "image/jpeg",
             fileSize = 1000L,
             isEncrypted = true,
-            encryptionKey = encryptionKey
+            encryptionKey = storedKey
         )
         
-        val encryptedFile = mockk<File>()
-        val decryptedFile = mockk<File>()
-        
         coEvery { mediaDao.getMediaById(mediaId) } returns mediaEntity
-        every { encryptedFile.exists() } returns true
-        every { fileEncryption.decryptFile(encryptedFile, any(), encryptionKey) } returns true
+        every { fileEncryption.openDecryptedInput(any<File>(), any<String>()) } returns ByteArrayInputStream("plain".toByteArray())
         
         // Mock File constructor
         mockkConstructor(File::class)
         every { anyConstructed<File>().exists() } returns true
         
         // When
-        val result = mediaStorageService.getMedia(mediaId)
+        val result = mediaStorageService.openMedia(mediaId)
         
         // Then
         assertTrue(result.isSuccess)
-        assertNotNull(result.getOrNull())
+        val opened = result.getOrNull()!!
+        assertEquals("plain", opened.use { it.stream.readBytes().decodeToString() })
+        assertEquals(mediaId, opened.media.id)
         
         coVerify { mediaDao.getMediaById(mediaId) }
-        verify { fileEncryption.decryptFile(any(), any(), encryptionKey) }
+        verify { fileEncryption.openDecryptedInput(any<File>(), keys.unwrapKey("msg1", storedKey)) }
+        verify(exactly = 0) { fileEncryption.decryptFile(any(), any(), any()) }
     }
     
     @Test
-    fun `getMedia should return null for non-existent media`() = runTest {
+    fun `openMedia should return null for non-existent media`() = runTest {
         // Given
         val mediaId = "non_existent"
         coEvery { mediaDao.getMediaById(mediaId) } returns null
         
         // When
-        val result = mediaStorageService.getMedia(mediaId)
+        val result = mediaStorageService.openMedia(mediaId)
         
         // Then
         assertTrue(result.isSuccess)
         assertNull(result.getOrNull())
         
         coVerify { mediaDao.getMediaById(mediaId) }
-        verify(exactly = 0) { fileEncryption.decryptFile(any(), any(), any()) }
+        verify(exactly = 0) { fileEncryption.openDecryptedInput(any<File>(), any<String>()) }
     }
     
     @Test
@@ -211,6 +297,7 @@ class MediaStorageServiceTest {
         every { thumbnailFile.exists() } returns true
         every { thumbnailFile.delete() } returns true
         coEvery { mediaDao.deleteMediaById(mediaId) } just Runs
+        coEvery { blobStore.release("/media/path", thumbnailPath) } returns 1000L
         
         // Mock File constructor
         mockkConstructor(File::class)
@@ -224,7 +311,10 @@ class MediaStorageServiceTest {
         assertTrue(result.isSuccess)
         
         coVerify { mediaDao.getMediaById(mediaId) }
-        coVerify { mediaDao.deleteMediaById(mediaId) }
+        coVerifyOrder {
+            mediaDao.deleteMediaById(mediaId)
+            blobStore.release("/media/path", thumbnailPath)
+        }
     }
     
     @Test
@@ -267,6 +357,7 @@ class MediaStorageServiceTest {
         
         coEvery { mediaDao.getOldMediaFiles(any()) } returns listOf(oldMediaEntity)
         coEvery { mediaDao.deleteOldMedia(any()) } returns 1
+        coEvery { blobStore.release("/old/path", "/old/thumbnail") } returns 1000L
         
         // Mock File operations
         mockkConstructor(File::class)
@@ -330,17 +421,11 @@ class MediaStorageServiceTest {
         val messageId = "msg1"
         val fileName = "test.jpg"
         val mimeType = "image/jpeg"
+        val bitmap = mockk<Bitmap>(relaxed = true)
         
-        val mockInputStream = mockk<InputStream>()
-        val mockContentResolver = mockk<android.content.ContentResolver>()
-        
-        every { context.contentResolver } returns mockContentResolver
-        every { mockContentResolver.openInputStream(mockSourceUri) } returns mockInputStream
-        every { mockInputStream.copyTo(any()) } just Runs
-        every { mockInputStream.close() } just Runs
-        
-        coEvery { mediaCompressor.compressMedia(mockSourceUri, mimeType, any()) } returns mockMediaFile
-        every { fileEncryption.encryptFile(mockMediaFile, any()) } throws RuntimeException("Encryption failed")
+        every { mediaCompressor.decodeScaledImage(mockSourceUri) } returns bitmap
+        every { mediaCompressor.writeCompressedImage(bitmap, any()) } returns true
+        every { fileEncryption.openEncryptedOutput(any(), any<ByteArray>()) } throws RuntimeException("Encryption failed")
         
         // When
         val result = mediaStorageService.storeMedia(messageId, mockSourceUri, fileName, mimeType)
@@ -348,5 +433,8 @@ class MediaStorageServiceTest {
         // Then
         assertTrue(result.isFailure)
         assertTrue(result.exceptionOrNull() is RuntimeException)
+        verify { bitmap.recycle() }
+        coVerify(exactly = 0) { mediaDao.insertMedia(any()) }
+        coVerify(exactly = 0) { blobStore.linkStaged<Media>(any(), any(), any(), any()) }
     }
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.chain.messaging.data.local.storage
 
+import com.chain.messaging.core.performance.memory.MemoryBudgetManager
+import com.chain.messaging.core.performance.memory.MemoryBudgetPolicy
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.model.MessageType
@@ -45,7 +48,9 @@ class MessageCacheTest {
     
     @Before
     fun setup() {
-        messageCache = MessageCache()
+        messageCache = MessageCache(
+            MemoryBudgetManager(MemoryBudgetPolicy.forDevice(256, isLowRamDevice = false), MetricsRegistry())
+        )
     }
     
     @Test
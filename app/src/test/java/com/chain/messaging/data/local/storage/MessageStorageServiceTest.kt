@@ -1,5 +1,6 @@
 package com.chain.messaging.data.local.storage
 
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.data.local.dao.MessageDao
 import com.chain.messaging.data.local.dao.MessageSearchDao
 import com.chain.messaging.data.local.dao.ReactionDao
@@ -57,7 +58,8 @@ class MessageStorageServiceTest {
             reactionDao,
             mediaDao,
             messageEncryption,
-            messageCache
+            messageCache,
+            MetricsRegistry()
         )
     }
     
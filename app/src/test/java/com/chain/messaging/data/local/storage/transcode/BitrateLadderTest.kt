@@ -0,0 +1,41 @@
+package com.chain.messaging.data.local.storage.transcode
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class BitrateLadderTest {
+
+    @Test
+    fun `bitrate should step up with resolution`() {
+        // When
+        val rungs = listOf(320 to 180, 640 to 360, 854 to 480, 1280 to 720, 1920 to 1080)
+            .map { (width, height) -> BitrateLadder.bitrateFor(width, height) }
+
+        // Then
+        assertEquals(rungs.sorted(), rungs)
+        assertEquals(rungs.size, rungs.toSet().size)
+        assertEquals(2_500_000, BitrateLadder.bitrateFor(1280, 720))
+        // Portrait uses the same rung as landscape
+        assertEquals(BitrateLadder.bitrateFor(1280, 720), BitrateLadder.bitrateFor(720, 1280))
+    }
+
+    @Test
+    fun `frame rate should scale the rung within limits`() {
+        assertEquals(3_750_000, BitrateLadder.bitrateFor(1280, 720, frameRate = 60))
+        assertEquals(3_750_000, BitrateLadder.bitrateFor(1280, 720, frameRate = 240))
+        assertEquals(1_250_000, BitrateLadder.bitrateFor(1280, 720, frameRate = 10))
+    }
+
+    @Test
+    fun `output should never exceed the source bitrate`() {
+        assertEquals(1_000_000, BitrateLadder.bitrateFor(1280, 720, sourceBitrate = 1_000_000))
+        assertEquals(2_500_000, BitrateLadder.bitrateFor(1280, 720, sourceBitrate = 0))
+        // Even below the floor
+        assertEquals(10_000, BitrateLadder.bitrateFor(1280, 720, sourceBitrate = 10_000))
+    }
+
+    @Test
+    fun `small outputs should not drop below the floor`() {
+        assertEquals(BitrateLadder.MIN_BITRATE, BitrateLadder.bitrateFor(320, 180, frameRate = 10))
+    }
+}
@@ -0,0 +1,107 @@
+package com.chain.messaging.data.local.storage.transcode
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import io.mockk.*
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.nio.ByteBuffer
+
+class TranscodeMuxerTest {
+
+    private lateinit var mediaMuxer: MediaMuxer
+    private val written = mutableListOf<Triple<Int, String, Long>>()
+
+    @Before
+    fun setup() {
+        mediaMuxer = mockk(relaxed = true)
+        every { mediaMuxer.addTrack(any()) } returnsMany listOf(0, 1)
+        every { mediaMuxer.writeSampleData(any(), any(), any()) } answers {
+            val buffer = secondArg<ByteBuffer>().duplicate()
+            val info = thirdArg<MediaCodec.BufferInfo>()
+            buffer.position(info.offset)
+            buffer.limit(info.offset + info.size)
+            val bytes = ByteArray(info.size).also { buffer.get(it) }
+            written.add(Triple(firstArg(), String(bytes), info.presentationTimeUs))
+        }
+    }
+
+    @Test
+    fun `muxer should start once every expected track has a format`() {
+        // Given
+        var startedCallbacks = 0
+        val muxer = TranscodeMuxer(mediaMuxer) { startedCallbacks++ }
+        muxer.expect(SampleTrack.VIDEO)
+        muxer.expect(SampleTrack.AUDIO)
+
+        // When
+        muxer.addTrack(SampleTrack.AUDIO, mockk<MediaFormat>())
+
+        // Then
+        assertFalse(muxer.started)
+        verify(exactly = 0) { mediaMuxer.start() }
+
+        // When
+        muxer.addTrack(SampleTrack.VIDEO, mockk<MediaFormat>())
+
+        // Then
+        assertTrue(muxer.started)
+        assertEquals(1, startedCallbacks)
+        verify(exactly = 1) { mediaMuxer.start() }
+    }
+
+    @Test
+    fun `samples before start should be copied and written in order`() {
+        // Given - the codec reuses its buffer after each write
+        val muxer = TranscodeMuxer(mediaMuxer)
+        muxer.expect(SampleTrack.VIDEO)
+        muxer.expect(SampleTrack.AUDIO)
+        muxer.addTrack(SampleTrack.VIDEO, mockk<MediaFormat>())
+        val codecBuffer = ByteBuffer.allocate(16)
+
+        // When
+        muxer.writeSample(SampleTrack.VIDEO, codecBuffer.fill("xxframe1"), info(offset = 2, size = 6, ptsUs = 0L))
+        muxer.writeSample(SampleTrack.VIDEO, codecBuffer.fill("frame2"), info(offset = 0, size = 6, ptsUs = 33_000L))
+
+        // Then
+        assertEquals(2, muxer.pendingSamples)
+        assertTrue(written.isEmpty())
+
+        // When
+        muxer.addTrack(SampleTrack.AUDIO, mockk<MediaFormat>())
+        muxer.writeSample(SampleTrack.AUDIO, codecBuffer.fill("audio"), info(offset = 0, size = 5, ptsUs = 10_000L))
+
+        // Then
+        assertEquals(0, muxer.pendingSamples)
+        assertEquals(
+            listOf(Triple(0, "frame1", 0L), Triple(0, "frame2", 33_000L), Triple(1, "audio", 10_000L)),
+            written
+        )
+    }
+
+    @Test
+    fun `tracks cannot be expected after start`() {
+        // Given
+        val muxer = TranscodeMuxer(mediaMuxer)
+        muxer.expect(SampleTrack.VIDEO)
+        muxer.addTrack(SampleTrack.VIDEO, mockk<MediaFormat>())
+
+        // Then
+        assertTrue(runCatching { muxer.expect(SampleTrack.AUDIO) }.isFailure)
+    }
+
+    private fun ByteBuffer.fill(content: String): ByteBuffer = apply {
+        clear()
+        put(content.toByteArray())
+        flip()
+    }
+
+    private fun info(offset: Int, size: Int, ptsUs: Long) = MediaCodec.BufferInfo().apply {
+        this.offset = offset
+        this.size = size
+        presentationTimeUs = ptsUs
+        flags = 0
+    }
+}
@@ -87,6 +87,33 @@ class MediaMessageTest {
         assertEquals(800, mediaContent?.width)
         assertEquals(600, mediaContent?.height)
         assertTrue(mediaContent?.isLocal == true)
+        assertNull(mediaContent?.mediaId)
+    }
+    
+    @Test
+    fun `getMediaContent should parse the id of stored media`() {
+        val jsonContent = """
+            {
+                "uri": "/path/to/image.jpg",
+                "fileName": "image.jpg",
+                "mimeType": "image/jpeg",
+                "fileSize": 1024,
+                "isLocal": false,
+                "mediaId": "media-1"
+            }
+        """.trimIndent()
+        
+        val imageMessage = Message(
+            id = "1",
+            chatId = "chat1",
+            senderId = "user1",
+            content = jsonContent,
+            type = MessageType.IMAGE,
+            timestamp = Date(),
+            status = MessageStatus.SENT
+        )
+        
+        assertEquals("media-1", imageMessage.getMediaContent()?.mediaId)
     }
     
     @Test
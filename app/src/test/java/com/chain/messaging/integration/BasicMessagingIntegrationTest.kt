@@ -3,6 +3,9 @@ package com.chain.messaging.integration
 import com.chain.messaging.core.messaging.MessagingService
 import com.chain.messaging.core.messaging.MessageStatusTracker
 import com.chain.messaging.core.messaging.TypingIndicatorService
+import com.chain.messaging.core.messaging.presence.PresenceEngine
+import com.chain.messaging.core.messaging.presence.PresenceTransport
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.usecase.GetMessagesUseCase
@@ -26,7 +29,7 @@ class BasicMessagingIntegrationTest {
     fun `complete messaging flow should work end to end`() = runTest {
         // Given - Mock dependencies
         val messagingService = mockk<MessagingService>()
-        val typingIndicatorService = TypingIndicatorService()
+        val typingIndicatorService = TypingIndicatorService(PresenceEngine(PresenceTransport.NONE, MetricsRegistry()))
         val messageStatusTracker = MessageStatusTracker()
         
         // Create use cases
@@ -85,7 +88,7 @@ class BasicMessagingIntegrationTest {
     @Test
     fun `typing indicators should work correctly`() = runTest {
         // Given
-        val typingIndicatorService = TypingIndicatorService()
+        val typingIndicatorService = TypingIndicatorService(PresenceEngine(PresenceTransport.NONE, MetricsRegistry()))
         val typingIndicatorUseCase = TypingIndicatorUseCase(typingIndicatorService)
         
         val chatId = "chat123"
@@ -48,7 +48,8 @@ class CallQualityIntegrationTest {
             bandwidthMonitor,
             codecManager,
             callRecordingManager,
-            screenshotDetector
+            screenshotDetector,
+            CallStatsSampler()
         )
     }
     
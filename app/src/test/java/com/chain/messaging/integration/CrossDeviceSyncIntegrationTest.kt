@@ -4,6 +4,7 @@ import android.content.Context
 import androidx.room.Room
 import androidx.test.core.app.ApplicationProvider
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.blockchain.BlockchainResponseDispatcher
 import com.chain.messaging.core.crypto.KeyManager
 import com.chain.messaging.core.sync.*
 import com.chain.messaging.data.local.ChainDatabase
@@ -60,9 +61,7 @@ class CrossDeviceSyncIntegrationTest {
         val keyPair = Curve.generateKeyPair()
         val identityKeyPair = IdentityKeyPair(IdentityKey(keyPair.publicKey), keyPair.privateKey)
         every { keyManager.getIdentityKeyPair() } returns identityKeyPair
-        every { keyManager.exportKeys() } returns mapOf("test-key" to "test-value")
-        every { keyManager.exportRecentKeys(any()) } returns mapOf("recent-key" to "recent-value")
-        every { keyManager.importKey(any(), any()) } returns Unit
+        every { keyManager.exportPublicKeys() } returns mapOf("identity_public" to "test-value")
         
         // Setup MessageRepository mock
         coEvery { messageRepository.saveMessage(any()) } returns Unit
@@ -77,7 +76,10 @@ class CrossDeviceSyncIntegrationTest {
             database.messageDao(),
             messageRepository,
             keyManager,
-            blockchainManager
+            blockchainManager,
+            SyncChunkStreamer(database.messageDao()),
+            mockk(relaxed = true),
+            BlockchainResponseDispatcher(blockchainManager)
         )
     }
     
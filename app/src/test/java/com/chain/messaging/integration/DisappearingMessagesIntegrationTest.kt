@@ -12,6 +12,7 @@ import com.chain.messaging.domain.model.MessageType
 import com.chain.messaging.domain.repository.MessageRepository
 import com.chain.messaging.core.privacy.*
 import com.chain.messaging.core.blockchain.BlockchainManager
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.delay
@@ -58,7 +59,9 @@ class DisappearingMessagesIntegrationTest {
             context,
             messageRepository,
             mockBlockchainManager,
-            screenshotDetector
+            screenshotDetector,
+            ExpiryAlarm.NONE,
+            MetricsRegistry()
         )
     }
     
@@ -6,6 +6,7 @@ import com.chain.messaging.core.auth.AuthenticationService
 import com.chain.messaging.core.auth.UserIdentity
 import com.chain.messaging.core.blockchain.BlockchainManager
 import com.chain.messaging.core.crypto.SignalEncryptionService
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.data.local.ChainDatabase
 import com.chain.messaging.data.repository.MessageRepositoryImpl
 import com.chain.messaging.domain.model.Message
@@ -70,7 +71,8 @@ class MessageReactionIntegrationTest {
             reactionDao = database.reactionDao(),
             blockchainManager = mockBlockchainManager,
             encryptionService = mockEncryptionService,
-            authenticationService = mockAuthService
+            authenticationService = mockAuthService,
+            metricsRegistry = MetricsRegistry()
         )
         
         // Create use cases
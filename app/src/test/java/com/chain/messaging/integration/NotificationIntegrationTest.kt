@@ -7,6 +7,7 @@ import com.chain.messaging.core.notification.NotificationActionHandler
 import com.chain.messaging.core.notification.NotificationEvent
 import com.chain.messaging.core.notification.NotificationManager
 import com.chain.messaging.core.notification.NotificationService
+import com.chain.messaging.core.performance.metrics.MetricsRegistry
 import com.chain.messaging.domain.model.Message
 import com.chain.messaging.domain.model.MessageStatus
 import com.chain.messaging.domain.model.MessageType
@@ -51,7 +52,7 @@ class NotificationIntegrationTest {
     @Before
     fun setup() {
         context = ApplicationProvider.getApplicationContext()
-        notificationService = NotificationService(context)
+        notificationService = NotificationService(context, MetricsRegistry())
         notificationActionHandler = NotificationActionHandler()
         
         notificationManager = NotificationManager(
@@ -49,7 +49,7 @@ class VoiceMessageIntegrationTest {
         
         voiceRecorder = VoiceRecorder(context)
         voicePlayer = VoicePlayer(context)
-        voiceMessageProcessor = VoiceMessageProcessor(context)
+        voiceMessageProcessor = VoiceMessageProcessor(context, mockk(relaxed = true))
     }
     
     @After
@@ -3,6 +3,7 @@ package com.chain.messaging.presentation.voice
 import com.chain.messaging.core.audio.PlaybackState
 import com.chain.messaging.core.audio.VoiceMessageProcessor
 import com.chain.messaging.core.audio.VoicePlayer
+import com.chain.messaging.core.audio.WaveformBuilder
 import io.mockk.*
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.MutableStateFlow
@@ -191,7 +192,11 @@ class VoicePlayerViewModelTest {
     fun `loadWaveformData calls processor loadWaveformData`() = runTest {
         // Given
         val filePath = "/test/path/voice.m4a"
-        val waveformData = listOf(0.5f, 0.8f, 0.3f)
+        val waveformData = WaveformBuilder().apply {
+            addLevel(0.5f)
+            addLevel(0.8f)
+            addLevel(0.3f)
+        }.build()
         coEvery { voiceMessageProcessor.loadWaveformData(filePath) } returns waveformData
         
         // When
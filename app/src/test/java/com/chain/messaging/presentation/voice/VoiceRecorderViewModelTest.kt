@@ -22,6 +22,7 @@ class VoiceRecorderViewModelTest {
     
     private lateinit var voiceRecorder: VoiceRecorder
     private lateinit var voiceMessageProcessor: VoiceMessageProcessor
+    private lateinit var voiceNoteStreamer: VoiceNoteStreamer
     private lateinit var viewModel: VoiceRecorderViewModel
     private lateinit var context: Context
     
@@ -29,14 +30,18 @@ class VoiceRecorderViewModelTest {
     fun setup() {
         voiceRecorder = mockk(relaxed = true)
         voiceMessageProcessor = mockk(relaxed = true)
+        voiceNoteStreamer = mockk(relaxed = true)
         context = mockk(relaxed = true)
         
+        // No cloud account, so recordings are sent whole
+        coEvery { voiceNoteStreamer.open() } returns null
+        
         // Mock recorder state flows
         every { voiceRecorder.recordingState } returns MutableStateFlow(RecordingState.IDLE)
         every { voiceRecorder.amplitude } returns MutableStateFlow(0)
         every { voiceRecorder.duration } returns MutableStateFlow(0L)
         
-        viewModel = VoiceRecorderViewModel(voiceRecorder, voiceMessageProcessor)
+        viewModel = VoiceRecorderViewModel(voiceRecorder, voiceMessageProcessor, voiceNoteStreamer)
     }
     
     @After
@@ -158,6 +163,33 @@ class VoiceRecorderViewModelTest {
         coVerify { voiceMessageProcessor.processVoiceMessage(recordingResult, CompressionLevel.MEDIUM) }
     }
     
+    @Test
+    fun `streamed recording sends the uploaded file without recompressing`() = runTest {
+        // Given
+        mockkStatic(ContextCompat::class)
+        every { 
+            ContextCompat.checkSelfPermission(context, android.Manifest.permission.RECORD_AUDIO) 
+        } returns PackageManager.PERMISSION_GRANTED
+        viewModel.checkPermissions(context)
+        
+        val audioFile = File.createTempFile("voice", ".aac").apply { deleteOnExit() }
+        val stream = mockk<VoiceNoteStream>(relaxed = true)
+        val recordingResult = VoiceRecordingResult(audioFile, 5000L, 1024L)
+        coEvery { voiceNoteStreamer.open() } returns stream
+        coEvery { voiceRecorder.startRecording(any()) } returns Result.success(audioFile)
+        coEvery { voiceRecorder.stopRecording() } returns Result.success(recordingResult)
+        coEvery { stream.finish() } returns mockk(relaxed = true)
+        
+        // When
+        viewModel.startRecording()
+        viewModel.stopRecording { }
+        
+        // Then
+        coVerify { voiceRecorder.startRecording(any()) }
+        coVerify { stream.finish() }
+        coVerify { voiceMessageProcessor.processVoiceMessage(recordingResult, CompressionLevel.NONE) }
+    }
+    
     @Test
     fun `stopRecording sets error when recorder fails`() = runTest {
         // Given